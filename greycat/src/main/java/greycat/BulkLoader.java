@@ -0,0 +1,57 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat;
+
+/**
+ * Ingests large amounts of new nodes, for instance historical data, directly into the {@link greycat.plugin.Storage}.
+ * Chunks of the nodes are built from columns of timepoints, sorted by node and time, and written in large batches without going through the resolver nor the cache of the graph.
+ * <br>
+ * Loaded nodes have to be new: ids should come from {@link #newIds(int)} and all timepoints of a node have to be given in a single {@link #load} call.
+ * Their {@link Node#init()} is not called, and they should not be looked up before the callback of the load.
+ *
+ * @ignore ts
+ */
+public interface BulkLoader {
+
+    /**
+     * Allocates the ids of new nodes.
+     *
+     * @param count number of nodes
+     * @return the new ids
+     */
+    long[] newIds(int count);
+
+    /**
+     * Loads timepoints of new nodes, given as columns: row i sets the attributes of node ids[i] at time times[i].
+     * Rows do not need to be sorted, values of several rows with the same node and time are merged.
+     * Each timepoint inherits the values of the previous timepoint of its node, a null value in a column keeps the previous value.
+     *
+     * @param nodeType   type of the loaded nodes, as given to {@link Graph#newTypedNode(long, long, String)}, null for generic nodes
+     * @param ids        node of every row
+     * @param times      time of every row
+     * @param attributes names of the loaded attributes
+     * @param types      types of the loaded attributes, constants of {@link Type}
+     * @param columns    values of every attribute, one array per attribute with one value per row: boolean[], int[], long[], double[] or Object[]
+     * @param callback   called once all chunks are stored, with true
+     */
+    void load(String nodeType, long[] ids, long[] times, String[] attributes, int[] types, Object[] columns, Callback<Boolean> callback);
+
+    /**
+     * Releases the memory used to build chunks, once all loads are done.
+     */
+    void free();
+
+}
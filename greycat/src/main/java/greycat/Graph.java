@@ -100,6 +100,19 @@ public interface Graph {
      */
     void lookupAll(long world, long time, long[] ids, Callback<Node[]> callback);
 
+    /**
+     * Inserts timepoints of double attributes of several existing nodes in one call, from columns of values.<br>
+     * Rows of a node have to be contiguous and sorted by time, each node is resolved once at the time of its first row.
+     *
+     * @param world      The world of the nodes.
+     * @param ids        The node of every row.
+     * @param times      The time of every row.
+     * @param attributes The names of the attributes to set.
+     * @param columns    The values of every attribute, one column per attribute with one value per row.
+     * @param callback   Called once all rows are inserted, with false if some nodes have not been found.
+     */
+    void batchInsert(long world, long[] ids, long[] times, String[] attributes, double[][] columns, Callback<Boolean> callback);
+
     /**
      * Asynchronous lookup of a nodes.<br>
      * Based on the tuple &lt;World, Time, Node_ID&gt; this method seeks a {@link Node} in the Graph and returns it to the callback.
@@ -264,6 +277,16 @@ public interface Graph {
      */
     Query newQuery();
 
+    /**
+     * Creates a loader writing new nodes directly into the storage, for the initial ingestion of large datasets.
+     *
+     * @param world    world of the loaded nodes
+     * @param capacity number of chunks built in memory before being written to the storage
+     * @return newly created loader
+     * @ignore ts
+     */
+    BulkLoader newBulkLoader(long world, int capacity);
+
     /**
      * Free the array of nodes (sequentially call the free method on all nodes)
      *
@@ -17,6 +17,7 @@ package greycat;
 
 import greycat.internal.BlackHoleStorage;
 import greycat.internal.CoreGraph;
+import greycat.plugin.MemoryFactory;
 import greycat.plugin.StorageFactory;
 import greycat.scheduler.TrampolineScheduler;
 import greycat.internal.ReadOnlyStorage;
@@ -32,6 +33,7 @@ public class GraphBuilder {
     public Storage storage = null;
     public StorageFactory storageFactory = null;
     private Scheduler _scheduler = null;
+    private MemoryFactory _memoryFactory = null;
     private Plugin[] _plugins = null;
     private long _memorySize = -1;
     private long _batchSize = -1;
@@ -46,6 +48,7 @@ public class GraphBuilder {
         GraphBuilder copy = new GraphBuilder();
         copy.storage = this.storage;
         copy._scheduler = this._scheduler;
+        copy._memoryFactory = this._memoryFactory;
         copy._plugins = this._plugins;
         copy._memorySize = this._memorySize;
         copy._batchSize = this._batchSize;
@@ -127,6 +130,18 @@ public class GraphBuilder {
         return this;
     }
 
+    /**
+     * Sets the memory factory used to create the chunk space of the graph.
+     * Plugins declaring their own memory factory take precedence over this one.
+     *
+     * @param memoryFactory an instance of memory factory, for instance a configured {@link greycat.internal.heap.HeapMemoryFactory}
+     * @return the {@link GraphBuilder}, for a fluent API
+     */
+    public GraphBuilder withMemoryFactory(MemoryFactory memoryFactory) {
+        this._memoryFactory = memoryFactory;
+        return this;
+    }
+
     /**
      * Declare a plugin to the graph builder.
      *
@@ -170,9 +185,9 @@ public class GraphBuilder {
             _memorySize = 100000;
         }
         if (storageFactory != null) {
-            return new CoreGraph(storageFactory.build(), _memorySize, _batchSize, _scheduler, _plugins, _deepPriority);
+            return new CoreGraph(storageFactory.build(), _memorySize, _batchSize, _scheduler, _memoryFactory, _plugins, _deepPriority);
         } else {
-            return new CoreGraph(storage, _memorySize, _batchSize, _scheduler, _plugins, _deepPriority);
+            return new CoreGraph(storage, _memorySize, _batchSize, _scheduler, _memoryFactory, _plugins, _deepPriority);
         }
 
     }
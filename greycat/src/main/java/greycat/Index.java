@@ -19,6 +19,8 @@ public interface Index {
 
     void declareAttributes(Callback callback, String... attributeNames);
 
+    void declareOrderedAttributes(Callback callback, String... attributeNames);
+
     int size();
 
     long[] all();
@@ -37,6 +39,14 @@ public interface Index {
 
     long[] selectByQuery(Query query);
 
+    long[] selectRange(String attributeName, String from, String to, int limit);
+
+    long[] selectPrefix(String attributeName, String prefix, int limit);
+
+    void findRange(Callback<Node[]> callback, long world, long time, String attributeName, String from, String to, int limit);
+
+    void findPrefix(Callback<Node[]> callback, long world, long time, String attributeName, String prefix, int limit);
+
     int[] keys();
 
 }
@@ -92,6 +92,18 @@ public interface Task {
      */
     Task forEachPar(Task subTask);
 
+    /**
+     * Batch version of {@link #forEachPar(Task)}.
+     * Splits the collection into ranges of consecutive elements and calls the sub task once per range, with the range as result and the offset of its first element as variable i.
+     * At most parallelism ranges are processed at the same time, instead of one thread per element.
+     *
+     * @param batchSize   number of elements per range, 0 to split the collection evenly between parallel calls
+     * @param parallelism maximum number of ranges processed in parallel, 0 for the number of workers of the scheduler
+     * @param subTask     sub task to call for each range
+     * @return this task to chain
+     */
+    Task forEachParBatch(String batchSize, String parallelism, Task subTask);
+
     /**
      * Flat a TaskResult containing TaskResult to a flat TaskResult
      *
@@ -116,6 +128,18 @@ public interface Task {
      */
     Task mapPar(Task subTask);
 
+    /**
+     * Batch version of {@link #mapPar(Task)}.
+     * Splits the collection into ranges of consecutive elements and calls the sub task once per range, with the range as result and the offset of its first element as variable i.
+     * Results of all ranges are concatenated in the order of the collection.
+     *
+     * @param batchSize   number of elements per range, 0 to split the collection evenly between parallel calls
+     * @param parallelism maximum number of ranges processed in parallel, 0 for the number of workers of the scheduler
+     * @param subTask     sub task to call for each range
+     * @return this task to chain
+     */
+    Task mapParBatch(String batchSize, String parallelism, Task subTask);
+
     /**
      * Executes a sub task if a given condition is evaluated to true.
      *
@@ -351,6 +375,10 @@ public interface Task {
 
     Task readIndex(String indexName, String... query);
 
+    Task readIndexRange(String indexName, String attribute, String from, String to, String limit);
+
+    Task readIndexPrefix(String indexName, String attribute, String prefix, String limit);
+
     Task updateIndex(String name);
 
     Task unindexFrom(String name);
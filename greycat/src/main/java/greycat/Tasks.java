@@ -87,6 +87,10 @@ public class Tasks {
         return newTask().forEachPar(subTask);
     }
 
+    public static Task forEachParBatch(String batchSize, String parallelism, Task subTask) {
+        return newTask().forEachParBatch(batchSize, parallelism, subTask);
+    }
+
     public static Task map(Task subTask) {
         return newTask().map(subTask);
     }
@@ -95,6 +99,10 @@ public class Tasks {
         return newTask().mapPar(subTask);
     }
 
+    public static Task mapParBatch(String batchSize, String parallelism, Task subTask) {
+        return newTask().mapParBatch(batchSize, parallelism, subTask);
+    }
+
     public static Task ifThen(ConditionalFunction cond, Task then) {
         return newTask().ifThen(cond, then);
     }
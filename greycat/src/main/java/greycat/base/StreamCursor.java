@@ -0,0 +1,37 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.base;
+
+/**
+ * Position within the source of a {@link StreamTaskResult}, opened for a single iteration.
+ * Each iterator owns its cursor, so that several iterations over the same result never share a reader.
+ */
+public interface StreamCursor {
+
+    /**
+     * Reads the next elements of the source.
+     *
+     * @param buffer buffer to fill from its beginning
+     * @return number of elements read, 0 once the source is exhausted
+     */
+    int pull(Object[] buffer);
+
+    /**
+     * Releases the source, called once exhausted or when the result is freed.
+     */
+    void close();
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.base;
+
+import greycat.TaskResult;
+import greycat.TaskResultIterator;
+
+/**
+ * Read-only {@link TaskResult} whose elements are lazily pulled from a source, such as the lines of a file, by its iterators.
+ * Elements are never materialized: each {@link #iterator()} opens its own {@link StreamCursor} and reads the source by bounded batches, so that a whole import can be iterated in constant memory.
+ * Its size is unknown (-1), and only iteration based actions such as forEach, forEachPar or forEachParBatch can consume it.
+ *
+ * @param <A> type of elements
+ */
+public abstract class StreamTaskResult<A> extends BaseTaskResult<A> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final int _bufferSize;
+    private final java.util.Set<StreamCursor> _opened = new java.util.HashSet<StreamCursor>();
+
+    protected StreamTaskResult(final int p_bufferSize) {
+        super(null, false);
+        if (p_bufferSize > 0) {
+            this._bufferSize = p_bufferSize;
+        } else {
+            this._bufferSize = DEFAULT_BUFFER_SIZE;
+        }
+    }
+
+    /**
+     * Opens the source, called each time a new iteration starts.
+     *
+     * @return a new cursor at the beginning of the source
+     */
+    protected abstract StreamCursor open();
+
+    @Override
+    public TaskResultIterator iterator() {
+        final StreamCursor cursor = open();
+        synchronized (_opened) {
+            _opened.add(cursor);
+        }
+        return new StreamTaskResultIterator<A>(this, cursor, _bufferSize);
+    }
+
+    /**
+     * Closes a cursor once its iteration is over.
+     */
+    final void release(final StreamCursor cursor) {
+        synchronized (_opened) {
+            if (!_opened.remove(cursor)) {
+                return;
+            }
+        }
+        cursor.close();
+    }
+
+    /**
+     * Closes the cursors of all iterations still running.
+     */
+    private void closeAll() {
+        final StreamCursor[] opened;
+        synchronized (_opened) {
+            opened = _opened.toArray(new StreamCursor[_opened.size()]);
+            _opened.clear();
+        }
+        for (int i = 0; i < opened.length; i++) {
+            opened[i].close();
+        }
+    }
+
+    @Override
+    public A get(int index) {
+        return null;
+    }
+
+    @Override
+    public TaskResult<A> set(int index, A input) {
+        throw new RuntimeException("Stream results are read-only");
+    }
+
+    @Override
+    public TaskResult<A> allocate(int index) {
+        throw new RuntimeException("Stream results are read-only");
+    }
+
+    @Override
+    public TaskResult<A> add(A input) {
+        throw new RuntimeException("Stream results are read-only");
+    }
+
+    @Override
+    public TaskResult<A> fillWith(TaskResult<A> source) {
+        throw new RuntimeException("Stream results are read-only");
+    }
+
+    @Override
+    public TaskResult<A> clear() {
+        closeAll();
+        return this;
+    }
+
+    /**
+     * Elements are pulled and wrapped one by one by consumers, the source itself is therefore shared instead of copied.
+     * The clone opens its own cursors, freeing it leaves the iterations of this result untouched.
+     */
+    @Override
+    public TaskResult<A> clone() {
+        final StreamTaskResult<A> origin = this;
+        return new StreamTaskResult<A>(_bufferSize) {
+            @Override
+            protected StreamCursor open() {
+                return origin.open();
+            }
+        };
+    }
+
+    @Override
+    public void free() {
+        closeAll();
+    }
+
+    @Override
+    public int size() {
+        return -1;
+    }
+
+    /**
+     * Materializes the whole stream, defeats its purpose on large sources.
+     */
+    @Override
+    public Object[] asArray() {
+        final TaskResult<A> collected = new BaseTaskResult<A>(null, false);
+        final TaskResultIterator it = iterator();
+        Object loop = it.next();
+        while (loop != null) {
+            collected.add((A) loop);
+            loop = it.next();
+        }
+        return collected.asArray();
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.base;
+
+import greycat.TaskResultIterator;
+import greycat.utility.Tuple;
+
+class StreamTaskResultIterator<A> implements TaskResultIterator<A> {
+
+    private final StreamTaskResult<A> _source;
+    private final StreamCursor _stream;
+    private final Object[] _buffer;
+    private int _cursor = 0;
+    private int _filled = 0;
+    private int _index = 0;
+    private boolean _exhausted = false;
+
+    StreamTaskResultIterator(final StreamTaskResult<A> p_source, final StreamCursor p_stream, final int p_bufferSize) {
+        this._source = p_source;
+        this._stream = p_stream;
+        this._buffer = new Object[p_bufferSize];
+    }
+
+    private boolean ensure() {
+        if (_cursor < _filled) {
+            return true;
+        }
+        if (_exhausted) {
+            return false;
+        }
+        _cursor = 0;
+        _filled = _stream.pull(_buffer);
+        if (_filled <= 0) {
+            _filled = 0;
+            _exhausted = true;
+            _source.release(_stream);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public final synchronized boolean hasNext() {
+        return ensure();
+    }
+
+    @Override
+    public final synchronized A next() {
+        if (!ensure()) {
+            return null;
+        }
+        final Object element = _buffer[_cursor];
+        _buffer[_cursor] = null;
+        _cursor++;
+        _index++;
+        return (A) element;
+    }
+
+    @Override
+    public final synchronized Tuple<Integer, A> nextWithIndex() {
+        if (!ensure()) {
+            return null;
+        }
+        final int index = _index;
+        return new Tuple<Integer, A>(index, next());
+    }
+
+}
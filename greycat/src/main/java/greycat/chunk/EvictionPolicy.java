@@ -0,0 +1,49 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.chunk;
+
+/**
+ * Strategies available to select the chunk to evict when a chunk space is full.
+ */
+public class EvictionPolicy {
+
+    /**
+     * Least recently unmarked chunk first.
+     */
+    public static final byte LRU = 0;
+
+    /**
+     * Second chance: chunks marked again since they were last released are skipped once by the clock hand.
+     */
+    public static final byte CLOCK = 1;
+
+    /**
+     * Segmented LRU: re-used chunks and structural chunks ({@link ChunkType#WORLD_ORDER_CHUNK}, {@link ChunkType#SUPER_TIME_TREE_CHUNK}, {@link ChunkType#TIME_TREE_CHUNK}) are kept in a protected segment,
+     * evicted only once the probationary segment, filled by one-shot chunks, is empty.
+     */
+    public static final byte SEGMENTED_LRU = 2;
+
+    /**
+     * Tests if a chunk type is protected by the {@link #SEGMENTED_LRU} policy.
+     *
+     * @param type the type of chunk {@link ChunkType}
+     * @return true if chunks of this type are kept in the protected segment
+     */
+    public static boolean isProtected(final byte type) {
+        return type == ChunkType.WORLD_ORDER_CHUNK || type == ChunkType.SUPER_TIME_TREE_CHUNK || type == ChunkType.TIME_TREE_CHUNK;
+    }
+
+}
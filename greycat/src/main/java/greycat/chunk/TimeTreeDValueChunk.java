@@ -23,6 +23,16 @@ public interface TimeTreeDValueChunk extends TimeTreeEmbeddedChunk {
 
     void insertValue(long key, Double value);
 
+    /**
+     * Inserts a batch of values in one call.
+     *
+     * @param keys   keys sorted in ascending order, all greater than the keys already in the tree
+     * @param values values of the keys
+     * @param offset index of the first key to insert
+     * @param length number of keys to insert
+     */
+    void appendValues(long[] keys, double[] values, int offset, int length);
+
     void rangeValue(long startKey, long endKey, long maxElements, TreeDValueWalker walker);
 
 
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal;
+
+import greycat.*;
+import greycat.chunk.*;
+import greycat.struct.Buffer;
+import greycat.utility.LArray;
+
+/**
+ * Builds the chunks of new nodes in a private {@link ChunkSpace}, in the order of their keys, and saves it every time it is full.
+ * Chunks are created like {@link MWResolver#initNode(Node, long)} and the resolution of new timepoints would do,
+ * but without any lookup nor lock, and each timepoint of a node is its own state chunk.
+ *
+ * @ignore ts
+ */
+final class CoreBulkLoader implements BulkLoader {
+
+    private final Graph _graph;
+    private final long _world;
+    private final GenChunk _keyCalculator;
+    private final ChunkSpace _space;
+    private final int _capacity;
+    //indexes of the built chunks, released after the next save
+    private LArray _built = new LArray();
+
+    CoreBulkLoader(final Graph p_graph, final long p_world, final GenChunk p_keyCalculator, final ChunkSpace p_space, final int p_capacity) {
+        this._graph = p_graph;
+        this._world = p_world;
+        this._keyCalculator = p_keyCalculator;
+        this._space = p_space;
+        this._capacity = p_capacity;
+    }
+
+    @Override
+    public final long[] newIds(final int count) {
+        final long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = _keyCalculator.newKey();
+        }
+        return ids;
+    }
+
+    @Override
+    public final void load(final String nodeType, final long[] ids, final long[] times, final String[] attributes, final int[] types, final Object[] columns, final Callback<Boolean> callback) {
+        if (ids.length != times.length || attributes.length != types.length || attributes.length != columns.length) {
+            throw new RuntimeException("Bad API usage: columns of the bulk load do not have the same size");
+        }
+        final int[] hashes = new int[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            hashes[i] = _graph.resolver().stringToHash(attributes[i], true);
+        }
+        final long typeCode;
+        if (nodeType == null) {
+            typeCode = Constants.NULL_LONG;
+        } else if (nodeType.equals(CoreNodeValue.NAME)) {
+            throw new RuntimeException("Bad API usage: NodeValue can not be bulk loaded");
+        } else {
+            typeCode = _graph.resolver().stringToHash(nodeType, false);
+        }
+        final int[] order = new int[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (!isSorted(ids, times)) {
+            sort(order, ids, times, 0, order.length - 1);
+        }
+        loadFrom(0, order, typeCode, ids, times, hashes, types, columns, callback);
+    }
+
+    @Override
+    public final void free() {
+        _space.freeAll();
+    }
+
+    /**
+     * Builds the nodes from the given row, and saves the space every time the next node does not fit anymore.
+     */
+    private void loadFrom(final int start, final int[] order, final long typeCode, final long[] ids, final long[] times, final int[] hashes, final int[] types, final Object[] columns, final Callback<Boolean> callback) {
+        int row = start;
+        while (row < order.length) {
+            final long id = ids[order[row]];
+            int end = row + 1;
+            int timepoints = 1;
+            while (end < order.length && ids[order[end]] == id) {
+                if (times[order[end]] != times[order[end - 1]]) {
+                    timepoints++;
+                }
+                end++;
+            }
+            final int needed = chunks(timepoints);
+            if (needed > _capacity) {
+                throw new RuntimeException("Bad API usage: node " + id + " has too many timepoints for the capacity of the bulk loader");
+            }
+            if (_space.available() < needed) {
+                final int next = row;
+                flush(new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean result) {
+                        loadFrom(next, order, typeCode, ids, times, hashes, types, columns, callback);
+                    }
+                });
+                return;
+            }
+            loadNode(id, typeCode, row, end, order, times, hashes, types, columns);
+            row = end;
+        }
+        flush(callback);
+    }
+
+    /**
+     * @return upper bound of the number of chunks of a node, assuming time trees of the smallest capacity
+     */
+    private static int chunks(final int timepoints) {
+        final long subTreeCapacity = CoreConstants.TREE_SCALES[0];
+        return 2 + timepoints + (int) ((timepoints + subTreeCapacity - 1) / subTreeCapacity);
+    }
+
+    private void loadNode(final long id, final long typeCode, final int from, final int to, final int[] order, final long[] times, final int[] hashes, final int[] types, final Object[] columns) {
+        final WorldOrderChunk worldOrder = (WorldOrderChunk) create(ChunkType.WORLD_ORDER_CHUNK, 0, 0, id);
+        worldOrder.put(_world, times[order[from]]);
+        if (typeCode != Constants.NULL_LONG) {
+            worldOrder.setType(typeCode);
+        }
+        final SuperTimeTreeChunk superTimeTree = (SuperTimeTreeChunk) create(ChunkType.SUPER_TIME_TREE_CHUNK, _world, 0, id);
+        TimeTreeChunk timeTree = null;
+        StateChunk state = null;
+        for (int i = from; i < to; i++) {
+            final int row = order[i];
+            final long time = times[row];
+            if (state == null || state.time() != time) {
+                if (timeTree == null || timeTree.size() == timeTree.capacity()) {
+                    if (timeTree != null) {
+                        superTimeTree.insert(timeTree.time(), timeTree.size());
+                    }
+                    //sub trees grow with the number of sub trees, as when timepoints are inserted one by one
+                    timeTree = (TimeTreeChunk) create(ChunkType.TIME_TREE_CHUNK, _world, time, id);
+                    timeTree.setCapacity(superTimeTree.subTreeCapacity());
+                }
+                timeTree.insert(time);
+                final StateChunk previous = state;
+                state = (StateChunk) create(ChunkType.STATE_CHUNK, _world, time, id);
+                if (previous != null) {
+                    state.loadFrom(previous);
+                }
+            }
+            for (int j = 0; j < hashes.length; j++) {
+                final Object value = valueAt(columns[j], row);
+                if (value != null) {
+                    state.setAt(hashes[j], types[j], value);
+                }
+            }
+        }
+        superTimeTree.insert(timeTree.time(), timeTree.size());
+    }
+
+    private Chunk create(final byte type, final long world, final long time, final long id) {
+        final Chunk chunk = _space.createAndMark(type, world, time, id);
+        //dirty even if nothing is inserted, like the initial state of a node
+        _space.notifyUpdate(chunk.index());
+        _built.add(chunk.index());
+        return chunk;
+    }
+
+    private void flush(final Callback<Boolean> callback) {
+        final CoreBulkLoader selfPointer = this;
+        _space.save(false, false, null, new Callback<Buffer>() {
+            @Override
+            public void on(Buffer result) {
+                for (int i = 0; i < selfPointer._built.size(); i++) {
+                    selfPointer._space.unmark(selfPointer._built.get(i));
+                }
+                selfPointer._built = new LArray();
+                if (callback != null) {
+                    callback.on(true);
+                }
+            }
+        });
+    }
+
+    private static Object valueAt(final Object column, final int row) {
+        if (column instanceof double[]) {
+            return ((double[]) column)[row];
+        } else if (column instanceof long[]) {
+            return ((long[]) column)[row];
+        } else if (column instanceof int[]) {
+            return ((int[]) column)[row];
+        } else if (column instanceof boolean[]) {
+            return ((boolean[]) column)[row];
+        } else {
+            return ((Object[]) column)[row];
+        }
+    }
+
+    private static boolean isSorted(final long[] ids, final long[] times) {
+        for (int i = 1; i < ids.length; i++) {
+            if (compare(ids, times, i - 1, i) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(final long[] ids, final long[] times, final int left, final int right) {
+        if (ids[left] != ids[right]) {
+            return ids[left] < ids[right] ? -1 : 1;
+        }
+        if (times[left] != times[right]) {
+            return times[left] < times[right] ? -1 : 1;
+        }
+        //stable for rows of the same timepoint, later rows override earlier ones
+        return left < right ? -1 : (left == right ? 0 : 1);
+    }
+
+    /**
+     * Quicksort of the rows by node and time, recursing on the smallest partition only.
+     */
+    private static void sort(final int[] order, final long[] ids, final long[] times, int low, int high) {
+        while (high - low > 16) {
+            final int pivot = order[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(ids, times, order[i], pivot) < 0) {
+                    i++;
+                }
+                while (compare(ids, times, order[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    final int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (j - low < high - i) {
+                sort(order, ids, times, low, j);
+                low = i;
+            } else {
+                sort(order, ids, times, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            final int current = order[i];
+            int j = i - 1;
+            while (j >= low && compare(ids, times, order[j], current) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+
+}
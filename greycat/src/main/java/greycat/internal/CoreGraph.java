@@ -57,12 +57,16 @@ public class CoreGraph implements Graph {
     //general properties
     private final HashMap<String, Object> _properties = new HashMap<String, Object>();
 
-    public CoreGraph(final Storage p_storage, final long memorySize, final long batchSize, final Scheduler p_scheduler, final Plugin[] p_plugins, final boolean deepPriority) {
+    public CoreGraph(final Storage p_storage, final long memorySize, final long batchSize, final Scheduler p_scheduler, final MemoryFactory p_memoryFactory, final Plugin[] p_plugins, final boolean deepPriority) {
         //initiate the two registry
         _actionRegistry = new CoreActionRegistry();
         _nodeRegistry = new CoreNodeRegistry();
         _typeRegistry = new CoreTypeRegistry();
-        _memoryFactory = new HeapMemoryFactory();
+        if (p_memoryFactory != null) {
+            _memoryFactory = p_memoryFactory;
+        } else {
+            _memoryFactory = defaultMemoryFactory();
+        }
         this._isConnected = new AtomicBoolean(false);
         this._lock = new AtomicBoolean(false);
         this._plugins = p_plugins;
@@ -92,6 +96,12 @@ public class CoreGraph implements Graph {
                 return new CoreIndexAttribute(backend);
             }
         });
+        this._typeRegistry.getOrCreateDeclaration(CoreTimedIndexAttribute.NAME).setFactory(new TypeFactory() {
+            @Override
+            public Object wrap(final EStructArray backend) {
+                return new CoreTimedIndexAttribute(backend);
+            }
+        });
         this._typeRegistry.getOrCreateDeclaration(KDTree.NAME).setFactory(new TypeFactory() {
             @Override
             public Object wrap(final EStructArray backend) {
@@ -111,6 +121,12 @@ public class CoreGraph implements Graph {
                 return new CoreNodeIndex(world, time, id, graph);
             }
         });
+        this._nodeRegistry.getOrCreateDeclaration(CoreTimedNodeIndex.NAME).setFactory(new NodeFactory() {
+            @Override
+            public Node create(long world, long time, long id, Graph graph) {
+                return new CoreTimedNodeIndex(world, time, id, graph);
+            }
+        });
         this._nodeRegistry.getOrCreateDeclaration(CoreNodeValue.NAME).setFactory(new NodeFactory() {
             @Override
             public Node create(long world, long time, long id, Graph graph) {
@@ -324,6 +340,67 @@ public class CoreGraph implements Graph {
         this._resolver.lookupBatch(worlds, times, ids, callback);
     }
 
+    @Override
+    public final void batchInsert(final long world, final long[] ids, final long[] times, final String[] attributes, final double[][] columns, final Callback<Boolean> callback) {
+        if (!_isConnected.get()) {
+            throw new RuntimeException(CoreConstants.DISCONNECTED_ERROR);
+        }
+        if (ids.length != times.length || attributes.length != columns.length) {
+            throw new RuntimeException("Bad API usage, columns of the batch insert do not have the same size");
+        }
+        final int[] hashes = new int[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            hashes[i] = _resolver.stringToHash(attributes[i], true);
+        }
+        //split rows by node
+        final LArray starts = new LArray();
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                starts.add(i);
+            }
+        }
+        final int nbNodes = starts.size();
+        final long[] worlds = new long[nbNodes];
+        final long[] firstTimes = new long[nbNodes];
+        final long[] nodeIds = new long[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            final int start = (int) starts.get(i);
+            worlds[i] = world;
+            firstTimes[i] = times[start];
+            nodeIds[i] = ids[start];
+        }
+        final CoreGraph selfPointer = this;
+        _resolver.lookupBatch(worlds, firstTimes, nodeIds, new Callback<Node[]>() {
+            @Override
+            public void on(final Node[] nodes) {
+                boolean found = true;
+                for (int i = 0; i < nbNodes; i++) {
+                    if (nodes[i] == null) {
+                        found = false;
+                        continue;
+                    }
+                    final int start = (int) starts.get(i);
+                    final int end = (i + 1 < nbNodes) ? (int) starts.get(i + 1) : ids.length;
+                    final long[] nodeTimes = new long[end - start];
+                    System.arraycopy(times, start, nodeTimes, 0, nodeTimes.length);
+                    final double[][] nodeValues = new double[columns.length][];
+                    for (int j = 0; j < columns.length; j++) {
+                        nodeValues[j] = new double[nodeTimes.length];
+                        System.arraycopy(columns[j], start, nodeValues[j], 0, nodeTimes.length);
+                    }
+                    try {
+                        selfPointer._resolver.batchInsertAttributes(nodes[i], nodeTimes, hashes, nodeValues);
+                    } finally {
+                        nodes[i].free();
+                    }
+                }
+                if (callback != null) {
+                    callback.on(found);
+                }
+            }
+        });
+    }
+
     @Override
     public final void lookupAll(long world, long time, long[] ids, Callback<Node[]> callback) {
         if (!_isConnected.get()) {
@@ -454,30 +531,31 @@ public class CoreGraph implements Graph {
                                             }
                                             payloads.free();
                                             selfPointer._lock.set(true);
-                                            if (HashHelper.isDefined(callback)) {
-                                                if (_connectHooks == null || _connectHooks.size() == 0) {
+                                            if (_connectHooks == null || _connectHooks.size() == 0) {
+                                                if (HashHelper.isDefined(callback)) {
                                                     callback.on(noError);
-                                                } else {
-                                                    final Boolean finalNoError = noError;
-                                                    final int cbs_size = _connectHooks.size();
-                                                    final int[] cursor = new int[1];
-                                                    cursor[0] = 0;
-                                                    final Callback[] cbs = new Callback[1];
-                                                    cbs[0] = new Callback<Boolean>() {
-                                                        @Override
-                                                        public void on(final Boolean result) {
-                                                            cursor[0]++;
-                                                            if (cursor[0] < cbs_size) {
-                                                                final Callback<Callback<Boolean>> cb = _connectHooks.get(cursor[0]);
-                                                                cb.on(cbs[0]);
-                                                            } else {
-                                                                callback.on(finalNoError);
-                                                            }
-                                                        }
-                                                    };
-                                                    final Callback<Callback<Boolean>> cb = _connectHooks.get(cursor[0]);
-                                                    cb.on(cbs[0]);
                                                 }
+                                            } else {
+                                                //hooks also run without callback, they may restore state
+                                                final Boolean finalNoError = noError;
+                                                final int cbs_size = _connectHooks.size();
+                                                final int[] cursor = new int[1];
+                                                cursor[0] = 0;
+                                                final Callback[] cbs = new Callback[1];
+                                                cbs[0] = new Callback<Boolean>() {
+                                                    @Override
+                                                    public void on(final Boolean result) {
+                                                        cursor[0]++;
+                                                        if (cursor[0] < cbs_size) {
+                                                            final Callback<Callback<Boolean>> cb = _connectHooks.get(cursor[0]);
+                                                            cb.on(cbs[0]);
+                                                        } else if (HashHelper.isDefined(callback)) {
+                                                            callback.on(finalNoError);
+                                                        }
+                                                    }
+                                                };
+                                                final Callback<Callback<Boolean>> cb = _connectHooks.get(cursor[0]);
+                                                cb.on(cbs[0]);
                                             }
                                         } else {
                                             selfPointer._lock.set(true);
@@ -573,9 +651,39 @@ public class CoreGraph implements Graph {
         return new CoreQuery(this, _resolver);
     }
 
+    /**
+     * The default memory factory is the heap one, unless the {@code greycat.memory.factory} system property names another {@link MemoryFactory} class,
+     * which lets a whole test suite run on top of another chunk space.
+     * {@native ts
+     * return new greycat.internal.heap.HeapMemoryFactory();
+     * }
+     */
+    private static MemoryFactory defaultMemoryFactory() {
+        final String factoryName = System.getProperty("greycat.memory.factory");
+        if (factoryName != null && factoryName.length() > 0) {
+            try {
+                return (MemoryFactory) Class.forName(factoryName).newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Cannot create the memory factory " + factoryName, e);
+            }
+        }
+        return new HeapMemoryFactory();
+    }
+
+    /**
+     * @ignore ts
+     */
+    @Override
+    public final BulkLoader newBulkLoader(final long world, final int capacity) {
+        if (!_isConnected.get()) {
+            throw new RuntimeException(CoreConstants.DISCONNECTED_ERROR);
+        }
+        return new CoreBulkLoader(this, world, _nodeKeyCalculator, _memoryFactory.newSpace(capacity, -1, this, false), capacity);
+    }
+
     @Override
     public final void declareIndex(long world, String name, Callback<NodeIndex> callback, String... indexedAttributes) {
-        internal_index(world, Constants.BEGINNING_OF_TIME, name, false, new Callback<NodeIndex>() {
+        internal_index(world, Constants.BEGINNING_OF_TIME, name, CoreNodeIndex.NAME, new Callback<NodeIndex>() {
             @Override
             public void on(final NodeIndex nodeIndex) {
                 nodeIndex.setTimeSensitivity(-1, 0);
@@ -593,7 +701,7 @@ public class CoreGraph implements Graph {
 
     @Override
     public final void declareTimedIndex(long world, long originTime, String name, Callback<NodeIndex> callback, String... indexedAttributes) {
-        internal_index(world, originTime, name, false, new Callback<NodeIndex>() {
+        internal_index(world, originTime, name, CoreTimedNodeIndex.NAME, new Callback<NodeIndex>() {
             @Override
             public void on(final NodeIndex nodeIndex) {
                 nodeIndex.declareAttributes(new Callback() {
@@ -610,11 +718,15 @@ public class CoreGraph implements Graph {
 
     @Override
     public final synchronized void index(long world, long time, String name, Callback<NodeIndex> callback) {
-        internal_index(world, time, name, true, callback);
+        internal_index(world, time, name, null, callback);
     }
 
-    private void internal_index(long world, long time, String name, boolean ifExists, Callback<NodeIndex> callback) {
+    /**
+     * @param type node type of the index to create if it does not exist, null to only lookup an existing index
+     */
+    private void internal_index(long world, long time, String name, String type, Callback<NodeIndex> callback) {
         final CoreGraph selfPointer = this;
+        final boolean ifExists = type == null;
         final long indexNameCoded = this._resolver.stringToHash(name, true);
         this._resolver.lookup(world, CoreConstants.BEGINNING_OF_TIME, CoreConstants.END_OF_TIME, new Callback<Node>() {
             @Override
@@ -637,7 +749,11 @@ public class CoreGraph implements Graph {
                             globalIndexNodeUnsafe.free();
                             callback.on(null);
                         } else {
-                            final NodeIndex newIndexNode = (NodeIndex) selfPointer.newTypedNode(world, time, CoreNodeIndex.NAME);
+                            final NodeIndex newIndexNode = (NodeIndex) selfPointer.newTypedNode(world, time, type);
+                            if (type.equals(CoreTimedNodeIndex.NAME)) {
+                                //a single state holds the whole history of the index
+                                newIndexNode.setTimeSensitivity(-1, 0);
+                            }
                             //newIndexNode.getOrCreate(CoreConstants.INDEX_ATTRIBUTE, Type.RELATION_INDEXED);
                             indexId = newIndexNode.id();
                             globalIndexContent.put(indexNameCoded, indexId);
@@ -38,6 +38,11 @@ final class CoreNodeIndex extends BaseNode implements NodeIndex {
         ((Index) getAt(0)).declareAttributes(callback, attributeNames);
     }
 
+    @Override
+    public final void declareOrderedAttributes(Callback callback, String... attributeNames) {
+        ((Index) getAt(0)).declareOrderedAttributes(callback, attributeNames);
+    }
+
     @Override
     public final int size() {
         return ((Index) getAt(0)).size();
@@ -83,6 +88,26 @@ final class CoreNodeIndex extends BaseNode implements NodeIndex {
         return ((Index) getAt(0)).selectByQuery(query);
     }
 
+    @Override
+    public final long[] selectRange(String attributeName, String from, String to, int limit) {
+        return ((Index) getAt(0)).selectRange(attributeName, from, to, limit);
+    }
+
+    @Override
+    public final long[] selectPrefix(String attributeName, String prefix, int limit) {
+        return ((Index) getAt(0)).selectPrefix(attributeName, prefix, limit);
+    }
+
+    @Override
+    public final void findRange(Callback<Node[]> callback, long world, long time, String attributeName, String from, String to, int limit) {
+        ((Index) getAt(0)).findRange(callback, world, time, attributeName, from, to, limit);
+    }
+
+    @Override
+    public final void findPrefix(Callback<Node[]> callback, long world, long time, String attributeName, String prefix, int limit) {
+        ((Index) getAt(0)).findPrefix(callback, world, time, attributeName, prefix, limit);
+    }
+
     @Override
     public final int[] keys() {
         return ((Index) getAt(0)).keys();
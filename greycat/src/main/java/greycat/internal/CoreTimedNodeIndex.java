@@ -0,0 +1,135 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal;
+
+import greycat.*;
+import greycat.base.BaseNode;
+import greycat.internal.custom.CoreTimedIndexAttribute;
+import greycat.utility.HashHelper;
+
+/**
+ * Index created by {@link greycat.Graph#declareTimedIndex(long, long, String, Callback, String...)}.
+ * The node is time insensitive, its {@link CoreTimedIndexAttribute} keeps the validity interval of every indexed value,
+ * and the time of the node handle is used as the time of updates and queries.
+ */
+final class CoreTimedNodeIndex extends BaseNode implements NodeIndex {
+
+    static final String NAME = "TimedNodeIndex";
+
+    CoreTimedNodeIndex(long p_world, long p_time, long p_id, Graph p_graph) {
+        super(p_world, p_time, p_id, p_graph);
+    }
+
+    @Override
+    public final void init() {
+        getOrCreateAt(0, HashHelper.hash(CoreTimedIndexAttribute.NAME));
+    }
+
+    private CoreTimedIndexAttribute timedIndex() {
+        return (CoreTimedIndexAttribute) getAt(0);
+    }
+
+    @Override
+    public final void declareAttributes(Callback callback, String... attributeNames) {
+        timedIndex().declareAttributes(callback, attributeNames);
+    }
+
+    @Override
+    public final void declareOrderedAttributes(Callback callback, String... attributeNames) {
+        throw new RuntimeException("Bad API usage: ordered attributes are not supported by timed indexes");
+    }
+
+    @Override
+    public final int size() {
+        return timedIndex().size(_time);
+    }
+
+    @Override
+    public final long[] all() {
+        return timedIndex().all(_time);
+    }
+
+    @Override
+    public final Index update(Node node) {
+        timedIndex().update(node, _time);
+        return this;
+    }
+
+    @Override
+    public final Index unindex(Node node) {
+        timedIndex().unindex(node, _time);
+        return this;
+    }
+
+    @Override
+    public final Index clear() {
+        timedIndex().clear(_time);
+        return this;
+    }
+
+    @Override
+    public final void find(Callback<Node[]> callback, long world, long time, String... params) {
+        timedIndex().find(callback, world, time, params);
+    }
+
+    @Override
+    public final void findByQuery(Query query, Callback<Node[]> callback) {
+        timedIndex().findByQuery(query, callback);
+    }
+
+    @Override
+    public final long[] select(String... params) {
+        return timedIndex().select(_time, params);
+    }
+
+    @Override
+    public final long[] selectByQuery(Query query) {
+        if (query.time() == Constants.NULL_LONG) {
+            return timedIndex().selectByQuery(query, _time);
+        }
+        return timedIndex().selectByQuery(query, query.time());
+    }
+
+    @Override
+    public final long[] selectRange(String attributeName, String from, String to, int limit) {
+        throw new RuntimeException("Bad API usage: ordered attributes are not supported by timed indexes");
+    }
+
+    @Override
+    public final long[] selectPrefix(String attributeName, String prefix, int limit) {
+        throw new RuntimeException("Bad API usage: ordered attributes are not supported by timed indexes");
+    }
+
+    @Override
+    public final void findRange(Callback<Node[]> callback, long world, long time, String attributeName, String from, String to, int limit) {
+        throw new RuntimeException("Bad API usage: ordered attributes are not supported by timed indexes");
+    }
+
+    @Override
+    public final void findPrefix(Callback<Node[]> callback, long world, long time, String attributeName, String prefix, int limit) {
+        throw new RuntimeException("Bad API usage: ordered attributes are not supported by timed indexes");
+    }
+
+    @Override
+    public final int[] keys() {
+        return timedIndex().keys();
+    }
+
+    @Override
+    public final void findFrom(Callback<Node[]> callback, String... params) {
+        timedIndex().find(callback, _world, _time, params);
+    }
+}
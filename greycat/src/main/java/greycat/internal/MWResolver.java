@@ -72,6 +72,8 @@ final class MWResolver implements Resolver {
 
     private static long NodeValueType = -1834056593;
 
+    private static int NodeValueAttribute = HashHelper.hash("value");
+
     @Override
     public final void initNode(final Node node, final long codeType) {
         final BaseNode casted = (BaseNode) node;
@@ -268,6 +270,31 @@ final class MWResolver implements Resolver {
         if (times.length != values.length) {
             throw new RuntimeException("Bad API usage, times and values array should have the same size");
         }
+        final WorldOrderChunk worldOrderChunk = (WorldOrderChunk) this._space.get(((BaseNode) target)._index_worldOrder);
+        if (worldOrderChunk.type() != NodeValueType) {
+            throw new RuntimeException("Bad API usage, batch insert only valid for NodeValue");
+        }
+        batchInsertAttributes(target, times, new int[]{NodeValueAttribute}, new double[][]{values});
+    }
+
+    @Override
+    public void batchInsertAttributes(final Node target, final long[] times, final int[] attributes, final double[][] values) {
+        if (attributes.length != values.length) {
+            throw new RuntimeException("Bad API usage, attributes and values array should have the same size");
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].length != times.length) {
+                throw new RuntimeException("Bad API usage, times and values array should have the same size");
+            }
+        }
+        for (int i = 1; i < times.length; i++) {
+            if (times[i] <= times[i - 1]) {
+                throw new RuntimeException("Bad API usage, times of a batch insert should be sorted");
+            }
+        }
+        if (times.length == 0) {
+            return;
+        }
         final BaseNode castedNode = (BaseNode) target;
         castedNode.cacheLock();
         if (castedNode._dead) {
@@ -275,111 +302,92 @@ final class MWResolver implements Resolver {
             throw new RuntimeException(CoreConstants.DEAD_NODE_ERROR + " node id: " + castedNode.id());
         }
         final WorldOrderChunk worldOrderChunk = (WorldOrderChunk) this._space.get(castedNode._index_worldOrder);
-        if (worldOrderChunk.type() != NodeValueType) {
+        if (worldOrderChunk.type() == NodeValueType) {
+            if (attributes.length != 1 || attributes[0] != NodeValueAttribute) {
+                castedNode.cacheUnlock();
+                throw new RuntimeException("Bad API usage, NodeValue cannot contains other attributes");
+            }
+            worldOrderChunk.lock();
+            final boolean appended;
+            try {
+                appended = internal_appendValues(castedNode, worldOrderChunk, times, values[0]);
+            } finally {
+                worldOrderChunk.unlock();
+                castedNode.cacheUnlock();
+            }
+            if (appended) {
+                return;
+            }
+        } else {
             castedNode.cacheUnlock();
-            throw new RuntimeException("Bad API usage, batch insert only valid for NodeValue");
         }
-        worldOrderChunk.lock();
-        //compute time sensitivity
-        final SuperTimeTreeChunk superTimeTree = (SuperTimeTreeChunk) this._space.get(castedNode._index_superTimeTree);
-
-
-        final long timeSensitivity = superTimeTree.timeSensitivity();
-
-
-        /*
-        if (timeSensitivity != 0 && timeSensitivity != Constants.NULL_LONG) {
-            if (timeSensitivity < 0) {
-                nodeTime = previousTime;
-            } else {
-                long timeSensitivityOffset = superTimeTree.timeSensitivityOffset();
-                if (timeSensitivityOffset == Constants.NULL_LONG) {
-                    timeSensitivityOffset = 0;
-                }
-                nodeTime = nodeTime - (nodeTime % timeSensitivity) + timeSensitivityOffset;
-            }
-        }*/
-
-        /*
-        StateChunk clonedState = null;
-        if (castedNode._index_stateChunk != -1) {
-            if (nodeTime != previousTime || nodeWorld != previousWorld) {
-                try {
-                    clonedState = (StateChunk) this._space.createAndMark(ChunkType.STATE_CHUNK, nodeWorld, nodeTime, nodeId);
-                    clonedState.loadFrom(previouStateChunk);
-                } catch (Exception e) {
-                    nodeWorldOrder.unlock();
-                    castedNode.cacheUnlock();
-                    throw e;
+        //nominal case, one state per timepoint, created in ascending order so that the time trees in use stay in cache
+        final BaseNode cursor = (BaseNode) castedNode.graph().cloneNode(castedNode);
+        try {
+            for (int i = 0; i < times.length; i++) {
+                //the cursor is aligned on the previous timepoint, forces the resolution of the next one
+                cursor._world_magic = Constants.NULL_LONG;
+                cursor._super_time_magic = Constants.NULL_LONG;
+                cursor._time_magic = Constants.NULL_LONG;
+                final NodeState state = newState(cursor, cursor.world(), times[i]);
+                for (int j = 0; j < attributes.length; j++) {
+                    state.setAt(attributes[j], Type.DOUBLE, values[j][i]);
                 }
-                castedNode._index_stateChunk = clonedState.index();
-                _space.unmark(previouStateChunk.index());
-            } else {
-                clonedState = previouStateChunk;
             }
+        } finally {
+            cursor.free();
         }
-        castedNode._world_magic = -1;
-        castedNode._super_time_magic = -1;
-        castedNode._time_magic = -1;
+    }
 
-        byte subTreeType = ChunkType.TIME_TREE_CHUNK;
-        if (castedNode._index_stateChunk == -1) {
-            subTreeType = ChunkType.TIME_TREE_DVALUE_CHUNK;
+    /**
+     * Appends values after the last timepoint of a NodeValue, filling its time trees in bulk.
+     * Both locks of the node have to be held.
+     *
+     * @return false if the values can not be appended, because they are not after the last timepoint, the node has no time tree in its world yet, or the trees are not in cache
+     */
+    private boolean internal_appendValues(final BaseNode castedNode, final WorldOrderChunk nodeWorldOrder, final long[] times, final double[] values) {
+        final long nodeWorld = castedNode.world();
+        final long nodeId = castedNode.id();
+        if (nodeWorldOrder.get(nodeWorld) == CoreConstants.NULL_LONG) {
+            return false;
         }
-        if (previousWorld == nodeWorld || nodeWorldOrder.get(nodeWorld) != CoreConstants.NULL_LONG) {
-            //final TimeTreeChunk superTimeTree = (TimeTreeChunk) this._space.get(castedNode._index_superTimeTree);
-            final TimeTreeChunk timeTree = (TimeTreeChunk) this._space.get(castedNode._index_timeTree);
-            final long subTreeCapacity = timeTree.capacity();
-            if (timeTree.size() < subTreeCapacity) {
-                //easy, just insert the new timeslot
-                castedNode._index_timeTree_offset = timeTree.insert(nodeTime);
-                if (superTimeTree.lastKey() == timeTree.time()) {
-                    superTimeTree.setLastValue(timeTree.size());
-                } else {
-                    castedNode.cacheUnlock();
-                    throw new RuntimeException("GreyCat internal error");
-                }
-            } else {
-                //are we the last last one?
-                if (superTimeTree.lastKey() == timeTree.time()) {
-                    TimeTreeChunk newTimeTree = (TimeTreeChunk) this._space.createAndMark(subTreeType, nodeWorld, nodeTime, nodeId);
-                    long allowedSubTreeCapacity = superTimeTree.subTreeCapacity();
-                    castedNode._index_timeTree_offset = newTimeTree.insert(nodeTime);
-                    newTimeTree.setCapacity(allowedSubTreeCapacity);
-                    superTimeTree.insert(nodeTime, allowedSubTreeCapacity);
-                    _space.unmark(castedNode._index_timeTree);
-                    castedNode._index_timeTree = newTimeTree.index();
-                } else {
-                    //insertion in past, oversize tree
-                    castedNode._index_timeTree_offset = timeTree.insert(nodeTime);
-                    timeTree.setCapacity(subTreeCapacity + 1);
-                    superTimeTree.insert(timeTree.time(), subTreeCapacity + 1);
-                }
+        final SuperTimeTreeChunk superTimeTree = (SuperTimeTreeChunk) this._space.getAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, nodeWorld, 0, nodeId);
+        if (superTimeTree == null) {
+            return false;
+        }
+        final long timeSensitivity = superTimeTree.timeSensitivity();
+        TimeTreeDValueChunk timeTree = null;
+        if (timeSensitivity == 0 || timeSensitivity == Constants.NULL_LONG) {
+            timeTree = (TimeTreeDValueChunk) this._space.getAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, nodeWorld, superTimeTree.lastKey(), nodeId);
+        }
+        if (timeTree == null || times[0] <= timeTree.max()) {
+            if (timeTree != null) {
+                _space.unmark(timeTree.index());
             }
-        } else {
-            //create a new node superTimeTree
-            SuperTimeTreeChunk newSuperTimeTree = (SuperTimeTreeChunk) this._space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, nodeWorld, 0, nodeId);
-            long subTreeCapacity = superTimeTree.subTreeCapacity();
-            newSuperTimeTree.insert(nodeTime, subTreeCapacity);
-            //create a new node timeTree
-            TimeTreeChunk newTimeTree = (TimeTreeChunk) this._space.createAndMark(subTreeType, nodeWorld, nodeTime, nodeId);
-            castedNode._index_timeTree_offset = newTimeTree.insert(nodeTime);
-            newTimeTree.setCapacity(subTreeCapacity);
-            //insert into node world order
-            nodeWorldOrder.put(nodeWorld, nodeTime);
-            //let's store the new state if necessary
-            _space.unmark(castedNode._index_timeTree);
-            _space.unmark(castedNode._index_superTimeTree);
-            castedNode._index_timeTree = newTimeTree.index();
-            castedNode._index_superTimeTree = newSuperTimeTree.index();
+            _space.unmark(superTimeTree.index());
+            return false;
         }
-        if (castedNode._index_stateChunk == -1) {
-            clonedState = ((TimeTreeEmbeddedChunk) _space.get(castedNode._index_timeTree)).state(castedNode._index_timeTree_offset);
+        int offset = 0;
+        while (offset < times.length) {
+            long available = timeTree.capacity() - timeTree.size();
+            if (available <= 0) {
+                final long subTreeCapacity = superTimeTree.subTreeCapacity();
+                final TimeTreeDValueChunk newTimeTree = (TimeTreeDValueChunk) this._space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, nodeWorld, times[offset], nodeId);
+                newTimeTree.setGroup(nodeWorldOrder.group());
+                newTimeTree.setCapacity(subTreeCapacity);
+                superTimeTree.insert(times[offset], 0);
+                _space.unmark(timeTree.index());
+                timeTree = newTimeTree;
+                available = subTreeCapacity;
+            }
+            final int length = (int) Math.min(available, times.length - offset);
+            timeTree.appendValues(times, values, offset, length);
+            superTimeTree.setLastValue(timeTree.size());
+            offset = offset + length;
         }
-        nodeWorldOrder.unlock();
-        castedNode.cacheUnlock();
-        return clonedState;
-        */
+        _space.unmark(timeTree.index());
+        _space.unmark(superTimeTree.index());
+        return true;
     }
 
     @Override
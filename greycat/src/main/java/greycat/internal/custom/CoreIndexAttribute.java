@@ -27,6 +27,8 @@ public class CoreIndexAttribute extends BaseCustomTypeSingle implements Index {
     private static final int P_MAP = 0;
     private static final int R_MAP = 1;
     private static final int HASHES = 2;
+    private static final int ORDERED_HASHES = 3;
+    private static final int ORDERED_TREES = 4;
 
     public static final String NAME = "INDEX";
 
@@ -54,9 +56,89 @@ public class CoreIndexAttribute extends BaseCustomTypeSingle implements Index {
         }
     }
 
+    /**
+     * Declares attributes ordered by a {@link OrderedIndexTree}, in addition to the hashed ones, to select nodes by range, prefix or top-k.
+     * Like {@link #declareAttributes(Callback, String...)}, it has to be called before indexing nodes:
+     * attributes still declared keep their entries, newly declared ones only order the nodes updated afterwards.
+     */
+    @Override
+    public final void declareOrderedAttributes(Callback callback, String... attributeNames) {
+        final IntArray orderedHashes = (IntArray) getOrCreateAt(ORDERED_HASHES, Type.INT_ARRAY);
+        final int[] newHashes = new int[attributeNames.length];
+        for (int i = 0; i < attributeNames.length; i++) {
+            newHashes[i] = HashHelper.hash(attributeNames[i]);
+        }
+        boolean changed = orderedHashes.size() != newHashes.length;
+        for (int i = 0; !changed && i < newHashes.length; i++) {
+            changed = orderedHashes.get(i) != newHashes[i];
+        }
+        if (changed) {
+            final int[] previousHashes = orderedHashes.extract();
+            final Object[][] keptKeys = new Object[newHashes.length][];
+            final long[][] keptIds = new long[newHashes.length][];
+            for (int i = 0; i < newHashes.length; i++) {
+                for (int j = 0; j < previousHashes.length; j++) {
+                    if (previousHashes[j] == newHashes[i]) {
+                        final OrderedIndexTree previous = new OrderedIndexTree(_backend, ((IntArray) getAt(ORDERED_TREES)).get(j));
+                        keptKeys[i] = new Object[previous.size()];
+                        keptIds[i] = new long[previous.size()];
+                        previous.export(keptKeys[i], keptIds[i]);
+                        break;
+                    }
+                }
+            }
+            orderedHashes.initWith(newHashes);
+            resetOrderedTrees();
+            final IntArray trees = (IntArray) getAt(ORDERED_TREES);
+            for (int i = 0; i < newHashes.length; i++) {
+                if (keptIds[i] != null) {
+                    final OrderedIndexTree tree = new OrderedIndexTree(_backend, trees.get(i));
+                    for (int j = 0; j < keptIds[i].length; j++) {
+                        tree.update(keptKeys[i][j], keptIds[i][j]);
+                    }
+                }
+            }
+        }
+        if (callback != null) {
+            callback.on(this);
+        }
+    }
+
+    private void resetOrderedTrees() {
+        //trees are the only structs after the definition one
+        while (_backend.size() > 1) {
+            _backend.drop(_backend.estruct(_backend.size() - 1));
+        }
+        final IntArray orderedHashes = (IntArray) getAt(ORDERED_HASHES);
+        if (orderedHashes != null) {
+            final int[] trees = new int[orderedHashes.size()];
+            for (int i = 0; i < trees.length; i++) {
+                trees[i] = OrderedIndexTree.create(_backend);
+            }
+            ((IntArray) getOrCreateAt(ORDERED_TREES, Type.INT_ARRAY)).initWith(trees);
+        }
+    }
+
+    private OrderedIndexTree orderedTree(final String attributeName) {
+        final IntArray orderedHashes = (IntArray) getAt(ORDERED_HASHES);
+        if (orderedHashes != null) {
+            final int hash = HashHelper.hash(attributeName);
+            for (int i = 0; i < orderedHashes.size(); i++) {
+                if (orderedHashes.get(i) == hash) {
+                    return new OrderedIndexTree(_backend, ((IntArray) getAt(ORDERED_TREES)).get(i));
+                }
+            }
+        }
+        throw new RuntimeException("Bad API usage: attribute " + attributeName + " is not declared as ordered in this index");
+    }
+
     @Override
     public final int size() {
-        return ((LongLongArrayMap) getAt(P_MAP)).size();
+        final LongLongArrayMap l_map = (LongLongArrayMap) getAt(P_MAP);
+        if (l_map == null) {
+            return 0;
+        }
+        return l_map.size();
     }
 
     @Override
@@ -80,35 +162,71 @@ public class CoreIndexAttribute extends BaseCustomTypeSingle implements Index {
 
     @Override
     public final Index update(final Node node) {
-        final LongLongArrayMap relationIndexed = (LongLongArrayMap) getAt(P_MAP);
-        final LongLongMap reverseMap = (LongLongMap) getAt(R_MAP);
-        final IntArray hashes = (IntArray) getAt(HASHES);
-        final Query flatQuery = node.graph().newQuery();
         final NodeState toIndexNodeState = node.graph().resolver().resolveState(node);
+        //ordered keys are computed first, a value rejected by a tree leaves the index unchanged
+        final IntArray orderedHashes = (IntArray) getAt(ORDERED_HASHES);
+        OrderedIndexTree[] orderedTrees = null;
+        Object[] orderedKeys = null;
+        if (orderedHashes != null) {
+            final IntArray trees = (IntArray) getAt(ORDERED_TREES);
+            orderedTrees = new OrderedIndexTree[orderedHashes.size()];
+            orderedKeys = new Object[orderedHashes.size()];
+            for (int i = 0; i < orderedTrees.length; i++) {
+                orderedTrees[i] = new OrderedIndexTree(_backend, trees.get(i));
+                orderedKeys[i] = orderedTrees[i].toKey(toIndexNodeState.getAt(orderedHashes.get(i)));
+            }
+        }
+        final IntArray hashes = (IntArray) getAt(HASHES);
+        if (hashes != null) {
+            final LongLongArrayMap relationIndexed = (LongLongArrayMap) getOrCreateAt(P_MAP, Type.LONG_TO_LONG_ARRAY_MAP);
+            final LongLongMap reverseMap = (LongLongMap) getOrCreateAt(R_MAP, Type.LONG_TO_LONG_MAP);
+            final long newHash = hashOf(node.graph(), toIndexNodeState, hashes);
+            final long prevHash = reverseMap.get(node.id());
+            relationIndexed.delete(prevHash, node.id());
+            relationIndexed.put(newHash, node.id());
+            reverseMap.put(node.id(), newHash);
+        }
+        if (orderedTrees != null) {
+            for (int i = 0; i < orderedTrees.length; i++) {
+                orderedTrees[i].update(orderedKeys[i], node.id());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Computes the key of a node state in an index, as the hash of the query selecting its indexed values.
+     */
+    static long hashOf(final Graph g, final NodeState state, final IntArray hashes) {
+        final Query flatQuery = g.newQuery();
         for (int i = 0; i < hashes.size(); i++) {
             final int hash = hashes.get(i);
-            final Object attValue = toIndexNodeState.getAt(hash);
+            final Object attValue = state.getAt(hash);
             if (attValue != null) {
                 flatQuery.addRaw(hash, attValue.toString());
             } else {
                 flatQuery.addRaw(hash, null);
             }
         }
-        final long newHash = flatQuery.hash();
-        final long prevHash = reverseMap.get(node.id());
-        relationIndexed.delete(prevHash, node.id());
-        relationIndexed.put(newHash, node.id());
-        reverseMap.put(node.id(), newHash);
-        return this;
+        return flatQuery.hash();
     }
 
     @Override
     public final Index unindex(final Node node) {
         final LongLongArrayMap relationIndexed = (LongLongArrayMap) getAt(P_MAP);
         final LongLongMap reverseMap = (LongLongMap) getAt(R_MAP);
-        final long prevHash = reverseMap.get(node.id());
-        relationIndexed.delete(prevHash, node.id());
-        reverseMap.remove(node.id());
+        if (reverseMap != null) {
+            final long prevHash = reverseMap.get(node.id());
+            relationIndexed.delete(prevHash, node.id());
+            reverseMap.remove(node.id());
+        }
+        final IntArray orderedHashes = (IntArray) getAt(ORDERED_HASHES);
+        if (orderedHashes != null) {
+            final IntArray trees = (IntArray) getAt(ORDERED_TREES);
+            for (int i = 0; i < orderedHashes.size(); i++) {
+                new OrderedIndexTree(_backend, trees.get(i)).remove(node.id());
+            }
+        }
         return this;
     }
 
@@ -116,6 +234,7 @@ public class CoreIndexAttribute extends BaseCustomTypeSingle implements Index {
     public final Index clear() {
         setAt(P_MAP, Type.LONG_TO_LONG_ARRAY_MAP, null);
         setAt(R_MAP, Type.LONG_TO_LONG_MAP, null);
+        resetOrderedTrees();
         return this;
     }
 
@@ -147,8 +266,13 @@ public class CoreIndexAttribute extends BaseCustomTypeSingle implements Index {
     @Override
     public final void findByQuery(Query query, Callback<Node[]> callback) {
         final LongLongArrayMap relationIndexed = (LongLongArrayMap) getAt(P_MAP);
-        final Graph g = _backend.graph();
-        final long[] foundIds = relationIndexed.get(query.hash());
+        lookupExact(_backend.graph(), query, relationIndexed.get(query.hash()), callback);
+    }
+
+    /**
+     * Resolves the nodes selected by the hash of a query, and keeps only the ones exactly matching the query to discard hash collisions.
+     */
+    static void lookupExact(final Graph g, final Query query, final long[] foundIds, final Callback<Node[]> callback) {
         if (foundIds == null) {
             callback.on(new BaseNode[0]);
         } else {
@@ -233,6 +357,26 @@ public class CoreIndexAttribute extends BaseCustomTypeSingle implements Index {
         return relationIndexed.get(query.hash());
     }
 
+    @Override
+    public final long[] selectRange(String attributeName, String from, String to, int limit) {
+        return orderedTree(attributeName).range(from, to, limit);
+    }
+
+    @Override
+    public final long[] selectPrefix(String attributeName, String prefix, int limit) {
+        return orderedTree(attributeName).prefix(prefix, limit);
+    }
+
+    @Override
+    public final void findRange(Callback<Node[]> callback, long world, long time, String attributeName, String from, String to, int limit) {
+        _backend.graph().lookupAll(world, time, selectRange(attributeName, from, to, limit), callback);
+    }
+
+    @Override
+    public final void findPrefix(Callback<Node[]> callback, long world, long time, String attributeName, String prefix, int limit) {
+        _backend.graph().lookupAll(world, time, selectPrefix(attributeName, prefix, limit), callback);
+    }
+
     @Override
     public final int[] keys() {
         final IntArray hashes = (IntArray) getAt(HASHES);
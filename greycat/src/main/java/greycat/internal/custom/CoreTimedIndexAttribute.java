@@ -0,0 +1,321 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.custom;
+
+import greycat.*;
+import greycat.base.BaseCustomTypeSingle;
+import greycat.struct.*;
+import greycat.utility.HashHelper;
+import greycat.utility.LArray;
+
+/**
+ * Index keeping the history of its content in a single state: every indexed value of a node is an entry valid over an interval of time.
+ * An update at time t splits the entry of the node valid at t and starts a new one from t, so that the storage grows with the number of changes
+ * instead of copying the whole index at every timepoint.
+ * Queries at time t only consider the entries such that from &lt;= t &lt; to.
+ * The open entry of every node is also kept aside with the last time at which an entry starts or ends,
+ * so that {@link #all(long)} and {@link #size(long)} from that time on only visit the nodes currently indexed.
+ */
+public class CoreTimedIndexAttribute extends BaseCustomTypeSingle {
+
+    //attributes of the definition struct
+    private static final int HASHES = 0;
+    private static final int BY_KEY = 1;
+    private static final int BY_NODE = 2;
+    private static final int CURRENT = 3;
+    private static final int LAST_CHANGE = 4;
+
+    //attributes of the entries
+    private static final int E_ID = 0;
+    private static final int E_KEY = 1;
+    private static final int E_FROM = 2;
+    private static final int E_TO = 3;
+
+    public static final String NAME = "TIMED_INDEX";
+
+    public CoreTimedIndexAttribute(final EStructArray p_backend) {
+        super(p_backend);
+    }
+
+    public final void declareAttributes(Callback callback, String... attributeNames) {
+        getOrCreateAt(BY_KEY, Type.LONG_TO_LONG_ARRAY_MAP);
+        getOrCreateAt(BY_NODE, Type.LONG_TO_LONG_ARRAY_MAP);
+        getOrCreateAt(CURRENT, Type.LONG_TO_LONG_MAP);
+        final IntArray hashes = (IntArray) getOrCreateAt(HASHES, Type.INT_ARRAY);
+        if (hashes.size() != attributeNames.length) {
+            hashes.init(attributeNames.length);
+        }
+        for (int i = 0; i < attributeNames.length; i++) {
+            int hash = HashHelper.hash(attributeNames[i]);
+            if (hashes.get(i) != hash) {
+                hashes.set(i, hash);
+            }
+        }
+        if (callback != null) {
+            callback.on(this);
+        }
+    }
+
+    public final int size(final long time) {
+        final LongLongMap current = current(time);
+        if (current != null) {
+            return current.size();
+        }
+        int size = 0;
+        for (int i = 1; i < _backend.size(); i++) {
+            if (isValid(_backend.estruct(i), time)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param time time of the snapshot
+     * @return ids of the nodes indexed at the given time
+     */
+    public final long[] all(final long time) {
+        final LArray collected = new LArray();
+        final LongLongMap current = current(time);
+        if (current != null) {
+            current.each(new LongLongMapCallBack() {
+                @Override
+                public void on(long key, long value) {
+                    collected.add(key);
+                }
+            });
+            return collected.all();
+        }
+        for (int i = 1; i < _backend.size(); i++) {
+            final EStruct entry = _backend.estruct(i);
+            if (isValid(entry, time)) {
+                collected.add(id(entry));
+            }
+        }
+        return collected.all();
+    }
+
+    /**
+     * Indexes the current values of a node from the given time, until the next change of the node in the index.
+     */
+    public final void update(final Node node, final long time) {
+        final LongLongArrayMap byKey = (LongLongArrayMap) getAt(BY_KEY);
+        final LongLongArrayMap byNode = (LongLongArrayMap) getAt(BY_NODE);
+        final long key = CoreIndexAttribute.hashOf(node.graph(), node.graph().resolver().resolveState(node), (IntArray) getAt(HASHES));
+        final long[] entries = byNode.get(node.id());
+        long nextFrom = Constants.END_OF_TIME;
+        for (int i = 0; i < entries.length; i++) {
+            final EStruct entry = _backend.estruct((int) entries[i]);
+            if (isValid(entry, time)) {
+                if (key(entry) == key) {
+                    //unchanged
+                    return;
+                }
+                if (from(entry) == time) {
+                    byKey.delete(key(entry), entries[i]);
+                    entry.setAt(E_KEY, Type.LONG, key);
+                    byKey.put(key, entries[i]);
+                } else {
+                    final long to = (Long) entry.getAt(E_TO);
+                    entry.setAt(E_TO, Type.LONG, time);
+                    //the new entry takes over the open one, if any
+                    newEntry(byKey, byNode, node.id(), key, time, to);
+                }
+                return;
+            }
+            final long entryFrom = from(entry);
+            if (entryFrom > time && entryFrom < nextFrom) {
+                nextFrom = entryFrom;
+            }
+        }
+        //not indexed at this time, valid until the node is indexed again
+        newEntry(byKey, byNode, node.id(), key, time, nextFrom);
+    }
+
+    /**
+     * Removes a node from the index from the given time, until the next change of the node in the index.
+     */
+    public final void unindex(final Node node, final long time) {
+        final LongLongArrayMap byNode = (LongLongArrayMap) getAt(BY_NODE);
+        if (byNode != null) {
+            final long[] entries = byNode.get(node.id());
+            for (int i = 0; i < entries.length; i++) {
+                close(byNode, node.id(), entries[i], time);
+            }
+        }
+    }
+
+    /**
+     * Removes all nodes from the index from the given time.
+     */
+    public final void clear(final long time) {
+        final LongLongArrayMap byNode = (LongLongArrayMap) getAt(BY_NODE);
+        if (byNode == null) {
+            return;
+        }
+        final LArray nodes = new LArray();
+        final LArray entries = new LArray();
+        byNode.each(new LongLongArrayMapCallBack() {
+            @Override
+            public void on(long key, long value) {
+                nodes.add(key);
+                entries.add(value);
+            }
+        });
+        for (int i = 0; i < nodes.size(); i++) {
+            close(byNode, nodes.get(i), entries.get(i), time);
+        }
+    }
+
+    public final void find(Callback<Node[]> callback, long world, long time, String... params) {
+        if (params == null || params.length == 0) {
+            _backend.graph().lookupAll(world, time, all(time), callback);
+        } else {
+            final Query queryObj = _backend.graph().newQuery();
+            queryObj.setWorld(world);
+            queryObj.setTime(time);
+            fillQuery(queryObj, params);
+            findByQuery(queryObj, callback);
+        }
+    }
+
+    public final void findByQuery(Query query, Callback<Node[]> callback) {
+        CoreIndexAttribute.lookupExact(_backend.graph(), query, selectByQuery(query, query.time()), callback);
+    }
+
+    public final long[] select(long time, String... params) {
+        final Query queryObj = _backend.graph().newQuery();
+        fillQuery(queryObj, params);
+        return selectByKey(queryObj.hash(), time);
+    }
+
+    public final long[] selectByQuery(Query query, long time) {
+        return selectByKey(query.hash(), time);
+    }
+
+    public final int[] keys() {
+        final IntArray hashes = (IntArray) getAt(HASHES);
+        if (hashes == null) {
+            return new int[0];
+        }
+        return hashes.extract();
+    }
+
+    private void fillQuery(final Query query, final String[] params) {
+        final IntArray hashes = (IntArray) getAt(HASHES);
+        final int expected = hashes == null ? 0 : hashes.size();
+        if (params.length != expected) {
+            throw new RuntimeException("Bad API usage: number of parameters in the query differs from index declaration. Expected " + expected + " parameters, received " + params.length);
+        }
+        for (int i = 0; i < params.length; i++) {
+            query.addRaw(hashes.get(i), params[i]);
+        }
+    }
+
+    private long[] selectByKey(final long key, final long time) {
+        final LongLongArrayMap byKey = (LongLongArrayMap) getAt(BY_KEY);
+        if (byKey == null) {
+            return new long[0];
+        }
+        final long[] entries = byKey.get(key);
+        final LArray collected = new LArray();
+        for (int i = 0; i < entries.length; i++) {
+            final EStruct entry = _backend.estruct((int) entries[i]);
+            if (isValid(entry, time)) {
+                collected.add(id(entry));
+            }
+        }
+        return collected.all();
+    }
+
+    private void close(final LongLongArrayMap byNode, final long nodeId, final long entryId, final long time) {
+        final EStruct entry = _backend.estruct((int) entryId);
+        if (!isValid(entry, time)) {
+            return;
+        }
+        if ((Long) entry.getAt(E_TO) == Constants.END_OF_TIME) {
+            final LongLongMap current = (LongLongMap) getAt(CURRENT);
+            if (current != null) {
+                current.remove(nodeId);
+            }
+        }
+        changed(time);
+        if (from(entry) < time) {
+            entry.setAt(E_TO, Type.LONG, time);
+        } else {
+            //never visible, entries are not dropped to keep the ids of the others stable
+            ((LongLongArrayMap) getAt(BY_KEY)).delete(key(entry), entryId);
+            byNode.delete(nodeId, entryId);
+            entry.setAt(E_TO, Type.LONG, time);
+        }
+    }
+
+    private void newEntry(final LongLongArrayMap byKey, final LongLongArrayMap byNode, final long nodeId, final long key, final long from, final long to) {
+        final EStruct entry = _backend.newEStruct();
+        entry.setAt(E_ID, Type.LONG, nodeId);
+        entry.setAt(E_KEY, Type.LONG, key);
+        entry.setAt(E_FROM, Type.LONG, from);
+        entry.setAt(E_TO, Type.LONG, to);
+        byKey.put(key, entry.id());
+        byNode.put(nodeId, entry.id());
+        changed(from);
+        if (to == Constants.END_OF_TIME) {
+            final LongLongMap current = (LongLongMap) getAt(CURRENT);
+            if (current != null) {
+                current.put(nodeId, entry.id());
+            }
+        } else {
+            changed(to);
+        }
+    }
+
+    private void changed(final long time) {
+        final Object last = getAt(LAST_CHANGE);
+        if (last == null || (Long) last < time) {
+            setAt(LAST_CHANGE, Type.LONG, time);
+        }
+    }
+
+    /**
+     * @return the open entries by node if they are exactly the ones valid at the given time, null if the history has to be scanned
+     */
+    private LongLongMap current(final long time) {
+        final Object last = getAt(LAST_CHANGE);
+        //indexes written before the open entries were tracked have no last change and are always scanned
+        if (last == null || time < (Long) last) {
+            return null;
+        }
+        return (LongLongMap) getAt(CURRENT);
+    }
+
+    private static boolean isValid(final EStruct entry, final long time) {
+        final long to = (Long) entry.getAt(E_TO);
+        return from(entry) <= time && (time < to || to == Constants.END_OF_TIME);
+    }
+
+    private static long id(final EStruct entry) {
+        return (Long) entry.getAt(E_ID);
+    }
+
+    private static long key(final EStruct entry) {
+        return (Long) entry.getAt(E_KEY);
+    }
+
+    private static long from(final EStruct entry) {
+        return (Long) entry.getAt(E_FROM);
+    }
+
+}
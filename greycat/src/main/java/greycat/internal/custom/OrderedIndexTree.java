@@ -0,0 +1,580 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.custom;
+
+import greycat.Constants;
+import greycat.Type;
+import greycat.struct.*;
+import greycat.utility.LArray;
+
+/**
+ * B+tree ordering the nodes of an index by the value of one attribute, stored in the {@link EStructArray} of the index.
+ * Entries are unique (value, node id) pairs: numeric values are ordered as doubles, other values as strings, depending on the first indexed value.
+ * Once this mode is set, values of the other kind are rejected rather than dropped, see {@link #toKey(Object)}.
+ * Leaves are linked in both directions to answer range, prefix and top-k queries, and a map from node ids to leaves is kept to update or remove entries.
+ * Emptied leaves are not merged, they are skipped by scans and reused by later insertions.
+ */
+final class OrderedIndexTree {
+
+    static final int ORDER = 64;
+
+    private static final int MAX_DEPTH = 32;
+
+    private static final int MODE_UNKNOWN = 0;
+    private static final int MODE_NUMERIC = 1;
+    private static final int MODE_STRING = 2;
+
+    //attributes of the tree descriptor
+    private static final int M_ROOT = 0;
+    private static final int M_MODE = 1;
+    private static final int M_LEAVES = 2;
+
+    //attributes of the tree nodes
+    private static final int T_LEAF = 0;
+    private static final int T_KEYS = 1;
+    private static final int T_IDS = 2;
+    private static final int T_CHILDREN = 3;
+    private static final int T_NEXT = 4;
+    private static final int T_PREV = 5;
+
+    private final EStructArray _backend;
+    private final EStruct _meta;
+
+    OrderedIndexTree(final EStructArray p_backend, final int p_meta) {
+        this._backend = p_backend;
+        this._meta = p_backend.estruct(p_meta);
+    }
+
+    /**
+     * Creates an empty tree in the given backend.
+     *
+     * @param backend backend of the index
+     * @return id of the struct describing the new tree
+     */
+    static int create(final EStructArray backend) {
+        final EStruct meta = backend.newEStruct();
+        final EStruct root = newLeaf(backend);
+        meta.setAt(M_ROOT, Type.INT, root.id());
+        meta.setAt(M_MODE, Type.INT, MODE_UNKNOWN);
+        meta.getOrCreateAt(M_LEAVES, Type.LONG_TO_LONG_MAP);
+        return meta.id();
+    }
+
+    /**
+     * Indexes the new key of a node, replacing its previous entry if any.
+     *
+     * @param key key computed by {@link #toKey(Object)}, null to only remove the node
+     * @param id  id of the node
+     */
+    final void update(final Object key, final long id) {
+        if (key != null && mode() == MODE_UNKNOWN) {
+            if (key instanceof String) {
+                _meta.setAt(M_MODE, Type.INT, MODE_STRING);
+            } else {
+                _meta.setAt(M_MODE, Type.INT, MODE_NUMERIC);
+            }
+        }
+        final LongLongMap leaves = (LongLongMap) _meta.getAt(M_LEAVES);
+        final long leafId = leaves.get(id);
+        if (leafId != Constants.NULL_LONG) {
+            final EStruct leaf = _backend.estruct((int) leafId);
+            final long[] ids = ids(leaf);
+            final Object[] keys = keys(leaf);
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    if (key != null && compareKeys(keys[i], key) == 0) {
+                        //unchanged
+                        return;
+                    }
+                    writeLeaf(leaf, removeAt(keys, i), removeAt(ids, i));
+                    break;
+                }
+            }
+            leaves.remove(id);
+        }
+        if (key != null) {
+            insert(key, id);
+        }
+    }
+
+    final void remove(final long id) {
+        update(null, id);
+    }
+
+    /**
+     * Selects nodes by range of values, bounds included.
+     *
+     * @param from  lower bound, null or empty for none
+     * @param to    upper bound, null or empty for none
+     * @param limit maximum number of nodes, in ascending order if positive, in descending order if negative (top-k), 0 for all nodes in ascending order
+     * @return ids of the selected nodes
+     */
+    final long[] range(final String from, final String to, final int limit) {
+        final LArray collected = new LArray();
+        final int mode = mode();
+        if (mode == MODE_UNKNOWN) {
+            return collected.all();
+        }
+        final Object lower = parseBound(from, mode);
+        final Object upper = parseBound(to, mode);
+        if (limit < 0) {
+            EStruct leaf;
+            int position;
+            if (upper == null) {
+                leaf = edgeLeaf(false);
+                position = ids(leaf).length - 1;
+            } else {
+                leaf = findLeaf(upper, Long.MAX_VALUE);
+                position = upperBound(keys(leaf), ids(leaf), upper, Long.MAX_VALUE) - 1;
+            }
+            while (leaf != null) {
+                final Object[] keys = keys(leaf);
+                final long[] ids = ids(leaf);
+                for (int i = position; i >= 0; i--) {
+                    if (lower != null && compareKeys(keys[i], lower) < 0) {
+                        return collected.all();
+                    }
+                    collected.add(ids[i]);
+                    if (collected.size() == -limit) {
+                        return collected.all();
+                    }
+                }
+                leaf = sibling(leaf, T_PREV);
+                if (leaf != null) {
+                    position = ids(leaf).length - 1;
+                }
+            }
+        } else {
+            EStruct leaf;
+            int position;
+            if (lower == null) {
+                leaf = edgeLeaf(true);
+                position = 0;
+            } else {
+                leaf = findLeaf(lower, Long.MIN_VALUE);
+                position = upperBound(keys(leaf), ids(leaf), lower, Long.MIN_VALUE);
+            }
+            while (leaf != null) {
+                final Object[] keys = keys(leaf);
+                final long[] ids = ids(leaf);
+                for (int i = position; i < ids.length; i++) {
+                    if (upper != null && compareKeys(keys[i], upper) > 0) {
+                        return collected.all();
+                    }
+                    collected.add(ids[i]);
+                    if (collected.size() == limit) {
+                        return collected.all();
+                    }
+                }
+                leaf = sibling(leaf, T_NEXT);
+                position = 0;
+            }
+        }
+        return collected.all();
+    }
+
+    /**
+     * Selects nodes whose value starts with a prefix, in ascending order.
+     *
+     * @param prefix prefix of the values
+     * @param limit  maximum number of nodes, 0 for all
+     * @return ids of the selected nodes
+     */
+    final long[] prefix(final String prefix, final int limit) {
+        final LArray collected = new LArray();
+        if (mode() != MODE_STRING) {
+            return collected.all();
+        }
+        EStruct leaf = findLeaf(prefix, Long.MIN_VALUE);
+        int position = upperBound(keys(leaf), ids(leaf), prefix, Long.MIN_VALUE);
+        while (leaf != null) {
+            final Object[] keys = keys(leaf);
+            final long[] ids = ids(leaf);
+            for (int i = position; i < ids.length; i++) {
+                if (!((String) keys[i]).startsWith(prefix)) {
+                    return collected.all();
+                }
+                collected.add(ids[i]);
+                if (collected.size() == limit) {
+                    return collected.all();
+                }
+            }
+            leaf = sibling(leaf, T_NEXT);
+            position = 0;
+        }
+        return collected.all();
+    }
+
+    private void insert(final Object key, final long id) {
+        final int[] path = new int[MAX_DEPTH];
+        final int[] slots = new int[MAX_DEPTH];
+        int depth = 0;
+        EStruct node = _backend.estruct((Integer) _meta.getAt(M_ROOT));
+        while (!isLeaf(node)) {
+            final int slot = upperBound(keys(node), ids(node), key, id);
+            path[depth] = node.id();
+            slots[depth] = slot;
+            depth++;
+            node = _backend.estruct(children(node)[slot]);
+        }
+        final LongLongMap leaves = (LongLongMap) _meta.getAt(M_LEAVES);
+        final Object[] keys = keys(node);
+        final long[] ids = ids(node);
+        final int position = upperBound(keys, ids, key, id);
+        final Object[] newKeys = insertAt(keys, position, key);
+        final long[] newIds = insertAt(ids, position, id);
+        if (newIds.length <= ORDER) {
+            writeLeaf(node, newKeys, newIds);
+            leaves.put(id, node.id());
+            return;
+        }
+        //split the leaf, the right half moves to a new leaf
+        final int half = newIds.length / 2;
+        final EStruct right = newLeaf(_backend);
+        final Object[] rightKeys = slice(newKeys, half, newKeys.length);
+        final long[] rightIds = slice(newIds, half, newIds.length);
+        writeLeaf(node, slice(newKeys, 0, half), slice(newIds, 0, half));
+        writeLeaf(right, rightKeys, rightIds);
+        final int next = (Integer) node.getAt(T_NEXT);
+        right.setAt(T_NEXT, Type.INT, next);
+        right.setAt(T_PREV, Type.INT, node.id());
+        if (next != -1) {
+            _backend.estruct(next).setAt(T_PREV, Type.INT, right.id());
+        }
+        node.setAt(T_NEXT, Type.INT, right.id());
+        if (position < half) {
+            leaves.put(id, node.id());
+        }
+        for (int i = 0; i < rightIds.length; i++) {
+            leaves.put(rightIds[i], right.id());
+        }
+        Object upKey = rightKeys[0];
+        long upId = rightIds[0];
+        int newChild = right.id();
+        //propagate the new separator to the parents
+        while (depth > 0) {
+            depth--;
+            final EStruct parent = _backend.estruct(path[depth]);
+            final int slot = slots[depth];
+            final Object[] seps = insertAt(keys(parent), slot, upKey);
+            final long[] sepIds = insertAt(ids(parent), slot, upId);
+            final int[] children = insertAt(children(parent), slot + 1, newChild);
+            if (children.length <= ORDER) {
+                writeInternal(parent, seps, sepIds, children);
+                return;
+            }
+            final int middle = children.length / 2;
+            final EStruct rightInternal = newInternal(_backend);
+            writeInternal(parent, slice(seps, 0, middle - 1), slice(sepIds, 0, middle - 1), slice(children, 0, middle));
+            writeInternal(rightInternal, slice(seps, middle, seps.length), slice(sepIds, middle, sepIds.length), slice(children, middle, children.length));
+            upKey = seps[middle - 1];
+            upId = sepIds[middle - 1];
+            newChild = rightInternal.id();
+        }
+        //the root has been split
+        final EStruct newRoot = newInternal(_backend);
+        final Object[] rootKeys = new Object[1];
+        rootKeys[0] = upKey;
+        final long[] rootIds = new long[1];
+        rootIds[0] = upId;
+        final int[] rootChildren = new int[2];
+        rootChildren[0] = (Integer) _meta.getAt(M_ROOT);
+        rootChildren[1] = newChild;
+        writeInternal(newRoot, rootKeys, rootIds, rootChildren);
+        _meta.setAt(M_ROOT, Type.INT, newRoot.id());
+    }
+
+    private EStruct findLeaf(final Object key, final long id) {
+        EStruct node = _backend.estruct((Integer) _meta.getAt(M_ROOT));
+        while (!isLeaf(node)) {
+            node = _backend.estruct(children(node)[upperBound(keys(node), ids(node), key, id)]);
+        }
+        return node;
+    }
+
+    private EStruct edgeLeaf(final boolean first) {
+        EStruct node = _backend.estruct((Integer) _meta.getAt(M_ROOT));
+        while (!isLeaf(node)) {
+            final int[] children = children(node);
+            if (first) {
+                node = _backend.estruct(children[0]);
+            } else {
+                node = _backend.estruct(children[children.length - 1]);
+            }
+        }
+        return node;
+    }
+
+    private EStruct sibling(final EStruct leaf, final int direction) {
+        final int sibling = (Integer) leaf.getAt(direction);
+        if (sibling == -1) {
+            return null;
+        }
+        return _backend.estruct(sibling);
+    }
+
+    /**
+     * @return number of entries lower or equal to (key, id), which is also the child to follow in an internal node
+     */
+    private int upperBound(final Object[] keys, final long[] ids, final Object key, final long id) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (compare(keys[middle], ids[middle], key, id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int mode() {
+        return (Integer) _meta.getAt(M_MODE);
+    }
+
+    /**
+     * Converts an attribute value into a key of this tree, without modifying it.
+     *
+     * @param value attribute value
+     * @return a double in a numeric tree, a string otherwise, null if the value is null
+     * @throws RuntimeException if the value cannot be ordered with the values already indexed
+     */
+    final Object toKey(final Object value) {
+        if (value == null) {
+            return null;
+        }
+        final int mode = mode();
+        if (value instanceof Number) {
+            if (mode == MODE_STRING) {
+                throw new RuntimeException("Bad API usage: ordered attribute holds strings, cannot index the number " + value);
+            }
+            return ((Number) value).doubleValue();
+        }
+        if (mode == MODE_NUMERIC) {
+            try {
+                return Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Bad API usage: ordered attribute holds numbers, cannot index the value " + value);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * @return number of nodes in the tree
+     */
+    final int size() {
+        return ((LongLongMap) _meta.getAt(M_LEAVES)).size();
+    }
+
+    /**
+     * Copies all entries in ascending order.
+     *
+     * @param keys receives the keys, of length {@link #size()}
+     * @param ids  receives the node ids, of length {@link #size()}
+     */
+    final void export(final Object[] keys, final long[] ids) {
+        if (mode() == MODE_UNKNOWN) {
+            return;
+        }
+        int position = 0;
+        EStruct leaf = edgeLeaf(true);
+        while (leaf != null) {
+            final Object[] leafKeys = keys(leaf);
+            final long[] leafIds = ids(leaf);
+            System.arraycopy(leafKeys, 0, keys, position, leafKeys.length);
+            System.arraycopy(leafIds, 0, ids, position, leafIds.length);
+            position = position + leafIds.length;
+            leaf = sibling(leaf, T_NEXT);
+        }
+    }
+
+    private static Object parseBound(final String bound, final int mode) {
+        if (bound == null || bound.length() == 0) {
+            return null;
+        }
+        if (mode == MODE_NUMERIC) {
+            return Double.parseDouble(bound);
+        }
+        return bound;
+    }
+
+    private static int compare(final Object key, final long id, final Object otherKey, final long otherId) {
+        final int compared = compareKeys(key, otherKey);
+        if (compared != 0) {
+            return compared;
+        }
+        if (id < otherId) {
+            return -1;
+        } else if (id > otherId) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int compareKeys(final Object key, final Object otherKey) {
+        if (key instanceof String) {
+            return ((String) key).compareTo((String) otherKey);
+        }
+        final double value = (Double) key;
+        final double otherValue = (Double) otherKey;
+        if (value < otherValue) {
+            return -1;
+        } else if (value > otherValue) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static EStruct newLeaf(final EStructArray backend) {
+        final EStruct leaf = backend.newEStruct();
+        leaf.setAt(T_LEAF, Type.BOOL, true);
+        leaf.setAt(T_NEXT, Type.INT, -1);
+        leaf.setAt(T_PREV, Type.INT, -1);
+        return leaf;
+    }
+
+    private static EStruct newInternal(final EStructArray backend) {
+        final EStruct internal = backend.newEStruct();
+        internal.setAt(T_LEAF, Type.BOOL, false);
+        return internal;
+    }
+
+    private static boolean isLeaf(final EStruct node) {
+        return (Boolean) node.getAt(T_LEAF);
+    }
+
+    private Object[] keys(final EStruct node) {
+        if (mode() == MODE_NUMERIC) {
+            final DoubleArray array = (DoubleArray) node.getAt(T_KEYS);
+            if (array == null) {
+                return new Object[0];
+            }
+            final double[] values = array.extract();
+            final Object[] keys = new Object[values.length];
+            for (int i = 0; i < values.length; i++) {
+                keys[i] = values[i];
+            }
+            return keys;
+        } else {
+            final StringArray array = (StringArray) node.getAt(T_KEYS);
+            if (array == null) {
+                return new Object[0];
+            }
+            final String[] values = array.extract();
+            final Object[] keys = new Object[values.length];
+            System.arraycopy(values, 0, keys, 0, values.length);
+            return keys;
+        }
+    }
+
+    private static long[] ids(final EStruct node) {
+        final LongArray array = (LongArray) node.getAt(T_IDS);
+        if (array == null) {
+            return new long[0];
+        }
+        return array.extract();
+    }
+
+    private static int[] children(final EStruct node) {
+        return ((IntArray) node.getAt(T_CHILDREN)).extract();
+    }
+
+    private void writeKeys(final EStruct node, final Object[] keys) {
+        if (mode() == MODE_NUMERIC) {
+            final double[] values = new double[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = (Double) keys[i];
+            }
+            ((DoubleArray) node.getOrCreateAt(T_KEYS, Type.DOUBLE_ARRAY)).initWith(values);
+        } else {
+            final String[] values = new String[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = (String) keys[i];
+            }
+            ((StringArray) node.getOrCreateAt(T_KEYS, Type.STRING_ARRAY)).initWith(values);
+        }
+    }
+
+    private void writeLeaf(final EStruct leaf, final Object[] keys, final long[] ids) {
+        writeKeys(leaf, keys);
+        ((LongArray) leaf.getOrCreateAt(T_IDS, Type.LONG_ARRAY)).initWith(ids);
+    }
+
+    private void writeInternal(final EStruct internal, final Object[] keys, final long[] ids, final int[] children) {
+        writeLeaf(internal, keys, ids);
+        ((IntArray) internal.getOrCreateAt(T_CHILDREN, Type.INT_ARRAY)).initWith(children);
+    }
+
+    private static Object[] insertAt(final Object[] values, final int position, final Object value) {
+        final Object[] inserted = new Object[values.length + 1];
+        System.arraycopy(values, 0, inserted, 0, position);
+        inserted[position] = value;
+        System.arraycopy(values, position, inserted, position + 1, values.length - position);
+        return inserted;
+    }
+
+    private static long[] insertAt(final long[] values, final int position, final long value) {
+        final long[] inserted = new long[values.length + 1];
+        System.arraycopy(values, 0, inserted, 0, position);
+        inserted[position] = value;
+        System.arraycopy(values, position, inserted, position + 1, values.length - position);
+        return inserted;
+    }
+
+    private static int[] insertAt(final int[] values, final int position, final int value) {
+        final int[] inserted = new int[values.length + 1];
+        System.arraycopy(values, 0, inserted, 0, position);
+        inserted[position] = value;
+        System.arraycopy(values, position, inserted, position + 1, values.length - position);
+        return inserted;
+    }
+
+    private static Object[] removeAt(final Object[] values, final int position) {
+        final Object[] removed = new Object[values.length - 1];
+        System.arraycopy(values, 0, removed, 0, position);
+        System.arraycopy(values, position + 1, removed, position, values.length - position - 1);
+        return removed;
+    }
+
+    private static long[] removeAt(final long[] values, final int position) {
+        final long[] removed = new long[values.length - 1];
+        System.arraycopy(values, 0, removed, 0, position);
+        System.arraycopy(values, position + 1, removed, position, values.length - position - 1);
+        return removed;
+    }
+
+    private static Object[] slice(final Object[] values, final int from, final int to) {
+        final Object[] sliced = new Object[to - from];
+        System.arraycopy(values, from, sliced, 0, to - from);
+        return sliced;
+    }
+
+    private static long[] slice(final long[] values, final int from, final int to) {
+        final long[] sliced = new long[to - from];
+        System.arraycopy(values, from, sliced, 0, to - from);
+        return sliced;
+    }
+
+    private static int[] slice(final int[] values, final int from, final int to) {
+        final int[] sliced = new int[to - from];
+        System.arraycopy(values, from, sliced, 0, to - from);
+        return sliced;
+    }
+
+}
@@ -28,6 +28,7 @@ import greycat.utility.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -36,13 +37,39 @@ public class HeapChunkSpace implements ChunkSpace {
 
     private static final int HASH_LOAD_FACTOR = 4;
 
+    private static final int METRIC_EXHAUSTIONS = 0;
+    private static final int METRIC_SAVES = 1;
+    private static final int METRIC_PARKS = 2;
+    private static final int METRIC_FAILURES = 3;
+
+    private static final long MAX_PARK = 64;
+
     private final int _maxEntries;
     private final int _batchSize;
     private final int _hashEntries;
 
-    private final Stack _lru;
+    private final int _stripes;
+    private final int _stripeCapacity;
+    private final Object[] _stripeLocks;
+
+    private final Stack[] _lrus;
     private final Stack _dirtiesStack;
 
+    private final long _backpressureTimeout;
+    private final AtomicLongArray _metrics;
+    private final AtomicInteger _parked = new AtomicInteger(0);
+    private final Object _releases = new Object();
+
+    /**
+     * @ignore ts
+     */
+    private HeapWriteBehind _writeBehind = null;
+    /**
+     * @ignore ts
+     */
+    private HeapWriteAheadLog _writeAheadLog = null;
+    private boolean _binaryFormat = false;
+
     private final AtomicIntegerArray _hashNext;
     private final AtomicIntegerArray _hash;
 
@@ -78,15 +105,25 @@ public class HeapChunkSpace implements ChunkSpace {
         return this._chunkIds.get((int) index);
     }
 
-    public HeapChunkSpace(final int initialCapacity, final int batchSize, final Graph p_graph, final boolean deepWorldPriority) {
+    /**
+     * Creates a heap chunk space.
+     * The space is split into {@link HeapSpaceLayout#stripes()} independent segments: each segment owns a contiguous range of entries, the hash buckets mapped to it and its own LRU.
+     * Chunk creations falling into different segments never contend on the same monitor.
+     *
+     * @param initialCapacity   maximum number of chunks kept in memory
+     * @param batchSize         maximum number of chunks saved per partial save, -1 for unbounded
+     * @param p_graph           the graph owning this space
+     * @param deepWorldPriority hashing strategy, see {@link Constants#DEEP_WORLD}
+     * @param layout            segments and eviction strategy, null for a single segment tracking its LRU and dirty chunks with synchronized {@link HeapFixedStack}
+     */
+    public HeapChunkSpace(final int initialCapacity, final int batchSize, final Graph p_graph, final boolean deepWorldPriority, final HeapSpaceLayout layout) {
         _interceptors = null;
         _batchSize = batchSize;
+        _metrics = new AtomicLongArray(4);
         _deep_priority = deepWorldPriority;
         _graph = p_graph;
         _maxEntries = initialCapacity;
         _hashEntries = initialCapacity * HASH_LOAD_FACTOR;
-        _lru = new HeapFixedStack(initialCapacity, true);
-        _dirtiesStack = new HeapFixedStack(initialCapacity, false);
         _hashNext = new AtomicIntegerArray(initialCapacity);
         _hash = new AtomicIntegerArray(_hashEntries);
         for (int i = 0; i < initialCapacity; i++) {
@@ -104,6 +141,52 @@ public class HeapChunkSpace implements ChunkSpace {
         for (int i = 0; i < _maxEntries; i++) {
             _chunkMarks.set(i, 0);
         }
+        int stripes = 1;
+        boolean lockFreeStacks = false;
+        byte evictionPolicy = EvictionPolicy.LRU;
+        long backpressureTimeout = -1;
+        if (layout != null) {
+            stripes = layout.stripes();
+            lockFreeStacks = layout.lockFreeStacks();
+            evictionPolicy = layout.evictionPolicy();
+            backpressureTimeout = layout.backpressureTimeout();
+        }
+        if (stripes > _maxEntries) {
+            throw new RuntimeException("Bad API usage: number of stripes should be between 1 and the memory size, received " + stripes);
+        }
+        _backpressureTimeout = backpressureTimeout;
+        _stripes = stripes;
+        _stripeCapacity = _maxEntries / stripes;
+        _stripeLocks = new Object[stripes];
+        _lrus = new Stack[stripes];
+        for (int i = 0; i < stripes; i++) {
+            _stripeLocks[i] = new Object();
+            final int stripeSize;
+            if (i == stripes - 1) {
+                stripeSize = _maxEntries - (i * _stripeCapacity);
+            } else {
+                stripeSize = _stripeCapacity;
+            }
+            switch (evictionPolicy) {
+                case EvictionPolicy.CLOCK:
+                    _lrus[i] = new HeapClockStack(stripeSize, true);
+                    break;
+                case EvictionPolicy.SEGMENTED_LRU:
+                    _lrus[i] = new HeapSegmentedStack(stripeSize, true, _chunkTypes, i * _stripeCapacity);
+                    break;
+                default:
+                    if (lockFreeStacks) {
+                        _lrus[i] = new HeapLockFreeStack(stripeSize, true);
+                    } else {
+                        _lrus[i] = new HeapFixedStack(stripeSize, true);
+                    }
+            }
+        }
+        if (lockFreeStacks) {
+            _dirtiesStack = new HeapLockFreeStack(_maxEntries, false);
+        } else {
+            _dirtiesStack = new HeapFixedStack(_maxEntries, false);
+        }
     }
 
     @Override
@@ -275,7 +358,8 @@ public class HeapChunkSpace implements ChunkSpace {
         } while (!_chunkMarks.compareAndSet(castedIndex, before, after));
         if (before == 0 && after == 1) {
             //was at zero before, risky operation, check selectWith LRU
-            this._lru.dequeue(index);
+            final int stripe = stripeOf(castedIndex);
+            this._lrus[stripe].dequeue(castedIndex - (stripe * _stripeCapacity));
         }
         return after;
     }
@@ -296,34 +380,39 @@ public class HeapChunkSpace implements ChunkSpace {
         } while (!_chunkMarks.compareAndSet(castedIndex, before, after));
         if (before == 1 && after == 0) {
             //was at zero before, risky operation, check selectWith LRU
-            this._lru.enqueue(index);
+            final int stripe = stripeOf(castedIndex);
+            this._lrus[stripe].enqueue(castedIndex - (stripe * _stripeCapacity));
+            if (_parked.get() > 0) {
+                signalRelease();
+            }
         }
     }
 
     @Override
-    public synchronized final void delete(final byte type, final long world, final long time, final long id) {
+    public final void delete(final byte type, final long world, final long time, final long id) {
         final int index;
         if (_deep_priority) {
             index = (int) HashHelper.tripleHash(type, world, time, id, this._hashEntries);
         } else {
             index = (int) HashHelper.simpleTripleHash(type, world, time, id, this._hashEntries);
         }
-        int m = this._hash.get(index);
-        int found = -1;
-        while (m != -1) {
-            if (_chunkTypes.get(m) == type
-                    && _chunkWorlds.get(m) == world
-                    && _chunkTimes.get(m) == time
-                    && _chunkIds.get(m) == id) {
-                found = m;
-                break;
-            } else {
-                m = this._hashNext.get(m);
+        synchronized (_stripeLocks[index % _stripes]) {
+            int m = this._hash.get(index);
+            int found = -1;
+            while (m != -1) {
+                if (_chunkTypes.get(m) == type
+                        && _chunkWorlds.get(m) == world
+                        && _chunkTimes.get(m) == time
+                        && _chunkIds.get(m) == id) {
+                    found = m;
+                    break;
+                } else {
+                    m = this._hashNext.get(m);
+                }
             }
-        }
-        if (found != -1) {
-            _dirtiesStack.dequeue(found);
-            _chunkValues.set(found, null);
+            if (found != -1) {
+                _dirtiesStack.dequeue(found);
+                _chunkValues.set(found, null);
                 /*
             long markBefore = _chunkMarks.get(found);
             if (markBefore != 0) {
@@ -336,6 +425,7 @@ public class HeapChunkSpace implements ChunkSpace {
                 }
             }
                 */
+            }
         }
     }
 
@@ -355,18 +445,119 @@ public class HeapChunkSpace implements ChunkSpace {
         if (!valid) {
             return null;
         }
-        return internal_createAndMark(type, world, time, id);
+        final Chunk created = internal_createAndMark(type, world, time, id);
+        if (created == null) {
+            return createUnderPressure(type, world, time, id);
+        }
+        return created;
     }
 
-    private synchronized Chunk internal_createAndMark(final byte type, final long world, final long time, final long id) {
-        //first mark the object
-        int entry = -1;
+    /**
+     * Called when the space is exhausted in backpressure mode: dirty chunks are saved to make them evictable,
+     * then the requesting thread waits for other workers to release chunks, until the timeout expires.
+     */
+    private Chunk createUnderPressure(final byte type, final long world, final long time, final long id) {
+        final long deadline = System.currentTimeMillis() + _backpressureTimeout;
+        long pause = 1;
+        do {
+            if (requestCheckpoint() || _dirtiesStack.size() > 0) {
+                _metrics.incrementAndGet(METRIC_SAVES);
+                save(false, true, null, null);
+            } else {
+                _metrics.incrementAndGet(METRIC_PARKS);
+                if (!awaitRelease(pause)) {
+                    break;
+                }
+                if (pause < MAX_PARK) {
+                    pause = pause * 2;
+                }
+            }
+            final Chunk created = internal_createAndMark(type, world, time, id);
+            if (created != null) {
+                return created;
+            }
+        } while (System.currentTimeMillis() < deadline);
+        _metrics.incrementAndGet(METRIC_FAILURES);
+        throw new RuntimeException("GreyCat crashed, cache is full, please avoid to much retention of nodes or augment cache capacity! available:" + available() + ", backpressure timeout of " + _backpressureTimeout + "ms reached");
+    }
+
+    /**
+     * Logged chunks are only released by a checkpoint, the next save is turned into one when the write-ahead log retains chunks.
+     * The TypeScript version has no write-ahead log.
+     * {@native ts
+     * return false;
+     * }
+     *
+     * @return true if a checkpoint has been requested
+     */
+    private boolean requestCheckpoint() {
+        final HeapWriteAheadLog log = _writeAheadLog;
+        if (log != null && log.retained() > 0) {
+            log.requestCheckpoint();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits until a chunk becomes evictable, or at most the given pause.
+     * Nothing is awaited when the scheduler of the graph runs all its jobs on a single thread, and no write-behind pipeline releases chunks in the background:
+     * chunks could then only be released by the caller itself, and waiting would stall the whole scheduler.
+     * The TypeScript version is single threaded, and therefore never waits.
+     * {@native ts
+     * return false;
+     * }
+     *
+     * @param millis maximum time to wait
+     * @return false if chunks cannot be released while the caller waits
+     */
+    private boolean awaitRelease(final long millis) {
+        if (_writeBehind == null && _graph != null && _graph.scheduler() != null && _graph.scheduler().workers() == 1) {
+            return false;
+        }
+        synchronized (_releases) {
+            _parked.incrementAndGet();
+            try {
+                _releases.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                _parked.decrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wakes up the creations waiting for a chunk to become evictable, see {@link #awaitRelease(long)}.
+     * {@native ts
+     * return;
+     * }
+     */
+    private void signalRelease() {
+        synchronized (_releases) {
+            _releases.notifyAll();
+        }
+    }
+
+    private Chunk internal_createAndMark(final byte type, final long world, final long time, final long id) {
         final int hashIndex;
         if (_deep_priority) {
             hashIndex = (int) HashHelper.tripleHash(type, world, time, id, this._hashEntries);
         } else {
             hashIndex = (int) HashHelper.simpleTripleHash(type, world, time, id, this._hashEntries);
         }
+        //a bucket always belongs to the same stripe, as well as all entries chained from it
+        final int stripe = hashIndex % _stripes;
+        synchronized (_stripeLocks[stripe]) {
+            return internal_createAndMarkInStripe(stripe, hashIndex, type, world, time, id);
+        }
+    }
+
+    private Chunk internal_createAndMarkInStripe(final int stripe, final int hashIndex, final byte type, final long world, final long time, final long id) {
+        //first mark the object
+        int entry = -1;
         int m = this._hash.get(hashIndex);
         while (m >= 0) {
             if (type == _chunkTypes.get(m) && world == _chunkWorlds.get(m) && time == _chunkTimes.get(m) && id == _chunkIds.get(m)) {
@@ -390,20 +581,27 @@ public class HeapChunkSpace implements ChunkSpace {
                 return _chunkValues.get(entry);
             }
         }
+        final Stack lru = this._lrus[stripe];
+        final int stripeOffset = stripe * _stripeCapacity;
         int currentVictimIndex = -1;
         while (currentVictimIndex == -1) {
-            int temp_victim = (int) this._lru.dequeueTail();
+            int temp_victim = (int) lru.dequeueTail();
             if (temp_victim == -1) {
                 break;
             } else {
+                temp_victim = temp_victim + stripeOffset;
                 if (_chunkMarks.compareAndSet(temp_victim, 0, -1)) {
                     currentVictimIndex = temp_victim;
                 }
             }
         }
         if (currentVictimIndex == -1) {
+            _metrics.incrementAndGet(METRIC_EXHAUSTIONS);
+            if (_backpressureTimeout >= 0) {
+                return null;
+            }
             // printMarked();
-            throw new RuntimeException("GreyCat crashed, cache is full, please avoid to much retention of nodes or augment cache capacity! available:" + available());
+            throw new RuntimeException("GreyCat crashed, cache is full, please avoid to much retention of nodes or augment cache capacity! available:" + available() + ", available in stripe " + stripe + ":" + lru.size());
         }
         Chunk toInsert = null;
         switch (type) {
@@ -482,9 +680,96 @@ public class HeapChunkSpace implements ChunkSpace {
         }
     }
 
+    /**
+     * Selects the encoding used by chunks on save, payloads of both encodings are always readable.
+     *
+     * @param binaryFormat true to save with {@link greycat.utility.BinaryFormat}, false for the Base64 text encoding
+     */
+    final void setBinaryFormat(final boolean binaryFormat) {
+        this._binaryFormat = binaryFormat;
+    }
+
+    /**
+     * @return true if chunks are saved with {@link greycat.utility.BinaryFormat}
+     */
+    public final boolean binaryFormat() {
+        return _binaryFormat;
+    }
+
+    /**
+     * Delegates the serialization and the storage of dirty chunks to a write-behind pipeline, see {@link HeapWriteBehind}.
+     *
+     * @param writeBehind the pipeline used by all future saves
+     * @ignore ts
+     */
+    final void setWriteBehind(final HeapWriteBehind writeBehind) {
+        this._writeBehind = writeBehind;
+    }
+
+    /**
+     * Appends all future saves to a write-ahead log, the storage only receives its checkpoints, see {@link HeapWriteAheadLog}.
+     *
+     * @param writeAheadLog the log, already replayed
+     * @ignore ts
+     */
+    final void setWriteAheadLog(final HeapWriteAheadLog writeAheadLog) {
+        this._writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * @return the write-ahead log of the space, null if saves go straight to the storage
+     * @ignore ts
+     */
+    public final HeapWriteAheadLog writeAheadLog() {
+        return _writeAheadLog;
+    }
+
+    /**
+     * The TypeScript version has no write-ahead log.
+     * {@native ts
+     * return false;
+     * }
+     *
+     * @return true if saves append the diffs of the chunks to a write-ahead log
+     */
+    public final boolean logsDiffs() {
+        return _writeAheadLog != null;
+    }
+
+    /**
+     * The TypeScript version has no write-behind pipeline, and always saves in the calling job.
+     * {@native ts
+     * this.saveNow(silent, partial, filter, callback);
+     * }
+     */
     @Override
-    public final synchronized void save(final boolean silent, final boolean partial, final LMap filter, final Callback<Buffer> callback) {
+    public final void save(final boolean silent, final boolean partial, final LMap filter, final Callback<Buffer> callback) {
+        if (_writeBehind != null) {
+            saveBehind(silent, partial, filter, callback);
+            return;
+        }
+        saveNow(silent, partial, filter, callback);
+    }
+
+    /**
+     * {@native ts
+     * this.saveToStorage(silent, partial, filter, true, callback);
+     * }
+     */
+    private synchronized void saveNow(final boolean silent, final boolean partial, final LMap filter, final Callback<Buffer> callback) {
+        if (_writeAheadLog != null) {
+            saveAhead(silent, filter, callback);
+            return;
+        }
+        saveToStorage(silent, partial, filter, true, callback);
+    }
 
+    /**
+     * Writes the dirty chunks to the storage.
+     *
+     * @param dispatch false if listeners have already been notified of the saved chunks
+     */
+    final synchronized void saveToStorage(final boolean silent, final boolean partial, final LMap filter, final boolean dispatch, final Callback<Buffer> callback) {
         java.util.Map<Long, Tuple<Listeners, LArray>> events = null;
         Buffer stream = this._graph.newBuffer();
         List<Buffer> stacked = null;
@@ -519,24 +804,8 @@ public class HeapChunkSpace implements ChunkSpace {
                 long chunkTime = _chunkTimes.get(tail);
                 KeyHelper.keyToBuffer(stream, chunkType, _chunkWorlds.get(tail), chunkTime, chunkId);
                 //we prepare the notifier
-                if (chunkType == ChunkType.STATE_CHUNK) {
-                    if (events != null && events.get(chunkId) != null) {
-                        events.get(chunkId).right().add(chunkTime);
-                    } else {
-                        final WorldOrderChunk wo = (WorldOrderChunk) getAndMark(ChunkType.WORLD_ORDER_CHUNK, 0, 0, chunkId);
-                        if (wo != null) {
-                            final Listeners l = wo.listeners();
-                            unmark(wo.index());
-                            if (l != null) {
-                                if (events == null) {
-                                    events = new java.util.HashMap<Long, Tuple<Listeners, LArray>>();
-                                }
-                                LArray collector = new LArray();
-                                collector.add(chunkTime);
-                                events.put(chunkId, new Tuple<Listeners, LArray>(l, collector));
-                            }
-                        }
-                    }
+                if (dispatch && chunkType == ChunkType.STATE_CHUNK) {
+                    events = collectEvent(events, chunkId, chunkTime);
                 }
                 //Save chunk payload
                 stream.write(Constants.BUFFER_SEP);
@@ -552,13 +821,7 @@ public class HeapChunkSpace implements ChunkSpace {
             }
         }
         //call nocal notifier
-        if (events != null) {
-            final Tuple[] tuples = events.values().toArray(new Tuple[events.size()]);
-            for (int i = 0; i < tuples.length; i++) {
-                Tuple<Listeners, LArray> tt = tuples[i];
-                tt.left().dispatch(tt.right().all());
-            }
-        }
+        dispatchEvents(events);
         if (silent) {
             if (stacked == null) {
                 Buffer finalStream = stream;
@@ -650,6 +913,197 @@ public class HeapChunkSpace implements ChunkSpace {
         }
     }
 
+    /**
+     * Hands the dirty chunks over to the write-behind pipeline.
+     * The pipeline is fed outside of the space, so that a full pipeline never blocks the flusher on its way to release chunks.
+     *
+     * @ignore ts
+     */
+    private void saveBehind(final boolean silent, final boolean partial, final LMap filter, final Callback<Buffer> callback) {
+        final HeapWriteBehind writeBehind = _writeBehind;
+        final int[] collected = collectBehind(partial, filter);
+        writeBehind.submit(collected, collected.length, silent, callback);
+    }
+
+    /**
+     * Collects the dirty chunks while holding the space.
+     * Chunks stay marked until flushed by the pipeline, and are therefore not evicted meanwhile, see {@link #release(int[], int)}.
+     *
+     * @ignore ts
+     */
+    private synchronized int[] collectBehind(final boolean partial, final LMap filter) {
+        java.util.Map<Long, Tuple<Listeners, LArray>> events = null;
+        int[] collected = new int[(int) _dirtiesStack.size() + 1];
+        int size = 0;
+        int counter = 0;
+        while (_dirtiesStack.size() != 0 && (!partial || _batchSize == -1 || counter <= _batchSize)) {
+            int tail = (int) _dirtiesStack.dequeueTail();
+            counter++;
+            if (filter != null && !filter.contains(_chunkIds.get(tail))) {
+                _dirtiesStack.enqueue(tail);
+            } else {
+                if (size == collected.length) {
+                    int[] extended = new int[collected.length * 2];
+                    System.arraycopy(collected, 0, extended, 0, size);
+                    collected = extended;
+                }
+                collected[size] = tail;
+                size++;
+                if (_chunkTypes.get(tail) == ChunkType.STATE_CHUNK) {
+                    events = collectEvent(events, _chunkIds.get(tail), _chunkTimes.get(tail));
+                }
+            }
+        }
+        dispatchEvents(events);
+        final int[] trimmed = new int[size];
+        System.arraycopy(collected, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    /**
+     * Appends the diffs of the dirty chunks to the write-ahead log, and retains them until the next checkpoint.
+     * The checkpoint saves the full payloads of the retained chunks to the storage, with the dirty ones.
+     * The dirty chunks are logged before the checkpoint writes them:
+     * if the process crashes before the covered log files are deleted, replaying them ends on the checkpointed values instead of rolling them back.
+     * The checkpoint is acknowledged once both its append is durable and the storage saved it.
+     *
+     * @ignore ts
+     */
+    private void saveAhead(final boolean silent, final LMap filter, final Callback<Buffer> callback) {
+        final HeapWriteAheadLog log = _writeAheadLog;
+        if (log.checkpointDue(_dirtiesStack.size(), _graph.isConnected())) {
+            if (_dirtiesStack.size() != 0) {
+                append(log, null, null);
+            }
+            //the mark retaining a chunk is handed over to the stack of dirty chunks
+            final int[] retained = log.drainRetained();
+            for (int i = 0; i < retained.length; i++) {
+                if (!_dirtiesStack.enqueue(retained[i])) {
+                    unmark(retained[i]);
+                }
+            }
+            final long generation = log.rotate();
+            saveToStorage(silent, false, null, false, new Callback<Buffer>() {
+                @Override
+                public void on(final Buffer result) {
+                    log.checkpointed(generation, callback);
+                }
+            });
+            return;
+        }
+        append(log, filter, callback);
+    }
+
+    /**
+     * Appends the diffs of the dirty chunks accepted by the filter to the current log file, and retains them.
+     *
+     * @ignore ts
+     */
+    private void append(final HeapWriteAheadLog log, final LMap filter, final Callback<Buffer> callback) {
+        java.util.Map<Long, Tuple<Listeners, LArray>> events = null;
+        final Buffer stream = this._graph.newBuffer();
+        boolean isFirst = true;
+        final long size = _dirtiesStack.size();
+        for (long i = 0; i < size; i++) {
+            final int tail = (int) _dirtiesStack.dequeueTail();
+            if (filter != null && !filter.contains(_chunkIds.get(tail))) {
+                _dirtiesStack.enqueue(tail);
+            } else {
+                if (isFirst) {
+                    isFirst = false;
+                } else {
+                    stream.write(Constants.BUFFER_SEP);
+                }
+                KeyHelper.keyToBuffer(stream, _chunkTypes.get(tail), _chunkWorlds.get(tail), _chunkTimes.get(tail), _chunkIds.get(tail));
+                stream.write(Constants.BUFFER_SEP);
+                try {
+                    _chunkValues.get(tail).saveDiff(stream);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                if (_chunkTypes.get(tail) == ChunkType.STATE_CHUNK) {
+                    events = collectEvent(events, _chunkIds.get(tail), _chunkTimes.get(tail));
+                }
+                if (!log.retain(tail)) {
+                    unmark(tail);
+                }
+            }
+        }
+        dispatchEvents(events);
+        log.append(stream, callback);
+    }
+
+    /**
+     * Serializes chunks as key and payload pairs.
+     * Chunks are left marked, the caller releases them once the buffer is durable.
+     *
+     * @param indexes chunks to serialize
+     * @param from    first position to serialize, included
+     * @param to      last position to serialize, excluded
+     * @return a new buffer containing the serialized chunks
+     */
+    final Buffer serialize(final int[] indexes, final int from, final int to) {
+        final Buffer stream = this._graph.newBuffer();
+        for (int i = from; i < to; i++) {
+            final int tail = indexes[i];
+            if (i != from) {
+                stream.write(Constants.BUFFER_SEP);
+            }
+            KeyHelper.keyToBuffer(stream, _chunkTypes.get(tail), _chunkWorlds.get(tail), _chunkTimes.get(tail), _chunkIds.get(tail));
+            stream.write(Constants.BUFFER_SEP);
+            try {
+                final Chunk loopChunk = _chunkValues.get(tail);
+                loopChunk.save(stream);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Unmarks chunks previously serialized, once their buffer has been acknowledged by the storage.
+     *
+     * @param indexes chunks to release
+     * @param size    number of indexes to consider
+     */
+    final void release(final int[] indexes, final int size) {
+        for (int i = 0; i < size; i++) {
+            unmark(indexes[i]);
+        }
+    }
+
+    private java.util.Map<Long, Tuple<Listeners, LArray>> collectEvent(java.util.Map<Long, Tuple<Listeners, LArray>> events, final long chunkId, final long chunkTime) {
+        if (events != null && events.get(chunkId) != null) {
+            events.get(chunkId).right().add(chunkTime);
+        } else {
+            final WorldOrderChunk wo = (WorldOrderChunk) getAndMark(ChunkType.WORLD_ORDER_CHUNK, 0, 0, chunkId);
+            if (wo != null) {
+                final Listeners l = wo.listeners();
+                unmark(wo.index());
+                if (l != null) {
+                    if (events == null) {
+                        events = new java.util.HashMap<Long, Tuple<Listeners, LArray>>();
+                    }
+                    LArray collector = new LArray();
+                    collector.add(chunkTime);
+                    events.put(chunkId, new Tuple<Listeners, LArray>(l, collector));
+                }
+            }
+        }
+        return events;
+    }
+
+    private void dispatchEvents(final java.util.Map<Long, Tuple<Listeners, LArray>> events) {
+        if (events != null) {
+            final Tuple[] tuples = events.values().toArray(new Tuple[events.size()]);
+            for (int i = 0; i < tuples.length; i++) {
+                Tuple<Listeners, LArray> tt = tuples[i];
+                tt.left().dispatch(tt.right().all());
+            }
+        }
+    }
+
 /*
     @Override
     public final synchronized void save(final Callback<Boolean> callback) {
@@ -729,14 +1183,73 @@ public class HeapChunkSpace implements ChunkSpace {
         //TODO reset everything
     }
 
+    /**
+     * Stops the background saves attached to the space.
+     * {@native ts
+     * return;
+     * }
+     */
     @Override
     public final void freeAll() {
+        if (_writeBehind != null) {
+            _writeBehind.stop();
+            _writeBehind = null;
+        }
+        if (_writeAheadLog != null) {
+            _writeAheadLog.stop();
+            _writeAheadLog = null;
+        }
         //TODO reset everything
     }
 
     @Override
     public final long available() {
-        return _lru.size();
+        long sum = 0;
+        for (int i = 0; i < _stripes; i++) {
+            sum += _lrus[i].size();
+        }
+        return sum;
+    }
+
+    public final int stripes() {
+        return _stripes;
+    }
+
+    /**
+     * @return number of chunk creations which found no victim to evict
+     */
+    public final long exhaustions() {
+        return _metrics.get(METRIC_EXHAUSTIONS);
+    }
+
+    /**
+     * @return number of saves triggered by backpressure to release dirty chunks
+     */
+    public final long backpressureSaves() {
+        return _metrics.get(METRIC_SAVES);
+    }
+
+    /**
+     * @return number of times a creation has been parked by backpressure, waiting for chunks to be released
+     */
+    public final long backpressureParks() {
+        return _metrics.get(METRIC_PARKS);
+    }
+
+    /**
+     * @return number of creations that failed once the backpressure timeout was reached
+     */
+    public final long backpressureFailures() {
+        return _metrics.get(METRIC_FAILURES);
+    }
+
+    private int stripeOf(final int index) {
+        final int stripe = index / _stripeCapacity;
+        if (stripe >= _stripes) {
+            //the last stripe also owns the remainder of the division
+            return _stripes - 1;
+        }
+        return stripe;
     }
 
     @Override
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.heap;
+
+import greycat.chunk.Stack;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * CLOCK (second chance) implementation of {@link Stack}, used as eviction policy.
+ * <p>
+ * Indexes dequeued explicitly (i.e. chunks marked again while evictable) get a reference bit.
+ * {@link #dequeueTail()} rotates a hand over all indexes and clears reference bits until it finds an evictable index without one.
+ * A scan which uses chunks only once thus evicts its own chunks before the ones shared by many queries.
+ * All operations are lock-free.
+ */
+public final class HeapClockStack implements Stack {
+
+    private final int _capacity;
+    private final AtomicIntegerArray _present;
+    private final AtomicIntegerArray _referenced;
+    private final AtomicInteger _hand;
+    private final AtomicInteger _count;
+
+    public HeapClockStack(final int capacity, final boolean fill) {
+        this._capacity = capacity;
+        this._present = new AtomicIntegerArray(capacity);
+        this._referenced = new AtomicIntegerArray(capacity);
+        this._hand = new AtomicInteger(0);
+        this._count = new AtomicInteger(0);
+        if (fill) {
+            for (int i = 0; i < capacity; i++) {
+                _present.set(i, 1);
+            }
+            _count.set(capacity);
+        }
+    }
+
+    @Override
+    public final boolean enqueue(final long index) {
+        if (_present.compareAndSet((int) index, 0, 1)) {
+            _count.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public final long dequeueTail() {
+        while (_count.get() > 0) {
+            //two full rotations are enough to clear every reference bit
+            for (int i = 0; i < _capacity * 2; i++) {
+                final int current = nextHand();
+                if (_present.get(current) == 1) {
+                    if (_referenced.get(current) == 1) {
+                        _referenced.set(current, 0);
+                    } else if (_present.compareAndSet(current, 1, 0)) {
+                        _count.decrementAndGet();
+                        return current;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public final boolean dequeue(final long index) {
+        final int castedIndex = (int) index;
+        if (_present.compareAndSet(castedIndex, 1, 0)) {
+            _referenced.set(castedIndex, 1);
+            _count.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public final void free() {
+        //noop
+    }
+
+    @Override
+    public final long size() {
+        return _count.get();
+    }
+
+    private int nextHand() {
+        int current;
+        int next;
+        do {
+            current = _hand.get();
+            next = current + 1;
+            if (next == _capacity) {
+                next = 0;
+            }
+        } while (!_hand.compareAndSet(current, next));
+        return current;
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.heap;
+
+import greycat.chunk.Stack;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free implementation of {@link Stack}, without any monitor on enqueue/dequeue.
+ * <p>
+ * Membership of every index is tracked by a stamp: an odd stamp means that the index is currently in the stack.
+ * Each enqueue pushes the pair (index, stamp) into a bounded multi-producer/multi-consumer ring, while dequeue of an arbitrary index only flips its stamp.
+ * Entries of the ring whose stamp no longer matches are lazily skipped by {@link #dequeueTail()}.
+ * When the ring is saturated by such stale entries, one producer compacts it: the ring is drained and its valid entries are pushed back in the same order,
+ * while the other producers wait for the compaction to end. The order of {@link HeapFixedStack} is then kept, except for entries pushed concurrently with the start of a compaction.
+ * As the ring is twice larger than the capacity, a compaction frees at least half of it and its cost is amortized over as many pushes.
+ */
+public final class HeapLockFreeStack implements Stack {
+
+    private static final int STALE = -2;
+
+    private final int _capacity;
+    private final AtomicIntegerArray _stamps;
+    private final AtomicInteger _count;
+
+    private final int _mask;
+    private final AtomicIntegerArray _sequences;
+    private final int[] _ringIndexes;
+    private final int[] _ringStamps;
+    private final AtomicInteger _head;
+    private final AtomicInteger _tail;
+    private final AtomicBoolean _compacting;
+    private final int[] _compacted;
+
+    public HeapLockFreeStack(final int capacity, final boolean fill) {
+        this._capacity = capacity;
+        this._stamps = new AtomicIntegerArray(capacity);
+        this._count = new AtomicInteger(0);
+        //ring twice larger than the capacity, at least one entry out of two is then stale when the ring is full
+        int ringSize = 2;
+        while (ringSize < capacity * 2) {
+            ringSize = ringSize * 2;
+        }
+        this._mask = ringSize - 1;
+        this._sequences = new AtomicIntegerArray(ringSize);
+        this._ringIndexes = new int[ringSize];
+        this._ringStamps = new int[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            _sequences.set(i, i);
+        }
+        this._head = new AtomicInteger(0);
+        this._tail = new AtomicInteger(0);
+        this._compacting = new AtomicBoolean(false);
+        this._compacted = new int[ringSize];
+        if (fill) {
+            for (int i = 0; i < capacity; i++) {
+                enqueue(i);
+            }
+        }
+    }
+
+    @Override
+    public final boolean enqueue(final long index) {
+        final int castedIndex = (int) index;
+        int stamp;
+        do {
+            stamp = _stamps.get(castedIndex);
+            if ((stamp & 1) == 1) {
+                //already in the stack
+                return false;
+            }
+        } while (!_stamps.compareAndSet(castedIndex, stamp, stamp + 1));
+        _count.incrementAndGet();
+        push(castedIndex, stamp + 1);
+        return true;
+    }
+
+    @Override
+    public final long dequeueTail() {
+        while (true) {
+            final int polled = poll(true);
+            if (polled >= 0) {
+                _count.decrementAndGet();
+                return polled;
+            }
+            if (polled == -1 && _count.get() <= 0) {
+                return -1;
+            }
+            //stale entry, or an entry currently pushed by a concurrent producer, retry
+        }
+    }
+
+    @Override
+    public final boolean dequeue(final long index) {
+        final int castedIndex = (int) index;
+        int stamp;
+        do {
+            stamp = _stamps.get(castedIndex);
+            if ((stamp & 1) == 0) {
+                return false;
+            }
+        } while (!_stamps.compareAndSet(castedIndex, stamp, stamp + 1));
+        _count.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public final void free() {
+        //noop
+    }
+
+    @Override
+    public final long size() {
+        return _count.get();
+    }
+
+    public final int capacity() {
+        return _capacity;
+    }
+
+    private void push(final int index, final int stamp) {
+        while (_compacting.get() || !offer(index, stamp)) {
+            //ring full of stale entries, compact it unless another producer already does
+            if (_compacting.compareAndSet(false, true)) {
+                try {
+                    compact();
+                } finally {
+                    _compacting.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains the ring up to its current tail and pushes back the entries still valid, keeping their order.
+     * Only called by the producer owning {@link #_compacting}.
+     */
+    private void compact() {
+        final int end = _tail.get();
+        int size = 0;
+        while (end - _head.get() > 0) {
+            final int polled = poll(false);
+            if (polled == -1) {
+                break;
+            }
+            if (polled >= 0) {
+                _compacted[size] = polled;
+                size++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            final int index = _compacted[i];
+            final int currentStamp = _stamps.get(index);
+            if ((currentStamp & 1) == 1) {
+                while (!offer(index, currentStamp)) {
+                    //only producers which raced the compaction flag can fill the ring, wait for consumers
+                }
+            }
+        }
+    }
+
+    private boolean offer(final int index, final int stamp) {
+        int position = _tail.get();
+        while (true) {
+            final int cell = position & _mask;
+            final int diff = _sequences.get(cell) - position;
+            if (diff == 0) {
+                if (_tail.compareAndSet(position, position + 1)) {
+                    _ringIndexes[cell] = index;
+                    _ringStamps[cell] = stamp;
+                    _sequences.set(cell, position + 1);
+                    return true;
+                }
+                position = _tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = _tail.get();
+            }
+        }
+    }
+
+    /**
+     * Polls the oldest entry of the ring.
+     *
+     * @param take true to remove the polled index from the stack, false to only check that it is still in
+     * @return the polled index if its entry is still valid, {@link #STALE} otherwise, -1 if the ring is empty
+     */
+    private int poll(final boolean take) {
+        int position = _head.get();
+        while (true) {
+            final int cell = position & _mask;
+            final int diff = _sequences.get(cell) - (position + 1);
+            if (diff == 0) {
+                if (_head.compareAndSet(position, position + 1)) {
+                    final int index = _ringIndexes[cell];
+                    final int stamp = _ringStamps[cell];
+                    final boolean valid;
+                    if (take) {
+                        valid = _stamps.compareAndSet(index, stamp, stamp + 1);
+                    } else {
+                        valid = _stamps.get(index) == stamp;
+                    }
+                    _sequences.set(cell, position + _mask + 1);
+                    if (valid) {
+                        return index;
+                    } else {
+                        return STALE;
+                    }
+                }
+                position = _head.get();
+            } else if (diff < 0) {
+                return -1;
+            } else {
+                position = _head.get();
+            }
+        }
+    }
+
+}
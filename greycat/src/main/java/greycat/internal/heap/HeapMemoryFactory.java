@@ -15,16 +15,161 @@
  */
 package greycat.internal.heap;
 
+import greycat.Callback;
 import greycat.Graph;
 import greycat.chunk.ChunkSpace;
+import greycat.chunk.EvictionPolicy;
 import greycat.plugin.MemoryFactory;
 import greycat.struct.Buffer;
 
 public class HeapMemoryFactory implements MemoryFactory {
 
+    private int _stripes = 1;
+    private boolean _lockFreeStacks = false;
+    private byte _evictionPolicy = EvictionPolicy.LRU;
+    private long _backpressureTimeout = -1;
+    private int _serializers = 0;
+    private boolean _binaryFormat = false;
+    private int _maxInFlight = 0;
+    private String _writeAheadLogPath = null;
+    private int _checkpointInterval = 0;
+
+    /**
+     * Splits the chunk spaces created by this factory into several independently locked segments.
+     *
+     * @param stripes number of segments, typically the number of worker threads
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     */
+    public final HeapMemoryFactory withStripes(final int stripes) {
+        this._stripes = stripes;
+        return this;
+    }
+
+    /**
+     * Tracks LRU and dirty chunks without any monitor, see {@link HeapLockFreeStack}.
+     * Recommended for read-heavy workloads where many workers concurrently mark and unmark chunks.
+     * Only compatible with the default {@link EvictionPolicy#LRU} policy, the space fails to build otherwise.
+     *
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     */
+    public final HeapMemoryFactory withLockFreeStacks() {
+        this._lockFreeStacks = true;
+        return this;
+    }
+
+    /**
+     * Sets the strategy used to select the chunks to evict when the space is full.
+     *
+     * @param evictionPolicy one of the {@link EvictionPolicy} constants
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     */
+    public final HeapMemoryFactory withEvictionPolicy(final byte evictionPolicy) {
+        this._evictionPolicy = evictionPolicy;
+        return this;
+    }
+
+    /**
+     * Replaces the crash on a full cache by backpressure: the space saves dirty chunks to make them evictable,
+     * and the requesting worker waits for other workers to release chunks, up to the given timeout.
+     * With a scheduler running all its jobs on a single thread, no other worker can release chunks: the creation then crashes once no dirty chunk is left to save.
+     * Occurrences are reported by {@link HeapChunkSpace#exhaustions()} and related metrics.
+     *
+     * @param timeout maximum time in milliseconds to wait for a free chunk before crashing
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     */
+    public final HeapMemoryFactory withBackpressure(final long timeout) {
+        this._backpressureTimeout = timeout;
+        return this;
+    }
+
+    /**
+     * Saves asynchronously: dirty chunks are serialized by background threads and flushed to the storage in order,
+     * so that workers can keep on mutating the graph while previous batches are written, see {@link HeapWriteBehind}.
+     * Save callbacks are called once the batch is durable.
+     *
+     * @param serializers number of threads serializing dirty chunks
+     * @param maxInFlight maximum number of batches waiting for the storage, a save blocks once reached
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     * @ignore ts
+     */
+    public final HeapMemoryFactory withWriteBehind(final int serializers, final int maxInFlight) {
+        this._serializers = serializers;
+        this._maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Appends saves to a write-ahead log instead of writing them to the storage, see {@link HeapWriteAheadLog}.
+     * Concurrent saves are committed with a single sync of the log, and the storage only receives periodic checkpoints.
+     * The log of the space of the graph is replayed when the graph connects, spaces created once connected do not log.
+     *
+     * @param path               directory of the log files
+     * @param checkpointInterval number of saves appended to the log between two checkpoints to the storage
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     * @ignore ts
+     */
+    public final HeapMemoryFactory withWriteAheadLog(final String path, final int checkpointInterval) {
+        this._writeAheadLogPath = path;
+        this._checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * Saves chunks in the compact binary encoding of {@link greycat.utility.BinaryFormat} instead of Base64 text.
+     * Payloads are versioned, stores written with the text encoding remain readable.
+     *
+     * @return the {@link HeapMemoryFactory}, for a fluent API
+     */
+    public final HeapMemoryFactory withBinaryFormat() {
+        this._binaryFormat = true;
+        return this;
+    }
+
+    /**
+     * The TypeScript version neither saves behind nor logs ahead, see {@link #withWriteBehind(int, int)} and {@link #withWriteAheadLog(String, int)}.
+     * {@native ts
+     * let space = new greycat.internal.heap.HeapChunkSpace(memorySize, batchSize, graph, deepWorld, new greycat.internal.heap.HeapSpaceLayout(this._stripes, this._lockFreeStacks, this._evictionPolicy, this._backpressureTimeout));
+     * space.setBinaryFormat(this._binaryFormat);
+     * return space;
+     * }
+     */
     @Override
     public final ChunkSpace newSpace(final long memorySize, final long batchSize, final Graph graph, final boolean deepWorld) {
-        return new HeapChunkSpace((int) memorySize, (int) batchSize, graph, deepWorld);
+        final HeapChunkSpace space = new HeapChunkSpace((int) memorySize, (int) batchSize, graph, deepWorld, new HeapSpaceLayout(_stripes, _lockFreeStacks, _evictionPolicy, _backpressureTimeout));
+        space.setBinaryFormat(_binaryFormat);
+        if (_serializers > 0) {
+            space.setWriteBehind(new HeapWriteBehind(space, _serializers, _maxInFlight));
+        }
+        if (_writeAheadLogPath != null && graph != null && !graph.isConnected()) {
+            if (_serializers > 0) {
+                throw new RuntimeException("Bad API usage: write-behind and write-ahead log cannot be combined");
+            }
+            attachWriteAheadLog(space, graph, (int) (memorySize / 2));
+        }
+        return space;
+    }
+
+    /**
+     * Replays the log, then attaches it to the space, every time the graph connects.
+     *
+     * @ignore ts
+     */
+    private void attachWriteAheadLog(final HeapChunkSpace space, final Graph graph, final int maxRetained) {
+        final String path = _writeAheadLogPath;
+        final int checkpointInterval = _checkpointInterval;
+        graph.addConnectHook(new Callback<Callback<Boolean>>() {
+            @Override
+            public void on(final Callback<Boolean> done) {
+                final HeapWriteAheadLog log = new HeapWriteAheadLog(path, checkpointInterval, maxRetained);
+                log.replay(space, new Callback<Boolean>() {
+                    @Override
+                    public void on(final Boolean result) {
+                        space.setWriteAheadLog(log);
+                        done.on(result);
+                    }
+                });
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.heap;
+
+import greycat.chunk.EvictionPolicy;
+import greycat.chunk.Stack;
+
+/**
+ * Segmented LRU implementation of {@link Stack}, used as eviction policy.
+ * <p>
+ * Evictable indexes are split in two LRU segments.
+ * An index enters the protected segment if it has been dequeued explicitly since its last eviction (i.e. its chunk has been re-used),
+ * or if its chunk type is protected according to {@link EvictionPolicy#isProtected(byte)}; all others enter the probationary segment.
+ * {@link #dequeueTail()} evicts from the probationary segment first, and the protected segment is bounded to a fraction of the capacity,
+ * its oldest indexes being demoted to the probationary segment when it overflows.
+ */
+public final class HeapSegmentedStack implements Stack {
+
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final byte NONE = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final HeapFixedStack _probation;
+    private final HeapFixedStack _protected;
+    private final int _protectedCapacity;
+    private final byte[] _segments;
+    private final boolean[] _reused;
+
+    private final HeapAtomicByteArray _types;
+    private final int _typesOffset;
+
+    /**
+     * @param capacity    number of indexes managed by this stack
+     * @param fill        true to start with all indexes in the stack
+     * @param types       chunk types of the owning space, or null to ignore types
+     * @param typesOffset offset of index 0 of this stack in the types array
+     */
+    public HeapSegmentedStack(final int capacity, final boolean fill, final HeapAtomicByteArray types, final int typesOffset) {
+        this._probation = new HeapFixedStack(capacity, fill);
+        this._protected = new HeapFixedStack(capacity, false);
+        this._protectedCapacity = (int) (capacity * PROTECTED_RATIO);
+        this._segments = new byte[capacity];
+        this._reused = new boolean[capacity];
+        this._types = types;
+        this._typesOffset = typesOffset;
+        if (fill) {
+            for (int i = 0; i < capacity; i++) {
+                _segments[i] = PROBATION;
+            }
+        }
+    }
+
+    @Override
+    public synchronized final boolean enqueue(final long index) {
+        final int castedIndex = (int) index;
+        if (_segments[castedIndex] != NONE) {
+            return false;
+        }
+        if (_reused[castedIndex] || (_types != null && EvictionPolicy.isProtected(_types.get(_typesOffset + castedIndex)))) {
+            if (_protectedCapacity > 0 && _protected.size() >= _protectedCapacity) {
+                final int demoted = (int) _protected.dequeueTail();
+                _reused[demoted] = false;
+                _probation.enqueue(demoted);
+                _segments[demoted] = PROBATION;
+            }
+            if (_protectedCapacity > 0) {
+                _protected.enqueue(castedIndex);
+                _segments[castedIndex] = PROTECTED;
+                return true;
+            }
+        }
+        _probation.enqueue(castedIndex);
+        _segments[castedIndex] = PROBATION;
+        return true;
+    }
+
+    @Override
+    public synchronized final long dequeueTail() {
+        long result = _probation.dequeueTail();
+        if (result == -1) {
+            result = _protected.dequeueTail();
+        }
+        if (result != -1) {
+            final int castedResult = (int) result;
+            _segments[castedResult] = NONE;
+            //the index will host a new chunk
+            _reused[castedResult] = false;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized final boolean dequeue(final long index) {
+        final int castedIndex = (int) index;
+        //membership is tracked here, the segment result is not needed
+        switch (_segments[castedIndex]) {
+            case PROBATION:
+                _probation.dequeue(castedIndex);
+                break;
+            case PROTECTED:
+                _protected.dequeue(castedIndex);
+                break;
+            default:
+                return false;
+        }
+        _segments[castedIndex] = NONE;
+        _reused[castedIndex] = true;
+        return true;
+    }
+
+    @Override
+    public final void free() {
+        _probation.free();
+        _protected.free();
+    }
+
+    @Override
+    public synchronized final long size() {
+        return _probation.size() + _protected.size();
+    }
+
+}
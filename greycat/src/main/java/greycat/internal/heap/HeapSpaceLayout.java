@@ -0,0 +1,65 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.heap;
+
+import greycat.chunk.EvictionPolicy;
+
+/**
+ * Segments and eviction strategy of a {@link HeapChunkSpace}, fixed when the space is created.
+ */
+public class HeapSpaceLayout {
+
+    private final int _stripes;
+    private final boolean _lockFreeStacks;
+    private final byte _evictionPolicy;
+    private final long _backpressureTimeout;
+
+    /**
+     * @param stripes             number of segments, 1 for a single global segment
+     * @param lockFreeStacks      true to track LRU and dirty chunks with {@link HeapLockFreeStack}, false for the synchronized {@link HeapFixedStack}, requires the {@link EvictionPolicy#LRU} policy
+     * @param evictionPolicy      strategy used to select victims, see {@link EvictionPolicy}
+     * @param backpressureTimeout when no victim is available, maximum time in milliseconds spent saving dirty chunks and waiting for chunks to be released before crashing, -1 to crash immediately
+     */
+    public HeapSpaceLayout(final int stripes, final boolean lockFreeStacks, final byte evictionPolicy, final long backpressureTimeout) {
+        if (stripes < 1) {
+            throw new RuntimeException("Bad API usage: number of stripes should be at least 1, received " + stripes);
+        }
+        if (lockFreeStacks && evictionPolicy != EvictionPolicy.LRU) {
+            throw new RuntimeException("Bad API usage: lock-free stacks are only available with the LRU eviction policy");
+        }
+        this._stripes = stripes;
+        this._lockFreeStacks = lockFreeStacks;
+        this._evictionPolicy = evictionPolicy;
+        this._backpressureTimeout = backpressureTimeout;
+    }
+
+    public final int stripes() {
+        return _stripes;
+    }
+
+    public final boolean lockFreeStacks() {
+        return _lockFreeStacks;
+    }
+
+    public final byte evictionPolicy() {
+        return _evictionPolicy;
+    }
+
+    public final long backpressureTimeout() {
+        return _backpressureTimeout;
+    }
+
+}
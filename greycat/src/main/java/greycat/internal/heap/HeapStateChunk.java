@@ -25,6 +25,8 @@ import greycat.plugin.NodeStateCallback;
 import greycat.plugin.TypeDeclaration;
 import greycat.struct.*;
 import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
 import greycat.utility.HashHelper;
 
 import java.util.Arrays;
@@ -40,6 +42,8 @@ class HeapStateChunk implements StateChunk, HeapContainer {
     private Object[] _v;
     private int[] _type;
     private int[] next_and_hash;
+    private boolean[] _dirtyEntries;
+    private boolean _dirtyStructures;
     private long _hash;
     private boolean _inSync;
     private int _group;
@@ -425,99 +429,298 @@ class HeapStateChunk implements StateChunk, HeapContainer {
         return getOrCreateAt(_space.graph().resolver().stringToHash(key, true), elemType);
     }
 
+    /**
+     * Called by the nested structures, which do not know their entry: the next diff writes all of them.
+     */
     @Override
     final public void declareDirty() {
+        _dirtyStructures = true;
+        notifyDirty();
+    }
+
+    private void declareDirtyEntry(final int entry) {
+        final boolean[] dirtyEntries = _dirtyEntries;
+        if (dirtyEntries != null) {
+            if (entry >= dirtyEntries.length) {
+                final boolean[] extended = new boolean[_capacity];
+                System.arraycopy(dirtyEntries, 0, extended, 0, dirtyEntries.length);
+                _dirtyEntries = extended;
+            }
+            _dirtyEntries[entry] = true;
+        }
+        notifyDirty();
+    }
+
+    private void notifyDirty() {
         if (_space != null && _hash != Constants.EMPTY_HASH) {
             _hash = Constants.EMPTY_HASH;
             _space.notifyUpdate(_index);
         }
     }
 
-    @SuppressWarnings("Duplicates")
+    /**
+     * Entries are only tracked once the chunk saved a diff, or if its space logs diffs ahead of the storage.
+     */
+    private boolean tracksDiff() {
+        return _dirtyEntries != null || (_space != null && _space.logsDiffs());
+    }
+
+    private void cleanDiff() {
+        _dirtyEntries = new boolean[_capacity];
+        _dirtyStructures = false;
+    }
+
+    private boolean isDirty(final int entry) {
+        if (_dirtyEntries == null || entry >= _dirtyEntries.length || _dirtyEntries[entry]) {
+            return true;
+        }
+        if (!_dirtyStructures) {
+            return false;
+        }
+        switch (_type[entry]) {
+            case Type.BOOL:
+            case Type.INT:
+            case Type.DOUBLE:
+            case Type.LONG:
+            case Type.STRING:
+                return false;
+            default:
+                return true;
+        }
+    }
+
     @Override
     public synchronized final void save(final Buffer buffer) {
         final long beginIndex = buffer.writeIndex();
-        if (_group != 0) {
-            Base64.encodeIntToBuffer(_group, buffer);
-            buffer.write(CoreConstants.CHUNK_META_SEP);
+        final boolean binary = _space != null && _space.binaryFormat();
+        final Buffer section = binary ? new HeapBuffer() : null;
+        if (binary) {
+            BinaryFormat.writeHeader(buffer);
+            BinaryFormat.writeVarInt(buffer, _group);
+            BinaryFormat.writeVarInt(buffer, _size);
+        } else {
+            if (_group != 0) {
+                Base64.encodeIntToBuffer(_group, buffer);
+                buffer.write(CoreConstants.CHUNK_META_SEP);
+            }
+            Base64.encodeIntToBuffer(_size, buffer);
         }
-        Base64.encodeIntToBuffer(_size, buffer);
         for (int i = 0; i < _size; i++) {
-            final Object loopValue = _v[i]; //there is a real value
-            buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeIntToBuffer(_type[i], buffer);
-            buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeIntToBuffer(_k[i], buffer);
-            buffer.write(CoreConstants.CHUNK_SEP);
-            if (loopValue != null) {
-                switch (_type[i]) {
-                    case Type.STRING:
-                        Base64.encodeStringToBuffer((String) loopValue, buffer);
-                        break;
-                    case Type.BOOL:
-                        if ((Boolean) _v[i]) {
-                            Base64.encodeIntToBuffer(CoreConstants.BOOL_TRUE, buffer);
-                        } else {
-                            Base64.encodeIntToBuffer(CoreConstants.BOOL_FALSE, buffer);
-                        }
-                        break;
-                    case Type.LONG:
-                        Base64.encodeLongToBuffer((Long) loopValue, buffer);
-                        break;
-                    case Type.DOUBLE:
-                        Base64.encodeDoubleToBuffer((Double) loopValue, buffer);
-                        break;
-                    case Type.INT:
-                        Base64.encodeIntToBuffer((Integer) loopValue, buffer);
-                        break;
-                    case Type.DOUBLE_ARRAY:
-                        ((HeapDoubleArray) loopValue).save(buffer);
-                        break;
-                    case Type.LONG_ARRAY:
-                        ((HeapLongArray) loopValue).save(buffer);
-                        break;
-                    case Type.INT_ARRAY:
-                        ((HeapIntArray) loopValue).save(buffer);
-                        break;
-                    case Type.STRING_ARRAY:
-                        ((HeapStringArray) loopValue).save(buffer);
-                        break;
-                    case Type.RELATION:
-                        ((HeapRelation) loopValue).save(buffer);
-                        break;
-                    case Type.DMATRIX:
-                        ((HeapDMatrix) loopValue).save(buffer);
-                        break;
-                    case Type.LMATRIX:
-                        ((HeapLMatrix) loopValue).save(buffer);
-                        break;
-                    case Type.STRING_TO_INT_MAP:
-                        ((HeapStringIntMap) loopValue).save(buffer);
-                        break;
-                    case Type.LONG_TO_LONG_MAP:
-                        ((HeapLongLongMap) loopValue).save(buffer);
-                        break;
-                    case Type.INT_TO_INT_MAP:
-                        ((HeapIntIntMap) loopValue).save(buffer);
-                        break;
-                    case Type.INT_TO_STRING_MAP:
-                        ((HeapIntStringMap) loopValue).save(buffer);
-                        break;
-                    case Type.LONG_TO_LONG_ARRAY_MAP:
-                        ((HeapLongLongArrayMap) loopValue).save(buffer);
-                        break;
-                    default:
-                        ((HeapEStructArray) loopValue).save(buffer);
-                        break;
-                }
+            if (binary) {
+                saveBinaryEntry(i, buffer, section);
+            } else {
+                saveEntry(i, buffer);
             }
         }
+        if (section != null) {
+            section.free();
+        }
+        if (tracksDiff()) {
+            cleanDiff();
+        }
         _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
     }
 
-    @Override
-    public void saveDiff(Buffer buffer) {
+    @SuppressWarnings("Duplicates")
+    private void saveEntry(final int i, final Buffer buffer) {
+        final Object loopValue = _v[i]; //there is a real value
+        buffer.write(CoreConstants.CHUNK_SEP);
+        Base64.encodeIntToBuffer(_type[i], buffer);
+        buffer.write(CoreConstants.CHUNK_SEP);
+        Base64.encodeIntToBuffer(_k[i], buffer);
+        buffer.write(CoreConstants.CHUNK_SEP);
+        if (loopValue != null) {
+            switch (_type[i]) {
+                case Type.STRING:
+                    Base64.encodeStringToBuffer((String) loopValue, buffer);
+                    break;
+                case Type.BOOL:
+                    if ((Boolean) _v[i]) {
+                        Base64.encodeIntToBuffer(CoreConstants.BOOL_TRUE, buffer);
+                    } else {
+                        Base64.encodeIntToBuffer(CoreConstants.BOOL_FALSE, buffer);
+                    }
+                    break;
+                case Type.LONG:
+                    Base64.encodeLongToBuffer((Long) loopValue, buffer);
+                    break;
+                case Type.DOUBLE:
+                    Base64.encodeDoubleToBuffer((Double) loopValue, buffer);
+                    break;
+                case Type.INT:
+                    Base64.encodeIntToBuffer((Integer) loopValue, buffer);
+                    break;
+                case Type.DOUBLE_ARRAY:
+                    ((HeapDoubleArray) loopValue).save(buffer);
+                    break;
+                case Type.LONG_ARRAY:
+                    ((HeapLongArray) loopValue).save(buffer);
+                    break;
+                case Type.INT_ARRAY:
+                    ((HeapIntArray) loopValue).save(buffer);
+                    break;
+                case Type.STRING_ARRAY:
+                    ((HeapStringArray) loopValue).save(buffer);
+                    break;
+                case Type.RELATION:
+                    ((HeapRelation) loopValue).save(buffer);
+                    break;
+                case Type.DMATRIX:
+                    ((HeapDMatrix) loopValue).save(buffer);
+                    break;
+                case Type.LMATRIX:
+                    ((HeapLMatrix) loopValue).save(buffer);
+                    break;
+                case Type.STRING_TO_INT_MAP:
+                    ((HeapStringIntMap) loopValue).save(buffer);
+                    break;
+                case Type.LONG_TO_LONG_MAP:
+                    ((HeapLongLongMap) loopValue).save(buffer);
+                    break;
+                case Type.INT_TO_INT_MAP:
+                    ((HeapIntIntMap) loopValue).save(buffer);
+                    break;
+                case Type.INT_TO_STRING_MAP:
+                    ((HeapIntStringMap) loopValue).save(buffer);
+                    break;
+                case Type.LONG_TO_LONG_ARRAY_MAP:
+                    ((HeapLongLongArrayMap) loopValue).save(buffer);
+                    break;
+                default:
+                    ((HeapEStructArray) loopValue).save(buffer);
+                    break;
+            }
+        }
+    }
 
+    /**
+     * Primitive values are written natively, structures are embedded with their own text encoding.
+     */
+    private void saveBinaryEntry(final int i, final Buffer buffer, final Buffer section) {
+        final Object loopValue = _v[i];
+        //lowest bit of the type flags non null values
+        if (loopValue == null) {
+            BinaryFormat.writeVarInt(buffer, _type[i] << 1);
+            BinaryFormat.writeVarInt(buffer, _k[i]);
+            return;
+        }
+        BinaryFormat.writeVarInt(buffer, (_type[i] << 1) | 1);
+        BinaryFormat.writeVarInt(buffer, _k[i]);
+        switch (_type[i]) {
+            case Type.STRING:
+                BinaryFormat.writeString(buffer, (String) loopValue);
+                break;
+            case Type.BOOL:
+                if ((Boolean) loopValue) {
+                    BinaryFormat.writeByte(buffer, (byte) CoreConstants.BOOL_TRUE);
+                } else {
+                    BinaryFormat.writeByte(buffer, (byte) CoreConstants.BOOL_FALSE);
+                }
+                break;
+            case Type.LONG:
+                BinaryFormat.writeVarLong(buffer, (Long) loopValue);
+                break;
+            case Type.DOUBLE:
+                BinaryFormat.writeDouble(buffer, (Double) loopValue);
+                break;
+            case Type.INT:
+                BinaryFormat.writeVarInt(buffer, (Integer) loopValue);
+                break;
+            default:
+                final long sectionBegin = section.writeIndex();
+                saveStructure(_type[i], loopValue, section);
+                BinaryFormat.writeSection(buffer, section, sectionBegin, section.writeIndex());
+                break;
+        }
+    }
+
+    private static void saveStructure(final int type, final Object value, final Buffer buffer) {
+        switch (type) {
+            case Type.DOUBLE_ARRAY:
+                ((HeapDoubleArray) value).save(buffer);
+                break;
+            case Type.LONG_ARRAY:
+                ((HeapLongArray) value).save(buffer);
+                break;
+            case Type.INT_ARRAY:
+                ((HeapIntArray) value).save(buffer);
+                break;
+            case Type.STRING_ARRAY:
+                ((HeapStringArray) value).save(buffer);
+                break;
+            case Type.RELATION:
+                ((HeapRelation) value).save(buffer);
+                break;
+            case Type.DMATRIX:
+                ((HeapDMatrix) value).save(buffer);
+                break;
+            case Type.LMATRIX:
+                ((HeapLMatrix) value).save(buffer);
+                break;
+            case Type.STRING_TO_INT_MAP:
+                ((HeapStringIntMap) value).save(buffer);
+                break;
+            case Type.LONG_TO_LONG_MAP:
+                ((HeapLongLongMap) value).save(buffer);
+                break;
+            case Type.INT_TO_INT_MAP:
+                ((HeapIntIntMap) value).save(buffer);
+                break;
+            case Type.INT_TO_STRING_MAP:
+                ((HeapIntStringMap) value).save(buffer);
+                break;
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                ((HeapLongLongArrayMap) value).save(buffer);
+                break;
+            default:
+                ((HeapEStructArray) value).save(buffer);
+                break;
+        }
+    }
+
+    /**
+     * Writes the attributes set, removed or modified since the last save, in the format of {@link #save(Buffer)}.
+     * Entries are marked when they are set, nested structures such as relations, maps or arrays only declare the chunk dirty, and are then all written.
+     * Removed attributes are written with a null value, {@link #loadDiff(Buffer)} merges them over the stored ones.
+     */
+    @Override
+    public synchronized final void saveDiff(final Buffer buffer) {
+        final long beginIndex = buffer.writeIndex();
+        final boolean binary = _space != null && _space.binaryFormat();
+        int changed = 0;
+        for (int i = 0; i < _size; i++) {
+            if (isDirty(i)) {
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            final Buffer section = binary ? new HeapBuffer() : null;
+            if (binary) {
+                BinaryFormat.writeHeader(buffer);
+                BinaryFormat.writeVarInt(buffer, _group);
+                BinaryFormat.writeVarInt(buffer, changed);
+            } else {
+                if (_group != 0) {
+                    Base64.encodeIntToBuffer(_group, buffer);
+                    buffer.write(CoreConstants.CHUNK_META_SEP);
+                }
+                Base64.encodeIntToBuffer(changed, buffer);
+            }
+            for (int i = 0; i < _size; i++) {
+                if (isDirty(i)) {
+                    if (binary) {
+                        saveBinaryEntry(i, buffer, section);
+                    } else {
+                        saveEntry(i, buffer);
+                    }
+                }
+            }
+            if (section != null) {
+                section.free();
+            }
+        }
+        cleanDiff();
+        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
     }
 
     @Override
@@ -781,7 +984,7 @@ class HeapStateChunk implements StateChunk, HeapContainer {
             _type[0] = p_type;
             _size = 1;
             if (!initial) {
-                declareDirty();
+                declareDirtyEntry(0);
             }
             return;
         }
@@ -867,7 +1070,7 @@ class HeapStateChunk implements StateChunk, HeapContainer {
                 //}
             }
             if (!initial) {
-                declareDirty();
+                declareDirtyEntry(entry);
             }
             return;
         }
@@ -881,7 +1084,7 @@ class HeapStateChunk implements StateChunk, HeapContainer {
             }
             _size++;
             if (!initial) {
-                declareDirty();
+                declareDirtyEntry(_size - 1);
             }
             return;
         }
@@ -915,7 +1118,7 @@ class HeapStateChunk implements StateChunk, HeapContainer {
             next_and_hash[_capacity + keyHash] = i;
         }
         if (!initial) {
-            declareDirty();
+            declareDirtyEntry(_size - 1);
         }
     }
 
@@ -956,8 +1159,133 @@ class HeapStateChunk implements StateChunk, HeapContainer {
     private static final byte LOAD_WAITING_KEY = 2;
     private static final byte LOAD_WAITING_VALUE = 3;
 
+    private void internal_load_binary(final Buffer buffer, final boolean initial) {
+        final BinaryReader reader = new BinaryReader(buffer);
+        _group = reader.readVarInt();
+        final int size = reader.readVarInt();
+        allocate(size);
+        Buffer section = null;
+        for (int i = 0; i < size; i++) {
+            final int read_flagged_type = reader.readVarInt();
+            final int read_type = read_flagged_type >> 1;
+            final int read_key = reader.readVarInt();
+            if ((read_flagged_type & 1) == 0) {
+                internal_set(read_key, read_type, null, true, initial);
+                continue;
+            }
+            switch (read_type) {
+                case Type.STRING:
+                    internal_set(read_key, read_type, reader.readString(), true, initial);
+                    break;
+                case Type.BOOL:
+                    internal_set(read_key, read_type, reader.readByte() == CoreConstants.BOOL_TRUE, true, initial);
+                    break;
+                case Type.LONG:
+                    internal_set(read_key, read_type, reader.readVarLong(), true, initial);
+                    break;
+                case Type.DOUBLE:
+                    internal_set(read_key, read_type, reader.readDouble(), true, initial);
+                    break;
+                case Type.INT:
+                    internal_set(read_key, read_type, reader.readVarInt(), true, initial);
+                    break;
+                default:
+                    final byte[] bytes = reader.readBytes();
+                    if (section == null) {
+                        section = new HeapBuffer();
+                    }
+                    final long sectionBegin = section.writeIndex();
+                    section.writeAll(bytes);
+                    loadStructure(read_key, read_type, section, sectionBegin, section.writeIndex(), initial);
+                    break;
+            }
+        }
+        if (section != null) {
+            section.free();
+        }
+        _hash = HashHelper.hashBuffer(buffer, 0, buffer.length());
+    }
+
+    private void loadStructure(final int read_key, final int read_type, final Buffer buffer, final long offset, final long max, final boolean initial) {
+        switch (read_type) {
+            case Type.LONG_ARRAY:
+                HeapLongArray larray = new HeapLongArray(this);
+                larray.load(buffer, offset, max);
+                internal_set(read_key, read_type, larray, true, initial);
+                break;
+            case Type.DOUBLE_ARRAY:
+                HeapDoubleArray darray = new HeapDoubleArray(this);
+                darray.load(buffer, offset, max);
+                internal_set(read_key, read_type, darray, true, initial);
+                break;
+            case Type.INT_ARRAY:
+                HeapIntArray iarray = new HeapIntArray(this);
+                iarray.load(buffer, offset, max);
+                internal_set(read_key, read_type, iarray, true, initial);
+                break;
+            case Type.STRING_ARRAY:
+                HeapStringArray sarray = new HeapStringArray(this);
+                sarray.load(buffer, offset, max);
+                internal_set(read_key, read_type, sarray, true, initial);
+                break;
+            case Type.RELATION:
+                HeapRelation relation = new HeapRelation(this, null);
+                relation.load(buffer, offset, max);
+                internal_set(read_key, read_type, relation, true, initial);
+                break;
+            case Type.DMATRIX:
+                HeapDMatrix matrix = new HeapDMatrix(this, null);
+                matrix.load(buffer, offset, max);
+                internal_set(read_key, read_type, matrix, true, initial);
+                break;
+            case Type.LMATRIX:
+                HeapLMatrix lmatrix = new HeapLMatrix(this, null);
+                lmatrix.load(buffer, offset, max);
+                internal_set(read_key, read_type, lmatrix, true, initial);
+                break;
+            case Type.LONG_TO_LONG_MAP:
+                HeapLongLongMap l2lmap = new HeapLongLongMap(this);
+                l2lmap.load(buffer, offset, max);
+                internal_set(read_key, read_type, l2lmap, true, initial);
+                break;
+            case Type.INT_TO_INT_MAP:
+                HeapIntIntMap i2imap = new HeapIntIntMap(this);
+                i2imap.load(buffer, offset, max);
+                internal_set(read_key, read_type, i2imap, true, initial);
+                break;
+            case Type.INT_TO_STRING_MAP:
+                HeapIntStringMap i2smap = new HeapIntStringMap(this);
+                i2smap.load(buffer, offset, max);
+                internal_set(read_key, read_type, i2smap, true, initial);
+                break;
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                HeapLongLongArrayMap l2lrmap = new HeapLongLongArrayMap(this);
+                l2lrmap.load(buffer, offset, max);
+                internal_set(read_key, read_type, l2lrmap, true, initial);
+                break;
+            case Type.STRING_TO_INT_MAP:
+                final int previousFound = internal_find(read_key);
+                HeapStringIntMap s2lmap;
+                if (previousFound != -1 && _type[previousFound] == Type.STRING_TO_INT_MAP) {
+                    s2lmap = (HeapStringIntMap) _v[previousFound];
+                } else {
+                    s2lmap = new HeapStringIntMap(this);
+                    internal_set(read_key, read_type, s2lmap, true, initial);
+                }
+                s2lmap.load(buffer, offset, max);
+                break;
+            default:
+                HeapEStructArray eGraphDef = new HeapEStructArray(this, null, this.graph());
+                eGraphDef.load(buffer, offset, max);
+                internal_set(read_key, read_type, eGraphDef, true, initial);
+                break;
+        }
+    }
+
     private synchronized void internal_load(final Buffer buffer, final boolean initial) {
-        if (buffer != null && buffer.length() > 0) {
+        if (BinaryFormat.isBinary(buffer)) {
+            internal_load_binary(buffer, initial);
+        } else if (buffer != null && buffer.length() > 0) {
             final long payloadSize = buffer.length();
             long previous = 0;
             long cursor = 0;
@@ -1253,6 +1581,9 @@ class HeapStateChunk implements StateChunk, HeapContainer {
 
     public final synchronized void load(final Buffer buffer) {
         internal_load(buffer, true);
+        if (tracksDiff()) {
+            cleanDiff();
+        }
     }
 
     @Override
@@ -23,6 +23,8 @@ import greycat.chunk.SuperTreeWalker;
 import greycat.internal.CoreConstants;
 import greycat.struct.Buffer;
 import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
 import greycat.utility.HashHelper;
 
 public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
@@ -38,6 +40,7 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
     private long[] _k;
     private long[] _v;
     private boolean[] _colors;
+    private boolean[] _diff;
 
     private volatile long _magic;
     private volatile int _size = 0;
@@ -114,6 +117,7 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
             return;
         }
         _v[_size - 1] = newV;
+        _diff[_size - 1] = true;
     }
 
     @Override
@@ -187,57 +191,97 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
 
     @Override
     public synchronized final void save(final Buffer buffer) {
-        final long beginIndex = buffer.writeIndex();
-        if (_group != 0) {
-            Base64.encodeIntToBuffer(_group, buffer);
-            buffer.write(CoreConstants.CHUNK_META_SEP);
-        }
-        Base64.encodeIntToBuffer(_size, buffer);
-        buffer.write(CoreConstants.CHUNK_SEP);
-        if (_timeSensitivity != 0) {
-            Base64.encodeLongToBuffer(_timeSensitivity, buffer);
-        }
-        buffer.write(CoreConstants.CHUNK_SEP);
-        if (_timeSensitivityOffset != 0) {
-            Base64.encodeLongToBuffer(_timeSensitivityOffset, buffer);
-        }
-        buffer.write(CoreConstants.CHUNK_SEP);
-        for (int i = 0; i < _size; i++) {
-            Base64.encodeLongToBuffer(this._k[i], buffer);
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-            Base64.encodeLongToBuffer(this._v[i], buffer);
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-        }
-        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+        internal_save(buffer, false);
     }
 
+    /**
+     * Writes the entries inserted or updated since the last save, in the format of {@link #save(Buffer)}, with the time sensitivity.
+     * {@link #loadDiff(Buffer)} merges them with the stored entries.
+     */
     @Override
     public synchronized final void saveDiff(final Buffer buffer) {
-        throw new RuntimeException("Not implemented yet");
-        /*
         if (_hash == Constants.EMPTY_HASH) {
-            final long beginIndex = buffer.writeIndex();
-            Base64.encodeIntToBuffer(_size, buffer);
+            internal_save(buffer, true);
+        }
+    }
+
+    private void internal_save(final Buffer buffer, final boolean diff) {
+        final long beginIndex = buffer.writeIndex();
+        int size = _size;
+        if (diff) {
+            size = 0;
+            for (int i = 0; i < _size; i++) {
+                if (_diff[i]) {
+                    size++;
+                }
+            }
+        }
+        if (_space != null && _space.binaryFormat()) {
+            saveBinary(buffer, size, diff);
+        } else {
+            if (_group != 0) {
+                Base64.encodeIntToBuffer(_group, buffer);
+                buffer.write(CoreConstants.CHUNK_META_SEP);
+            }
+            Base64.encodeIntToBuffer(size, buffer);
             buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeLongToBuffer(_timeSensitivity, buffer);
+            if (diff || _timeSensitivity != 0) {
+                Base64.encodeLongToBuffer(_timeSensitivity, buffer);
+            }
             buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeLongToBuffer(_timeSensitivityOffset, buffer);
+            if (diff || _timeSensitivityOffset != 0) {
+                Base64.encodeLongToBuffer(_timeSensitivityOffset, buffer);
+            }
             buffer.write(CoreConstants.CHUNK_SEP);
             for (int i = 0; i < _size; i++) {
-                buffer.write(CoreConstants.CHUNK_VAL_SEP);
-                Base64.encodeLongToBuffer(this._k[i], buffer);
-                buffer.write(CoreConstants.CHUNK_VAL_SEP);
-                Base64.encodeLongToBuffer(this._v[i], buffer);
+                if (!diff || _diff[i]) {
+                    Base64.encodeLongToBuffer(this._k[i], buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                    Base64.encodeLongToBuffer(this._v[i], buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                }
             }
-            //TODO change this with incremental hash!
-            _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
-        }*/
+        }
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
+        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+    }
+
+    /**
+     * Keys are written in descending order, each one as the delta with the previous one, followed by its value.
+     */
+    private void saveBinary(final Buffer buffer, final int size, final boolean diff) {
+        BinaryFormat.writeHeader(buffer);
+        BinaryFormat.writeVarInt(buffer, _group);
+        BinaryFormat.writeVarInt(buffer, size);
+        BinaryFormat.writeVarLong(buffer, _timeSensitivity);
+        BinaryFormat.writeVarLong(buffer, _timeSensitivityOffset);
+        int index = internal_previousOrEqual_index(Constants.END_OF_TIME);
+        boolean isFirst = true;
+        long previousKey = 0;
+        while (index != -1) {
+            if (!diff || _diff[index]) {
+                final long loopKey = key(index);
+                if (isFirst) {
+                    isFirst = false;
+                    BinaryFormat.writeVarLong(buffer, loopKey);
+                } else {
+                    BinaryFormat.writeUnsignedVarLong(buffer, previousKey - loopKey);
+                }
+                BinaryFormat.writeVarLong(buffer, _v[index]);
+                previousKey = loopKey;
+            }
+            index = internal_previous(index);
+        }
     }
 
     @Override
     public synchronized final void load(final Buffer buffer) {
         internal_load(buffer, true);
-        //TODO reset _dirty
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
     }
 
     @Override
@@ -259,6 +303,9 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
         if (buffer == null || buffer.length() == 0) {
             return false;
         }
+        if (BinaryFormat.isBinary(buffer)) {
+            return internal_load_binary(buffer, initial);
+        }
         boolean isDirty = false;
         long cursor = 0;
         long previous = 0;
@@ -313,6 +360,28 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
         return isDirty;
     }
 
+    private boolean internal_load_binary(final Buffer buffer, final boolean initial) {
+        final BinaryReader reader = new BinaryReader(buffer);
+        _group = reader.readVarInt();
+        final int treeSize = reader.readVarInt();
+        final int closePowerOfTwo = (int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2)));
+        reallocate(closePowerOfTwo);
+        _timeSensitivity = reader.readVarLong();
+        _timeSensitivityOffset = reader.readVarLong();
+        boolean isDirty = false;
+        long loopKey = 0;
+        for (int i = 0; i < treeSize; i++) {
+            if (i == 0) {
+                loopKey = reader.readVarLong();
+            } else {
+                loopKey = loopKey - reader.readUnsignedVarLong();
+            }
+            final boolean insertResult = internal_insert(loopKey, reader.readVarLong(), initial);
+            isDirty = isDirty || insertResult;
+        }
+        return isDirty;
+    }
+
     @Override
     public final long index() {
         return _index;
@@ -388,12 +457,11 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
             System.arraycopy(_v, 0, new_values, 0, _size);
         }
 
-        /*
         boolean[] new_back_diff = new boolean[newCapacity];
         CoreConstants.fillBooleanArray(new_back_diff, false);
         if (_diff != null) {
             System.arraycopy(_diff, 0, new_back_diff, 0, _size);
-        }*/
+        }
         boolean[] new_back_colors = new boolean[newCapacity];
         if (_colors != null) {
             System.arraycopy(_colors, 0, new_back_colors, 0, _size);
@@ -412,7 +480,7 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
         _k = new_keys;
         _v = new_values;
         _colors = new_back_colors;
-        //_diff = new_back_diff;
+        _diff = new_back_diff;
     }
 
     private long key(int p_currentIndex) {
@@ -686,6 +754,7 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
                 if (_k[father] == p_key) {
                     if (_v[father] != p_value) {
                         _v[father] = p_value;
+                        _diff[father] = true;
                         return true;
                     } else {
                         return false;
@@ -747,6 +816,7 @@ public class HeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
             }
             setColor(_root, true);
         }
+        _diff[newIndex] = true;
         _size++;
         return true;
     }
@@ -23,6 +23,8 @@ import greycat.chunk.TreeWalker;
 import greycat.internal.CoreConstants;
 import greycat.struct.Buffer;
 import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
 import greycat.utility.HashHelper;
 import greycat.utility.Tuple;
 
@@ -38,6 +40,7 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
     private int[] _back_meta;
     private long[] _k;
     private boolean[] _colors;
+    private boolean[] _diff;
 
     private long _hash;
     private boolean _inSync;
@@ -135,44 +138,87 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
 
     @Override
     public synchronized final void save(Buffer buffer) {
-        final long beginIndex = buffer.writeIndex();
-        if (_group != 0) {
-            Base64.encodeIntToBuffer(_group, buffer);
-            buffer.write(CoreConstants.CHUNK_META_SEP);
-        }
-        Base64.encodeIntToBuffer(_size, buffer);
-        buffer.write(CoreConstants.CHUNK_SEP);
-        Base64.encodeLongToBuffer(_capacity, buffer);
-        buffer.write(CoreConstants.CHUNK_SEP);
-        for (int i = 0; i < _size; i++) {
-            Base64.encodeLongToBuffer(this._k[i], buffer);
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-        }
-        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+        internal_save(buffer, false);
     }
 
+    /**
+     * Writes the keys inserted since the last save, in the format of {@link #save(Buffer)}.
+     * {@link #loadDiff(Buffer)} merges them with the stored keys, so the size of the diff only depends on the number of new keys.
+     */
     @Override
     public final synchronized void saveDiff(Buffer buffer) {
         if (_hash == Constants.EMPTY_HASH) {
-            final long beginIndex = buffer.writeIndex();
+            internal_save(buffer, true);
+        }
+    }
+
+    private void internal_save(final Buffer buffer, final boolean diff) {
+        final long beginIndex = buffer.writeIndex();
+        int size = _size;
+        if (diff) {
+            size = 0;
+            for (int i = 0; i < _size; i++) {
+                if (_diff[i]) {
+                    size++;
+                }
+            }
+        }
+        if (_space != null && _space.binaryFormat()) {
+            saveBinary(buffer, size, diff);
+        } else {
+            if (_group != 0) {
+                Base64.encodeIntToBuffer(_group, buffer);
+                buffer.write(CoreConstants.CHUNK_META_SEP);
+            }
+            Base64.encodeIntToBuffer(size, buffer);
+            buffer.write(CoreConstants.CHUNK_SEP);
             Base64.encodeLongToBuffer(_capacity, buffer);
             buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeIntToBuffer(_size, buffer);
             for (int i = 0; i < _size; i++) {
-                /*if (_diff[i]) {
-                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                if (!diff || _diff[i]) {
                     Base64.encodeLongToBuffer(this._k[i], buffer);
-                }*/
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                }
             }
-            _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
-            // CoreConstants.fillBooleanArray(_diff, false);
+        }
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
+        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+    }
+
+    /**
+     * Keys are written in descending order, each one as the delta with the previous one.
+     */
+    private void saveBinary(final Buffer buffer, final int size, final boolean diff) {
+        BinaryFormat.writeHeader(buffer);
+        BinaryFormat.writeVarInt(buffer, _group);
+        BinaryFormat.writeVarInt(buffer, size);
+        BinaryFormat.writeVarLong(buffer, _capacity);
+        int index = internal_previousOrEqual_index(Constants.END_OF_TIME);
+        boolean isFirst = true;
+        long previousKey = 0;
+        while (index != -1) {
+            if (!diff || _diff[index]) {
+                final long loopKey = key(index);
+                if (isFirst) {
+                    isFirst = false;
+                    BinaryFormat.writeVarLong(buffer, loopKey);
+                } else {
+                    BinaryFormat.writeUnsignedVarLong(buffer, previousKey - loopKey);
+                }
+                previousKey = loopKey;
+            }
+            index = internal_previous(index);
         }
     }
 
     @Override
     public final synchronized void load(final Buffer buffer) {
         internal_load(buffer);
-        //TODO reset _dirty
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
     }
 
     @Override
@@ -194,6 +240,9 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
         if (buffer == null || buffer.length() == 0) {
             return false;
         }
+        if (BinaryFormat.isBinary(buffer)) {
+            return internal_load_binary(buffer);
+        }
         boolean isDirty = false;
         long cursor = 0;
         long previous = 0;
@@ -233,6 +282,27 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
         return isDirty;
     }
 
+    private boolean internal_load_binary(final Buffer buffer) {
+        final BinaryReader reader = new BinaryReader(buffer);
+        _group = reader.readVarInt();
+        final int treeSize = reader.readVarInt();
+        final int closePowerOfTwo = (int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2)));
+        reallocate(closePowerOfTwo);
+        _capacity = reader.readVarLong();
+        boolean isDirty = false;
+        long loopKey = 0;
+        for (int i = 0; i < treeSize; i++) {
+            if (i == 0) {
+                loopKey = reader.readVarLong();
+            } else {
+                loopKey = loopKey - reader.readUnsignedVarLong();
+            }
+            final Tuple<Boolean, Integer> insertTuple = internal_insert(loopKey);
+            isDirty = isDirty || insertTuple.left();
+        }
+        return isDirty;
+    }
+
     @Override
     public final long index() {
         return _index;
@@ -321,9 +391,9 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
         }
         boolean[] new_back_diff = new boolean[newCapacity];
         CoreConstants.fillBooleanArray(new_back_diff, false);
-      /*  if (_diff != null) {
+        if (_diff != null) {
             System.arraycopy(_diff, 0, new_back_diff, 0, _size);
-        }*/
+        }
         boolean[] new_back_colors = new boolean[newCapacity];
         if (_colors != null) {
             System.arraycopy(_colors, 0, new_back_colors, 0, _size);
@@ -341,7 +411,7 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
         _back_meta = new_back_meta;
         _k = new_back_kv;
         _colors = new_back_colors;
-        // _diff = new_back_diff;
+        _diff = new_back_diff;
     }
 
     private long key(int p_currentIndex) {
@@ -688,6 +758,7 @@ class HeapTimeTreeChunk implements TimeTreeChunk {
             }
             setColor(_root, true);
         }
+        _diff[newIndex] = true;
         _size++;
         return new Tuple<Boolean, Integer>(true, _size - 1);
     }
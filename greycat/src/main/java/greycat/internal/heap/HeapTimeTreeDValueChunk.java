@@ -20,6 +20,9 @@ import greycat.chunk.*;
 import greycat.internal.CoreConstants;
 import greycat.struct.*;
 import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
+import greycat.utility.Gorilla;
 import greycat.utility.HashHelper;
 import greycat.utility.Tuple;
 
@@ -37,6 +40,7 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
     double[] _values;
     boolean[] _values_is_null;
     private boolean[] _colors;
+    private boolean[] _diff;
 
     private long _hash;
     private boolean _inSync;
@@ -122,48 +126,98 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
 
     @Override
     public synchronized final void save(Buffer buffer) {
-        final long beginIndex = buffer.writeIndex();
-        if (_group != 0) {
-            Base64.encodeIntToBuffer(_group, buffer);
-            buffer.write(CoreConstants.CHUNK_META_SEP);
-        }
-        Base64.encodeIntToBuffer(_size, buffer);
-        buffer.write(CoreConstants.CHUNK_SEP);
-        Base64.encodeLongToBuffer(_capacity, buffer);
-        buffer.write(CoreConstants.CHUNK_SEP);
-        for (int i = 0; i < _size; i++) {
-            Base64.encodeLongToBuffer(this._k[i], buffer);
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-            if (!this._values_is_null[i]) {
-                Base64.encodeDoubleToBuffer(this._values[i], buffer);
-            }
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-        }
-        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+        internal_save(buffer, false);
     }
 
+    /**
+     * Writes the points inserted or updated since the last save, in the format of {@link #save(Buffer)}.
+     * {@link #loadDiff(Buffer)} merges them with the stored points.
+     */
     @Override
     public final synchronized void saveDiff(Buffer buffer) {
         if (_hash == Constants.EMPTY_HASH) {
-            final long beginIndex = buffer.writeIndex();
+            internal_save(buffer, true);
+        }
+    }
+
+    private void internal_save(final Buffer buffer, final boolean diff) {
+        final long beginIndex = buffer.writeIndex();
+        int size = _size;
+        if (diff) {
+            size = 0;
+            for (int i = 0; i < _size; i++) {
+                if (_diff[i]) {
+                    size++;
+                }
+            }
+        }
+        if (_space != null && _space.binaryFormat()) {
+            saveBinary(buffer, size, diff);
+        } else {
+            if (_group != 0) {
+                Base64.encodeIntToBuffer(_group, buffer);
+                buffer.write(CoreConstants.CHUNK_META_SEP);
+            }
+            Base64.encodeIntToBuffer(size, buffer);
+            buffer.write(CoreConstants.CHUNK_SEP);
             Base64.encodeLongToBuffer(_capacity, buffer);
             buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeIntToBuffer(_size, buffer);
             for (int i = 0; i < _size; i++) {
-                /*if (_diff[i]) {
-                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                if (!diff || _diff[i]) {
                     Base64.encodeLongToBuffer(this._k[i], buffer);
-                }*/
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                    if (!this._values_is_null[i]) {
+                        Base64.encodeDoubleToBuffer(this._values[i], buffer);
+                    }
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                }
             }
-            _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
-            // CoreConstants.fillBooleanArray(_diff, false);
+        }
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
+        _hash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+    }
+
+    /**
+     * Points are compressed with {@link Gorilla}, in descending order of time, followed by a bitmap of null values if any.
+     */
+    private void saveBinary(final Buffer buffer, final int size, final boolean diff) {
+        BinaryFormat.writeHeader(buffer);
+        BinaryFormat.writeVarInt(buffer, _group);
+        BinaryFormat.writeVarInt(buffer, size);
+        BinaryFormat.writeVarLong(buffer, _capacity);
+        final long[] times = new long[size];
+        final double[] values = new double[size];
+        byte[] nulls = null;
+        int index = internal_previousOrEqual_index(Constants.END_OF_TIME);
+        int position = 0;
+        while (index != -1) {
+            if (!diff || _diff[index]) {
+                times[position] = key(index);
+                values[position] = _values[index];
+                if (_values_is_null[index]) {
+                    if (nulls == null) {
+                        nulls = new byte[(size + 7) / 8];
+                    }
+                    nulls[position / 8] = (byte) (nulls[position / 8] | (1 << (position % 8)));
+                }
+                position++;
+            }
+            index = internal_previous(index);
+        }
+        Gorilla.encode(buffer, times, values, position);
+        if (nulls != null) {
+            BinaryFormat.writeBytes(buffer, nulls);
         }
     }
 
     @Override
     public final synchronized void load(final Buffer buffer) {
         internal_load(buffer, true);
-        //TODO reset _dirty
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
     }
 
     @Override
@@ -185,6 +239,9 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
         if (buffer == null || buffer.length() == 0) {
             return false;
         }
+        if (BinaryFormat.isBinary(buffer)) {
+            return internal_load_binary(buffer);
+        }
         boolean isDirty = false;
         long cursor = 0;
         long previous = 0;
@@ -238,6 +295,33 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
         return isDirty;
     }
 
+    private boolean internal_load_binary(final Buffer buffer) {
+        final BinaryReader reader = new BinaryReader(buffer);
+        _group = reader.readVarInt();
+        final int treeSize = reader.readVarInt();
+        final int closePowerOfTwo = (int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2)));
+        reallocate(closePowerOfTwo);
+        _capacity = reader.readVarLong();
+        final long[] times = new long[treeSize];
+        final double[] values = new double[treeSize];
+        Gorilla.decode(reader, times, values, treeSize);
+        byte[] nulls = null;
+        if (reader.hasNext()) {
+            nulls = reader.readBytes();
+        }
+        boolean isDirty = false;
+        for (int i = 0; i < treeSize; i++) {
+            final Tuple<Boolean, Integer> index;
+            if (nulls != null && (nulls[i / 8] & (1 << (i % 8))) != 0) {
+                index = internal_insert(times[i], 0d, true);
+            } else {
+                index = internal_insert(times[i], values[i], false);
+            }
+            isDirty = isDirty || index.left();
+        }
+        return isDirty;
+    }
+
     @Override
     public final long index() {
         return _index;
@@ -352,6 +436,9 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
         }
         boolean[] new_back_diff = new boolean[newCapacity];
         CoreConstants.fillBooleanArray(new_back_diff, false);
+        if (_diff != null) {
+            System.arraycopy(_diff, 0, new_back_diff, 0, _size);
+        }
         boolean[] new_back_colors = new boolean[newCapacity];
         if (_colors != null) {
             System.arraycopy(_colors, 0, new_back_colors, 0, _size);
@@ -371,6 +458,7 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
         _values = new_back_value;
         _values_is_null = new_back_value_is_null;
         _colors = new_back_colors;
+        _diff = new_back_diff;
     }
 
     private long key(int p_currentIndex) {
@@ -640,6 +728,78 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
         }
     }
 
+    /**
+     * Appends sorted values after the keys of the tree.
+     * When the batch is large compared to the tree and the entries are stored in key order, which is the case when they were inserted in ascending order,
+     * values are copied in bulk and the whole tree is linked again, balanced, in one pass instead of being rebalanced at every insertion.
+     * Offsets of the existing entries do not change.
+     */
+    @Override
+    public synchronized final void appendValues(final long[] keys, final double[] values, final int offset, final int length) {
+        if (length == 0) {
+            return;
+        }
+        if (_size != 0 && keys[offset] <= _max) {
+            throw new RuntimeException("Bad API usage: appended keys have to be greater than the keys of the tree");
+        }
+        if (length * 4 < _size || !internal_inKeyOrder()) {
+            for (int i = offset; i < offset + length; i++) {
+                internal_insert(keys[i], values[i], false);
+            }
+        } else {
+            final int newSize = _size + length;
+            if (_k == null || _k.length < newSize) {
+                reallocate(newSize);
+            }
+            System.arraycopy(keys, offset, _k, _size, length);
+            System.arraycopy(values, offset, _values, _size, length);
+            for (int i = _size; i < newSize; i++) {
+                _values_is_null[i] = false;
+                _diff[i] = true;
+            }
+            _size = newSize;
+            _max = _k[newSize - 1];
+            //the deepest level of a balanced tree is red, unless the tree is perfect
+            int deepest = 0;
+            while ((1L << (deepest + 1)) <= newSize) {
+                deepest++;
+            }
+            if (((newSize + 1) & newSize) == 0) {
+                deepest = -1;
+            }
+            _root = internal_link(0, newSize - 1, -1, 0, deepest);
+        }
+        internal_set_dirty();
+    }
+
+    private boolean internal_inKeyOrder() {
+        int current = _root;
+        while (left(current) != -1) {
+            current = left(current);
+        }
+        int rank = 0;
+        while (current != -1) {
+            if (current != rank) {
+                return false;
+            }
+            current = internal_next(current);
+            rank++;
+        }
+        return true;
+    }
+
+    private int internal_link(final int from, final int to, final int parent, final int depth, final int redDepth) {
+        if (from > to) {
+            return -1;
+        }
+        final int middle = (from + to) >>> 1;
+        setParent(middle, parent);
+        setColor(middle, depth != redDepth);
+        setLeft(middle, internal_link(from, middle - 1, middle, depth + 1, redDepth));
+        setRight(middle, internal_link(middle + 1, to, middle, depth + 1, redDepth));
+        return middle;
+    }
+
     @SuppressWarnings("Duplicates")
     private Tuple<Boolean, Integer> internal_insert(long p_key, double value, boolean isNull) {
         if (p_key > _max) {
@@ -676,6 +836,7 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
                     } else {
                         _values[father] = value;
                         _values_is_null[father] = isNull;
+                        _diff[father] = true;
                         return new Tuple<Boolean, Integer>(true, father);
                     }
                 }
@@ -736,6 +897,7 @@ class HeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
             }
             setColor(_root, true);
         }
+        _diff[newIndex] = true;
         _size++;
         return new Tuple<Boolean, Integer>(true, _size - 1);
     }
@@ -23,6 +23,8 @@ import greycat.struct.Buffer;
 import greycat.struct.LongLongMap;
 import greycat.struct.LongLongMapCallBack;
 import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
 import greycat.utility.HashHelper;
 import greycat.utility.Listeners;
 import greycat.utility.Unsafe;
@@ -374,7 +376,18 @@ final class HeapWorldOrderChunk implements WorldOrderChunk {
     }
 
     private void internal_load(final boolean initial, final Buffer buffer) {
-        if (buffer != null && buffer.length() > 0) {
+        if (BinaryFormat.isBinary(buffer)) {
+            final BinaryReader reader = new BinaryReader(buffer);
+            _group = reader.readVarInt();
+            final int mapSize = reader.readVarInt();
+            final int closePowerOfTwo = (int) Math.pow(2, Math.ceil(Math.log(mapSize) / Math.log(2)));
+            resize(closePowerOfTwo);
+            _type = reader.readVarLong();
+            for (int i = 0; i < mapSize; i++) {
+                final long loopKey = reader.readVarLong();
+                internal_put(loopKey, reader.readVarLong(), !initial);
+            }
+        } else if (buffer != null && buffer.length() > 0) {
             long cursor = 0;
             long bufferSize = buffer.length();
             long previousStart = 0;
@@ -444,50 +457,66 @@ final class HeapWorldOrderChunk implements WorldOrderChunk {
 
     @Override
     public final synchronized void save(final Buffer buffer) {
-        final long beginIndex = buffer.writeIndex();
-        if (_group != 0) {
-            Base64.encodeIntToBuffer(_group, buffer);
-            buffer.write(CoreConstants.CHUNK_META_SEP);
-        }
-        Base64.encodeIntToBuffer(_size, buffer);
-        buffer.write(CoreConstants.CHUNK_SEP);
-        if (_type != Constants.NULL_LONG) {
-            Base64.encodeLongToBuffer(_type, buffer);
-        }
-        buffer.write(CoreConstants.CHUNK_SEP);
-        for (int i = 0; i < _size; i++) {
-            Base64.encodeLongToBuffer(_kv[i * 2], buffer);
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-            Base64.encodeLongToBuffer(_kv[i * 2 + 1], buffer);
-            buffer.write(CoreConstants.CHUNK_VAL_SEP);
-        }
-        _chunkHash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
+        internal_save(buffer, false);
     }
 
+    /**
+     * Writes the pairs put since the last save, in the format of {@link #save(Buffer)}.
+     * {@link #loadDiff(Buffer)} merges them with the stored pairs.
+     */
     @Override
-    public final synchronized void saveDiff(Buffer buffer) {
-        throw new RuntimeException("Not implemented yet!");
-        /*
+    public final synchronized void saveDiff(final Buffer buffer) {
         if (_chunkHash == Constants.EMPTY_HASH) {
-            final long beginIndex = buffer.writeIndex();
-            Base64.encodeIntToBuffer(_size, buffer);
-            buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeLongToBuffer(_offset, buffer);
+            internal_save(buffer, true);
+        }
+    }
+
+    private void internal_save(final Buffer buffer, final boolean diff) {
+        final long beginIndex = buffer.writeIndex();
+        int size = _size;
+        if (diff) {
+            size = 0;
+            for (int i = 0; i < _size; i++) {
+                if (_diff[i]) {
+                    size++;
+                }
+            }
+        }
+        if (_space != null && _space.binaryFormat()) {
+            BinaryFormat.writeHeader(buffer);
+            BinaryFormat.writeVarInt(buffer, _group);
+            BinaryFormat.writeVarInt(buffer, size);
+            BinaryFormat.writeVarLong(buffer, _type);
+            for (int i = 0; i < _size; i++) {
+                if (!diff || _diff[i]) {
+                    BinaryFormat.writeVarLong(buffer, _kv[i * 2]);
+                    BinaryFormat.writeVarLong(buffer, _kv[i * 2 + 1]);
+                }
+            }
+        } else {
+            if (_group != 0) {
+                Base64.encodeIntToBuffer(_group, buffer);
+                buffer.write(CoreConstants.CHUNK_META_SEP);
+            }
+            Base64.encodeIntToBuffer(size, buffer);
             buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeLongToBuffer(_type, buffer);
+            if (_type != Constants.NULL_LONG) {
+                Base64.encodeLongToBuffer(_type, buffer);
+            }
             buffer.write(CoreConstants.CHUNK_SEP);
-            Base64.encodeIntToBuffer(_size, buffer);
             for (int i = 0; i < _size; i++) {
-                if (_diff[i]) {
-                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                if (!diff || _diff[i]) {
                     Base64.encodeLongToBuffer(_kv[i * 2], buffer);
                     buffer.write(CoreConstants.CHUNK_VAL_SEP);
                     Base64.encodeLongToBuffer(_kv[i * 2 + 1], buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
                 }
             }
-            _chunkHash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
         }
-        */
+        if (_diff != null) {
+            CoreConstants.fillBooleanArray(_diff, false);
+        }
+        _chunkHash = HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex());
     }
 
 }
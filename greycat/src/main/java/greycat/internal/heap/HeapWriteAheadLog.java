@@ -0,0 +1,530 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.heap;
+
+import greycat.Callback;
+import greycat.Constants;
+import greycat.chunk.Chunk;
+import greycat.plugin.Storage;
+import greycat.struct.Buffer;
+import greycat.struct.BufferIterator;
+import greycat.utility.KeyHelper;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of a {@link HeapChunkSpace}.
+ * <p>
+ * Saves append the diffs of the dirty chunks, see {@link Chunk#saveDiff(Buffer)}, to a log file instead of writing them to the {@link Storage}, and keep them retained in the space.
+ * A single writer thread writes the appends in order, and forces the file once for all the appends queued meanwhile (group commit).
+ * Save callbacks are called by the writer thread, once their append is durable.
+ * Every {@code checkpointInterval} saves, when too many chunks are retained, and on disconnection, a checkpoint logs the dirty chunks, then saves them to the storage with the retained ones.
+ * Log files written before a checkpoint are deleted once the storage acknowledged it.
+ * Log files left by a crash are replayed on connection: diffs are merged into the stored chunks with {@link Chunk#loadDiff(Buffer)}, in order, then checkpointed.
+ *
+ * @ignore ts
+ */
+public final class HeapWriteAheadLog {
+
+    private static final String FILE_PREFIX = "wal_";
+    //length and checksum of a record
+    private static final int RECORD_HEADER = 8;
+
+    private static final byte APPEND = 0;
+    private static final byte RELEASE = 1;
+    private static final byte STOP = 2;
+
+    private static final int METRIC_APPENDS = 0;
+    private static final int METRIC_SYNCS = 1;
+    private static final int METRIC_BYTES = 2;
+    private static final int METRIC_CHECKPOINTS = 3;
+
+    private final File _directory;
+    private final int _checkpointInterval;
+    private final int _maxRetained;
+    private final BlockingQueue<Entry> _queue = new LinkedBlockingQueue<Entry>();
+    private final AtomicLongArray _metrics = new AtomicLongArray(4);
+    private final Thread _writer;
+    private volatile boolean _stopped = false;
+
+    //chunks logged since the last checkpoint, guarded by the space
+    private int[] _retained = new int[16];
+    private int _nbRetained = 0;
+    private final BitSet _retainedFlags = new BitSet();
+    private int _saves = 0;
+    private long _generation;
+    private volatile boolean _checkpointRequested = false;
+
+    //file of the writer thread
+    private FileChannel _channel = null;
+    private long _channelGeneration = -1;
+    private boolean _unsynced = false;
+
+    /**
+     * Opens the log of a directory, files already present are replayed by {@link #replay(HeapChunkSpace, Callback)}.
+     *
+     * @param path               directory of the log files
+     * @param checkpointInterval number of saves appended to the log between two checkpoints
+     * @param maxRetained        number of logged chunks triggering a checkpoint, to keep the space from filling up with retained chunks
+     */
+    public HeapWriteAheadLog(final String path, final int checkpointInterval, final int maxRetained) {
+        if (checkpointInterval < 1) {
+            throw new RuntimeException("Bad API usage: the checkpoint interval must be at least one save, received " + checkpointInterval);
+        }
+        this._directory = new File(path);
+        if (!_directory.exists()) {
+            _directory.mkdirs();
+        }
+        this._checkpointInterval = checkpointInterval;
+        this._maxRetained = maxRetained;
+        final long[] generations = generations();
+        if (generations.length == 0) {
+            _generation = 0;
+        } else {
+            _generation = generations[generations.length - 1] + 1;
+        }
+        this._writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "greycat-wal");
+        this._writer.setDaemon(true);
+        this._writer.start();
+    }
+
+    /**
+     * Keeps a logged chunk in memory until the next checkpoint.
+     *
+     * @param index index of the chunk in the space
+     * @return false if the chunk was already retained, the caller then releases its mark
+     */
+    final boolean retain(final int index) {
+        if (_retainedFlags.get(index)) {
+            return false;
+        }
+        _retainedFlags.set(index);
+        if (_nbRetained == _retained.length) {
+            _retained = Arrays.copyOf(_retained, _retained.length * 2);
+        }
+        _retained[_nbRetained] = index;
+        _nbRetained++;
+        return true;
+    }
+
+    /**
+     * Hands the retained chunks over to a checkpoint, together with their marks.
+     *
+     * @return indexes of the chunks logged since the last checkpoint
+     */
+    final int[] drainRetained() {
+        final int[] result = Arrays.copyOf(_retained, _nbRetained);
+        _nbRetained = 0;
+        _retainedFlags.clear();
+        _saves = 0;
+        _checkpointRequested = false;
+        return result;
+    }
+
+    /**
+     * Turns the next save into a checkpoint, to release the retained chunks.
+     */
+    final void requestCheckpoint() {
+        _checkpointRequested = true;
+    }
+
+    /**
+     * @param dirties   number of dirty chunks to save
+     * @param connected false for the last save before disconnection
+     * @return true if the next save has to be a checkpoint
+     */
+    final boolean checkpointDue(final long dirties, final boolean connected) {
+        return !connected || _checkpointRequested || _saves >= _checkpointInterval || _nbRetained + dirties > _maxRetained;
+    }
+
+    /**
+     * Queues a stream of keys and payloads, the stream is freed.
+     *
+     * @param stream   keys and payloads, as given to the storage
+     * @param callback called by the writer thread once the stream is durable
+     */
+    final void append(final Buffer stream, final Callback<Buffer> callback) {
+        final byte[] data = stream.data();
+        stream.free();
+        _saves++;
+        _queue.add(new Entry(APPEND, _generation, data, callback));
+    }
+
+    /**
+     * Starts a new log file, the previous ones are covered by the checkpoint being written.
+     *
+     * @return generation of the last log file covered by the checkpoint
+     */
+    final long rotate() {
+        final long previous = _generation;
+        _generation++;
+        return previous;
+    }
+
+    /**
+     * Deletes the log files covered by an acknowledged checkpoint.
+     *
+     * @param generation last generation covered by the checkpoint
+     * @param callback   called by the writer thread after the callbacks of the previous appends, can be null
+     */
+    final void checkpointed(final long generation, final Callback<Buffer> callback) {
+        _metrics.incrementAndGet(METRIC_CHECKPOINTS);
+        _queue.add(new Entry(RELEASE, generation, null, callback));
+    }
+
+    /**
+     * Merges the log files left by a previous run into their chunks, then checkpoints them to the storage.
+     *
+     * @param space    space to replay the log into
+     * @param callback called once the replayed chunks are saved
+     */
+    final void replay(final HeapChunkSpace space, final Callback<Boolean> callback) {
+        final long[] generations = generations();
+        final List<Buffer> records = new ArrayList<Buffer>();
+        for (int i = 0; i < generations.length; i++) {
+            if (generations[i] < _generation) {
+                read(generations[i], records, space);
+            }
+        }
+        if (records.isEmpty()) {
+            callback.on(true);
+            return;
+        }
+        //chunks are loaded once, then payloads are merged in the order of the log
+        final Map<String, Integer> slots = new HashMap<String, Integer>();
+        final List<Integer> pairSlots = new ArrayList<Integer>();
+        final List<Buffer> pairPayloads = new ArrayList<Buffer>();
+        long[] keys = new long[16 * Constants.KEY_SIZE];
+        for (int i = 0; i < records.size(); i++) {
+            final BufferIterator it = records.get(i).iterator();
+            while (it.hasNext()) {
+                final Buffer keyView = it.next();
+                final Buffer payloadView = it.next();
+                if (payloadView == null) {
+                    break;
+                }
+                final String key = new String(keyView.data());
+                Integer slot = slots.get(key);
+                if (slot == null) {
+                    slot = slots.size();
+                    if ((slot + 1) * Constants.KEY_SIZE > keys.length) {
+                        keys = Arrays.copyOf(keys, keys.length * 2);
+                    }
+                    KeyHelper.bufferToKey(keyView, keys, slot * Constants.KEY_SIZE);
+                    slots.put(key, slot);
+                }
+                pairSlots.add(slot);
+                pairPayloads.add(payloadView);
+            }
+        }
+        final long[] finalKeys = Arrays.copyOf(keys, slots.size() * Constants.KEY_SIZE);
+        final long lastGeneration = _generation - 1;
+        final HeapWriteAheadLog selfPointer = this;
+        space.getOrLoadAndMarkAll(finalKeys, new Callback<Chunk[]>() {
+            @Override
+            public void on(final Chunk[] chunks) {
+                for (int i = 0; i < chunks.length; i++) {
+                    if (chunks[i] == null) {
+                        final int offset = i * Constants.KEY_SIZE;
+                        chunks[i] = space.createAndMark((byte) finalKeys[offset], finalKeys[offset + 1], finalKeys[offset + 2], finalKeys[offset + 3]);
+                    }
+                }
+                for (int i = 0; i < pairSlots.size(); i++) {
+                    chunks[pairSlots.get(i)].loadDiff(pairPayloads.get(i));
+                }
+                for (int i = 0; i < chunks.length; i++) {
+                    space.notifyUpdate(chunks[i].index());
+                    space.unmark(chunks[i].index());
+                }
+                for (int i = 0; i < records.size(); i++) {
+                    records.get(i).free();
+                }
+                space.saveToStorage(false, false, null, true, new Callback<Buffer>() {
+                    @Override
+                    public void on(final Buffer result) {
+                        selfPointer.checkpointed(lastGeneration, null);
+                        callback.on(true);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the writer once all the appends already queued are durable.
+     */
+    final void stop() {
+        _stopped = true;
+        if (Thread.currentThread() == _writer) {
+            //stopped from a save callback, the writer leaves once the queue is drained
+            return;
+        }
+        _queue.add(new Entry(STOP, 0, null, null));
+        try {
+            _writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of chunks logged since the last checkpoint, kept in the space until then
+     */
+    public final int retained() {
+        return _nbRetained;
+    }
+
+    /**
+     * @return number of saves appended to the log
+     */
+    public final long appends() {
+        return _metrics.get(METRIC_APPENDS);
+    }
+
+    /**
+     * @return number of times the log has been forced to the disk, lower than {@link #appends()} when saves are committed together
+     */
+    public final long syncs() {
+        return _metrics.get(METRIC_SYNCS);
+    }
+
+    /**
+     * @return number of bytes appended to the log
+     */
+    public final long bytes() {
+        return _metrics.get(METRIC_BYTES);
+    }
+
+    /**
+     * @return number of checkpoints acknowledged by the storage
+     */
+    public final long checkpoints() {
+        return _metrics.get(METRIC_CHECKPOINTS);
+    }
+
+    private void writeLoop() {
+        final List<Entry> batch = new ArrayList<Entry>();
+        while (true) {
+            try {
+                batch.add(_queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            _queue.drainTo(batch);
+            boolean stop = false;
+            for (int i = 0; i < batch.size(); i++) {
+                final Entry entry = batch.get(i);
+                try {
+                    switch (entry.kind) {
+                        case APPEND:
+                            _metrics.incrementAndGet(METRIC_APPENDS);
+                            if (entry.data.length > 0) {
+                                write(entry.generation, entry.data);
+                            }
+                            break;
+                        case RELEASE:
+                            release(entry.generation);
+                            break;
+                        case STOP:
+                            stop = true;
+                            break;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            //one sync commits the whole batch
+            sync();
+            //chunks stay retained even if the log failed, the next checkpoint saves them
+            for (int i = 0; i < batch.size(); i++) {
+                final Entry entry = batch.get(i);
+                if (entry.callback != null) {
+                    try {
+                        entry.callback.on(null);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            batch.clear();
+            if (stop || (_stopped && _queue.isEmpty())) {
+                close();
+                return;
+            }
+        }
+    }
+
+    private void write(final long generation, final byte[] data) throws IOException {
+        if (_channel == null || _channelGeneration != generation) {
+            close();
+            _channel = new FileOutputStream(file(generation), true).getChannel();
+            _channelGeneration = generation;
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(data);
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + data.length);
+        record.putInt(data.length);
+        record.putInt((int) checksum.getValue());
+        record.put(data);
+        record.flip();
+        while (record.hasRemaining()) {
+            _channel.write(record);
+        }
+        _unsynced = true;
+        _metrics.addAndGet(METRIC_BYTES, data.length);
+    }
+
+    private void sync() {
+        if (_channel != null && _unsynced) {
+            try {
+                _channel.force(false);
+                _metrics.incrementAndGet(METRIC_SYNCS);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            _unsynced = false;
+        }
+    }
+
+    private void release(final long generation) {
+        if (_channel != null && _channelGeneration <= generation) {
+            close();
+        }
+        final long[] generations = generations();
+        for (int i = 0; i < generations.length; i++) {
+            if (generations[i] <= generation) {
+                file(generations[i]).delete();
+            }
+        }
+    }
+
+    private void close() {
+        if (_channel != null) {
+            sync();
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            _channel = null;
+            _channelGeneration = -1;
+        }
+    }
+
+    /**
+     * Reads the records of a log file, up to the first incomplete or corrupted one, left by a crash during a write.
+     */
+    private void read(final long generation, final List<Buffer> records, final HeapChunkSpace space) {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file(generation))));
+            while (true) {
+                final int length = input.readInt();
+                final int expected = input.readInt();
+                if (length < 0) {
+                    return;
+                }
+                final byte[] data = new byte[length];
+                input.readFully(data);
+                final CRC32 checksum = new CRC32();
+                checksum.update(data);
+                if ((int) checksum.getValue() != expected) {
+                    return;
+                }
+                final Buffer record = space.graph().newBuffer();
+                record.writeAll(data);
+                records.add(record);
+            }
+        } catch (EOFException e) {
+            //end of the log
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private File file(final long generation) {
+        return new File(_directory, FILE_PREFIX + generation);
+    }
+
+    private long[] generations() {
+        final String[] names = _directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] result = new long[names.length];
+        int size = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].startsWith(FILE_PREFIX)) {
+                try {
+                    result[size] = Long.parseLong(names[i].substring(FILE_PREFIX.length()));
+                    size++;
+                } catch (NumberFormatException e) {
+                    //not a log file
+                }
+            }
+        }
+        result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static final class Entry {
+
+        private final byte kind;
+        private final long generation;
+        private final byte[] data;
+        private final Callback<Buffer> callback;
+
+        private Entry(final byte kind, final long generation, final byte[] data, final Callback<Buffer> callback) {
+            this.kind = kind;
+            this.generation = generation;
+            this.data = data;
+            this.callback = callback;
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.heap;
+
+import greycat.Callback;
+import greycat.plugin.Job;
+import greycat.plugin.SchedulerAffinity;
+import greycat.plugin.Storage;
+import greycat.struct.Buffer;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind pipeline of a {@link HeapChunkSpace}.
+ * <p>
+ * Batches of dirty chunks collected by saves go through two ordered stages.
+ * The serialization stage takes the batches in submission order, and splits each one over a pool of serializer threads, each one filling its own buffer.
+ * A batch is fully serialized before the next one starts, so a chunk saved twice is always encoded in the order of its saves.
+ * The flush stage then writes the buffers of each batch to the {@link Storage}, in the same order.
+ * Chunks stay marked, and therefore in memory, until the storage acknowledged their batch.
+ * The number of batches waiting to be flushed is bounded: once reached, the next save blocks until the oldest batch is durable.
+ * Save callbacks are dispatched through the scheduler of the graph, once all the buffers of their batch have been acknowledged by the storage.
+ *
+ * @ignore ts
+ */
+public final class HeapWriteBehind {
+
+    private static final Batch STOP = new Batch(null, 0, false, null, false);
+
+    private final HeapChunkSpace _space;
+    private final int _serializers;
+    private final ExecutorService _pool;
+    private final Semaphore _slots;
+    private final AtomicInteger _inFlight = new AtomicInteger(0);
+    private final BlockingQueue<Batch> _submitted = new LinkedBlockingQueue<Batch>();
+    private final BlockingQueue<Batch> _serialized = new LinkedBlockingQueue<Batch>();
+    private final Thread _serializer;
+    private final Thread _flusher;
+
+    public HeapWriteBehind(final HeapChunkSpace space, final int serializers, final int maxInFlight) {
+        if (serializers < 1 || maxInFlight < 1) {
+            throw new RuntimeException("Bad API usage: write-behind needs at least one serializer and one batch in flight, received " + serializers + " and " + maxInFlight);
+        }
+        this._space = space;
+        this._serializers = serializers;
+        this._slots = new Semaphore(maxInFlight);
+        this._pool = Executors.newFixedThreadPool(serializers, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "greycat-serializer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this._serializer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serializeLoop();
+            }
+        }, "greycat-serialization-stage");
+        this._serializer.setDaemon(true);
+        this._serializer.start();
+        this._flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "greycat-flusher");
+        this._flusher.setDaemon(true);
+        this._flusher.start();
+    }
+
+    /**
+     * Enqueues the given chunks to be serialized and flushed in the background.
+     * Chunks have to be marked by the caller, they are unmarked once flushed.
+     * The caller must not hold the space: this call blocks while the maximum number of batches is in flight.
+     *
+     * @param indexes  indexes of the chunks to save
+     * @param size     number of indexes to consider
+     * @param silent   true to use {@link Storage#putSilent(Buffer, Callback)}
+     * @param callback called once the batch is durable, with the result of the storage in silent mode if the batch fits in a single buffer
+     */
+    final void submit(final int[] indexes, final int size, final boolean silent, final Callback<Buffer> callback) {
+        final boolean slot;
+        if (Thread.currentThread() == _flusher) {
+            //saved from a callback run by the flusher itself, which cannot wait for its own slots
+            slot = _slots.tryAcquire();
+        } else {
+            try {
+                _slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            slot = true;
+        }
+        _inFlight.incrementAndGet();
+        _submitted.add(new Batch(indexes, size, silent, callback, slot));
+    }
+
+    /**
+     * Stops the pipeline once all batches already submitted are flushed.
+     */
+    final void stop() {
+        _submitted.add(STOP);
+        if (Thread.currentThread() == _flusher) {
+            //stopped from a save callback, the flusher leaves once the queue is drained
+            return;
+        }
+        try {
+            _flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of batches submitted but not yet flushed
+     */
+    public final int inFlight() {
+        return _inFlight.get();
+    }
+
+    private void serializeLoop() {
+        while (true) {
+            final Batch batch;
+            try {
+                batch = _submitted.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == STOP) {
+                _pool.shutdown();
+                _serialized.add(STOP);
+                return;
+            }
+            serialize(batch);
+            _serialized.add(batch);
+        }
+    }
+
+    private void serialize(final Batch batch) {
+        int parts = _serializers;
+        if (batch.size < parts) {
+            parts = batch.size;
+        }
+        if (parts == 0) {
+            //keep an empty part, the storage is called as for a synchronous save
+            parts = 1;
+        }
+        final Future[] futures = new Future[parts];
+        final int slice = batch.size / parts;
+        for (int i = 0; i < parts; i++) {
+            final int from = i * slice;
+            final int to;
+            if (i == parts - 1) {
+                to = batch.size;
+            } else {
+                to = from + slice;
+            }
+            futures[i] = _pool.submit(new Callable<Buffer>() {
+                @Override
+                public Buffer call() {
+                    return _space.serialize(batch.indexes, from, to);
+                }
+            });
+        }
+        batch.streams = new Buffer[parts];
+        for (int i = 0; i < parts; i++) {
+            try {
+                batch.streams[i] = (Buffer) futures[i].get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            final Batch batch;
+            try {
+                batch = _serialized.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == STOP) {
+                return;
+            }
+            Buffer result = null;
+            try {
+                result = flush(batch);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            _space.release(batch.indexes, batch.size);
+            _inFlight.decrementAndGet();
+            if (batch.slot) {
+                _slots.release();
+            }
+            if (batch.callback != null) {
+                final Buffer finalResult = result;
+                _space.graph().scheduler().dispatch(SchedulerAffinity.ANY_LOCAL_THREAD, new Job() {
+                    @Override
+                    public void run() {
+                        batch.callback.on(finalResult);
+                    }
+                });
+            }
+        }
+    }
+
+    private Buffer flush(final Batch batch) throws Exception {
+        final Storage storage = _space.graph().storage();
+        final CountDownLatch acknowledged = new CountDownLatch(batch.streams.length);
+        final Buffer[] results = new Buffer[1];
+        for (int i = 0; i < batch.streams.length; i++) {
+            final Buffer stream = batch.streams[i];
+            if (stream == null) {
+                acknowledged.countDown();
+            } else if (batch.silent) {
+                storage.putSilent(stream, new Callback<Buffer>() {
+                    @Override
+                    public void on(final Buffer result) {
+                        //free all value
+                        stream.free();
+                        results[0] = result;
+                        acknowledged.countDown();
+                    }
+                });
+            } else {
+                storage.put(stream, new Callback<Boolean>() {
+                    @Override
+                    public void on(final Boolean result) {
+                        //free all value
+                        stream.free();
+                        acknowledged.countDown();
+                    }
+                });
+            }
+        }
+        acknowledged.await();
+        if (batch.streams.length == 1) {
+            return results[0];
+        }
+        return null;
+    }
+
+    private static final class Batch {
+
+        private final int[] indexes;
+        private final int size;
+        private final boolean silent;
+        private final Callback<Buffer> callback;
+        private final boolean slot;
+        private Buffer[] streams;
+
+        private Batch(final int[] indexes, final int size, final boolean silent, final Callback<Buffer> callback, final boolean slot) {
+            this.indexes = indexes;
+            this.size = size;
+            this.silent = silent;
+            this.callback = callback;
+            this.slot = slot;
+        }
+    }
+
+}
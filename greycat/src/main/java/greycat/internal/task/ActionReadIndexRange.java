@@ -0,0 +1,107 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task;
+
+import greycat.*;
+import greycat.struct.Buffer;
+
+class ActionReadIndexRange implements Action {
+
+    private final String _name;
+    private final String _attribute;
+    private final String _from;
+    private final String _to;
+    private final String _limit;
+    private final boolean _prefix;
+
+    ActionReadIndexRange(final String p_indexName, final String p_attribute, final String p_from, final String p_to, final String p_limit, final boolean p_prefix) {
+        if (p_indexName == null) {
+            throw new RuntimeException("indexName should not be null");
+        }
+        if (p_attribute == null) {
+            throw new RuntimeException("attribute should not be null");
+        }
+        _name = p_indexName;
+        _attribute = p_attribute;
+        _from = p_from;
+        _to = p_to;
+        _limit = p_limit;
+        _prefix = p_prefix;
+    }
+
+    @Override
+    public final void eval(final TaskContext ctx) {
+        final String name = ctx.template(_name);
+        final String attribute = ctx.template(_attribute);
+        final String from = ctx.template(_from);
+        final String to = ctx.template(_to);
+        final String limitValue = ctx.template(_limit);
+        final int limit;
+        if (limitValue == null || limitValue.length() == 0) {
+            limit = 0;
+        } else {
+            limit = (int) Double.parseDouble(limitValue);
+        }
+        ctx.graph().index(ctx.world(), ctx.time(), name, new Callback<NodeIndex>() {
+            @Override
+            public void on(final NodeIndex resolvedIndex) {
+                if (resolvedIndex != null) {
+                    final Callback<Node[]> onResult = new Callback<Node[]>() {
+                        @Override
+                        public void on(Node[] result) {
+                            resolvedIndex.free();
+                            ctx.continueWith(ctx.wrap(result));
+                        }
+                    };
+                    if (_prefix) {
+                        resolvedIndex.findPrefix(onResult, ctx.world(), ctx.time(), attribute, from, limit);
+                    } else {
+                        resolvedIndex.findRange(onResult, ctx.world(), ctx.time(), attribute, from, to, limit);
+                    }
+                } else {
+                    ctx.continueWith(ctx.newResult());
+                }
+            }
+        });
+    }
+
+    @Override
+    public final void serialize(final Buffer builder) {
+        builder.writeString(name());
+        builder.writeChar(Constants.TASK_PARAM_OPEN);
+        TaskHelper.serializeString(_name, builder, true);
+        builder.writeChar(Constants.TASK_PARAM_SEP);
+        TaskHelper.serializeString(_attribute, builder, true);
+        builder.writeChar(Constants.TASK_PARAM_SEP);
+        TaskHelper.serializeString(_from, builder, true);
+        if (!_prefix) {
+            builder.writeChar(Constants.TASK_PARAM_SEP);
+            TaskHelper.serializeString(_to, builder, true);
+        }
+        builder.writeChar(Constants.TASK_PARAM_SEP);
+        TaskHelper.serializeString(_limit, builder, true);
+        builder.writeChar(Constants.TASK_PARAM_CLOSE);
+    }
+
+    @Override
+    public final String name() {
+        if (_prefix) {
+            return CoreActionNames.READ_INDEX_PREFIX;
+        }
+        return CoreActionNames.READ_INDEX_RANGE;
+    }
+
+}
@@ -18,18 +18,18 @@ package greycat.internal.task;
 import greycat.Constants;
 import greycat.Action;
 import greycat.TaskContext;
+import greycat.internal.task.expression.CoreExpressionEngine;
+import greycat.internal.task.expression.ExpressionEngine;
 import greycat.struct.Buffer;
-import greycat.utility.Tuple;
-import greycat.TaskResult;
-
-import javax.script.*;
-import java.io.IOException;
-import java.io.Writer;
 
 class ActionScript implements Action {
 
     private final String _script;
     private final boolean _async;
+    /**
+     * @ignore ts
+     */
+    private ExpressionEngine _engine = null;
 
     ActionScript(final String script, final boolean async) {
         this._script = script;
@@ -57,41 +57,16 @@ class ActionScript implements Action {
      */
     @Override
     public void eval(TaskContext ctx) {
-        final ScriptContext scriptCtx = new SimpleScriptContext();
-        final Tuple<String, TaskResult>[] variables = ctx.variables();
-        for (int i = 0; i < variables.length; i++) {
-            scriptCtx.setAttribute(variables[i].left(), variables[i].right(), ScriptContext.ENGINE_SCOPE);
+        if (_engine == null) {
+            _engine = CoreExpressionEngine.compile(_script);
         }
-        scriptCtx.setWriter(new Writer() {
-            @Override
-            public void write(char[] cbuf, int off, int len) throws IOException {
-                ctx.append(new String(cbuf, off, len));
-            }
-
-            @Override
-            public void flush() throws IOException {
-                //noop
-            }
-
-            @Override
-            public void close() throws IOException {
-                //noop
-            }
-        });
-        //protect scope if !async
-        scriptCtx.setAttribute("ctx", ctx, ScriptContext.ENGINE_SCOPE);
-        scriptCtx.setAttribute("result", ctx.result(), ScriptContext.ENGINE_SCOPE);
-        try {
-            Object result = TaskHelper.SCRIPT_ENGINE.eval(this._script, scriptCtx);
-            if (!_async) {
-                if (result != null) {
-                    ctx.continueWith(ctx.wrap(result));
-                } else {
-                    ctx.continueTask();
-                }
+        final Object result = _engine.eval(ctx, null);
+        if (!_async) {
+            if (result != null) {
+                ctx.continueWith(ctx.wrap(result));
+            } else {
+                ctx.continueTask();
             }
-        } catch (ScriptException e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -22,16 +22,18 @@ import greycat.TaskFunctionSelect;
 import greycat.base.BaseNode;
 import greycat.TaskContext;
 import greycat.TaskResult;
+import greycat.internal.task.expression.CoreExpressionEngine;
+import greycat.internal.task.expression.ExpressionEngine;
 import greycat.struct.Buffer;
 
-import javax.script.ScriptContext;
-import javax.script.ScriptException;
-import javax.script.SimpleScriptContext;
-
 class ActionSelect implements Action {
 
     private final String _script;
     private final TaskFunctionSelect _filter;
+    /**
+     * @ignore ts
+     */
+    private ExpressionEngine _engine = null;
 
     ActionSelect(String script, TaskFunctionSelect filter) {
         this._script = script;
@@ -73,14 +75,10 @@ class ActionSelect implements Action {
      * return eval(this._script);
      */
     private boolean callScript(Node node, TaskContext context) {
-        ScriptContext scriptCtx = new SimpleScriptContext();
-        scriptCtx.setAttribute("node", node, ScriptContext.ENGINE_SCOPE);
-        scriptCtx.setAttribute("context", context, ScriptContext.ENGINE_SCOPE);
-        try {
-            return (boolean) TaskHelper.SCRIPT_ENGINE.eval(_script, scriptCtx);
-        } catch (ScriptException | ClassCastException e) {
-            throw new RuntimeException(e);
+        if (_engine == null) {
+            _engine = CoreExpressionEngine.compile(_script);
         }
+        return _engine.test(context, node);
     }
 
     @Override
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task;
+
+import greycat.Action;
+import greycat.Callback;
+import greycat.Constants;
+import greycat.TaskContext;
+import greycat.TaskResult;
+import greycat.struct.Buffer;
+
+/**
+ * Consecutive traverse or attribute steps fused by {@link TaskPlanner}.
+ * Each step is resolved by one batch lookup as soon as the previous one completes, within a single evaluation of this action,
+ * instead of continuing the task and wrapping an intermediate result between every hop.
+ */
+class ActionTraverseChain implements Action {
+
+    private final ActionTraverseOrAttribute[] _steps;
+
+    ActionTraverseChain(final ActionTraverseOrAttribute[] p_steps) {
+        this._steps = p_steps;
+    }
+
+    @Override
+    public final void eval(final TaskContext ctx) {
+        final int[] cursor = new int[]{0};
+        final Callback[] nextStep = new Callback[1];
+        nextStep[0] = new Callback<TaskResult>() {
+            @Override
+            public void on(final TaskResult result) {
+                cursor[0]++;
+                if (result == null) {
+                    ctx.continueTask();
+                } else if (cursor[0] == _steps.length) {
+                    ctx.continueWith(result);
+                } else {
+                    _steps[cursor[0]].resolve(ctx, result, nextStep[0]);
+                }
+            }
+        };
+        _steps[0].resolve(ctx, ctx.result(), nextStep[0]);
+    }
+
+    @Override
+    public final void serialize(final Buffer builder) {
+        for (int i = 0; i < _steps.length; i++) {
+            if (i != 0) {
+                builder.writeChar(Constants.TASK_SEP);
+            }
+            _steps[i].serialize(builder);
+        }
+    }
+
+    @Override
+    public final String name() {
+        return _steps[_steps.length - 1].name();
+    }
+
+}
@@ -26,6 +26,7 @@ import greycat.struct.Relation;
 import greycat.TaskContext;
 import greycat.TaskResult;
 import greycat.utility.HashHelper;
+import greycat.utility.L3GMap;
 import greycat.utility.LArray;
 import greycat.utility.Tuple;
 
@@ -49,11 +50,48 @@ class ActionTraverseOrAttribute implements Action {
 
     @Override
     public final void eval(final TaskContext ctx) {
+        resolve(ctx, ctx.result(), new Callback<TaskResult>() {
+            @Override
+            public void on(final TaskResult result) {
+                if (result == null) {
+                    ctx.continueTask();
+                } else {
+                    ctx.continueWith(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true if the name or the parameters of this step are templates, which may depend on the result of the previous step
+     */
+    final boolean isTemplate() {
+        if (_name.indexOf("{{") != -1) {
+            return true;
+        }
+        if (_params != null) {
+            for (int i = 0; i < _params.length; i++) {
+                if (_params[i] != null && _params[i].indexOf("{{") != -1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves this step on a given result, without continuing the task, so that {@link ActionTraverseChain} can resolve several steps in a row.
+     * Nodes reached several times are only looked up once, and cloned for their other occurrences.
+     *
+     * @param ctx            current context
+     * @param previousResult input of this step, cleared once resolved
+     * @param next           called with the result of this step, or null if there was no input
+     */
+    final void resolve(final TaskContext ctx, final TaskResult previousResult, final Callback<TaskResult> next) {
         final Resolver resolver = ctx.graph().resolver();
         final TaskResult finalResult = ctx.newResult();
         final String flatName = ctx.template(_name);
         final int flatHash = HashHelper.hash(flatName);
-        final TaskResult previousResult = ctx.result();
         List<Tuple<Node, Task>> tasks = null;
         if (previousResult != null) {
             final int previousSize = previousResult.size();
@@ -132,14 +170,41 @@ class ActionTraverseOrAttribute implements Action {
                 public void on(Object result) {
                     if (ids.size() == 0) {
                         previousResult.clear();
-                        ctx.continueWith(finalResult);
+                        next.on(finalResult);
                     } else {
-                        resolver.lookupBatch(worlds.all(), times.all(), ids.all(), new Callback<Node[]>() {
+                        //each distinct node is looked up once, whatever the number of relations leading to it
+                        final int nbIds = ids.size();
+                        final int[] mapping = new int[nbIds];
+                        final L3GMap<Integer> distinct = new L3GMap<Integer>(true);
+                        final LArray distinctWorlds = new LArray();
+                        final LArray distinctTimes = new LArray();
+                        final LArray distinctIds = new LArray();
+                        for (int i = 0; i < nbIds; i++) {
+                            final long world = worlds.get(i);
+                            final long time = times.get(i);
+                            final long id = ids.get(i);
+                            Integer position = distinct.get(world, time, id);
+                            if (position == null) {
+                                position = distinctIds.size();
+                                distinct.put(world, time, id, position);
+                                distinctWorlds.add(world);
+                                distinctTimes.add(time);
+                                distinctIds.add(id);
+                            }
+                            mapping[i] = position;
+                        }
+                        resolver.lookupBatch(distinctWorlds.all(), distinctTimes.all(), distinctIds.all(), new Callback<Node[]>() {
                             @Override
                             public void on(Node[] result) {
-                                for (int i = 0; i < result.length; i++) {
-                                    final Node resolvedNode = result[i];
+                                final boolean[] used = new boolean[result.length];
+                                for (int i = 0; i < nbIds; i++) {
+                                    Node resolvedNode = result[mapping[i]];
                                     if (resolvedNode != null) {
+                                        if (used[mapping[i]]) {
+                                            resolvedNode = ctx.graph().cloneNode(resolvedNode);
+                                        } else {
+                                            used[mapping[i]] = true;
+                                        }
                                         if (finalQuery == null) {
                                             finalResult.add(resolvedNode);
                                         } else {
@@ -183,7 +248,7 @@ class ActionTraverseOrAttribute implements Action {
                                     }
                                 }
                                 previousResult.clear();
-                                ctx.continueWith(finalResult);
+                                next.on(finalResult);
                             }
                         });
                     }
@@ -218,7 +283,7 @@ class ActionTraverseOrAttribute implements Action {
                 secondStep.on(null);
             }
         } else {
-            ctx.continueTask();
+            next.on(null);
         }
     }
 
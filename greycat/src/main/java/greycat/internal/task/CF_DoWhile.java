@@ -43,10 +43,10 @@ class CF_DoWhile extends CF_Action {
     public void eval(final TaskContext ctx) {
         final CoreTaskContext coreTaskContext = (CoreTaskContext) ctx;
         final CF_DoWhile selfPointer = this;
-        final Callback[] recursiveAction = new Callback[1];
-        recursiveAction[0] = new Callback<TaskResult>() {
+        final IterationCallback[] recursiveAction = new IterationCallback[1];
+        recursiveAction[0] = new IterationCallback() {
             @Override
-            public void on(final TaskResult res) {
+            void next(final TaskResult res) {
                 final TaskResult previous = coreTaskContext._result;
                 coreTaskContext._result = res;
                 Exception exceptionDuringTask = null;
@@ -44,10 +44,10 @@ class CF_ForEach extends CF_Action {
             ctx.continueTask();
         } else {
             final TaskResultIterator it = previousResult.iterator();
-            final Callback[] recursiveAction = new Callback[1];
-            recursiveAction[0] = new Callback<TaskResult>() {
+            final IterationCallback[] recursiveAction = new IterationCallback[1];
+            recursiveAction[0] = new IterationCallback() {
                 @Override
-                public void on(final TaskResult res) {
+                void next(final TaskResult res) {
                     //we don't keep result
                     Exception exceptionDuringTask = null;
                     if (res != null) {
@@ -43,10 +43,20 @@ class CF_ForEachPar extends CF_Action {
         final TaskResult previousResult = ctx.result();
         final TaskResultIterator it = previousResult.iterator();
         final int previousSize = previousResult.size();
-        if (previousSize == -1) {
-            throw new RuntimeException("Foreach on non array structure are not supported yet!");
+        //create max // worker for this forEach
+        int workers = ctx.graph().scheduler().workers();
+        if (workers <= 0) {
+            workers = 1;
+        }
+        final int nbThread = workers;
+        //streams have no size, each worker then counts once the stream is exhausted
+        final boolean streamed = previousSize == -1;
+        final DeferCounter waiter;
+        if (streamed) {
+            waiter = ctx.graph().newCounter(nbThread);
+        } else {
+            waiter = ctx.graph().newCounter(previousSize);
         }
-        final DeferCounter waiter = ctx.graph().newCounter(previousSize);
         final Job[] dequeueJob = new Job[1];
         final Exception[] exceptionDuringTask = new Exception[1];
         exceptionDuringTask[0] = null;
@@ -72,15 +82,17 @@ class CF_ForEachPar extends CF_Action {
                                 }
                                 result.free();
                             }
-                            waiter.count();
+                            if (!streamed) {
+                                waiter.count();
+                            }
                             dequeueJob[0].run();
                         }
                     });
+                } else if (streamed) {
+                    waiter.count();
                 }
             }
         };
-        //create max // worker for this forEach
-        final int nbThread = ctx.graph().scheduler().workers();
         for (int i = 0; i < nbThread; i++) {
             dequeueJob[0].run();
         }
@@ -49,10 +49,10 @@ class CF_Loop extends CF_Action {
         final CF_Loop selfPointer = this;
         final AtomicInteger cursor = new AtomicInteger(lower);
         if ((upper - lower) >= 0) {
-            final Callback[] recursiveAction = new Callback[1];
-            recursiveAction[0] = new Callback<TaskResult>() {
+            final IterationCallback[] recursiveAction = new IterationCallback[1];
+            recursiveAction[0] = new IterationCallback() {
                 @Override
-                public void on(final TaskResult res) {
+                void next(final TaskResult res) {
                     final int current = cursor.getAndIncrement();
                     Exception exceptionDuringTask = null;
                     if (res != null) {
@@ -47,11 +47,11 @@ class CF_Map extends CF_Action {
             final TaskResultIterator it = previousResult.iterator();
             final TaskResult finalResult = ctx.newResult();
             finalResult.allocate(previousResult.size());
-            final Callback[] recursiveAction = new Callback[1];
+            final IterationCallback[] recursiveAction = new IterationCallback[1];
             final TaskResult[] loopRes = new TaskResult[1];
-            recursiveAction[0] = new Callback<TaskResult>() {
+            recursiveAction[0] = new IterationCallback() {
                 @Override
-                public void on(final TaskResult res) {
+                void next(final TaskResult res) {
                     Exception exceptionDuringTask = null;
                     if (res != null) {
                         finalResult.add(res);
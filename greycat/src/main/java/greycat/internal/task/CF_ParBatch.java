@@ -0,0 +1,212 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task;
+
+import greycat.Callback;
+import greycat.Constants;
+import greycat.DeferCounter;
+import greycat.Task;
+import greycat.TaskContext;
+import greycat.TaskResult;
+import greycat.TaskResultIterator;
+import greycat.base.StreamTaskResult;
+import greycat.plugin.Job;
+import greycat.plugin.SchedulerAffinity;
+import greycat.struct.Buffer;
+
+import java.util.Map;
+
+/**
+ * Batch version of {@link CF_ForEachPar} and {@link CF_MapPar}: the previous result is split into ranges of consecutive elements,
+ * and the sub task is called once per range, with the whole range as result and the offset of its first element as variable i.
+ * Only one child context is created per range, and at most the given number of ranges are processed in parallel.
+ */
+class CF_ParBatch extends CF_Action {
+
+    private final Task _subTask;
+    private final String _batchSize;
+    private final String _parallelism;
+    private final boolean _map;
+
+    CF_ParBatch(final String p_batchSize, final String p_parallelism, final Task p_subTask, final boolean p_map) {
+        super();
+        this._subTask = p_subTask;
+        this._batchSize = p_batchSize;
+        this._parallelism = p_parallelism;
+        this._map = p_map;
+    }
+
+    @Override
+    public void eval(final TaskContext ctx) {
+        final TaskResult previousResult = ctx.result();
+        final int previousSize = previousResult.size();
+        int parallelism = (int) Double.parseDouble(ctx.template(_parallelism));
+        if (parallelism <= 0) {
+            parallelism = ctx.graph().scheduler().workers();
+        }
+        if (parallelism <= 0) {
+            parallelism = 1;
+        }
+        int batchSize = (int) Double.parseDouble(ctx.template(_batchSize));
+        if (batchSize <= 0) {
+            if (previousSize == -1) {
+                batchSize = StreamTaskResult.DEFAULT_BUFFER_SIZE;
+            } else {
+                //one range per parallel worker
+                batchSize = (previousSize + parallelism - 1) / parallelism;
+            }
+        }
+        if (previousSize == 0) {
+            if (_map) {
+                ctx.continueWith(ctx.newResult());
+            } else {
+                ctx.continueTask();
+            }
+            return;
+        }
+        final int finalBatchSize = batchSize;
+        //ranges are pulled from the iterator, which works on streams of unknown size as well
+        final TaskResultIterator it = previousResult.iterator();
+        final int[] nextOffset = new int[]{0};
+        final int[] nextBatch = new int[]{0};
+        final TaskResult batchResults = ctx.newResult();
+        int nbThread = parallelism;
+        if (previousSize != -1) {
+            nbThread = Math.min(parallelism, (previousSize + batchSize - 1) / batchSize);
+        }
+        final DeferCounter waiter = ctx.graph().newCounter(nbThread);
+        final Job[] dequeueJob = new Job[1];
+        final Exception[] exceptionDuringTask = new Exception[1];
+        exceptionDuringTask[0] = null;
+        dequeueJob[0] = new Job() {
+            @Override
+            public void run() {
+                final Object[] range;
+                final int offset;
+                final int batch;
+                synchronized (it) {
+                    final Object[] pulled = new Object[finalBatchSize];
+                    int nbPulled = 0;
+                    while (nbPulled < finalBatchSize && it.hasNext()) {
+                        pulled[nbPulled] = it.next();
+                        nbPulled++;
+                    }
+                    if (nbPulled == finalBatchSize) {
+                        range = pulled;
+                    } else {
+                        range = new Object[nbPulled];
+                        System.arraycopy(pulled, 0, range, 0, nbPulled);
+                    }
+                    offset = nextOffset[0];
+                    batch = nextBatch[0];
+                    nextOffset[0] = offset + nbPulled;
+                    nextBatch[0] = batch + 1;
+                }
+                if (range.length == 0) {
+                    waiter.count();
+                    return;
+                }
+                _subTask.executeFromUsing(ctx, ctx.wrap(range), SchedulerAffinity.ANY_LOCAL_THREAD, new Callback<TaskContext>() {
+                    @Override
+                    public void on(TaskContext result) {
+                        result.defineVariable("i", offset);
+                    }
+                }, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        if (result != null) {
+                            if (result.output() != null) {
+                                ctx.append(result.output());
+                            }
+                            if (result.exception() != null) {
+                                exceptionDuringTask[0] = result.exception();
+                            }
+                            if (_map) {
+                                batchResults.set(batch, result);
+                            } else {
+                                result.free();
+                            }
+                        }
+                        dequeueJob[0].run();
+                    }
+                });
+            }
+        };
+        for (int i = 0; i < nbThread; i++) {
+            dequeueJob[0].run();
+        }
+        waiter.then(new Job() {
+            @Override
+            public void run() {
+                TaskResult finalResult = null;
+                if (_map) {
+                    //results of all ranges, concatenated in the order of the previous result
+                    finalResult = ctx.newResult();
+                    for (int i = 0; i < batchResults.size(); i++) {
+                        final TaskResult batchResult = (TaskResult) batchResults.get(i);
+                        if (batchResult != null) {
+                            for (int j = 0; j < batchResult.size(); j++) {
+                                finalResult.add(batchResult.get(j));
+                            }
+                        }
+                    }
+                }
+                if (exceptionDuringTask[0] != null) {
+                    ctx.endTask(finalResult, exceptionDuringTask[0]);
+                } else if (_map) {
+                    ctx.continueWith(finalResult);
+                } else {
+                    ctx.continueTask();
+                }
+            }
+        });
+    }
+
+    @Override
+    public final Task[] children() {
+        Task[] children_tasks = new Task[1];
+        children_tasks[0] = _subTask;
+        return children_tasks;
+    }
+
+    @Override
+    public final void cf_serialize(final Buffer builder, Map<Integer, Integer> dagIDS) {
+        builder.writeString(name());
+        builder.writeChar(Constants.TASK_PARAM_OPEN);
+        TaskHelper.serializeString(_batchSize, builder, true);
+        builder.writeChar(Constants.TASK_PARAM_SEP);
+        TaskHelper.serializeString(_parallelism, builder, true);
+        builder.writeChar(Constants.TASK_PARAM_SEP);
+        final CoreTask castedAction = (CoreTask) _subTask;
+        final int castedActionHash = castedAction.hashCode();
+        if (dagIDS == null || !dagIDS.containsKey(castedActionHash)) {
+            builder.writeChar(Constants.SUB_TASK_OPEN);
+            castedAction.serialize(builder, dagIDS);
+            builder.writeChar(Constants.SUB_TASK_CLOSE);
+        } else {
+            builder.writeString("" + dagIDS.get(castedActionHash));
+        }
+        builder.writeChar(Constants.TASK_PARAM_CLOSE);
+    }
+
+    @Override
+    public final String name() {
+        if (_map) {
+            return CoreActionNames.MAP_PAR_BATCH;
+        }
+        return CoreActionNames.FOR_EACH_PAR_BATCH;
+    }
+}
@@ -43,10 +43,10 @@ class CF_WhileDo extends CF_Action {
     public final void eval(final TaskContext ctx) {
         final CoreTaskContext coreTaskContext = (CoreTaskContext) ctx;
         final CF_WhileDo selfPointer = this;
-        final Callback[] recursiveAction = new Callback[1];
-        recursiveAction[0] = new Callback<TaskResult>() {
+        final IterationCallback[] recursiveAction = new IterationCallback[1];
+        recursiveAction[0] = new IterationCallback() {
             @Override
-            public void on(final TaskResult res) {
+            void next(final TaskResult res) {
                 Exception foundException = null;
                 final TaskResult previous = coreTaskContext._result;
                 coreTaskContext._result = res;
@@ -48,6 +48,8 @@ public class CoreActionNames {
     public static String PRINT = "print";
     public static String PRINTLN = "println";
     public static String READ_INDEX = "readIndex";
+    public static String READ_INDEX_RANGE = "readIndexRange";
+    public static String READ_INDEX_PREFIX = "readIndexPrefix";
     public static String READ_VAR = "readVar";
     public static String REMOVE = "remove";
     public static String SAVE = "save";
@@ -74,8 +76,10 @@ public class CoreActionNames {
     public static String LOOP_PAR = "loopPar";
     public static String FOR_EACH = "forEach";
     public static String FOR_EACH_PAR = "forEachPar";
+    public static String FOR_EACH_PAR_BATCH = "forEachParBatch";
     public static String MAP = "map";
     public static String MAP_PAR = "mapPar";
+    public static String MAP_PAR_BATCH = "mapParBatch";
     public static String PIPE = "pipe";
     public static String PIPE_PAR = "pipePar";
     public static String PIPE_TO = "pipeTo";
@@ -261,6 +261,33 @@ public class CoreActions {
         return new ActionReadIndex(indexName, query);
     }
 
+    /**
+     * Retrieves nodes of an index ordered by one of its ordered attributes, whose value is within a range.
+     *
+     * @param indexName name of the index to use
+     * @param attribute ordered attribute, see {@link greycat.Index#declareOrderedAttributes(greycat.Callback, String...)}
+     * @param from      lower bound included, empty for none
+     * @param to        upper bound included, empty for none
+     * @param limit     maximum number of nodes, negative to retrieve the highest values first (top-k), 0 for all
+     * @return the action to chain
+     */
+    public static Action readIndexRange(String indexName, String attribute, String from, String to, String limit) {
+        return new ActionReadIndexRange(indexName, attribute, from, to, limit, false);
+    }
+
+    /**
+     * Retrieves nodes of an index ordered by one of its ordered attributes, whose value starts with a prefix.
+     *
+     * @param indexName name of the index to use
+     * @param attribute ordered attribute, see {@link greycat.Index#declareOrderedAttributes(greycat.Callback, String...)}
+     * @param prefix    prefix of the values
+     * @param limit     maximum number of nodes, 0 for all
+     * @return the action to chain
+     */
+    public static Action readIndexPrefix(String indexName, String attribute, String prefix, String limit) {
+        return new ActionReadIndexRange(indexName, attribute, prefix, null, limit, true);
+    }
+
     /**
      * Adds node to the named global index; updates if the node is already indexed
      *
@@ -19,13 +19,11 @@ import greycat.*;
 import greycat.base.BaseTaskResult;
 import greycat.internal.CoreConstants;
 import greycat.internal.heap.HeapBuffer;
+import greycat.internal.task.expression.CoreExpressionEngine;
 import greycat.plugin.*;
 import greycat.struct.Buffer;
 import greycat.utility.Base64;
 
-import javax.script.ScriptContext;
-import javax.script.ScriptException;
-import javax.script.SimpleScriptContext;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +34,7 @@ public class CoreTask implements Task {
     public Action[] actions = new Action[insertCapacity];
     public int insertCursor = 0;
     TaskHook[] _hooks = null;
+    private volatile Action[] _plan = null;
 
     @Override
     public final Task addHook(final TaskHook p_hook) {
@@ -61,9 +60,24 @@ public class CoreTask implements Task {
         }
         actions[insertCursor] = nextAction;
         insertCursor++;
+        _plan = null;
         return this;
     }
 
+    /**
+     * Actions to execute when no hook observes them, as rewritten by {@link TaskPlanner}, computed once and reset by any new action.
+     *
+     * @return planned actions of this task
+     */
+    final Action[] plan() {
+        Action[] planned = _plan;
+        if (planned == null) {
+            planned = TaskPlanner.plan(actions, insertCursor);
+            _plan = planned;
+        }
+        return planned;
+    }
+
     @Override
     public final Task thenDo(ActionFunction nextActionFunction) {
         return then(new CF_ThenDo(nextActionFunction));
@@ -99,6 +113,11 @@ public class CoreTask implements Task {
         return then(new CF_ForEachPar(subTask));
     }
 
+    @Override
+    public final Task forEachParBatch(String batchSize, String parallelism, Task subTask) {
+        return then(new CF_ParBatch(batchSize, parallelism, subTask, false));
+    }
+
     @Override
     public final Task map(Task subTask) {
         return then(new CF_Map(subTask));
@@ -109,6 +128,11 @@ public class CoreTask implements Task {
         return then(new CF_MapPar(subTask));
     }
 
+    @Override
+    public final Task mapParBatch(String batchSize, String parallelism, Task subTask) {
+        return then(new CF_ParBatch(batchSize, parallelism, subTask, true));
+    }
+
     @Override
     public final Task ifThen(ConditionalFunction cond, Task then) {
         return then(new CF_IfThen(cond, then, null));
@@ -667,11 +691,9 @@ public class CoreTask implements Task {
      * return eval(script);
      */
     private static boolean executeScript(String script, TaskContext context) {
-        ScriptContext scriptCtx = new SimpleScriptContext();
-        scriptCtx.setAttribute("ctx", context, ScriptContext.ENGINE_SCOPE);
         try {
-            return (boolean) TaskHelper.SCRIPT_ENGINE.eval(script, scriptCtx);
-        } catch (ScriptException | ClassCastException e) {
+            return CoreExpressionEngine.compile(script).test(context, null);
+        } catch (RuntimeException e) {
             e.printStackTrace();
             return false;
         }
@@ -1051,6 +1073,24 @@ public class CoreTask implements Task {
                         }
                     }
                 });
+        registry.getOrCreateDeclaration(CoreActionNames.READ_INDEX_RANGE)
+                .setParams(Type.STRING, Type.STRING, Type.STRING, Type.STRING, Type.STRING)
+                .setDescription("Retrieves nodes of an index whose ordered attribute is within a range, bounds included. Empty bounds are unbounded, a negative limit retrieves the highest values first.")
+                .setFactory(new ActionFactory() {
+                    @Override
+                    public Action create(Object[] params) {
+                        return new ActionReadIndexRange((String) params[0], (String) params[1], (String) params[2], (String) params[3], (String) params[4], false);
+                    }
+                });
+        registry.getOrCreateDeclaration(CoreActionNames.READ_INDEX_PREFIX)
+                .setParams(Type.STRING, Type.STRING, Type.STRING, Type.STRING)
+                .setDescription("Retrieves nodes of an index whose ordered attribute starts with a prefix.")
+                .setFactory(new ActionFactory() {
+                    @Override
+                    public Action create(Object[] params) {
+                        return new ActionReadIndexRange((String) params[0], (String) params[1], (String) params[2], null, (String) params[3], true);
+                    }
+                });
         registry.getOrCreateDeclaration(CoreActionNames.INDEX_NAMES)
                 .setDescription("Retrieves existing indexes")
                 .setFactory(new ActionFactory() {
@@ -1180,6 +1220,15 @@ public class CoreTask implements Task {
                         return new CF_ForEachPar((Task) params[0]);
                     }
                 });
+        registry.getOrCreateDeclaration(CoreActionNames.FOR_EACH_PAR_BATCH)
+                .setParams(Type.STRING, Type.STRING, Type.TASK)
+                .setDescription("Batch version of forEachPar(Task). Calls the sub task once per range of batchSize consecutive elements, with at most parallelism ranges processed at the same time.")
+                .setFactory(new ActionFactory() {
+                    @Override
+                    public Action create(Object[] params) {
+                        return new CF_ParBatch((String) params[0], (String) params[1], (Task) params[2], false);
+                    }
+                });
         registry.getOrCreateDeclaration(CoreActionNames.MAP)
                 .setParams(Type.TASK)
                 .setDescription("Iterates through a collection and calls the sub task for each element in parallel and then aggregates all results in an array of array manner.")
@@ -1198,6 +1247,15 @@ public class CoreTask implements Task {
                         return new CF_MapPar((Task) params[0]);
                     }
                 });
+        registry.getOrCreateDeclaration(CoreActionNames.MAP_PAR_BATCH)
+                .setParams(Type.STRING, Type.STRING, Type.TASK)
+                .setDescription("Batch version of mapPar(Task). Calls the sub task once per range of batchSize consecutive elements, with at most parallelism ranges processed at the same time, and concatenates results in the order of the collection.")
+                .setFactory(new ActionFactory() {
+                    @Override
+                    public Action create(Object[] params) {
+                        return new CF_ParBatch((String) params[0], (String) params[1], (Task) params[2], true);
+                    }
+                });
         registry.getOrCreateDeclaration(CoreActionNames.PIPE)
                 .setParams(Type.TASK_ARRAY)
                 .setDescription("Executes and waits for a number of given sub tasks. The result of these sub tasks is immediately enqueued and available in the next sub task in a array of array manner.")
@@ -1496,6 +1554,16 @@ public class CoreTask implements Task {
         return then(CoreActions.readIndex(name, query));
     }
 
+    @Override
+    public final Task readIndexRange(final String indexName, final String attribute, final String from, final String to, final String limit) {
+        return then(CoreActions.readIndexRange(indexName, attribute, from, to, limit));
+    }
+
+    @Override
+    public final Task readIndexPrefix(final String indexName, final String attribute, final String prefix, final String limit) {
+        return then(CoreActions.readIndexPrefix(indexName, attribute, prefix, limit));
+    }
+
     @Override
     public final Task updateIndex(String name) {
         return then(CoreActions.updateIndex(name));
@@ -19,8 +19,6 @@ import greycat.*;
 import greycat.base.BaseTaskResult;
 import greycat.chunk.StateChunk;
 import greycat.internal.CoreConstants;
-import greycat.internal.task.math.CoreMathExpressionEngine;
-import greycat.internal.task.math.MathExpressionEngine;
 import greycat.base.BaseNode;
 import greycat.struct.Buffer;
 import greycat.utility.*;
@@ -30,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static greycat.utility.L3GMap.GROUP;
 
@@ -47,6 +46,8 @@ class CoreTaskContext implements TaskContext {
     private long _time;
     private final CoreTask _origin;
     private int cursor = 0;
+    private Action[] _actions;
+    private int _size;
     TaskHook[] _hooks;
     private StringBuilder _output = null;
     private Buffer _silent;
@@ -54,6 +55,7 @@ class CoreTaskContext implements TaskContext {
     private Callback<TaskProgressReport> _progressHook = null;
     private boolean _taskProgressAutoReporting = false;
     private LMap _transactionTracker = null;
+    private final AtomicInteger _wip = new AtomicInteger(0);
 
     CoreTaskContext(final CoreTask origin, final TaskHook[] p_hooks, final TaskContext parentContext, final TaskResult initial, final Graph p_graph, final Callback<TaskResult> p_callback) {
         this._origin = origin;
@@ -436,7 +438,7 @@ class CoreTaskContext implements TaskContext {
     @Override
     public final void continueTask() {
         final TaskHook[] globalHooks = this._graph.taskHooks();
-        final Action currentAction = _origin.actions[cursor];
+        final Action currentAction = _actions[cursor];
         //next step now...
         if (_hooks != null) {
             for (int i = 0; i < _hooks.length; i++) {
@@ -453,10 +455,10 @@ class CoreTaskContext implements TaskContext {
         }
         cursor++;
         final Action nextAction;
-        if (cursor == _origin.insertCursor) {
+        if (cursor == _size) {
             nextAction = null;
         } else {
-            nextAction = _origin.actions[cursor];
+            nextAction = _actions[cursor];
         }
         if (nextAction == null) {
             endTask(null, null);
@@ -474,16 +476,30 @@ class CoreTaskContext implements TaskContext {
             if (this._taskProgressAutoReporting) {
                 reportProgress(0, null);
             }
-            final int previousCursor = cursor;
-            try {
-                nextAction.eval(this);
-            } catch (Exception e) {
-                if (cursor == previousCursor) {
-                    endTask(null, e);
-                } else {
-                    e.printStackTrace();
+            evaluate();
+        }
+    }
+
+    /**
+     * Evaluates the action under the cursor, iteratively: an action completing synchronously calls {@link #continueTask()} from its eval,
+     * which only advances the cursor and lets the loop below evaluate the next action once the current one has returned.
+     * The stack then no longer grows with the number of actions, and the loop is only re-entered when an action completes asynchronously,
+     * in which case the thread completing it takes over the evaluation.
+     */
+    private void evaluate() {
+        if (_wip.getAndIncrement() == 0) {
+            do {
+                final int previousCursor = cursor;
+                try {
+                    _actions[previousCursor].eval(this);
+                } catch (Exception e) {
+                    if (cursor == previousCursor) {
+                        endTask(null, e);
+                    } else {
+                        e.printStackTrace();
+                    }
                 }
-            }
+            } while (_wip.decrementAndGet() > 0);
         }
     }
 
@@ -577,9 +593,31 @@ class CoreTaskContext implements TaskContext {
         }
     }
 
+    /**
+     * Selects the actions to execute: the ones planned by {@link TaskPlanner} when nothing observes individual actions,
+     * the ones declared by the task otherwise, so that hooks, progress reports and transaction tracking see every step.
+     */
+    private void selectActions() {
+        final TaskHook[] globalHooks = _graph.taskHooks();
+        boolean observed = _hooks != null || (globalHooks != null && globalHooks.length > 0) || _transactionTracker != null || _taskProgressAutoReporting;
+        TaskContext loopContext = this;
+        while (!observed && loopContext != null) {
+            observed = loopContext.progressHook() != null;
+            loopContext = ((CoreTaskContext) loopContext)._parent;
+        }
+        if (observed) {
+            _actions = _origin.actions;
+            _size = _origin.insertCursor;
+        } else {
+            _actions = _origin.plan();
+            _size = _actions.length;
+        }
+    }
+
     @SuppressWarnings("Duplicates")
     final void execute() {
-        final Action current = _origin.actions[cursor];
+        selectActions();
+        final Action current = _actions[cursor];
         if (_hooks != null) {
             for (int i = 0; i < _hooks.length; i++) {
                 if (_parent == null) {
@@ -601,15 +639,7 @@ class CoreTaskContext implements TaskContext {
                 globalHooks[i].beforeAction(current, this);
             }
         }
-        try {
-            current.eval(this);
-        } catch (Exception e) {
-            if (cursor == 0) {
-                endTask(null, e);
-            } else {
-                e.printStackTrace();
-            }
-        }
+        evaluate();
     }
 
     @Override
@@ -617,124 +647,10 @@ class CoreTaskContext implements TaskContext {
         if (input == null) {
             return null;
         }
-        int cursor = 0;
-        StringBuilder buffer = null;
-        int previousPos = -1;
-        while (cursor < input.length()) {
-            char currentChar = input.charAt(cursor);
-            char previousChar = '0';
-            char nextChar = '0';
-            if (cursor > 0) {
-                previousChar = input.charAt(cursor - 1);
-            }
-            if (cursor + 1 < input.length()) {
-                nextChar = input.charAt(cursor + 1);
-            }
-            if (currentChar == '{' && previousChar == '{') {
-                previousPos = cursor + 1;
-            } else if (previousPos != -1 && currentChar == '}' && previousChar == '}') {
-                if (buffer == null) {
-                    buffer = new StringBuilder();
-                    buffer.append(input.substring(0, previousPos - 2));
-                }
-                String contextKey = input.substring(previousPos, cursor - 1).trim();
-                if (contextKey.length() > 0 && contextKey.charAt(0) == '=') { //Math expression
-                    final MathExpressionEngine mathEngine = CoreMathExpressionEngine.parse(contextKey.substring(1));
-                    double value = mathEngine.eval(null, this, new HashMap<String, Double>());
-                    //supress ".0" if it exists
-                    String valueStr = value + "";
-                    for (int i = valueStr.length() - 1; i >= 0; i--) {
-                        if (valueStr.charAt(i) == '.') {
-                            valueStr = valueStr.substring(0, i);
-                            break;
-                        } else if (valueStr.charAt(i) != '0') {
-                            break;
-                        }
-                    }
-                    buffer.append(valueStr);
-                } else {//variable name or array access
-                    //check if it is an array access
-                    int indexArray = -1;
-                    if (contextKey.charAt(contextKey.length() - 1) == ']') {
-                        int indexStart = -1;
-                        for (int i = contextKey.length() - 3; i >= 0; i--) {
-                            if (contextKey.charAt(i) == '[') {
-                                indexStart = i + 1;
-                                break;
-                            }
-                        }
-                        if (indexStart != -1) {
-                            indexArray = TaskHelper.parseInt(contextKey.substring(indexStart, contextKey.length() - 1));
-                            contextKey = contextKey.substring(0, indexStart - 1);
-                            if (indexArray < 0) {
-                                throw new RuntimeException("Array index out of range: " + indexArray);
-                            }
-                        }
-                    }
-                    TaskResult foundVar = variable(contextKey);
-                    if (foundVar == null) {
-                        switch (contextKey) {
-                            case "result": {
-                                foundVar = result();
-                            }
-                            break;
-                            case "time": {
-                                foundVar = wrap(_time);
-                            }
-                            break;
-                            case "world": {
-                                foundVar = wrap(_world);
-                            }
-                            break;
-                        }
-                    }
-                    if (foundVar != null) {
-                        if (foundVar.size() == 1 || indexArray != -1) {
-                            //show element of array
-                            Object toShow = null;
-                            if (indexArray == -1) {
-                                toShow = foundVar.get(0);
-                            } else {
-                                toShow = foundVar.get(indexArray);
-                            }
-                            buffer.append(toShow);
-                        } else {
-                            //show all
-                            TaskResultIterator it = foundVar.iterator();
-                            buffer.append("[");
-                            boolean isFirst = true;
-                            Object next = it.next();
-                            while (next != null) {
-                                if (isFirst) {
-                                    isFirst = false;
-                                } else {
-                                    buffer.append(",");
-                                }
-                                buffer.append(next);
-                                next = it.next();
-                            }
-                            buffer.append("]");
-                        }
-                    }
-                }
-                previousPos = -1;
-            } else {
-                if (previousPos == -1 && buffer != null) {
-                    //check if we are not opening a {{
-                    if (currentChar == '{' && nextChar == '{') {
-                        //noop
-                    } else {
-                        buffer.append(input.charAt(cursor));
-                    }
-                }
-            }
-            cursor++;
-        }
-        if (buffer == null) {
+        if (input.indexOf("{{") == -1) {
             return input;
-        } else {
-            return buffer.toString();
         }
+        return CoreTemplate.compile(input).render(this);
     }
 
     @Override
@@ -964,7 +880,7 @@ class CoreTaskContext implements TaskContext {
             if (comment != null) {
                 report.setComment(comment);
             } else {
-                report.setComment(_origin.actions[cursor].name());
+                report.setComment(_actions[cursor].name());
             }
             progressHook.on(report);
         }
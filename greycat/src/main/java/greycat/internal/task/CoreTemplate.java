@@ -0,0 +1,240 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task;
+
+import greycat.TaskContext;
+import greycat.TaskResult;
+import greycat.TaskResultIterator;
+import greycat.internal.task.math.CoreMathExpressionEngine;
+import greycat.internal.task.math.MathExpressionEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Template string compiled once into a list of tokens: literal text, variables (with an optional array index) and math expressions.
+ * Compiled templates are immutable and shared by every context evaluating the same action parameter,
+ * so that {@link CoreTaskContext#template(String)} no longer scans and parses the parameter on every evaluation.
+ */
+final class CoreTemplate {
+
+    /**
+     * Maximum number of compiled templates kept in the cache, which is cleared once reached.
+     */
+    static final int MAX_CACHED = 4096;
+
+    private static final byte LITERAL = 0;
+    private static final byte VARIABLE = 1;
+    private static final byte EXPRESSION = 2;
+
+    private static final Map<String, CoreTemplate> _cache = new ConcurrentHashMap<String, CoreTemplate>();
+
+    private final String _source;
+    private final Token[] _tokens;
+
+    private CoreTemplate(final String source, final Token[] tokens) {
+        this._source = source;
+        this._tokens = tokens;
+    }
+
+    static CoreTemplate compile(final String input) {
+        CoreTemplate compiled = _cache.get(input);
+        if (compiled == null) {
+            compiled = parse(input);
+            if (_cache.size() >= MAX_CACHED) {
+                _cache.clear();
+            }
+            _cache.put(input, compiled);
+        }
+        return compiled;
+    }
+
+    private static CoreTemplate parse(final String input) {
+        final List<Token> tokens = new ArrayList<Token>();
+        int cursor = 0;
+        StringBuilder literal = null;
+        int previousPos = -1;
+        while (cursor < input.length()) {
+            char currentChar = input.charAt(cursor);
+            char previousChar = '0';
+            char nextChar = '0';
+            if (cursor > 0) {
+                previousChar = input.charAt(cursor - 1);
+            }
+            if (cursor + 1 < input.length()) {
+                nextChar = input.charAt(cursor + 1);
+            }
+            if (currentChar == '{' && previousChar == '{') {
+                previousPos = cursor + 1;
+            } else if (previousPos != -1 && currentChar == '}' && previousChar == '}') {
+                if (literal == null) {
+                    literal = new StringBuilder();
+                    literal.append(input.substring(0, previousPos - 2));
+                }
+                if (literal.length() > 0) {
+                    tokens.add(new Token(LITERAL, literal.toString(), -1, null));
+                    literal = new StringBuilder();
+                }
+                String contextKey = input.substring(previousPos, cursor - 1).trim();
+                if (contextKey.length() > 0 && contextKey.charAt(0) == '=') { //Math expression
+                    tokens.add(new Token(EXPRESSION, null, -1, CoreMathExpressionEngine.parse(contextKey.substring(1))));
+                } else {//variable name or array access
+                    //check if it is an array access
+                    int indexArray = -1;
+                    if (contextKey.charAt(contextKey.length() - 1) == ']') {
+                        int indexStart = -1;
+                        for (int i = contextKey.length() - 3; i >= 0; i--) {
+                            if (contextKey.charAt(i) == '[') {
+                                indexStart = i + 1;
+                                break;
+                            }
+                        }
+                        if (indexStart != -1) {
+                            indexArray = TaskHelper.parseInt(contextKey.substring(indexStart, contextKey.length() - 1));
+                            contextKey = contextKey.substring(0, indexStart - 1);
+                            if (indexArray < 0) {
+                                throw new RuntimeException("Array index out of range: " + indexArray);
+                            }
+                        }
+                    }
+                    tokens.add(new Token(VARIABLE, contextKey, indexArray, null));
+                }
+                previousPos = -1;
+            } else {
+                if (previousPos == -1 && literal != null) {
+                    //check if we are not opening a {{
+                    if (currentChar == '{' && nextChar == '{') {
+                        //noop
+                    } else {
+                        literal.append(currentChar);
+                    }
+                }
+            }
+            cursor++;
+        }
+        if (literal == null) {
+            //no placeholder, the template is the input itself
+            return new CoreTemplate(input, null);
+        }
+        if (literal.length() > 0) {
+            tokens.add(new Token(LITERAL, literal.toString(), -1, null));
+        }
+        return new CoreTemplate(input, tokens.toArray(new Token[tokens.size()]));
+    }
+
+    final String render(final TaskContext ctx) {
+        if (_tokens == null) {
+            return _source;
+        }
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < _tokens.length; i++) {
+            final Token token = _tokens[i];
+            switch (token.type) {
+                case LITERAL:
+                    buffer.append(token.value);
+                    break;
+                case EXPRESSION:
+                    appendExpression(buffer, token.expression.eval(null, ctx, new HashMap<String, Double>()));
+                    break;
+                default:
+                    appendVariable(buffer, ctx, token.value, token.index);
+                    break;
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static void appendExpression(final StringBuilder buffer, final double value) {
+        //supress ".0" if it exists
+        String valueStr = value + "";
+        for (int i = valueStr.length() - 1; i >= 0; i--) {
+            if (valueStr.charAt(i) == '.') {
+                valueStr = valueStr.substring(0, i);
+                break;
+            } else if (valueStr.charAt(i) != '0') {
+                break;
+            }
+        }
+        buffer.append(valueStr);
+    }
+
+    private static void appendVariable(final StringBuilder buffer, final TaskContext ctx, final String name, final int indexArray) {
+        TaskResult foundVar = ctx.variable(name);
+        if (foundVar == null) {
+            switch (name) {
+                case "result": {
+                    foundVar = ctx.result();
+                }
+                break;
+                case "time": {
+                    foundVar = ctx.wrap(ctx.time());
+                }
+                break;
+                case "world": {
+                    foundVar = ctx.wrap(ctx.world());
+                }
+                break;
+            }
+        }
+        if (foundVar != null) {
+            if (foundVar.size() == 1 || indexArray != -1) {
+                //show element of array
+                Object toShow = null;
+                if (indexArray == -1) {
+                    toShow = foundVar.get(0);
+                } else {
+                    toShow = foundVar.get(indexArray);
+                }
+                buffer.append(toShow);
+            } else {
+                //show all
+                TaskResultIterator it = foundVar.iterator();
+                buffer.append("[");
+                boolean isFirst = true;
+                Object next = it.next();
+                while (next != null) {
+                    if (isFirst) {
+                        isFirst = false;
+                    } else {
+                        buffer.append(",");
+                    }
+                    buffer.append(next);
+                    next = it.next();
+                }
+                buffer.append("]");
+            }
+        }
+    }
+
+    private static final class Token {
+
+        private final byte type;
+        private final String value;
+        private final int index;
+        private final MathExpressionEngine expression;
+
+        private Token(final byte type, final String value, final int index, final MathExpressionEngine expression) {
+            this.type = type;
+            this.value = value;
+            this.index = index;
+            this.expression = expression;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task;
+
+import greycat.Callback;
+import greycat.TaskResult;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Callback receiving the result of each iteration of a control-flow action, such as a loop or a while.
+ * <p>
+ * An iteration completing synchronously calls it back from the stack launching it.
+ * Instead of launching the next iteration from there, the result is handed over to the outermost call, which then launches the next iteration once the current one has returned.
+ * The stack therefore no longer grows with the number of iterations, in the same way as {@link CoreTaskContext} evaluates the actions of a task.
+ */
+abstract class IterationCallback implements Callback<TaskResult> {
+
+    private final AtomicInteger _wip = new AtomicInteger(0);
+    private TaskResult _pending = null;
+
+    @Override
+    public final void on(final TaskResult result) {
+        _pending = result;
+        if (_wip.getAndIncrement() == 0) {
+            do {
+                final TaskResult current = _pending;
+                _pending = null;
+                next(current);
+            } while (_wip.decrementAndGet() > 0);
+        }
+    }
+
+    /**
+     * Handles the result of an iteration, then launches the next one or completes the action.
+     *
+     * @param res result of the iteration
+     */
+    abstract void next(TaskResult res);
+
+}
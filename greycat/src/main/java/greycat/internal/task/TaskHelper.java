@@ -21,16 +21,8 @@ import greycat.Type;
 import greycat.base.BaseNode;
 import greycat.struct.Buffer;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-
 public class TaskHelper {
 
-    /**
-     * @ignore ts
-     */
-    static final ScriptEngine SCRIPT_ENGINE = new ScriptEngineManager().getEngineByName("JavaScript");
-
     /**
      * Return an array with all nodes contains in the input.
      * If the strict mode is enable, the input should contain only Node element. Otherwise, the not Node element will
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task;
+
+import greycat.Action;
+
+/**
+ * Rewrites the actions of a task before their execution.
+ * Runs of consecutive traverse or attribute steps are fused into an {@link ActionTraverseChain}, which resolves all their hops
+ * in a single action evaluation. As the result of the context is not updated between the fused hops, a step whose name or parameters are templates
+ * only starts a new run, it never continues one. Other actions are kept as is, and the task itself, as well as its serialization, are not modified.
+ */
+final class TaskPlanner {
+
+    private TaskPlanner() {
+    }
+
+    static Action[] plan(final Action[] actions, final int size) {
+        final Action[] planned = new Action[size];
+        int plannedSize = 0;
+        int i = 0;
+        while (i < size) {
+            int end = i;
+            while (end < size && actions[end] instanceof ActionTraverseOrAttribute && (end == i || !((ActionTraverseOrAttribute) actions[end]).isTemplate())) {
+                end++;
+            }
+            if (end - i > 1) {
+                final ActionTraverseOrAttribute[] steps = new ActionTraverseOrAttribute[end - i];
+                for (int j = i; j < end; j++) {
+                    steps[j - i] = (ActionTraverseOrAttribute) actions[j];
+                }
+                planned[plannedSize] = new ActionTraverseChain(steps);
+                plannedSize++;
+                i = end;
+            } else {
+                planned[plannedSize] = actions[i];
+                plannedSize++;
+                i++;
+            }
+        }
+        if (plannedSize == size) {
+            return planned;
+        }
+        final Action[] trimmed = new Action[plannedSize];
+        System.arraycopy(planned, 0, trimmed, 0, plannedSize);
+        return trimmed;
+    }
+
+}
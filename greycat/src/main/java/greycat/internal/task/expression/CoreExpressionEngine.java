@@ -0,0 +1,70 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task.expression;
+
+import greycat.Node;
+import greycat.TaskContext;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @ignore ts
+ */
+public class CoreExpressionEngine implements ExpressionEngine {
+
+    /**
+     * Maximum number of compiled scripts kept in the cache, which is cleared once reached.
+     */
+    static final int MAX_CACHED = 1024;
+
+    private static final Map<String, ExpressionEngine> _cache = new ConcurrentHashMap<String, ExpressionEngine>();
+
+    private final ExpressionNode _root;
+
+    private CoreExpressionEngine(final String script) {
+        this._root = ExpressionParser.parse(script);
+    }
+
+    /**
+     * Compiles a script, or returns the engine already compiled for it.
+     *
+     * @param script source of the script
+     * @return the compiled script, shared and safe to evaluate concurrently
+     */
+    public static ExpressionEngine compile(final String script) {
+        ExpressionEngine engine = _cache.get(script);
+        if (engine == null) {
+            engine = new CoreExpressionEngine(script);
+            if (_cache.size() >= MAX_CACHED) {
+                _cache.clear();
+            }
+            _cache.put(script, engine);
+        }
+        return engine;
+    }
+
+    @Override
+    public final Object eval(final TaskContext ctx, final Node node) {
+        return _root.eval(ctx, node);
+    }
+
+    @Override
+    public final boolean test(final TaskContext ctx, final Node node) {
+        return ExpressionNode.isTrue(_root.eval(ctx, node));
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task.expression;
+
+import greycat.Node;
+import greycat.TaskContext;
+
+/**
+ * Compiled script of the GreyCat expression language, used by script actions and script conditions.
+ * <p>
+ * The language is the subset of JavaScript used in tasks: literals, arithmetic, comparison and logical operators, ternary conditions,
+ * statements separated by ';', member access and calls on nodes, task results and the task context.
+ * Scripts have no access to any other class, and are evaluated directly on the context, without copying any variable.
+ *
+ * @ignore ts
+ */
+public interface ExpressionEngine {
+
+    /**
+     * Evaluates the script and returns the value of its last statement.
+     *
+     * @param ctx  task context, bound to ctx and context, whose variables are readable by name
+     * @param node node under evaluation, bound to node, can be null
+     * @return value of the last statement, null if none
+     */
+    Object eval(TaskContext ctx, Node node);
+
+    /**
+     * Evaluates the script as a predicate, following the truthiness rules of JavaScript.
+     *
+     * @param ctx  task context, bound to ctx and context
+     * @param node node under evaluation, bound to node, can be null
+     * @return true if the value of the script is truthy
+     */
+    boolean test(TaskContext ctx, Node node);
+
+}
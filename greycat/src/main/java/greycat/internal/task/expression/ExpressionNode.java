@@ -0,0 +1,492 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task.expression;
+
+import greycat.Node;
+import greycat.TaskContext;
+import greycat.TaskResult;
+
+/**
+ * Node of a compiled script. Nodes are immutable once parsed, so that a compiled script is shared by concurrent evaluations.
+ * <p>
+ * Member access and calls are resolved against a fixed set of types ({@link Node}, {@link TaskResult}, {@link TaskContext} and strings),
+ * without any reflection: scripts cannot reach any other class.
+ *
+ * @ignore ts
+ */
+class ExpressionNode {
+
+    static final byte LITERAL = 0;
+    static final byte IDENTIFIER = 1;
+    static final byte MEMBER = 2;
+    static final byte CALL = 3;
+    static final byte INDEX = 4;
+    static final byte UNARY = 5;
+    static final byte BINARY = 6;
+    static final byte AND = 7;
+    static final byte OR = 8;
+    static final byte CONDITIONAL = 9;
+    static final byte SEQUENCE = 10;
+
+    static final byte NONE = 0;
+    static final byte NOT = 1;
+    static final byte NEG = 2;
+    static final byte POS = 3;
+    static final byte ADD = 4;
+    static final byte SUB = 5;
+    static final byte MUL = 6;
+    static final byte DIV = 7;
+    static final byte MOD = 8;
+    static final byte EQ = 9;
+    static final byte NEQ = 10;
+    static final byte STRICT_EQ = 11;
+    static final byte STRICT_NEQ = 12;
+    static final byte LT = 13;
+    static final byte LTE = 14;
+    static final byte GT = 15;
+    static final byte GTE = 16;
+
+    private final byte _type;
+    private final byte _op;
+    private final Object _value;
+    private final ExpressionNode[] _children;
+
+    ExpressionNode(final byte type, final byte op, final Object value, final ExpressionNode[] children) {
+        this._type = type;
+        this._op = op;
+        this._value = value;
+        this._children = children;
+    }
+
+    final Object eval(final TaskContext ctx, final Node node) {
+        switch (_type) {
+            case LITERAL:
+                return _value;
+            case IDENTIFIER:
+                return resolve(ctx, node, (String) _value);
+            case MEMBER:
+                return member(_children[0].eval(ctx, node), (String) _value);
+            case CALL:
+                final Object[] args = new Object[_children.length - 1];
+                for (int i = 1; i < _children.length; i++) {
+                    args[i - 1] = _children[i].eval(ctx, node);
+                }
+                if (_children[0] == null) {
+                    return function(ctx, (String) _value, args);
+                }
+                return invoke(_children[0].eval(ctx, node), (String) _value, args);
+            case INDEX:
+                return index(_children[0].eval(ctx, node), _children[1].eval(ctx, node));
+            case UNARY:
+                final Object operand = _children[0].eval(ctx, node);
+                switch (_op) {
+                    case NOT:
+                        return !isTrue(operand);
+                    case NEG:
+                        if (isIntegral(operand)) {
+                            return narrow(-((Number) operand).longValue());
+                        }
+                        return -toDouble(operand);
+                    default:
+                        if (isIntegral(operand)) {
+                            return operand;
+                        }
+                        return toDouble(operand);
+                }
+            case BINARY:
+                return binary(_op, _children[0].eval(ctx, node), _children[1].eval(ctx, node));
+            case AND:
+                final Object left = _children[0].eval(ctx, node);
+                if (!isTrue(left)) {
+                    return left;
+                }
+                return _children[1].eval(ctx, node);
+            case OR:
+                final Object first = _children[0].eval(ctx, node);
+                if (isTrue(first)) {
+                    return first;
+                }
+                return _children[1].eval(ctx, node);
+            case CONDITIONAL:
+                if (isTrue(_children[0].eval(ctx, node))) {
+                    return _children[1].eval(ctx, node);
+                }
+                return _children[2].eval(ctx, node);
+            default:
+                Object last = null;
+                for (int i = 0; i < _children.length; i++) {
+                    last = _children[i].eval(ctx, node);
+                }
+                return last;
+        }
+    }
+
+    private static Object resolve(final TaskContext ctx, final Node node, final String name) {
+        switch (name) {
+            case "node":
+                return node;
+            case "ctx":
+            case "context":
+                return ctx;
+        }
+        if (ctx != null) {
+            final TaskResult variable = ctx.variable(name);
+            if (variable != null) {
+                return variable;
+            }
+            if (name.equals("result")) {
+                return ctx.result();
+            }
+        }
+        throw new RuntimeException(name + " is not defined");
+    }
+
+    private static Object function(final TaskContext ctx, final String name, final Object[] args) {
+        switch (name) {
+            case "print":
+            case "println":
+                if (ctx != null) {
+                    ctx.append(toString(args.length > 0 ? args[0] : null) + "\n");
+                }
+                return null;
+            case "parseInt":
+                return narrow((long) toDouble(args[0]));
+            case "parseFloat":
+                return toDouble(args[0]);
+            case "isNaN":
+                return Double.isNaN(toDouble(args[0]));
+            default:
+                throw new RuntimeException(name + " is not a function");
+        }
+    }
+
+    private static Object member(final Object target, final String name) {
+        if (target instanceof Node) {
+            return ((Node) target).get(name);
+        } else if (target instanceof TaskResult) {
+            if (name.equals("length") || name.equals("size")) {
+                return ((TaskResult) target).size();
+            }
+        } else if (target instanceof TaskContext) {
+            final TaskContext ctx = (TaskContext) target;
+            switch (name) {
+                case "result":
+                    return ctx.result();
+                case "world":
+                    return ctx.world();
+                case "time":
+                    return ctx.time();
+            }
+        } else if (target instanceof String) {
+            if (name.equals("length")) {
+                return ((String) target).length();
+            }
+        } else if (target == null) {
+            throw new RuntimeException("Cannot read property " + name + " of null");
+        }
+        return null;
+    }
+
+    private static Object invoke(final Object target, final String name, final Object[] args) {
+        if (target == null) {
+            throw new RuntimeException("Cannot call " + name + " on null");
+        }
+        if (target instanceof Node) {
+            final Node casted = (Node) target;
+            switch (name) {
+                case "get":
+                    return casted.get(toString(args[0]));
+                case "id":
+                    return casted.id();
+                case "time":
+                    return casted.time();
+                case "world":
+                    return casted.world();
+                case "nodeTypeName":
+                    return casted.nodeTypeName();
+            }
+        } else if (target instanceof TaskResult) {
+            final TaskResult casted = (TaskResult) target;
+            switch (name) {
+                case "get":
+                    return casted.get(toInt(args[0]));
+                case "size":
+                    return casted.size();
+            }
+        } else if (target instanceof TaskContext) {
+            final TaskContext casted = (TaskContext) target;
+            switch (name) {
+                case "variable":
+                    return casted.variable(toString(args[0]));
+                case "result":
+                    return casted.result();
+                case "world":
+                    return casted.world();
+                case "time":
+                    return casted.time();
+                case "template":
+                    return casted.template(toString(args[0]));
+                case "setVariable":
+                    return casted.setVariable(toString(args[0]), args[1]);
+                case "setGlobalVariable":
+                    return casted.setGlobalVariable(toString(args[0]), args[1]);
+                case "defineVariable":
+                    return casted.defineVariable(toString(args[0]), args[1]);
+                case "append":
+                    casted.append(toString(args[0]));
+                    return null;
+                case "continueTask":
+                    casted.continueTask();
+                    return null;
+                case "continueWith":
+                    if (args[0] instanceof TaskResult) {
+                        casted.continueWith((TaskResult) args[0]);
+                    } else {
+                        casted.continueWith(casted.wrap(args[0]));
+                    }
+                    return null;
+            }
+        } else if (target instanceof String) {
+            final String casted = (String) target;
+            switch (name) {
+                case "length":
+                    return casted.length();
+                case "indexOf":
+                    return casted.indexOf(toString(args[0]));
+                case "startsWith":
+                    return casted.startsWith(toString(args[0]));
+                case "endsWith":
+                    return casted.endsWith(toString(args[0]));
+                case "includes":
+                    return casted.indexOf(toString(args[0])) != -1;
+                case "toUpperCase":
+                    return casted.toUpperCase();
+                case "toLowerCase":
+                    return casted.toLowerCase();
+                case "trim":
+                    return casted.trim();
+                case "substring":
+                    if (args.length > 1) {
+                        return casted.substring(toInt(args[0]), toInt(args[1]));
+                    }
+                    return casted.substring(toInt(args[0]));
+            }
+        }
+        switch (name) {
+            case "toString":
+                return toString(target);
+            case "equals":
+                return looseEquals(target, args[0]);
+        }
+        throw new RuntimeException(name + " is not a function");
+    }
+
+    private static Object index(final Object target, final Object index) {
+        if (target instanceof TaskResult) {
+            return ((TaskResult) target).get(toInt(index));
+        } else if (target instanceof Node) {
+            return ((Node) target).get(toString(index));
+        } else if (target instanceof String) {
+            return String.valueOf(((String) target).charAt(toInt(index)));
+        } else if (target instanceof Object[]) {
+            return ((Object[]) target)[toInt(index)];
+        } else if (target instanceof int[]) {
+            return ((int[]) target)[toInt(index)];
+        } else if (target instanceof long[]) {
+            return ((long[]) target)[toInt(index)];
+        } else if (target instanceof double[]) {
+            return ((double[]) target)[toInt(index)];
+        } else if (target == null) {
+            throw new RuntimeException("Cannot read index " + index + " of null");
+        }
+        return null;
+    }
+
+    private static Object binary(final byte op, final Object left, final Object right) {
+        switch (op) {
+            case EQ:
+                return looseEquals(left, right);
+            case NEQ:
+                return !looseEquals(left, right);
+            case STRICT_EQ:
+                return strictEquals(left, right);
+            case STRICT_NEQ:
+                return !strictEquals(left, right);
+            case LT:
+            case LTE:
+            case GT:
+            case GTE:
+                final double comparison;
+                if (left instanceof String && right instanceof String) {
+                    comparison = ((String) left).compareTo((String) right);
+                } else {
+                    final double leftValue = toDouble(left);
+                    final double rightValue = toDouble(right);
+                    if (Double.isNaN(leftValue) || Double.isNaN(rightValue)) {
+                        return false;
+                    }
+                    comparison = leftValue - rightValue;
+                }
+                switch (op) {
+                    case LT:
+                        return comparison < 0;
+                    case LTE:
+                        return comparison <= 0;
+                    case GT:
+                        return comparison > 0;
+                    default:
+                        return comparison >= 0;
+                }
+            case ADD:
+                if (left instanceof String || right instanceof String) {
+                    return toString(left) + toString(right);
+                }
+                return arithmetic(op, left, right);
+            default:
+                return arithmetic(op, left, right);
+        }
+    }
+
+    /**
+     * Evaluates ADD, SUB, MUL, DIV and MOD on numbers, in integers when both operands are integral, except for divisions.
+     */
+    private static Object arithmetic(final byte op, final Object left, final Object right) {
+        if (op != DIV && isIntegral(left) && isIntegral(right)) {
+            final long leftValue = ((Number) left).longValue();
+            final long rightValue = ((Number) right).longValue();
+            switch (op) {
+                case ADD:
+                    return narrow(leftValue + rightValue);
+                case SUB:
+                    return narrow(leftValue - rightValue);
+                case MUL:
+                    return narrow(leftValue * rightValue);
+                default:
+                    if (rightValue == 0) {
+                        return Double.NaN;
+                    }
+                    return narrow(leftValue % rightValue);
+            }
+        }
+        final double leftValue = toDouble(left);
+        final double rightValue = toDouble(right);
+        switch (op) {
+            case ADD:
+                return leftValue + rightValue;
+            case SUB:
+                return leftValue - rightValue;
+            case MUL:
+                return leftValue * rightValue;
+            case DIV:
+                return leftValue / rightValue;
+            default:
+                return leftValue % rightValue;
+        }
+    }
+
+    static Object parseNumber(final String text) {
+        if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1) {
+            return narrow(Long.parseLong(text));
+        }
+        return Double.parseDouble(text);
+    }
+
+    private static Object narrow(final long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    private static boolean isIntegral(final Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    static boolean isTrue(final Object value) {
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            final double casted = ((Number) value).doubleValue();
+            return casted != 0 && !Double.isNaN(casted);
+        } else if (value instanceof String) {
+            return ((String) value).length() > 0;
+        }
+        return true;
+    }
+
+    private static double toDouble(final Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        } else if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            final String trimmed = ((String) value).trim();
+            if (trimmed.length() == 0) {
+                return 0;
+            }
+            try {
+                return Double.parseDouble(trimmed);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static int toInt(final Object value) {
+        return (int) toDouble(value);
+    }
+
+    private static String toString(final Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof Double) {
+            final double casted = (Double) value;
+            if (casted == Math.rint(casted) && !Double.isInfinite(casted) && Math.abs(casted) < 1e15) {
+                return String.valueOf((long) casted);
+            }
+        }
+        return value.toString();
+    }
+
+    private static boolean looseEquals(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof String && right instanceof String) {
+            return left.equals(right);
+        }
+        if (left instanceof Number || right instanceof Number || left instanceof Boolean || right instanceof Boolean) {
+            return toDouble(left) == toDouble(right);
+        }
+        return left.equals(right);
+    }
+
+    private static boolean strictEquals(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+        }
+        return left.equals(right);
+    }
+
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser of the expression language, building the tree of {@link ExpressionNode} evaluated by {@link CoreExpressionEngine}.
+ *
+ * @ignore ts
+ */
+class ExpressionParser {
+
+    private final ExpressionTokenizer _tokenizer;
+
+    private ExpressionParser(final String script) {
+        this._tokenizer = new ExpressionTokenizer(script);
+    }
+
+    static ExpressionNode parse(final String script) {
+        final ExpressionParser parser = new ExpressionParser(script);
+        final ExpressionNode parsed = parser.program();
+        if (parser._tokenizer.type != ExpressionTokenizer.END) {
+            throw parser.error();
+        }
+        return parsed;
+    }
+
+    private ExpressionNode program() {
+        final List<ExpressionNode> statements = new ArrayList<ExpressionNode>();
+        while (_tokenizer.type != ExpressionTokenizer.END) {
+            if (_tokenizer.is(";")) {
+                _tokenizer.next();
+            } else {
+                statements.add(expression());
+                if (_tokenizer.type != ExpressionTokenizer.END && !_tokenizer.is(";")) {
+                    throw error();
+                }
+            }
+        }
+        if (statements.size() == 1) {
+            return statements.get(0);
+        }
+        return new ExpressionNode(ExpressionNode.SEQUENCE, ExpressionNode.NONE, null, statements.toArray(new ExpressionNode[statements.size()]));
+    }
+
+    private ExpressionNode expression() {
+        final ExpressionNode condition = or();
+        if (_tokenizer.is("?")) {
+            _tokenizer.next();
+            final ExpressionNode then = expression();
+            expect(":");
+            final ExpressionNode otherwise = expression();
+            return new ExpressionNode(ExpressionNode.CONDITIONAL, ExpressionNode.NONE, null, new ExpressionNode[]{condition, then, otherwise});
+        }
+        return condition;
+    }
+
+    private ExpressionNode or() {
+        ExpressionNode left = and();
+        while (_tokenizer.is("||")) {
+            _tokenizer.next();
+            left = new ExpressionNode(ExpressionNode.OR, ExpressionNode.NONE, null, new ExpressionNode[]{left, and()});
+        }
+        return left;
+    }
+
+    private ExpressionNode and() {
+        ExpressionNode left = equality();
+        while (_tokenizer.is("&&")) {
+            _tokenizer.next();
+            left = new ExpressionNode(ExpressionNode.AND, ExpressionNode.NONE, null, new ExpressionNode[]{left, equality()});
+        }
+        return left;
+    }
+
+    private ExpressionNode equality() {
+        ExpressionNode left = relational();
+        while (true) {
+            final byte op;
+            if (_tokenizer.is("==")) {
+                op = ExpressionNode.EQ;
+            } else if (_tokenizer.is("!=")) {
+                op = ExpressionNode.NEQ;
+            } else if (_tokenizer.is("===")) {
+                op = ExpressionNode.STRICT_EQ;
+            } else if (_tokenizer.is("!==")) {
+                op = ExpressionNode.STRICT_NEQ;
+            } else {
+                return left;
+            }
+            _tokenizer.next();
+            left = binary(op, left, relational());
+        }
+    }
+
+    private ExpressionNode relational() {
+        ExpressionNode left = additive();
+        while (true) {
+            final byte op;
+            if (_tokenizer.is("<")) {
+                op = ExpressionNode.LT;
+            } else if (_tokenizer.is("<=")) {
+                op = ExpressionNode.LTE;
+            } else if (_tokenizer.is(">")) {
+                op = ExpressionNode.GT;
+            } else if (_tokenizer.is(">=")) {
+                op = ExpressionNode.GTE;
+            } else {
+                return left;
+            }
+            _tokenizer.next();
+            left = binary(op, left, additive());
+        }
+    }
+
+    private ExpressionNode additive() {
+        ExpressionNode left = multiplicative();
+        while (true) {
+            final byte op;
+            if (_tokenizer.is("+")) {
+                op = ExpressionNode.ADD;
+            } else if (_tokenizer.is("-")) {
+                op = ExpressionNode.SUB;
+            } else {
+                return left;
+            }
+            _tokenizer.next();
+            left = binary(op, left, multiplicative());
+        }
+    }
+
+    private ExpressionNode multiplicative() {
+        ExpressionNode left = unary();
+        while (true) {
+            final byte op;
+            if (_tokenizer.is("*")) {
+                op = ExpressionNode.MUL;
+            } else if (_tokenizer.is("/")) {
+                op = ExpressionNode.DIV;
+            } else if (_tokenizer.is("%")) {
+                op = ExpressionNode.MOD;
+            } else {
+                return left;
+            }
+            _tokenizer.next();
+            left = binary(op, left, unary());
+        }
+    }
+
+    private ExpressionNode unary() {
+        if (_tokenizer.is("!")) {
+            _tokenizer.next();
+            return new ExpressionNode(ExpressionNode.UNARY, ExpressionNode.NOT, null, new ExpressionNode[]{unary()});
+        } else if (_tokenizer.is("-")) {
+            _tokenizer.next();
+            return new ExpressionNode(ExpressionNode.UNARY, ExpressionNode.NEG, null, new ExpressionNode[]{unary()});
+        } else if (_tokenizer.is("+")) {
+            _tokenizer.next();
+            return new ExpressionNode(ExpressionNode.UNARY, ExpressionNode.POS, null, new ExpressionNode[]{unary()});
+        }
+        return postfix();
+    }
+
+    private ExpressionNode postfix() {
+        ExpressionNode target = primary();
+        while (true) {
+            if (_tokenizer.is(".")) {
+                _tokenizer.next();
+                if (_tokenizer.type != ExpressionTokenizer.IDENTIFIER) {
+                    throw error();
+                }
+                final String name = _tokenizer.text;
+                _tokenizer.next();
+                if (_tokenizer.is("(")) {
+                    target = call(target, name);
+                } else {
+                    target = new ExpressionNode(ExpressionNode.MEMBER, ExpressionNode.NONE, name, new ExpressionNode[]{target});
+                }
+            } else if (_tokenizer.is("[")) {
+                _tokenizer.next();
+                final ExpressionNode index = expression();
+                expect("]");
+                target = new ExpressionNode(ExpressionNode.INDEX, ExpressionNode.NONE, null, new ExpressionNode[]{target, index});
+            } else {
+                return target;
+            }
+        }
+    }
+
+    private ExpressionNode primary() {
+        final String text = _tokenizer.text;
+        switch (_tokenizer.type) {
+            case ExpressionTokenizer.NUMBER:
+                _tokenizer.next();
+                return new ExpressionNode(ExpressionNode.LITERAL, ExpressionNode.NONE, ExpressionNode.parseNumber(text), null);
+            case ExpressionTokenizer.STRING:
+                _tokenizer.next();
+                return new ExpressionNode(ExpressionNode.LITERAL, ExpressionNode.NONE, text, null);
+            case ExpressionTokenizer.IDENTIFIER:
+                _tokenizer.next();
+                switch (text) {
+                    case "true":
+                        return new ExpressionNode(ExpressionNode.LITERAL, ExpressionNode.NONE, true, null);
+                    case "false":
+                        return new ExpressionNode(ExpressionNode.LITERAL, ExpressionNode.NONE, false, null);
+                    case "null":
+                    case "undefined":
+                        return new ExpressionNode(ExpressionNode.LITERAL, ExpressionNode.NONE, null, null);
+                }
+                if (_tokenizer.is("(")) {
+                    return call(null, text);
+                }
+                return new ExpressionNode(ExpressionNode.IDENTIFIER, ExpressionNode.NONE, text, null);
+            default:
+                if (_tokenizer.is("(")) {
+                    _tokenizer.next();
+                    final ExpressionNode inner = expression();
+                    expect(")");
+                    return inner;
+                }
+                throw error();
+        }
+    }
+
+    private ExpressionNode call(final ExpressionNode target, final String name) {
+        expect("(");
+        final List<ExpressionNode> children = new ArrayList<ExpressionNode>();
+        children.add(target);
+        if (!_tokenizer.is(")")) {
+            children.add(expression());
+            while (_tokenizer.is(",")) {
+                _tokenizer.next();
+                children.add(expression());
+            }
+        }
+        expect(")");
+        return new ExpressionNode(ExpressionNode.CALL, ExpressionNode.NONE, name, children.toArray(new ExpressionNode[children.size()]));
+    }
+
+    private ExpressionNode binary(final byte op, final ExpressionNode left, final ExpressionNode right) {
+        return new ExpressionNode(ExpressionNode.BINARY, op, null, new ExpressionNode[]{left, right});
+    }
+
+    private void expect(final String symbol) {
+        if (!_tokenizer.is(symbol)) {
+            throw error();
+        }
+        _tokenizer.next();
+    }
+
+    private RuntimeException error() {
+        if (_tokenizer.type == ExpressionTokenizer.END) {
+            return new RuntimeException("Unexpected end of script");
+        }
+        return new RuntimeException("Unexpected token '" + _tokenizer.text + "' at position " + _tokenizer.start);
+    }
+
+}
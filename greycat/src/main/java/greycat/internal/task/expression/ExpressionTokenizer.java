@@ -0,0 +1,146 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.internal.task.expression;
+
+/**
+ * @ignore ts
+ */
+class ExpressionTokenizer {
+
+    static final byte END = 0;
+    static final byte NUMBER = 1;
+    static final byte STRING = 2;
+    static final byte IDENTIFIER = 3;
+    static final byte SYMBOL = 4;
+
+    private final String _input;
+    private int _pos = 0;
+
+    byte type;
+    String text;
+    int start;
+
+    ExpressionTokenizer(final String input) {
+        this._input = input;
+        next();
+    }
+
+    final boolean is(final String symbol) {
+        return type == SYMBOL && text.equals(symbol);
+    }
+
+    final void next() {
+        while (_pos < _input.length() && isWhitespace(_input.charAt(_pos))) {
+            _pos++;
+        }
+        start = _pos;
+        if (_pos >= _input.length()) {
+            type = END;
+            text = null;
+            return;
+        }
+        final char ch = _input.charAt(_pos);
+        if (isDigit(ch) || (ch == '.' && _pos + 1 < _input.length() && isDigit(_input.charAt(_pos + 1)))) {
+            while (_pos < _input.length() && (isDigit(_input.charAt(_pos)) || _input.charAt(_pos) == '.')) {
+                _pos++;
+            }
+            if (_pos < _input.length() && (_input.charAt(_pos) == 'e' || _input.charAt(_pos) == 'E')) {
+                _pos++;
+                if (_pos < _input.length() && (_input.charAt(_pos) == '-' || _input.charAt(_pos) == '+')) {
+                    _pos++;
+                }
+                while (_pos < _input.length() && isDigit(_input.charAt(_pos))) {
+                    _pos++;
+                }
+            }
+            type = NUMBER;
+            text = _input.substring(start, _pos);
+        } else if (ch == '\'' || ch == '"') {
+            final StringBuilder builder = new StringBuilder();
+            _pos++;
+            while (_pos < _input.length() && _input.charAt(_pos) != ch) {
+                char current = _input.charAt(_pos);
+                if (current == '\\' && _pos + 1 < _input.length()) {
+                    _pos++;
+                    current = _input.charAt(_pos);
+                    if (current == 'n') {
+                        current = '\n';
+                    } else if (current == 't') {
+                        current = '\t';
+                    }
+                }
+                builder.append(current);
+                _pos++;
+            }
+            if (_pos >= _input.length()) {
+                throw new RuntimeException("Unterminated string at position " + start);
+            }
+            _pos++;
+            type = STRING;
+            text = builder.toString();
+        } else if (isIdentifierStart(ch)) {
+            while (_pos < _input.length() && (isIdentifierStart(_input.charAt(_pos)) || isDigit(_input.charAt(_pos)))) {
+                _pos++;
+            }
+            type = IDENTIFIER;
+            text = _input.substring(start, _pos);
+        } else {
+            type = SYMBOL;
+            if (startsWith("===") || startsWith("!==")) {
+                _pos += 3;
+            } else if (startsWith("==") || startsWith("!=") || startsWith("<=") || startsWith(">=") || startsWith("&&") || startsWith("||")) {
+                _pos += 2;
+            } else if ("+-*/%<>!?:.,;()[]".indexOf(ch) != -1) {
+                _pos++;
+            } else {
+                throw new RuntimeException("Unexpected character '" + ch + "' at position " + start);
+            }
+            text = _input.substring(start, _pos);
+        }
+    }
+
+    private boolean startsWith(final String symbol) {
+        return _input.startsWith(symbol, _pos);
+    }
+
+    /**
+     * @native ts
+     * var cc = c.charCodeAt(0);
+     * return cc >= 0x30 && cc <= 0x39;
+     */
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @native ts
+     * var cc = c.charCodeAt(0);
+     * return ( cc >= 0x41 && cc <= 0x5A ) || ( cc >= 0x61 && cc <= 0x7A ) || cc == 0x5F || cc == 0x24;
+     */
+    private static boolean isIdentifierStart(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    /**
+     * @native ts
+     * var cc = c.charCodeAt(0);
+     * return ( cc >= 0x0009 && cc <= 0x000D ) || ( cc == 0x0020 );
+     */
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+}
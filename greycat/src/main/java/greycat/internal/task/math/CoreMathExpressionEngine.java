@@ -23,18 +23,44 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CoreMathExpressionEngine implements MathExpressionEngine {
 
     static final char decimalSeparator = '.';
     static final char minusSign = '-';
+    /**
+     * Maximum number of parsed expressions kept in the cache, which is cleared once reached.
+     */
+    static final int MAX_CACHED = 1024;
+
+    private static final Map<String, MathExpressionEngine> _cache = new ConcurrentHashMap<String, MathExpressionEngine>();
+
     private final MathToken[] _cacheAST;
 
     private CoreMathExpressionEngine(String expression) {
         _cacheAST = buildAST(shuntingYard(expression));
     }
 
-    public static synchronized MathExpressionEngine parse(String p_expression) {
+    /**
+     * Parses an expression, or returns the engine already parsed for it: engines are stateless once built, and safely shared.
+     *
+     * @param p_expression math expression
+     * @return the engine evaluating the expression
+     */
+    public static MathExpressionEngine parse(String p_expression) {
+        MathExpressionEngine engine = _cache.get(p_expression);
+        if (engine == null) {
+            engine = build(p_expression);
+            if (_cache.size() >= MAX_CACHED) {
+                _cache.clear();
+            }
+            _cache.put(p_expression, engine);
+        }
+        return engine;
+    }
+
+    private static synchronized MathExpressionEngine build(String p_expression) {
         return new CoreMathExpressionEngine(p_expression);
     }
 
@@ -149,4 +149,15 @@ public interface Resolver {
 
     void batchInsert(Node target, long[] times, double[] values);
 
+    /**
+     * Inserts timepoints of double attributes of a node in one call, from columns of values.
+     * Values of a NodeValue appended after its last timepoint are copied in bulk into its time trees.
+     *
+     * @param target     the node to update
+     * @param times      timepoints to insert, sorted in ascending order
+     * @param attributes hashes of the attributes to set
+     * @param values     one column per attribute, with one value per timepoint
+     */
+    void batchInsertAttributes(Node target, long[] times, int[] attributes, double[][] values);
+
 }
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.scheduler;
+
+import greycat.plugin.Job;
+import greycat.plugin.Scheduler;
+import greycat.plugin.SchedulerAffinity;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler running every job on its own virtual thread, so that jobs blocked on the I/O of a storage do not hold a platform thread.
+ * Thousands of concurrent lookups can then wait for {@link greycat.plugin.Storage#get} without starving the other jobs.
+ * <p>
+ * Virtual threads are resolved at runtime, as GreyCat targets Java 8: on older JVMs the scheduler falls back to a bounded pool of platform threads.
+ * Virtual threads are mounted on the carrier pool of the JVM, which is shared by the whole process and is therefore not configured here:
+ * its size is set at launch with {@code -Djdk.virtualThreadScheduler.parallelism=<n>} (and {@code -Djdk.virtualThreadScheduler.maxPoolSize=<n>}).
+ * <p>
+ * {@link SchedulerAffinity#SAME_THREAD} jobs dispatched from a job of this scheduler are trampolined on the same thread,
+ * any other affinity starts a new thread.
+ *
+ * @ignore ts
+ */
+public class VirtualThreadScheduler implements Scheduler {
+
+    private static final int DEFAULT_FALLBACK_THREADS = 256;
+
+    private final int _fallbackThreads;
+    private final ThreadLocal<Trampoline> _trampolines = new ThreadLocal<Trampoline>();
+    private ThreadFactory _factory = null;
+    private ExecutorService _fallback = null;
+
+    public VirtualThreadScheduler() {
+        this(DEFAULT_FALLBACK_THREADS);
+    }
+
+    /**
+     * @param fallbackThreads maximum number of platform threads used when virtual threads are not supported, jobs beyond it wait in a queue
+     */
+    public VirtualThreadScheduler(final int fallbackThreads) {
+        if (fallbackThreads < 1) {
+            throw new RuntimeException("Bad API usage: fallbackThreads must be positive");
+        }
+        this._fallbackThreads = fallbackThreads;
+    }
+
+    @Override
+    public void dispatch(final byte affinity, final Job job) {
+        if (affinity == SchedulerAffinity.SAME_THREAD) {
+            final Trampoline trampoline = _trampolines.get();
+            if (trampoline != null) {
+                trampoline.run(job);
+                return;
+            }
+        }
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                final Trampoline trampoline = new Trampoline();
+                _trampolines.set(trampoline);
+                try {
+                    trampoline.run(job);
+                } finally {
+                    _trampolines.remove();
+                }
+            }
+        };
+        if (_fallback != null) {
+            _fallback.execute(task);
+        } else {
+            _factory.newThread(task).start();
+        }
+    }
+
+    @Override
+    public void start() {
+        _factory = virtualThreadFactory();
+        if (_factory == null) {
+            final AtomicInteger counter = new AtomicInteger(0);
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(_fallbackThreads, _fallbackThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "greycat-blocking-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            _fallback = pool;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (_fallback != null) {
+            _fallback.shutdown();
+            _fallback = null;
+        }
+        _factory = null;
+    }
+
+    /**
+     * @return the number of platform threads running the jobs: the carriers of the JVM, or the fallback pool when virtual threads are not supported
+     */
+    @Override
+    public int workers() {
+        if (_fallback != null) {
+            return _fallbackThreads;
+        }
+        final String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (parallelism != null) {
+            try {
+                final int carriers = Integer.parseInt(parallelism.trim());
+                if (carriers > 0) {
+                    return carriers;
+                }
+            } catch (NumberFormatException e) {
+                //the JVM rejects it as well and keeps its default
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return true if jobs run on virtual threads, false if the JVM does not support them and platform threads are used instead
+     */
+    public final boolean isVirtual() {
+        return _factory != null;
+    }
+
+    /**
+     * Resolves Thread.ofVirtual().factory(), available from Java 21.
+     *
+     * @return the factory of virtual threads, null if not supported by the running JVM
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object named = builderClass.getMethod("name", String.class, long.class).invoke(builder, "greycat-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(named);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the jobs dispatched with {@link SchedulerAffinity#SAME_THREAD} after the one currently running, without growing the stack.
+     * Only accessed by its own thread.
+     */
+    private static final class Trampoline {
+
+        private final JobQueue _queue = new JobQueue();
+        private int _wip = 0;
+
+        void run(final Job job) {
+            _queue.add(job);
+            if (_wip++ == 0) {
+                do {
+                    final Job polled = _queue.poll();
+                    try {
+                        polled.run();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                } while (--_wip > 0);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.scheduler;
+
+import greycat.plugin.Job;
+import greycat.plugin.Scheduler;
+import greycat.plugin.SchedulerAffinity;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scheduler where every worker owns a deque of jobs instead of sharing a single queue.
+ * <p>
+ * Jobs dispatched by a worker are pushed on the head of its own deque and popped back in LIFO order, which keeps the data they touch hot.
+ * Jobs dispatched from outside of the pool are injected in a shared FIFO queue.
+ * An idle worker first polls its own deque, then the shared queue, and finally steals the oldest jobs from the tail of the deques of its peers.
+ * Workers without any job to run are parked, and woken up on dispatch.
+ * <p>
+ * Affinities are honored as follows:
+ * {@link SchedulerAffinity#SAME_THREAD} runs the job on the calling worker, after the job currently running,
+ * {@link SchedulerAffinity#ANY_LOCAL_THREAD} pushes the job on the deque of the calling worker, from which peers can steal it,
+ * {@link SchedulerAffinity#OTHER_LOCAL_THREAD} pushes the job on the deque of another worker.
+ *
+ * @ignore ts
+ */
+public class WorkStealingScheduler implements Scheduler {
+
+    /**
+     * Maximum time a parked worker waits before checking again for jobs, in nanoseconds.
+     */
+    private static final long PARK_TIMEOUT = 10000000;
+
+    private final int _nbWorkers;
+    private final Queue<Job> _submissions = new ConcurrentLinkedQueue<Job>();
+    private final Queue<Worker> _idleWorkers = new ConcurrentLinkedQueue<Worker>();
+    private final AtomicInteger _nextVictim = new AtomicInteger(0);
+    private volatile Worker[] _workers = null;
+
+    public WorkStealingScheduler() {
+        this(-1);
+    }
+
+    /**
+     * @param workers number of workers, -1 to use the number of available processors
+     */
+    public WorkStealingScheduler(final int workers) {
+        this._nbWorkers = workers;
+    }
+
+    @Override
+    public void dispatch(final byte affinity, final Job job) {
+        final Worker[] workers = _workers;
+        final Thread currentThread = Thread.currentThread();
+        Worker current = null;
+        if (currentThread instanceof Worker && ((Worker) currentThread).scheduler() == this) {
+            current = (Worker) currentThread;
+        }
+        if (current == null || workers == null) {
+            _submissions.add(job);
+            signal();
+            return;
+        }
+        switch (affinity) {
+            case SchedulerAffinity.SAME_THREAD:
+                current.runLocally(job);
+                break;
+            case SchedulerAffinity.OTHER_LOCAL_THREAD:
+                if (workers.length == 1) {
+                    current.push(job);
+                } else {
+                    workers[(current.id() + 1 + (_nextVictim.getAndIncrement() & Integer.MAX_VALUE) % (workers.length - 1)) % workers.length].push(job);
+                }
+                signal();
+                break;
+            default:
+                current.push(job);
+                signal();
+                break;
+        }
+    }
+
+    @Override
+    public void start() {
+        int nbcore = this._nbWorkers;
+        if (nbcore == -1) {
+            nbcore = Runtime.getRuntime().availableProcessors();
+        }
+        final Worker[] workers = new Worker[nbcore];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+        }
+        _workers = workers;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        final Worker[] workers = _workers;
+        if (workers != null) {
+            _workers = null;
+            for (int i = 0; i < workers.length; i++) {
+                workers[i]._running = false;
+                LockSupport.unpark(workers[i]);
+            }
+        }
+    }
+
+    @Override
+    public int workers() {
+        final Worker[] workers = _workers;
+        if (workers == null) {
+            return 0;
+        }
+        return workers.length;
+    }
+
+    /**
+     * Wakes up one parked worker, if any.
+     */
+    private void signal() {
+        Worker idle = _idleWorkers.poll();
+        while (idle != null) {
+            if (idle._idle.compareAndSet(true, false)) {
+                LockSupport.unpark(idle);
+                return;
+            }
+            //the worker already woke up by itself
+            idle = _idleWorkers.poll();
+        }
+    }
+
+    private final class Worker extends Thread {
+
+        private final int _id;
+        private final ConcurrentLinkedDeque<Job> _deque = new ConcurrentLinkedDeque<Job>();
+        private final AtomicBoolean _idle = new AtomicBoolean(false);
+        private final JobQueue _localQueue = new JobQueue();
+        private final AtomicInteger _wip = new AtomicInteger();
+        private volatile boolean _running = true;
+
+        Worker(final int id) {
+            this._id = id;
+            setName("greycat-worker-" + id);
+            setDaemon(false);
+        }
+
+        int id() {
+            return _id;
+        }
+
+        WorkStealingScheduler scheduler() {
+            return WorkStealingScheduler.this;
+        }
+
+        void push(final Job job) {
+            _deque.addFirst(job);
+        }
+
+        void runLocally(final Job job) {
+            _localQueue.add(job);
+            if (_wip.getAndIncrement() == 0) {
+                do {
+                    final Job polled = _localQueue.poll();
+                    if (polled != null) {
+                        execute(polled);
+                    }
+                } while (_wip.decrementAndGet() > 0);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (_running) {
+                Job job = find();
+                if (job == null) {
+                    if (_idle.compareAndSet(false, true)) {
+                        _idleWorkers.add(this);
+                    }
+                    //check again, a job may have been dispatched before this worker was registered as idle
+                    job = find();
+                    if (job == null) {
+                        LockSupport.parkNanos(this, PARK_TIMEOUT);
+                        continue;
+                    }
+                }
+                if (_idle.get()) {
+                    //left in the idle queue, that entry is now ignored by signal
+                    _idle.set(false);
+                }
+                runLocally(job);
+            }
+        }
+
+        private Job find() {
+            Job job = _deque.pollFirst();
+            if (job != null) {
+                return job;
+            }
+            job = _submissions.poll();
+            if (job != null) {
+                return job;
+            }
+            final Worker[] workers = _workers;
+            if (workers == null) {
+                return null;
+            }
+            for (int i = 1; i < workers.length; i++) {
+                job = workers[(_id + i) % workers.length]._deque.pollLast();
+                if (job != null) {
+                    return job;
+                }
+            }
+            return null;
+        }
+
+        private void execute(final Job job) {
+            try {
+                job.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.utility;
+
+import greycat.Constants;
+import greycat.struct.Buffer;
+
+/**
+ * Compact binary encoding of chunks, an alternative to the {@link Base64} text encoding.
+ * <p>
+ * A binary payload starts with a two bytes header: {@link #MARKER}, which never starts a Base64 payload, followed by the format version.
+ * Longs and ints are zig-zag varints, doubles are IEEE 754 values written as varints with reversed bytes, so that values with a short mantissa take few bytes,
+ * or as their 8 raw bytes after a one byte tag when the varint would be longer, and strings are length prefixed UTF-8 bytes.
+ * Version 1 payloads, where every double is a varint, remain readable.
+ * Payloads are stored within streams split on {@link Constants#BUFFER_SEP}, this byte is therefore escaped, as well as {@link #ESCAPE} itself.
+ * Payloads are read back through a {@link BinaryReader}.
+ * <p>
+ * Numbers of the TypeScript version are doubles: varints are computed 7 bits at a time with arithmetic instead of 64-bit shifts,
+ * which encodes the same bytes for all integers within 2^53, and doubles go through a {@code DataView}.
+ */
+public class BinaryFormat {
+
+    /**
+     * 0xF1, written as a signed literal to read the same once transpiled.
+     */
+    public static final byte MARKER = -15;
+
+    public static final byte VERSION = 2;
+
+    /**
+     * 0xF2, written as a signed literal to read the same once transpiled.
+     */
+    public static final byte ESCAPE = -14;
+
+    static final byte ESCAPE_MASK = (byte) 0x20;
+
+    /**
+     * @param buffer payload of a chunk
+     * @return true if the payload starts with a binary header
+     */
+    public static boolean isBinary(final Buffer buffer) {
+        return buffer != null && buffer.length() > 1 && buffer.read(0) == MARKER;
+    }
+
+    public static void writeHeader(final Buffer buffer) {
+        buffer.write(MARKER);
+        buffer.write(VERSION);
+    }
+
+    public static void writeByte(final Buffer buffer, final byte b) {
+        if (b == Constants.BUFFER_SEP || b == ESCAPE) {
+            buffer.write(ESCAPE);
+            buffer.write((byte) (b ^ ESCAPE_MASK));
+        } else {
+            buffer.write(b);
+        }
+    }
+
+    /**
+     * Writes a non negative long on 1 to 10 bytes, 7 bits at a time.
+     * {@native ts
+     * var remaining = value;
+     * while (remaining > 0x7F) {
+     * BinaryFormat.writeByte(buffer, (((remaining % 128) | 0x80) << 24) >> 24);
+     * remaining = Math.floor(remaining / 128);
+     * }
+     * BinaryFormat.writeByte(buffer, remaining);
+     * }
+     */
+    public static void writeUnsignedVarLong(final Buffer buffer, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            writeByte(buffer, (byte) ((remaining & 0x7F) | 0x80));
+            remaining = remaining >>> 7;
+        }
+        writeByte(buffer, (byte) remaining);
+    }
+
+    /**
+     * Writes a long as a zig-zag varint, small negative values are therefore encoded on few bytes as well.
+     * {@native ts
+     * var half = value;
+     * var sign = 0;
+     * if (value < 0) {
+     * half = -value - 1;
+     * sign = 1;
+     * }
+     * var first = (half % 64) * 2 + sign;
+     * var remaining = Math.floor(half / 64);
+     * if (remaining > 0) {
+     * BinaryFormat.writeByte(buffer, ((first | 0x80) << 24) >> 24);
+     * BinaryFormat.writeUnsignedVarLong(buffer, remaining);
+     * } else {
+     * BinaryFormat.writeByte(buffer, first);
+     * }
+     * }
+     */
+    public static void writeVarLong(final Buffer buffer, final long value) {
+        writeUnsignedVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    public static void writeVarInt(final Buffer buffer, final int value) {
+        writeVarLong(buffer, value);
+    }
+
+    /**
+     * Writes a double on 1 to 9 bytes.
+     * The reversed bits are shifted left by one and written as a varint when they fit on 8 bytes this way,
+     * otherwise, typically for measured values with a full mantissa, the odd tag 1 is followed by the 8 big-endian bytes of the value.
+     * {@native ts
+     * var view = new DataView(new ArrayBuffer(8));
+     * view.setFloat64(0, value);
+     * var lo = view.getUint32(0, true);
+     * var hi = view.getUint32(4, true);
+     * if ((hi >>> 23) != 0) {
+     * BinaryFormat.writeByte(buffer, 1);
+     * for (var i = 0; i < 8; i++) {
+     * BinaryFormat.writeByte(buffer, view.getInt8(i));
+     * }
+     * return;
+     * }
+     * hi = ((hi << 1) | (lo >>> 31)) >>> 0;
+     * lo = (lo << 1) >>> 0;
+     * while (hi != 0 || lo > 0x7F) {
+     * BinaryFormat.writeByte(buffer, (((lo & 0x7F) | 0x80) << 24) >> 24);
+     * lo = ((lo >>> 7) | (hi << 25)) >>> 0;
+     * hi = hi >>> 7;
+     * }
+     * BinaryFormat.writeByte(buffer, lo);
+     * }
+     */
+    public static void writeDouble(final Buffer buffer, final double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final long reversed = Long.reverseBytes(bits);
+        if ((reversed >>> 55) != 0) {
+            writeByte(buffer, (byte) 1);
+            for (int shift = 56; shift >= 0; shift = shift - 8) {
+                writeByte(buffer, (byte) (bits >>> shift));
+            }
+        } else {
+            writeUnsignedVarLong(buffer, reversed << 1);
+        }
+    }
+
+    public static void writeBytes(final Buffer buffer, final byte[] bytes) {
+        writeUnsignedVarLong(buffer, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            writeByte(buffer, bytes[i]);
+        }
+    }
+
+    /**
+     * Copies a section of a buffer as length prefixed bytes, used to embed a structure saved with the text encoding.
+     */
+    public static void writeSection(final Buffer buffer, final Buffer source, final long begin, final long end) {
+        writeUnsignedVarLong(buffer, end - begin);
+        for (long i = begin; i < end; i++) {
+            writeByte(buffer, source.read(i));
+        }
+    }
+
+    /**
+     * {@native ts
+     * var utf8 = unescape(encodeURIComponent(value));
+     * BinaryFormat.writeUnsignedVarLong(buffer, utf8.length);
+     * for (var i = 0; i < utf8.length; i++) {
+     * BinaryFormat.writeByte(buffer, (utf8.charCodeAt(i) << 24) >> 24);
+     * }
+     * }
+     */
+    public static void writeString(final Buffer buffer, final String value) {
+        writeBytes(buffer, value.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.utility;
+
+import greycat.struct.Buffer;
+
+/**
+ * Sequential reader of a payload written with {@link BinaryFormat}.
+ */
+public class BinaryReader {
+
+    private final Buffer _buffer;
+    private final byte _version;
+    private final long _end;
+    private long _cursor;
+
+    /**
+     * @param buffer payload starting with a binary header
+     */
+    public BinaryReader(final Buffer buffer) {
+        if (!BinaryFormat.isBinary(buffer)) {
+            throw new RuntimeException("Bad API usage: payload is not in binary format");
+        }
+        final byte version = buffer.read(1);
+        if (version < 1 || version > BinaryFormat.VERSION) {
+            throw new RuntimeException("Unsupported binary chunk format version " + version + ", latest known is " + BinaryFormat.VERSION);
+        }
+        this._buffer = buffer;
+        this._version = version;
+        this._end = buffer.length();
+        this._cursor = 2;
+    }
+
+    public final boolean hasNext() {
+        return _cursor < _end;
+    }
+
+    public final byte readByte() {
+        final byte b = _buffer.read(_cursor);
+        _cursor++;
+        if (b == BinaryFormat.ESCAPE) {
+            final byte escaped = _buffer.read(_cursor);
+            _cursor++;
+            return (byte) (escaped ^ BinaryFormat.ESCAPE_MASK);
+        }
+        return b;
+    }
+
+    /**
+     * {@native ts
+     * var result = 0;
+     * var factor = 1;
+     * var b;
+     * do {
+     * b = this.readByte();
+     * result = result + (b & 0x7F) * factor;
+     * factor = factor * 128;
+     * } while ((b & 0x80) != 0);
+     * return result;
+     * }
+     */
+    public final long readUnsignedVarLong() {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = readByte();
+            result = result | ((long) (b & 0x7F) << shift);
+            shift = shift + 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * {@native ts
+     * var b = this.readByte();
+     * var half = (b & 0x7F) >> 1;
+     * if ((b & 0x80) != 0) {
+     * half = half + this.readUnsignedVarLong() * 64;
+     * }
+     * if ((b & 1) != 0) {
+     * return -half - 1;
+     * }
+     * return half;
+     * }
+     */
+    public final long readVarLong() {
+        final long raw = readUnsignedVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public final int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    /**
+     * {@native ts
+     * var view = new DataView(new ArrayBuffer(8));
+     * var lo = 0;
+     * var hi = 0;
+     * var shift = 0;
+     * var b;
+     * do {
+     * b = this.readByte();
+     * var group = b & 0x7F;
+     * if (shift < 28) {
+     * lo = lo | (group << shift);
+     * } else if (shift == 28) {
+     * lo = lo | (group << 28);
+     * hi = hi | (group >>> 4);
+     * } else {
+     * hi = hi | (group << (shift - 32));
+     * }
+     * shift = shift + 7;
+     * } while ((b & 0x80) != 0);
+     * if (this._version > 1) {
+     * if ((lo & 1) != 0) {
+     * for (var i = 0; i < 8; i++) {
+     * view.setInt8(i, this.readByte());
+     * }
+     * return view.getFloat64(0);
+     * }
+     * lo = ((lo >>> 1) | (hi << 31)) >>> 0;
+     * hi = hi >>> 1;
+     * }
+     * view.setUint32(0, lo >>> 0, true);
+     * view.setUint32(4, hi >>> 0, true);
+     * return view.getFloat64(0);
+     * }
+     */
+    public final double readDouble() {
+        final long raw = readUnsignedVarLong();
+        if (_version == 1) {
+            return Double.longBitsToDouble(Long.reverseBytes(raw));
+        }
+        if ((raw & 1) == 0) {
+            return Double.longBitsToDouble(Long.reverseBytes(raw >>> 1));
+        }
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (readByte() & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public final byte[] readBytes() {
+        final byte[] result = new byte[(int) readUnsignedVarLong()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = readByte();
+        }
+        return result;
+    }
+
+    /**
+     * {@native ts
+     * var bytes = this.readBytes();
+     * var utf8 = '';
+     * for (var i = 0; i < bytes.length; i++) {
+     * utf8 += String.fromCharCode(bytes[i] & 0xFF);
+     * }
+     * return decodeURIComponent(escape(utf8));
+     * }
+     */
+    public final String readString() {
+        return new String(readBytes(), java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+}
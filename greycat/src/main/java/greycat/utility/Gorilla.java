@@ -0,0 +1,364 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.utility;
+
+import greycat.struct.Buffer;
+
+/**
+ * Compression of time series, as described for the Gorilla time series database.
+ * <p>
+ * Timestamps are written as delta of deltas, in variable size buckets: a regular sampling costs one bit per point.
+ * Values are xored with the previous one, only the meaningful bits of the result are written: a repeated value costs one bit.
+ * The bit stream is written as bytes through {@link BinaryFormat}, and is therefore safe to store in a chunk stream.
+ * <p>
+ * The TypeScript version handles 64-bit words as pairs of unsigned 32-bit halves, and writes the same bit stream.
+ * {@native ts
+ * public static encode(buffer: greycat.struct.Buffer, times: Float64Array, values: Float64Array, size: number): void {
+ * if (size == 0) {
+ * return;
+ * }
+ * BinaryFormat.writeVarLong(buffer, times[0]);
+ * BinaryFormat.writeDouble(buffer, values[0]);
+ * var bytes: number[] = [];
+ * var nbBits = 0;
+ * var write = function (hi: number, lo: number, length: number) {
+ * for (var k = length - 1; k >= 0; k--) {
+ * var bit = (k >= 32 ? (hi >>> (k - 32)) : (lo >>> k)) & 1;
+ * if ((nbBits & 7) == 0) {
+ * bytes.push(0);
+ * }
+ * if (bit == 1) {
+ * bytes[nbBits >>> 3] = bytes[nbBits >>> 3] | (1 << (7 - (nbBits & 7)));
+ * }
+ * nbBits++;
+ * }
+ * };
+ * var view = new DataView(new ArrayBuffer(8));
+ * view.setFloat64(0, values[0]);
+ * var previousHi = view.getUint32(0);
+ * var previousLo = view.getUint32(4);
+ * var previousTime = times[0];
+ * var previousDelta = 0;
+ * var previousLeading = -1;
+ * var previousTrailing = 0;
+ * for (var i = 1; i < size; i++) {
+ * var delta = times[i] - previousTime;
+ * var deltaOfDelta = delta - previousDelta;
+ * if (deltaOfDelta == 0) {
+ * write(0, 0, 1);
+ * } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+ * write(0, 0x2, 2);
+ * write(0, deltaOfDelta + 63, 7);
+ * } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+ * write(0, 0x6, 3);
+ * write(0, deltaOfDelta + 255, 9);
+ * } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+ * write(0, 0xE, 4);
+ * write(0, deltaOfDelta + 2047, 12);
+ * } else {
+ * write(0, 0xF, 4);
+ * write(Math.floor(deltaOfDelta / 4294967296) >>> 0, deltaOfDelta >>> 0, 64);
+ * }
+ * previousDelta = delta;
+ * previousTime = times[i];
+ * view.setFloat64(0, values[i]);
+ * var hi = view.getUint32(0);
+ * var lo = view.getUint32(4);
+ * var xorHi = (hi ^ previousHi) >>> 0;
+ * var xorLo = (lo ^ previousLo) >>> 0;
+ * if (xorHi == 0 && xorLo == 0) {
+ * write(0, 0, 1);
+ * } else {
+ * var leading = xorHi != 0 ? Math.clz32(xorHi) : 32 + Math.clz32(xorLo);
+ * var trailing = xorLo != 0 ? 31 - Math.clz32(xorLo & -xorLo) : 63 - Math.clz32(xorHi & -xorHi);
+ * if (leading > 31) {
+ * leading = 31;
+ * }
+ * var shift = trailing;
+ * if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+ * shift = previousTrailing;
+ * write(0, 0x2, 2);
+ * } else {
+ * write(0, 0x3, 2);
+ * write(0, leading, 5);
+ * write(0, 64 - leading - trailing - 1, 6);
+ * previousLeading = leading;
+ * previousTrailing = trailing;
+ * }
+ * if (shift >= 32) {
+ * write(0, xorHi >>> (shift - 32), 64 - previousLeading - previousTrailing);
+ * } else if (shift > 0) {
+ * write(xorHi >>> shift, ((xorLo >>> shift) | (xorHi << (32 - shift))) >>> 0, 64 - previousLeading - previousTrailing);
+ * } else {
+ * write(xorHi, xorLo, 64 - previousLeading - previousTrailing);
+ * }
+ * }
+ * previousHi = hi;
+ * previousLo = lo;
+ * }
+ * var length = (nbBits + 7) >>> 3;
+ * BinaryFormat.writeUnsignedVarLong(buffer, length);
+ * for (var j = 0; j < length; j++) {
+ * BinaryFormat.writeByte(buffer, (bytes[j] << 24) >> 24);
+ * }
+ * }
+ * public static decode(reader: greycat.utility.BinaryReader, times: Float64Array, values: Float64Array, size: number): void {
+ * if (size == 0) {
+ * return;
+ * }
+ * times[0] = reader.readVarLong();
+ * values[0] = reader.readDouble();
+ * var bytes = reader.readBytes();
+ * var nbBits = 0;
+ * var readHi = 0;
+ * var readLo = 0;
+ * var read = function (length: number): number {
+ * readHi = 0;
+ * readLo = 0;
+ * for (var k = 0; k < length; k++) {
+ * var bit = (bytes[nbBits >>> 3] >>> (7 - (nbBits & 7))) & 1;
+ * readHi = ((readHi << 1) | (readLo >>> 31)) >>> 0;
+ * readLo = ((readLo << 1) | bit) >>> 0;
+ * nbBits++;
+ * }
+ * return readLo;
+ * };
+ * var view = new DataView(new ArrayBuffer(8));
+ * view.setFloat64(0, values[0]);
+ * var previousHi = view.getUint32(0);
+ * var previousLo = view.getUint32(4);
+ * var previousDelta = 0;
+ * var previousLeading = 0;
+ * var previousTrailing = 0;
+ * for (var i = 1; i < size; i++) {
+ * var deltaOfDelta;
+ * if (read(1) == 0) {
+ * deltaOfDelta = 0;
+ * } else if (read(1) == 0) {
+ * deltaOfDelta = read(7) - 63;
+ * } else if (read(1) == 0) {
+ * deltaOfDelta = read(9) - 255;
+ * } else if (read(1) == 0) {
+ * deltaOfDelta = read(12) - 2047;
+ * } else {
+ * read(64);
+ * deltaOfDelta = (readHi | 0) * 4294967296 + readLo;
+ * }
+ * previousDelta = previousDelta + deltaOfDelta;
+ * times[i] = times[i - 1] + previousDelta;
+ * if (read(1) == 1) {
+ * if (read(1) == 1) {
+ * previousLeading = read(5);
+ * previousTrailing = 64 - previousLeading - (read(6) + 1);
+ * }
+ * read(64 - previousLeading - previousTrailing);
+ * if (previousTrailing >= 32) {
+ * previousHi = (previousHi ^ (readLo << (previousTrailing - 32))) >>> 0;
+ * } else if (previousTrailing > 0) {
+ * previousHi = (previousHi ^ ((readHi << previousTrailing) | (readLo >>> (32 - previousTrailing)))) >>> 0;
+ * previousLo = (previousLo ^ (readLo << previousTrailing)) >>> 0;
+ * } else {
+ * previousHi = (previousHi ^ readHi) >>> 0;
+ * previousLo = (previousLo ^ readLo) >>> 0;
+ * }
+ * }
+ * view.setUint32(0, previousHi);
+ * view.setUint32(4, previousLo);
+ * values[i] = view.getFloat64(0);
+ * }
+ * }
+ * }
+ */
+public class Gorilla {
+
+    /**
+     * @param buffer target buffer, positioned after a {@link BinaryFormat} header
+     * @param times  timestamps of the series
+     * @param values values of the series
+     * @param size   number of points to write
+     */
+    public static void encode(final Buffer buffer, final long[] times, final double[] values, final int size) {
+        if (size == 0) {
+            return;
+        }
+        BinaryFormat.writeVarLong(buffer, times[0]);
+        BinaryFormat.writeDouble(buffer, values[0]);
+        final BitWriter writer = new BitWriter(size);
+        long previousTime = times[0];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < size; i++) {
+            //timestamp
+            final long delta = times[i] - previousTime;
+            final long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                writer.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                writer.write(0x2, 2);
+                writer.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                writer.write(0x6, 3);
+                writer.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                writer.write(0xE, 4);
+                writer.write(deltaOfDelta + 2047, 12);
+            } else {
+                writer.write(0xF, 4);
+                writer.write(deltaOfDelta, 64);
+            }
+            previousDelta = delta;
+            previousTime = times[i];
+            //value
+            final long bits = Double.doubleToRawLongBits(values[i]);
+            final long xor = bits ^ previousBits;
+            if (xor == 0) {
+                writer.write(0, 1);
+            } else {
+                int leading = Long.numberOfLeadingZeros(xor);
+                final int trailing = Long.numberOfTrailingZeros(xor);
+                if (leading > 31) {
+                    leading = 31;
+                }
+                if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+                    //fits in the previous window
+                    writer.write(0x2, 2);
+                    writer.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    final int meaningful = 64 - leading - trailing;
+                    writer.write(0x3, 2);
+                    writer.write(leading, 5);
+                    writer.write(meaningful - 1, 6);
+                    writer.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousBits = bits;
+        }
+        writer.flush(buffer);
+    }
+
+    /**
+     * @param reader reader positioned where {@link #encode(Buffer, long[], double[], int)} started to write
+     * @param times  filled with the timestamps of the series
+     * @param values filled with the values of the series
+     * @param size   number of points to read
+     */
+    public static void decode(final BinaryReader reader, final long[] times, final double[] values, final int size) {
+        if (size == 0) {
+            return;
+        }
+        times[0] = reader.readVarLong();
+        values[0] = reader.readDouble();
+        final BitReader bits = new BitReader(reader.readBytes());
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        int previousLeading = 0;
+        int previousTrailing = 0;
+        for (int i = 1; i < size; i++) {
+            //timestamp
+            long deltaOfDelta;
+            if (bits.read(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (bits.read(1) == 0) {
+                deltaOfDelta = bits.read(7) - 63;
+            } else if (bits.read(1) == 0) {
+                deltaOfDelta = bits.read(9) - 255;
+            } else if (bits.read(1) == 0) {
+                deltaOfDelta = bits.read(12) - 2047;
+            } else {
+                deltaOfDelta = bits.read(64);
+            }
+            previousDelta = previousDelta + deltaOfDelta;
+            times[i] = times[i - 1] + previousDelta;
+            //value
+            if (bits.read(1) == 1) {
+                if (bits.read(1) == 1) {
+                    previousLeading = (int) bits.read(5);
+                    final int meaningful = (int) bits.read(6) + 1;
+                    previousTrailing = 64 - previousLeading - meaningful;
+                }
+                final long xor = bits.read(64 - previousLeading - previousTrailing) << previousTrailing;
+                previousBits = previousBits ^ xor;
+            }
+            values[i] = Double.longBitsToDouble(previousBits);
+        }
+    }
+
+    private static final class BitWriter {
+
+        private byte[] _bytes;
+        private long _bits = 0;
+
+        private BitWriter(final int points) {
+            _bytes = new byte[points + 8];
+        }
+
+        private void write(final long value, final int nbBits) {
+            int remaining = nbBits;
+            while (remaining > 0) {
+                final int position = (int) (_bits >>> 3);
+                if (position == _bytes.length) {
+                    final byte[] extended = new byte[_bytes.length * 2];
+                    System.arraycopy(_bytes, 0, extended, 0, _bytes.length);
+                    _bytes = extended;
+                }
+                final int free = 8 - (int) (_bits & 7);
+                final int taken = Math.min(free, remaining);
+                final int chunk = (int) ((value >>> (remaining - taken)) & ((1 << taken) - 1));
+                _bytes[position] = (byte) (_bytes[position] | (chunk << (free - taken)));
+                _bits = _bits + taken;
+                remaining = remaining - taken;
+            }
+        }
+
+        private void flush(final Buffer buffer) {
+            final int length = (int) ((_bits + 7) >>> 3);
+            BinaryFormat.writeUnsignedVarLong(buffer, length);
+            for (int i = 0; i < length; i++) {
+                BinaryFormat.writeByte(buffer, _bytes[i]);
+            }
+        }
+    }
+
+    private static final class BitReader {
+
+        private final byte[] _bytes;
+        private long _bits = 0;
+
+        private BitReader(final byte[] bytes) {
+            _bytes = bytes;
+        }
+
+        private long read(final int nbBits) {
+            long result = 0;
+            int remaining = nbBits;
+            while (remaining > 0) {
+                final int position = (int) (_bits >>> 3);
+                final int available = 8 - (int) (_bits & 7);
+                final int taken = Math.min(available, remaining);
+                final int chunk = (_bytes[position] >>> (available - taken)) & ((1 << taken) - 1);
+                result = (result << taken) | chunk;
+                _bits = _bits + taken;
+                remaining = remaining - taken;
+            }
+            return result;
+        }
+    }
+
+}
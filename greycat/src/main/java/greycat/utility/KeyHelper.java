@@ -30,4 +30,28 @@ public class KeyHelper {
         Base64.encodeLongToBuffer(id, buffer);
     }
 
+    /**
+     * Decodes a key written by {@link #keyToBuffer(Buffer, byte, long, long, long)}.
+     *
+     * @param buffer buffer containing the key only
+     * @param keys   array receiving the type, world, time and id of the key
+     * @param offset index of the type in the array
+     */
+    public static void bufferToKey(final Buffer buffer, final long[] keys, final int offset) {
+        final long length = buffer.length();
+        long previous = 0;
+        int part = 0;
+        for (long cursor = 0; cursor <= length; cursor++) {
+            if (cursor == length || buffer.read(cursor) == Constants.KEY_SEP) {
+                if (part == 0) {
+                    keys[offset] = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                } else {
+                    keys[offset + part] = Base64.decodeToLongWithBounds(buffer, previous, cursor);
+                }
+                part++;
+                previous = cursor + 1;
+            }
+        }
+    }
+
 }
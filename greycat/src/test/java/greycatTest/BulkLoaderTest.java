@@ -0,0 +1,155 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest;
+
+import greycat.*;
+import greycat.scheduler.NoopScheduler;
+import greycatTest.internal.MockStorage;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @ignore ts
+ */
+public class BulkLoaderTest {
+
+    private static final int NODES = 20;
+    private static final int TIMES = 50;
+
+    @Test
+    public void loadTest() {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(storage).build();
+        graph.connect(null);
+        //small capacity to write several batches
+        final BulkLoader loader = graph.newBulkLoader(0, 200);
+        final long[] nodes = loader.newIds(NODES);
+        final int size = NODES * TIMES;
+        final long[] ids = new long[size];
+        final long[] times = new long[size];
+        final double[] values = new double[size];
+        final Object[] names = new Object[size];
+        //rows by descending time, to be sorted by the loader
+        for (int t = 0; t < TIMES; t++) {
+            for (int n = 0; n < NODES; n++) {
+                final int row = t * NODES + n;
+                ids[row] = nodes[n];
+                times[row] = (TIMES - t) * 10;
+                values[row] = n * 1000 + (TIMES - t);
+                if (t == TIMES - 1) {
+                    names[row] = "node_" + n;
+                }
+            }
+        }
+        final boolean[] loaded = {false};
+        loader.load(null, ids, times, new String[]{"value", "name"}, new int[]{Type.DOUBLE, Type.STRING}, new Object[]{values, names}, new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                loaded[0] = result;
+            }
+        });
+        Assert.assertTrue(loaded[0]);
+        loader.free();
+        graph.disconnect(null);
+
+        final Graph graph2 = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(storage).build();
+        graph2.connect(null);
+        final int[] checked = {0};
+        for (int n = 0; n < NODES; n++) {
+            final int finalN = n;
+            graph2.lookup(0, 255, nodes[n], new Callback<Node>() {
+                @Override
+                public void on(Node node) {
+                    Assert.assertEquals(finalN * 1000 + 25, (double) node.get("value"), 0);
+                    //set at the first timepoint only, inherited by the next ones
+                    Assert.assertEquals("node_" + finalN, node.get("name"));
+                    node.timepoints(Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME, new Callback<long[]>() {
+                        @Override
+                        public void on(long[] timepoints) {
+                            Assert.assertEquals(TIMES, timepoints.length);
+                            checked[0]++;
+                        }
+                    });
+                    node.free();
+                }
+            });
+            graph2.lookup(0, 5, nodes[n], new Callback<Node>() {
+                @Override
+                public void on(Node node) {
+                    Assert.assertNull(node);
+                    checked[0]++;
+                }
+            });
+        }
+        Assert.assertEquals(NODES * 2, checked[0]);
+        //ids of new nodes do not collide with loaded ones
+        final Node fresh = graph2.newNode(0, 0);
+        for (int n = 0; n < NODES; n++) {
+            Assert.assertNotEquals(nodes[n], fresh.id());
+        }
+        //loaded nodes can be updated as usual
+        graph2.lookup(0, 1000, nodes[0], new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                node.set("value", Type.DOUBLE, -1.0);
+                node.free();
+            }
+        });
+        graph2.lookup(0, 500, nodes[0], new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                Assert.assertEquals(50.0, (double) node.get("value"), 0);
+                checked[0]++;
+                node.free();
+            }
+        });
+        graph2.lookup(0, 2000, nodes[0], new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                Assert.assertEquals(-1.0, (double) node.get("value"), 0);
+                checked[0]++;
+                node.free();
+            }
+        });
+        Assert.assertEquals(NODES * 2 + 2, checked[0]);
+        graph2.disconnect(null);
+    }
+
+    @Test
+    public void typedTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(new MockStorage()).build();
+        graph.connect(null);
+        final BulkLoader loader = graph.newBulkLoader(0, 100);
+        final long[] nodes = loader.newIds(2);
+        loader.load("NodeIndex", new long[]{nodes[1], nodes[0], nodes[0]}, new long[]{0, 3, 3}, new String[]{"a", "b"}, new int[]{Type.INT, Type.LONG}, new Object[]{new int[]{1, 2, 3}, new Object[]{null, 4L, null}}, null);
+        loader.free();
+        final int[] checked = {0};
+        graph.lookup(0, 3, nodes[0], new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                Assert.assertEquals("NodeIndex", node.nodeTypeName());
+                //rows of the same timepoint are merged, later ones win
+                Assert.assertEquals(3, (int) node.get("a"));
+                Assert.assertEquals(4L, (long) node.get("b"));
+                checked[0]++;
+                node.free();
+            }
+        });
+        Assert.assertEquals(1, checked[0]);
+        graph.disconnect(null);
+    }
+
+}
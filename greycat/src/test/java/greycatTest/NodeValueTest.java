@@ -18,6 +18,7 @@ package greycatTest;
 import greycat.*;
 import greycat.internal.CoreNodeValue;
 import greycat.scheduler.NoopScheduler;
+import greycatTest.internal.MockStorage;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -186,4 +187,106 @@ public class NodeValueTest {
         });
     }
 
+    @Test
+    public void testBatchInsert() {
+        final MockStorage storage = new MockStorage();
+        final Graph g = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(storage).build();
+        g.connect(null);
+        final NodeValue nodeValue = (NodeValue) g.newTypedNode(0, 0, CoreNodeValue.NAME);
+        nodeValue.setValue(-1d);
+        //spans several time trees
+        final int size = 2500;
+        final long[] times = new long[size];
+        final double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = (i + 1) * 10;
+            values[i] = i * 2.0d;
+        }
+        nodeValue.batchInsert(times, values);
+        //the handle keeps its own time
+        Assert.assertEquals(-1d, nodeValue.getValue(), 0);
+        //in the past of the last timepoint, inserted one by one
+        nodeValue.batchInsert(new long[]{5, 15}, new double[]{100d, 200d});
+        final long id = nodeValue.id();
+        nodeValue.free();
+        g.save(null);
+        g.disconnect(null);
+
+        final Graph g2 = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(storage).build();
+        g2.connect(null);
+        final int[] checked = {0};
+        for (int i = 0; i < size; i = i + 7) {
+            final int finalI = i;
+            g2.lookup(0, (i + 1) * 10 + 5, id, new Callback<NodeValue>() {
+                @Override
+                public void on(NodeValue result) {
+                    if (finalI == 0) {
+                        Assert.assertEquals(200d, result.getValue(), 0);
+                    } else {
+                        Assert.assertEquals(finalI * 2.0d, result.getValue(), 0);
+                    }
+                    checked[0]++;
+                    result.free();
+                }
+            });
+        }
+        g2.lookup(0, 5, id, new Callback<NodeValue>() {
+            @Override
+            public void on(NodeValue result) {
+                Assert.assertEquals(100d, result.getValue(), 0);
+                result.timepoints(Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME, new Callback<long[]>() {
+                    @Override
+                    public void on(long[] timepoints) {
+                        Assert.assertEquals(size + 3, timepoints.length);
+                        checked[0]++;
+                    }
+                });
+                result.free();
+            }
+        });
+        Assert.assertEquals((size + 6) / 7 + 1, checked[0]);
+        g2.disconnect(null);
+    }
+
+    @Test
+    public void testGraphBatchInsert() {
+        final Graph g = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        g.connect(null);
+        final Node first = g.newNode(0, 0);
+        final NodeValue second = (NodeValue) g.newTypedNode(0, 0, CoreNodeValue.NAME);
+        final boolean[] done = {false};
+        g.batchInsert(0, new long[]{first.id(), first.id(), first.id(), 42}, new long[]{0, 10, 20, 0}, new String[]{"a", "b"}, new double[][]{{1, 2, 3, 4}, {5, 6, 7, 8}}, new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                //node 42 does not exist
+                Assert.assertFalse(result);
+                done[0] = true;
+            }
+        });
+        g.batchInsert(0, new long[]{second.id(), second.id()}, new long[]{10, 20}, new String[]{"value"}, new double[][]{{1.5, 2.5}}, null);
+        Assert.assertTrue(done[0]);
+        final int[] checked = {0};
+        g.lookup(0, 15, first.id(), new Callback<Node>() {
+            @Override
+            public void on(Node result) {
+                Assert.assertEquals(2d, (double) result.get("a"), 0);
+                Assert.assertEquals(6d, (double) result.get("b"), 0);
+                checked[0]++;
+                result.free();
+            }
+        });
+        g.lookup(0, 25, second.id(), new Callback<NodeValue>() {
+            @Override
+            public void on(NodeValue result) {
+                Assert.assertEquals(2.5d, result.getValue(), 0);
+                checked[0]++;
+                result.free();
+            }
+        });
+        Assert.assertEquals(2, checked[0]);
+        first.free();
+        second.free();
+        g.disconnect(null);
+    }
+
 }
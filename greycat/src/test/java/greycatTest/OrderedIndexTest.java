@@ -0,0 +1,279 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest;
+
+import greycat.*;
+import greycat.scheduler.NoopScheduler;
+import greycatTest.internal.MockStorage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static greycat.Tasks.newTask;
+
+public class OrderedIndexTest {
+
+    private static final int SIZE = 1000;
+
+    /**
+     * Indexes SIZE nodes whose value is a permutation of 0..SIZE-1, enough to split the trees several times.
+     */
+    private static NodeIndex fill(final Graph graph, final Map<Long, Integer> values) {
+        final NodeIndex[] result = new NodeIndex[1];
+        graph.declareIndex(0, "sensors", new Callback<NodeIndex>() {
+            @Override
+            public void on(NodeIndex index) {
+                index.declareOrderedAttributes(null, "value", "name");
+                for (int i = 0; i < SIZE; i++) {
+                    final int value = (i * 389) % SIZE;
+                    final Node node = graph.newNode(0, 0);
+                    node.set("name", Type.STRING, "sensor_" + value);
+                    node.set("value", Type.INT, value);
+                    index.update(node);
+                    values.put(node.id(), value);
+                    node.free();
+                }
+                result[0] = index;
+            }
+        }, "name");
+        return result[0];
+    }
+
+    private static void assertValues(final Map<Long, Integer> values, final long[] ids, final int first, final int step) {
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals(first + i * step, (int) values.get(ids[i]));
+        }
+    }
+
+    @Test
+    public void rangeTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        final NodeIndex index = fill(graph, values);
+
+        long[] selected = index.selectRange("value", "100", "199", 0);
+        Assert.assertEquals(100, selected.length);
+        assertValues(values, selected, 100, 1);
+
+        selected = index.selectRange("value", "990", "", 0);
+        Assert.assertEquals(10, selected.length);
+        assertValues(values, selected, 990, 1);
+
+        selected = index.selectRange("value", "", "", 3);
+        assertValues(values, selected, 0, 1);
+        Assert.assertEquals(3, selected.length);
+
+        //top-k
+        selected = index.selectRange("value", "", "", -5);
+        Assert.assertEquals(5, selected.length);
+        assertValues(values, selected, SIZE - 1, -1);
+        selected = index.selectRange("value", "", "500", -2);
+        assertValues(values, selected, 500, -1);
+
+        //exact match on the hashed attribute still works
+        Assert.assertEquals(1, index.select("sensor_42").length);
+
+        index.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void prefixTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        final NodeIndex index = fill(graph, values);
+
+        //sensor_7, sensor_70..79, sensor_700..799
+        long[] selected = index.selectPrefix("name", "sensor_7", 0);
+        Assert.assertEquals(111, selected.length);
+        Assert.assertEquals(7, (int) values.get(selected[0]));
+        Assert.assertEquals(70, (int) values.get(selected[1]));
+        Assert.assertEquals(700, (int) values.get(selected[2]));
+
+        selected = index.selectPrefix("name", "sensor_99", 0);
+        Assert.assertEquals(11, selected.length);
+        Assert.assertEquals(0, index.selectPrefix("name", "unknown", 0).length);
+
+        index.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void updateTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        final NodeIndex index = fill(graph, values);
+
+        final long[] first = index.selectRange("value", "0", "9", 0);
+        for (int i = 0; i < first.length; i++) {
+            final long id = first[i];
+            graph.lookup(0, 0, id, new Callback<Node>() {
+                @Override
+                public void on(Node node) {
+                    node.set("value", Type.INT, 5000);
+                    index.update(node);
+                    node.free();
+                }
+            });
+        }
+        Assert.assertEquals(0, index.selectRange("value", "0", "9", 0).length);
+        Assert.assertEquals(10, index.selectRange("value", "5000", "5000", 0).length);
+        Assert.assertEquals(SIZE, index.selectRange("value", "", "", 0).length);
+
+        graph.lookup(0, 0, first[0], new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                index.unindex(node);
+                node.free();
+            }
+        });
+        Assert.assertEquals(9, index.selectRange("value", "5000", "5000", 0).length);
+        Assert.assertEquals(SIZE - 1, index.selectRange("value", "", "", 0).length);
+
+        index.clear();
+        Assert.assertEquals(0, index.selectRange("value", "", "", 0).length);
+
+        index.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void orderedOnlyTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Node root = graph.newNode(0, 0);
+        final Index index = (Index) root.getOrCreate("byValue", Type.INDEX);
+        index.declareOrderedAttributes(null, "value");
+        for (int i = 0; i < 10; i++) {
+            final Node node = graph.newNode(0, 0);
+            node.set("value", Type.INT, i);
+            index.update(node);
+            node.free();
+        }
+        Assert.assertEquals(3, index.selectRange("value", "2", "4", 0).length);
+        root.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void redeclareTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        final NodeIndex index = fill(graph, values);
+        //declaring one more attribute keeps the entries of the previous ones
+        index.declareOrderedAttributes(null, "value", "name", "other");
+        final long[] selected = index.selectRange("value", "100", "199", 0);
+        Assert.assertEquals(100, selected.length);
+        assertValues(values, selected, 100, 1);
+        Assert.assertEquals(111, index.selectPrefix("name", "sensor_7", 0).length);
+        Assert.assertEquals(0, index.selectRange("other", "", "", 0).length);
+        index.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void mismatchTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        final NodeIndex index = fill(graph, values);
+        final Node node = graph.newNode(0, 0);
+        node.set("name", Type.STRING, "sensor_x");
+        node.set("value", Type.STRING, "not a number");
+        boolean rejected = false;
+        try {
+            index.update(node);
+        } catch (RuntimeException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        //nothing was indexed for the rejected node
+        Assert.assertEquals(0, index.select("sensor_x").length);
+        Assert.assertEquals(0, index.selectPrefix("name", "sensor_x", 0).length);
+        Assert.assertEquals(SIZE, index.selectRange("value", "", "", 0).length);
+        node.free();
+        index.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void persistenceTest() {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        fill(graph, values).free();
+        graph.save(null);
+        graph.disconnect(null);
+
+        final Graph reloaded = GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        reloaded.connect(null);
+        final long[][] selected = new long[1][];
+        reloaded.index(0, 0, "sensors", new Callback<NodeIndex>() {
+            @Override
+            public void on(NodeIndex index) {
+                selected[0] = index.selectRange("value", "250", "259", 0);
+                index.free();
+            }
+        });
+        Assert.assertEquals(10, selected[0].length);
+        assertValues(values, selected[0], 250, 1);
+        reloaded.disconnect(null);
+    }
+
+    @Test
+    public void taskTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Map<Long, Integer> values = new HashMap<Long, Integer>();
+        fill(graph, values).free();
+        final Object[] result = new Object[2];
+        newTask()
+                .travelInTime("0")
+                .readIndexRange("sensors", "value", "10", "", "-3")
+                .defineAsVar("top")
+                .parse("readIndexPrefix(sensors,name,sensor_12,0)", graph)
+                .execute(graph, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult res) {
+                        result[1] = res.size();
+                        res.free();
+                    }
+                });
+        Assert.assertEquals(11, result[1]);
+        newTask()
+                .travelInTime("0")
+                .readIndexRange("sensors", "value", "10", "", "-3")
+                .attribute("value")
+                .execute(graph, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult res) {
+                        result[0] = res.asArray();
+                        res.free();
+                    }
+                });
+        Assert.assertArrayEquals(new Object[]{999, 998, 997}, (Object[]) result[0]);
+        Assert.assertEquals("readIndexRange('sensors','value','10','','-3')", newTask().readIndexRange("sensors", "value", "10", "", "-3").toString());
+        graph.disconnect(null);
+    }
+
+}
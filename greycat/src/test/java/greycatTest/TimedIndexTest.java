@@ -0,0 +1,226 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest;
+
+import greycat.*;
+import greycat.scheduler.NoopScheduler;
+import greycatTest.internal.MockStorage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static greycat.Tasks.newTask;
+
+public class TimedIndexTest {
+
+    private static NodeIndex indexAt(final Graph graph, final long time) {
+        final NodeIndex[] result = new NodeIndex[1];
+        graph.index(0, time, "sensors", new Callback<NodeIndex>() {
+            @Override
+            public void on(NodeIndex index) {
+                result[0] = index;
+            }
+        });
+        return result[0];
+    }
+
+    private static void updateAt(final Graph graph, final long id, final long time, final String name) {
+        graph.lookup(0, time, id, new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                node.set("name", Type.STRING, name);
+                final NodeIndex index = indexAt(graph, time);
+                if (name == null) {
+                    index.unindex(node);
+                } else {
+                    index.update(node);
+                }
+                index.free();
+                node.free();
+            }
+        });
+    }
+
+    @Test
+    public void snapshotTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        graph.declareTimedIndex(0, 0, "sensors", null, "name");
+        final Node n1 = graph.newNode(0, 0);
+        final Node n2 = graph.newNode(0, 0);
+        updateAt(graph, n1.id(), 0, "a");
+        updateAt(graph, n2.id(), 0, "b");
+        updateAt(graph, n1.id(), 10, "c");
+        updateAt(graph, n2.id(), 20, null);
+        //update in the past of the current value
+        updateAt(graph, n2.id(), 5, "d");
+
+        NodeIndex index = indexAt(graph, 0);
+        Assert.assertEquals(2, index.size());
+        Assert.assertArrayEquals(new long[]{n1.id()}, index.select("a"));
+        Assert.assertArrayEquals(new long[]{n2.id()}, index.select("b"));
+        Assert.assertEquals(0, index.select("c").length);
+        index.free();
+
+        index = indexAt(graph, 7);
+        Assert.assertArrayEquals(new long[]{n1.id()}, index.select("a"));
+        Assert.assertArrayEquals(new long[]{n2.id()}, index.select("d"));
+        Assert.assertEquals(0, index.select("b").length);
+        index.free();
+
+        index = indexAt(graph, 15);
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(0, index.select("a").length);
+        Assert.assertArrayEquals(new long[]{n1.id()}, index.select("c"));
+        Assert.assertArrayEquals(new long[]{n2.id()}, index.select("d"));
+        final int[] found = {0};
+        index.findFrom(new Callback<Node[]>() {
+            @Override
+            public void on(Node[] result) {
+                Assert.assertEquals(1, result.length);
+                Assert.assertEquals("c", result[0].get("name"));
+                found[0]++;
+            }
+        }, "c");
+        Assert.assertEquals(1, found[0]);
+        index.free();
+
+        index = indexAt(graph, 25);
+        Assert.assertArrayEquals(new long[]{n1.id()}, index.all());
+        Assert.assertEquals(0, index.select("d").length);
+        index.clear();
+        index.free();
+
+        index = indexAt(graph, 30);
+        Assert.assertEquals(0, index.size());
+        index.free();
+        index = indexAt(graph, 15);
+        Assert.assertEquals(2, index.size());
+        index.free();
+
+        n1.free();
+        n2.free();
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void currentTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        graph.declareTimedIndex(0, 0, "sensors", null, "name");
+        final long[] ids = new long[3];
+        for (int i = 0; i < ids.length; i++) {
+            final Node node = graph.newNode(0, 0);
+            ids[i] = node.id();
+            node.free();
+        }
+        for (int t = 0; t < 50; t++) {
+            for (int i = 0; i < ids.length; i++) {
+                updateAt(graph, ids[i], t, "v" + i + "_" + t);
+            }
+        }
+        updateAt(graph, ids[1], 60, null);
+        //closes the history of the last node before the end of its current value
+        updateAt(graph, ids[2], 55, null);
+
+        NodeIndex index = indexAt(graph, 100);
+        Assert.assertEquals(1, index.size());
+        Assert.assertArrayEquals(new long[]{ids[0]}, index.all());
+        index.free();
+
+        index = indexAt(graph, 57);
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(2, index.all().length);
+        index.free();
+
+        index = indexAt(graph, 20);
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(3, index.all().length);
+        Assert.assertArrayEquals(new long[]{ids[1]}, index.select("v1_20"));
+        index.free();
+
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void persistenceTest() {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(storage).build();
+        graph.connect(null);
+        graph.declareTimedIndex(0, 0, "sensors", null, "name");
+        final Node node = graph.newNode(0, 0);
+        final long id = node.id();
+        node.free();
+        for (int t = 0; t < 100; t++) {
+            updateAt(graph, id, t, "v" + t);
+        }
+        graph.disconnect(null);
+
+        final Graph graph2 = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(storage).build();
+        graph2.connect(null);
+        for (int t = 0; t < 100; t++) {
+            final NodeIndex index = indexAt(graph2, t);
+            Assert.assertEquals(1, index.size());
+            Assert.assertArrayEquals(new long[]{id}, index.select("v" + t));
+            index.free();
+        }
+        graph2.disconnect(null);
+    }
+
+    @Test
+    public void taskTest() {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final int[] sizes = new int[3];
+        newTask()
+                .travelInTime("0")
+                .declareTimedIndex("sensors", "name")
+                .createNode()
+                .setAttribute("name", Type.STRING, "first")
+                .updateIndex("sensors")
+                .travelInTime("10")
+                .setAttribute("name", Type.STRING, "second")
+                .updateIndex("sensors")
+                .readIndex("sensors", "second")
+                .thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        sizes[0] = ctx.result().size();
+                        ctx.continueTask();
+                    }
+                })
+                .travelInTime("0")
+                .readIndex("sensors", "first")
+                .thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        sizes[1] = ctx.result().size();
+                        ctx.continueTask();
+                    }
+                })
+                .readIndex("sensors", "second")
+                .thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        sizes[2] = ctx.result().size();
+                        ctx.continueTask();
+                    }
+                })
+                .execute(graph, null);
+        Assert.assertArrayEquals(new int[]{1, 1, 0}, sizes);
+        graph.disconnect(null);
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.base;
+
+import greycat.*;
+import greycat.base.StreamCursor;
+import greycat.base.StreamTaskResult;
+import greycat.scheduler.WorkStealingScheduler;
+import greycat.utility.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static greycat.Tasks.newTask;
+
+/**
+ * @ignore ts
+ */
+public class StreamTaskResultTest {
+
+    /**
+     * Stream of integers from 0 to size-1, which records the largest batch pulled at once.
+     */
+    private static class CountingStream extends StreamTaskResult<Integer> {
+
+        private final int _size;
+        int maxPulled = 0;
+        int opened = 0;
+        int closed = 0;
+
+        CountingStream(int size, int bufferSize) {
+            super(bufferSize);
+            this._size = size;
+        }
+
+        @Override
+        protected StreamCursor open() {
+            opened++;
+            return new StreamCursor() {
+                private int _next = 0;
+
+                @Override
+                public int pull(Object[] buffer) {
+                    int nb = 0;
+                    while (nb < buffer.length && _next < _size) {
+                        buffer[nb] = _next;
+                        _next++;
+                        nb++;
+                    }
+                    if (nb > maxPulled) {
+                        maxPulled = nb;
+                    }
+                    return nb;
+                }
+
+                @Override
+                public void close() {
+                    closed++;
+                }
+            };
+        }
+    }
+
+    @Test
+    public void iteratorTest() {
+        final CountingStream stream = new CountingStream(1000, 16);
+        Assert.assertEquals(-1, stream.size());
+        final TaskResultIterator it = stream.iterator();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(it.hasNext());
+            Tuple<Integer, Integer> next = it.nextWithIndex();
+            Assert.assertEquals(i, (int) next.left());
+            Assert.assertEquals(i, (int) next.right());
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertNull(it.next());
+        Assert.assertEquals(16, stream.maxPulled);
+        Assert.assertEquals(1, stream.closed);
+        //a new iteration reopens the source
+        Assert.assertEquals(1000, stream.asArray().length);
+        Assert.assertEquals(2, stream.opened);
+    }
+
+    @Test
+    public void interleavedIteratorsTest() {
+        final CountingStream stream = new CountingStream(100, 8);
+        final TaskResultIterator first = stream.iterator();
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(i, (int) (Integer) first.next());
+        }
+        //a second iteration, here through a clone, starts over without disturbing the first one
+        final TaskResult<Integer> clone = stream.clone();
+        final TaskResultIterator second = clone.iterator();
+        Assert.assertEquals(0, (int) (Integer) second.next());
+        clone.free();
+        Assert.assertEquals(1, stream.closed);
+        for (int i = 50; i < 100; i++) {
+            Assert.assertEquals(i, (int) (Integer) first.next());
+        }
+        Assert.assertNull(first.next());
+        Assert.assertEquals(2, stream.opened);
+        Assert.assertEquals(2, stream.closed);
+    }
+
+    @Test
+    public void forEachTest() {
+        final Graph graph = GraphBuilder.newBuilder().build();
+        graph.connect(null);
+        final CountingStream stream = new CountingStream(10000, 64);
+        final long[] sum = {0};
+        final int[] calls = {0};
+        newTask()
+                .forEach(newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        sum[0] += (Integer) ctx.result().get(0);
+                        calls[0]++;
+                        ctx.continueTask();
+                    }
+                }))
+                .executeWith(graph, stream, null);
+        Assert.assertEquals(10000, calls[0]);
+        Assert.assertEquals(9999L * 10000 / 2, sum[0]);
+        Assert.assertEquals(64, stream.maxPulled);
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void parallelTest() throws InterruptedException {
+        final Graph graph = GraphBuilder.newBuilder().withScheduler(new WorkStealingScheduler(4)).build();
+        graph.connect(null);
+        final AtomicInteger calls = new AtomicInteger(0);
+        final AtomicInteger sum = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(2);
+        newTask()
+                .forEachPar(newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        sum.addAndGet((Integer) ctx.result().get(0));
+                        calls.incrementAndGet();
+                        ctx.continueTask();
+                    }
+                }))
+                .executeWith(graph, new CountingStream(10000, 64), new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        latch.countDown();
+                    }
+                });
+        final Object[] mapped = new Object[1];
+        newTask()
+                .mapParBatch("100", "4", newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        final TaskResult range = ctx.result();
+                        final TaskResult negated = ctx.newResult();
+                        for (int i = 0; i < range.size(); i++) {
+                            negated.add(-((Integer) range.get(i)));
+                        }
+                        ctx.continueWith(negated);
+                    }
+                }))
+                .executeWith(graph, new CountingStream(5000, 64), new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        mapped[0] = result.asArray();
+                        latch.countDown();
+                    }
+                });
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(10000, calls.get());
+        Assert.assertEquals(9999 * 10000 / 2, sum.get());
+        final Object[] values = (Object[]) mapped[0];
+        Assert.assertEquals(5000, values.length);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(-i, (int) (Integer) values[i]);
+        }
+        graph.disconnect(null);
+    }
+
+}
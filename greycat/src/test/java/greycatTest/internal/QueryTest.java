@@ -261,6 +261,19 @@ public class QueryTest implements Resolver, Graph {
         return new CoreQuery(this, this);
     }
 
+    @Override
+    public void batchInsert(long world, long[] ids, long[] times, String[] attributes, double[][] columns, Callback<Boolean> callback) {
+
+    }
+
+    /**
+     * @ignore ts
+     */
+    @Override
+    public BulkLoader newBulkLoader(long world, int capacity) {
+        return null;
+    }
+
     @Override
     public void freeNodes(Node[] nodes) {
 
@@ -366,6 +379,11 @@ public class QueryTest implements Resolver, Graph {
 
     }
 
+    @Override
+    public void batchInsertAttributes(Node target, long[] times, int[] attributes, double[][] values) {
+
+    }
+
     @Override
     public void batchInsert(Node target, long[] times, double[] values) {
 
@@ -133,10 +133,9 @@ public abstract class AbstractEStructArrayTest {
 
 
         g.save(null);
-        g.disconnect(null);
-
         Buffer buf = g.newBuffer();
         chunk.save(buf);
+        g.disconnect(null);
 
         g = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).withStorage(mock).build();
         g.connect(null);
@@ -234,8 +233,8 @@ public abstract class AbstractEStructArrayTest {
         //final long before2 = System.currentTimeMillis();
         g.space().getOrLoadAndMark(ChunkType.STATE_CHUNK, 0, 0, 0, res -> {
             StateChunk loaded = (StateChunk) res;
-            Assert.assertEquals(loaded.getAt(0), chunk.getAt(0));
-            Assert.assertEquals(loaded.getAt(2), chunk.getAt(2));
+            Assert.assertEquals("AdditionalString", loaded.getAt(0));
+            Assert.assertEquals("AdditionalStringAfter", loaded.getAt(2));
 
             //System.out.println(loaded);
 
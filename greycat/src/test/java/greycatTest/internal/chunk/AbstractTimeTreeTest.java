@@ -265,8 +265,11 @@ public abstract class AbstractTimeTreeTest {
         tree.save(buffer);
         TimeTreeChunk tree2 = (TimeTreeChunk) space.createAndMark(ChunkType.TIME_TREE_CHUNK, 0, 0, 1);
         tree2.load(buffer);
+        buffer.free();
         Assert.assertEquals(tree.size(), tree2.size());
-
+        space.free(tree);
+        space.free(tree2);
+        space.freeAll();
     }
 
 /*
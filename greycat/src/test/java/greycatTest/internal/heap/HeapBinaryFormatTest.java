@@ -0,0 +1,162 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.*;
+import greycat.internal.heap.HeapMemoryFactory;
+import greycat.scheduler.NoopScheduler;
+import greycat.struct.LongArray;
+import greycat.struct.Relation;
+import greycat.struct.StringIntMap;
+import greycatTest.internal.MockStorage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+public class HeapBinaryFormatTest {
+
+    @Test
+    public void binaryToTextTest() {
+        final MockStorage storage = new MockStorage();
+        final long[] ids = write(storage, true);
+        check(storage, ids, false);
+        //and reversed, binary readers load text payloads
+        final MockStorage textStorage = new MockStorage();
+        final long[] textIds = write(textStorage, false);
+        check(textStorage, textIds, true);
+    }
+
+    @Test
+    public void sizeTest() {
+        final MockStorage binary = new MockStorage();
+        write(binary, true);
+        final MockStorage text = new MockStorage();
+        write(text, false);
+        Assert.assertTrue(bytes(binary) < bytes(text));
+    }
+
+    private static long bytes(final MockStorage storage) {
+        long sum = 0;
+        final Iterator<byte[]> it = storage.backend.values().iterator();
+        while (it.hasNext()) {
+            sum += it.next().length;
+        }
+        return sum;
+    }
+
+    private static Graph newGraph(final MockStorage storage, final boolean binary) {
+        final HeapMemoryFactory factory = new HeapMemoryFactory();
+        if (binary) {
+            factory.withBinaryFormat();
+        }
+        return GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).withMemoryFactory(factory).build();
+    }
+
+    private static long[] write(final MockStorage storage, final boolean binary) {
+        final Graph graph = newGraph(storage, binary);
+        final long[] ids = new long[2];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node other = graph.newNode(0, 0);
+                other.set("name", Type.STRING, "other");
+                final Node node = graph.newNode(0, 0);
+                for (int i = 0; i < 100; i++) {
+                    final int time = i * 1000;
+                    graph.lookup(0, time, node.id(), new Callback<Node>() {
+                        @Override
+                        public void on(Node timed) {
+                            timed.set("value", Type.DOUBLE, time * 0.5);
+                            timed.free();
+                        }
+                    });
+                }
+                node.set("name", Type.STRING, "héllo#");
+                node.set("flag", Type.BOOL, true);
+                node.set("count", Type.INT, -42);
+                node.set("big", Type.LONG, Constants.END_OF_TIME);
+                node.set("nothing", Type.STRING, null);
+                node.addToRelation("children", other);
+                ((LongArray) node.getOrCreate("longs", Type.LONG_ARRAY)).initWith(new long[]{1, -2, 3});
+                ((StringIntMap) node.getOrCreate("dictionary", Type.STRING_TO_INT_MAP)).put("key", 7);
+                //fork a world to fill the world order chunk
+                final long world = graph.fork(0);
+                graph.lookup(world, 0, node.id(), new Callback<Node>() {
+                    @Override
+                    public void on(Node forked) {
+                        forked.set("count", Type.INT, 43);
+                        forked.free();
+                    }
+                });
+                ids[0] = node.id();
+                ids[1] = other.id();
+                node.free();
+                other.free();
+                graph.disconnect(null);
+            }
+        });
+        return ids;
+    }
+
+    private static void check(final MockStorage storage, final long[] ids, final boolean binary) {
+        final Graph graph = newGraph(storage, binary);
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                graph.lookup(0, 0, ids[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node node) {
+                        Assert.assertEquals("héllo#", node.get("name"));
+                        Assert.assertEquals(true, node.get("flag"));
+                        Assert.assertEquals(-42, node.get("count"));
+                        Assert.assertEquals(Constants.END_OF_TIME, node.get("big"));
+                        Assert.assertNull(node.get("nothing"));
+                        Assert.assertEquals(1, ((Relation) node.get("children")).size());
+                        Assert.assertEquals(ids[1], ((Relation) node.get("children")).get(0));
+                        Assert.assertEquals(-2, ((LongArray) node.get("longs")).get(1));
+                        Assert.assertEquals(7, ((StringIntMap) node.get("dictionary")).getValue("key"));
+                        node.free();
+                    }
+                });
+                graph.lookup(0, 50500, ids[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node node) {
+                        Assert.assertEquals(25000.0, (Double) node.get("value"), 0);
+                        final long[] times = new long[1];
+                        node.timepoints(Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME, new Callback<long[]>() {
+                            @Override
+                            public void on(long[] result) {
+                                times[0] = result.length;
+                            }
+                        });
+                        Assert.assertEquals(100, times[0]);
+                        node.free();
+                    }
+                });
+                graph.lookup(1, 0, ids[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node forked) {
+                        Assert.assertEquals(43, forked.get("count"));
+                        forked.free();
+                    }
+                });
+                graph.disconnect(null);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.Type;
+import greycat.chunk.ChunkSpace;
+import greycat.chunk.ChunkType;
+import greycat.chunk.StateChunk;
+import greycat.chunk.SuperTimeTreeChunk;
+import greycat.chunk.SuperTreeWalker;
+import greycat.chunk.TimeTreeChunk;
+import greycat.chunk.WorldOrderChunk;
+import greycat.internal.heap.HeapMemoryFactory;
+import greycat.struct.Buffer;
+import greycat.struct.Relation;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeapChunkDiffTest {
+
+    @Test
+    public void timeTreeTest() {
+        timeTree(new HeapMemoryFactory());
+        timeTree(new HeapMemoryFactory().withBinaryFormat());
+    }
+
+    private void timeTree(final HeapMemoryFactory factory) {
+        final ChunkSpace space = factory.newSpace(100, -1, null, false);
+        final TimeTreeChunk tree = (TimeTreeChunk) space.createAndMark(ChunkType.TIME_TREE_CHUNK, 0, 0, 0);
+        for (long i = 0; i < 10000; i++) {
+            tree.insert(i * 10);
+        }
+        final Buffer full = factory.newBuffer();
+        tree.save(full);
+        tree.insert(100000);
+        tree.insert(5);
+        final Buffer diff = factory.newBuffer();
+        tree.saveDiff(diff);
+        //only the two new keys are written
+        Assert.assertTrue(diff.length() < 32);
+        Assert.assertTrue(full.length() > 10000);
+        //nothing changed since the diff
+        final Buffer empty = factory.newBuffer();
+        tree.saveDiff(empty);
+        Assert.assertEquals(0, empty.length());
+
+        final TimeTreeChunk merged = (TimeTreeChunk) space.createAndMark(ChunkType.TIME_TREE_CHUNK, 0, 0, 1);
+        merged.load(full);
+        merged.loadDiff(diff);
+        Assert.assertEquals(10002, merged.size());
+        Assert.assertEquals(100000, merged.previousOrEqual(200000));
+        Assert.assertEquals(5, merged.previousOrEqual(9));
+        Assert.assertEquals(99990, merged.previous(100000));
+
+        full.free();
+        diff.free();
+        empty.free();
+        space.free(tree);
+        space.free(merged);
+        space.freeAll();
+    }
+
+    @Test
+    public void superTimeTreeTest() {
+        final HeapMemoryFactory factory = new HeapMemoryFactory();
+        final ChunkSpace space = factory.newSpace(100, -1, null, false);
+        final SuperTimeTreeChunk tree = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 0);
+        for (long i = 0; i < 1000; i++) {
+            tree.insert(i * 10, 1);
+        }
+        final Buffer full = factory.newBuffer();
+        tree.save(full);
+        tree.insert(10000, 1);
+        tree.insert(50, 2);
+        final Buffer diff = factory.newBuffer();
+        tree.saveDiff(diff);
+        Assert.assertTrue(diff.length() < 32);
+
+        final SuperTimeTreeChunk merged = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 1);
+        merged.load(full);
+        merged.loadDiff(diff);
+        Assert.assertEquals(1001, merged.size());
+        Assert.assertEquals(10000, merged.previousOrEqual(20000));
+        final long[] value = new long[1];
+        merged.range(50, 50, 1, new SuperTreeWalker() {
+            @Override
+            public void elem(long time, long capacity) {
+                value[0] = capacity;
+            }
+        });
+        Assert.assertEquals(2, value[0]);
+
+        full.free();
+        diff.free();
+        space.free(tree);
+        space.free(merged);
+        space.freeAll();
+    }
+
+    @Test
+    public void worldOrderTest() {
+        final HeapMemoryFactory factory = new HeapMemoryFactory();
+        final ChunkSpace space = factory.newSpace(100, -1, null, false);
+        final WorldOrderChunk map = (WorldOrderChunk) space.createAndMark(ChunkType.WORLD_ORDER_CHUNK, 0, 0, 0);
+        for (long i = 0; i < 1000; i++) {
+            map.put(i, i * 3);
+        }
+        final Buffer full = factory.newBuffer();
+        map.save(full);
+        map.put(5, 6);
+        map.put(1000, 7);
+        final Buffer diff = factory.newBuffer();
+        map.saveDiff(diff);
+        Assert.assertTrue(diff.length() < 32);
+
+        final WorldOrderChunk merged = (WorldOrderChunk) space.createAndMark(ChunkType.WORLD_ORDER_CHUNK, 0, 0, 1);
+        merged.load(full);
+        merged.loadDiff(diff);
+        Assert.assertEquals(1001, merged.size());
+        Assert.assertEquals(6, merged.get(5));
+        Assert.assertEquals(7, merged.get(1000));
+        Assert.assertEquals(12, merged.get(4));
+
+        full.free();
+        diff.free();
+        space.free(map);
+        space.free(merged);
+        space.freeAll();
+    }
+
+    @Test
+    public void stateTest() {
+        state(new HeapMemoryFactory());
+        state(new HeapMemoryFactory().withBinaryFormat());
+    }
+
+    private void state(final HeapMemoryFactory factory) {
+        final ChunkSpace space = factory.newSpace(100, -1, null, false);
+        final StateChunk chunk = (StateChunk) space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 0);
+        chunk.setAt(0, Type.STRING, "name");
+        chunk.setAt(1, Type.LONG, 42L);
+        chunk.setAt(2, Type.DOUBLE, 0.5);
+        final Relation relation = (Relation) chunk.getOrCreateAt(3, Type.RELATION);
+        for (long i = 0; i < 1000; i++) {
+            relation.add(i);
+        }
+        //the first diff of a chunk holds all its attributes
+        final Buffer first = factory.newBuffer();
+        chunk.saveDiff(first);
+
+        chunk.setAt(1, Type.LONG, 43L);
+        chunk.removeAt(2);
+        final Buffer diff = factory.newBuffer();
+        chunk.saveDiff(diff);
+        Assert.assertTrue(diff.length() < 32);
+        //changes inside a structure are found too
+        relation.add(1000);
+        final Buffer relationDiff = factory.newBuffer();
+        chunk.saveDiff(relationDiff);
+        Assert.assertTrue(relationDiff.length() > 1000);
+        final Buffer empty = factory.newBuffer();
+        chunk.saveDiff(empty);
+        Assert.assertEquals(0, empty.length());
+
+        final StateChunk merged = (StateChunk) space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 1);
+        merged.load(first);
+        merged.loadDiff(diff);
+        merged.loadDiff(relationDiff);
+        Assert.assertEquals("name", merged.getAt(0));
+        Assert.assertEquals(43L, merged.getAt(1));
+        Assert.assertNull(merged.getAt(2));
+        Assert.assertEquals(1001, ((Relation) merged.getAt(3)).size());
+
+        first.free();
+        diff.free();
+        relationDiff.free();
+        empty.free();
+        space.free(chunk);
+        space.free(merged);
+        space.freeAll();
+    }
+
+}
@@ -15,8 +15,21 @@
  */
 package greycatTest.internal.heap;
 
+import greycat.Callback;
+import greycat.Graph;
+import greycat.GraphBuilder;
+import greycat.Node;
+import greycat.Type;
+import greycat.chunk.Chunk;
+import greycat.chunk.ChunkSpace;
+import greycat.chunk.ChunkType;
+import greycat.chunk.EvictionPolicy;
+import greycat.internal.heap.HeapChunkSpace;
 import greycat.internal.heap.HeapMemoryFactory;
+import greycat.scheduler.NoopScheduler;
 import greycatTest.internal.chunk.AbstractChunkSpaceTest;
+import org.junit.Assert;
+import org.junit.Test;
 
 public class HeapChunkSpaceTest extends AbstractChunkSpaceTest {
 
@@ -24,4 +37,178 @@ public class HeapChunkSpaceTest extends AbstractChunkSpaceTest {
         super(new HeapMemoryFactory());
     }
 
+    /**
+     * @ignore ts
+     */
+    @Test
+    public void stripedTest() throws InterruptedException {
+        final int nbThreads = 4;
+        final int perThread = 1000;
+        final ChunkSpace space = new HeapMemoryFactory().withStripes(8).newSpace(nbThreads * perThread * 2, -1, null, false);
+        Assert.assertEquals(nbThreads * perThread * 2, space.available());
+        final Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            final int offset = t * perThread;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < offset + perThread; i++) {
+                        Chunk c = space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+                        space.unmark(c.index());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t].join();
+        }
+        Assert.assertEquals(nbThreads * perThread * 2, space.available());
+        for (int i = 0; i < nbThreads * perThread; i++) {
+            Chunk c = space.getAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+            Assert.assertNotNull(c);
+            Assert.assertEquals(i, c.id());
+            space.unmark(c.index());
+        }
+    }
+
+    @Test
+    public void stripedEvictionTest() {
+        final ChunkSpace space = new HeapMemoryFactory().withStripes(4).newSpace(100, -1, null, false);
+        //more chunks than capacity, every stripe has to recycle its own victims
+        for (int i = 0; i < 1000; i++) {
+            Chunk c = space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+            Assert.assertNotNull(c);
+            space.unmark(c.index());
+        }
+        Assert.assertEquals(100, space.available());
+        Chunk last = space.getAndMark(ChunkType.STATE_CHUNK, 0, 0, 999);
+        Assert.assertNotNull(last);
+        space.unmark(last.index());
+    }
+
+    @Test
+    public void scanResistanceTest() {
+        scanResistance(EvictionPolicy.CLOCK, 50);
+        //the protected segment keeps the hot chunk even if re-used less often than the whole cache is renewed
+        scanResistance(EvictionPolicy.SEGMENTED_LRU, 250);
+    }
+
+    private void scanResistance(byte policy, int period) {
+        final ChunkSpace space = new HeapMemoryFactory().withEvictionPolicy(policy).newSpace(100, -1, null, false);
+        //a state chunk used by every query
+        Chunk hot = space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, -1);
+        space.unmark(hot.index());
+        //a one-shot scan larger than the cache, re-using the hot chunk regularly
+        for (int i = 0; i < 1000; i++) {
+            Chunk c = space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+            space.unmark(c.index());
+            if (i % period == 0) {
+                hot = space.getAndMark(ChunkType.STATE_CHUNK, 0, 0, -1);
+                Assert.assertNotNull(hot);
+                space.unmark(hot.index());
+            }
+        }
+        Assert.assertEquals(100, space.available());
+    }
+
+    @Test
+    public void lockFreeStacksPolicyTest() {
+        boolean crashed = false;
+        try {
+            new HeapMemoryFactory().withLockFreeStacks().withEvictionPolicy(EvictionPolicy.CLOCK).newSpace(100, -1, null, false);
+        } catch (RuntimeException e) {
+            crashed = true;
+        }
+        Assert.assertTrue(crashed);
+    }
+
+    @Test
+    public void backpressureTest() {
+        final Graph g = GraphBuilder.newBuilder().withMemorySize(100).withMemoryFactory(new HeapMemoryFactory().withBackpressure(1000)).build();
+        g.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                //dirty nodes are never saved explicitly, the space has to save them to make room
+                for (int i = 0; i < 200; i++) {
+                    Node n = g.newNode(0, 0);
+                    n.set("value", Type.INT, i);
+                    n.free();
+                }
+                final HeapChunkSpace space = (HeapChunkSpace) g.space();
+                Assert.assertTrue(space.exhaustions() > 0);
+                Assert.assertTrue(space.backpressureSaves() > 0);
+                Assert.assertEquals(0, space.backpressureFailures());
+                g.disconnect(null);
+            }
+        });
+    }
+
+    /**
+     * @ignore ts
+     */
+    @Test
+    public void backpressureParkTest() throws InterruptedException {
+        final ChunkSpace space = new HeapMemoryFactory().withBackpressure(5000).newSpace(10, -1, null, false);
+        final Chunk[] retained = new Chunk[10];
+        for (int i = 0; i < 10; i++) {
+            retained[i] = space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+        }
+        //another worker releases its chunks a bit later
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                for (int i = 0; i < 10; i++) {
+                    space.unmark(retained[i].index());
+                }
+            }
+        });
+        releaser.start();
+        Chunk c = space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 10);
+        Assert.assertNotNull(c);
+        releaser.join();
+        Assert.assertTrue(((HeapChunkSpace) space).backpressureParks() > 0);
+        Assert.assertEquals(0, ((HeapChunkSpace) space).backpressureFailures());
+    }
+
+    @Test
+    public void backpressureSingleThreadTest() {
+        //nothing can release chunks while the only worker waits, the creation should not wait for the timeout
+        final Graph g = GraphBuilder.newBuilder().withScheduler(new NoopScheduler()).build();
+        final ChunkSpace space = new HeapMemoryFactory().withBackpressure(60000).newSpace(10, -1, g, false);
+        for (int i = 0; i < 10; i++) {
+            space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+        }
+        boolean crashed = false;
+        try {
+            space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 10);
+        } catch (RuntimeException e) {
+            crashed = true;
+        }
+        Assert.assertTrue(crashed);
+        Assert.assertEquals(1, ((HeapChunkSpace) space).backpressureParks());
+        Assert.assertEquals(1, ((HeapChunkSpace) space).backpressureFailures());
+    }
+
+    @Test
+    public void backpressureTimeoutTest() {
+        final ChunkSpace space = new HeapMemoryFactory().withBackpressure(20).newSpace(10, -1, null, false);
+        for (int i = 0; i < 10; i++) {
+            space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, i);
+        }
+        boolean crashed = false;
+        try {
+            space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 10);
+        } catch (RuntimeException e) {
+            crashed = true;
+        }
+        Assert.assertTrue(crashed);
+        Assert.assertEquals(1, ((HeapChunkSpace) space).backpressureFailures());
+    }
+
 }
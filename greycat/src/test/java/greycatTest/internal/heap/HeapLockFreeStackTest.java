@@ -0,0 +1,108 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.internal.heap.HeapLockFreeStack;
+import greycatTest.internal.chunk.AbstractFixedStackTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @ignore ts
+ */
+public class HeapLockFreeStackTest extends AbstractFixedStackTest {
+
+    @Test
+    public void heapLockFreeStackTest() {
+        test(new HeapLockFreeStack(CAPACITY, true));
+    }
+
+    @Test
+    public void staleEntriesTest() {
+        final HeapLockFreeStack stack = new HeapLockFreeStack(CAPACITY, true);
+        //mark and unmark the same index far more often than the ring size
+        for (int i = 0; i < CAPACITY * 100; i++) {
+            Assert.assertTrue(stack.dequeue(3));
+            Assert.assertTrue(stack.enqueue(3));
+        }
+        Assert.assertEquals(CAPACITY, stack.size());
+        final boolean[] seen = new boolean[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            int polled = (int) stack.dequeueTail();
+            Assert.assertFalse(seen[polled]);
+            seen[polled] = true;
+        }
+        Assert.assertEquals(-1, stack.dequeueTail());
+        Assert.assertEquals(0, stack.size());
+    }
+
+    @Test
+    public void lruOrderTest() {
+        //whatever the number of compactions of the ring, 5 has to stay less recently used than 3 and more than the others
+        for (int cycles = 1; cycles < CAPACITY * 4; cycles++) {
+            final HeapLockFreeStack stack = new HeapLockFreeStack(CAPACITY, true);
+            for (int i = 0; i < CAPACITY * 10; i++) {
+                Assert.assertTrue(stack.dequeue(3));
+                Assert.assertTrue(stack.enqueue(3));
+            }
+            Assert.assertTrue(stack.dequeue(5));
+            Assert.assertTrue(stack.enqueue(5));
+            for (int i = 0; i < cycles; i++) {
+                Assert.assertTrue(stack.dequeue(3));
+                Assert.assertTrue(stack.enqueue(3));
+            }
+            for (int i = 0; i < CAPACITY; i++) {
+                if (i != 3 && i != 5) {
+                    Assert.assertEquals(i, stack.dequeueTail());
+                }
+            }
+            Assert.assertEquals(5, stack.dequeueTail());
+            Assert.assertEquals(3, stack.dequeueTail());
+            Assert.assertEquals(-1, stack.dequeueTail());
+        }
+    }
+
+    @Test
+    public void concurrentTest() throws InterruptedException {
+        final int capacity = 1000;
+        final HeapLockFreeStack stack = new HeapLockFreeStack(capacity, true);
+        final int nbThreads = 4;
+        final Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        long victim = stack.dequeueTail();
+                        if (victim != -1) {
+                            Assert.assertTrue(stack.enqueue(victim));
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t].join();
+        }
+        Assert.assertEquals(capacity, stack.size());
+        for (int i = 0; i < capacity; i++) {
+            Assert.assertTrue(stack.dequeueTail() != -1);
+        }
+        Assert.assertEquals(-1, stack.dequeueTail());
+    }
+
+}
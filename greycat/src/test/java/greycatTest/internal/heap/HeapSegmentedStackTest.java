@@ -0,0 +1,29 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.internal.heap.HeapSegmentedStack;
+import greycatTest.internal.chunk.AbstractFixedStackTest;
+import org.junit.Test;
+
+public class HeapSegmentedStackTest extends AbstractFixedStackTest {
+
+    @Test
+    public void heapSegmentedStackTest() {
+        test(new HeapSegmentedStack(CAPACITY, true, null, 0));
+    }
+
+}
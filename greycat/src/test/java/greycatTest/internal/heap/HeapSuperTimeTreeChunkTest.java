@@ -26,7 +26,7 @@ public class HeapSuperTimeTreeChunkTest {
 
     @Test
     public void test() {
-        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false);
+        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false, null);
         HeapSuperTimeTreeChunk tree = new HeapSuperTimeTreeChunk(space, -1);
         for (int i = 0; i < 100; i = i + 10) {
             tree.insert(i, i);
@@ -38,7 +38,7 @@ public class HeapSuperTimeTreeChunkTest {
 
     @Test
     public void loadSaveTest() {
-        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false);
+        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false, null);
         HeapSuperTimeTreeChunk tree = new HeapSuperTimeTreeChunk(space, -1);
         for (int i = 0; i < 100; i = i + 10) {
             tree.insert(i, i);
@@ -63,7 +63,7 @@ public class HeapSuperTimeTreeChunkTest {
 
     @Test
     public void stressTest() {
-        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false);
+        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false, null);
         HeapSuperTimeTreeChunk tree = new HeapSuperTimeTreeChunk(space, -1);
         for (long i = 1000000; i > 0; i = i - 2) {
             tree.insert(i,i);
@@ -15,10 +15,12 @@
  */
 package greycatTest.internal.heap;
 
+import greycat.chunk.ChunkSpace;
 import greycat.chunk.ChunkType;
 import greycat.chunk.TimeTreeDValueChunk;
 import greycat.internal.heap.HeapBuffer;
 import greycat.internal.heap.HeapChunkSpace;
+import greycat.internal.heap.HeapMemoryFactory;
 import greycat.struct.Buffer;
 import org.junit.Assert;
 import org.junit.Test;
@@ -27,7 +29,7 @@ public class HeapTimeTreeDValueChunkTest {
 
     @Test
     public void test() {
-        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false);
+        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false, null);
         TimeTreeDValueChunk ttvc = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
         for (int i = 0; i < 100; i = i + 10) {
             ttvc.insertValue(i, i * 1.5d);
@@ -56,4 +58,97 @@ public class HeapTimeTreeDValueChunkTest {
         space.freeAll();
     }
 
+    @Test
+    public void appendTest() {
+        HeapChunkSpace space = new HeapChunkSpace(100, 10, null, false, null);
+        TimeTreeDValueChunk ttvc = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        ttvc.insertValue(0, 0d);
+        final long[] keys = new long[1000];
+        final double[] values = new double[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (i + 1) * 10;
+            values[i] = (i + 1) * 1.5d;
+        }
+        //bulk copy, then small appends inserted one by one
+        ttvc.appendValues(keys, values, 0, 500);
+        for (int i = 500; i < keys.length; i = i + 50) {
+            ttvc.appendValues(keys, values, i, 50);
+        }
+        Assert.assertEquals(1001, ttvc.size());
+        Assert.assertEquals(10000, ttvc.max());
+        for (int i = 0; i <= 10000; i = i + 10) {
+            Assert.assertEquals(i, ttvc.previousOrEqual(i + 5));
+            Assert.assertEquals(i, ttvc.getKey(ttvc.previousOffset(i + 5)));
+            Assert.assertTrue(i / 10 * 1.5d == ttvc.getValue(ttvc.previousOffset(i + 5)));
+            if (i < 10000) {
+                Assert.assertEquals(i + 10, ttvc.next(i));
+            }
+        }
+        //tree is still balanced for further insertions
+        ttvc.insertValue(5, 7d);
+        Assert.assertEquals(5, ttvc.previous(10));
+        Assert.assertEquals(10, ttvc.next(5));
+        boolean failed = false;
+        try {
+            ttvc.appendValues(new long[]{20}, new double[]{0}, 0, 1);
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        Assert.assertTrue(failed);
+        space.free(ttvc);
+        space.freeAll();
+    }
+
+    @Test
+    public void compressedTest() {
+        ChunkSpace space = new HeapMemoryFactory().withBinaryFormat().newSpace(100, 10, null, false);
+        TimeTreeDValueChunk ttvc = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        fill(ttvc);
+        Buffer buf = new HeapBuffer();
+        ttvc.save(buf);
+        //compared to the text encoding of the same points
+        ChunkSpace textSpace = new HeapMemoryFactory().newSpace(100, 10, null, false);
+        TimeTreeDValueChunk textTtvc = (TimeTreeDValueChunk) textSpace.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        fill(textTtvc);
+        Buffer textBuf = new HeapBuffer();
+        textTtvc.save(textBuf);
+        Assert.assertTrue(buf.length() * 1.5 < textBuf.length());
+        textBuf.free();
+        textSpace.free(textTtvc);
+        textSpace.freeAll();
+
+        TimeTreeDValueChunk ttvc2 = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 2);
+        ttvc2.load(buf);
+        buf.free();
+        Assert.assertEquals(ttvc.size(), ttvc2.size());
+        long time = 1500000000000L;
+        for (int i = 0; i < 1000; i++) {
+            time = time + 1000 + (i % 7 == 0 ? 3 : 0) + (i % 100 == 0 ? 100000 : 0);
+            //previousOffset is strict
+            int offset = ttvc2.previousOffset(time + 1);
+            Assert.assertEquals(time, ttvc2.getKey(offset));
+            Assert.assertEquals(ttvc.getValue(ttvc.previousOffset(time + 1)), ttvc2.getValue(offset));
+        }
+        space.free(ttvc);
+        space.free(ttvc2);
+        space.freeAll();
+    }
+
+    /**
+     * Mostly regular sampling, with jitter, gaps, repeated and null values.
+     */
+    private static void fill(TimeTreeDValueChunk ttvc) {
+        long time = 1500000000000L;
+        for (int i = 0; i < 1000; i++) {
+            time = time + 1000 + (i % 7 == 0 ? 3 : 0) + (i % 100 == 0 ? 100000 : 0);
+            if (i % 50 == 0) {
+                ttvc.insertValue(time, null);
+            } else if (i % 3 == 0) {
+                ttvc.insertValue(time, 21.5);
+            } else {
+                ttvc.insertValue(time, Math.sin(i) * 100);
+            }
+        }
+    }
+
 }
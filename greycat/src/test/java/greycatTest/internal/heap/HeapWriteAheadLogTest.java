@@ -0,0 +1,415 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.*;
+import greycat.internal.heap.HeapChunkSpace;
+import greycat.internal.heap.HeapMemoryFactory;
+import greycat.internal.heap.HeapWriteAheadLog;
+import greycat.plugin.Storage;
+import greycat.scheduler.NoopScheduler;
+import greycat.struct.Buffer;
+import greycatTest.internal.MockStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ignore ts
+ */
+public class HeapWriteAheadLogTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("greycat_wal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private Graph newGraph(final Storage storage, final int checkpointInterval) {
+        return GraphBuilder.newBuilder()
+                .withStorage(storage)
+                .withScheduler(new NoopScheduler())
+                .withMemoryFactory(new HeapMemoryFactory().withWriteAheadLog(directory.getAbsolutePath(), checkpointInterval))
+                .build();
+    }
+
+    @Test
+    public void checkpointTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = newGraph(storage, 1000);
+        final long[] ids = new long[50];
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final int stored = storage.backend.size();
+                for (int i = 0; i < ids.length; i++) {
+                    final Node node = graph.newNode(0, 0);
+                    node.set("value", Type.INT, i);
+                    ids[i] = node.id();
+                    node.free();
+                    graph.save(null);
+                }
+                //saves only reach the log
+                Assert.assertEquals(stored, storage.backend.size());
+                final HeapWriteAheadLog log = ((HeapChunkSpace) graph.space()).writeAheadLog();
+                Assert.assertTrue(log.retained() >= ids.length);
+                graph.disconnect(new Callback() {
+                    @Override
+                    public void on(Object result) {
+                        Assert.assertEquals(ids.length, log.appends());
+                        Assert.assertTrue(log.syncs() <= log.appends());
+                        Assert.assertEquals(1, log.checkpoints());
+                        disconnected.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(disconnected.await(10, TimeUnit.SECONDS));
+        //the checkpoint covers the whole log
+        Assert.assertEquals(0, directory.list().length);
+        assertValues(GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build(), ids);
+    }
+
+    @Test
+    public void replayTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        final Graph crashed = newGraph(storage, 1000);
+        final long[] ids = new long[20];
+        final CountDownLatch logged = new CountDownLatch(1);
+        crashed.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                for (int i = 0; i < ids.length; i++) {
+                    final Node node = crashed.newNode(0, 0);
+                    node.set("value", Type.INT, i);
+                    ids[i] = node.id();
+                    node.free();
+                }
+                crashed.save(new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean result) {
+                        logged.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(logged.await(10, TimeUnit.SECONDS));
+        //the graph is dropped without disconnection, its nodes are only in the log
+        Assert.assertTrue(directory.list().length > 0);
+        final Graph recovered = newGraph(storage, 1000);
+        final CountDownLatch replayed = new CountDownLatch(1);
+        recovered.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                Assert.assertTrue(result);
+                Assert.assertEquals(1, ((HeapChunkSpace) recovered.space()).writeAheadLog().checkpoints());
+                recovered.disconnect(new Callback() {
+                    @Override
+                    public void on(Object result) {
+                        replayed.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(replayed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, directory.list().length);
+        assertValues(GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build(), ids);
+    }
+
+    @Test
+    public void diffTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        final Graph crashed = newGraph(storage, 1000);
+        final long[] id = new long[1];
+        final CountDownLatch first = new CountDownLatch(1);
+        crashed.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = crashed.newNode(0, 0);
+                id[0] = node.id();
+                for (int i = 0; i < 900; i++) {
+                    final int time = i * 10;
+                    crashed.lookup(0, time, id[0], new Callback<Node>() {
+                        @Override
+                        public void on(Node timed) {
+                            timed.set("value", Type.INT, time);
+                            timed.free();
+                        }
+                    });
+                }
+                node.free();
+                crashed.save(new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean result) {
+                        first.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(first.await(10, TimeUnit.SECONDS));
+        final HeapWriteAheadLog log = ((HeapChunkSpace) crashed.space()).writeAheadLog();
+        final long bytes = log.bytes();
+        final CountDownLatch second = new CountDownLatch(1);
+        crashed.lookup(0, 9000, id[0], new Callback<Node>() {
+            @Override
+            public void on(Node timed) {
+                timed.set("value", Type.INT, 9000);
+                timed.free();
+            }
+        });
+        crashed.save(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                second.countDown();
+            }
+        });
+        Assert.assertTrue(second.await(10, TimeUnit.SECONDS));
+        //the second append holds the new timepoint and the diffs of the trees, not the nine hundred keys of the time tree
+        Assert.assertTrue(log.bytes() - bytes < 1000);
+        final Graph recovered = newGraph(storage, 1000);
+        final CountDownLatch replayed = new CountDownLatch(1);
+        recovered.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                recovered.disconnect(new Callback() {
+                    @Override
+                    public void on(Object result) {
+                        replayed.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(replayed.await(10, TimeUnit.SECONDS));
+        final Graph graph = GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        final int[] checked = new int[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final int[] times = new int[]{0, 4500, 8990, 9000};
+                for (int i = 0; i < times.length; i++) {
+                    final int expected = times[i];
+                    graph.lookup(0, expected, id[0], new Callback<Node>() {
+                        @Override
+                        public void on(Node node) {
+                            Assert.assertEquals(expected, node.get("value"));
+                            checked[0]++;
+                            node.free();
+                        }
+                    });
+                }
+                graph.disconnect(null);
+            }
+        });
+        Assert.assertEquals(4, checked[0]);
+    }
+
+    @Test
+    public void checkpointCrashTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        //the storage saves the checkpoint, but the process crashes before its acknowledgment
+        final Storage crashing = new Storage() {
+            @Override
+            public void get(Buffer keys, Callback<Buffer> callback) {
+                storage.get(keys, callback);
+            }
+
+            @Override
+            public void put(Buffer stream, Callback<Boolean> callback) {
+                storage.put(stream, new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean result) {
+                    }
+                });
+            }
+
+            @Override
+            public void putSilent(Buffer stream, Callback<Buffer> callback) {
+                storage.putSilent(stream, callback);
+            }
+
+            @Override
+            public void remove(Buffer keys, Callback<Boolean> callback) {
+                storage.remove(keys, callback);
+            }
+
+            @Override
+            public void connect(Graph graph, Callback<Boolean> callback) {
+                storage.connect(graph, callback);
+            }
+
+            @Override
+            public void lock(Callback<Buffer> callback) {
+                storage.lock(callback);
+            }
+
+            @Override
+            public void unlock(Buffer previousLock, Callback<Boolean> callback) {
+                storage.unlock(previousLock, callback);
+            }
+
+            @Override
+            public void disconnect(Callback<Boolean> callback) {
+                storage.disconnect(callback);
+            }
+
+            @Override
+            public void listen(Callback<Buffer> synCallback) {
+                storage.listen(synCallback);
+            }
+        };
+        final Graph crashed = newGraph(crashing, 1);
+        final long[] id = new long[1];
+        final CountDownLatch logged = new CountDownLatch(1);
+        crashed.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = crashed.newNode(0, 0);
+                node.set("value", Type.INT, 1);
+                id[0] = node.id();
+                node.free();
+                crashed.save(new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean result) {
+                        logged.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(logged.await(10, TimeUnit.SECONDS));
+        final HeapWriteAheadLog log = ((HeapChunkSpace) crashed.space()).writeAheadLog();
+        crashed.lookup(0, 0, id[0], new Callback<Node>() {
+            @Override
+            public void on(Node node) {
+                node.set("value", Type.INT, 2);
+                node.free();
+            }
+        });
+        //the second save is a checkpoint, it logs the new value before writing it to the storage
+        crashed.save(null);
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (log.syncs() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, log.syncs());
+        Assert.assertTrue(directory.list().length > 0);
+        //replaying the log over the checkpoint does not roll the value back
+        final Graph recovered = newGraph(storage, 1000);
+        final CountDownLatch replayed = new CountDownLatch(1);
+        recovered.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                recovered.disconnect(new Callback() {
+                    @Override
+                    public void on(Object result) {
+                        replayed.countDown();
+                    }
+                });
+            }
+        });
+        Assert.assertTrue(replayed.await(10, TimeUnit.SECONDS));
+        final Graph graph = GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        final int[] checked = new int[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                graph.lookup(0, 0, id[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node node) {
+                        Assert.assertEquals(2, node.get("value"));
+                        checked[0]++;
+                        node.free();
+                    }
+                });
+                graph.disconnect(null);
+            }
+        });
+        Assert.assertEquals(1, checked[0]);
+    }
+
+    @Test
+    public void checkpointIntervalTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = newGraph(storage, 5);
+        final CountDownLatch saved = new CountDownLatch(12);
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                for (int i = 0; i < 12; i++) {
+                    final Node node = graph.newNode(0, 0);
+                    node.set("value", Type.INT, i);
+                    node.free();
+                    graph.save(new Callback<Boolean>() {
+                        @Override
+                        public void on(Boolean result) {
+                            saved.countDown();
+                        }
+                    });
+                }
+            }
+        });
+        Assert.assertTrue(saved.await(10, TimeUnit.SECONDS));
+        //five logged saves, one checkpoint, five logged saves, one checkpoint, each checkpoint logs its own dirty chunk first
+        final HeapWriteAheadLog log = ((HeapChunkSpace) graph.space()).writeAheadLog();
+        Assert.assertEquals(12, log.appends());
+        Assert.assertEquals(2, log.checkpoints());
+        Assert.assertEquals(0, log.retained());
+        graph.disconnect(null);
+    }
+
+    private void assertValues(final Graph graph, final long[] ids) {
+        final int[] checked = new int[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                for (int i = 0; i < ids.length; i++) {
+                    final int expected = i;
+                    graph.lookup(0, 0, ids[i], new Callback<Node>() {
+                        @Override
+                        public void on(Node node) {
+                            Assert.assertNotNull(node);
+                            Assert.assertEquals(expected, node.get("value"));
+                            checked[0]++;
+                            node.free();
+                        }
+                    });
+                }
+                graph.disconnect(null);
+            }
+        });
+        Assert.assertEquals(ids.length, checked[0]);
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.*;
+import greycat.internal.heap.HeapMemoryFactory;
+import greycat.scheduler.NoopScheduler;
+import greycatTest.internal.MockStorage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @ignore ts
+ */
+public class HeapWriteBehindTest {
+
+    @Test
+    public void saveAndReloadTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = GraphBuilder.newBuilder()
+                .withStorage(storage)
+                .withScheduler(new NoopScheduler())
+                .withMemoryFactory(new HeapMemoryFactory().withWriteBehind(3, 2))
+                .build();
+        final long[] ids = new long[100];
+        final CountDownLatch saved = new CountDownLatch(1);
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                //several saves in a row, the last callback is called once all of them are durable
+                for (int i = 0; i < ids.length; i++) {
+                    final Node node = graph.newNode(0, 0);
+                    node.set("value", Type.INT, i);
+                    ids[i] = node.id();
+                    node.free();
+                    if (i % 10 == 0) {
+                        graph.save(null);
+                    }
+                }
+                graph.disconnect(new Callback() {
+                    @Override
+                    public void on(Object result) {
+                        saved.countDown();
+                    }
+                });
+            }
+        });
+        saved.await();
+        final Graph reloaded = GraphBuilder.newBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        reloaded.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                for (int i = 0; i < ids.length; i++) {
+                    final int expected = i;
+                    reloaded.lookup(0, 0, ids[i], new Callback<Node>() {
+                        @Override
+                        public void on(Node node) {
+                            Assert.assertNotNull(node);
+                            Assert.assertEquals(expected, node.get("value"));
+                            node.free();
+                        }
+                    });
+                }
+                reloaded.disconnect(null);
+            }
+        });
+    }
+
+    @Test
+    public void callbackWhenDurableTest() throws InterruptedException {
+        final MockStorage storage = new MockStorage();
+        final Graph graph = GraphBuilder.newBuilder()
+                .withStorage(storage)
+                .withScheduler(new NoopScheduler())
+                .withMemoryFactory(new HeapMemoryFactory().withWriteBehind(2, 1))
+                .build();
+        final CountDownLatch saved = new CountDownLatch(1);
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = graph.newNode(0, 0);
+                node.set("name", Type.STRING, "n0");
+                node.free();
+                graph.save(new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean result) {
+                        //the node is in the storage
+                        Assert.assertTrue(storage.backend.size() > 0);
+                        saved.countDown();
+                    }
+                });
+            }
+        });
+        saved.await();
+        graph.disconnect(null);
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.heap;
+
+import greycat.chunk.ChunkSpace;
+import greycat.chunk.ChunkType;
+import greycat.chunk.TimeTreeDValueChunk;
+import greycat.internal.heap.HeapBuffer;
+import greycat.internal.heap.HeapMemoryFactory;
+import greycat.struct.Buffer;
+
+/**
+ * Compares the Base64 text encoding and the compressed binary encoding of {@link TimeTreeDValueChunk}:
+ * bytes per point, and decoding throughput.
+ */
+public class TimeTreeDValueCompressionBenchmark {
+
+    public static void main(String[] args) {
+        int points = 100000;
+        int rounds = 50;
+        run("text", new HeapMemoryFactory(), points, rounds);
+        run("compressed", new HeapMemoryFactory().withBinaryFormat(), points, rounds);
+    }
+
+    private static void run(String name, HeapMemoryFactory factory, int points, int rounds) {
+        ChunkSpace space = factory.newSpace(10, -1, null, false);
+        TimeTreeDValueChunk chunk = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 0);
+        //a temperature sensor sampled every 10s with some jitter, values rounded to one decimal
+        long time = 1500000000000L;
+        for (int i = 0; i < points; i++) {
+            time = time + 10000 + (i % 13 == 0 ? 7 : 0);
+            chunk.insertValue(time, Math.round(200 + 50 * Math.sin(i / 500d)) / 10d);
+        }
+        Buffer buffer = new HeapBuffer();
+        chunk.save(buffer);
+        space.unmark(chunk.index());
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < rounds; i++) {
+            TimeTreeDValueChunk loaded = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, i + 1);
+            loaded.load(buffer);
+            space.unmark(loaded.index());
+        }
+        long after = System.currentTimeMillis();
+        System.out.println(name + ": " + ((double) buffer.length() / points) + " bytes/point, decode " + ((points * (long) rounds / 1000) / ((double) (after - before) / 1000d)) + " k points/s");
+        buffer.free();
+        space.freeAll();
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.task;
+
+import greycat.ActionFunction;
+import greycat.Task;
+import greycat.TaskContext;
+import greycat.TaskResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static greycat.Tasks.newTask;
+import static greycat.internal.task.CoreActions.inject;
+
+public class ActionParBatchTest extends AbstractActionTest {
+
+    @Test
+    public void forEachTest() {
+        initGraph();
+        final int[] elements = new int[1000];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = i;
+        }
+        final AtomicInteger calls = new AtomicInteger(0);
+        final AtomicInteger sum = new AtomicInteger(0);
+        final boolean[] offsets = {true};
+        final int[] previousSize = {0};
+        newTask()
+                .then(inject(elements))
+                .forEachParBatch("64", "4", newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        calls.incrementAndGet();
+                        final int offset = (int) ctx.variable("i").get(0);
+                        final TaskResult range = ctx.result();
+                        if ((int) range.get(0) != offset || range.size() > 64) {
+                            offsets[0] = false;
+                        }
+                        for (int i = 0; i < range.size(); i++) {
+                            sum.addAndGet((int) range.get(i));
+                        }
+                        ctx.continueTask();
+                    }
+                }))
+                .thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        previousSize[0] = ctx.result().size();
+                        ctx.continueTask();
+                    }
+                })
+                .execute(graph, null);
+        Assert.assertEquals(16, calls.get());
+        Assert.assertEquals(999 * 1000 / 2, sum.get());
+        Assert.assertTrue(offsets[0]);
+        Assert.assertEquals(1000, previousSize[0]);
+        removeGraph();
+    }
+
+    @Test
+    public void mapTest() {
+        initGraph();
+        final int[] elements = new int[100];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = i;
+        }
+        final Object[] mapped = new Object[1];
+        newTask()
+                .then(inject(elements))
+                .mapParBatch("0", "3", newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        final TaskResult range = ctx.result();
+                        final TaskResult doubled = ctx.newResult();
+                        for (int i = 0; i < range.size(); i++) {
+                            doubled.add((int) range.get(i) * 2);
+                        }
+                        ctx.continueWith(doubled);
+                    }
+                }))
+                .thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        final TaskResult result = ctx.result();
+                        final int[] values = new int[result.size()];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = (int) result.get(i);
+                        }
+                        mapped[0] = values;
+                        ctx.continueTask();
+                    }
+                })
+                .execute(graph, null);
+        final int[] values = (int[]) mapped[0];
+        Assert.assertEquals(100, values.length);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(i * 2, values[i]);
+        }
+        removeGraph();
+    }
+
+    @Test
+    public void serializationTest() {
+        final Task task = newTask().mapParBatch("{{size}}", "4", newTask().travelInTime("0")).forEachParBatch("10", "0", newTask().log("{{i}}"));
+        final String serialized = task.toString();
+        Assert.assertEquals(serialized, newTask().parse(serialized, null).toString());
+        Assert.assertTrue(serialized.contains("mapParBatch('{{size}}','4',{"));
+    }
+
+}
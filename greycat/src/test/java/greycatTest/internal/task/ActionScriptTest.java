@@ -15,9 +15,18 @@
  */
 package greycatTest.internal.task;
 
+import greycat.ActionFunction;
+import greycat.Callback;
+import greycat.TaskContext;
+import greycat.TaskResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static greycat.Tasks.newTask;
+import static greycat.internal.task.CoreActions.readIndex;
+
 public class ActionScriptTest extends AbstractActionTest {
 
-    /*
     @Test
     public void testSimpleScript() {
         initGraph();
@@ -44,9 +53,7 @@ public class ActionScriptTest extends AbstractActionTest {
                     }
                 });
     }
-    */
 
-    /*
     @Test
     public void testPrintScript() {
         initGraph();
@@ -63,7 +70,7 @@ public class ActionScriptTest extends AbstractActionTest {
                         removeGraph();
                     }
                 });
-    }*/
+    }
 
 /*
     @Test
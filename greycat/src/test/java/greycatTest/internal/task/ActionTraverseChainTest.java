@@ -0,0 +1,146 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.task;
+
+import greycat.*;
+import greycat.scheduler.NoopScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static greycat.Tasks.newTask;
+
+public class ActionTraverseChainTest {
+
+    private Graph graph;
+    private long root;
+
+    /**
+     * root -> {a, b}, a -> {c, d}, b -> {c}: c is reached twice after two hops.
+     */
+    private void initDiamond() {
+        graph = new GraphBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Node rootNode = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        final Node a = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        final Node b = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        final Node c = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        final Node d = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        rootNode.set("name", Type.STRING, "root");
+        a.set("name", Type.STRING, "a");
+        b.set("name", Type.STRING, "b");
+        c.set("name", Type.STRING, "c");
+        d.set("name", Type.STRING, "d");
+        rootNode.addToRelation("children", a);
+        rootNode.addToRelation("children", b);
+        a.addToRelation("children", c);
+        a.addToRelation("children", d);
+        b.addToRelation("children", c);
+        root = rootNode.id();
+        rootNode.free();
+        a.free();
+        b.free();
+        c.free();
+        d.free();
+    }
+
+    private Task twoHops() {
+        return newTask()
+                .lookup("" + root)
+                .traverse("children")
+                .traverse("children")
+                .attribute("name");
+    }
+
+    @Test
+    public void chainTest() {
+        initDiamond();
+        final long available = graph.space().available();
+        final Object[][] names = new Object[1][];
+        twoHops().execute(graph, new Callback<TaskResult>() {
+            @Override
+            public void on(TaskResult result) {
+                names[0] = result.asArray();
+                result.free();
+            }
+        });
+        Assert.assertArrayEquals(new Object[]{"c", "d", "c"}, names[0]);
+        //duplicated nodes are released independently
+        Assert.assertEquals(available, graph.space().available());
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void observedTest() {
+        initDiamond();
+        final Object[][] names = new Object[1][];
+        final int[] reports = {0};
+        final Task task = twoHops();
+        final TaskContext context = task.prepare(graph, null, new Callback<TaskResult>() {
+            @Override
+            public void on(TaskResult result) {
+                names[0] = result.asArray();
+                result.free();
+            }
+        });
+        context.setProgressAutoReport(true);
+        context.setProgressHook(new Callback<TaskProgressReport>() {
+            @Override
+            public void on(TaskProgressReport result) {
+                reports[0]++;
+            }
+        });
+        task.executeUsing(context);
+        Assert.assertArrayEquals(new Object[]{"c", "d", "c"}, names[0]);
+        //every step is still reported when observed
+        Assert.assertEquals(3, reports[0]);
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void templateTest() {
+        graph = new GraphBuilder().withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Node rootNode = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        final Node child = graph.newNode(0, Constants.BEGINNING_OF_TIME);
+        //rendered from the input of a fused chain, already consumed by its first step, the template would give []
+        child.set("[]", Type.STRING, "stale");
+        rootNode.addToRelation("children", child);
+        root = rootNode.id();
+        rootNode.free();
+        child.free();
+        final int[] size = new int[]{-1};
+        newTask()
+                .lookup("" + root)
+                .traverse("children")
+                .attribute("{{result}}")
+                .execute(graph, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        size[0] = result.size();
+                        result.free();
+                    }
+                });
+        //the template is rendered from the child, which has no attribute named after itself
+        Assert.assertEquals(0, size[0]);
+        graph.disconnect(null);
+    }
+
+    @Test
+    public void serializationTest() {
+        Assert.assertEquals("lookup('1').traverse(children).traverse(children).attribute(name)", newTask().lookup("1").traverse("children").traverse("children").attribute("name").toString());
+    }
+
+}
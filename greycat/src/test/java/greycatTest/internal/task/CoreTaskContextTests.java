@@ -21,7 +21,13 @@ import org.junit.Assert;
 import org.junit.Test;
 import greycat.Callback;
 import greycat.GraphBuilder;
+import greycat.Task;
+import greycat.TaskResult;
 import greycat.TaskContext;
+import greycat.scheduler.NoopScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static greycat.Tasks.newTask;
 import static greycat.internal.task.CoreActions.*;
@@ -72,4 +78,105 @@ public class CoreTaskContextTests {
             }
         });
     }
+
+    @Test
+    public void testCompiledTemplate() {
+        final Graph graph = new GraphBuilder().build();
+        final List<String> rendered = new ArrayList<String>();
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final String template = "node_{{i}} in {{world}}: {{=i * 2}}";
+                newTask()
+                        .loop("1", "3", newTask()
+                                .thenDo(new ActionFunction() {
+                                    @Override
+                                    public void eval(TaskContext ctx) {
+                                        //same template string, evaluated against each iteration
+                                        rendered.add(ctx.template(template));
+                                        ctx.continueTask();
+                                    }
+                                }))
+                        .thenDo(new ActionFunction() {
+                            @Override
+                            public void eval(TaskContext ctx) {
+                                rendered.add(ctx.template("no placeholder"));
+                                rendered.add(ctx.template("{{unclosed"));
+                                rendered.add(ctx.template("a-{{unknown}}b"));
+                                ctx.continueTask();
+                            }
+                        })
+                        .execute(graph, null);
+            }
+        });
+        Assert.assertEquals(6, rendered.size());
+        Assert.assertEquals("node_1 in 0: 2", rendered.get(0));
+        Assert.assertEquals("node_2 in 0: 4", rendered.get(1));
+        Assert.assertEquals("node_3 in 0: 6", rendered.get(2));
+        Assert.assertEquals("no placeholder", rendered.get(3));
+        Assert.assertEquals("{{unclosed", rendered.get(4));
+        Assert.assertEquals("a-b", rendered.get(5));
+    }
+
+    @Test
+    public void testLongSynchronousChain() {
+        final Graph graph = new GraphBuilder().build();
+        final int[] counter = new int[1];
+        final TaskResult[] end = new TaskResult[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Task chain = newTask();
+                //far more actions than frames the stack could hold if each of them called the next one
+                for (int i = 0; i < 100000; i++) {
+                    chain.thenDo(new ActionFunction() {
+                        @Override
+                        public void eval(TaskContext ctx) {
+                            counter[0]++;
+                            ctx.continueTask();
+                        }
+                    });
+                }
+                chain.execute(graph, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        end[0] = result;
+                    }
+                });
+            }
+        });
+        Assert.assertEquals(100000, counter[0]);
+        Assert.assertNotNull(end[0]);
+        Assert.assertNull(end[0].exception());
+    }
+
+    @Test
+    public void testLongSynchronousLoop() {
+        final Graph graph = new GraphBuilder().withScheduler(new NoopScheduler()).build();
+        final int[] counter = new int[1];
+        final TaskResult[] end = new TaskResult[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                //each iteration completes synchronously, and used to launch the next one from its own callback
+                newTask()
+                        .loop("1", "100000", newTask().thenDo(new ActionFunction() {
+                            @Override
+                            public void eval(TaskContext ctx) {
+                                counter[0]++;
+                                ctx.continueTask();
+                            }
+                        }))
+                        .execute(graph, new Callback<TaskResult>() {
+                            @Override
+                            public void on(TaskResult result) {
+                                end[0] = result;
+                            }
+                        });
+            }
+        });
+        Assert.assertEquals(100000, counter[0]);
+        Assert.assertNotNull(end[0]);
+        Assert.assertNull(end[0].exception());
+    }
 }
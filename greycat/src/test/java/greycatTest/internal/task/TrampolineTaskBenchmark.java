@@ -0,0 +1,99 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.task;
+
+import greycat.*;
+
+import static greycat.Tasks.newTask;
+import static greycat.internal.task.CoreActions.*;
+
+/**
+ * Measures the throughput of long synchronous task chains and of deep loops, executed by the trampoline of the task context.
+ */
+public class TrampolineTaskBenchmark {
+
+    public static void main(String[] args) {
+        final Graph g = new GraphBuilder().withMemorySize(1000000).build();
+        g.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final int times = 100000;
+                final int chainLength = 100000;
+                final int[] counter = new int[1];
+                final Task t = newTask();
+                t.then(createNode()).then(defineAsGlobalVar("point"));
+                t.thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        ctx.setGlobalVariable("before", System.currentTimeMillis());
+                        ctx.continueTask();
+                    }
+                });
+                //step insert
+                t.loop("0", "" + times, newTask().then(travelInTime("{{i}}")).thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        ctx.resultAsNodes().get(0).set("lat", Type.DOUBLE, ((Integer) ctx.variable("i").get(0)) + 10.5);
+                        ctx.continueTask();
+                    }
+                }));
+                t.thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        final long afterInsert = System.currentTimeMillis();
+                        final long before = (Long) ctx.variable("before").get(0);
+                        System.out.println("\tinsert " + times / ((afterInsert - before) / 1000d) + " ops/s");
+                        ctx.setGlobalVariable("afterInsert", afterInsert);
+                        ctx.continueTask();
+                    }
+                });
+                //step read
+                t.loop("0", "" + times, newTask().then(travelInTime("{{i}}")).then(attribute("lat")));
+                t.thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        final long afterRead = System.currentTimeMillis();
+                        final long before = (Long) ctx.variable("afterInsert").get(0);
+                        System.out.println("\tread " + times / ((afterRead - before) / 1000d) + " ops/s");
+                        ctx.setGlobalVariable("afterRead", afterRead);
+                        ctx.continueTask();
+                    }
+                });
+                //step synchronous chain, would not fit in the stack without the trampoline
+                for (int i = 0; i < chainLength; i++) {
+                    t.thenDo(new ActionFunction() {
+                        @Override
+                        public void eval(TaskContext ctx) {
+                            counter[0]++;
+                            ctx.continueTask();
+                        }
+                    });
+                }
+                t.thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        final long afterChain = System.currentTimeMillis();
+                        final long before = (Long) ctx.variable("afterRead").get(0);
+                        System.out.println("\tchain of " + counter[0] + " actions " + chainLength / ((afterChain - before) / 1000d) + " actions/s");
+                        ctx.continueTask();
+                    }
+                });
+                t.execute(g, null);
+            }
+        });
+    }
+
+}
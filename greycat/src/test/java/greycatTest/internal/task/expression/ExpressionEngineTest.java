@@ -0,0 +1,141 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.task.expression;
+
+import greycat.*;
+import greycat.internal.task.expression.CoreExpressionEngine;
+import greycat.internal.task.expression.ExpressionEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static greycat.Tasks.newTask;
+import static greycat.internal.task.CoreActions.*;
+
+/**
+ * @ignore ts
+ */
+public class ExpressionEngineTest {
+
+    @Test
+    public void operatorsTest() {
+        Assert.assertEquals(7, CoreExpressionEngine.compile("1 + 2 * 3").eval(null, null));
+        Assert.assertEquals(2.5, CoreExpressionEngine.compile("5 / 2").eval(null, null));
+        Assert.assertEquals(1, CoreExpressionEngine.compile("7 % 3").eval(null, null));
+        Assert.assertEquals(-4, CoreExpressionEngine.compile("-(1 + 3)").eval(null, null));
+        Assert.assertEquals("a1", CoreExpressionEngine.compile("'a' + 1").eval(null, null));
+        Assert.assertEquals("yes", CoreExpressionEngine.compile("2 > 1 && !(1 >= 2) ? 'yes' : 'no'").eval(null, null));
+        Assert.assertEquals(true, CoreExpressionEngine.compile("'5' == 5").eval(null, null));
+        Assert.assertEquals(false, CoreExpressionEngine.compile("'5' === 5").eval(null, null));
+        Assert.assertEquals(true, CoreExpressionEngine.compile("null == undefined || false").eval(null, null));
+        Assert.assertEquals(3, CoreExpressionEngine.compile("1; 2; 3;").eval(null, null));
+        Assert.assertTrue(CoreExpressionEngine.compile("'abc'.length == 3 && 'abc'.startsWith('a')").test(null, null));
+        Assert.assertFalse(CoreExpressionEngine.compile("''").test(null, null));
+        Assert.assertSame(CoreExpressionEngine.compile("1 + 2 * 3"), CoreExpressionEngine.compile("1 + 2 * 3"));
+    }
+
+    @Test
+    public void invalidTest() {
+        final String[] invalids = new String[]{"1 +", "(1", "'open", "a = 2", "1 2"};
+        for (int i = 0; i < invalids.length; i++) {
+            boolean failed = false;
+            try {
+                CoreExpressionEngine.compile(invalids[i]);
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+            Assert.assertTrue(invalids[i], failed);
+        }
+    }
+
+    @Test
+    public void sandboxTest() {
+        boolean failed = false;
+        try {
+            //no reflection, only a fixed set of members is reachable
+            CoreExpressionEngine.compile("'abc'.getClass()").eval(null, null);
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        Assert.assertTrue(failed);
+    }
+
+    @Test
+    public void nodeAndContextTest() {
+        final Graph graph = new GraphBuilder().build();
+        final Object[] results = new Object[5];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = graph.newNode(0, 0);
+                node.set("name", Type.STRING, "root");
+                node.set("value", Type.INT, 8);
+                newTask()
+                        .then(inject(new int[]{1, 2, 3}))
+                        .then(defineAsGlobalVar("array"))
+                        .thenDo(new ActionFunction() {
+                            @Override
+                            public void eval(TaskContext ctx) {
+                                results[0] = CoreExpressionEngine.compile("node.get('name') == 'root' && node.value > 5").test(ctx, node);
+                                results[1] = CoreExpressionEngine.compile("array.get(1) + array[2] + ctx.variable('array').size()").eval(ctx, node);
+                                results[2] = CoreExpressionEngine.compile("context.result().size()").eval(ctx, node);
+                                results[3] = CoreExpressionEngine.compile("ctx.setVariable('x', node.value * 2); x.get(0)").eval(ctx, node);
+                                CoreExpressionEngine.compile("print('v=' + node.value)").eval(ctx, node);
+                                ctx.continueTask();
+                            }
+                        })
+                        .execute(graph, new Callback<TaskResult>() {
+                            @Override
+                            public void on(TaskResult result) {
+                                results[4] = result.output();
+                            }
+                        });
+                node.free();
+            }
+        });
+        Assert.assertEquals(true, results[0]);
+        Assert.assertEquals(8, results[1]);
+        Assert.assertEquals(3, results[2]);
+        Assert.assertEquals(16, results[3]);
+        Assert.assertEquals("v=8\n", results[4]);
+    }
+
+    @Test
+    public void selectTest() {
+        final Graph graph = new GraphBuilder().build();
+        final int[] selected = new int[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node[] nodes = new Node[10];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = graph.newNode(0, 0);
+                    nodes[i].set("value", Type.INT, i);
+                }
+                newTask()
+                        .then(inject(nodes))
+                        .then(selectScript("node.value % 2 == 0 && node.value > 2"))
+                        .execute(graph, new Callback<TaskResult>() {
+                            @Override
+                            public void on(TaskResult result) {
+                                selected[0] = result.size();
+                            }
+                        });
+            }
+        });
+        Assert.assertEquals(3, selected[0]);
+    }
+
+}
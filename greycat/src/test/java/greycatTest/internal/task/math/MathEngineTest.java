@@ -84,6 +84,18 @@ public class MathEngineTest {
         });
     }
 
+    @Test
+    public void cacheTest() {
+        MathExpressionEngine engine = CoreMathExpressionEngine.parse("v*2+1");
+        Assert.assertSame(engine, CoreMathExpressionEngine.parse("v*2+1"));
+        //a shared engine does not keep any state from a previous evaluation
+        Map<String, Double> variables = new HashMap<String, Double>();
+        variables.put("v", 3.0);
+        Assert.assertTrue(engine.eval(null, null, variables) == 7);
+        variables.put("v", 5.0);
+        Assert.assertTrue(engine.eval(null, null, variables) == 11);
+    }
+
     @Test
     public void textMathEngineFromTask() {
         final Graph graph = new GraphBuilder().build();
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.utility;
+
+import greycat.Constants;
+import greycat.internal.heap.HeapBuffer;
+import greycat.struct.Buffer;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryFormatTest {
+
+    private static final long[] LONGS = new long[]{0, 1, -1, 63, -64, 64, 127, 128, 35, 0x23 << 7, Integer.MAX_VALUE, Integer.MIN_VALUE, Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME, Constants.NULL_LONG, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    private static final double[] DOUBLES = new double[]{0, -0.0, 1.5, -3.7, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.NEGATIVE_INFINITY, Double.longBitsToDouble(0x2323232323232323L), Math.PI, 0.1, 1e-300};
+
+    @Test
+    public void roundTripTest() {
+        final Buffer buffer = new HeapBuffer();
+        BinaryFormat.writeHeader(buffer);
+        for (int i = 0; i < LONGS.length; i++) {
+            BinaryFormat.writeVarLong(buffer, LONGS[i]);
+        }
+        for (int i = 0; i < DOUBLES.length; i++) {
+            BinaryFormat.writeDouble(buffer, DOUBLES[i]);
+        }
+        BinaryFormat.writeString(buffer, "hello #world# é世");
+        BinaryFormat.writeByte(buffer, BinaryFormat.ESCAPE);
+        BinaryFormat.writeVarInt(buffer, -42);
+        //the payload can be stored within a stream split on BUFFER_SEP
+        for (long i = 0; i < buffer.length(); i++) {
+            Assert.assertNotEquals(Constants.BUFFER_SEP, buffer.read(i));
+        }
+        Assert.assertTrue(BinaryFormat.isBinary(buffer));
+        final BinaryReader reader = new BinaryReader(buffer);
+        for (int i = 0; i < LONGS.length; i++) {
+            Assert.assertEquals(LONGS[i], reader.readVarLong());
+        }
+        for (int i = 0; i < DOUBLES.length; i++) {
+            Assert.assertEquals(Double.doubleToRawLongBits(DOUBLES[i]), Double.doubleToRawLongBits(reader.readDouble()));
+        }
+        Assert.assertEquals("hello #world# é世", reader.readString());
+        Assert.assertEquals(BinaryFormat.ESCAPE, reader.readByte());
+        Assert.assertEquals(-42, reader.readVarInt());
+        Assert.assertFalse(reader.hasNext());
+        buffer.free();
+    }
+
+    @Test
+    public void compactTest() {
+        final Buffer buffer = new HeapBuffer();
+        BinaryFormat.writeVarLong(buffer, 5);
+        BinaryFormat.writeVarLong(buffer, -5);
+        Assert.assertEquals(2, buffer.length());
+        buffer.free();
+    }
+
+    @Test
+    public void doubleSizeTest() {
+        final double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.random() * 1000;
+        }
+        final Buffer buffer = new HeapBuffer();
+        BinaryFormat.writeHeader(buffer);
+        for (int i = 0; i < values.length; i++) {
+            final long before = buffer.length();
+            BinaryFormat.writeDouble(buffer, values[i]);
+            //at most a tag and the raw value, not counting escaped bytes
+            long written = 0;
+            for (long j = before; j < buffer.length(); j++) {
+                if (buffer.read(j) != BinaryFormat.ESCAPE) {
+                    written++;
+                }
+            }
+            Assert.assertTrue(written <= 9);
+        }
+        final BinaryReader reader = new BinaryReader(buffer);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(reader.readDouble()));
+        }
+        Assert.assertFalse(reader.hasNext());
+        buffer.free();
+        //short mantissas remain compact
+        final Buffer small = new HeapBuffer();
+        BinaryFormat.writeDouble(small, 1.5);
+        Assert.assertEquals(3, small.length());
+        small.free();
+    }
+
+    /**
+     * @ignore ts
+     */
+    @Test
+    public void firstVersionTest() {
+        final Buffer buffer = new HeapBuffer();
+        buffer.write(BinaryFormat.MARKER);
+        buffer.write((byte) 1);
+        //version 1 doubles are plain varints of the reversed bits
+        BinaryFormat.writeUnsignedVarLong(buffer, Long.reverseBytes(Double.doubleToRawLongBits(Math.PI)));
+        final BinaryReader reader = new BinaryReader(buffer);
+        Assert.assertEquals(Math.PI, reader.readDouble(), 0);
+        buffer.free();
+    }
+
+    @Test
+    public void textIsNotBinaryTest() {
+        final Buffer buffer = new HeapBuffer();
+        buffer.writeAll("C|A:".getBytes());
+        Assert.assertFalse(BinaryFormat.isBinary(buffer));
+        buffer.free();
+    }
+
+    @Test
+    public void unknownVersionTest() {
+        final Buffer buffer = new HeapBuffer();
+        buffer.write(BinaryFormat.MARKER);
+        buffer.write((byte) (BinaryFormat.VERSION + 1));
+        boolean rejected = false;
+        try {
+            new BinaryReader(buffer);
+        } catch (RuntimeException e) {
+            rejected = true;
+        }
+        Assert.assertTrue(rejected);
+        buffer.free();
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.internal.utility;
+
+import greycat.Constants;
+import greycat.internal.heap.HeapBuffer;
+import greycat.struct.Buffer;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
+import greycat.utility.Gorilla;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GorillaTest {
+
+    @Test
+    public void regularTest() {
+        final int size = 1000;
+        final long[] times = new long[size];
+        final double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = 1000 + i * 60;
+            values[i] = 12.5;
+        }
+        final Buffer buffer = roundTrip(times, values, size);
+        //one bit for the time and one for the value of each point
+        Assert.assertTrue(buffer.length() < 2 + 10 + 10 + size / 4 + 4);
+        buffer.free();
+    }
+
+    @Test
+    public void irregularTest() {
+        final long[] times = new long[]{Constants.BEGINNING_OF_TIME, -5, 0, 1, 3, 100, 356, 2400, 2401, 1L << 40, Constants.END_OF_TIME, 0, -1};
+        final double[] values = new double[]{0, -0.0, 1.1, 1.1, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, -3.3, Double.POSITIVE_INFINITY, 1e-300, 42, 42.5, 0};
+        roundTrip(times, values, times.length).free();
+    }
+
+    @Test
+    public void emptyTest() {
+        roundTrip(new long[0], new double[0], 0).free();
+        roundTrip(new long[]{5}, new double[]{0.1}, 1).free();
+    }
+
+    private static Buffer roundTrip(final long[] times, final double[] values, final int size) {
+        final Buffer buffer = new HeapBuffer();
+        BinaryFormat.writeHeader(buffer);
+        Gorilla.encode(buffer, times, values, size);
+        for (long i = 0; i < buffer.length(); i++) {
+            Assert.assertNotEquals(Constants.BUFFER_SEP, buffer.read(i));
+        }
+        final long[] decodedTimes = new long[size];
+        final double[] decodedValues = new double[size];
+        final BinaryReader reader = new BinaryReader(buffer);
+        Gorilla.decode(reader, decodedTimes, decodedValues, size);
+        Assert.assertFalse(reader.hasNext());
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(times[i], decodedTimes[i]);
+            Assert.assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]));
+        }
+        return buffer;
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.scheduler;
+
+import greycat.ActionFunction;
+import greycat.Callback;
+import greycat.DeferCounterSync;
+import greycat.Graph;
+import greycat.GraphBuilder;
+import greycat.TaskContext;
+import greycat.TaskResult;
+import greycat.plugin.Job;
+import greycat.plugin.SchedulerAffinity;
+import greycat.scheduler.VirtualThreadScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static greycat.Tasks.newTask;
+
+/**
+ * @ignore ts
+ */
+public class VirtualThreadSchedulerTest {
+
+    @Test
+    public void blockingTest() throws InterruptedException {
+        final VirtualThreadScheduler scheduler = new VirtualThreadScheduler();
+        scheduler.start();
+        final int nbJobs = 500;
+        final CountDownLatch latch = new CountDownLatch(nbJobs);
+        final long before = System.currentTimeMillis();
+        for (int i = 0; i < nbJobs; i++) {
+            scheduler.dispatch(SchedulerAffinity.ANY_LOCAL_THREAD, new Job() {
+                @Override
+                public void run() {
+                    //simulates a blocking read of a storage
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        //jobs blocked concurrently rather than one pool size after the other
+        Assert.assertTrue(System.currentTimeMillis() - before < 5000);
+        scheduler.stop();
+    }
+
+    @Test
+    public void sameThreadTest() throws InterruptedException {
+        final VirtualThreadScheduler scheduler = new VirtualThreadScheduler();
+        scheduler.start();
+        final Thread[] threads = new Thread[3];
+        final int[] order = new int[2];
+        final AtomicInteger counter = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(2);
+        scheduler.dispatch(SchedulerAffinity.SAME_THREAD, new Job() {
+            @Override
+            public void run() {
+                threads[0] = Thread.currentThread();
+                scheduler.dispatch(SchedulerAffinity.SAME_THREAD, new Job() {
+                    @Override
+                    public void run() {
+                        threads[1] = Thread.currentThread();
+                        order[1] = counter.incrementAndGet();
+                        latch.countDown();
+                    }
+                });
+                scheduler.dispatch(SchedulerAffinity.OTHER_LOCAL_THREAD, new Job() {
+                    @Override
+                    public void run() {
+                        threads[2] = Thread.currentThread();
+                        latch.countDown();
+                    }
+                });
+                //trampolined, runs after this job
+                order[0] = counter.incrementAndGet();
+            }
+        });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(threads[0], threads[1]);
+        Assert.assertNotSame(threads[0], threads[2]);
+        Assert.assertEquals(1, order[0]);
+        Assert.assertEquals(2, order[1]);
+        scheduler.stop();
+    }
+
+    @Test
+    public void workersTest() {
+        final VirtualThreadScheduler scheduler = new VirtualThreadScheduler(4);
+        scheduler.start();
+        if (scheduler.isVirtual()) {
+            Assert.assertEquals(Runtime.getRuntime().availableProcessors(), scheduler.workers());
+        } else {
+            Assert.assertEquals(4, scheduler.workers());
+        }
+        scheduler.stop();
+    }
+
+    @Test
+    public void graphTest() {
+        final Graph g = new GraphBuilder().withScheduler(new VirtualThreadScheduler()).build();
+        final DeferCounterSync waiter = g.newSyncCounter(1);
+        final AtomicInteger counter = new AtomicInteger(0);
+        g.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                newTask().loopPar("0", "99", newTask().loop("0", "9", newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        counter.incrementAndGet();
+                        ctx.continueTask();
+                    }
+                }))).execute(g, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        g.disconnect(new Callback<Boolean>() {
+                            @Override
+                            public void on(Boolean result) {
+                                waiter.count();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        waiter.waitResult();
+        Assert.assertEquals(1000, counter.get());
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycatTest.scheduler;
+
+import greycat.ActionFunction;
+import greycat.Callback;
+import greycat.DeferCounterSync;
+import greycat.Graph;
+import greycat.GraphBuilder;
+import greycat.TaskContext;
+import greycat.TaskResult;
+import greycat.plugin.Job;
+import greycat.plugin.SchedulerAffinity;
+import greycat.scheduler.WorkStealingScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static greycat.Tasks.newTask;
+
+/**
+ * @ignore ts
+ */
+public class WorkStealingSchedulerTest {
+
+    @Test
+    public void dispatchTest() throws InterruptedException {
+        final WorkStealingScheduler scheduler = new WorkStealingScheduler(4);
+        scheduler.start();
+        Assert.assertEquals(4, scheduler.workers());
+        final int nbJobs = 10000;
+        final CountDownLatch latch = new CountDownLatch(nbJobs);
+        for (int i = 0; i < nbJobs; i++) {
+            scheduler.dispatch(SchedulerAffinity.ANY_LOCAL_THREAD, new Job() {
+                @Override
+                public void run() {
+                    //fan out from a worker, half of the jobs are pushed on its own deque
+                    if (latch.getCount() % 2 == 0) {
+                        scheduler.dispatch(SchedulerAffinity.ANY_LOCAL_THREAD, new Job() {
+                            @Override
+                            public void run() {
+                                latch.countDown();
+                            }
+                        });
+                    } else {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        scheduler.stop();
+    }
+
+    @Test
+    public void affinityTest() throws InterruptedException {
+        final WorkStealingScheduler scheduler = new WorkStealingScheduler(2);
+        scheduler.start();
+        final Thread[] threads = new Thread[3];
+        final CountDownLatch latch = new CountDownLatch(2);
+        scheduler.dispatch(SchedulerAffinity.ANY_LOCAL_THREAD, new Job() {
+            @Override
+            public void run() {
+                threads[0] = Thread.currentThread();
+                scheduler.dispatch(SchedulerAffinity.SAME_THREAD, new Job() {
+                    @Override
+                    public void run() {
+                        threads[1] = Thread.currentThread();
+                        latch.countDown();
+                    }
+                });
+                scheduler.dispatch(SchedulerAffinity.OTHER_LOCAL_THREAD, new Job() {
+                    @Override
+                    public void run() {
+                        threads[2] = Thread.currentThread();
+                        latch.countDown();
+                    }
+                });
+                //block this worker so that the job dispatched to the other one cannot be taken back
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(threads[0], threads[1]);
+        Assert.assertNotSame(threads[0], threads[2]);
+        scheduler.stop();
+    }
+
+    @Test
+    public void graphTest() {
+        final Graph g = new GraphBuilder().withScheduler(new WorkStealingScheduler(4)).build();
+        final DeferCounterSync waiter = g.newSyncCounter(1);
+        final AtomicInteger counter = new AtomicInteger(0);
+        g.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                newTask().loopPar("0", "99", newTask().loop("0", "9", newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        counter.incrementAndGet();
+                        ctx.continueTask();
+                    }
+                }))).execute(g, new Callback<TaskResult>() {
+                    @Override
+                    public void on(TaskResult result) {
+                        g.disconnect(new Callback<Boolean>() {
+                            @Override
+                            public void on(Boolean result) {
+                                waiter.count();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        waiter.waitResult();
+        Assert.assertEquals(1000, counter.get());
+    }
+
+}
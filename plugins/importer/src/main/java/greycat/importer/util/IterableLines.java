@@ -15,150 +15,74 @@
  */
 package greycat.importer.util;
 
-import greycat.base.BaseTaskResult;
-import greycat.TaskResult;
-import greycat.TaskResultIterator;
-import greycat.utility.Tuple;
+import greycat.base.StreamCursor;
+import greycat.base.StreamTaskResult;
 
 import java.io.*;
 
-public class IterableLines extends BaseTaskResult<String> {
+/**
+ * Lines of a file, or of a class path resource, lazily read by bounded batches.
+ */
+public class IterableLines extends StreamTaskResult<String> {
 
     private final String _path;
 
-    private Reader reader = null;
-    private BufferedReader bufferedReader = null;
-
     public IterableLines(String p_path) {
-        super(null, false);
+        this(p_path, DEFAULT_BUFFER_SIZE);
+    }
+
+    public IterableLines(String p_path, int p_bufferSize) {
+        super(p_bufferSize);
         this._path = p_path;
     }
 
     @Override
-    public TaskResultIterator iterator() {
-        bufferedReader = null;
+    protected StreamCursor open() {
+        BufferedReader opened = null;
         try {
             File openFile = new File(_path);
             if (openFile.exists()) {
-                reader = new FileReader(openFile);
+                opened = new BufferedReader(new FileReader(openFile));
             } else {
-                reader = new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream(_path));
+                opened = new BufferedReader(new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream(_path)));
             }
-            bufferedReader = new BufferedReader(reader);
         } catch (Exception e) {
             e.printStackTrace();
         }
-        final BufferedReader final_buffer = bufferedReader;
-        return new TaskResultIterator() {
-
-            private int _i = 0;
-
+        final BufferedReader bufferedReader = opened;
+        return new StreamCursor() {
             @Override
-            public synchronized Object next() {
-                _i++;
+            public int pull(Object[] buffer) {
+                if (bufferedReader == null) {
+                    return 0;
+                }
+                int nbLines = 0;
                 try {
-                    String line = final_buffer.readLine();
-                    if (line == null) {
-                        final_buffer.close();
+                    while (nbLines < buffer.length) {
+                        String line = bufferedReader.readLine();
+                        if (line == null) {
+                            break;
+                        }
+                        buffer[nbLines] = line;
+                        nbLines++;
                     }
-                    return line;
                 } catch (IOException e) {
                     e.printStackTrace();
-                    return null;
-                }
-            }
-
-            @Override
-            public final synchronized boolean hasNext() {
-                try {
-                    return final_buffer.ready();
-                } catch (Throwable e) {
-                    //e.printStackTrace();
-                    return false;
                 }
+                return nbLines;
             }
 
             @Override
-            public synchronized Tuple nextWithIndex() {
-                final int c_i = _i;
-                _i++;
-                try {
-                    String line = final_buffer.readLine();
-                    if (line == null) {
-                        final_buffer.close();
-                        return null;
-                    } else {
-                        return new Tuple(c_i, line);
+            public void close() {
+                if (bufferedReader != null) {
+                    try {
+                        bufferedReader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    return null;
                 }
             }
         };
     }
 
-    @Override
-    public String get(int index) {
-        return null;
-    }
-
-    @Override
-    public TaskResult<String> set(int index, String input) {
-        return null;
-    }
-
-    @Override
-    public TaskResult<String> allocate(int index) {
-        return null;
-    }
-
-    @Override
-    public TaskResult<String> add(String input) {
-        return null;
-    }
-
-    @Override
-    public TaskResult<String> clear() {
-        return null;
-    }
-
-    @Override
-    public TaskResult<String> clone() {
-        return null;
-    }
-
-    @Override
-    public void free() {
-        if(bufferedReader != null){
-            try {
-                bufferedReader.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        if(reader != null){
-            try {
-                reader.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    @Override
-    public int size() {
-        return -1;
-    }
-
-    @Override
-    public Object[] asArray() {
-        return new Object[0];
-    }
-
-    @Override
-    public TaskResult<String> fillWith(TaskResult<String> source) {
-        return null;
-    }
-
 }
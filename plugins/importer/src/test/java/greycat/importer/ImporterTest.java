@@ -22,11 +22,14 @@ import greycat.importer.ImporterActions;
 import greycat.importer.ImporterPlugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
@@ -71,6 +74,27 @@ public class ImporterTest {
         });
     }
 
+    @Test
+    public void testReadLinesCount() throws IOException {
+        final String path = this.getClass().getClassLoader().getResource("smarthome/smarthome_1.T15.csv").getPath();
+        final int expected = Files.readAllLines(Paths.get(path)).size();
+        final Graph g = new GraphBuilder().withPlugin(new ImporterPlugin()).build();
+        g.connect(null);
+        final int[] nbLines = new int[1];
+        newTask()
+                .then(readLines(path))
+                .forEach(newTask().thenDo(new ActionFunction() {
+                    @Override
+                    public void eval(TaskContext ctx) {
+                        nbLines[0]++;
+                        ctx.continueTask();
+                    }
+                }))
+                .execute(g, null);
+        Assert.assertEquals(expected, nbLines[0]);
+        g.disconnect(null);
+    }
+
     @Test
     public void testReadFilesStaticMethod() {
         File fileChecked = new File(this.getClass().getClassLoader().getResource("smarthome").getPath());
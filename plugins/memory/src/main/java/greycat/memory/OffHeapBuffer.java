@@ -16,6 +16,7 @@
 package greycat.memory;
 
 import greycat.Constants;
+import greycat.memory.primary.POffHeapAllocator;
 import greycat.memory.primary.POffHeapByteArray;
 import greycat.struct.Buffer;
 import greycat.struct.BufferIterator;
@@ -31,9 +32,7 @@ class OffHeapBuffer implements Buffer {
     public byte[] slice(long initPos, long endPos) {
         int newSize = (int) (endPos - initPos + 1);
         byte[] result = new byte[newSize];
-        for (int i = 0; i < newSize; i++) {
-            result[i] = POffHeapByteArray.get(bufferPtr, i + initPos);
-        }
+        POffHeapByteArray.copyToArray(bufferPtr, initPos, result, newSize);
         return result;
     }
 
@@ -41,7 +40,7 @@ class OffHeapBuffer implements Buffer {
     public void write(byte b) {
         if (bufferPtr == OffHeapConstants.NULL_PTR) {
             capacity = Constants.MAP_INITIAL_CAPACITY;
-            bufferPtr = POffHeapByteArray.allocate(capacity);
+            bufferPtr = POffHeapByteArray.allocate(POffHeapAllocator.shared(), capacity);
             POffHeapByteArray.set(bufferPtr, writeCursor, b);
             writeCursor++;
         } else if (writeCursor == capacity) {
@@ -60,7 +59,7 @@ class OffHeapBuffer implements Buffer {
     public void writeAll(byte[] bytes) {
         if (bufferPtr == OffHeapConstants.NULL_PTR) {
             capacity = getNewSize(Constants.MAP_INITIAL_CAPACITY, bytes.length);
-            bufferPtr = POffHeapByteArray.allocate(capacity);
+            bufferPtr = POffHeapByteArray.allocate(POffHeapAllocator.shared(), capacity);
             POffHeapByteArray.copyArray(bytes, bufferPtr, writeCursor, bytes.length);
             writeCursor = bytes.length;
         } else if (writeCursor + bytes.length > capacity) {
@@ -97,8 +96,8 @@ class OffHeapBuffer implements Buffer {
     @Override
     public byte[] data() {
         byte[] result = new byte[(int) writeCursor];
-        for (long i = 0; i < writeCursor; i++) {
-            result[(int) i] = POffHeapByteArray.get(bufferPtr, i);
+        if (writeCursor > 0) {
+            POffHeapByteArray.copyToArray(bufferPtr, 0, result, (int) writeCursor);
         }
         return result;
     }
@@ -124,8 +123,8 @@ class OffHeapBuffer implements Buffer {
     }
 
     @Override
-    public void removeLast() {
-        writeCursor--;
+    public long writeIndex() {
+        return writeCursor;
     }
 
     private long getNewSize(long old, long target) {
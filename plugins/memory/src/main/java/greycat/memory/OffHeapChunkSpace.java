@@ -17,33 +17,46 @@ package greycat.memory;
 
 import greycat.Callback;
 import greycat.Constants;
+import greycat.DeferCounter;
 import greycat.Graph;
-import greycat.chunk.Chunk;
-import greycat.chunk.ChunkSpace;
-import greycat.chunk.ChunkType;
-import greycat.chunk.Stack;
+import greycat.chunk.*;
+import greycat.memory.primary.POffHeapAllocator;
+import greycat.memory.primary.POffHeapArena;
 import greycat.memory.primary.POffHeapByteArray;
 import greycat.memory.primary.POffHeapLongArray;
+import greycat.plugin.Job;
 import greycat.struct.Buffer;
 import greycat.struct.BufferIterator;
-import greycat.struct.EGraph;
-import greycat.utility.HashHelper;
-import greycat.utility.KeyHelper;
+import greycat.struct.EStructArray;
+import greycat.utility.*;
 
-import static greycat.Constants.BUFFER_SEP;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Chunk space keeping every chunk, as well as its own bookkeeping, out of the Java heap.
+ * Chunks are flyweights over native segments, so that the size of the cache does not impact garbage collection pauses.
+ * Each entry is protected by a reentrant spin lock owned by a thread, nested structures lock the entry of their chunk.
+ * Segments of the chunks are allocated from the arena of the space, which every chunk passes explicitly to its allocations.
+ */
 class OffHeapChunkSpace implements ChunkSpace {
 
     private static final long HASH_LOAD_FACTOR = 4;
 
+    private static final long FREE = -1;
+
     private final long _maxEntries;
+    private final long _batchSize;
     private final long _hashEntries;
+    private final boolean _deep_priority;
 
     private final Stack _lru;
     private final Stack _dirtiesStack;
     private final Graph _graph;
 
     private final long locks;
+    private final long lockDepths;
     private final long hashNext;
     private final long hash;
     private final long worlds;
@@ -53,110 +66,223 @@ class OffHeapChunkSpace implements ChunkSpace {
     private final long marks;
     private final long addrs;
 
+    /**
+     * Listeners are Java objects, they are attached to the index of their world order chunk.
+     */
+    private final ConcurrentHashMap<Long, Listeners> _listeners = new ConcurrentHashMap<Long, Listeners>();
+
+    private boolean _binaryFormat = false;
+
+    private Interceptor[] _interceptors;
+
+    private volatile POffHeapArena _arena;
+
+    /**
+     * Creates an off-heap chunk space.
+     *
+     * @param initialCapacity   maximum number of chunks kept in memory
+     * @param batchSize         maximum number of chunks saved per partial save, -1 for unbounded
+     * @param p_graph           the graph owning this space
+     * @param deepWorldPriority hashing strategy, see {@link Constants#DEEP_WORLD}
+     * @param evictionPolicy    strategy used to select victims, see {@link EvictionPolicy}
+     * @param slabSize          size in bytes of the slabs of the arena of the space, see {@link POffHeapArena}
+     */
+    OffHeapChunkSpace(final long initialCapacity, final long batchSize, final Graph p_graph, final boolean deepWorldPriority, final byte evictionPolicy, final long slabSize) {
+        _interceptors = null;
+        _arena = POffHeapAllocator.newArena(slabSize);
+        _graph = p_graph;
+        _batchSize = batchSize;
+        _deep_priority = deepWorldPriority;
+        _maxEntries = initialCapacity;
+        _hashEntries = initialCapacity * HASH_LOAD_FACTOR;
+        locks = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        lockDepths = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        hashNext = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        hash = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _hashEntries);
+        addrs = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        worlds = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        times = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        ids = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        types = POffHeapByteArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        marks = POffHeapLongArray.allocate(POffHeapAllocator.shared(), _maxEntries);
+        POffHeapLongArray.fillLong(marks, 0, _maxEntries, 0);
+        POffHeapLongArray.fillLong(lockDepths, 0, _maxEntries, 0);
+        switch (evictionPolicy) {
+            case EvictionPolicy.CLOCK:
+                _lru = new OffHeapClockStack(initialCapacity, true);
+                break;
+            case EvictionPolicy.SEGMENTED_LRU:
+                _lru = new OffHeapSegmentedStack(initialCapacity, true, types);
+                break;
+            default:
+                _lru = new OffHeapFixedStack(initialCapacity, true);
+        }
+        _dirtiesStack = new OffHeapFixedStack(initialCapacity, false);
+    }
+
     @Override
     public final Graph graph() {
         return this._graph;
     }
 
-    final long worldByIndex(long index) {
+    final long worldByIndex(final long index) {
         return POffHeapLongArray.get(worlds, index);
     }
 
-    final long timeByIndex(long index) {
+    final long timeByIndex(final long index) {
         return POffHeapLongArray.get(times, index);
     }
 
-    final long idByIndex(long index) {
+    final long idByIndex(final long index) {
         return POffHeapLongArray.get(ids, index);
     }
 
-    final long addrByIndex(long index) {
+    final long addrByIndex(final long index) {
         return POffHeapLongArray.get(addrs, index);
     }
 
-    final void setAddrByIndex(long index, long addr) {
+    final void setAddrByIndex(final long index, final long addr) {
         POffHeapLongArray.set(addrs, index, addr);
     }
 
+    /**
+     * Locks a chunk, a thread already owning the lock only increases its depth.
+     */
     final void lockByIndex(final long index) {
-        while (!POffHeapLongArray.compareAndSwap(locks, index, -1, 1)) ;
+        final long threadId = Thread.currentThread().getId();
+        if (POffHeapLongArray.get(locks, index) == threadId) {
+            POffHeapLongArray.set(lockDepths, index, POffHeapLongArray.get(lockDepths, index) + 1);
+            return;
+        }
+        while (!POffHeapLongArray.compareAndSwap(locks, index, FREE, threadId)) {
+            Thread.yield();
+        }
+        POffHeapLongArray.set(lockDepths, index, 1);
     }
 
     final void unlockByIndex(final long index) {
-        if (!POffHeapLongArray.compareAndSwap(locks, index, 1, -1)) {
-            System.out.println("CAS error !!!");
+        final long depth = POffHeapLongArray.get(lockDepths, index) - 1;
+        POffHeapLongArray.set(lockDepths, index, depth);
+        if (depth == 0) {
+            if (!POffHeapLongArray.compareAndSwap(locks, index, Thread.currentThread().getId(), FREE)) {
+                throw new RuntimeException("Bad API usage: chunk " + index + " unlocked by a thread not owning it");
+            }
         }
     }
 
-    OffHeapChunkSpace(final long initialCapacity, final Graph p_graph) {
-        _graph = p_graph;
-        _maxEntries = initialCapacity;
-        _hashEntries = initialCapacity * HASH_LOAD_FACTOR;
-        _lru = new OffHeapFixedStack(initialCapacity, true);
-        _dirtiesStack = new OffHeapFixedStack(initialCapacity, false);
-        locks = POffHeapLongArray.allocate(initialCapacity);
-        hashNext = POffHeapLongArray.allocate(initialCapacity);
-        hash = POffHeapLongArray.allocate(_hashEntries);
-        addrs = POffHeapLongArray.allocate(initialCapacity);
-        worlds = POffHeapLongArray.allocate(_maxEntries);
-        times = POffHeapLongArray.allocate(_maxEntries);
-        ids = POffHeapLongArray.allocate(_maxEntries);
-        types = POffHeapByteArray.allocate(_maxEntries);
-        marks = POffHeapLongArray.allocate(_maxEntries);
-        for (long i = 0; i < _maxEntries; i++) {
-            POffHeapLongArray.set(marks, i, 0);
+    final Listeners listenersByIndex(final long index, final boolean createIfAbsent) {
+        Listeners result = _listeners.get(index);
+        if (result == null && createIfAbsent) {
+            final Listeners created = new Listeners();
+            result = _listeners.putIfAbsent(index, created);
+            if (result == null) {
+                result = created;
+            }
         }
+        return result;
     }
 
-    @Override
-    public final void freeAll() {
-        _lru.free();
-        _dirtiesStack.free();
-        POffHeapLongArray.free(hashNext);
-        POffHeapLongArray.free(hash);
-        POffHeapLongArray.free(addrs);
-        POffHeapLongArray.free(worlds);
-        POffHeapLongArray.free(times);
-        POffHeapLongArray.free(ids);
-        POffHeapByteArray.free(types);
-        POffHeapLongArray.free(marks);
-        POffHeapLongArray.free(locks);
+    /**
+     * Selects the encoding used by chunks on save, payloads of both encodings are always readable.
+     *
+     * @param binaryFormat true to save with {@link greycat.utility.BinaryFormat}, false for the Base64 text encoding
+     */
+    final void setBinaryFormat(final boolean binaryFormat) {
+        this._binaryFormat = binaryFormat;
     }
 
-    @Override
-    public final Chunk getAndMark(final byte type, final long world, final long time, final long id) {
-        final long index = HashHelper.tripleHash(type, world, time, id, this._hashEntries);
-        long m = POffHeapLongArray.get(hash, index);
-        long found = -1;
+    /**
+     * @return true if chunks are saved with {@link greycat.utility.BinaryFormat}
+     */
+    public final boolean binaryFormat() {
+        return _binaryFormat;
+    }
+
+    private long hashOf(final byte type, final long world, final long time, final long id) {
+        if (_deep_priority) {
+            return HashHelper.tripleHash(type, world, time, id, this._hashEntries);
+        } else {
+            return HashHelper.simpleTripleHash(type, world, time, id, this._hashEntries);
+        }
+    }
+
+    private long find(final byte type, final long world, final long time, final long id) {
+        long m = POffHeapLongArray.get(hash, hashOf(type, world, time, id));
         while (m != -1) {
             if (POffHeapByteArray.get(types, m) == type
                     && POffHeapLongArray.get(worlds, m) == world
                     && POffHeapLongArray.get(times, m) == time
                     && POffHeapLongArray.get(ids, m) == id) {
-                if (mark(m) > 0) {
-                    found = m;
-                }
-                break;
-            } else {
-                m = POffHeapLongArray.get(hashNext, m);
+                return m;
             }
+            m = POffHeapLongArray.get(hashNext, m);
         }
-        if (found != -1) {
-            return get(found);
-        } else {
+        return -1;
+    }
+
+    @Override
+    public final Chunk getAndMark(final byte type, final long world, final long time, final long id) {
+        boolean valid = true;
+        if (_interceptors != null) {
+            for (int i = 0; i < _interceptors.length && valid; i++) {
+                valid = _interceptors[i].preChunkRead(type, world, time, id);
+            }
+        }
+        if (!valid) {
+            return null;
+        }
+        final long m = find(type, world, time, id);
+        if (m == -1 || mark(m) <= 0) {
+            return null;
+        }
+        final Chunk result = internal_get(m);
+        if (result == null) {
+            unmark(m);
+        } else if (!result.inSync()) {
+            //cache is out of sync, force refresh
+            unmark(m);
             return null;
         }
+        return result;
     }
 
     @Override
     public final Chunk get(final long index) {
-        switch (POffHeapByteArray.get(types, index)) {
+        if (index == -1) {
+            return null;
+        }
+        boolean valid = true;
+        if (_interceptors != null) {
+            for (int i = 0; i < _interceptors.length && valid; i++) {
+                valid = _interceptors[i].preChunkRead(POffHeapByteArray.get(types, index), POffHeapLongArray.get(worlds, index), POffHeapLongArray.get(times, index), POffHeapLongArray.get(ids, index));
+            }
+        }
+        if (!valid) {
+            return null;
+        }
+        return internal_get(index);
+    }
+
+    private Chunk internal_get(final long index) {
+        if (POffHeapLongArray.get(addrs, index) == OffHeapConstants.NULL_PTR) {
+            //never created or deleted
+            return null;
+        }
+        return newChunk(POffHeapByteArray.get(types, index), index);
+    }
+
+    private Chunk newChunk(final byte type, final long index) {
+        switch (type) {
             case ChunkType.STATE_CHUNK:
                 return new OffHeapStateChunk(this, index);
             case ChunkType.WORLD_ORDER_CHUNK:
                 return new OffHeapWorldOrderChunk(this, index);
             case ChunkType.TIME_TREE_CHUNK:
                 return new OffHeapTimeTreeChunk(this, index);
+            case ChunkType.SUPER_TIME_TREE_CHUNK:
+                return new OffHeapSuperTimeTreeChunk(this, index);
+            case ChunkType.TIME_TREE_DVALUE_CHUNK:
+                return new OffHeapTimeTreeDValueChunk(this, index);
             case ChunkType.GEN_CHUNK:
                 return new OffHeapGenChunk(this, POffHeapLongArray.get(ids, index), index);
         }
@@ -174,13 +300,16 @@ class OffHeapChunkSpace implements ChunkSpace {
             graph().storage().get(keys, new Callback<Buffer>() {
                 @Override
                 public void on(final Buffer result) {
+                    keys.free();
                     if (result != null && result.length() > 0) {
                         Chunk loadedChunk = createAndMark(type, world, time, id);
                         loadedChunk.load(result);
                         result.free();
                         callback.on(loadedChunk);
                     } else {
-                        keys.free();
+                        if (result != null) {
+                            result.free();
+                        }
                         callback.on(null);
                     }
                 }
@@ -207,10 +336,9 @@ class OffHeapChunkSpace implements ChunkSpace {
                         reverse = new int[querySize];
                         toLoadKeys = graph().newBuffer();
                     }
-//                    reverse[i] = reverseIndex;
                     reverse[reverseIndex] = i;
                     if (reverseIndex != 0) {
-                        toLoadKeys.write(BUFFER_SEP);
+                        toLoadKeys.write(Constants.BUFFER_SEP);
                     }
                     KeyHelper.keyToBuffer(toLoadKeys, (byte) keys[offset], keys[offset + 1], keys[offset + 2], keys[offset + 3]);
                     reverseIndex++;
@@ -221,13 +349,15 @@ class OffHeapChunkSpace implements ChunkSpace {
         }
         if (reverse != null) {
             final int[] finalReverse = reverse;
+            final Buffer finalKeys = toLoadKeys;
             graph().storage().get(toLoadKeys, new Callback<Buffer>() {
                 @Override
                 public void on(final Buffer loadAllResult) {
+                    finalKeys.free();
                     BufferIterator it = loadAllResult.iterator();
                     int i = 0;
                     while (it.hasNext()) {
-                        Buffer view = it.next();
+                        final Buffer view = it.next();
                         int reversedIndex = finalReverse[i];
                         int reversedOffset = reversedIndex * Constants.KEY_SIZE;
                         if (view.length() > 0) {
@@ -276,7 +406,7 @@ class OffHeapChunkSpace implements ChunkSpace {
             if (before > 0) {
                 after = before - 1;
             } else {
-                System.err.println("WARNING: DOUBLE UNMARK");
+                System.err.println("WARNING: DOUBLE UNMARK " + POffHeapByteArray.get(types, index));
                 after = before;
             }
         } while (!POffHeapLongArray.compareAndSwap(marks, index, before, after));
@@ -287,22 +417,46 @@ class OffHeapChunkSpace implements ChunkSpace {
     }
 
     @Override
-    public final void free(Chunk chunk) {
-        freeByIndex(chunk.index());
+    public final synchronized void delete(final byte type, final long world, final long time, final long id) {
+        final long found = find(type, world, time, id);
+        if (found != -1) {
+            _dirtiesStack.dequeue(found);
+            lockByIndex(found);
+            try {
+                freeByIndex(found);
+            } finally {
+                unlockByIndex(found);
+            }
+        }
+    }
+
+    @Override
+    public final void free(final Chunk chunk) {
+        //NOOP, segments are released on eviction
     }
 
-    private void freeByIndex(long index) {
+    private void freeByIndex(final long index) {
         final long rawValue = POffHeapLongArray.get(addrs, index);
+        if (rawValue == OffHeapConstants.NULL_PTR) {
+            return;
+        }
         switch (POffHeapByteArray.get(types, index)) {
             case ChunkType.STATE_CHUNK:
-                OffHeapStateChunk.free(rawValue, this);
+                OffHeapStateChunk.free(rawValue);
                 break;
             case ChunkType.WORLD_ORDER_CHUNK:
                 OffHeapWorldOrderChunk.free(rawValue);
+                _listeners.remove(index);
                 break;
             case ChunkType.TIME_TREE_CHUNK:
                 OffHeapTimeTreeChunk.free(rawValue);
                 break;
+            case ChunkType.SUPER_TIME_TREE_CHUNK:
+                OffHeapSuperTimeTreeChunk.free(rawValue);
+                break;
+            case ChunkType.TIME_TREE_DVALUE_CHUNK:
+                OffHeapTimeTreeDValueChunk.free(rawValue);
+                break;
             case ChunkType.GEN_CHUNK:
                 OffHeapGenChunk.free(rawValue);
                 break;
@@ -312,17 +466,18 @@ class OffHeapChunkSpace implements ChunkSpace {
 
     @Override
     public final synchronized Chunk createAndMark(final byte type, final long world, final long time, final long id) {
-        //first mark the object
-        long entry = -1;
-        long hashIndex = HashHelper.tripleHash(type, world, time, id, this._hashEntries);
-        long m = POffHeapLongArray.get(hash, hashIndex);
-        while (m >= 0) {
-            if (type == POffHeapByteArray.get(types, m) && world == POffHeapLongArray.get(worlds, m) && time == POffHeapLongArray.get(times, m) && id == POffHeapLongArray.get(ids, m)) {
-                entry = m;
-                break;
+        boolean valid = true;
+        if (_interceptors != null) {
+            for (int i = 0; i < _interceptors.length && valid; i++) {
+                valid = _interceptors[i].preChunkCreate(type, world, time, id);
             }
-            m = POffHeapLongArray.get(hashNext, m);
         }
+        if (!valid) {
+            return null;
+        }
+        //first mark the object
+        final long hashIndex = hashOf(type, world, time, id);
+        final long entry = find(type, world, time, id);
         if (entry != -1) {
             long previous;
             long after;
@@ -335,7 +490,11 @@ class OffHeapChunkSpace implements ChunkSpace {
                 }
             } while (!POffHeapLongArray.compareAndSwap(marks, entry, previous, after));
             if (after == (previous + 1)) {
-                return get(entry);
+                if (previous == 0) {
+                    this._lru.dequeue(entry);
+                }
+                //a deleted chunk is created again in place
+                return newChunk(type, entry);
             }
         }
         long currentVictimIndex = -1;
@@ -350,74 +509,93 @@ class OffHeapChunkSpace implements ChunkSpace {
             }
         }
         if (currentVictimIndex == -1) {
-            throw new RuntimeException("mwDB crashed, cache is full, please avoid to much retention of nodes or augment cache capacity! available:" + available());
+            throw new RuntimeException("GreyCat crashed, cache is full, please avoid to much retention of nodes or augment cache capacity! available:" + available());
         }
-        if (POffHeapLongArray.get(addrs, currentVictimIndex) != OffHeapConstants.NULL_PTR) {
+        if (POffHeapByteArray.get(types, currentVictimIndex) != -1 || POffHeapLongArray.get(addrs, currentVictimIndex) != OffHeapConstants.NULL_PTR) {
             final long victimWorld = POffHeapLongArray.get(worlds, currentVictimIndex);
             final long victimTime = POffHeapLongArray.get(times, currentVictimIndex);
             final long victimObj = POffHeapLongArray.get(ids, currentVictimIndex);
             final byte victimType = POffHeapByteArray.get(types, currentVictimIndex);
-            final long indexVictim = HashHelper.tripleHash(victimType, victimWorld, victimTime, victimObj, this._hashEntries);
-            m = POffHeapLongArray.get(hash, indexVictim);
+            final long indexVictim = hashOf(victimType, victimWorld, victimTime, victimObj);
+            long m = POffHeapLongArray.get(hash, indexVictim);
             long last = -1;
             while (m >= 0) {
-                if (victimType == POffHeapByteArray.get(types, m) && victimWorld == POffHeapLongArray.get(worlds, m) && victimTime == POffHeapLongArray.get(times, m) && victimObj == POffHeapLongArray.get(ids, m)) {
+                if (m == currentVictimIndex) {
                     break;
                 }
                 last = m;
                 m = POffHeapLongArray.get(hashNext, m);
             }
             //POP THE VALUE FROM THE NEXT LIST
-            if (last == -1) {
-                long previousNext = POffHeapLongArray.get(hashNext, m);
-                POffHeapLongArray.set(hash, indexVictim, previousNext);
-            } else {
-                if (m == -1) {
-                    POffHeapLongArray.set(hashNext, last, -1);
+            if (m != -1) {
+                if (last == -1) {
+                    POffHeapLongArray.set(hash, indexVictim, POffHeapLongArray.get(hashNext, m));
                 } else {
                     POffHeapLongArray.set(hashNext, last, POffHeapLongArray.get(hashNext, m));
                 }
+                POffHeapLongArray.set(hashNext, m, -1);
             }
-            POffHeapLongArray.set(hashNext, m, -1);
             freeByIndex(currentVictimIndex);
         }
-        //will be registered by the chunk itself
-        POffHeapLongArray.set(marks, currentVictimIndex, 1);
         POffHeapByteArray.set(types, currentVictimIndex, type);
         POffHeapLongArray.set(worlds, currentVictimIndex, world);
         POffHeapLongArray.set(times, currentVictimIndex, time);
         POffHeapLongArray.set(ids, currentVictimIndex, id);
+        final Chunk toInsert = newChunk(type, currentVictimIndex);
+        POffHeapLongArray.set(marks, currentVictimIndex, 1);
         //negociate the lock to write on hashIndex
         POffHeapLongArray.set(hashNext, currentVictimIndex, POffHeapLongArray.get(hash, hashIndex));
         POffHeapLongArray.set(hash, hashIndex, currentVictimIndex);
-        //free the lock
-        return get(currentVictimIndex);
+        return toInsert;
     }
 
     @Override
-    public void notifyUpdate(long index) {
+    public final void notifyUpdate(final long index) {
         if (_dirtiesStack.enqueue(index)) {
             mark(index);
         }
     }
 
     @Override
-    public synchronized void save(final Callback<Boolean> callback) {
-        final Buffer stream = this._graph.newBuffer();
+    public final synchronized void save(final boolean silent, final boolean partial, final LMap filter, final Callback<Buffer> callback) {
+        java.util.Map<Long, Tuple<Listeners, LArray>> events = null;
+        Buffer stream = this._graph.newBuffer();
+        List<Buffer> stacked = null;
         boolean isFirst = true;
-        while (_dirtiesStack.size() != 0) {
-            long tail = _dirtiesStack.dequeueTail();
+        int counter = 0;
+        while (_dirtiesStack.size() != 0 && (!partial || _batchSize == -1 || counter <= _batchSize)) {
+            final long tail = _dirtiesStack.dequeueTail();
+            counter++;
+            if (filter != null && !filter.contains(POffHeapLongArray.get(ids, tail))) {
+                _dirtiesStack.enqueue(tail);
+                continue;
+            }
+            if (stream.length() > (100 * 1024 * 1024)) {
+                if (stacked == null) {
+                    stacked = new ArrayList<Buffer>();
+                }
+                stacked.add(stream);
+                stream = this._graph.newBuffer();
+                isFirst = true;
+            }
             //Save chunk Key
             if (isFirst) {
                 isFirst = false;
             } else {
-                stream.write(BUFFER_SEP);
+                stream.write(Constants.BUFFER_SEP);
+            }
+            final long chunkId = POffHeapLongArray.get(ids, tail);
+            final byte chunkType = POffHeapByteArray.get(types, tail);
+            final long chunkTime = POffHeapLongArray.get(times, tail);
+            KeyHelper.keyToBuffer(stream, chunkType, POffHeapLongArray.get(worlds, tail), chunkTime, chunkId);
+            //we prepare the notifier
+            if (chunkType == ChunkType.STATE_CHUNK) {
+                events = collectEvent(events, chunkId, chunkTime);
             }
-            KeyHelper.keyToBuffer(stream, POffHeapByteArray.get(types, tail), POffHeapLongArray.get(worlds, tail), POffHeapLongArray.get(times, tail), POffHeapLongArray.get(ids, tail));
             //Save chunk payload
-            stream.write(BUFFER_SEP);
+            stream.write(Constants.BUFFER_SEP);
             try {
-                Chunk loopChunk = get(tail);
+                final Chunk loopChunk = internal_get(tail);
                 if (loopChunk != null) {
                     loopChunk.save(stream);
                 }
@@ -426,35 +604,186 @@ class OffHeapChunkSpace implements ChunkSpace {
                 e.printStackTrace();
             }
         }
-        //shrink in case of i != full size
-        this.graph().storage().put(stream, new Callback<Boolean>() {
+        //call local notifier
+        dispatchEvents(events);
+        if (stacked == null) {
+            stacked = new ArrayList<Buffer>();
+        }
+        stacked.add(stream);
+        final DeferCounter saveCounter = _graph.newCounter(stacked.size());
+        for (int i = 0; i < stacked.size(); i++) {
+            final Buffer finalStream = stacked.get(i);
+            if (silent) {
+                this.graph().storage().putSilent(finalStream, new Callback<Buffer>() {
+                    @Override
+                    public void on(final Buffer result) {
+                        //free all value
+                        finalStream.free();
+                        saveCounter.count();
+                    }
+                });
+            } else {
+                this.graph().storage().put(finalStream, new Callback<Boolean>() {
+                    @Override
+                    public void on(final Boolean result) {
+                        //free all value
+                        finalStream.free();
+                        saveCounter.count();
+                    }
+                });
+            }
+        }
+        saveCounter.then(new Job() {
             @Override
-            public void on(Boolean result) {
-                //free all value
-                stream.free();
+            public void run() {
                 if (callback != null) {
-                    callback.on(result);
+                    callback.on(null);
                 }
             }
         });
     }
 
+    private java.util.Map<Long, Tuple<Listeners, LArray>> collectEvent(java.util.Map<Long, Tuple<Listeners, LArray>> events, final long chunkId, final long chunkTime) {
+        if (events != null && events.get(chunkId) != null) {
+            events.get(chunkId).right().add(chunkTime);
+        } else {
+            final WorldOrderChunk wo = (WorldOrderChunk) getAndMark(ChunkType.WORLD_ORDER_CHUNK, 0, 0, chunkId);
+            if (wo != null) {
+                final Listeners l = wo.listeners();
+                unmark(wo.index());
+                if (l != null) {
+                    if (events == null) {
+                        events = new java.util.HashMap<Long, Tuple<Listeners, LArray>>();
+                    }
+                    LArray collector = new LArray();
+                    collector.add(chunkTime);
+                    events.put(chunkId, new Tuple<Listeners, LArray>(l, collector));
+                }
+            }
+        }
+        return events;
+    }
+
+    private void dispatchEvents(final java.util.Map<Long, Tuple<Listeners, LArray>> events) {
+        if (events != null) {
+            final java.util.Iterator<Tuple<Listeners, LArray>> tuples = events.values().iterator();
+            while (tuples.hasNext()) {
+                final Tuple<Listeners, LArray> tt = tuples.next();
+                tt.left().dispatch(tt.right().all());
+            }
+        }
+    }
+
     @Override
     public final void clear() {
         //TODO reset everything
     }
 
+    @Override
+    public final void freeAll() {
+        for (long i = 0; i < _maxEntries; i++) {
+            freeByIndex(i);
+        }
+        _listeners.clear();
+        _lru.free();
+        _dirtiesStack.free();
+        POffHeapLongArray.free(hashNext);
+        POffHeapLongArray.free(hash);
+        POffHeapLongArray.free(addrs);
+        POffHeapLongArray.free(worlds);
+        POffHeapLongArray.free(times);
+        POffHeapLongArray.free(ids);
+        POffHeapByteArray.free(types);
+        POffHeapLongArray.free(marks);
+        POffHeapLongArray.free(locks);
+        POffHeapLongArray.free(lockDepths);
+        final POffHeapArena arena = _arena;
+        if (arena != null) {
+            _arena = null;
+            POffHeapAllocator.release(arena);
+        }
+    }
+
+    /**
+     * @return the arena holding the segments of the chunks, to monitor allocations and fragmentation, null once the space is released
+     */
+    public final POffHeapArena arena() {
+        return _arena;
+    }
+
     @Override
     public final long available() {
         return _lru.size();
     }
 
     @Override
-    public EGraph newVolatileGraph() {
-        return new OffHeapEGraph(new OffHeapVolatileContainer(), OffHeapConstants.NULL_PTR, _graph);
+    public final long dirties() {
+        return _dirtiesStack.size();
     }
 
-}
+    @Override
+    public final EStructArray newVolatileGraph() {
+        return new OffHeapEStructArray(new OffHeapVolatileContainer(), OffHeapConstants.NULL_PTR, _graph);
+    }
 
+    @Override
+    public final Interceptor[] interceptors() {
+        return _interceptors;
+    }
 
+    @Override
+    public final void addInterceptorFirst(final Interceptor it) {
+        if (_interceptors == null) {
+            _interceptors = new Interceptor[1];
+            _interceptors[0] = it;
+        } else {
+            Interceptor[] interceptors2 = new Interceptor[_interceptors.length + 1];
+            System.arraycopy(_interceptors, 0, interceptors2, 1, _interceptors.length);
+            interceptors2[0] = it;
+            _interceptors = interceptors2;
+        }
+    }
 
+    @Override
+    public final void addInterceptorLast(final Interceptor it) {
+        if (_interceptors == null) {
+            _interceptors = new Interceptor[1];
+            _interceptors[0] = it;
+        } else {
+            Interceptor[] interceptors2 = new Interceptor[_interceptors.length + 1];
+            System.arraycopy(_interceptors, 0, interceptors2, 0, _interceptors.length);
+            interceptors2[_interceptors.length] = it;
+            _interceptors = interceptors2;
+        }
+    }
+
+    @Override
+    public final void printMarked() {
+        for (long i = 0; i < _maxEntries; i++) {
+            if (POffHeapLongArray.get(addrs, i) != OffHeapConstants.NULL_PTR && POffHeapLongArray.get(marks, i) != 0) {
+                final String coordinates = "(" + POffHeapLongArray.get(worlds, i) + "," + POffHeapLongArray.get(times, i) + "," + POffHeapLongArray.get(ids, i) + ")->marks->" + POffHeapLongArray.get(marks, i);
+                switch (POffHeapByteArray.get(types, i)) {
+                    case ChunkType.STATE_CHUNK:
+                        System.out.println("STATE" + coordinates);
+                        break;
+                    case ChunkType.SUPER_TIME_TREE_CHUNK:
+                        System.out.println("SUPER_TIME_TREE" + coordinates);
+                        break;
+                    case ChunkType.TIME_TREE_CHUNK:
+                        System.out.println("TIME_TREE" + coordinates);
+                        break;
+                    case ChunkType.TIME_TREE_DVALUE_CHUNK:
+                        System.out.println("TIME_TREE_DVALUE" + coordinates);
+                        break;
+                    case ChunkType.WORLD_ORDER_CHUNK:
+                        System.out.println("WORLD_ORDER" + coordinates);
+                        break;
+                    case ChunkType.GEN_CHUNK:
+                        System.out.println("GENERATOR" + coordinates);
+                        break;
+                }
+            }
+        }
+    }
+
+}
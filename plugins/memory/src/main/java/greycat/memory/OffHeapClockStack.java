@@ -0,0 +1,102 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.chunk.Stack;
+import greycat.memory.primary.POffHeapAllocator;
+import greycat.memory.primary.POffHeapLongArray;
+
+/**
+ * Off-heap CLOCK (second chance) eviction policy, see greycat.internal.heap.HeapClockStack.
+ */
+final class OffHeapClockStack implements Stack {
+
+    private static final int PRESENT = 0;
+    private static final int REFERENCED = 1;
+
+    private final long _capacity;
+    private final long _flags;
+    private long _hand;
+    private long _count;
+
+    OffHeapClockStack(long capacity, boolean fill) {
+        _capacity = capacity;
+        _flags = POffHeapLongArray.allocate(POffHeapAllocator.shared(), capacity * 2);
+        for (long i = 0; i < capacity; i++) {
+            POffHeapLongArray.set(_flags, i * 2 + PRESENT, fill ? 1 : 0);
+            POffHeapLongArray.set(_flags, i * 2 + REFERENCED, 0);
+        }
+        _hand = 0;
+        _count = fill ? capacity : 0;
+    }
+
+    @Override
+    public synchronized final boolean enqueue(long index) {
+        if (POffHeapLongArray.get(_flags, index * 2 + PRESENT) == 1) {
+            return false;
+        }
+        POffHeapLongArray.set(_flags, index * 2 + PRESENT, 1);
+        _count++;
+        return true;
+    }
+
+    @Override
+    public synchronized final long dequeueTail() {
+        if (_count == 0) {
+            return -1;
+        }
+        //two full rotations are enough to clear every reference bit
+        for (long i = 0; i < _capacity * 2; i++) {
+            final long current = _hand;
+            _hand++;
+            if (_hand == _capacity) {
+                _hand = 0;
+            }
+            if (POffHeapLongArray.get(_flags, current * 2 + PRESENT) == 1) {
+                if (POffHeapLongArray.get(_flags, current * 2 + REFERENCED) == 1) {
+                    POffHeapLongArray.set(_flags, current * 2 + REFERENCED, 0);
+                } else {
+                    POffHeapLongArray.set(_flags, current * 2 + PRESENT, 0);
+                    _count--;
+                    return current;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized final boolean dequeue(long index) {
+        if (POffHeapLongArray.get(_flags, index * 2 + PRESENT) != 1) {
+            return false;
+        }
+        POffHeapLongArray.set(_flags, index * 2 + PRESENT, 0);
+        POffHeapLongArray.set(_flags, index * 2 + REFERENCED, 1);
+        _count--;
+        return true;
+    }
+
+    @Override
+    public final void free() {
+        POffHeapLongArray.free(_flags);
+    }
+
+    @Override
+    public synchronized long size() {
+        return _count;
+    }
+
+}
@@ -15,15 +15,18 @@
  */
 package greycat.memory;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OffHeapConstants {
 
     public static final int NULL_PTR = -1;
 
-    //TODO remove this before release
-    public static boolean DEBUG_MODE = true;
-    public static final Map<Long, Long> SEGMENTS = new HashMap<Long, Long>();
+    /**
+     * Tracks every allocated segment in {@link #SEGMENTS} and checks bounds on each access.
+     * Enabled by the greycat.offheap.debug system property, meant for tests only.
+     */
+    public static boolean DEBUG_MODE = Boolean.getBoolean("greycat.offheap.debug");
+    public static final Map<Long, Long> SEGMENTS = new ConcurrentHashMap<Long, Long>();
 
 }
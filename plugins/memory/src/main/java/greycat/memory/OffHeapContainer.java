@@ -15,6 +15,8 @@
  */
 package greycat.memory;
 
+import greycat.memory.primary.POffHeapArena;
+
 public interface OffHeapContainer {
 
     long addrByIndex(long elemIndex);
@@ -26,4 +28,9 @@ public interface OffHeapContainer {
     void unlock();
 
     void declareDirty();
+
+    /**
+     * @return the arena in which the segments of this container are allocated
+     */
+    POffHeapArena arena();
 }
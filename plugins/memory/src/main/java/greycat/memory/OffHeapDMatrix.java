@@ -17,7 +17,7 @@ package greycat.memory;
 
 import greycat.Constants;
 import greycat.memory.primary.POffHeapDoubleArray;
-import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.DMatrix;
 import greycat.utility.Base64;
@@ -28,6 +28,7 @@ class OffHeapDMatrix implements DMatrix {
     private static final int INDEX_COLUMNS = 1;
     private static final int INDEX_MAX_COLUMN = 2;
     private static final int INDEX_OFFSET = 3;
+
     private final long index;
     private final OffHeapContainer container;
 
@@ -37,18 +38,13 @@ class OffHeapDMatrix implements DMatrix {
     }
 
     @Override
-    public final DMatrix init(int rows, int columns) {
+    public final DMatrix init(final int rows, final int columns) {
         container.lock();
         try {
-            long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                POffHeapDoubleArray.free(addr);
-            }
-            addr = POffHeapDoubleArray.allocate(rows * columns + INDEX_OFFSET);
+            final long addr = unsafe_init(rows * columns + INDEX_OFFSET);
             POffHeapDoubleArray.set(addr, INDEX_ROWS, rows);
             POffHeapDoubleArray.set(addr, INDEX_COLUMNS, columns);
             POffHeapDoubleArray.set(addr, INDEX_MAX_COLUMN, columns);
-            container.setAddrByIndex(index, addr);
             container.declareDirty();
         } finally {
             container.unlock();
@@ -57,26 +53,21 @@ class OffHeapDMatrix implements DMatrix {
     }
 
     @Override
-    public DMatrix appendColumn(double[] newColumn) {
+    public final DMatrix appendColumn(final double[] newColumn) {
         container.lock();
         try {
+            long addr = container.addrByIndex(index);
             int nbRows;
             int nbColumns;
             int nbMaxColumn;
-            long addr = container.addrByIndex(index);
-            long indexAddr = OffHeapConstants.NULL_PTR;
-            if (addr != OffHeapConstants.NULL_PTR) {
-                indexAddr = POffHeapLongArray.get(addr, INDEX_COLUMNS);
-            }
-            if (addr == OffHeapConstants.NULL_PTR || indexAddr == OffHeapConstants.NULL_PTR) {
+            if (addr == OffHeapConstants.NULL_PTR) {
                 nbRows = newColumn.length;
                 nbColumns = Constants.MAP_INITIAL_CAPACITY;
                 nbMaxColumn = 0;
-                addr = POffHeapDoubleArray.allocate(nbRows * nbColumns + INDEX_OFFSET);
+                addr = unsafe_init(nbRows * nbColumns + INDEX_OFFSET);
                 POffHeapDoubleArray.set(addr, INDEX_ROWS, nbRows);
                 POffHeapDoubleArray.set(addr, INDEX_COLUMNS, nbColumns);
                 POffHeapDoubleArray.set(addr, INDEX_MAX_COLUMN, nbMaxColumn);
-                container.setAddrByIndex(index, addr);
             } else {
                 nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
                 nbColumns = (int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS);
@@ -85,49 +76,35 @@ class OffHeapDMatrix implements DMatrix {
             if (nbMaxColumn == nbColumns) {
                 nbColumns = nbColumns * 2;
                 final int newLength = nbColumns * nbRows + INDEX_OFFSET;
+                final int previousLength = length(addr);
                 addr = POffHeapDoubleArray.reallocate(addr, newLength);
+                POffHeapDoubleArray.fill(addr, previousLength, newLength, 0);
                 POffHeapDoubleArray.set(addr, INDEX_COLUMNS, nbColumns);
                 container.setAddrByIndex(index, addr);
             }
-            long base = nbMaxColumn * nbRows + INDEX_OFFSET;
+            if (newColumn.length != nbRows) {
+                throw new RuntimeException("Vector has different row size than Matrix");
+            }
+            final long base = nbMaxColumn * nbRows + INDEX_OFFSET;
             for (int i = 0; i < newColumn.length; i++) {
-                POffHeapDoubleArray.set(addr, i + base, newColumn[i]);
+                POffHeapDoubleArray.set(addr, base + i, newColumn[i]);
             }
             POffHeapDoubleArray.set(addr, INDEX_MAX_COLUMN, nbMaxColumn + 1);
-        } finally {
             container.declareDirty();
+        } finally {
             container.unlock();
         }
         return this;
     }
 
-    void unsafe_init(int size) {
-        long addr = container.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            POffHeapDoubleArray.free(addr);
-        }
-        addr = POffHeapDoubleArray.allocate(size);
-        POffHeapDoubleArray.set(addr, INDEX_ROWS, 0);
-        POffHeapDoubleArray.set(addr, INDEX_COLUMNS, 0);
-        container.setAddrByIndex(index, addr);
-    }
-
-    void unsafe_set(long setIndex, double value) {
-        final long addr = container.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            POffHeapDoubleArray.set(addr, setIndex, value);
-        }
-    }
-
     @Override
-    public final DMatrix fill(double value) {
+    public final DMatrix fill(final double value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-                int nbColumns = (int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS);
-                POffHeapDoubleArray.fill(addr, INDEX_OFFSET, INDEX_OFFSET + (nbRows * nbColumns), value);
+                POffHeapDoubleArray.fill(addr, INDEX_OFFSET, length(addr), value);
+                POffHeapDoubleArray.set(addr, INDEX_MAX_COLUMN, POffHeapDoubleArray.get(addr, INDEX_COLUMNS));
                 container.declareDirty();
             }
         } finally {
@@ -137,7 +114,7 @@ class OffHeapDMatrix implements DMatrix {
     }
 
     @Override
-    public DMatrix fillWith(double[] values) {
+    public final DMatrix fillWith(final double[] values) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
@@ -153,97 +130,89 @@ class OffHeapDMatrix implements DMatrix {
         return this;
     }
 
-
-
     @Override
     public final int rows() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
+                return (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
     public final int columns() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = (int) POffHeapDoubleArray.get(addr, INDEX_MAX_COLUMN);
+                return (int) POffHeapDoubleArray.get(addr, INDEX_MAX_COLUMN);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public int length() {
+    public final int length() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = ((int) POffHeapDoubleArray.get(addr, INDEX_MAX_COLUMN)) * ((int) POffHeapDoubleArray.get(addr, INDEX_ROWS));
+                return ((int) POffHeapDoubleArray.get(addr, INDEX_MAX_COLUMN)) * ((int) POffHeapDoubleArray.get(addr, INDEX_ROWS));
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public double[] column(int columnIndex) {
-        double[] result = null;
+    public final double[] column(final int columnIndex) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                long nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-                result = new double[(int) nbRows];
-                long base = INDEX_OFFSET + (columnIndex * nbRows);
-                for (int i = 0; i < nbRows; i++) {
-                    result[i] = POffHeapDoubleArray.get(addr, base + i);
-                }
+            final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
+            final double[] result = new double[nbRows];
+            final long base = INDEX_OFFSET + (columnIndex * nbRows);
+            for (int i = 0; i < nbRows; i++) {
+                result[i] = POffHeapDoubleArray.get(addr, base + i);
             }
+            return result;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public final double get(int rowIndex, int columnIndex) {
+    public final double get(final int rowIndex, final int columnIndex) {
         container.lock();
-        double result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
                 final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-                result = POffHeapDoubleArray.get(addr, INDEX_OFFSET + rowIndex + columnIndex * nbRows);
+                return POffHeapDoubleArray.get(addr, INDEX_OFFSET + rowIndex + columnIndex * nbRows);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public final DMatrix set(int rowIndex, int columnIndex, double value) {
+    public final DMatrix set(final int rowIndex, final int columnIndex, final double value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
                 final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
                 POffHeapDoubleArray.set(addr, INDEX_OFFSET + rowIndex + columnIndex * nbRows, value);
+                container.declareDirty();
             }
         } finally {
             container.unlock();
@@ -252,15 +221,15 @@ class OffHeapDMatrix implements DMatrix {
     }
 
     @Override
-    public DMatrix add(int rowIndex, int columnIndex, double value) {
+    public final DMatrix add(final int rowIndex, final int columnIndex, final double value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
                 final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-                final int raw_index = INDEX_OFFSET + rowIndex + columnIndex * nbRows;
-                final double previous = POffHeapDoubleArray.get(addr, raw_index);
-                POffHeapDoubleArray.set(addr, raw_index, value + previous);
+                final long rawIndex = INDEX_OFFSET + rowIndex + columnIndex * nbRows;
+                POffHeapDoubleArray.set(addr, rawIndex, value + POffHeapDoubleArray.get(addr, rawIndex));
+                container.declareDirty();
             }
         } finally {
             container.unlock();
@@ -269,140 +238,133 @@ class OffHeapDMatrix implements DMatrix {
     }
 
     @Override
-    public double[] data() {
+    public final double[] data() {
         container.lock();
-        double[] flat;
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-                final int nbColumns = (int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS);
-                final int flatSize = nbRows * nbColumns;
-                flat = new double[flatSize];
-                for (int i = 0; i < flatSize; i++) {
-                    flat[i] = POffHeapDoubleArray.get(addr, i + INDEX_OFFSET);
-                }
-            } else {
-                flat = new double[0];
+            if (addr == OffHeapConstants.NULL_PTR) {
+                return null;
             }
+            final int flatSize = length(addr) - INDEX_OFFSET;
+            final double[] copy = new double[flatSize];
+            for (int i = 0; i < flatSize; i++) {
+                copy[i] = POffHeapDoubleArray.get(addr, INDEX_OFFSET + i);
+            }
+            return copy;
         } finally {
             container.unlock();
         }
-        return flat;
     }
 
     @Override
-    public int leadingDimension() {
+    public final int leadingDimension() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-                final int nbColumns = (int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS);
-                result = Math.max(nbRows, nbColumns);
+            if (addr == OffHeapConstants.NULL_PTR) {
+                return 0;
             }
+            return (int) Math.max(POffHeapDoubleArray.get(addr, INDEX_COLUMNS), POffHeapDoubleArray.get(addr, INDEX_ROWS));
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public double unsafeGet(int indexValue) {
+    public final double unsafeGet(final int indexValue) {
         container.lock();
-        double result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = POffHeapDoubleArray.get(addr, INDEX_OFFSET + indexValue);
+                return POffHeapDoubleArray.get(addr, INDEX_OFFSET + indexValue);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public DMatrix unsafeSet(int indexValue, double value) {
+    public final DMatrix unsafeSet(final int indexValue, final double value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                POffHeapDoubleArray.set(addr, INDEX_OFFSET + indexValue, value);
+            if (addr == OffHeapConstants.NULL_PTR) {
+                throw new RuntimeException("Please init the Matrix first!");
             }
+            POffHeapDoubleArray.set(addr, INDEX_OFFSET + indexValue, value);
+            container.declareDirty();
         } finally {
             container.unlock();
         }
         return this;
     }
 
-    /*
-    @Override
-    public final String toString() {
-        StringBuilder buffer = new StringBuilder();
-        //chunk.lock();
-        // try {
-        final long addr = chunk.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            buffer.append("[");
-            final long size = POffHeapLongArray.get(addr, SIZE);
-            for (int i = 0; i < size; i++) {
-                if (i != 0) {
-                    buffer.append(",");
-                }
-                buffer.append(POffHeapLongArray.get(addr, i + SHIFT));
-            }
-            buffer.append("]");
+    /**
+     * Number of slots of the segment, header included.
+     */
+    private static int length(final long addr) {
+        return ((int) POffHeapDoubleArray.get(addr, INDEX_ROWS)) * ((int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS)) + INDEX_OFFSET;
+    }
+
+    private long unsafe_init(final int size) {
+        final long previous = container.addrByIndex(index);
+        if (previous != OffHeapConstants.NULL_PTR) {
+            POffHeapDoubleArray.free(previous);
         }
-        //} finally {
-        // chunk.unlock();
-        //}
-        return buffer.toString();
-    }*/
+        final long addr = POffHeapDoubleArray.allocate(container.arena(), size);
+        POffHeapDoubleArray.fill(addr, 0, size, 0);
+        container.setAddrByIndex(index, addr);
+        return addr;
+    }
 
     static void save(final long addr, final Buffer buffer) {
         if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
             return;
         }
-        final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-        final int nbColumns = (int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS);
-        final int flatSize = nbRows * nbColumns;
-        final int size = flatSize + INDEX_OFFSET;
-        Base64.encodeLongToBuffer(size, buffer);
+        final int size = length(addr);
+        Base64.encodeIntToBuffer(size, buffer);
         for (long i = 0; i < size; i++) {
             buffer.write(Constants.CHUNK_VAL_SEP);
             Base64.encodeDoubleToBuffer(POffHeapDoubleArray.get(addr, i), buffer);
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         }
-        final int nbRows = (int) POffHeapDoubleArray.get(addr, INDEX_ROWS);
-        final int nbColumns = (int) POffHeapDoubleArray.get(addr, INDEX_COLUMNS);
-        final int flatSize = nbRows * nbColumns;
-        return POffHeapLongArray.cloneArray(addr, flatSize + INDEX_OFFSET);
+        return POffHeapDoubleArray.cloneArray(arena, addr, length(addr));
     }
 
     static void free(final long addr) {
-        POffHeapDoubleArray.free(addr);
+        if (addr != OffHeapConstants.NULL_PTR) {
+            POffHeapDoubleArray.free(addr);
+        }
     }
 
+    /**
+     * Loads the matrix from its text form, the caller holds the lock of the container.
+     */
     final long load(final Buffer buffer, final long offset, final long max) {
+        if (offset >= max) {
+            unsafe_init(INDEX_OFFSET);
+            return offset;
+        }
         long cursor = offset;
         byte current = buffer.read(cursor);
         boolean isFirst = true;
         long previous = offset;
         long elemIndex = 0;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP && current != Constants.CHUNK_ESEP) {
+        long addr = OffHeapConstants.NULL_PTR;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
-                    unsafe_init(Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                    addr = unsafe_init(Base64.decodeToIntWithBounds(buffer, previous, cursor));
                     isFirst = false;
                 } else {
-                    unsafe_set(elemIndex, Base64.decodeToDoubleWithBounds(buffer, previous, cursor));
+                    POffHeapDoubleArray.set(addr, elemIndex, Base64.decodeToDoubleWithBounds(buffer, previous, cursor));
                     elemIndex++;
                 }
                 previous = cursor + 1;
@@ -412,13 +374,14 @@ class OffHeapDMatrix implements DMatrix {
                 current = buffer.read(cursor);
             }
         }
-        if (isFirst) {
-            unsafe_init((int) Base64.decodeToLongWithBounds(buffer, previous, cursor));
+        if (previous == cursor) {
+            unsafe_init(INDEX_OFFSET);
+        } else if (isFirst) {
+            unsafe_init(Base64.decodeToIntWithBounds(buffer, previous, cursor));
         } else {
-            unsafe_set(elemIndex, Base64.decodeToDoubleWithBounds(buffer, previous, cursor));
+            POffHeapDoubleArray.set(addr, elemIndex, Base64.decodeToDoubleWithBounds(buffer, previous, cursor));
         }
         return cursor;
     }
 
-
 }
@@ -16,171 +16,260 @@
 package greycat.memory;
 
 import greycat.Constants;
-import greycat.Graph;
 import greycat.memory.primary.POffHeapLongArray;
-import greycat.struct.ENode;
+import greycat.memory.primary.POffHeapArena;
+import greycat.struct.Buffer;
 import greycat.struct.ERelation;
+import greycat.struct.EStruct;
+import greycat.utility.Base64;
 
-public class OffHeapERelation implements ERelation {
+/**
+ * Relation between the {@link EStruct} of the same {@link OffHeapEStructArray}, stored as the list of their ids.
+ */
+@SuppressWarnings("Duplicates")
+class OffHeapERelation implements ERelation {
 
     private static final int SIZE = 0;
     private static final int CAPACITY = 1;
     private static final int OFFSET = 2;
 
-    private final long index;
     private final OffHeapContainer container;
-    private final OffHeapEGraph eGraph;
-    private final Graph graph;
+    private final long index;
+    private final OffHeapEStructArray array;
 
-    OffHeapERelation(final OffHeapContainer p_container, final long p_index, OffHeapEGraph eGraph, Graph graph) {
+    OffHeapERelation(final OffHeapContainer p_container, final long p_index, final OffHeapEStructArray p_array) {
         container = p_container;
         index = p_index;
-        this.eGraph = eGraph;
-        this.graph = graph;
+        array = p_array;
     }
 
-    final long allocate(long newCapacity) {
-        long addr = container.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            final long capacity = POffHeapLongArray.get(addr, CAPACITY);
-            if (capacity < newCapacity) {
-                final long closePowerOfTwo = (long) Math.pow(2, Math.ceil(Math.log(newCapacity) / Math.log(2)));
-                addr = POffHeapLongArray.reallocate(addr, OFFSET + closePowerOfTwo);
-                container.setAddrByIndex(index, addr);
+    @Override
+    public final int size() {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            if (addr == OffHeapConstants.NULL_PTR) {
+                return 0;
             }
-        } else {
-            final long closePowerOfTwo = (long) Math.pow(2, Math.ceil(Math.log(newCapacity) / Math.log(2)));
-            addr = POffHeapLongArray.allocate(OFFSET + closePowerOfTwo);
-            POffHeapLongArray.set(addr, SIZE, 0);
-            POffHeapLongArray.set(addr, CAPACITY, closePowerOfTwo);
-            container.setAddrByIndex(index, addr);
+            return (int) POffHeapLongArray.get(addr, SIZE);
+        } finally {
+            container.unlock();
         }
-        return addr;
     }
 
-    static long clone(final long addr) {
-        if (addr == OffHeapConstants.NULL_PTR) {
-            return OffHeapConstants.NULL_PTR;
+    @Override
+    public final EStruct[] nodes() {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            if (addr == OffHeapConstants.NULL_PTR) {
+                return new EStruct[0];
+            }
+            final int size = (int) POffHeapLongArray.get(addr, SIZE);
+            final EStruct[] result = new EStruct[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = new OffHeapEStruct(array, (int) POffHeapLongArray.get(addr, OFFSET + i));
+            }
+            return result;
+        } finally {
+            container.unlock();
         }
-        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
-        return POffHeapLongArray.cloneArray(addr, capacity + OFFSET);
     }
 
     @Override
-    public ENode[] nodes() {
-        long addr = container.addrByIndex(index);
-        int size = (int) POffHeapLongArray.get(addr, SIZE);
-        ENode[] nodes = new ENode[size];
-        for (int i = 0; i < size; i++) {
-            nodes[i] = new OffHeapENode(nodeIndexAt(addr, i), eGraph, graph);
+    public final EStruct node(final int nodeIndex) {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            if (addr == OffHeapConstants.NULL_PTR || nodeIndex >= POffHeapLongArray.get(addr, SIZE)) {
+                return null;
+            }
+            return new OffHeapEStruct(array, (int) POffHeapLongArray.get(addr, OFFSET + nodeIndex));
+        } finally {
+            container.unlock();
         }
-        return nodes;
     }
 
     @Override
-    public ENode node(int nodeIndex) {
-        return new OffHeapENode(nodeIndex, eGraph, graph);
+    public final ERelation add(final EStruct eStruct) {
+        container.lock();
+        try {
+            internal_add(eStruct.id());
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+        return this;
     }
 
     @Override
-    public int size() {
-        long addr = container.addrByIndex(index);
-        return (int) POffHeapLongArray.get(addr, SIZE);
+    public final ERelation addAll(final EStruct[] eStructs) {
+        container.lock();
+        try {
+            allocate(size_unsafe() + eStructs.length);
+            for (int i = 0; i < eStructs.length; i++) {
+                internal_add(eStructs[i].id());
+            }
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+        return this;
     }
 
     @Override
-    public ERelation add(ENode eNode) {
-        long addr = container.addrByIndex(index);
-        long size = 0;
-        if (addr == OffHeapConstants.NULL_PTR) {
-            addr = allocate(Constants.MAP_INITIAL_CAPACITY);
-        } else {
-            long capacity = POffHeapLongArray.get(addr, CAPACITY);
-            size = POffHeapLongArray.get(addr, SIZE);
-            if (capacity == size) {
-                addr = allocate(capacity * 2);
-            }
+    public final ERelation clear() {
+        container.lock();
+        try {
+            free(container.addrByIndex(index));
+            container.setAddrByIndex(index, OffHeapConstants.NULL_PTR);
+            container.declareDirty();
+        } finally {
+            container.unlock();
         }
-        setNodeIndexAt(addr, size, ((OffHeapENode) eNode).index);
-        POffHeapLongArray.set(addr, SIZE, size + 1);
-        eGraph.declareDirty();
         return this;
     }
 
-    @Override
-    public ERelation addAll(ENode[] eNodes) {
-        long addr = container.addrByIndex(index);
-        long size = 0;
+    private long size_unsafe() {
+        final long addr = container.addrByIndex(index);
         if (addr == OffHeapConstants.NULL_PTR) {
-            addr = allocate(Constants.MAP_INITIAL_CAPACITY);
-        } else {
-            size = POffHeapLongArray.get(addr, SIZE);
-            long capacity = POffHeapLongArray.get(addr, CAPACITY);
-            long neededCapacity = eNodes.length + size;
-            if (neededCapacity > capacity) {
-                final long closePowerOfTwo = (long) Math.pow(2, Math.ceil(Math.log(neededCapacity) / Math.log(2)));
-                addr = allocate(OFFSET + closePowerOfTwo);
-            }
+            return 0;
         }
-        for (int i = 0; i < eNodes.length; i++) {
-            setNodeIndexAt(addr, size + i, ((OffHeapENode) eNodes[i]).index);
+        return POffHeapLongArray.get(addr, SIZE);
+    }
+
+    private void allocate(final long newCapacity) {
+        if (newCapacity <= 0) {
+            return;
+        }
+        final long addr = container.addrByIndex(index);
+        if (addr == OffHeapConstants.NULL_PTR) {
+            final long newAddr = POffHeapLongArray.allocate(container.arena(), OFFSET + newCapacity);
+            POffHeapLongArray.set(newAddr, SIZE, 0);
+            POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+            container.setAddrByIndex(index, newAddr);
+        } else if (POffHeapLongArray.get(addr, CAPACITY) < newCapacity) {
+            final long newAddr = POffHeapLongArray.reallocate(addr, OFFSET + newCapacity);
+            POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+            container.setAddrByIndex(index, newAddr);
         }
-        eGraph.declareDirty();
-        return this;
     }
 
-    @Override
-    public ERelation clear() {
+    private void internal_add(final long id) {
         long addr = container.addrByIndex(index);
-        POffHeapLongArray.set(addr, SIZE, 0);
-        eGraph.declareDirty();
-        return this;
+        if (addr == OffHeapConstants.NULL_PTR) {
+            allocate(Constants.MAP_INITIAL_CAPACITY);
+            addr = container.addrByIndex(index);
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        if (size == capacity) {
+            allocate(capacity * 2);
+            addr = container.addrByIndex(index);
+        }
+        POffHeapLongArray.set(addr, OFFSET + size, id);
+        POffHeapLongArray.set(addr, SIZE, size + 1);
     }
 
-    /*
-    static void rebase(long addr, long newEGraphAddr) {
-        long size = POffHeapLongArray.get(addr, SIZE);
-
-        for (int i = 0; i < size; i++) {
-            long previousNodeAddr = nodeAddrAt(addr, i);
-            long previousNodeId = OffHeapENode.getId(previousNodeAddr);
+    @Override
+    public final String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("[");
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            if (addr != OffHeapConstants.NULL_PTR) {
+                final long size = POffHeapLongArray.get(addr, SIZE);
+                for (long i = 0; i < size; i++) {
+                    if (i != 0) {
+                        builder.append(",");
+                    }
+                    builder.append(POffHeapLongArray.get(addr, OFFSET + i));
+                }
+            }
+        } finally {
+            container.unlock();
+        }
+        builder.append("]");
+        return builder.toString();
+    }
 
-            long newNodeAddr = OffHeapEGraph.nodeAddrAt(newEGraphAddr, previousNodeId);
-            setNodeAddrAt(addr, i, newNodeAddr);
+    /**
+     * Swaps two ids in a relation, used when the {@link OffHeapEStructArray} moves its nodes.
+     */
+    static void swapIds(final long addr, final long first, final long second) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return;
         }
-    }*/
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (long i = 0; i < size; i++) {
+            final long id = POffHeapLongArray.get(addr, OFFSET + i);
+            if (id == first) {
+                POffHeapLongArray.set(addr, OFFSET + i, second);
+            } else if (id == second) {
+                POffHeapLongArray.set(addr, OFFSET + i, first);
+            }
+        }
+    }
 
-    static void free(long addr) {
-        POffHeapLongArray.free(addr);
+    static void save(final long addr, final Buffer buffer) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        Base64.encodeIntToBuffer((int) size, buffer);
+        for (long i = 0; i < size; i++) {
+            buffer.write(Constants.CHUNK_VAL_SEP);
+            Base64.encodeIntToBuffer((int) POffHeapLongArray.get(addr, OFFSET + i), buffer);
+        }
     }
 
-    static long nodeIndexAt(long addr, long index) {
-        return POffHeapLongArray.get(addr, OFFSET + index);
+    static long clone(final POffHeapArena arena, final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return OffHeapConstants.NULL_PTR;
+        }
+        return POffHeapLongArray.cloneArray(arena, addr, OFFSET + POffHeapLongArray.get(addr, CAPACITY));
     }
 
-    static void setNodeIndexAt(long addr, long index, long value) {
-        POffHeapLongArray.set(addr, OFFSET + index, value);
+    static void free(final long addr) {
+        if (addr != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(addr);
+        }
     }
 
-    @Override
-    public final String toString() {
-        long addr = container.addrByIndex(index);
-        StringBuilder buffer = new StringBuilder();
-        buffer.append("[");
-        long size = POffHeapLongArray.get(addr, SIZE);
-        for (long i = 0; i < size; i++) {
-            if (i != 0) {
-                buffer.append(",");
+    final long load(final Buffer buffer, final long offset, final long max) {
+        long cursor = offset;
+        byte current = buffer.read(cursor);
+        boolean isFirst = true;
+        long previous = offset;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
+            if (current == Constants.CHUNK_VAL_SEP) {
+                if (isFirst) {
+                    allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                    isFirst = false;
+                } else {
+                    load_id(Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                }
+                previous = cursor + 1;
             }
-            buffer.append(nodeIndexAt(addr, i));
+            cursor++;
+            if (cursor < max) {
+                current = buffer.read(cursor);
+            }
+        }
+        if (isFirst) {
+            allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
+        } else {
+            load_id(Base64.decodeToIntWithBounds(buffer, previous, cursor));
         }
-        buffer.append("]");
-        return buffer.toString();
+        return cursor;
     }
 
-    public long index() {
-        return this.index;
+    private void load_id(final int id) {
+        //referenced nodes can be loaded after the relation
+        array.nodeByIndex(id, true);
+        internal_add(id);
     }
 
-
 }
@@ -0,0 +1,1164 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.*;
+import greycat.base.BaseCustomType;
+import greycat.internal.CoreConstants;
+import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapString;
+import greycat.memory.primary.POffHeapArena;
+import greycat.plugin.NodeStateCallback;
+import greycat.plugin.Resolver;
+import greycat.plugin.TypeDeclaration;
+import greycat.struct.*;
+import greycat.utility.Base64;
+import greycat.utility.HashHelper;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Flyweight on a node of an {@link OffHeapEStructArray}, attributes are stored like the ones of {@link OffHeapStateChunk}.
+ * Links to other nodes of the same array are stored as their ids.
+ */
+class OffHeapEStruct implements EStruct, OffHeapContainer {
+
+    private static final int SIZE = 0;
+    private static final int CAPACITY = 1;
+    private static final int SUBHASH = 2;
+
+    private static final int OFFSET = 3;
+    private static final int ELEM_SIZE = 3;
+
+    private static final long NON_NULL = 1L << 32;
+
+    private final OffHeapEStructArray _array;
+    int _id;
+
+    OffHeapEStruct(final OffHeapEStructArray p_array, final int p_id) {
+        _array = p_array;
+        _id = p_id;
+    }
+
+    static long allocate(final POffHeapArena arena) {
+        final long addr = POffHeapLongArray.allocate(arena, OFFSET);
+        POffHeapLongArray.set(addr, SIZE, 0);
+        POffHeapLongArray.set(addr, CAPACITY, 0);
+        return addr;
+    }
+
+    private long addr() {
+        return _array.nodeAddr(_id);
+    }
+
+    private static long key(final long addr, final long elemIndex) {
+        return POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE);
+    }
+
+    private static int type(final long addr, final long elemIndex) {
+        return (int) POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE + 1);
+    }
+
+    private static boolean hasValue(final long addr, final long elemIndex) {
+        return (POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE + 1) & NON_NULL) != 0;
+    }
+
+    private static long value(final long addr, final long elemIndex) {
+        return POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE + 2);
+    }
+
+    private static void setEntry(final long addr, final long elemIndex, final int key, final int type, final boolean nonNull, final long value) {
+        final long base = OFFSET + elemIndex * ELEM_SIZE;
+        POffHeapLongArray.set(addr, base, key);
+        if (nonNull) {
+            POffHeapLongArray.set(addr, base + 1, (type & 0xFFFFFFFFL) | NON_NULL);
+        } else {
+            POffHeapLongArray.set(addr, base + 1, type & 0xFFFFFFFFL);
+        }
+        POffHeapLongArray.set(addr, base + 2, value);
+    }
+
+    @Override
+    public final long addrByIndex(final long elemIndex) {
+        return value(addr(), elemIndex);
+    }
+
+    @Override
+    public final void setAddrByIndex(final long elemIndex, final long newAddr) {
+        POffHeapLongArray.set(addr(), OFFSET + elemIndex * ELEM_SIZE + 2, newAddr);
+    }
+
+    @Override
+    public final void lock() {
+        _array.lock();
+    }
+
+    @Override
+    public final void unlock() {
+        _array.unlock();
+    }
+
+    @Override
+    public final void declareDirty() {
+        _array.declareDirty();
+    }
+
+    @Override
+    public final POffHeapArena arena() {
+        return _array.arena();
+    }
+
+    @Override
+    public final int id() {
+        return _id;
+    }
+
+    public final Graph graph() {
+        return _array.graph();
+    }
+
+    @Override
+    public final void drop() {
+        _array.drop(this);
+    }
+
+    @Override
+    public final EStructArray egraph() {
+        return _array;
+    }
+
+    @Override
+    public final EStruct clear() {
+        lock();
+        try {
+            free(addr());
+            _array.setNodeAddr(_id, allocate(arena()));
+            declareDirty();
+        } finally {
+            unlock();
+        }
+        return this;
+    }
+
+    private static long internal_find(final long addr, final int p_key) {
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        if (size == 0) {
+            return -1;
+        }
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+        long hashIndex = p_key % (capacity * 2);
+        if (hashIndex < 0) {
+            hashIndex = hashIndex * -1;
+        }
+        long m = POffHeapLongArray.get(subHash, capacity + hashIndex);
+        while (m >= 0) {
+            if (p_key == key(addr, m)) {
+                return m;
+            } else {
+                m = POffHeapLongArray.get(subHash, m);
+            }
+        }
+        return -1;
+    }
+
+    private Object internal_get(final long addr, final long found, final boolean p_raw) {
+        if (found == -1 || !hasValue(addr, found)) {
+            return null;
+        }
+        final int elemType = type(addr, found);
+        final long rawValue = value(addr, found);
+        switch (elemType) {
+            case Type.BOOL:
+                return rawValue == CoreConstants.BOOL_TRUE;
+            case Type.DOUBLE:
+                return Double.longBitsToDouble(rawValue);
+            case Type.LONG:
+                return rawValue;
+            case Type.INT:
+                return (int) rawValue;
+            case Type.STRING:
+                return POffHeapString.asObject(rawValue);
+            case Type.ESTRUCT:
+                return new OffHeapEStruct(_array, (int) rawValue);
+            case Type.ERELATION:
+                return new OffHeapERelation(this, found, _array);
+            case Type.LONG_ARRAY:
+                return new OffHeapLongArray(this, found);
+            case Type.DOUBLE_ARRAY:
+                return new OffHeapDoubleArray(this, found);
+            case Type.INT_ARRAY:
+                return new OffHeapIntArray(this, found);
+            case Type.STRING_ARRAY:
+                return new OffHeapStringArray(this, found);
+            case Type.RELATION:
+                return new OffHeapRelation(this, found);
+            case Type.DMATRIX:
+                return new OffHeapDMatrix(this, found);
+            case Type.LMATRIX:
+                return new OffHeapLMatrix(this, found);
+            case Type.STRING_TO_INT_MAP:
+                return new OffHeapStringIntMap(this, found);
+            case Type.LONG_TO_LONG_MAP:
+                return new OffHeapLongLongMap(this, found);
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                return new OffHeapLongLongArrayMap(this, found);
+            case Type.INT_TO_INT_MAP:
+                return new OffHeapIntIntMap(this, found);
+            case Type.INT_TO_STRING_MAP:
+                return new OffHeapIntStringMap(this, found);
+            default:
+                final OffHeapEStructArray structArray = new OffHeapEStructArray(this, found, graph());
+                if (p_raw) {
+                    return structArray;
+                }
+                final TypeDeclaration declaration = graph().typeRegistry().declarationByHash(elemType);
+                if (declaration == null) {
+                    return structArray;
+                } else {
+                    return declaration.factory().wrap(structArray);
+                }
+        }
+    }
+
+    @Override
+    public final Object get(final String name) {
+        return getAt(graph().resolver().stringToHash(name, false));
+    }
+
+    @Override
+    public final Object getAt(final int key) {
+        lock();
+        try {
+            final long addr = addr();
+            return internal_get(addr, internal_find(addr, key), true);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final Object getRawAt(final int key) {
+        return getAt(key);
+    }
+
+    @Override
+    public final Object getTypedRawAt(final int key, final int type) {
+        lock();
+        try {
+            final long addr = addr();
+            final long found = internal_find(addr, key);
+            if (found != -1 && type(addr, found) == type) {
+                return internal_get(addr, found, true);
+            }
+            return null;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final int type(final String name) {
+        return typeAt(graph().resolver().stringToHash(name, false));
+    }
+
+    @Override
+    public final int typeAt(final int key) {
+        lock();
+        try {
+            final long addr = addr();
+            final long found = internal_find(addr, key);
+            if (found != -1) {
+                return type(addr, found);
+            }
+            return -1;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final <A> A getWithDefault(final String key, final A defaultValue) {
+        final Object result = get(key);
+        if (result == null) {
+            return defaultValue;
+        } else {
+            return (A) result;
+        }
+    }
+
+    @Override
+    public final <A> A getAtWithDefault(final int key, final A defaultValue) {
+        final Object result = getAt(key);
+        if (result == null) {
+            return defaultValue;
+        } else {
+            return (A) result;
+        }
+    }
+
+    @Override
+    public final EStruct set(final String name, final int type, final Object value) {
+        return setAt(graph().resolver().stringToHash(name, true), type, value);
+    }
+
+    @Override
+    public final EStruct setAt(final int key, final int type, final Object value) {
+        lock();
+        try {
+            internal_set(key, type, value, false);
+        } finally {
+            unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public final Container remove(final String name) {
+        return set(name, Type.INT, null);
+    }
+
+    @Override
+    public final Container removeAt(final int key) {
+        return setAt(key, Type.INT, null);
+    }
+
+    @Override
+    public final Container rephase() {
+        return this;
+    }
+
+    @Override
+    public final int[] attributeIndexes() {
+        lock();
+        try {
+            final long addr = addr();
+            final int size = (int) POffHeapLongArray.get(addr, SIZE);
+            final int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = (int) key(addr, i);
+            }
+            return result;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final Object getOrCreate(final String key, final int type) {
+        final Object previous = get(key);
+        if (previous != null) {
+            return previous;
+        } else {
+            return getOrCreateAt(graph().resolver().stringToHash(key, true), type);
+        }
+    }
+
+    @Override
+    public final Object getOrCreateCustom(final String name, final String typeName) {
+        return getOrCreateAt(HashHelper.hash(name), HashHelper.hash(typeName));
+    }
+
+    @Override
+    public final Object getOrCreateCustomAt(final int key, final String typeName) {
+        return getOrCreateAt(key, HashHelper.hash(typeName));
+    }
+
+    @Override
+    public final Object getOrCreateAt(final int key, final int p_type) {
+        lock();
+        try {
+            long addr = addr();
+            long found = internal_find(addr, key);
+            if (found != -1 && type(addr, found) == p_type && hasValue(addr, found)) {
+                return internal_get(addr, found, false);
+            }
+            switch (p_type) {
+                case Type.BOOL:
+                case Type.DOUBLE:
+                case Type.LONG:
+                case Type.INT:
+                case Type.STRING:
+                case Type.ESTRUCT:
+                    //can not be created empty
+                    return null;
+            }
+            found = internal_set_raw(key, p_type, true, OffHeapConstants.NULL_PTR, false);
+            addr = addr();
+            final Object result = internal_get(addr, found, false);
+            if (result instanceof BaseCustomType) {
+                ((BaseCustomType) result).init();
+            }
+            return result;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final void each(final NodeStateCallback callBack) {
+        lock();
+        try {
+            final long addr = addr();
+            final long size = POffHeapLongArray.get(addr, SIZE);
+            for (long i = 0; i < size; i++) {
+                if (hasValue(addr, i)) {
+                    callBack.on((int) key(addr, i), type(addr, i), internal_get(addr, i, true));
+                }
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private void internal_set(final int p_key, final int p_type, final Object p_unsafe_elem, final boolean initial) {
+        if (p_unsafe_elem == null) {
+            internal_set_raw(p_key, p_type, false, OffHeapConstants.NULL_PTR, initial);
+            return;
+        }
+        long encoded;
+        try {
+            switch (p_type) {
+                case Type.BOOL:
+                    if ((boolean) p_unsafe_elem) {
+                        encoded = CoreConstants.BOOL_TRUE;
+                    } else {
+                        encoded = CoreConstants.BOOL_FALSE;
+                    }
+                    break;
+                case Type.INT:
+                    encoded = (int) p_unsafe_elem;
+                    break;
+                case Type.LONG:
+                    if (p_unsafe_elem instanceof Integer) {
+                        encoded = (Integer) p_unsafe_elem;
+                    } else {
+                        encoded = (long) p_unsafe_elem;
+                    }
+                    break;
+                case Type.DOUBLE:
+                    encoded = Double.doubleToRawLongBits((double) p_unsafe_elem);
+                    break;
+                case Type.STRING:
+                    encoded = POffHeapString.fromObject(arena(), (String) p_unsafe_elem);
+                    break;
+                case Type.ESTRUCT:
+                    encoded = ((OffHeapEStruct) p_unsafe_elem)._id;
+                    break;
+                default:
+                    throw new ClassCastException();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("GreyCat usage error, set method called with type " + Type.typeName(p_type) + " while param object is " + p_unsafe_elem);
+        }
+        internal_set_raw(p_key, p_type, true, encoded, initial);
+    }
+
+    private long internal_set_raw(final int p_key, final int p_type, final boolean nonNull, final long encoded, final boolean initial) {
+        long addr = addr();
+        long entry = internal_find(addr, p_key);
+        if (entry != -1) {
+            if (hasValue(addr, entry)) {
+                freeValue(type(addr, entry), value(addr, entry));
+            }
+            setEntry(addr, entry, p_key, p_type, nonNull, encoded);
+        } else {
+            final long size = POffHeapLongArray.get(addr, SIZE);
+            if (size == POffHeapLongArray.get(addr, CAPACITY)) {
+                long newCapacity = size * 2;
+                if (newCapacity == 0) {
+                    newCapacity = Constants.MAP_INITIAL_CAPACITY;
+                }
+                addr = allocate(addr, newCapacity);
+            }
+            entry = size;
+            setEntry(addr, entry, p_key, p_type, nonNull, encoded);
+            POffHeapLongArray.set(addr, SIZE, size + 1);
+            final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+            final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+            long hashIndex = p_key % (capacity * 2);
+            if (hashIndex < 0) {
+                hashIndex = hashIndex * -1;
+            }
+            POffHeapLongArray.set(subHash, entry, POffHeapLongArray.get(subHash, capacity + hashIndex));
+            POffHeapLongArray.set(subHash, capacity + hashIndex, entry);
+        }
+        if (!initial) {
+            declareDirty();
+        }
+        return entry;
+    }
+
+    private long allocate(final long addr, final long newCapacity) {
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        if (newCapacity <= capacity) {
+            return addr;
+        }
+        final long newAddr = POffHeapLongArray.reallocate(addr, OFFSET + newCapacity * ELEM_SIZE);
+        _array.setNodeAddr(_id, newAddr);
+        POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+        final long previousSubHash = POffHeapLongArray.get(newAddr, SUBHASH);
+        if (previousSubHash != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(previousSubHash);
+        }
+        final long subHash = POffHeapLongArray.allocate(arena(), newCapacity * 3);
+        final long size = POffHeapLongArray.get(newAddr, SIZE);
+        final long doubleCapacity = newCapacity * 2;
+        for (long i = 0; i < size; i++) {
+            long keyHash = key(newAddr, i) % doubleCapacity;
+            if (keyHash < 0) {
+                keyHash = keyHash * -1;
+            }
+            POffHeapLongArray.set(subHash, i, POffHeapLongArray.get(subHash, newCapacity + keyHash));
+            POffHeapLongArray.set(subHash, newCapacity + keyHash, i);
+        }
+        POffHeapLongArray.set(newAddr, SUBHASH, subHash);
+        return newAddr;
+    }
+
+    private static void freeValue(final int type, final long value) {
+        switch (type) {
+            case Type.ESTRUCT:
+                break;
+            case Type.ERELATION:
+                OffHeapERelation.free(value);
+                break;
+            default:
+                OffHeapStateChunk.freeValue(type, value);
+                break;
+        }
+    }
+
+    /**
+     * Swaps two node ids in the links held by a node.
+     */
+    static void swapIds(final long addr, final int first, final int second) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (long i = 0; i < size; i++) {
+            if (hasValue(addr, i)) {
+                switch (type(addr, i)) {
+                    case Type.ESTRUCT:
+                        final long id = value(addr, i);
+                        if (id == first) {
+                            POffHeapLongArray.set(addr, OFFSET + i * ELEM_SIZE + 2, second);
+                        } else if (id == second) {
+                            POffHeapLongArray.set(addr, OFFSET + i * ELEM_SIZE + 2, first);
+                        }
+                        break;
+                    case Type.ERELATION:
+                        OffHeapERelation.swapIds(value(addr, i), first, second);
+                        break;
+                }
+            }
+        }
+    }
+
+    static long clone(final POffHeapArena arena, final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return OffHeapConstants.NULL_PTR;
+        }
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        final long clonedAddr = POffHeapLongArray.cloneArray(arena, addr, OFFSET + capacity * ELEM_SIZE);
+        final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+        if (subHash != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.set(clonedAddr, SUBHASH, POffHeapLongArray.cloneArray(arena, subHash, capacity * 3));
+        }
+        for (long i = 0; i < size; i++) {
+            if (hasValue(addr, i)) {
+                final long cloned;
+                switch (type(addr, i)) {
+                    case Type.ESTRUCT:
+                        cloned = value(addr, i);
+                        break;
+                    case Type.ERELATION:
+                        cloned = OffHeapERelation.clone(arena, value(addr, i));
+                        break;
+                    default:
+                        cloned = OffHeapStateChunk.cloneValue(arena, type(addr, i), value(addr, i));
+                        break;
+                }
+                POffHeapLongArray.set(clonedAddr, OFFSET + i * ELEM_SIZE + 2, cloned);
+            }
+        }
+        return clonedAddr;
+    }
+
+    static void free(final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (long i = 0; i < size; i++) {
+            if (hasValue(addr, i)) {
+                freeValue(type(addr, i), value(addr, i));
+            }
+        }
+        final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+        if (subHash != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(subHash);
+        }
+        POffHeapLongArray.free(addr);
+    }
+
+    static void save(final long addr, final Buffer buffer) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        Base64.encodeIntToBuffer((int) size, buffer);
+        for (long i = 0; i < size; i++) {
+            if (hasValue(addr, i)) {
+                final int loopType = type(addr, i);
+                final long loopValue = value(addr, i);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                Base64.encodeIntToBuffer(loopType, buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                Base64.encodeIntToBuffer((int) key(addr, i), buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                switch (loopType) {
+                    case Type.ESTRUCT:
+                    case Type.BOOL:
+                    case Type.INT:
+                        Base64.encodeIntToBuffer((int) loopValue, buffer);
+                        break;
+                    case Type.ERELATION:
+                        OffHeapERelation.save(loopValue, buffer);
+                        break;
+                    case Type.STRING:
+                        POffHeapString.save(loopValue, buffer);
+                        break;
+                    case Type.LONG:
+                        Base64.encodeLongToBuffer(loopValue, buffer);
+                        break;
+                    case Type.DOUBLE:
+                        Base64.encodeDoubleToBuffer(Double.longBitsToDouble(loopValue), buffer);
+                        break;
+                    default:
+                        OffHeapStateChunk.saveStructure(loopType, loopValue, buffer);
+                        break;
+                }
+            }
+        }
+    }
+
+    private static final byte LOAD_WAITING_ALLOC = 0;
+    private static final byte LOAD_WAITING_TYPE = 1;
+    private static final byte LOAD_WAITING_KEY = 2;
+    private static final byte LOAD_WAITING_VALUE = 3;
+
+    final long load(final Buffer buffer, final long currentCursor, final long max) {
+        final boolean initial = POffHeapLongArray.get(addr(), SIZE) == 0;
+        long cursor = currentCursor;
+        long previous = cursor;
+        byte state = LOAD_WAITING_ALLOC;
+        int read_type = -1;
+        int read_key = -1;
+        while (cursor < max) {
+            byte current = buffer.read(cursor);
+            if (current == Constants.BLOCK_CLOSE) {
+                break;
+            } else if (current == Constants.CHUNK_SEP) {
+                switch (state) {
+                    case LOAD_WAITING_ALLOC:
+                        final int closePowerOfTwo = (int) Math.pow(2, Math.ceil(Math.log(Base64.decodeToIntWithBounds(buffer, previous, cursor)) / Math.log(2)));
+                        allocate(addr(), closePowerOfTwo);
+                        state = LOAD_WAITING_TYPE;
+                        cursor++;
+                        previous = cursor;
+                        break;
+                    case LOAD_WAITING_TYPE:
+                        read_type = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                        state = LOAD_WAITING_KEY;
+                        cursor++;
+                        previous = cursor;
+                        break;
+                    case LOAD_WAITING_KEY:
+                        read_key = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                        switch (read_type) {
+                            case Type.BOOL:
+                            case Type.INT:
+                            case Type.DOUBLE:
+                            case Type.LONG:
+                            case Type.STRING:
+                            case Type.ESTRUCT:
+                                state = LOAD_WAITING_VALUE;
+                                cursor++;
+                                previous = cursor;
+                                break;
+                            default:
+                                cursor++;
+                                cursor = loadStructure(read_key, read_type, buffer, cursor, max, initial);
+                                if (cursor < max) {
+                                    current = buffer.read(cursor);
+                                    if (current == Constants.CHUNK_SEP) {
+                                        state = LOAD_WAITING_TYPE;
+                                        cursor++;
+                                        previous = cursor;
+                                    }
+                                }
+                                break;
+                        }
+                        break;
+                    case LOAD_WAITING_VALUE:
+                        load_primitive(read_key, read_type, buffer, previous, cursor, initial);
+                        state = LOAD_WAITING_TYPE;
+                        cursor++;
+                        previous = cursor;
+                        break;
+                }
+            } else {
+                cursor++;
+            }
+        }
+        if (state == LOAD_WAITING_VALUE) {
+            load_primitive(read_key, read_type, buffer, previous, cursor, initial);
+        }
+        return cursor;
+    }
+
+    private void load_primitive(final int read_key, final int read_type, final Buffer buffer, final long previous, final long cursor, final boolean initial) {
+        switch (read_type) {
+            case Type.BOOL:
+            case Type.INT:
+                internal_set_raw(read_key, read_type, true, Base64.decodeToIntWithBounds(buffer, previous, cursor), initial);
+                break;
+            case Type.DOUBLE:
+                internal_set_raw(read_key, read_type, true, Double.doubleToRawLongBits(Base64.decodeToDoubleWithBounds(buffer, previous, cursor)), initial);
+                break;
+            case Type.LONG:
+                internal_set_raw(read_key, read_type, true, Base64.decodeToLongWithBounds(buffer, previous, cursor), initial);
+                break;
+            case Type.STRING:
+                internal_set_raw(read_key, read_type, true, POffHeapString.fromObject(arena(), Base64.decodeToStringWithBounds(buffer, previous, cursor)), initial);
+                break;
+            case Type.ESTRUCT:
+                final int id = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                //the referenced node can be loaded after this one
+                _array.nodeByIndex(id, true);
+                internal_set_raw(read_key, read_type, true, id, initial);
+                break;
+        }
+    }
+
+    private long loadStructure(final int read_key, final int read_type, final Buffer buffer, final long offset, final long max, final boolean initial) {
+        final long entry = internal_set_raw(read_key, read_type, true, OffHeapConstants.NULL_PTR, initial);
+        switch (read_type) {
+            case Type.ERELATION:
+                return new OffHeapERelation(this, entry, _array).load(buffer, offset, max);
+            case Type.LONG_ARRAY:
+                return new OffHeapLongArray(this, entry).load(buffer, offset, max);
+            case Type.DOUBLE_ARRAY:
+                return new OffHeapDoubleArray(this, entry).load(buffer, offset, max);
+            case Type.INT_ARRAY:
+                return new OffHeapIntArray(this, entry).load(buffer, offset, max);
+            case Type.STRING_ARRAY:
+                return new OffHeapStringArray(this, entry).load(buffer, offset, max);
+            case Type.RELATION:
+                return new OffHeapRelation(this, entry).load(buffer, offset, max);
+            case Type.DMATRIX:
+                return new OffHeapDMatrix(this, entry).load(buffer, offset, max);
+            case Type.LMATRIX:
+                return new OffHeapLMatrix(this, entry).load(buffer, offset, max);
+            case Type.LONG_TO_LONG_MAP:
+                return new OffHeapLongLongMap(this, entry).load(buffer, offset, max);
+            case Type.INT_TO_INT_MAP:
+                return new OffHeapIntIntMap(this, entry).load(buffer, offset, max);
+            case Type.INT_TO_STRING_MAP:
+                return new OffHeapIntStringMap(this, entry).load(buffer, offset, max);
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                return new OffHeapLongLongArrayMap(this, entry).load(buffer, offset, max);
+            case Type.STRING_TO_INT_MAP:
+                return new OffHeapStringIntMap(this, entry).load(buffer, offset, max);
+            default:
+                return new OffHeapEStructArray(this, entry, graph()).load(buffer, offset, max);
+        }
+    }
+
+    @Override
+    public final String toString() {
+        final StringBuilder builder = new StringBuilder();
+        final boolean[] isFirst = {true};
+        boolean isFirstField = true;
+        builder.append("{");
+        //snapshot the attributes, nested structures lock again while printed
+        final int size;
+        final int[] attrKeys;
+        final int[] attrTypes;
+        final Object[] attrValues;
+        lock();
+        try {
+            final long addr = addr();
+            size = (int) POffHeapLongArray.get(addr, SIZE);
+            attrKeys = new int[size];
+            attrTypes = new int[size];
+            attrValues = new Object[size];
+            for (int i = 0; i < size; i++) {
+                attrKeys[i] = (int) key(addr, i);
+                attrTypes[i] = type(addr, i);
+                attrValues[i] = internal_get(addr, i, true);
+            }
+        } finally {
+            unlock();
+        }
+        for (int i = 0; i < size; i++) {
+            final Object elem = attrValues[i];
+            final Resolver resolver = _array.graph().resolver();
+            final int attributeKey = attrKeys[i];
+            final int elemType = attrTypes[i];
+            if (elem != null) {
+                if (isFirstField) {
+                    isFirstField = false;
+                } else {
+                    builder.append(",");
+                }
+                String resolveName = resolver.hashToString(attributeKey);
+                if (resolveName == null) {
+                    resolveName = attributeKey + "";
+                }
+                switch (elemType) {
+                    case Type.BOOL: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        if ((Boolean) elem) {
+                            builder.append("1");
+                        } else {
+                            builder.append("0");
+                        }
+                        break;
+                    }
+                    case Type.STRING: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("\"");
+                        builder.append(elem);
+                        builder.append("\"");
+                        break;
+                    }
+                    case Type.LONG: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append(elem);
+                        break;
+                    }
+                    case Type.INT: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append(elem);
+                        break;
+                    }
+                    case Type.DOUBLE: {
+                        if (!Constants.isNaN((double) elem)) {
+                            builder.append("\"");
+                            builder.append(resolveName);
+                            builder.append("\":");
+                            builder.append(elem);
+                        }
+                        break;
+                    }
+                    case Type.DOUBLE_ARRAY: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("[");
+                        DoubleArray castedArr = (DoubleArray) elem;
+                        for (int j = 0; j < castedArr.size(); j++) {
+                            if (j != 0) {
+                                builder.append(",");
+                            }
+                            builder.append(castedArr.get(j));
+                        }
+                        builder.append("]");
+                        break;
+                    }
+                    case Type.RELATION:
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("[");
+                        Relation castedRelArr = (Relation) elem;
+                        for (int j = 0; j < castedRelArr.size(); j++) {
+                            if (j != 0) {
+                                builder.append(",");
+                            }
+                            builder.append(castedRelArr.get(j));
+                        }
+                        builder.append("]");
+                        break;
+                    case Type.ERELATION:
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("[");
+                        ERelation castedERelArr = (ERelation) elem;
+                        for (int j = 0; j < castedERelArr.size(); j++) {
+                            if (j != 0) {
+                                builder.append(",");
+                            }
+                            builder.append(castedERelArr.node(j).id());
+                        }
+                        builder.append("]");
+                        break;
+                    case Type.LONG_ARRAY: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("[");
+                        LongArray castedArr2 = (LongArray) elem;
+                        for (int j = 0; j < castedArr2.size(); j++) {
+                            if (j != 0) {
+                                builder.append(",");
+                            }
+                            builder.append(castedArr2.get(j));
+                        }
+                        builder.append("]");
+                        break;
+                    }
+                    case Type.INT_ARRAY: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("[");
+                        IntArray castedArr3 = (IntArray) elem;
+                        for (int j = 0; j < castedArr3.size(); j++) {
+                            if (j != 0) {
+                                builder.append(",");
+                            }
+                            builder.append(castedArr3.get(j));
+                        }
+                        builder.append("]");
+                        break;
+                    }
+                    case Type.LONG_TO_LONG_MAP: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("{");
+                        LongLongMap castedMapL2L = (LongLongMap) elem;
+                        isFirst[0] = true;
+                        castedMapL2L.each(new LongLongMapCallBack() {
+                            @Override
+                            public void on(long key, long value) {
+                                if (!isFirst[0]) {
+                                    builder.append(",");
+                                } else {
+                                    isFirst[0] = false;
+                                }
+                                builder.append("\"");
+                                builder.append(key);
+                                builder.append("\":");
+                                builder.append(value);
+                            }
+                        });
+                        builder.append("}");
+                        break;
+                    }
+                    case Type.INT_TO_INT_MAP: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("{");
+                        IntIntMap castedMapI2I = (IntIntMap) elem;
+                        isFirst[0] = true;
+                        castedMapI2I.each(new IntIntMapCallBack() {
+                            @Override
+                            public void on(int key, int value) {
+                                if (!isFirst[0]) {
+                                    builder.append(",");
+                                } else {
+                                    isFirst[0] = false;
+                                }
+                                builder.append("\"");
+                                builder.append(key);
+                                builder.append("\":");
+                                builder.append(value);
+                            }
+                        });
+                        builder.append("}");
+                        break;
+                    }
+                    case Type.INT_TO_STRING_MAP: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("{");
+                        IntStringMap castedMapI2S = (IntStringMap) elem;
+                        isFirst[0] = true;
+                        castedMapI2S.each(new IntStringMapCallBack() {
+                            @Override
+                            public void on(int key, String value) {
+                                if (!isFirst[0]) {
+                                    builder.append(",");
+                                } else {
+                                    isFirst[0] = false;
+                                }
+                                builder.append("\"");
+                                builder.append(key);
+                                builder.append("\":");
+                                builder.append(value);
+                            }
+                        });
+                        builder.append("}");
+                        break;
+                    }
+                    case Type.LONG_TO_LONG_ARRAY_MAP: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("{");
+                        LongLongArrayMap castedMapL2LA = (LongLongArrayMap) elem;
+                        isFirst[0] = true;
+                        Set<Long> keys = new HashSet<Long>();
+                        castedMapL2LA.each(new LongLongArrayMapCallBack() {
+                            @Override
+                            public void on(long key, long value) {
+                                keys.add(key);
+                            }
+                        });
+                        final Long[] flatKeys = keys.toArray(new Long[keys.size()]);
+                        for (int k = 0; k < flatKeys.length; k++) {
+                            long[] values = castedMapL2LA.get(flatKeys[k]);
+                            if (!isFirst[0]) {
+                                builder.append(",");
+                            } else {
+                                isFirst[0] = false;
+                            }
+                            builder.append("\"");
+                            builder.append(flatKeys[k]);
+                            builder.append("\":[");
+                            for (int j = 0; j < values.length; j++) {
+                                if (j != 0) {
+                                    builder.append(",");
+                                }
+                                builder.append(values[j]);
+                            }
+                            builder.append("]");
+                        }
+                        builder.append("}");
+                        break;
+                    }
+                    case Type.STRING_TO_INT_MAP: {
+                        builder.append("\"");
+                        builder.append(resolveName);
+                        builder.append("\":");
+                        builder.append("{");
+                        StringIntMap castedMapS2L = (StringIntMap) elem;
+                        isFirst[0] = true;
+                        castedMapS2L.each(new StringLongMapCallBack() {
+                            @Override
+                            public void on(String key, long value) {
+                                if (!isFirst[0]) {
+                                    builder.append(",");
+                                } else {
+                                    isFirst[0] = false;
+                                }
+                                builder.append("\"");
+                                builder.append(key);
+                                builder.append("\":");
+                                builder.append(value);
+                            }
+                        });
+                        builder.append("}");
+                        break;
+                    }
+
+                }
+            }
+        }
+        builder.append("}");
+        return builder.toString();
+    }
+
+    @Override
+    public final Relation getRelation(final String name) {
+        return (Relation) get(name);
+    }
+
+    @Override
+    public final Index getIndex(final String name) {
+        return (Index) get(name);
+    }
+
+    @Override
+    public final DMatrix getDMatrix(final String name) {
+        return (DMatrix) get(name);
+    }
+
+    @Override
+    public final LMatrix getLMatrix(final String name) {
+        return (LMatrix) get(name);
+    }
+
+    @Override
+    public final EStructArray getEGraph(final String name) {
+        return (EStructArray) get(name);
+    }
+
+    @Override
+    public final LongArray getLongArray(final String name) {
+        return (LongArray) get(name);
+    }
+
+    @Override
+    public final IntArray getIntArray(final String name) {
+        return (IntArray) get(name);
+    }
+
+    @Override
+    public final DoubleArray getDoubleArray(final String name) {
+        return (DoubleArray) get(name);
+    }
+
+    @Override
+    public final StringArray getStringArray(final String name) {
+        return (StringArray) get(name);
+    }
+
+    @Override
+    public final StringIntMap getStringIntMap(final String name) {
+        return (StringIntMap) get(name);
+    }
+
+    @Override
+    public final LongLongMap getLongLongMap(final String name) {
+        return (LongLongMap) get(name);
+    }
+
+    @Override
+    public final IntIntMap getIntIntMap(final String name) {
+        return (IntIntMap) get(name);
+    }
+
+    @Override
+    public final IntStringMap getIntStringMap(final String name) {
+        return (IntStringMap) get(name);
+    }
+
+    @Override
+    public final LongLongArrayMap getLongLongArrayMap(final String name) {
+        return (LongLongArrayMap) get(name);
+    }
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.Constants;
+import greycat.Graph;
+import greycat.internal.CoreConstants;
+import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
+import greycat.struct.Buffer;
+import greycat.struct.EStruct;
+import greycat.struct.EStructArray;
+import greycat.utility.Base64;
+
+/**
+ * Off-heap {@link EStructArray}: a segment holding the addresses of the segments of its {@link OffHeapEStruct}.
+ * The id of a node is its position in this segment, links between nodes are stored as ids and remapped when nodes are moved.
+ */
+class OffHeapEStructArray implements EStructArray {
+
+    private static final int CAPACITY = 0;
+    private static final int SIZE = 1;
+    private static final int OFFSET = 2;
+
+    private final OffHeapContainer parent;
+    private final long index;
+    private final Graph _graph;
+
+    OffHeapEStructArray(final OffHeapContainer p_parent, final long p_index, final Graph p_graph) {
+        parent = p_parent;
+        index = p_index;
+        _graph = p_graph;
+        parent.lock();
+        try {
+            if (parent.addrByIndex(index) == OffHeapConstants.NULL_PTR) {
+                final long addr = POffHeapLongArray.allocate(parent.arena(), OFFSET);
+                POffHeapLongArray.set(addr, CAPACITY, 0);
+                POffHeapLongArray.set(addr, SIZE, 0);
+                parent.setAddrByIndex(index, addr);
+            }
+        } finally {
+            parent.unlock();
+        }
+    }
+
+    final void lock() {
+        parent.lock();
+    }
+
+    final void unlock() {
+        parent.unlock();
+    }
+
+    final void declareDirty() {
+        parent.declareDirty();
+    }
+
+    final POffHeapArena arena() {
+        return parent.arena();
+    }
+
+    final long nodeAddr(final int id) {
+        return POffHeapLongArray.get(parent.addrByIndex(index), OFFSET + id);
+    }
+
+    final void setNodeAddr(final int id, final long nodeAddr) {
+        POffHeapLongArray.set(parent.addrByIndex(index), OFFSET + id, nodeAddr);
+    }
+
+    private void allocate(final long newCapacity) {
+        final long addr = parent.addrByIndex(index);
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        if (newCapacity <= capacity) {
+            return;
+        }
+        final long newAddr = POffHeapLongArray.reallocate(addr, OFFSET + newCapacity);
+        POffHeapLongArray.fillLong(newAddr, OFFSET + capacity, OFFSET + newCapacity, OffHeapConstants.NULL_PTR);
+        POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+        parent.setAddrByIndex(index, newAddr);
+    }
+
+    /**
+     * Resolves a node while loading, nodes can be referenced before their own definition.
+     */
+    final OffHeapEStruct nodeByIndex(final int id, final boolean createIfAbsent) {
+        long addr = parent.addrByIndex(index);
+        if (id >= POffHeapLongArray.get(addr, CAPACITY)) {
+            if (!createIfAbsent) {
+                return null;
+            }
+            allocate((long) Math.pow(2, Math.ceil(Math.log(id + 1) / Math.log(2))));
+            addr = parent.addrByIndex(index);
+        }
+        if (id >= POffHeapLongArray.get(addr, SIZE)) {
+            POffHeapLongArray.set(addr, SIZE, id + 1);
+        }
+        if (POffHeapLongArray.get(addr, OFFSET + id) == OffHeapConstants.NULL_PTR) {
+            if (!createIfAbsent) {
+                return null;
+            }
+            POffHeapLongArray.set(addr, OFFSET + id, OffHeapEStruct.allocate(arena()));
+        }
+        return new OffHeapEStruct(this, id);
+    }
+
+    @Override
+    public final int size() {
+        lock();
+        try {
+            return (int) POffHeapLongArray.get(parent.addrByIndex(index), SIZE);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final void free() {
+        lock();
+        try {
+            free(parent.addrByIndex(index));
+            parent.setAddrByIndex(index, OffHeapConstants.NULL_PTR);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final Graph graph() {
+        return _graph;
+    }
+
+    @Override
+    public final EStruct newEStruct() {
+        lock();
+        try {
+            long addr = parent.addrByIndex(index);
+            final long size = POffHeapLongArray.get(addr, SIZE);
+            final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+            if (size == capacity) {
+                long newCapacity = capacity * 2;
+                if (newCapacity == 0) {
+                    newCapacity = Constants.MAP_INITIAL_CAPACITY;
+                }
+                allocate(newCapacity);
+                addr = parent.addrByIndex(index);
+            }
+            POffHeapLongArray.set(addr, OFFSET + size, OffHeapEStruct.allocate(arena()));
+            POffHeapLongArray.set(addr, SIZE, size + 1);
+            declareDirty();
+            return new OffHeapEStruct(this, (int) size);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final EStruct estruct(final int nodeIndex) {
+        lock();
+        try {
+            if (nodeIndex < 0 || nodeIndex >= POffHeapLongArray.get(parent.addrByIndex(index), SIZE)) {
+                return null;
+            }
+            return nodeByIndex(nodeIndex, false);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final EStruct root() {
+        lock();
+        try {
+            if (POffHeapLongArray.get(parent.addrByIndex(index), SIZE) > 0) {
+                return new OffHeapEStruct(this, 0);
+            }
+            return null;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final EStructArray setRoot(final EStruct eStruct) {
+        final OffHeapEStruct casted = (OffHeapEStruct) eStruct;
+        lock();
+        try {
+            final int previousID = casted._id;
+            if (previousID != 0) {
+                swap(0, previousID);
+                casted._id = 0;
+                declareDirty();
+            }
+        } finally {
+            unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public final EStructArray drop(final EStruct eStruct) {
+        final OffHeapEStruct casted = (OffHeapEStruct) eStruct;
+        lock();
+        try {
+            final int previousId = casted._id;
+            final long addr = parent.addrByIndex(index);
+            final long last = POffHeapLongArray.get(addr, SIZE) - 1;
+            if (previousId != last) {
+                swap(previousId, (int) last);
+            }
+            OffHeapEStruct.free(POffHeapLongArray.get(addr, OFFSET + last));
+            POffHeapLongArray.set(addr, OFFSET + last, OffHeapConstants.NULL_PTR);
+            POffHeapLongArray.set(addr, SIZE, last);
+            declareDirty();
+        } finally {
+            unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Swaps the position of two nodes, and the links pointing to them.
+     */
+    private void swap(final int first, final int second) {
+        final long addr = parent.addrByIndex(index);
+        final long firstAddr = POffHeapLongArray.get(addr, OFFSET + first);
+        POffHeapLongArray.set(addr, OFFSET + first, POffHeapLongArray.get(addr, OFFSET + second));
+        POffHeapLongArray.set(addr, OFFSET + second, firstAddr);
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (long i = 0; i < size; i++) {
+            OffHeapEStruct.swapIds(POffHeapLongArray.get(addr, OFFSET + i), first, second);
+        }
+    }
+
+    @Override
+    public final String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\"nodes\":[");
+        lock();
+        try {
+            final long size = POffHeapLongArray.get(parent.addrByIndex(index), SIZE);
+            for (int i = 0; i < size; i++) {
+                if (i != 0) {
+                    builder.append(",");
+                }
+                builder.append(new OffHeapEStruct(this, i).toString());
+            }
+        } finally {
+            unlock();
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
+    static void save(final long addr, final Buffer buffer) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        Base64.encodeIntToBuffer((int) size, buffer);
+        for (long i = 0; i < size; i++) {
+            buffer.write(CoreConstants.BLOCK_OPEN);
+            OffHeapEStruct.save(POffHeapLongArray.get(addr, OFFSET + i), buffer);
+            buffer.write(CoreConstants.BLOCK_CLOSE);
+        }
+    }
+
+    static long clone(final POffHeapArena arena, final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return OffHeapConstants.NULL_PTR;
+        }
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        final long clonedAddr = POffHeapLongArray.cloneArray(arena, addr, OFFSET + capacity);
+        //links are ids, they remain valid in the clone
+        for (long i = 0; i < size; i++) {
+            POffHeapLongArray.set(clonedAddr, OFFSET + i, OffHeapEStruct.clone(arena, POffHeapLongArray.get(addr, OFFSET + i)));
+        }
+        return clonedAddr;
+    }
+
+    static void free(final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (long i = 0; i < size; i++) {
+            OffHeapEStruct.free(POffHeapLongArray.get(addr, OFFSET + i));
+        }
+        POffHeapLongArray.free(addr);
+    }
+
+    final long load(final Buffer buffer, final long offset, final long max) {
+        long cursor = offset;
+        byte current = buffer.read(cursor);
+        boolean isFirst = true;
+        int insertIndex = 0;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
+            if (current == Constants.BLOCK_OPEN) {
+                if (isFirst) {
+                    final int size = Base64.decodeToIntWithBounds(buffer, offset, cursor);
+                    allocate((long) Math.pow(2, Math.ceil(Math.log(size) / Math.log(2))));
+                    isFirst = false;
+                }
+                cursor++;
+                cursor = nodeByIndex(insertIndex, true).load(buffer, cursor, max);
+                insertIndex++;
+            }
+            cursor++; //consume block end
+            if (cursor < max) {
+                current = buffer.read(cursor);
+            }
+        }
+        return cursor;
+    }
+
+}
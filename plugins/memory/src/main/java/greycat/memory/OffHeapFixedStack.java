@@ -16,6 +16,7 @@
 package greycat.memory;
 
 import greycat.chunk.Stack;
+import greycat.memory.primary.POffHeapAllocator;
 import greycat.memory.primary.POffHeapLongArray;
 
 final class OffHeapFixedStack implements Stack {
@@ -30,8 +31,8 @@ final class OffHeapFixedStack implements Stack {
 
     OffHeapFixedStack(long capacity, boolean fill) {
         _capacity = capacity;
-        _next = POffHeapLongArray.allocate(capacity);
-        _prev = POffHeapLongArray.allocate(capacity);
+        _next = POffHeapLongArray.allocate(POffHeapAllocator.shared(), capacity);
+        _prev = POffHeapLongArray.allocate(POffHeapAllocator.shared(), capacity);
         this._first = -1;
         this._last = -1;
         if (fill) {
@@ -99,6 +100,13 @@ final class OffHeapFixedStack implements Stack {
         long p = POffHeapLongArray.get(_prev, index);
         long n = POffHeapLongArray.get(_next, index);
         if (p == -1 && n == -1) {
+            if (_first == index) {
+                //single element
+                _first = -1;
+                _last = -1;
+                _count = 0;
+                return true;
+            }
             return false;
         }
         if (p == -1) {
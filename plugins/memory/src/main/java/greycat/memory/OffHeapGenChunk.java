@@ -16,11 +16,14 @@
 package greycat.memory;
 
 import greycat.Constants;
+import greycat.chunk.Chunk;
 import greycat.chunk.ChunkType;
 import greycat.chunk.GenChunk;
+import greycat.internal.CoreConstants;
 import greycat.memory.primary.POffHeapLongArray;
 import greycat.struct.Buffer;
 import greycat.utility.Base64;
+import greycat.utility.HashHelper;
 
 final class OffHeapGenChunk implements GenChunk {
 
@@ -29,10 +32,12 @@ final class OffHeapGenChunk implements GenChunk {
     private final long prefix;
     private final long addr;
 
-    private static final int DIRTY = 0;
-    private static final int SEED = 1;
+    private static final int SEED = 0;
+    private static final int HASH = 1;
+    private static final int GROUP = 2;
+    private static final int IN_SYNC = 3;
 
-    private static final int CHUNK_SIZE = 2;
+    private static final int CHUNK_SIZE = 4;
 
     OffHeapGenChunk(final OffHeapChunkSpace p_space, final long p_id, final long p_index) {
         index = p_index;
@@ -43,10 +48,12 @@ final class OffHeapGenChunk implements GenChunk {
         try {
             long temp_addr = space.addrByIndex(index);
             if (temp_addr == OffHeapConstants.NULL_PTR) {
-                temp_addr = POffHeapLongArray.allocate(CHUNK_SIZE);
+                temp_addr = POffHeapLongArray.allocate(space.arena(), CHUNK_SIZE);
                 space.setAddrByIndex(index, temp_addr);
                 POffHeapLongArray.set(temp_addr, SEED, -1);
-                POffHeapLongArray.set(temp_addr, DIRTY, 0);
+                POffHeapLongArray.set(temp_addr, HASH, 0);
+                POffHeapLongArray.set(temp_addr, GROUP, 0);
+                POffHeapLongArray.set(temp_addr, IN_SYNC, 1);
             }
             addr = temp_addr;
         } finally {
@@ -64,33 +71,90 @@ final class OffHeapGenChunk implements GenChunk {
     public final void save(final Buffer buffer) {
         space.lockByIndex(index);
         try {
+            final long beginIndex = buffer.writeIndex();
+            final int group = (int) POffHeapLongArray.get(addr, GROUP);
+            if (group != 0) {
+                Base64.encodeIntToBuffer(group, buffer);
+                buffer.write(CoreConstants.CHUNK_META_SEP);
+            }
             Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, SEED), buffer);
-            POffHeapLongArray.set(addr, DIRTY, 0);
+            POffHeapLongArray.set(addr, HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
         } finally {
             space.unlockByIndex(index);
         }
     }
 
     @Override
-    public void saveDiff(Buffer buffer) {
-        save(buffer);
+    public final void saveDiff(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            final long beginIndex = buffer.writeIndex();
+            Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, SEED), buffer);
+            POffHeapLongArray.set(addr, HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
+        } finally {
+            space.unlockByIndex(index);
+        }
     }
 
     @Override
     public final void load(final Buffer buffer) {
         space.lockByIndex(index);
         try {
-            if (buffer == null || buffer.length() == 0) {
-                return;
+            internal_load(buffer);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void loadDiff(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            internal_load(buffer);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void internal_load(final Buffer buffer) {
+        if (buffer == null || buffer.length() == 0) {
+            return;
+        }
+        final long loaded = Base64.decodeToLongWithBounds(buffer, 0, buffer.length());
+        final long previousSeed = POffHeapLongArray.get(addr, SEED);
+        POffHeapLongArray.set(addr, SEED, loaded);
+        if (previousSeed != -1 && previousSeed != loaded) {
+            if (POffHeapLongArray.get(addr, HASH) != Constants.EMPTY_HASH) {
+                POffHeapLongArray.set(addr, HASH, Constants.EMPTY_HASH);
+                space.notifyUpdate(index);
             }
-            long loaded = Base64.decodeToLongWithBounds(buffer, 0, buffer.length());
-            long previousSeed = POffHeapLongArray.get(addr, SEED);
-            POffHeapLongArray.set(addr, SEED, loaded);
-            if (previousSeed != -1 && previousSeed != loaded) {
-                if (POffHeapLongArray.get(addr, DIRTY) != 1) {
-                    POffHeapLongArray.set(addr, DIRTY, 1);
-                    space.notifyUpdate(index);
-                }
+        }
+    }
+
+    @Override
+    public final long hash() {
+        return POffHeapLongArray.get(addr, HASH);
+    }
+
+    @Override
+    public final boolean inSync() {
+        space.lockByIndex(index);
+        try {
+            return POffHeapLongArray.get(addr, IN_SYNC) == 1;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final boolean sync(final long remoteHash) {
+        space.lockByIndex(index);
+        try {
+            if (POffHeapLongArray.get(addr, IN_SYNC) == 1 && remoteHash != POffHeapLongArray.get(addr, HASH)) {
+                POffHeapLongArray.set(addr, IN_SYNC, 0);
+                return true;
+            } else {
+                return false;
             }
         } finally {
             space.unlockByIndex(index);
@@ -98,8 +162,14 @@ final class OffHeapGenChunk implements GenChunk {
     }
 
     @Override
-    public void loadDiff(Buffer buffer) {
-        load(buffer);
+    public final int group() {
+        return (int) POffHeapLongArray.get(addr, GROUP);
+    }
+
+    @Override
+    public final Chunk setGroup(final int g) {
+        POffHeapLongArray.set(addr, GROUP, g);
+        return this;
     }
 
     @Override
@@ -17,6 +17,7 @@ package greycat.memory;
 
 import greycat.Constants;
 import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.LMatrix;
 import greycat.utility.Base64;
@@ -29,6 +30,7 @@ class OffHeapLMatrix implements LMatrix {
     private static final int INDEX_COLUMNS = 1;
     private static final int INDEX_MAX_COLUMN = 2;
     private static final int INDEX_OFFSET = 3;
+
     private final long index;
     private final OffHeapContainer container;
 
@@ -38,18 +40,13 @@ class OffHeapLMatrix implements LMatrix {
     }
 
     @Override
-    public final LMatrix init(int rows, int columns) {
+    public final LMatrix init(final int rows, final int columns) {
         container.lock();
         try {
-            long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                POffHeapLongArray.free(addr);
-            }
-            addr = POffHeapLongArray.allocate(rows * columns + INDEX_OFFSET);
+            final long addr = unsafe_init(rows * columns + INDEX_OFFSET);
             POffHeapLongArray.set(addr, INDEX_ROWS, rows);
             POffHeapLongArray.set(addr, INDEX_COLUMNS, columns);
             POffHeapLongArray.set(addr, INDEX_MAX_COLUMN, columns);
-            container.setAddrByIndex(index, addr);
             container.declareDirty();
         } finally {
             container.unlock();
@@ -58,26 +55,21 @@ class OffHeapLMatrix implements LMatrix {
     }
 
     @Override
-    public LMatrix appendColumn(long[] newColumn) {
+    public final LMatrix appendColumn(final long[] newColumn) {
         container.lock();
         try {
-            long nbRows;
-            long nbColumns;
-            long nbMaxColumn;
             long addr = container.addrByIndex(index);
-            long indexAddr = OffHeapConstants.NULL_PTR;
-            if (addr != OffHeapConstants.NULL_PTR) {
-                indexAddr = POffHeapLongArray.get(addr, INDEX_COLUMNS);
-            }
-            if (addr == OffHeapConstants.NULL_PTR || indexAddr == OffHeapConstants.NULL_PTR) {
+            int nbRows;
+            int nbColumns;
+            int nbMaxColumn;
+            if (addr == OffHeapConstants.NULL_PTR) {
                 nbRows = newColumn.length;
                 nbColumns = Constants.MAP_INITIAL_CAPACITY;
                 nbMaxColumn = 0;
-                addr = POffHeapLongArray.allocate(nbRows * nbColumns + INDEX_OFFSET);
+                addr = unsafe_init(nbRows * nbColumns + INDEX_OFFSET);
                 POffHeapLongArray.set(addr, INDEX_ROWS, nbRows);
                 POffHeapLongArray.set(addr, INDEX_COLUMNS, nbColumns);
                 POffHeapLongArray.set(addr, INDEX_MAX_COLUMN, nbMaxColumn);
-                container.setAddrByIndex(index, addr);
             } else {
                 nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
                 nbColumns = (int) POffHeapLongArray.get(addr, INDEX_COLUMNS);
@@ -85,51 +77,36 @@ class OffHeapLMatrix implements LMatrix {
             }
             if (nbMaxColumn == nbColumns) {
                 nbColumns = nbColumns * 2;
-                final long newLength = nbColumns * nbRows + INDEX_OFFSET;
+                final int newLength = nbColumns * nbRows + INDEX_OFFSET;
+                final int previousLength = length(addr);
                 addr = POffHeapLongArray.reallocate(addr, newLength);
+                POffHeapLongArray.fillLong(addr, previousLength, newLength, 0);
                 POffHeapLongArray.set(addr, INDEX_COLUMNS, nbColumns);
                 container.setAddrByIndex(index, addr);
             }
-
-            long base = nbMaxColumn * nbRows + INDEX_OFFSET;
+            if (newColumn.length != nbRows) {
+                throw new RuntimeException("Vector has different row size than Matrix");
+            }
+            final long base = nbMaxColumn * nbRows + INDEX_OFFSET;
             for (int i = 0; i < newColumn.length; i++) {
-                POffHeapLongArray.set(addr, i + base, newColumn[i]);
+                POffHeapLongArray.set(addr, base + i, newColumn[i]);
             }
             POffHeapLongArray.set(addr, INDEX_MAX_COLUMN, nbMaxColumn + 1);
-        } finally {
             container.declareDirty();
+        } finally {
             container.unlock();
         }
         return this;
     }
 
-    void unsafe_init(int size) {
-        long addr = container.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            POffHeapLongArray.free(addr);
-        }
-        addr = POffHeapLongArray.allocate(size);
-        POffHeapLongArray.set(addr, INDEX_ROWS, 0);
-        POffHeapLongArray.set(addr, INDEX_COLUMNS, 0);
-        container.setAddrByIndex(index, addr);
-    }
-
-    void unsafe_set(long setIndex, long value) {
-        final long addr = container.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            POffHeapLongArray.set(addr, setIndex, value);
-        }
-    }
-
     @Override
-    public final LMatrix fill(long value) {
+    public final LMatrix fill(final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                long nbRows = POffHeapLongArray.get(addr, INDEX_ROWS);
-                long nbColumns = POffHeapLongArray.get(addr, INDEX_COLUMNS);
-                POffHeapLongArray.fillLong(addr, INDEX_OFFSET, (nbRows * nbColumns), value);
+                POffHeapLongArray.fillLong(addr, INDEX_OFFSET, length(addr), value);
+                POffHeapLongArray.set(addr, INDEX_MAX_COLUMN, POffHeapLongArray.get(addr, INDEX_COLUMNS));
                 container.declareDirty();
             }
         } finally {
@@ -139,7 +116,7 @@ class OffHeapLMatrix implements LMatrix {
     }
 
     @Override
-    public LMatrix fillWith(long[] values) {
+    public final LMatrix fillWith(final long[] values) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
@@ -156,17 +133,16 @@ class OffHeapLMatrix implements LMatrix {
     }
 
     @Override
-    public LMatrix fillWithRandom(long min, long max, long seed) {
+    public final LMatrix fillWithRandom(final long min, final long max, final long seed) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                final long nbRows = POffHeapLongArray.get(addr, INDEX_ROWS);
-                final long nbColumns = POffHeapLongArray.get(addr, INDEX_COLUMNS);
                 final Random rand = new Random();
                 rand.setSeed(seed);
-                for (int i = 0; i < nbColumns * nbRows; i++) {
-                    POffHeapLongArray.set(addr, INDEX_OFFSET + i, rand.nextLong() * (max - min) + min);
+                final int end = length(addr);
+                for (int i = INDEX_OFFSET; i < end; i++) {
+                    POffHeapLongArray.set(addr, i, rand.nextInt() * (max - min) + min);
                 }
                 container.declareDirty();
             }
@@ -179,77 +155,72 @@ class OffHeapLMatrix implements LMatrix {
     @Override
     public final int rows() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
+                return (int) POffHeapLongArray.get(addr, INDEX_ROWS);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
     public final int columns() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = (int) POffHeapLongArray.get(addr, INDEX_MAX_COLUMN);
+                return (int) POffHeapLongArray.get(addr, INDEX_MAX_COLUMN);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public long[] column(int columnIndex) {
-        long[] result = null;
+    public final long[] column(final int columnIndex) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                long nbRows = POffHeapLongArray.get(addr, INDEX_ROWS);
-                result = new long[(int) nbRows];
-                long base = INDEX_OFFSET + (columnIndex * nbRows);
-                for (int i = 0; i < nbRows; i++) {
-                    result[i] = POffHeapLongArray.get(addr, base + i);
-                }
+            final int nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
+            final long[] result = new long[nbRows];
+            final long base = INDEX_OFFSET + (columnIndex * nbRows);
+            for (int i = 0; i < nbRows; i++) {
+                result[i] = POffHeapLongArray.get(addr, base + i);
             }
+            return result;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public final long get(int rowIndex, int columnIndex) {
+    public final long get(final int rowIndex, final int columnIndex) {
         container.lock();
-        long result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                final long nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
-                result = POffHeapLongArray.get(addr, INDEX_OFFSET + rowIndex + columnIndex * nbRows);
+                final int nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
+                return POffHeapLongArray.get(addr, INDEX_OFFSET + rowIndex + columnIndex * nbRows);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public final LMatrix set(int rowIndex, int columnIndex, long value) {
+    public final LMatrix set(final int rowIndex, final int columnIndex, final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                final long nbRows = POffHeapLongArray.get(addr, INDEX_ROWS);
+                final int nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
                 POffHeapLongArray.set(addr, INDEX_OFFSET + rowIndex + columnIndex * nbRows, value);
+                container.declareDirty();
             }
         } finally {
             container.unlock();
@@ -258,15 +229,15 @@ class OffHeapLMatrix implements LMatrix {
     }
 
     @Override
-    public LMatrix add(int rowIndex, int columnIndex, long value) {
+    public final LMatrix add(final int rowIndex, final int columnIndex, final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                final long nbRows = POffHeapLongArray.get(addr, INDEX_ROWS);
-                final long raw_index = INDEX_OFFSET + rowIndex + columnIndex * nbRows;
-                final long previous = POffHeapLongArray.get(addr, raw_index);
-                POffHeapLongArray.set(addr, raw_index, value + previous);
+                final int nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
+                final long rawIndex = INDEX_OFFSET + rowIndex + columnIndex * nbRows;
+                POffHeapLongArray.set(addr, rawIndex, value + POffHeapLongArray.get(addr, rawIndex));
+                container.declareDirty();
             }
         } finally {
             container.unlock();
@@ -275,67 +246,60 @@ class OffHeapLMatrix implements LMatrix {
     }
 
     @Override
-    public long[] data() {
+    public final long[] data() {
         container.lock();
-        long[] flat;
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final int nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
-                final int nbColumns = (int) POffHeapLongArray.get(addr, INDEX_COLUMNS);
-                final int flatSize = nbRows * nbColumns;
-                flat = new long[flatSize];
-                for (int i = 0; i < flatSize; i++) {
-                    flat[i] = POffHeapLongArray.get(addr, i + INDEX_OFFSET);
-                }
-            } else {
-                flat = new long[0];
+            if (addr == OffHeapConstants.NULL_PTR) {
+                return null;
+            }
+            final int flatSize = length(addr) - INDEX_OFFSET;
+            final long[] copy = new long[flatSize];
+            for (int i = 0; i < flatSize; i++) {
+                copy[i] = POffHeapLongArray.get(addr, INDEX_OFFSET + i);
             }
+            return copy;
         } finally {
             container.unlock();
         }
-        return flat;
     }
 
     @Override
-    public int leadingDimension() {
+    public final int leadingDimension() {
         container.lock();
-        int result = 0;
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final int nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
-                final int nbColumns = (int) POffHeapLongArray.get(addr, INDEX_COLUMNS);
-                result = Math.max(nbRows, nbColumns);
+            if (addr == OffHeapConstants.NULL_PTR) {
+                return 0;
             }
+            return (int) Math.max(POffHeapLongArray.get(addr, INDEX_COLUMNS), POffHeapLongArray.get(addr, INDEX_ROWS));
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public long unsafeGet(int indexValue) {
+    public final long unsafeGet(final int indexValue) {
         container.lock();
-        long result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = POffHeapLongArray.get(addr, INDEX_OFFSET + indexValue);
+                return POffHeapLongArray.get(addr, INDEX_OFFSET + indexValue);
             }
+            return 0;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public LMatrix unsafeSet(int indexValue, long value) {
+    public final LMatrix unsafeSet(final int indexValue, final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
                 POffHeapLongArray.set(addr, INDEX_OFFSET + indexValue, value);
+                container.declareDirty();
             }
         } finally {
             container.unlock();
@@ -343,72 +307,71 @@ class OffHeapLMatrix implements LMatrix {
         return this;
     }
 
-    /*
-    @Override
-    public final String toString() {
-        StringBuilder buffer = new StringBuilder();
-        //chunk.lock();
-        // try {
-        final long addr = chunk.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            buffer.append("[");
-            final long size = POffHeapLongArray.get(addr, SIZE);
-            for (int i = 0; i < size; i++) {
-                if (i != 0) {
-                    buffer.append(",");
-                }
-                buffer.append(POffHeapLongArray.get(addr, i + SHIFT));
-            }
-            buffer.append("]");
+    /**
+     * Number of slots of the segment, header included.
+     */
+    private static int length(final long addr) {
+        return ((int) POffHeapLongArray.get(addr, INDEX_ROWS)) * ((int) POffHeapLongArray.get(addr, INDEX_COLUMNS)) + INDEX_OFFSET;
+    }
+
+    private long unsafe_init(final int size) {
+        final long previous = container.addrByIndex(index);
+        if (previous != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(previous);
         }
-        //} finally {
-        // chunk.unlock();
-        //}
-        return buffer.toString();
-    }*/
+        final long addr = POffHeapLongArray.allocate(container.arena(), size);
+        POffHeapLongArray.fillLong(addr, 0, size, 0);
+        container.setAddrByIndex(index, addr);
+        return addr;
+    }
 
     static void save(final long addr, final Buffer buffer) {
         if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
             return;
         }
-        final long nbRows = POffHeapLongArray.get(addr, INDEX_ROWS);
-        final long nbColumns = POffHeapLongArray.get(addr, INDEX_COLUMNS);
-        final long flatSize = nbRows * nbColumns;
-        final long size = flatSize + INDEX_OFFSET;
-        Base64.encodeLongToBuffer(size, buffer);
+        final int size = length(addr);
+        Base64.encodeIntToBuffer(size, buffer);
         for (long i = 0; i < size; i++) {
             buffer.write(Constants.CHUNK_VAL_SEP);
             Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, i), buffer);
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         }
-        final long nbRows = (int) POffHeapLongArray.get(addr, INDEX_ROWS);
-        final long nbColumns = (int) POffHeapLongArray.get(addr, INDEX_COLUMNS);
-        final long flatSize = nbRows * nbColumns;
-        return POffHeapLongArray.cloneArray(addr, flatSize + INDEX_OFFSET);
+        return POffHeapLongArray.cloneArray(arena, addr, length(addr));
     }
 
     static void free(final long addr) {
-        POffHeapLongArray.free(addr);
+        if (addr != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(addr);
+        }
     }
 
+    /**
+     * Loads the matrix from its text form, the caller holds the lock of the container.
+     */
     final long load(final Buffer buffer, final long offset, final long max) {
+        if (offset >= max) {
+            unsafe_init(INDEX_OFFSET);
+            return offset;
+        }
         long cursor = offset;
         byte current = buffer.read(cursor);
         boolean isFirst = true;
         long previous = offset;
         long elemIndex = 0;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP && current != Constants.CHUNK_ESEP) {
+        long addr = OffHeapConstants.NULL_PTR;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
-                    unsafe_init(Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                    addr = unsafe_init(Base64.decodeToIntWithBounds(buffer, previous, cursor));
                     isFirst = false;
                 } else {
-                    unsafe_set(elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                    POffHeapLongArray.set(addr, elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
                     elemIndex++;
                 }
                 previous = cursor + 1;
@@ -418,10 +381,12 @@ class OffHeapLMatrix implements LMatrix {
                 current = buffer.read(cursor);
             }
         }
-        if (isFirst) {
-            unsafe_init((int) Base64.decodeToLongWithBounds(buffer, previous, cursor));
+        if (previous == cursor) {
+            unsafe_init(INDEX_OFFSET);
+        } else if (isFirst) {
+            unsafe_init(Base64.decodeToIntWithBounds(buffer, previous, cursor));
         } else {
-            unsafe_set(elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+            POffHeapLongArray.set(addr, elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
         }
         return cursor;
     }
@@ -17,14 +17,15 @@ package greycat.memory;
 
 import greycat.Constants;
 import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.LongArray;
 import greycat.utility.Base64;
 
-public final class OffHeapLongArray implements LongArray {
+final class OffHeapLongArray implements LongArray {
 
-    private static int SIZE = 0;
-    private static int SHIFT = 1;
+    private static final int SIZE = 0;
+    private static final int SHIFT = 1;
 
     private final long index;
     private final OffHeapContainer container;
@@ -35,143 +36,285 @@ public final class OffHeapLongArray implements LongArray {
     }
 
     @Override
-    public long get(int elemIndex) {
+    public final long get(final int elemIndex) {
         container.lock();
-        long result = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = POffHeapLongArray.get(addr, SHIFT + elemIndex);
+                if (elemIndex >= POffHeapLongArray.get(addr, SIZE)) {
+                    throw new RuntimeException("Array Out of Bounds");
+                }
+                return POffHeapLongArray.get(addr, SHIFT + elemIndex);
             }
+            return -1;
         } finally {
             container.unlock();
         }
-        return (int) result;
     }
 
     @Override
-    public void set(int elemIndex, long value) {
+    public final void set(final int elemIndex, final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                POffHeapLongArray.set(addr, SHIFT + elemIndex, value);
+            if (addr == OffHeapConstants.NULL_PTR || elemIndex >= POffHeapLongArray.get(addr, SIZE)) {
+                throw new RuntimeException("allocate first!");
             }
+            POffHeapLongArray.set(addr, SHIFT + elemIndex, value);
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final int size() {
+        container.lock();
+        try {
+            return unsafe_size(container.addrByIndex(index));
         } finally {
             container.unlock();
         }
-        container.declareDirty();
     }
 
     @Override
-    public int size() {
+    public final void clear() {
         container.lock();
-        long size = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                size = POffHeapLongArray.get(addr, SIZE);
+                free(addr);
+                container.setAddrByIndex(index, OffHeapConstants.NULL_PTR);
             }
+            container.declareDirty();
         } finally {
             container.unlock();
         }
-        return (int) size;
     }
 
     @Override
-    public final void init(int newSize) {
+    public final void init(final int newSize) {
         container.lock();
         try {
-            unsafe_allocate(newSize);
+            final long addr = unsafe_allocate(newSize);
+            for (int i = 0; i < newSize; i++) {
+                POffHeapLongArray.set(addr, SHIFT + i, 0);
+            }
+            container.declareDirty();
         } finally {
             container.unlock();
         }
-        container.declareDirty();
     }
 
-    private long unsafe_allocate(int newSize) {
-        final long addr = container.addrByIndex(index);
-        if (addr == OffHeapConstants.NULL_PTR) {
-            //initial allocation
-            final long newly = POffHeapLongArray.allocate(newSize + SHIFT);
-            POffHeapLongArray.set(newly, SIZE, newSize);
-            container.setAddrByIndex(index, newly);
-            return newly;
-        } else {
-            long exAddr = POffHeapLongArray.reallocate(addr, newSize + SHIFT);
-            POffHeapLongArray.set(exAddr, SIZE, newSize);
-            container.setAddrByIndex(index, exAddr);
-            return exAddr;
+    @Override
+    public final void initWith(final long[] values) {
+        container.lock();
+        try {
+            final long addr = unsafe_allocate(values.length);
+            for (int i = 0; i < values.length; i++) {
+                POffHeapLongArray.set(addr, SHIFT + i, values[i]);
+            }
+            container.declareDirty();
+        } finally {
+            container.unlock();
         }
     }
 
     @Override
-    public void initWith(long[] values) {
+    public final long[] extract() {
         container.lock();
         try {
-            long addr = unsafe_allocate(values.length);
-            for(int i=0;i<values.length;i++){
-                POffHeapLongArray.set(addr,i,values[i]);
+            final long addr = container.addrByIndex(index);
+            final int size = unsafe_size(addr);
+            final long[] extracted = new long[size];
+            for (int i = 0; i < size; i++) {
+                extracted[i] = POffHeapLongArray.get(addr, SHIFT + i);
+            }
+            return extracted;
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final boolean removeElement(final long value) {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            final int size = unsafe_size(addr);
+            for (int i = 0; i < size; i++) {
+                if (POffHeapLongArray.get(addr, SHIFT + i) == value) {
+                    unsafe_removeElementByIndex(addr, size, i);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final boolean removeElementbyIndex(final int elemIndex) {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            final int size = unsafe_size(addr);
+            if (elemIndex < 0 || elemIndex >= size) {
+                return false;
             }
+            unsafe_removeElementByIndex(addr, size, elemIndex);
+            return true;
         } finally {
             container.unlock();
         }
+    }
+
+    private void unsafe_removeElementByIndex(final long addr, final int size, final int elemIndex) {
+        for (int i = elemIndex + 1; i < size; i++) {
+            POffHeapLongArray.set(addr, SHIFT + i - 1, POffHeapLongArray.get(addr, SHIFT + i));
+        }
+        unsafe_allocate(size - 1);
         container.declareDirty();
     }
 
     @Override
-    public final long[] extract() {
-        long[] result = null;
+    public final LongArray addElement(final long value) {
+        container.lock();
+        try {
+            final int size = unsafe_size(container.addrByIndex(index));
+            final long addr = unsafe_allocate(size + 1);
+            POffHeapLongArray.set(addr, SHIFT + size, value);
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public final void addAll(final long[] values) {
+        container.lock();
+        try {
+            final int size = unsafe_size(container.addrByIndex(index));
+            final long addr = unsafe_allocate(size + values.length);
+            for (int i = 0; i < values.length; i++) {
+                POffHeapLongArray.set(addr, SHIFT + size + i, values[i]);
+            }
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final boolean insertElementAt(final int position, final long value) {
+        container.lock();
+        try {
+            final int size = unsafe_size(container.addrByIndex(index));
+            if (position < 0 || position >= size) {
+                return false;
+            }
+            final long addr = unsafe_allocate(size + 1);
+            for (int i = size; i > position; i--) {
+                POffHeapLongArray.set(addr, SHIFT + i, POffHeapLongArray.get(addr, SHIFT + i - 1));
+            }
+            POffHeapLongArray.set(addr, SHIFT + position, value);
+            container.declareDirty();
+            return true;
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final boolean replaceElementby(final long element, final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if(addr != OffHeapConstants.NULL_PTR){
-                result = POffHeapLongArray.asObject(addr);
+            final int size = unsafe_size(addr);
+            for (int i = 0; i < size; i++) {
+                if (POffHeapLongArray.get(addr, SHIFT + i) == element) {
+                    POffHeapLongArray.set(addr, SHIFT + i, value);
+                    container.declareDirty();
+                    return true;
+                }
             }
+            return false;
         } finally {
             container.unlock();
         }
-        return result;
+    }
+
+    private int unsafe_size(final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return 0;
+        }
+        return (int) POffHeapLongArray.get(addr, SIZE);
+    }
+
+    /**
+     * Allocates or resizes the segment of this array, previous values are kept.
+     */
+    private long unsafe_allocate(final int newSize) {
+        final long addr = container.addrByIndex(index);
+        final long newAddr;
+        if (addr == OffHeapConstants.NULL_PTR) {
+            newAddr = POffHeapLongArray.allocate(container.arena(), newSize + SHIFT);
+        } else {
+            newAddr = POffHeapLongArray.reallocate(addr, newSize + SHIFT);
+        }
+        POffHeapLongArray.set(newAddr, SIZE, newSize);
+        container.setAddrByIndex(index, newAddr);
+        return newAddr;
     }
 
     static void save(final long addr, final Buffer buffer) {
         if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
             return;
         }
-        final long size = POffHeapLongArray.get(addr, SIZE);
-        Base64.encodeLongToBuffer(size, buffer);
-        for (long i = 0; i < size; i++) {
+        final int size = (int) POffHeapLongArray.get(addr, SIZE);
+        Base64.encodeIntToBuffer(size, buffer);
+        for (int i = 0; i < size; i++) {
             buffer.write(Constants.CHUNK_VAL_SEP);
-            Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, i + SHIFT), buffer);
+            Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, SHIFT + i), buffer);
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         }
-        final long size = POffHeapLongArray.get(addr, SIZE);
-        return POffHeapLongArray.cloneArray(addr, size + SHIFT);
+        return POffHeapLongArray.cloneArray(arena, addr, POffHeapLongArray.get(addr, SIZE) + SHIFT);
     }
 
     static void free(final long addr) {
-        POffHeapLongArray.free(addr);
+        if (addr != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(addr);
+        }
     }
 
+    /**
+     * Loads the array from its text form, the caller holds the lock of the container.
+     */
     final long load(final Buffer buffer, final long offset, final long max) {
+        if (offset >= max) {
+            return offset;
+        }
         long cursor = offset;
         byte current = buffer.read(cursor);
         boolean isFirst = true;
         long previous = offset;
-        int elemIndex = SHIFT;
-        long addr = -1;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP && current != Constants.CHUNK_ESEP) {
+        int elemIndex = 0;
+        long addr = OffHeapConstants.NULL_PTR;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
                     addr = unsafe_allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
                     isFirst = false;
                 } else {
-                    POffHeapLongArray.set(addr, elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                    POffHeapLongArray.set(addr, SHIFT + elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
                     elemIndex++;
                 }
                 previous = cursor + 1;
@@ -181,10 +324,12 @@ public final class OffHeapLongArray implements LongArray {
                 current = buffer.read(cursor);
             }
         }
-        if (isFirst) {
+        if (previous == cursor) {
+            unsafe_allocate(0);
+        } else if (isFirst) {
             unsafe_allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
         } else {
-            POffHeapLongArray.set(addr, elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+            POffHeapLongArray.set(addr, SHIFT + elemIndex, Base64.decodeToLongWithBounds(buffer, previous, cursor));
         }
         return cursor;
     }
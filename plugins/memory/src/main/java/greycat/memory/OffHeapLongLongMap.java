@@ -17,6 +17,7 @@ package greycat.memory;
 
 import greycat.Constants;
 import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.LongLongMap;
 import greycat.struct.LongLongMapCallBack;
@@ -74,12 +75,15 @@ class OffHeapLongLongMap implements LongLongMap {
 
     void preAllocate(long wantedCapacity) {
         long addr = container.addrByIndex(index);
+        if (wantedCapacity <= 0) {
+            return;
+        }
         if (addr == OffHeapConstants.NULL_PTR) {
-            addr = POffHeapLongArray.allocate(HEADER + wantedCapacity * 2);
+            addr = POffHeapLongArray.allocate(container.arena(), HEADER + wantedCapacity * 2);
             container.setAddrByIndex(index, addr);
             POffHeapLongArray.set(addr, SIZE, 0);
             POffHeapLongArray.set(addr, CAPACITY, wantedCapacity);
-            long subHash = POffHeapLongArray.allocate(wantedCapacity * 3);
+            long subHash = POffHeapLongArray.allocate(container.arena(), wantedCapacity * 3);
             POffHeapLongArray.set(addr, SUBHASH, subHash);
         } else {
             long currentCapacity = POffHeapLongArray.get(addr, CAPACITY);
@@ -232,23 +236,24 @@ class OffHeapLongLongMap implements LongLongMap {
     }
 
     @Override
-    public final void put(final long insertKey, final long insertValue) {
+    public final LongLongMap put(final long insertKey, final long insertValue) {
         container.lock();
         try {
-            internal_put(insertKey, insertValue);
+            internal_put(insertKey, insertValue, true);
         } finally {
             container.unlock();
         }
+        return this;
     }
 
-    void internal_put(final long insertKey, final long insertValue) {
+    void internal_put(final long insertKey, final long insertValue, final boolean notify) {
         long addr = container.addrByIndex(index);
         if (addr == OffHeapConstants.NULL_PTR) {
             //initial allocation
             final long capacity = Constants.MAP_INITIAL_CAPACITY;
-            addr = POffHeapLongArray.allocate(HEADER + capacity * 2);
+            addr = POffHeapLongArray.allocate(container.arena(), HEADER + capacity * 2);
             container.setAddrByIndex(index, addr);
-            final long subHash = POffHeapLongArray.allocate(capacity * 3);
+            final long subHash = POffHeapLongArray.allocate(container.arena(), capacity * 3);
             POffHeapLongArray.set(addr, SIZE, 1);
             POffHeapLongArray.set(addr, CAPACITY, capacity);
             POffHeapLongArray.set(addr, SUBHASH, subHash);
@@ -256,6 +261,9 @@ class OffHeapLongLongMap implements LongLongMap {
             setValue(addr, 0, insertValue);
             setHash(subHash, capacity, (int) HashHelper.longHash(insertKey, capacity * 2), 0);
             setNext(subHash, 0, -1);
+            if (notify) {
+                container.declareDirty();
+            }
         } else {
             long mapSize = POffHeapLongArray.get(addr, SIZE);
             long capacity = POffHeapLongArray.get(addr, CAPACITY);
@@ -293,20 +301,26 @@ class OffHeapLongLongMap implements LongLongMap {
                 setNext(subHash, mapSize, hash(subHash, capacity, hashedKey));
                 setHash(subHash, capacity, hashedKey, mapSize);
                 POffHeapLongArray.set(addr, SIZE, mapSize + 1);
-                container.declareDirty();
+                if (notify) {
+                    container.declareDirty();
+                }
             } else {
                 if (value(addr, found) != insertValue) {
                     setValue(addr, found, insertValue);
-                    container.declareDirty();
+                    if (notify) {
+                        container.declareDirty();
+                    }
                 }
             }
         }
     }
 
     static void save(final long addr, final Buffer buffer) {
-        if (addr != OffHeapConstants.NULL_PTR) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
+        } else {
             final long size = POffHeapLongArray.get(addr, SIZE);
-            Base64.encodeLongToBuffer(size, buffer);
+            Base64.encodeIntToBuffer((int) size, buffer);
             for (long i = 0; i < size; i++) {
                 buffer.write(Constants.CHUNK_VAL_SEP);
                 Base64.encodeLongToBuffer(key(addr, i), buffer);
@@ -326,16 +340,16 @@ class OffHeapLongLongMap implements LongLongMap {
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         } else {
             final long capacity = POffHeapLongArray.get(addr, CAPACITY);
             //copy main array
-            final long new_addr = POffHeapLongArray.cloneArray(addr, HEADER + (capacity * 2));
+            final long new_addr = POffHeapLongArray.cloneArray(arena, addr, HEADER + (capacity * 2));
             final long previousHash = POffHeapLongArray.get(addr, SUBHASH);
             if (previousHash != OffHeapConstants.NULL_PTR) {
-                final long newHash = POffHeapLongArray.cloneArray(previousHash, (capacity * 3));
+                final long newHash = POffHeapLongArray.cloneArray(arena, previousHash, (capacity * 3));
                 POffHeapLongArray.set(new_addr, SUBHASH, newHash);
             }
             return new_addr;
@@ -349,7 +363,8 @@ class OffHeapLongLongMap implements LongLongMap {
         long previous = offset;
         long previousKey = -1;
         boolean waitingVal = false;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP && current != Constants.CHUNK_ESEP) {
+        final boolean merge = container.addrByIndex(index) != OffHeapConstants.NULL_PTR;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
                     preAllocate(Base64.decodeToLongWithBounds(buffer, previous, cursor));
@@ -360,7 +375,7 @@ class OffHeapLongLongMap implements LongLongMap {
                         waitingVal = true;
                     } else {
                         waitingVal = false;
-                        internal_put(previousKey, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                        internal_put(previousKey, Base64.decodeToLongWithBounds(buffer, previous, cursor), merge);
                     }
                 }
                 previous = cursor + 1;
@@ -374,7 +389,7 @@ class OffHeapLongLongMap implements LongLongMap {
             preAllocate(Base64.decodeToLongWithBounds(buffer, previous, cursor));
         } else {
             if (waitingVal) {
-                internal_put(previousKey, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                internal_put(previousKey, Base64.decodeToLongWithBounds(buffer, previous, cursor), merge);
             }
         }
         return cursor;
@@ -17,14 +17,56 @@ package greycat.memory;
 
 import greycat.Graph;
 import greycat.chunk.ChunkSpace;
+import greycat.chunk.EvictionPolicy;
+import greycat.memory.primary.POffHeapArena;
 import greycat.plugin.MemoryFactory;
 import greycat.struct.Buffer;
 
 public class OffHeapMemoryFactory implements MemoryFactory {
 
+    private byte _evictionPolicy = EvictionPolicy.LRU;
+    private boolean _binaryFormat = false;
+    private long _slabSize = POffHeapArena.SLAB_SIZE;
+
+    /**
+     * Sets the strategy used to select the chunks to evict when the space is full.
+     *
+     * @param evictionPolicy one of the {@link EvictionPolicy} constants
+     * @return the {@link OffHeapMemoryFactory}, for a fluent API
+     */
+    public final OffHeapMemoryFactory withEvictionPolicy(final byte evictionPolicy) {
+        this._evictionPolicy = evictionPolicy;
+        return this;
+    }
+
+    /**
+     * Saves chunks in the compact binary encoding of {@link greycat.utility.BinaryFormat} instead of Base64 text.
+     * Payloads are versioned, stores written with the text encoding remain readable.
+     *
+     * @return the {@link OffHeapMemoryFactory}, for a fluent API
+     */
+    public final OffHeapMemoryFactory withBinaryFormat() {
+        this._binaryFormat = true;
+        return this;
+    }
+
+    /**
+     * Sets the size of the slabs from which chunk segments are carved, see {@link POffHeapArena}.
+     * Larger slabs reduce the number of native allocations of very large caches.
+     *
+     * @param slabSize size in bytes
+     * @return the {@link OffHeapMemoryFactory}, for a fluent API
+     */
+    public final OffHeapMemoryFactory withSlabSize(final long slabSize) {
+        this._slabSize = slabSize;
+        return this;
+    }
+
     @Override
-    public final ChunkSpace newSpace(final long memorySize, final Graph graph, boolean deepWorld) {
-        return new OffHeapChunkSpace(memorySize, graph);
+    public final ChunkSpace newSpace(final long memorySize, final long batchSize, final Graph graph, final boolean deepWorld) {
+        final OffHeapChunkSpace space = new OffHeapChunkSpace(memorySize, batchSize, graph, deepWorld, _evictionPolicy, _slabSize);
+        space.setBinaryFormat(_binaryFormat);
+        return space;
     }
 
     @Override
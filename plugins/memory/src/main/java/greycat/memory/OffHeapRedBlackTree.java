@@ -0,0 +1,390 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.Constants;
+import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
+
+/**
+ * Red-black tree shared by the off-heap time tree chunks, stored in a single segment.
+ * The segment starts with a header, followed by elements of {@code elemSize} longs: key, left, right, parent, color and the values of the chunk.
+ * Elements are appended in insertion order, their offset never changes.
+ * All the functions expect the lock of the chunk owning the segment.
+ */
+final class OffHeapRedBlackTree {
+
+    static final int SIZE = 0;
+    static final int CAPACITY = 1;
+    static final int ROOT = 2;
+    static final int MAGIC = 3;
+    static final int HASH = 4;
+    static final int GROUP = 5;
+    static final int IN_SYNC = 6;
+    static final int MAX = 7;
+    static final int EXTRA = 8;
+    static final int EXTRA2 = 9;
+    static final int EXTRA3 = 10;
+
+    static final int OFFSET = 11;
+
+    static final int KEY = 0;
+    static final int LEFT = 1;
+    static final int RIGHT = 2;
+    static final int PARENT = 3;
+    static final int COLOR = 4;
+    static final int VALUE = 5;
+
+    private OffHeapRedBlackTree() {
+    }
+
+    static long allocate(final POffHeapArena arena) {
+        final long addr = POffHeapLongArray.allocate(arena, OFFSET);
+        POffHeapLongArray.set(addr, SIZE, 0);
+        POffHeapLongArray.set(addr, CAPACITY, 0);
+        POffHeapLongArray.set(addr, ROOT, -1);
+        POffHeapLongArray.set(addr, MAGIC, 0);
+        POffHeapLongArray.set(addr, HASH, 0);
+        POffHeapLongArray.set(addr, GROUP, 0);
+        POffHeapLongArray.set(addr, IN_SYNC, 1);
+        POffHeapLongArray.set(addr, MAX, 0);
+        POffHeapLongArray.set(addr, EXTRA, 0);
+        POffHeapLongArray.set(addr, EXTRA2, 0);
+        POffHeapLongArray.set(addr, EXTRA3, 0);
+        return addr;
+    }
+
+    static void free(final long addr) {
+        if (addr != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(addr);
+        }
+    }
+
+    static long reallocate(final long addr, final int elemSize, final long newCapacity) {
+        if (newCapacity <= POffHeapLongArray.get(addr, CAPACITY)) {
+            return addr;
+        }
+        final long newAddr = POffHeapLongArray.reallocate(addr, OFFSET + newCapacity * elemSize);
+        POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+        return newAddr;
+    }
+
+    /**
+     * Makes room for one more element.
+     *
+     * @return the address of the segment, which may have moved
+     */
+    static long grow(final long addr, final int elemSize) {
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        if (size < POffHeapLongArray.get(addr, CAPACITY)) {
+            return addr;
+        }
+        if (size == 0) {
+            return reallocate(addr, elemSize, Constants.MAP_INITIAL_CAPACITY);
+        }
+        return reallocate(addr, elemSize, size * 2);
+    }
+
+    static long get(final long addr, final int elemSize, final long index, final int field) {
+        return POffHeapLongArray.get(addr, OFFSET + index * elemSize + field);
+    }
+
+    static void set(final long addr, final int elemSize, final long index, final int field, final long value) {
+        POffHeapLongArray.set(addr, OFFSET + index * elemSize + field, value);
+    }
+
+    static long key(final long addr, final int elemSize, final long index) {
+        if (index == -1) {
+            return -1;
+        }
+        return get(addr, elemSize, index, KEY);
+    }
+
+    private static long link(final long addr, final int elemSize, final long index, final int field) {
+        if (index == -1) {
+            return -1;
+        }
+        return get(addr, elemSize, index, field);
+    }
+
+    private static boolean color(final long addr, final int elemSize, final long index) {
+        if (index == -1) {
+            return true;
+        }
+        return get(addr, elemSize, index, COLOR) == 1;
+    }
+
+    private static void setColor(final long addr, final int elemSize, final long index, final boolean black) {
+        set(addr, elemSize, index, COLOR, black ? 1 : 0);
+    }
+
+    private static long sibling(final long addr, final int elemSize, final long index) {
+        final long parent = link(addr, elemSize, index, PARENT);
+        if (index == link(addr, elemSize, parent, LEFT)) {
+            return link(addr, elemSize, parent, RIGHT);
+        } else {
+            return link(addr, elemSize, parent, LEFT);
+        }
+    }
+
+    private static long uncle(final long addr, final int elemSize, final long index) {
+        if (index != -1 && link(addr, elemSize, index, PARENT) != -1) {
+            return sibling(addr, elemSize, link(addr, elemSize, index, PARENT));
+        } else {
+            return -1;
+        }
+    }
+
+    static long previous(final long addr, final int elemSize, final long p_index) {
+        long p = p_index;
+        if (link(addr, elemSize, p, LEFT) != -1) {
+            p = link(addr, elemSize, p, LEFT);
+            while (link(addr, elemSize, p, RIGHT) != -1) {
+                p = link(addr, elemSize, p, RIGHT);
+            }
+            return p;
+        } else {
+            while (link(addr, elemSize, p, PARENT) != -1 && p == link(addr, elemSize, link(addr, elemSize, p, PARENT), LEFT)) {
+                p = link(addr, elemSize, p, PARENT);
+            }
+            return link(addr, elemSize, p, PARENT);
+        }
+    }
+
+    static long next(final long addr, final int elemSize, final long p_index) {
+        long p = p_index;
+        if (link(addr, elemSize, p, RIGHT) != -1) {
+            p = link(addr, elemSize, p, RIGHT);
+            while (link(addr, elemSize, p, LEFT) != -1) {
+                p = link(addr, elemSize, p, LEFT);
+            }
+            return p;
+        } else {
+            while (link(addr, elemSize, p, PARENT) != -1 && p == link(addr, elemSize, link(addr, elemSize, p, PARENT), RIGHT)) {
+                p = link(addr, elemSize, p, PARENT);
+            }
+            return link(addr, elemSize, p, PARENT);
+        }
+    }
+
+    static long previousOrEqualIndex(final long addr, final int elemSize, final long p_key) {
+        return lookup(addr, elemSize, p_key, true);
+    }
+
+    static long previousIndex(final long addr, final int elemSize, final long p_key) {
+        return lookup(addr, elemSize, p_key, false);
+    }
+
+    private static long lookup(final long addr, final int elemSize, final long p_key, final boolean orEqual) {
+        long p = POffHeapLongArray.get(addr, ROOT);
+        while (p != -1) {
+            final long current = key(addr, elemSize, p);
+            if (orEqual && p_key == current) {
+                return p;
+            }
+            if (p_key > current) {
+                if (link(addr, elemSize, p, RIGHT) != -1) {
+                    p = link(addr, elemSize, p, RIGHT);
+                } else {
+                    return p;
+                }
+            } else {
+                if (link(addr, elemSize, p, LEFT) != -1) {
+                    p = link(addr, elemSize, p, LEFT);
+                } else {
+                    long parent = link(addr, elemSize, p, PARENT);
+                    long ch = p;
+                    while (parent != -1 && ch == link(addr, elemSize, parent, LEFT)) {
+                        ch = parent;
+                        parent = link(addr, elemSize, parent, PARENT);
+                    }
+                    return parent;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void replaceChild(final long addr, final int elemSize, final long n, final long child) {
+        final long parent = link(addr, elemSize, n, PARENT);
+        set(addr, elemSize, child, PARENT, parent);
+        if (n == POffHeapLongArray.get(addr, ROOT)) {
+            POffHeapLongArray.set(addr, ROOT, child);
+        } else if (n == link(addr, elemSize, parent, LEFT)) {
+            set(addr, elemSize, parent, LEFT, child);
+        } else {
+            set(addr, elemSize, parent, RIGHT, child);
+        }
+    }
+
+    private static void rotateLeft(final long addr, final int elemSize, final long n) {
+        final long child = link(addr, elemSize, n, RIGHT);
+        final long inner = link(addr, elemSize, child, LEFT);
+        set(addr, elemSize, n, RIGHT, inner);
+        if (inner != -1) {
+            set(addr, elemSize, inner, PARENT, n);
+        }
+        replaceChild(addr, elemSize, n, child);
+        set(addr, elemSize, child, LEFT, n);
+        set(addr, elemSize, n, PARENT, child);
+    }
+
+    private static void rotateRight(final long addr, final int elemSize, final long n) {
+        final long child = link(addr, elemSize, n, LEFT);
+        final long inner = link(addr, elemSize, child, RIGHT);
+        set(addr, elemSize, n, LEFT, inner);
+        if (inner != -1) {
+            set(addr, elemSize, inner, PARENT, n);
+        }
+        replaceChild(addr, elemSize, n, child);
+        set(addr, elemSize, child, RIGHT, n);
+        set(addr, elemSize, n, PARENT, child);
+    }
+
+    /**
+     * Inserts a key, the segment must have room for one more element, see {@link #grow(long, int)}.
+     * Values of a new element are left to the caller.
+     *
+     * @return the offset of the new element, or {@code -(offset + 1)} if the key was already in the tree
+     */
+    static long insert(final long addr, final int elemSize, final long p_key) {
+        if (p_key > POffHeapLongArray.get(addr, MAX)) {
+            POffHeapLongArray.set(addr, MAX, p_key);
+        }
+        final long newIndex = POffHeapLongArray.get(addr, SIZE);
+        if (newIndex == 0) {
+            POffHeapLongArray.set(addr, ROOT, newIndex);
+            set(addr, elemSize, newIndex, KEY, p_key);
+            set(addr, elemSize, newIndex, LEFT, -1);
+            set(addr, elemSize, newIndex, RIGHT, -1);
+            set(addr, elemSize, newIndex, PARENT, -1);
+            setColor(addr, elemSize, newIndex, true);
+        } else {
+            long father = -1;
+            long leaf = POffHeapLongArray.get(addr, ROOT);
+            boolean left = false;
+            while (leaf != -1) {
+                father = leaf;
+                final long fatherKey = key(addr, elemSize, father);
+                if (fatherKey == p_key) {
+                    return -(father + 1);
+                }
+                if (fatherKey < p_key) {
+                    leaf = link(addr, elemSize, father, RIGHT);
+                    left = false;
+                } else {
+                    leaf = link(addr, elemSize, father, LEFT);
+                    left = true;
+                }
+            }
+            setColor(addr, elemSize, newIndex, false);
+            set(addr, elemSize, newIndex, KEY, p_key);
+            set(addr, elemSize, newIndex, LEFT, -1);
+            set(addr, elemSize, newIndex, RIGHT, -1);
+            set(addr, elemSize, newIndex, PARENT, father);
+            if (left) {
+                set(addr, elemSize, father, LEFT, newIndex);
+            } else {
+                set(addr, elemSize, father, RIGHT, newIndex);
+            }
+            long nodeStudy = newIndex;
+            while (father != -1 && !color(addr, elemSize, father)) {
+                long greatFather = link(addr, elemSize, father, PARENT);
+                final long uncle = uncle(addr, elemSize, nodeStudy);
+                if (!color(addr, elemSize, uncle)) {
+                    setColor(addr, elemSize, father, true);
+                    setColor(addr, elemSize, uncle, true);
+                    setColor(addr, elemSize, greatFather, false);
+                    nodeStudy = greatFather;
+                    father = link(addr, elemSize, nodeStudy, PARENT);
+                } else {
+                    if (father == link(addr, elemSize, greatFather, LEFT)) {
+                        if (nodeStudy == link(addr, elemSize, father, RIGHT)) {
+                            nodeStudy = father;
+                            rotateLeft(addr, elemSize, nodeStudy);
+                            father = link(addr, elemSize, nodeStudy, PARENT);
+                            greatFather = link(addr, elemSize, father, PARENT);
+                        }
+                        setColor(addr, elemSize, father, true);
+                        setColor(addr, elemSize, greatFather, false);
+                        rotateRight(addr, elemSize, greatFather);
+                    } else {
+                        if (nodeStudy == link(addr, elemSize, father, LEFT)) {
+                            nodeStudy = father;
+                            rotateRight(addr, elemSize, nodeStudy);
+                            father = link(addr, elemSize, nodeStudy, PARENT);
+                            greatFather = link(addr, elemSize, father, PARENT);
+                        }
+                        setColor(addr, elemSize, father, true);
+                        setColor(addr, elemSize, greatFather, false);
+                        rotateLeft(addr, elemSize, greatFather);
+                    }
+                }
+            }
+            setColor(addr, elemSize, POffHeapLongArray.get(addr, ROOT), true);
+        }
+        POffHeapLongArray.set(addr, SIZE, newIndex + 1);
+        return newIndex;
+    }
+
+    /**
+     * @return true if the offsets of the elements follow the order of their keys
+     */
+    static boolean inKeyOrder(final long addr, final int elemSize) {
+        long current = POffHeapLongArray.get(addr, ROOT);
+        while (link(addr, elemSize, current, LEFT) != -1) {
+            current = link(addr, elemSize, current, LEFT);
+        }
+        long rank = 0;
+        while (current != -1) {
+            if (current != rank) {
+                return false;
+            }
+            current = next(addr, elemSize, current);
+            rank++;
+        }
+        return true;
+    }
+
+    /**
+     * Links again all the elements, stored in key order, as a balanced tree.
+     */
+    static void relink(final long addr, final int elemSize) {
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        //the deepest level of a balanced tree is red, unless the tree is perfect
+        int deepest = 0;
+        while ((1L << (deepest + 1)) <= size) {
+            deepest++;
+        }
+        if (((size + 1) & size) == 0) {
+            deepest = -1;
+        }
+        POffHeapLongArray.set(addr, ROOT, relink(addr, elemSize, 0, size - 1, -1, 0, deepest));
+    }
+
+    private static long relink(final long addr, final int elemSize, final long from, final long to, final long parent, final int depth, final int redDepth) {
+        if (from > to) {
+            return -1;
+        }
+        final long middle = (from + to) >>> 1;
+        set(addr, elemSize, middle, PARENT, parent);
+        setColor(addr, elemSize, middle, depth != redDepth);
+        set(addr, elemSize, middle, LEFT, relink(addr, elemSize, from, middle - 1, middle, depth + 1, redDepth));
+        set(addr, elemSize, middle, RIGHT, relink(addr, elemSize, middle + 1, to, middle, depth + 1, redDepth));
+        return middle;
+    }
+
+}
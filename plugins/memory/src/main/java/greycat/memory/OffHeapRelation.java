@@ -18,6 +18,7 @@ package greycat.memory;
 import greycat.Constants;
 import greycat.Node;
 import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.Relation;
 import greycat.utility.Base64;
@@ -38,7 +39,7 @@ class OffHeapRelation implements Relation {
     }
 
     @Override
-    public long[] all() {
+    public final long[] all() {
         long[] ids;
         container.lock();
         try {
@@ -68,10 +69,13 @@ class OffHeapRelation implements Relation {
     }
 
     private void unsafe_allocate(int newCapacity) {
+        if (newCapacity <= 0) {
+            return;
+        }
         final long addr = container.addrByIndex(index);
         if (addr == OffHeapConstants.NULL_PTR) {
             //initial allocation
-            final long newly = POffHeapLongArray.allocate(newCapacity + SHIFT);
+            final long newly = POffHeapLongArray.allocate(container.arena(), newCapacity + SHIFT);
             POffHeapLongArray.set(newly, SIZE, 0);
             POffHeapLongArray.set(newly, CAPACITY, newCapacity);
             container.setAddrByIndex(index, newly);
@@ -122,14 +126,15 @@ class OffHeapRelation implements Relation {
     }
 
     @Override
-    public void set(int index, long value) {
+    public final void set(final int elemIndex, final long value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
                 final long size = POffHeapLongArray.get(addr, SIZE);
-                if (index < size) {
-                    POffHeapLongArray.set(addr, index + SHIFT, value);
+                if (elemIndex < size) {
+                    POffHeapLongArray.set(addr, elemIndex + SHIFT, value);
+                    container.declareDirty();
                 }
             }
         } finally {
@@ -150,7 +155,7 @@ class OffHeapRelation implements Relation {
     }
 
     @Override
-    public Relation addAll(long[] newValues) {
+    public final Relation addAll(final long[] newValues) {
         container.lock();
         try {
             for (int i = 0; i < newValues.length; i++) {
@@ -164,12 +169,12 @@ class OffHeapRelation implements Relation {
     }
 
     @Override
-    public Relation addNode(Node node) {
+    public final Relation addNode(final Node node) {
         return add(node.id());
     }
 
     @Override
-    public Relation insert(int insertIndex, long newValue) {
+    public final Relation insert(final int insertIndex, final long newValue) {
         container.lock();
         try {
             long size = 0;
@@ -179,15 +184,20 @@ class OffHeapRelation implements Relation {
             }
             if (size == 0) {
                 if (insertIndex != 0) {
-                    throw new RuntimeException("Bad API usage ! index out of bounds: " + index);
+                    throw new RuntimeException("Bad API usage ! index out of bounds: " + insertIndex);
+                }
+                if (addr == OffHeapConstants.NULL_PTR) {
+                    long capacity = Constants.MAP_INITIAL_CAPACITY;
+                    addr = POffHeapLongArray.allocate(container.arena(), SHIFT + capacity);
+                    POffHeapLongArray.set(addr, CAPACITY, capacity);
+                    container.setAddrByIndex(index, addr);
                 }
-                long capacity = Constants.MAP_INITIAL_CAPACITY;
-                addr = POffHeapLongArray.allocate(SHIFT + capacity);
-                POffHeapLongArray.set(addr, CAPACITY, capacity);
-                container.setAddrByIndex(index, addr);
                 POffHeapLongArray.set(addr, SHIFT, newValue);
                 POffHeapLongArray.set(addr, SIZE, 1);
             } else {
+                if (insertIndex > size) {
+                    throw new RuntimeException("Bad API usage ! index out of bounds: " + insertIndex);
+                }
                 final long capacity = POffHeapLongArray.get(addr, CAPACITY);
                 if (capacity == size) {
                     //need to reallocate first
@@ -211,7 +221,7 @@ class OffHeapRelation implements Relation {
         long size;
         if (addr == OffHeapConstants.NULL_PTR) {
             long capacity = Constants.MAP_INITIAL_CAPACITY;
-            addr = POffHeapLongArray.allocate(SHIFT + capacity);
+            addr = POffHeapLongArray.allocate(container.arena(), SHIFT + capacity);
             POffHeapLongArray.set(addr, CAPACITY, capacity);
             container.setAddrByIndex(index, addr);
             size = 0;
@@ -260,11 +270,11 @@ class OffHeapRelation implements Relation {
     }
 
     @Override
-    public Relation delete(int indexToDelete) {
+    public final Relation delete(final int indexToDelete) {
         container.lock();
         try {
             long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
+            if (addr != OffHeapConstants.NULL_PTR && indexToDelete >= 0 && indexToDelete < POffHeapLongArray.get(addr, SIZE)) {
                 final long size = POffHeapLongArray.get(addr, SIZE);
                 POffHeapLongArray.delete(addr, indexToDelete + SHIFT, size);
                 POffHeapLongArray.set(addr, SIZE, size - 1);
@@ -283,8 +293,10 @@ class OffHeapRelation implements Relation {
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                POffHeapLongArray.set(addr, SIZE, 0);
+                POffHeapLongArray.free(addr);
+                container.setAddrByIndex(index, OffHeapConstants.NULL_PTR);
             }
+            container.declareDirty();
         } finally {
             container.unlock();
         }
@@ -294,49 +306,52 @@ class OffHeapRelation implements Relation {
 
     @Override
     public final String toString() {
-        StringBuilder buffer = new StringBuilder();
-        //chunk.lock();
-        // try {
-        final long addr = container.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            buffer.append("[");
-            final long size = POffHeapLongArray.get(addr, SIZE);
-            for (int i = 0; i < size; i++) {
-                if (i != 0) {
-                    buffer.append(",");
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            if (addr != OffHeapConstants.NULL_PTR) {
+                final long size = POffHeapLongArray.get(addr, SIZE);
+                for (int i = 0; i < size; i++) {
+                    if (i != 0) {
+                        buffer.append(",");
+                    }
+                    buffer.append(POffHeapLongArray.get(addr, i + SHIFT));
                 }
-                buffer.append(POffHeapLongArray.get(addr, i + SHIFT));
             }
-            buffer.append("]");
+        } finally {
+            container.unlock();
         }
-        //} finally {
-        // chunk.unlock();
-        //}
+        buffer.append("]");
         return buffer.toString();
     }
 
     static void save(final long addr, final Buffer buffer) {
         if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
             return;
         }
         final long size = POffHeapLongArray.get(addr, SIZE);
-        Base64.encodeLongToBuffer(size, buffer);
+        Base64.encodeIntToBuffer((int) size, buffer);
         for (long i = 0; i < size; i++) {
             buffer.write(Constants.CHUNK_VAL_SEP);
             Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, i + SHIFT), buffer);
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         }
         final long capacity = POffHeapLongArray.get(addr, CAPACITY);
-        return POffHeapLongArray.cloneArray(addr, capacity + SHIFT);
+        return POffHeapLongArray.cloneArray(arena, addr, capacity + SHIFT);
     }
 
     static void free(final long addr) {
-        POffHeapLongArray.free(addr);
+        if (addr != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(addr);
+        }
     }
 
     final long load(final Buffer buffer, final long offset, final long max) {
@@ -344,10 +359,10 @@ class OffHeapRelation implements Relation {
         byte current = buffer.read(cursor);
         boolean isFirst = true;
         long previous = offset;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP) {
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
-                    unsafe_allocate((int) Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                    unsafe_allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
                     isFirst = false;
                 } else {
                     internal_add(Base64.decodeToLongWithBounds(buffer, previous, cursor));
@@ -359,7 +374,9 @@ class OffHeapRelation implements Relation {
                 current = buffer.read(cursor);
             }
         }
-        if (!isFirst) {
+        if (isFirst) {
+            unsafe_allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
+        } else {
             internal_add(Base64.decodeToLongWithBounds(buffer, previous, cursor));
         }
         return cursor;
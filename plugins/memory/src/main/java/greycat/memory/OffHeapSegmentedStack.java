@@ -0,0 +1,127 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.chunk.EvictionPolicy;
+import greycat.chunk.Stack;
+import greycat.memory.primary.POffHeapAllocator;
+import greycat.memory.primary.POffHeapByteArray;
+
+/**
+ * Off-heap segmented LRU eviction policy, see greycat.internal.heap.HeapSegmentedStack.
+ */
+final class OffHeapSegmentedStack implements Stack {
+
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final byte NONE = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private static final byte FRESH = 0;
+    private static final byte REUSED = 1;
+
+    private final OffHeapFixedStack _probation;
+    private final OffHeapFixedStack _protected;
+    private final long _protectedCapacity;
+    private final long _segments;
+    private final long _reused;
+    private final long _types;
+
+    /**
+     * @param types address of the chunk types array of the owning space, or -1 to ignore types
+     */
+    OffHeapSegmentedStack(long capacity, boolean fill, long types) {
+        _probation = new OffHeapFixedStack(capacity, fill);
+        _protected = new OffHeapFixedStack(capacity, false);
+        _protectedCapacity = (long) (capacity * PROTECTED_RATIO);
+        _segments = POffHeapByteArray.allocate(POffHeapAllocator.shared(), capacity);
+        _reused = POffHeapByteArray.allocate(POffHeapAllocator.shared(), capacity);
+        _types = types;
+        for (long i = 0; i < capacity; i++) {
+            POffHeapByteArray.set(_segments, i, fill ? PROBATION : NONE);
+            POffHeapByteArray.set(_reused, i, FRESH);
+        }
+    }
+
+    @Override
+    public synchronized final boolean enqueue(long index) {
+        if (POffHeapByteArray.get(_segments, index) != NONE) {
+            return false;
+        }
+        final boolean isProtected = POffHeapByteArray.get(_reused, index) == REUSED || (_types != -1 && EvictionPolicy.isProtected(POffHeapByteArray.get(_types, index)));
+        if (isProtected && _protectedCapacity > 0) {
+            if (_protected.size() >= _protectedCapacity) {
+                final long demoted = _protected.dequeueTail();
+                POffHeapByteArray.set(_reused, demoted, FRESH);
+                _probation.enqueue(demoted);
+                POffHeapByteArray.set(_segments, demoted, PROBATION);
+            }
+            _protected.enqueue(index);
+            POffHeapByteArray.set(_segments, index, PROTECTED);
+        } else {
+            _probation.enqueue(index);
+            POffHeapByteArray.set(_segments, index, PROBATION);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized final long dequeueTail() {
+        long result = _probation.dequeueTail();
+        if (result == -1) {
+            result = _protected.dequeueTail();
+        }
+        if (result != -1) {
+            POffHeapByteArray.set(_segments, result, NONE);
+            //the index will host a new chunk
+            POffHeapByteArray.set(_reused, result, FRESH);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized final boolean dequeue(long index) {
+        //membership is tracked here, the segment result is not needed
+        switch (POffHeapByteArray.get(_segments, index)) {
+            case PROBATION:
+                _probation.dequeue(index);
+                break;
+            case PROTECTED:
+                _protected.dequeue(index);
+                break;
+            default:
+                return false;
+        }
+        POffHeapByteArray.set(_segments, index, NONE);
+        POffHeapByteArray.set(_reused, index, REUSED);
+        return true;
+    }
+
+    @Override
+    public final void free() {
+        _probation.free();
+        _protected.free();
+        POffHeapByteArray.free(_segments);
+        POffHeapByteArray.free(_reused);
+    }
+
+    @Override
+    public synchronized long size() {
+        return _probation.size() + _protected.size();
+    }
+
+}
@@ -15,347 +15,328 @@
  */
 package greycat.memory;
 
-import greycat.Constants;
-import greycat.Container;
-import greycat.Graph;
-import greycat.Type;
+import greycat.*;
+import greycat.base.BaseCustomType;
+import greycat.chunk.Chunk;
 import greycat.chunk.ChunkType;
 import greycat.chunk.StateChunk;
 import greycat.internal.CoreConstants;
-import greycat.internal.tree.KDTree;
-import greycat.internal.tree.NDTree;
-import greycat.memory.primary.POffHeapDoubleArray;
-import greycat.memory.primary.POffHeapIntArray;
 import greycat.memory.primary.POffHeapLongArray;
 import greycat.memory.primary.POffHeapString;
+import greycat.memory.primary.POffHeapArena;
 import greycat.plugin.NodeStateCallback;
-import greycat.struct.Buffer;
+import greycat.plugin.TypeDeclaration;
+import greycat.struct.*;
 import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
+import greycat.utility.HashHelper;
 
+/**
+ * Off-heap {@link StateChunk}: a single segment holds the header followed by the attributes as (key, type, value) triples.
+ * Primitive values are inlined in the value slot, strings and structures are referenced by the address of their own segment.
+ * Removed attributes keep their entry with a null value, so that the index of an entry never changes and can be used by flyweight structures.
+ */
 class OffHeapStateChunk implements StateChunk, OffHeapContainer {
 
-    private final OffHeapChunkSpace space;
-    private final long index;
-
-    private static final int DIRTY = 0;
-    private static final int SIZE = 1;
-    private static final int CAPACITY = 2;
-    private static final int SUBHASH = 3;
+    private static final int SIZE = 0;
+    private static final int CAPACITY = 1;
+    private static final int SUBHASH = 2;
+    private static final int HASH = 3;
+    private static final int GROUP = 4;
+    private static final int IN_SYNC = 5;
 
-    private static final int OFFSET = 4;
+    private static final int OFFSET = 6;
     private static final int ELEM_SIZE = 3;
 
-    @Override
-    public final long world() {
-        return space.worldByIndex(index);
-    }
-
-    @Override
-    public final long time() {
-        return space.timeByIndex(index);
-    }
+    /**
+     * Flag of the type slot set when the attribute holds a value.
+     */
+    private static final long NON_NULL = 1L << 32;
 
-    @Override
-    public final long id() {
-        return space.idByIndex(index);
-    }
+    private final OffHeapChunkSpace space;
+    private final long index;
 
     OffHeapStateChunk(final OffHeapChunkSpace p_space, final long p_index) {
-        index = p_index;
         space = p_space;
-    }
-
-    Graph graph() {
-        return space.graph();
-    }
-
-    @Override
-    public final void lock() {
+        index = p_index;
         space.lockByIndex(index);
+        try {
+            if (space.addrByIndex(index) == OffHeapConstants.NULL_PTR) {
+                final long addr = POffHeapLongArray.allocate(space.arena(), OFFSET);
+                POffHeapLongArray.set(addr, SIZE, 0);
+                POffHeapLongArray.set(addr, CAPACITY, 0);
+                POffHeapLongArray.set(addr, HASH, 0);
+                POffHeapLongArray.set(addr, GROUP, 0);
+                POffHeapLongArray.set(addr, IN_SYNC, 1);
+                space.setAddrByIndex(index, addr);
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
     }
 
-    @Override
-    public final void unlock() {
-        space.unlockByIndex(index);
+    private static long key(final long addr, final long elemIndex) {
+        return POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE);
     }
 
-    @Override
-    public final long addrByIndex(long elemIndex) {
-        return POffHeapLongArray.get(space.addrByIndex(index), OFFSET + (elemIndex * ELEM_SIZE) + 2);
+    private static int type(final long addr, final long elemIndex) {
+        return (int) POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE + 1);
     }
 
-    @Override
-    public void setAddrByIndex(long elemIndex, long newAddr) {
-        POffHeapLongArray.set(space.addrByIndex(index), OFFSET + (elemIndex * ELEM_SIZE) + 2, newAddr);
+    private static boolean hasValue(final long addr, final long elemIndex) {
+        return (POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE + 1) & NON_NULL) != 0;
     }
 
-    private static long key(final long addr, final long index) {
-        return POffHeapLongArray.get(addr, OFFSET + (index * ELEM_SIZE));
+    private static long value(final long addr, final long elemIndex) {
+        return POffHeapLongArray.get(addr, OFFSET + elemIndex * ELEM_SIZE + 2);
     }
 
-    private static void setKey(final long addr, final long index, final long insertKey) {
-        POffHeapLongArray.set(addr, OFFSET + (index * ELEM_SIZE), insertKey);
+    private static void setEntry(final long addr, final long elemIndex, final int key, final int type, final boolean nonNull, final long value) {
+        final long base = OFFSET + elemIndex * ELEM_SIZE;
+        POffHeapLongArray.set(addr, base, key);
+        if (nonNull) {
+            POffHeapLongArray.set(addr, base + 1, (type & 0xFFFFFFFFL) | NON_NULL);
+        } else {
+            POffHeapLongArray.set(addr, base + 1, type & 0xFFFFFFFFL);
+        }
+        POffHeapLongArray.set(addr, base + 2, value);
     }
 
-    private static byte type(final long addr, final long index) {
-        return (byte) POffHeapLongArray.get(addr, OFFSET + (index * ELEM_SIZE) + 1);
+    @Override
+    public final long world() {
+        return space.worldByIndex(index);
     }
 
-    private static void setType(final long addr, final long index, final byte insertType) {
-        POffHeapLongArray.set(addr, OFFSET + (index * ELEM_SIZE) + 1, insertType);
+    @Override
+    public final long time() {
+        return space.timeByIndex(index);
     }
 
-    private static long value(final long addr, final long index) {
-        return POffHeapLongArray.get(addr, OFFSET + (index * ELEM_SIZE) + 2);
+    @Override
+    public final long id() {
+        return space.idByIndex(index);
     }
 
-    private static void setValue(final long addr, final long index, final long insertValue) {
-        POffHeapLongArray.set(addr, OFFSET + (index * ELEM_SIZE) + 2, insertValue);
+    @Override
+    public final byte chunkType() {
+        return ChunkType.STATE_CHUNK;
     }
 
-    private static double doubleValue(final long addr, final long index) {
-        return POffHeapDoubleArray.get(addr, OFFSET + (index * ELEM_SIZE) + 2);
+    @Override
+    public final long index() {
+        return index;
     }
 
-    private static void setDoubleValue(final long addr, final long index, final double insertValue) {
-        POffHeapDoubleArray.set(addr, OFFSET + (index * ELEM_SIZE) + 2, insertValue);
+    public final Graph graph() {
+        return space.graph();
     }
 
-    private static long next(final long hashAddr, final long index) {
-        return POffHeapLongArray.get(hashAddr, index);
+    @Override
+    public final long addrByIndex(final long elemIndex) {
+        return value(space.addrByIndex(index), elemIndex);
     }
 
-    private static void setNext(final long hashAddr, final long index, final long insertNext) {
-        POffHeapLongArray.set(hashAddr, index, insertNext);
+    @Override
+    public final void setAddrByIndex(final long elemIndex, final long newAddr) {
+        POffHeapLongArray.set(space.addrByIndex(index), OFFSET + elemIndex * ELEM_SIZE + 2, newAddr);
     }
 
-    private static long hash(final long hashAddr, final long capacity, final long index) {
-        return POffHeapLongArray.get(hashAddr, capacity + index);
+    @Override
+    public final void lock() {
+        space.lockByIndex(index);
     }
 
-    private static void setHash(final long hashAddr, final long capacity, final long index, final long insertHash) {
-        POffHeapLongArray.set(hashAddr, capacity + index, insertHash);
+    @Override
+    public final void unlock() {
+        space.unlockByIndex(index);
     }
 
     @Override
-    public final byte chunkType() {
-        return ChunkType.STATE_CHUNK;
+    public final POffHeapArena arena() {
+        return space.arena();
     }
 
     @Override
-    public final long index() {
-        return index;
+    public final void declareDirty() {
+        final long addr = space.addrByIndex(index);
+        if (POffHeapLongArray.get(addr, HASH) != Constants.EMPTY_HASH) {
+            POffHeapLongArray.set(addr, HASH, Constants.EMPTY_HASH);
+            space.notifyUpdate(index);
+        }
     }
 
     @Override
-    public final Object getAt(final int p_key) {
-        Object result = null;
+    public final long hash() {
         lock();
         try {
-            final long addr = space.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final long foundIndex = internal_find(addr, p_key);
-                result = internal_get(addr, foundIndex);
-            }
+            return POffHeapLongArray.get(space.addrByIndex(index), HASH);
         } finally {
             unlock();
         }
-        return result;
     }
 
     @Override
-    public Object getRawAt(int p_key) {
-        return getAt(p_key);
+    public final boolean inSync() {
+        lock();
+        try {
+            return POffHeapLongArray.get(space.addrByIndex(index), IN_SYNC) == 1;
+        } finally {
+            unlock();
+        }
     }
 
     @Override
-    public Object getTypedRawAt(int p_key, byte type) {
-        Object result = null;
+    public final boolean sync(final long remoteHash) {
         lock();
         try {
             final long addr = space.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final long foundIndex = internal_find(addr, p_key);
-                if (foundIndex != OffHeapConstants.NULL_PTR && type(addr, foundIndex) == type) {
-                    result = internal_get(addr, foundIndex);
-                }
+            if (POffHeapLongArray.get(addr, IN_SYNC) == 1 && remoteHash != POffHeapLongArray.get(addr, HASH)) {
+                POffHeapLongArray.set(addr, IN_SYNC, 0);
+                return true;
+            } else {
+                return false;
             }
         } finally {
             unlock();
         }
-        return result;
     }
 
     @Override
-    public final Object get(final String key) {
-        return getAt(space.graph().resolver().stringToHash(key, false));
+    public final int group() {
+        return (int) POffHeapLongArray.get(space.addrByIndex(index), GROUP);
     }
 
     @Override
-    public final void each(final NodeStateCallback callBack) {
-        // lock();
-        //  try {
-        final long addr = space.addrByIndex(index);
-        if (addr != OffHeapConstants.NULL_PTR) {
-            final long size = POffHeapLongArray.get(addr, SIZE);
-            for (int i = 0; i < size; i++) {
-                Object resolved = internal_get(addr, i);
-                if (resolved != null) {
-                    callBack.on((int) key(addr, i), type(addr, i), resolved);
-                }
-            }
+    public final Chunk setGroup(final int g) {
+        lock();
+        try {
+            POffHeapLongArray.set(space.addrByIndex(index), GROUP, g);
+        } finally {
+            unlock();
         }
-        // } finally {
-        //unlock();
-        //  }
+        return this;
     }
 
-    private Object internal_get(final long addr, final long index) {
-        if (index >= 0) {
-            final byte elemType = type(addr, index);
-            final long rawValue = value(addr, index);
-            switch (type(addr, index)) {
-                case Type.BOOL:
-                    return rawValue == 1;
-                case Type.DOUBLE:
-                    return doubleValue(addr, index);
-                case Type.LONG:
-                    return rawValue;
-                case Type.INT:
-                    return (int) rawValue;
-                case Type.STRING:
-                    return POffHeapString.asObject(rawValue);
-                case Type.LONG_ARRAY:
-                    return new OffHeapLongArray(this, index);
-                case Type.DOUBLE_ARRAY:
-                    return new OffHeapDoubleArray(this, index);
-                case Type.INT_ARRAY:
-                    return new OffHeapIntArray(this, index);
-                case Type.STRING_ARRAY:
-                    return new OffHeapStringArray(this, index);
-                case Type.RELATION:
-                    return new OffHeapRelation(this, index);
-                case Type.DMATRIX:
-                    return new OffHeapDMatrix(this, index);
-                case Type.LMATRIX:
-                    return new OffHeapLMatrix(this, index);
-                case Type.STRING_TO_INT_MAP:
-                    return new OffHeapStringIntMap(this, index);
-                case Type.LONG_TO_LONG_MAP:
-                    return new OffHeapLongLongMap(this, index);
-                case Type.LONG_TO_LONG_ARRAY_MAP:
-                    return new OffHeapLongLongArrayMap(this, index);
-                case Type.RELATION_INDEXED:
-                    return new OffHeapRelationIndexed(this, index, space.graph());
-                case Type.NDTREE:
-                    return new NDTree(new OffHeapEGraph(this, index, space.graph()));
-                case Type.KDTREE:
-                    return new KDTree(new OffHeapEGraph(this, index, space.graph()));
-                case Type.EGRAPH:
-                    return new OffHeapEGraph(this, index, space.graph());
-                case OffHeapConstants.NULL_PTR:
-                    return null;
-                default:
-                    throw new RuntimeException("Should never happen " + elemType);
+    private static long internal_find(final long addr, final int p_key) {
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        if (size == 0) {
+            return -1;
+        }
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+        long hashIndex = p_key % (capacity * 2);
+        if (hashIndex < 0) {
+            hashIndex = hashIndex * -1;
+        }
+        long m = POffHeapLongArray.get(subHash, capacity + hashIndex);
+        while (m >= 0) {
+            if (p_key == key(addr, m)) {
+                return m;
+            } else {
+                m = POffHeapLongArray.get(subHash, m);
             }
         }
-        return null;
+        return -1;
     }
 
-    private long internal_find(final long addr, final long requestKey) {
-        final long size = POffHeapLongArray.get(addr, SIZE);
-        final long subhash_ptr = POffHeapLongArray.get(addr, SUBHASH);
-        if (size == 0) {
-            return -1;
-        } else if (subhash_ptr == OffHeapConstants.NULL_PTR) {
-            for (int i = 0; i < size; i++) {
-                if (key(addr, i) == requestKey) {
-                    return i;
+    private Object internal_get(final long addr, final long found, final boolean p_raw) {
+        if (found == -1 || !hasValue(addr, found)) {
+            return null;
+        }
+        final int elemType = type(addr, found);
+        final long rawValue = value(addr, found);
+        switch (elemType) {
+            case Type.BOOL:
+                return rawValue == CoreConstants.BOOL_TRUE;
+            case Type.DOUBLE:
+                return Double.longBitsToDouble(rawValue);
+            case Type.LONG:
+                return rawValue;
+            case Type.INT:
+                return (int) rawValue;
+            case Type.STRING:
+                return POffHeapString.asObject(rawValue);
+            case Type.LONG_ARRAY:
+                return new OffHeapLongArray(this, found);
+            case Type.DOUBLE_ARRAY:
+                return new OffHeapDoubleArray(this, found);
+            case Type.INT_ARRAY:
+                return new OffHeapIntArray(this, found);
+            case Type.STRING_ARRAY:
+                return new OffHeapStringArray(this, found);
+            case Type.RELATION:
+                return new OffHeapRelation(this, found);
+            case Type.DMATRIX:
+                return new OffHeapDMatrix(this, found);
+            case Type.LMATRIX:
+                return new OffHeapLMatrix(this, found);
+            case Type.STRING_TO_INT_MAP:
+                return new OffHeapStringIntMap(this, found);
+            case Type.LONG_TO_LONG_MAP:
+                return new OffHeapLongLongMap(this, found);
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                return new OffHeapLongLongArrayMap(this, found);
+            case Type.INT_TO_INT_MAP:
+                return new OffHeapIntIntMap(this, found);
+            case Type.INT_TO_STRING_MAP:
+                return new OffHeapIntStringMap(this, found);
+            case Type.ESTRUCT_ARRAY:
+                return new OffHeapEStructArray(this, found, space.graph());
+            default:
+                final OffHeapEStructArray structArray = new OffHeapEStructArray(this, found, space.graph());
+                if (p_raw) {
+                    return structArray;
                 }
-            }
-            return -1;
-        } else {
-            final long capacity = POffHeapLongArray.get(addr, CAPACITY);
-            long hashIndex = requestKey % (capacity * 2);
-            if (hashIndex < 0) {
-                hashIndex = hashIndex * -1;
-            }
-            long m = hash(subhash_ptr, capacity, hashIndex);
-            while (m >= 0) {
-                if (requestKey == key(addr, m)) {
-                    return m;
+                final TypeDeclaration declaration = graph().typeRegistry().declarationByHash(elemType);
+                if (declaration == null) {
+                    return structArray;
                 } else {
-                    m = next(subhash_ptr, m);
+                    return declaration.factory().wrap(structArray);
                 }
-            }
-            return -1;
         }
     }
 
     @Override
-    public final Object getOrCreateAt(final int requestKey, final byte requestType) {
-        Object result;
+    public final Object getAt(final int p_key) {
         lock();
         try {
-            long addr = space.addrByIndex(index);
-            long foundIndex = OffHeapConstants.NULL_PTR;
-            if (addr != OffHeapConstants.NULL_PTR) {
-                foundIndex = internal_find(addr, requestKey);
-            }
-            if (foundIndex == OffHeapConstants.NULL_PTR || type(addr, foundIndex) != requestType) {
-                foundIndex = internal_set(requestKey, requestType, OffHeapConstants.NULL_PTR, true, false);
-                addr = space.addrByIndex(index);
-            }
-            result = internal_get(addr, foundIndex);
+            final long addr = space.addrByIndex(index);
+            return internal_get(addr, internal_find(addr, p_key), false);
         } finally {
             unlock();
         }
-        return result;
-    }
-
-    @Override
-    public final Object getOrCreate(final String key, final byte elemType) {
-        return getOrCreateAt(space.graph().resolver().stringToHash(key, true), elemType);
     }
 
     @Override
-    public final Container setAt(final int p_elementIndex, final byte p_elemType, final Object p_unsafe_elem) {
-        if (p_elemType == Type.LONG_TO_LONG_MAP
-                || p_elemType == Type.LONG_TO_LONG_ARRAY_MAP
-                || p_elemType == Type.STRING_TO_INT_MAP
-                || p_elemType == Type.RELATION
-                || p_elemType == Type.RELATION_INDEXED
-                || p_elemType == Type.DMATRIX
-                || p_elemType == Type.LMATRIX
-                || p_elemType == Type.LONG_ARRAY
-                || p_elemType == Type.DOUBLE_ARRAY
-                || p_elemType == Type.INT_ARRAY
-                || p_elemType == Type.STRING_ARRAY) {
-            throw new RuntimeException("Bad API usage ! Set are forbidden for Maps and Relationship , please use getOrCreate instead");
-        }
+    public final Object getRawAt(final int p_key) {
         lock();
         try {
-            internal_set(p_elementIndex, p_elemType, p_unsafe_elem, true, false);
+            final long addr = space.addrByIndex(index);
+            return internal_get(addr, internal_find(addr, p_key), true);
         } finally {
             unlock();
         }
-        return this;
-    }
-
-    @Override
-    public Container remove(String name) {
-        return removeAt(space.graph().resolver().stringToHash(name, false));
     }
 
     @Override
-    public Container removeAt(int index) {
-        return setAt(index, Type.INT, null);
+    public final Object getTypedRawAt(final int p_key, final int p_type) {
+        lock();
+        try {
+            final long addr = space.addrByIndex(index);
+            final long found = internal_find(addr, p_key);
+            if (found != -1 && type(addr, found) == p_type) {
+                return internal_get(addr, found, true);
+            }
+            return null;
+        } finally {
+            unlock();
+        }
     }
 
     @Override
-    public final Container set(final String key, final byte p_elemType, final Object p_unsafe_elem) {
-        setAt(space.graph().resolver().stringToHash(key, true), p_elemType, p_unsafe_elem);
-        return this;
+    public final Object get(final String key) {
+        return getAt(space.graph().resolver().stringToHash(key, false));
     }
 
     @Override
@@ -369,7 +350,7 @@ class OffHeapStateChunk implements StateChunk, OffHeapContainer {
     }
 
     @Override
-    public <A> A getAtWithDefault(int key, A defaultValue) {
+    public final <A> A getAtWithDefault(final int key, final A defaultValue) {
         final Object result = getAt(key);
         if (result == null) {
             return defaultValue;
@@ -379,813 +360,852 @@ class OffHeapStateChunk implements StateChunk, OffHeapContainer {
     }
 
     @Override
-    public final Container rephase() {
-        return this;
-    }
-
-    @Override
-    public final byte typeAt(final int p_key) {
-        byte result = (byte) -1;
+    public final int typeAt(final int p_key) {
         lock();
         try {
             final long addr = space.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                final long index = internal_find(addr, p_key);
-                if (index != OffHeapConstants.NULL_PTR) {
-                    result = type(addr, index);
-                }
+            final long found = internal_find(addr, p_key);
+            if (found != -1) {
+                return type(addr, found);
             }
+            return -1;
         } finally {
             unlock();
         }
-        return result;
     }
 
     @Override
-    public byte type(final String key) {
+    public final int type(final String key) {
         return typeAt(space.graph().resolver().stringToHash(key, false));
     }
 
     @Override
-    public final void declareDirty() {
-        final long addr = space.addrByIndex(index);
-        if (POffHeapLongArray.get(addr, DIRTY) != 1) {
-            POffHeapLongArray.set(addr, DIRTY, 1);
-            space.notifyUpdate(index);
-        }
-    }
-
-    @Override
-    public final void save(final Buffer buffer) {
+    public final Container setAt(final int p_key, final int p_type, final Object p_unsafe_elem) {
         lock();
         try {
-            final long addr = space.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                long size = POffHeapLongArray.get(addr, SIZE);
-                Base64.encodeLongToBuffer(size, buffer);
-                for (int i = 0; i < size; i++) {
-                    buffer.write(Constants.CHUNK_SEP);
-                    final byte type = type(addr, i);
-                    Base64.encodeIntToBuffer((int) type, buffer);
-                    buffer.write(Constants.CHUNK_SEP);
-                    Base64.encodeLongToBuffer(key(addr, i), buffer);
-                    buffer.write(Constants.CHUNK_SEP);
-                    final long rawValue = value(addr, i);
-                    switch (type) {
-                        case Type.STRING:
-                            POffHeapString.save(rawValue, buffer);
-                            break;
-                        case Type.BOOL:
-                            if (rawValue == 1) {
-                                Base64.encodeIntToBuffer(CoreConstants.BOOL_TRUE, buffer);
-                            } else {
-                                Base64.encodeIntToBuffer(CoreConstants.BOOL_FALSE, buffer);
-                            }
-                            break;
-                        case Type.LONG:
-                            Base64.encodeLongToBuffer(rawValue, buffer);
-                            break;
-                        case Type.DOUBLE:
-                            Base64.encodeDoubleToBuffer(doubleValue(addr, i), buffer);
-                            break;
-                        case Type.INT:
-                            Base64.encodeIntToBuffer((int) rawValue, buffer);
-                            break;
-                        case Type.DOUBLE_ARRAY:
-                            OffHeapDoubleArray.save(rawValue, buffer);
-                            break;
-                        case Type.LONG_ARRAY:
-                            OffHeapLongArray.save(rawValue, buffer);
-                            break;
-                        case Type.INT_ARRAY:
-                            OffHeapIntArray.save(rawValue, buffer);
-                            break;
-                        case Type.STRING_ARRAY:
-                            OffHeapStringArray.save(rawValue, buffer);
-                            break;
-                        case Type.RELATION:
-                            OffHeapRelation.save(rawValue, buffer);
-                            break;
-                        case Type.DMATRIX:
-                            OffHeapDMatrix.save(rawValue, buffer);
-                            break;
-                        case Type.LMATRIX:
-                            OffHeapLMatrix.save(rawValue, buffer);
-                            break;
-                        case Type.STRING_TO_INT_MAP:
-                            OffHeapStringIntMap.save(rawValue, buffer);
-                            break;
-                        case Type.LONG_TO_LONG_MAP:
-                            OffHeapLongLongMap.save(rawValue, buffer);
-                            break;
-                        case Type.RELATION_INDEXED:
-                        case Type.LONG_TO_LONG_ARRAY_MAP:
-                            OffHeapLongLongArrayMap.save(rawValue, buffer);
-                            break;
-                        case Type.NDTREE:
-                        case Type.KDTREE:
-                        case Type.EGRAPH:
-                            OffHeapEGraph castedEGraph = new OffHeapEGraph(this, i, space.graph());
-                            int eGSize = castedEGraph.size();
-                            Base64.encodeIntToBuffer(eGSize, buffer);
-                            for (int j = 0; j < eGSize; j++) {
-                                OffHeapENode eNode = new OffHeapENode(j, castedEGraph, space.graph());
-                                buffer.write(CoreConstants.CHUNK_ENODE_SEP);
-                                eNode.save(buffer);
-                            }
-                            castedEGraph.declareUnDirty();
-                            break;
-                        default:
-                            break;
-                    }
-                }
-            } else {
-                //we save a empty chunk
-                Base64.encodeLongToBuffer(0, buffer);
-            }
+            internal_set(p_key, p_type, p_unsafe_elem, false);
         } finally {
             unlock();
         }
+        return this;
     }
 
     @Override
-    public void saveDiff(Buffer buffer) {
-        save(buffer);
+    public final Container set(final String key, final int p_type, final Object p_unsafe_elem) {
+        return setAt(space.graph().resolver().stringToHash(key, true), p_type, p_unsafe_elem);
     }
 
     @Override
-    public void loadFrom(final StateChunk origin) {
-        if (origin == null) {
-            return;
-        }
+    public final Container remove(final String name) {
+        return set(name, Type.INT, null);
+    }
+
+    @Override
+    public final Container removeAt(final int key) {
+        return setAt(key, Type.INT, null);
+    }
+
+    @Override
+    public final Container rephase() {
+        return this;
+    }
+
+    @Override
+    public final Object getOrCreate(final String key, final int p_type) {
+        return getOrCreateAt(space.graph().resolver().stringToHash(key, true), p_type);
+    }
+
+    @Override
+    public final Object getOrCreateCustom(final String name, final String typeName) {
+        return getOrCreateAt(HashHelper.hash(name), HashHelper.hash(typeName));
+    }
+
+    @Override
+    public final Object getOrCreateCustomAt(final int key, final String typeName) {
+        return getOrCreateAt(key, HashHelper.hash(typeName));
+    }
+
+    @Override
+    public final Object getOrCreateAt(final int p_key, final int p_type) {
         lock();
         try {
-            OffHeapStateChunk casted = (OffHeapStateChunk) origin;
-            casted.lock();
-            try {
-                //clean previous if exist
-                long addr = space.addrByIndex(index);
-                if (addr != OffHeapConstants.NULL_PTR) {
-                    free(addr, space);
-                }
-                //retrieve to clone address
-                final long castedAddr = space.addrByIndex(casted.index);
-
-                //nothing set yet, don't clone
-                if (castedAddr == OffHeapConstants.NULL_PTR) {
-                    space.setAddrByIndex(index, OffHeapConstants.NULL_PTR);
-                } else {
-                    final long castedCapacity = POffHeapLongArray.get(castedAddr, CAPACITY);
-                    final long castedSize = POffHeapLongArray.get(castedAddr, SIZE);
-                    final long castedSubHash = POffHeapLongArray.get(castedAddr, SUBHASH);
-                    addr = POffHeapLongArray.cloneArray(castedAddr, OFFSET + (castedCapacity * ELEM_SIZE));
-                    //clone sub hash if needed
-                    if (castedSubHash != OffHeapConstants.NULL_PTR) {
-                        POffHeapLongArray.set(addr, SUBHASH, POffHeapLongArray.cloneArray(castedSubHash, castedCapacity * 3));
-                    }
-                    //clone complex structures
-                    //TODO optimze with a flag to avoid this iteration
-                    for (int i = 0; i < castedSize; i++) {
-                        switch (type(castedAddr, i)) {
-                            case Type.LONG_ARRAY:
-                                OffHeapLongArray.clone(value(castedAddr, i));
-                                break;
-                            case Type.DOUBLE_ARRAY:
-                                OffHeapDoubleArray.clone(value(castedAddr, i));
-                                break;
-                            case Type.INT_ARRAY:
-                                OffHeapIntArray.clone(value(castedAddr, i));
-                                break;
-                            case Type.STRING_ARRAY:
-                                OffHeapStringArray.clone(value(castedAddr, i));
-                                break;
-                            case Type.STRING:
-                                POffHeapString.clone(value(castedAddr, i));
-                                break;
-                            case Type.RELATION:
-                                setValue(addr, i, OffHeapRelation.clone(value(castedAddr, i)));
-                                break;
-                            case Type.DMATRIX:
-                                setValue(addr, i, OffHeapDMatrix.clone(value(castedAddr, i)));
-                                break;
-                            case Type.LMATRIX:
-                                setValue(addr, i, OffHeapLMatrix.clone(value(castedAddr, i)));
-                                break;
-                            case Type.LONG_TO_LONG_MAP:
-                                setValue(addr, i, OffHeapLongLongMap.clone(value(castedAddr, i)));
-                                break;
-                            case Type.RELATION_INDEXED:
-                            case Type.LONG_TO_LONG_ARRAY_MAP:
-                                setValue(addr, i, OffHeapLongLongArrayMap.clone(value(castedAddr, i)));
-                                break;
-                            case Type.STRING_TO_INT_MAP:
-                                setValue(addr, i, OffHeapStringIntMap.clone(value(castedAddr, i)));
-                                break;
-                            case Type.KDTREE:
-                            case Type.NDTREE:
-                            case Type.EGRAPH:
-                                setValue(addr, i, OffHeapEGraph.clone(value(castedAddr, i)));
-                                break;
-                        }
-                    }
-                    space.setAddrByIndex(index, addr);
-                }
-            } finally {
-                casted.unlock();
+            long addr = space.addrByIndex(index);
+            long found = internal_find(addr, p_key);
+            if (found != -1 && type(addr, found) == p_type && hasValue(addr, found)) {
+                return internal_get(addr, found, false);
+            }
+            switch (p_type) {
+                case Type.BOOL:
+                case Type.DOUBLE:
+                case Type.LONG:
+                case Type.INT:
+                case Type.STRING:
+                    //primitives can not be created empty
+                    return null;
             }
+            found = internal_set_raw(p_key, p_type, true, OffHeapConstants.NULL_PTR, false);
+            addr = space.addrByIndex(index);
+            final Object result = internal_get(addr, found, false);
+            if (result instanceof BaseCustomType) {
+                ((BaseCustomType) result).init();
+            }
+            return result;
         } finally {
             unlock();
         }
     }
 
-    private long toAddr(final byte p_type, final Object p_unsafe_elem) {
-        long param_elem = -1;
-        if (p_unsafe_elem != null) {
-            try {
-                switch (p_type) {
-                    case Type.BOOL:
-                        param_elem = ((boolean) p_unsafe_elem) ? 1 : 0;
-                        break;
-                    case Type.LONG:
-                        if (p_unsafe_elem instanceof Long) {
-                            param_elem = (long) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Double) {
-                            param_elem = (long) (double) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Float) {
-                            param_elem = (long) (float) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Integer) {
-                            param_elem = (long) (int) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Byte) {
-                            param_elem = (long) (byte) p_unsafe_elem;
-                        } else {
-                            param_elem = (long) p_unsafe_elem;
-                        }
-                        break;
-                    case Type.INT:
-                        if (p_unsafe_elem instanceof Integer) {
-                            param_elem = (int) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Double) {
-                            param_elem = (int) (double) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Float) {
-                            param_elem = (int) (float) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Long) {
-                            param_elem = (int) (long) p_unsafe_elem;
-                        } else if (p_unsafe_elem instanceof Byte) {
-                            param_elem = (int) (byte) p_unsafe_elem;
-                        } else {
-                            param_elem = (int) p_unsafe_elem;
-                        }
-                        break;
-                    case Type.STRING:
-                        param_elem = POffHeapString.fromObject((String) p_unsafe_elem);
-                        break;
-                    case Type.LONG_ARRAY:
-                    case Type.DOUBLE_ARRAY:
-                    case Type.INT_ARRAY:
-                    case Type.STRING_ARRAY:
-                    case Type.RELATION:
-                    case Type.DMATRIX:
-                    case Type.LMATRIX:
-                    case Type.STRING_TO_INT_MAP:
-                    case Type.LONG_TO_LONG_MAP:
-                    case Type.RELATION_INDEXED:
-                    case Type.LONG_TO_LONG_ARRAY_MAP:
-                    case Type.NDTREE:
-                    case Type.KDTREE:
-                    case Type.EGRAPH:
-                        param_elem = OffHeapConstants.NULL_PTR; //empty initial ptr
-                        break;
-                    default:
-                        throw new RuntimeException("Internal Exception, unknown type");
+    @Override
+    public final void each(final NodeStateCallback callBack) {
+        lock();
+        try {
+            final long addr = space.addrByIndex(index);
+            final long size = POffHeapLongArray.get(addr, SIZE);
+            for (long i = 0; i < size; i++) {
+                if (hasValue(addr, i)) {
+                    callBack.on((int) key(addr, i), type(addr, i), internal_get(addr, i, true));
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("mwDB usage error, set method called with type " + Type.typeName(p_type) + " while param object is " + p_unsafe_elem);
             }
+        } finally {
+            unlock();
         }
-        return param_elem;
-    }
-
-    private double toDoubleValue(final Object p_unsafe_elem) {
-        if (p_unsafe_elem instanceof Double) {
-            return (double) p_unsafe_elem;
-        } else if (p_unsafe_elem instanceof Integer) {
-            return (double) (int) p_unsafe_elem;
-        } else if (p_unsafe_elem instanceof Float) {
-            return (double) (float) p_unsafe_elem;
-        } else if (p_unsafe_elem instanceof Long) {
-            return (double) (long) p_unsafe_elem;
-        } else if (p_unsafe_elem instanceof Byte) {
-            return (double) (byte) p_unsafe_elem;
-        }
-        return (double) p_unsafe_elem;
     }
 
-    private long internal_set(final long p_key, final byte p_type, final Object p_unsafe_elem, boolean replaceIfPresent, boolean initial) {
-        long addr = space.addrByIndex(index);
-        if (addr == OffHeapConstants.NULL_PTR) {
-            addr = allocate(addr, Constants.MAP_INITIAL_CAPACITY);
-        }
-
-        long entry = -1;
-        long prev_entry = -1;
-        long hashIndex = -1;
-        long size = POffHeapLongArray.get(addr, SIZE);
-        long capacity = POffHeapLongArray.get(addr, CAPACITY);
-        long subhash_ptr = POffHeapLongArray.get(addr, SUBHASH);
-        if (subhash_ptr == OffHeapConstants.NULL_PTR) {
+    @Override
+    public final int[] attributeIndexes() {
+        lock();
+        try {
+            final long addr = space.addrByIndex(index);
+            final int size = (int) POffHeapLongArray.get(addr, SIZE);
+            final int[] result = new int[size];
             for (int i = 0; i < size; i++) {
-                if (key(addr, i) == p_key) {
-                    entry = i;
-                    break;
-                }
-            }
-        } else {
-            hashIndex = p_key % (capacity * 2);
-            if (hashIndex < 0) {
-                hashIndex = hashIndex * -1;
-            }
-            long m = hash(subhash_ptr, capacity, hashIndex);
-            while (m != -1) {
-                if (key(addr, m) == p_key) {
-                    entry = m;
-                    break;
-                }
-                prev_entry = m;
-                m = next(subhash_ptr, m);
+                result[i] = (int) key(addr, i);
             }
+            return result;
+        } finally {
+            unlock();
         }
-        //case already present
-        if (entry != -1) {
-            final byte found_type = type(addr, entry);
-            if (replaceIfPresent || (p_type != found_type)) {
-                if (p_unsafe_elem == null) {
-                    /* Case: supression of a value */
-                    //freeThePreviousValue
-                    freeElement(value(addr, entry), found_type, space);
-                    //then clean the acces chain
-                    if (subhash_ptr != OffHeapConstants.NULL_PTR) {
-                        //unHash previous
-                        if (prev_entry != -1) {
-                            setNext(subhash_ptr, prev_entry, next(subhash_ptr, entry));
-                        } else {
-                            setHash(subhash_ptr, capacity, hashIndex, -1);
-                        }
-                    }
-                    long indexVictim = size - 1;
-                    //just pop the last value
-                    if (entry == indexVictim) {
-                        setKey(addr, entry, OffHeapConstants.NULL_PTR);
-                        setValue(addr, entry, OffHeapConstants.NULL_PTR);
-                        setType(addr, entry, (byte) OffHeapConstants.NULL_PTR);
+    }
+
+    /**
+     * Converts the value to its slot representation, then stores it.
+     */
+    private void internal_set(final int p_key, final int p_type, final Object p_unsafe_elem, final boolean initial) {
+        if (p_unsafe_elem == null) {
+            internal_set_raw(p_key, p_type, false, OffHeapConstants.NULL_PTR, initial);
+            return;
+        }
+        long encoded;
+        try {
+            switch (p_type) {
+                case Type.BOOL:
+                    if ((boolean) p_unsafe_elem) {
+                        encoded = CoreConstants.BOOL_TRUE;
                     } else {
-                        //we need to reHash the new last element at our place
-                        setKey(addr, entry, key(addr, indexVictim));
-                        final byte typeOfVictim = type(addr, indexVictim);
-                        if (typeOfVictim == Type.DOUBLE) {
-                            final double victimDoubleValue = doubleValue(addr, indexVictim);
-                            setDoubleValue(addr, entry, victimDoubleValue);
-                        } else {
-                            setValue(addr, entry, value(addr, indexVictim));
-                        }
-                        setType(addr, entry, typeOfVictim);
-                        if (subhash_ptr != OffHeapConstants.NULL_PTR) {
-                            setNext(addr, entry, next(subhash_ptr, indexVictim));
-                            long victimHash = key(addr, entry) % (capacity * 2);
-                            if (victimHash < 0) {
-                                victimHash = victimHash * -1;
-                            }
-                            long m = hash(subhash_ptr, capacity, victimHash);
-                            if (m == indexVictim) {
-                                //the victim was the head of hashing list
-                                setHash(subhash_ptr, capacity, victimHash, entry);
-                            } else {
-                                //the victim is in the next, rechain it
-                                while (m != -1) {
-                                    if (next(addr, m) == indexVictim) {
-                                        setNext(subhash_ptr, m, entry);
-                                        break;
-                                    }
-                                    m = next(subhash_ptr, m);
-                                }
-                            }
-                        }
-                        setKey(addr, indexVictim, OffHeapConstants.NULL_PTR);
-                        freeElement(value(addr, indexVictim), type(addr, indexVictim), space);
-                        setValue(addr, indexVictim, OffHeapConstants.NULL_PTR);
-                        setType(addr, indexVictim, (byte) OffHeapConstants.NULL_PTR);
+                        encoded = CoreConstants.BOOL_FALSE;
                     }
-                    POffHeapLongArray.set(addr, SIZE, size - 1);
-                } else {
-                    final long previous_value = value(addr, entry);
-                    //freeThePreviousValue
-                    if (p_type == Type.DOUBLE) {
-                        setDoubleValue(addr, entry, toDoubleValue(p_unsafe_elem));
+                    break;
+                case Type.INT:
+                    encoded = (int) toDouble(p_unsafe_elem);
+                    break;
+                case Type.LONG:
+                    if (p_unsafe_elem instanceof Long) {
+                        encoded = (Long) p_unsafe_elem;
                     } else {
-                        setValue(addr, entry, toAddr(p_type, p_unsafe_elem));
+                        encoded = (long) toDouble(p_unsafe_elem);
                     }
-                    freeElement(previous_value, found_type, space);
-                    if (found_type != p_type) {
-                        setType(addr, entry, p_type);
-                    }
-                }
-            }
-            if (!initial) {
-                declareDirty();
+                    break;
+                case Type.DOUBLE:
+                    encoded = Double.doubleToRawLongBits(toDouble(p_unsafe_elem));
+                    break;
+                case Type.STRING:
+                    encoded = POffHeapString.fromObject(space.arena(), (String) p_unsafe_elem);
+                    break;
+                default:
+                    throw new ClassCastException();
             }
-            return entry;
+        } catch (Exception e) {
+            throw new RuntimeException("GreyCat usage error, set method called with type " + Type.typeName(p_type) + " while param object is " + p_unsafe_elem);
         }
-        if (size >= capacity) {
-            long newCapacity = capacity * 2;
-            addr = allocate(addr, newCapacity);
-            subhash_ptr = POffHeapLongArray.get(addr, SUBHASH);
-            capacity = newCapacity;
-            hashIndex = p_key % (capacity * 2);
+        internal_set_raw(p_key, p_type, true, encoded, initial);
+    }
+
+    private static double toDouble(final Object value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        } else if (value instanceof Long) {
+            return (Long) value;
+        } else if (value instanceof Float) {
+            return (Float) value;
+        } else if (value instanceof Byte) {
+            return (Byte) value;
+        } else {
+            return (Double) value;
+        }
+    }
+
+    /**
+     * Stores an already encoded value, the previous value of the attribute is freed.
+     *
+     * @return the index of the entry of the attribute
+     */
+    private long internal_set_raw(final int p_key, final int p_type, final boolean nonNull, final long encoded, final boolean initial) {
+        long addr = space.addrByIndex(index);
+        long entry = internal_find(addr, p_key);
+        if (entry != -1) {
+            if (hasValue(addr, entry)) {
+                freeValue(type(addr, entry), value(addr, entry));
+            }
+            setEntry(addr, entry, p_key, p_type, nonNull, encoded);
+        } else {
+            long size = POffHeapLongArray.get(addr, SIZE);
+            if (size == POffHeapLongArray.get(addr, CAPACITY)) {
+                long newCapacity = size * 2;
+                if (newCapacity == 0) {
+                    newCapacity = Constants.MAP_INITIAL_CAPACITY;
+                }
+                addr = allocate(addr, newCapacity);
+            }
+            entry = size;
+            setEntry(addr, entry, p_key, p_type, nonNull, encoded);
+            POffHeapLongArray.set(addr, SIZE, size + 1);
+            final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+            final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+            long hashIndex = p_key % (capacity * 2);
             if (hashIndex < 0) {
                 hashIndex = hashIndex * -1;
             }
+            POffHeapLongArray.set(subHash, entry, POffHeapLongArray.get(subHash, capacity + hashIndex));
+            POffHeapLongArray.set(subHash, capacity + hashIndex, entry);
         }
-        final long insert_index = size;
-        setKey(addr, insert_index, p_key);
-        if (p_type == Type.DOUBLE) {
-            setDoubleValue(addr, insert_index, toDoubleValue(p_unsafe_elem));
-        } else {
-            setValue(addr, insert_index, toAddr(p_type, p_unsafe_elem));
-        }
-        setType(addr, insert_index, p_type);
-        if (subhash_ptr != OffHeapConstants.NULL_PTR) {
-            setNext(subhash_ptr, insert_index, hash(subhash_ptr, capacity, hashIndex));
-            setHash(subhash_ptr, capacity, hashIndex, insert_index);
-        }
-        size++;
-        POffHeapLongArray.set(addr, SIZE, size);
         if (!initial) {
             declareDirty();
         }
-        return insert_index;
+        return entry;
     }
 
+    /**
+     * Grows the segment of the chunk and rebuilds the hash index.
+     */
     private long allocate(final long addr, final long newCapacity) {
-        if (addr == OffHeapConstants.NULL_PTR) {
-            //nothing before, initial allocation...
-            final long new_addr = POffHeapLongArray.allocate(OFFSET + (newCapacity * ELEM_SIZE));
-            space.setAddrByIndex(index, new_addr);
-            POffHeapLongArray.set(new_addr, CAPACITY, newCapacity);
-            POffHeapLongArray.set(new_addr, DIRTY, 0);
-            POffHeapLongArray.set(new_addr, SIZE, 0);
-            if (newCapacity > Constants.MAP_INITIAL_CAPACITY) {
-                POffHeapLongArray.set(new_addr, SUBHASH, POffHeapLongArray.allocate(newCapacity * 3));
-            } else {
-                POffHeapLongArray.set(new_addr, SUBHASH, OffHeapConstants.NULL_PTR);
-            }
-            return new_addr;
-        } else {
-            //reallocation or overallocation
-            final long new_addr = POffHeapLongArray.reallocate(addr, OFFSET + (newCapacity * ELEM_SIZE));
-            space.setAddrByIndex(index, new_addr);
-            POffHeapLongArray.set(new_addr, CAPACITY, newCapacity);
-            long subHash_ptr = POffHeapLongArray.get(new_addr, SUBHASH);
-            if (subHash_ptr == OffHeapConstants.NULL_PTR) {
-                subHash_ptr = POffHeapLongArray.allocate(newCapacity * 3);
-            } else {
-                subHash_ptr = POffHeapLongArray.reallocate(subHash_ptr, newCapacity * 3);
-                POffHeapLongArray.reset(subHash_ptr, newCapacity * 3);
-            }
-            POffHeapLongArray.set(new_addr, SUBHASH, subHash_ptr);
-            //reHash
-            final long size = POffHeapLongArray.get(new_addr, SIZE);
-            final long hash_capacity = newCapacity * 2;
-            for (long i = 0; i < size; i++) {
-                long keyHash = key(new_addr, i) % hash_capacity;
-                if (keyHash < 0) {
-                    keyHash = keyHash * -1;
-                }
-                setNext(subHash_ptr, i, hash(subHash_ptr, newCapacity, keyHash));
-                setHash(subHash_ptr, newCapacity, keyHash, i);
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        if (newCapacity <= capacity) {
+            return addr;
+        }
+        final long newAddr = POffHeapLongArray.reallocate(addr, OFFSET + newCapacity * ELEM_SIZE);
+        space.setAddrByIndex(index, newAddr);
+        POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+        final long previousSubHash = POffHeapLongArray.get(newAddr, SUBHASH);
+        if (previousSubHash != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(previousSubHash);
+        }
+        final long subHash = POffHeapLongArray.allocate(space.arena(), newCapacity * 3);
+        final long size = POffHeapLongArray.get(newAddr, SIZE);
+        final long doubleCapacity = newCapacity * 2;
+        for (long i = 0; i < size; i++) {
+            long keyHash = key(newAddr, i) % doubleCapacity;
+            if (keyHash < 0) {
+                keyHash = keyHash * -1;
             }
-            return new_addr;
+            POffHeapLongArray.set(subHash, i, POffHeapLongArray.get(subHash, newCapacity + keyHash));
+            POffHeapLongArray.set(subHash, newCapacity + keyHash, i);
         }
+        POffHeapLongArray.set(newAddr, SUBHASH, subHash);
+        return newAddr;
     }
 
-    private static final byte LOAD_WAITING_ALLOC = 0;
-    private static final byte LOAD_WAITING_TYPE = 1;
-    private static final byte LOAD_WAITING_KEY = 2;
-    private static final byte LOAD_WAITING_VALUE = 3;
-
     @Override
-    public final void load(final Buffer buffer) {
-        if (buffer != null && buffer.length() > 0) {
+    public final void loadFrom(final StateChunk origin) {
+        if (origin == null) {
+            return;
+        }
+        final OffHeapStateChunk casted = (OffHeapStateChunk) origin;
+        casted.lock();
+        try {
             lock();
             try {
-                long addr = space.addrByIndex(index);
-                final boolean initial = (addr == OffHeapConstants.NULL_PTR);
-                long capacity = 0;
-                if (addr != OffHeapConstants.NULL_PTR) {
-                    capacity = POffHeapLongArray.get(addr, CAPACITY);
-                }
-                final long payloadSize = buffer.length();
-                long previous = 0;
-                long cursor = 0;
-                byte state = LOAD_WAITING_ALLOC;
-                byte read_type = -1;
-                long read_key = -1;
-                while (cursor < payloadSize) {
-                    byte current = buffer.read(cursor);
-                    if (current == Constants.CHUNK_SEP) {
-                        switch (state) {
-                            case LOAD_WAITING_ALLOC:
-                                final int stateChunkSize = Base64.decodeToIntWithBounds(buffer, 0, cursor);
-                                final int closePowerOfTwo = (int) Math.pow(2, Math.ceil(Math.log(stateChunkSize) / Math.log(2)));
-                                if (capacity < closePowerOfTwo) {
-                                    addr = allocate(addr, closePowerOfTwo);
-                                    capacity = closePowerOfTwo;
-                                }
-                                state = LOAD_WAITING_TYPE;
-                                cursor++;
-                                previous = cursor;
-                                break;
-                            case LOAD_WAITING_TYPE:
-                                read_type = (byte) Base64.decodeToIntWithBounds(buffer, previous, cursor);
-                                state = LOAD_WAITING_KEY;
-                                cursor++;
-                                previous = cursor;
-                                break;
-                            case LOAD_WAITING_KEY:
-                                read_key = Base64.decodeToLongWithBounds(buffer, previous, cursor);
-                                //primitive default loader
-                                switch (read_type) {
-                                    //primitive types
-                                    case Type.BOOL:
-                                    case Type.INT:
-                                    case Type.DOUBLE:
-                                    case Type.LONG:
-                                    case Type.STRING:
-                                        state = LOAD_WAITING_VALUE;
-                                        cursor++;
-                                        previous = cursor;
-                                        break;
-                                    case Type.LONG_ARRAY:
-                                        OffHeapLongArray longArray = new OffHeapLongArray(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = longArray.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.DOUBLE_ARRAY:
-                                        OffHeapDoubleArray doubleArray = new OffHeapDoubleArray(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = doubleArray.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.INT_ARRAY:
-                                        OffHeapIntArray intArray = new OffHeapIntArray(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = intArray.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.STRING_ARRAY:
-                                        OffHeapStringArray stringArray = new OffHeapStringArray(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = stringArray.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.RELATION:
-                                        OffHeapRelation relation = new OffHeapRelation(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = relation.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.DMATRIX:
-                                        OffHeapDMatrix dmatrix = new OffHeapDMatrix(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = dmatrix.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.LMATRIX:
-                                        OffHeapLMatrix lmatrix = new OffHeapLMatrix(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = lmatrix.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.LONG_TO_LONG_MAP:
-                                        OffHeapLongLongMap l2lmap = new OffHeapLongLongMap(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = l2lmap.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.LONG_TO_LONG_ARRAY_MAP:
-                                        OffHeapLongLongArrayMap l2lrmap = new OffHeapLongLongArrayMap(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = l2lrmap.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.RELATION_INDEXED:
-                                        OffHeapRelationIndexed relationIndexed = new OffHeapRelationIndexed(this, internal_set(read_key, read_type, null, true, initial), space.graph());
-                                        cursor++;
-                                        cursor = relationIndexed.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.STRING_TO_INT_MAP:
-                                        OffHeapStringIntMap s2lmap = new OffHeapStringIntMap(this, internal_set(read_key, read_type, null, true, initial));
-                                        cursor++;
-                                        cursor = s2lmap.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    case Type.NDTREE:
-                                    case Type.KDTREE:
-                                    case Type.EGRAPH:
-                                        OffHeapEGraph eGraph = new OffHeapEGraph(this, internal_set(read_key, read_type, null, true, initial), this.graph());
-                                        cursor++;
-                                        cursor = eGraph.load(buffer, cursor, payloadSize);
-                                        if (cursor < payloadSize) {
-                                            current = buffer.read(cursor);
-                                            if (current == Constants.CHUNK_SEP && cursor < payloadSize) {
-                                                state = LOAD_WAITING_TYPE;
-                                                cursor++;
-                                                previous = cursor;
-                                            }
-                                        }
-                                        break;
-                                    default:
-                                        throw new RuntimeException("Not implemented yet!!!");
-                                }
-                                break;
-                            case LOAD_WAITING_VALUE:
-                                load_primitive(read_key, read_type, buffer, previous, cursor, initial);
-                                state = LOAD_WAITING_TYPE;
-                                cursor++;
-                                previous = cursor;
-                                break;
-                        }
-                    } else {
-                        cursor++;
-                    }
-                }
-                if (state == LOAD_WAITING_VALUE) {
-                    load_primitive(read_key, read_type, buffer, previous, cursor, initial);
-                }
+                final long originAddr = casted.space.addrByIndex(casted.index);
+                final long previousAddr = space.addrByIndex(index);
+                final long clonedAddr = cloneContent(space.arena(), originAddr);
+                POffHeapLongArray.set(clonedAddr, HASH, POffHeapLongArray.get(previousAddr, HASH));
+                POffHeapLongArray.set(clonedAddr, IN_SYNC, POffHeapLongArray.get(previousAddr, IN_SYNC));
+                free(previousAddr);
+                space.setAddrByIndex(index, clonedAddr);
             } finally {
                 unlock();
             }
+        } finally {
+            casted.unlock();
+        }
+    }
+
+    private static long cloneContent(final POffHeapArena arena, final long originAddr) {
+        final long capacity = POffHeapLongArray.get(originAddr, CAPACITY);
+        final long size = POffHeapLongArray.get(originAddr, SIZE);
+        final long clonedAddr = POffHeapLongArray.cloneArray(arena, originAddr, OFFSET + capacity * ELEM_SIZE);
+        final long subHash = POffHeapLongArray.get(originAddr, SUBHASH);
+        if (subHash != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.set(clonedAddr, SUBHASH, POffHeapLongArray.cloneArray(arena, subHash, capacity * 3));
+        }
+        for (long i = 0; i < size; i++) {
+            if (hasValue(originAddr, i)) {
+                POffHeapLongArray.set(clonedAddr, OFFSET + i * ELEM_SIZE + 2, cloneValue(arena, type(originAddr, i), value(originAddr, i)));
+            }
         }
+        return clonedAddr;
     }
 
-    private void load_primitive(final long read_key, final byte read_type, final Buffer buffer, final long previous, final long cursor, final boolean initial) {
-        switch (read_type) {
+    static long cloneValue(final POffHeapArena arena, final int type, final long value) {
+        switch (type) {
             case Type.BOOL:
-                internal_set(read_key, read_type, (((byte) Base64.decodeToIntWithBounds(buffer, previous, cursor)) == CoreConstants.BOOL_TRUE), true, initial);
-                break;
-            case Type.INT:
-                internal_set(read_key, read_type, Base64.decodeToIntWithBounds(buffer, previous, cursor), true, initial);
-                break;
             case Type.DOUBLE:
-                internal_set(read_key, read_type, Base64.decodeToDoubleWithBounds(buffer, previous, cursor), true, initial);
-                break;
             case Type.LONG:
-                internal_set(read_key, read_type, Base64.decodeToLongWithBounds(buffer, previous, cursor), true, initial);
-                break;
+            case Type.INT:
+                return value;
             case Type.STRING:
-                internal_set(read_key, read_type, Base64.decodeToStringWithBounds(buffer, previous, cursor), true, initial);
-                break;
-        }
-    }
-
-    @Override
-    public void loadDiff(Buffer buffer) {
-        load(buffer);
-    }
-
-    static void free(final long addr, final OffHeapChunkSpace space) {
-        if (addr != OffHeapConstants.NULL_PTR) {
-            final long subhash_ptr = POffHeapLongArray.get(addr, SUBHASH);
-            final long size = POffHeapLongArray.get(addr, SIZE);
-            for (long i = 0; i < size; i++) {
-                freeElement(value(addr, i), type(addr, i), space);
-            }
-            if (subhash_ptr != OffHeapConstants.NULL_PTR) {
-                POffHeapLongArray.free(subhash_ptr);
-            }
-            POffHeapLongArray.free(addr);
+                return POffHeapString.clone(value);
+            case Type.LONG_ARRAY:
+                return OffHeapLongArray.clone(arena, value);
+            case Type.DOUBLE_ARRAY:
+                return OffHeapDoubleArray.clone(arena, value);
+            case Type.INT_ARRAY:
+                return OffHeapIntArray.clone(arena, value);
+            case Type.STRING_ARRAY:
+                return OffHeapStringArray.clone(arena, value);
+            case Type.RELATION:
+                return OffHeapRelation.clone(arena, value);
+            case Type.DMATRIX:
+                return OffHeapDMatrix.clone(arena, value);
+            case Type.LMATRIX:
+                return OffHeapLMatrix.clone(arena, value);
+            case Type.STRING_TO_INT_MAP:
+                return OffHeapStringIntMap.clone(arena, value);
+            case Type.LONG_TO_LONG_MAP:
+                return OffHeapLongLongMap.clone(arena, value);
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                return OffHeapLongLongArrayMap.clone(arena, value);
+            case Type.INT_TO_INT_MAP:
+                return OffHeapIntIntMap.clone(arena, value);
+            case Type.INT_TO_STRING_MAP:
+                return OffHeapIntStringMap.clone(arena, value);
+            default:
+                return OffHeapEStructArray.clone(arena, value);
         }
     }
 
-    private static void freeElement(final long addr, final byte elemType, final OffHeapChunkSpace space) {
-        switch (elemType) {
+    static void freeValue(final int type, final long value) {
+        switch (type) {
+            case Type.BOOL:
+            case Type.DOUBLE:
+            case Type.LONG:
+            case Type.INT:
+                break;
             case Type.STRING:
-                POffHeapString.free(addr);
+                POffHeapString.free(value);
+                break;
+            case Type.LONG_ARRAY:
+                OffHeapLongArray.free(value);
+                break;
+            case Type.DOUBLE_ARRAY:
+                OffHeapDoubleArray.free(value);
+                break;
+            case Type.INT_ARRAY:
+                OffHeapIntArray.free(value);
+                break;
+            case Type.STRING_ARRAY:
+                OffHeapStringArray.free(value);
                 break;
             case Type.RELATION:
-                OffHeapRelation.free(addr);
+                OffHeapRelation.free(value);
                 break;
             case Type.DMATRIX:
-                OffHeapDMatrix.free(addr);
+                OffHeapDMatrix.free(value);
                 break;
             case Type.LMATRIX:
-                OffHeapLMatrix.free(addr);
+                OffHeapLMatrix.free(value);
                 break;
-            case Type.LONG_ARRAY:
-                OffHeapLongArray.free(addr);
+            case Type.STRING_TO_INT_MAP:
+                OffHeapStringIntMap.free(value);
                 break;
-            case Type.INT_ARRAY:
-                OffHeapIntArray.free(addr);
+            case Type.LONG_TO_LONG_MAP:
+                OffHeapLongLongMap.free(value);
+                break;
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                OffHeapLongLongArrayMap.free(value);
+                break;
+            case Type.INT_TO_INT_MAP:
+                OffHeapIntIntMap.free(value);
                 break;
+            case Type.INT_TO_STRING_MAP:
+                OffHeapIntStringMap.free(value);
+                break;
+            default:
+                OffHeapEStructArray.free(value);
+                break;
+        }
+    }
+
+    static void saveStructure(final int type, final long value, final Buffer buffer) {
+        switch (type) {
             case Type.DOUBLE_ARRAY:
-                OffHeapDoubleArray.free(addr);
+                OffHeapDoubleArray.save(value, buffer);
+                break;
+            case Type.LONG_ARRAY:
+                OffHeapLongArray.save(value, buffer);
+                break;
+            case Type.INT_ARRAY:
+                OffHeapIntArray.save(value, buffer);
                 break;
             case Type.STRING_ARRAY:
-                OffHeapStringArray.free(addr);
+                OffHeapStringArray.save(value, buffer);
+                break;
+            case Type.RELATION:
+                OffHeapRelation.save(value, buffer);
+                break;
+            case Type.DMATRIX:
+                OffHeapDMatrix.save(value, buffer);
+                break;
+            case Type.LMATRIX:
+                OffHeapLMatrix.save(value, buffer);
                 break;
             case Type.STRING_TO_INT_MAP:
-                OffHeapStringIntMap.free(addr);
+                OffHeapStringIntMap.save(value, buffer);
                 break;
             case Type.LONG_TO_LONG_MAP:
-                OffHeapLongLongMap.free(addr);
+                OffHeapLongLongMap.save(value, buffer);
+                break;
+            case Type.INT_TO_INT_MAP:
+                OffHeapIntIntMap.save(value, buffer);
+                break;
+            case Type.INT_TO_STRING_MAP:
+                OffHeapIntStringMap.save(value, buffer);
                 break;
-            case Type.RELATION_INDEXED:
             case Type.LONG_TO_LONG_ARRAY_MAP:
-                OffHeapLongLongArrayMap.free(addr);
+                OffHeapLongLongArrayMap.save(value, buffer);
+                break;
+            default:
+                OffHeapEStructArray.save(value, buffer);
                 break;
-            case Type.NDTREE:
-            case Type.KDTREE:
-            case Type.EGRAPH:
-                OffHeapEGraph.freeByAddr(addr);
+        }
+    }
+
+    /**
+     * Frees the segment of a chunk and every value it references.
+     */
+    static void free(final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (long i = 0; i < size; i++) {
+            if (hasValue(addr, i)) {
+                freeValue(type(addr, i), value(addr, i));
+            }
+        }
+        final long subHash = POffHeapLongArray.get(addr, SUBHASH);
+        if (subHash != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(subHash);
+        }
+        POffHeapLongArray.free(addr);
+    }
+
+    @Override
+    public final void save(final Buffer buffer) {
+        lock();
+        try {
+            final long addr = space.addrByIndex(index);
+            final long beginIndex = buffer.writeIndex();
+            if (space.binaryFormat()) {
+                saveBinary(addr, buffer);
+            } else {
+                final int group = (int) POffHeapLongArray.get(addr, GROUP);
+                if (group != 0) {
+                    Base64.encodeIntToBuffer(group, buffer);
+                    buffer.write(CoreConstants.CHUNK_META_SEP);
+                }
+                final long size = POffHeapLongArray.get(addr, SIZE);
+                Base64.encodeIntToBuffer((int) size, buffer);
+                for (long i = 0; i < size; i++) {
+                    final int loopType = type(addr, i);
+                    buffer.write(CoreConstants.CHUNK_SEP);
+                    Base64.encodeIntToBuffer(loopType, buffer);
+                    buffer.write(CoreConstants.CHUNK_SEP);
+                    Base64.encodeIntToBuffer((int) key(addr, i), buffer);
+                    buffer.write(CoreConstants.CHUNK_SEP);
+                    if (hasValue(addr, i)) {
+                        final long loopValue = value(addr, i);
+                        switch (loopType) {
+                            case Type.STRING:
+                                POffHeapString.save(loopValue, buffer);
+                                break;
+                            case Type.BOOL:
+                            case Type.INT:
+                                Base64.encodeIntToBuffer((int) loopValue, buffer);
+                                break;
+                            case Type.LONG:
+                                Base64.encodeLongToBuffer(loopValue, buffer);
+                                break;
+                            case Type.DOUBLE:
+                                Base64.encodeDoubleToBuffer(Double.longBitsToDouble(loopValue), buffer);
+                                break;
+                            default:
+                                saveStructure(loopType, loopValue, buffer);
+                                break;
+                        }
+                    }
+                }
+            }
+            POffHeapLongArray.set(addr, HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Primitive values are written natively, structures are embedded with their own text encoding.
+     */
+    private void saveBinary(final long addr, final Buffer buffer) {
+        BinaryFormat.writeHeader(buffer);
+        BinaryFormat.writeVarInt(buffer, (int) POffHeapLongArray.get(addr, GROUP));
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        BinaryFormat.writeVarInt(buffer, (int) size);
+        Buffer section = null;
+        for (long i = 0; i < size; i++) {
+            final int loopType = type(addr, i);
+            //lowest bit of the type flags non null values
+            if (!hasValue(addr, i)) {
+                BinaryFormat.writeVarInt(buffer, loopType << 1);
+                BinaryFormat.writeVarInt(buffer, (int) key(addr, i));
+                continue;
+            }
+            BinaryFormat.writeVarInt(buffer, (loopType << 1) | 1);
+            BinaryFormat.writeVarInt(buffer, (int) key(addr, i));
+            final long loopValue = value(addr, i);
+            switch (loopType) {
+                case Type.STRING:
+                    BinaryFormat.writeString(buffer, POffHeapString.asObject(loopValue));
+                    break;
+                case Type.BOOL:
+                    BinaryFormat.writeByte(buffer, (byte) loopValue);
+                    break;
+                case Type.LONG:
+                    BinaryFormat.writeVarLong(buffer, loopValue);
+                    break;
+                case Type.DOUBLE:
+                    BinaryFormat.writeDouble(buffer, Double.longBitsToDouble(loopValue));
+                    break;
+                case Type.INT:
+                    BinaryFormat.writeVarInt(buffer, (int) loopValue);
+                    break;
+                default:
+                    if (section == null) {
+                        section = new OffHeapBuffer();
+                    }
+                    final long sectionBegin = section.writeIndex();
+                    saveStructure(loopType, loopValue, section);
+                    BinaryFormat.writeSection(buffer, section, sectionBegin, section.writeIndex());
+                    break;
+            }
+        }
+        if (section != null) {
+            section.free();
+        }
+    }
+
+    @Override
+    public final void saveDiff(final Buffer buffer) {
+
+    }
+
+    @Override
+    public final void load(final Buffer buffer) {
+        lock();
+        try {
+            internal_load(buffer, true);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public final void loadDiff(final Buffer buffer) {
+        lock();
+        try {
+            internal_load(buffer, false);
+        } finally {
+            unlock();
+        }
+    }
+
+    private static final byte LOAD_WAITING_ALLOC = 0;
+    private static final byte LOAD_WAITING_TYPE = 1;
+    private static final byte LOAD_WAITING_KEY = 2;
+    private static final byte LOAD_WAITING_VALUE = 3;
+
+    private void internal_load(final Buffer buffer, final boolean initial) {
+        if (BinaryFormat.isBinary(buffer)) {
+            internal_load_binary(buffer, initial);
+            return;
+        }
+        if (buffer == null || buffer.length() == 0) {
+            POffHeapLongArray.set(space.addrByIndex(index), HASH, 0);
+            return;
+        }
+        final long payloadSize = buffer.length();
+        long previous = 0;
+        long cursor = 0;
+        byte state = LOAD_WAITING_ALLOC;
+        int read_type = -1;
+        int read_key = -1;
+        while (cursor < payloadSize) {
+            byte current = buffer.read(cursor);
+            if (current == Constants.CHUNK_META_SEP) {
+                if (previous != cursor) {
+                    POffHeapLongArray.set(space.addrByIndex(index), GROUP, Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                }
+                cursor++;
+                previous = cursor;
+            } else if (current == Constants.CHUNK_SEP) {
+                switch (state) {
+                    case LOAD_WAITING_ALLOC:
+                        allocate(space.addrByIndex(index), Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                        state = LOAD_WAITING_TYPE;
+                        cursor++;
+                        previous = cursor;
+                        break;
+                    case LOAD_WAITING_TYPE:
+                        read_type = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                        state = LOAD_WAITING_KEY;
+                        cursor++;
+                        previous = cursor;
+                        break;
+                    case LOAD_WAITING_KEY:
+                        read_key = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                        switch (read_type) {
+                            case Type.BOOL:
+                            case Type.INT:
+                            case Type.DOUBLE:
+                            case Type.LONG:
+                            case Type.STRING:
+                                state = LOAD_WAITING_VALUE;
+                                cursor++;
+                                previous = cursor;
+                                break;
+                            default:
+                                cursor++;
+                                cursor = loadStructure(read_key, read_type, buffer, cursor, payloadSize, initial);
+                                if (cursor < payloadSize) {
+                                    current = buffer.read(cursor);
+                                    if (current == Constants.CHUNK_SEP) {
+                                        state = LOAD_WAITING_TYPE;
+                                        cursor++;
+                                        previous = cursor;
+                                    }
+                                }
+                                break;
+                        }
+                        break;
+                    case LOAD_WAITING_VALUE:
+                        load_primitive(read_key, read_type, buffer, previous, cursor, initial);
+                        state = LOAD_WAITING_TYPE;
+                        cursor++;
+                        previous = cursor;
+                        break;
+                }
+            } else {
+                cursor++;
+            }
+        }
+        if (state == LOAD_WAITING_VALUE) {
+            load_primitive(read_key, read_type, buffer, previous, cursor, initial);
+        }
+        POffHeapLongArray.set(space.addrByIndex(index), HASH, HashHelper.hashBuffer(buffer, 0, payloadSize));
+    }
 
+    private void load_primitive(final int read_key, final int read_type, final Buffer buffer, final long previous, final long cursor, final boolean initial) {
+        if (previous == cursor) {
+            internal_set_raw(read_key, read_type, false, OffHeapConstants.NULL_PTR, initial);
+        } else {
+            switch (read_type) {
+                case Type.BOOL:
+                case Type.INT:
+                    internal_set_raw(read_key, read_type, true, Base64.decodeToIntWithBounds(buffer, previous, cursor), initial);
+                    break;
+                case Type.DOUBLE:
+                    internal_set_raw(read_key, read_type, true, Double.doubleToRawLongBits(Base64.decodeToDoubleWithBounds(buffer, previous, cursor)), initial);
+                    break;
+                case Type.LONG:
+                    internal_set_raw(read_key, read_type, true, Base64.decodeToLongWithBounds(buffer, previous, cursor), initial);
+                    break;
+                case Type.STRING:
+                    internal_set_raw(read_key, read_type, true, POffHeapString.fromObject(space.arena(), Base64.decodeToStringWithBounds(buffer, previous, cursor)), initial);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Loads a structure attribute, string to int maps are merged into the previous one as the heap space does.
+     *
+     * @return the cursor at the end of the structure
+     */
+    private long loadStructure(final int read_key, final int read_type, final Buffer buffer, final long offset, final long max, final boolean initial) {
+        long entry = -1;
+        if (read_type == Type.STRING_TO_INT_MAP) {
+            final long addr = space.addrByIndex(index);
+            final long previousFound = internal_find(addr, read_key);
+            if (previousFound != -1 && type(addr, previousFound) == Type.STRING_TO_INT_MAP && hasValue(addr, previousFound)) {
+                entry = previousFound;
+            }
+        }
+        if (entry == -1) {
+            entry = internal_set_raw(read_key, read_type, true, OffHeapConstants.NULL_PTR, initial);
         }
+        switch (read_type) {
+            case Type.LONG_ARRAY:
+                return new OffHeapLongArray(this, entry).load(buffer, offset, max);
+            case Type.DOUBLE_ARRAY:
+                return new OffHeapDoubleArray(this, entry).load(buffer, offset, max);
+            case Type.INT_ARRAY:
+                return new OffHeapIntArray(this, entry).load(buffer, offset, max);
+            case Type.STRING_ARRAY:
+                return new OffHeapStringArray(this, entry).load(buffer, offset, max);
+            case Type.RELATION:
+                return new OffHeapRelation(this, entry).load(buffer, offset, max);
+            case Type.DMATRIX:
+                return new OffHeapDMatrix(this, entry).load(buffer, offset, max);
+            case Type.LMATRIX:
+                return new OffHeapLMatrix(this, entry).load(buffer, offset, max);
+            case Type.LONG_TO_LONG_MAP:
+                return new OffHeapLongLongMap(this, entry).load(buffer, offset, max);
+            case Type.INT_TO_INT_MAP:
+                return new OffHeapIntIntMap(this, entry).load(buffer, offset, max);
+            case Type.INT_TO_STRING_MAP:
+                return new OffHeapIntStringMap(this, entry).load(buffer, offset, max);
+            case Type.LONG_TO_LONG_ARRAY_MAP:
+                return new OffHeapLongLongArrayMap(this, entry).load(buffer, offset, max);
+            case Type.STRING_TO_INT_MAP:
+                return new OffHeapStringIntMap(this, entry).load(buffer, offset, max);
+            default:
+                return new OffHeapEStructArray(this, entry, space.graph()).load(buffer, offset, max);
+        }
+    }
+
+    private void internal_load_binary(final Buffer buffer, final boolean initial) {
+        final BinaryReader reader = new BinaryReader(buffer);
+        POffHeapLongArray.set(space.addrByIndex(index), GROUP, reader.readVarInt());
+        final int size = reader.readVarInt();
+        allocate(space.addrByIndex(index), size);
+        Buffer section = null;
+        for (int i = 0; i < size; i++) {
+            final int read_flagged_type = reader.readVarInt();
+            final int read_type = read_flagged_type >> 1;
+            final int read_key = reader.readVarInt();
+            if ((read_flagged_type & 1) == 0) {
+                internal_set_raw(read_key, read_type, false, OffHeapConstants.NULL_PTR, initial);
+                continue;
+            }
+            switch (read_type) {
+                case Type.STRING:
+                    internal_set_raw(read_key, read_type, true, POffHeapString.fromObject(space.arena(), reader.readString()), initial);
+                    break;
+                case Type.BOOL:
+                    internal_set_raw(read_key, read_type, true, reader.readByte(), initial);
+                    break;
+                case Type.LONG:
+                    internal_set_raw(read_key, read_type, true, reader.readVarLong(), initial);
+                    break;
+                case Type.DOUBLE:
+                    internal_set_raw(read_key, read_type, true, Double.doubleToRawLongBits(reader.readDouble()), initial);
+                    break;
+                case Type.INT:
+                    internal_set_raw(read_key, read_type, true, reader.readVarInt(), initial);
+                    break;
+                default:
+                    final byte[] bytes = reader.readBytes();
+                    if (section == null) {
+                        section = new OffHeapBuffer();
+                    }
+                    final long sectionBegin = section.writeIndex();
+                    section.writeAll(bytes);
+                    loadStructure(read_key, read_type, section, sectionBegin, section.writeIndex(), initial);
+                    break;
+            }
+        }
+        if (section != null) {
+            section.free();
+        }
+        POffHeapLongArray.set(space.addrByIndex(index), HASH, HashHelper.hashBuffer(buffer, 0, buffer.length()));
+    }
+
+    @Override
+    public final Relation getRelation(final String name) {
+        return (Relation) get(name);
+    }
+
+    @Override
+    public final Index getIndex(final String name) {
+        return (Index) get(name);
+    }
+
+    @Override
+    public final DMatrix getDMatrix(final String name) {
+        return (DMatrix) get(name);
+    }
+
+    @Override
+    public final LMatrix getLMatrix(final String name) {
+        return (LMatrix) get(name);
+    }
+
+    @Override
+    public final EStructArray getEGraph(final String name) {
+        return (EStructArray) get(name);
+    }
+
+    @Override
+    public final LongArray getLongArray(final String name) {
+        return (LongArray) get(name);
+    }
+
+    @Override
+    public final IntArray getIntArray(final String name) {
+        return (IntArray) get(name);
+    }
+
+    @Override
+    public final DoubleArray getDoubleArray(final String name) {
+        return (DoubleArray) get(name);
+    }
+
+    @Override
+    public final StringArray getStringArray(final String name) {
+        return (StringArray) get(name);
+    }
+
+    @Override
+    public final StringIntMap getStringIntMap(final String name) {
+        return (StringIntMap) get(name);
+    }
+
+    @Override
+    public final LongLongMap getLongLongMap(final String name) {
+        return (LongLongMap) get(name);
+    }
+
+    @Override
+    public final IntIntMap getIntIntMap(final String name) {
+        return (IntIntMap) get(name);
+    }
+
+    @Override
+    public final IntStringMap getIntStringMap(final String name) {
+        return (IntStringMap) get(name);
+    }
+
+    @Override
+    public final LongLongArrayMap getLongLongArrayMap(final String name) {
+        return (LongLongArrayMap) get(name);
     }
 
 }
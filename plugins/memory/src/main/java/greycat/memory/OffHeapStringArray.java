@@ -16,12 +16,17 @@
 package greycat.memory;
 
 import greycat.Constants;
-import greycat.memory.primary.POffHeapStringArray2;
+import greycat.memory.primary.POffHeapLongArray;
+import greycat.memory.primary.POffHeapString;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.StringArray;
 import greycat.utility.Base64;
 
-public class OffHeapStringArray implements StringArray {
+final class OffHeapStringArray implements StringArray {
+
+    private static final int SIZE = 0;
+    private static final int SHIFT = 1;
 
     private final long index;
     private final OffHeapContainer container;
@@ -32,140 +37,345 @@ public class OffHeapStringArray implements StringArray {
     }
 
     @Override
-    public String get(int elemIndex) {
+    public final String get(final int elemIndex) {
         container.lock();
-        String result = null;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                result = POffHeapStringArray2.get(addr, elemIndex);
+                if (elemIndex >= POffHeapLongArray.get(addr, SIZE)) {
+                    throw new RuntimeException("Array Out of Bounds");
+                }
+                return POffHeapString.asObject(POffHeapLongArray.get(addr, SHIFT + elemIndex));
             }
+            return null;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public void set(int elemIndex, String value) {
+    public final void set(final int elemIndex, final String value) {
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if (addr != OffHeapConstants.NULL_PTR) {
-                POffHeapStringArray2.set(addr, elemIndex, value);
+            if (addr == OffHeapConstants.NULL_PTR || elemIndex >= POffHeapLongArray.get(addr, SIZE)) {
+                throw new RuntimeException("allocate first!");
             }
+            unsafe_set(addr, elemIndex, value);
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final int size() {
+        container.lock();
+        try {
+            return unsafe_size(container.addrByIndex(index));
         } finally {
             container.unlock();
         }
-        container.declareDirty();
     }
 
     @Override
-    public int size() {
+    public final void clear() {
         container.lock();
-        int size = 0;
         try {
             final long addr = container.addrByIndex(index);
             if (addr != OffHeapConstants.NULL_PTR) {
-                size = (int) POffHeapStringArray2.size(addr);
+                free(addr);
+                container.setAddrByIndex(index, OffHeapConstants.NULL_PTR);
+            }
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final void init(final int newSize) {
+        container.lock();
+        try {
+            unsafe_free_strings(container.addrByIndex(index), 0);
+            final long addr = unsafe_allocate(newSize);
+            for (int i = 0; i < newSize; i++) {
+                POffHeapLongArray.set(addr, SHIFT + i, OffHeapConstants.NULL_PTR);
+            }
+            container.declareDirty();
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final void initWith(final String[] values) {
+        container.lock();
+        try {
+            unsafe_free_strings(container.addrByIndex(index), 0);
+            final long addr = unsafe_allocate(values.length);
+            for (int i = 0; i < values.length; i++) {
+                POffHeapLongArray.set(addr, SHIFT + i, unsafe_fromObject(container.arena(), values[i]));
             }
+            container.declareDirty();
         } finally {
             container.unlock();
         }
-        return size;
     }
 
     @Override
     public final String[] extract() {
-        String[] result = null;
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
-            if(addr != OffHeapConstants.NULL_PTR){
-                result = POffHeapStringArray2.asObject(addr);
+            final int size = unsafe_size(addr);
+            final String[] extracted = new String[size];
+            for (int i = 0; i < size; i++) {
+                extracted[i] = POffHeapString.asObject(POffHeapLongArray.get(addr, SHIFT + i));
+            }
+            return extracted;
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final boolean removeElement(final String value) {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            final int size = unsafe_size(addr);
+            for (int i = 0; i < size; i++) {
+                if (unsafe_equals(addr, i, value)) {
+                    unsafe_removeElementByIndex(addr, size, i);
+                    return true;
+                }
             }
+            return false;
         } finally {
             container.unlock();
         }
-        return result;
     }
 
     @Override
-    public final void init(int newSize) {
+    public final boolean removeElementbyIndex(final int elemIndex) {
         container.lock();
         try {
-            unsafe_allocate(newSize);
+            final long addr = container.addrByIndex(index);
+            final int size = unsafe_size(addr);
+            if (elemIndex < 0 || elemIndex >= size) {
+                return false;
+            }
+            unsafe_removeElementByIndex(addr, size, elemIndex);
+            return true;
         } finally {
             container.unlock();
         }
+    }
+
+    private void unsafe_removeElementByIndex(final long addr, final int size, final int elemIndex) {
+        final long removed = POffHeapLongArray.get(addr, SHIFT + elemIndex);
+        if (removed != OffHeapConstants.NULL_PTR) {
+            POffHeapString.free(removed);
+        }
+        for (int i = elemIndex + 1; i < size; i++) {
+            POffHeapLongArray.set(addr, SHIFT + i - 1, POffHeapLongArray.get(addr, SHIFT + i));
+        }
+        unsafe_allocate(size - 1);
         container.declareDirty();
     }
 
-    private long unsafe_allocate(int newSize) {
-        final long addr = container.addrByIndex(index);
-        if (addr == OffHeapConstants.NULL_PTR) {
-            //initial allocation
-            final long newly = POffHeapStringArray2.allocate(newSize);
-            container.setAddrByIndex(index, newly);
-            return newly;
-        } else {
-            long exAddr = POffHeapStringArray2.reallocate(addr, newSize);
-            container.setAddrByIndex(index, exAddr);
-            return exAddr;
+    @Override
+    public final StringArray addElement(final String value) {
+        container.lock();
+        try {
+            final int size = unsafe_size(container.addrByIndex(index));
+            final long addr = unsafe_allocate(size + 1);
+            POffHeapLongArray.set(addr, SHIFT + size, unsafe_fromObject(container.arena(), value));
+            container.declareDirty();
+        } finally {
+            container.unlock();
         }
+        return this;
     }
 
     @Override
-    public void initWith(String[] values) {
+    public final void addAll(final String[] values) {
         container.lock();
         try {
-            long addr = unsafe_allocate(values.length);
+            final int size = unsafe_size(container.addrByIndex(index));
+            final long addr = unsafe_allocate(size + values.length);
             for (int i = 0; i < values.length; i++) {
-                POffHeapStringArray2.set(addr, i, values[i]);
+                POffHeapLongArray.set(addr, SHIFT + size + i, unsafe_fromObject(container.arena(), values[i]));
             }
+            container.declareDirty();
         } finally {
             container.unlock();
         }
-        container.declareDirty();
+    }
+
+    @Override
+    public final boolean insertElementAt(final int position, final String value) {
+        container.lock();
+        try {
+            final int size = unsafe_size(container.addrByIndex(index));
+            if (position < 0 || position >= size) {
+                return false;
+            }
+            final long addr = unsafe_allocate(size + 1);
+            for (int i = size; i > position; i--) {
+                POffHeapLongArray.set(addr, SHIFT + i, POffHeapLongArray.get(addr, SHIFT + i - 1));
+            }
+            POffHeapLongArray.set(addr, SHIFT + position, unsafe_fromObject(container.arena(), value));
+            container.declareDirty();
+            return true;
+        } finally {
+            container.unlock();
+        }
+    }
+
+    @Override
+    public final boolean replaceElementby(final String element, final String value) {
+        container.lock();
+        try {
+            final long addr = container.addrByIndex(index);
+            final int size = unsafe_size(addr);
+            for (int i = 0; i < size; i++) {
+                if (unsafe_equals(addr, i, element)) {
+                    unsafe_set(addr, i, value);
+                    container.declareDirty();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            container.unlock();
+        }
+    }
+
+    private void unsafe_set(final long addr, final int elemIndex, final String value) {
+        final long previous = POffHeapLongArray.get(addr, SHIFT + elemIndex);
+        if (previous != OffHeapConstants.NULL_PTR) {
+            POffHeapString.free(previous);
+        }
+        POffHeapLongArray.set(addr, SHIFT + elemIndex, unsafe_fromObject(container.arena(), value));
+    }
+
+    private static long unsafe_fromObject(final POffHeapArena arena, final String value) {
+        if (value == null) {
+            return OffHeapConstants.NULL_PTR;
+        }
+        return POffHeapString.fromObject(arena, value);
+    }
+
+    private static boolean unsafe_equals(final long addr, final int elemIndex, final String value) {
+        final String current = POffHeapString.asObject(POffHeapLongArray.get(addr, SHIFT + elemIndex));
+        if (current == null) {
+            return value == null;
+        }
+        return current.equals(value);
+    }
+
+    private static void unsafe_free_strings(final long addr, final int from) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return;
+        }
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        for (int i = from; i < size; i++) {
+            final long stringAddr = POffHeapLongArray.get(addr, SHIFT + i);
+            if (stringAddr != OffHeapConstants.NULL_PTR) {
+                POffHeapString.free(stringAddr);
+                POffHeapLongArray.set(addr, SHIFT + i, OffHeapConstants.NULL_PTR);
+            }
+        }
+    }
+
+    private int unsafe_size(final long addr) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            return 0;
+        }
+        return (int) POffHeapLongArray.get(addr, SIZE);
+    }
+
+    /**
+     * Allocates or resizes the segment of this array, previous values are kept.
+     */
+    private long unsafe_allocate(final int newSize) {
+        final long addr = container.addrByIndex(index);
+        final long newAddr;
+        if (addr == OffHeapConstants.NULL_PTR) {
+            newAddr = POffHeapLongArray.allocate(container.arena(), newSize + SHIFT);
+        } else {
+            final long previousSize = POffHeapLongArray.get(addr, SIZE);
+            newAddr = POffHeapLongArray.reallocate(addr, newSize + SHIFT);
+            if (newSize > previousSize) {
+                POffHeapLongArray.fillLong(newAddr, previousSize + SHIFT, newSize + SHIFT, OffHeapConstants.NULL_PTR);
+            }
+        }
+        POffHeapLongArray.set(newAddr, SIZE, newSize);
+        container.setAddrByIndex(index, newAddr);
+        return newAddr;
     }
 
     static void save(final long addr, final Buffer buffer) {
         if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
             return;
         }
-        final int size = (int) POffHeapStringArray2.size(addr);
+        final int size = (int) POffHeapLongArray.get(addr, SIZE);
         Base64.encodeIntToBuffer(size, buffer);
-        for (long i = 0; i < size; i++) {
+        for (int i = 0; i < size; i++) {
             buffer.write(Constants.CHUNK_VAL_SEP);
-            Base64.encodeStringToBuffer(POffHeapStringArray2.get(addr, i), buffer);
+            final long stringAddr = POffHeapLongArray.get(addr, SHIFT + i);
+            if (stringAddr != OffHeapConstants.NULL_PTR) {
+                POffHeapString.save(stringAddr, buffer);
+            }
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         }
-        return POffHeapStringArray2.cloneArray(addr);
+        final long size = POffHeapLongArray.get(addr, SIZE);
+        //strings are immutable, the copy shares them through their reference counter
+        for (int i = 0; i < size; i++) {
+            final long stringAddr = POffHeapLongArray.get(addr, SHIFT + i);
+            if (stringAddr != OffHeapConstants.NULL_PTR) {
+                POffHeapString.clone(stringAddr);
+            }
+        }
+        return POffHeapLongArray.cloneArray(arena, addr, size + SHIFT);
     }
 
     static void free(final long addr) {
-        POffHeapStringArray2.free(addr);
+        if (addr != OffHeapConstants.NULL_PTR) {
+            unsafe_free_strings(addr, 0);
+            POffHeapLongArray.free(addr);
+        }
     }
 
+    /**
+     * Loads the array from its text form, the caller holds the lock of the container.
+     */
     final long load(final Buffer buffer, final long offset, final long max) {
+        if (offset >= max) {
+            return offset;
+        }
         long cursor = offset;
         byte current = buffer.read(cursor);
         boolean isFirst = true;
         long previous = offset;
         int elemIndex = 0;
-        long addr = -1;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP && current != Constants.CHUNK_ESEP) {
+        long addr = OffHeapConstants.NULL_PTR;
+        unsafe_free_strings(container.addrByIndex(index), 0);
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
                     addr = unsafe_allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
                     isFirst = false;
                 } else {
-                    POffHeapStringArray2.set(addr, elemIndex, Base64.decodeToStringWithBounds(buffer, previous, cursor));
+                    POffHeapLongArray.set(addr, SHIFT + elemIndex, POffHeapString.fromObject(container.arena(), Base64.decodeToStringWithBounds(buffer, previous, cursor)));
                     elemIndex++;
                 }
                 previous = cursor + 1;
@@ -175,10 +385,12 @@ public class OffHeapStringArray implements StringArray {
                 current = buffer.read(cursor);
             }
         }
-        if (isFirst) {
+        if (previous == cursor) {
+            unsafe_allocate(0);
+        } else if (isFirst) {
             unsafe_allocate(Base64.decodeToIntWithBounds(buffer, previous, cursor));
         } else {
-            POffHeapStringArray2.set(addr, elemIndex, Base64.decodeToStringWithBounds(buffer, previous, cursor));
+            POffHeapLongArray.set(addr, SHIFT + elemIndex, POffHeapString.fromObject(container.arena(), Base64.decodeToStringWithBounds(buffer, previous, cursor)));
         }
         return cursor;
     }
@@ -18,6 +18,7 @@ package greycat.memory;
 import greycat.Constants;
 import greycat.memory.primary.POffHeapLongArray;
 import greycat.memory.primary.POffHeapString;
+import greycat.memory.primary.POffHeapArena;
 import greycat.struct.Buffer;
 import greycat.struct.StringIntMap;
 import greycat.struct.StringLongMapCallBack;
@@ -84,12 +85,15 @@ class OffHeapStringIntMap implements StringIntMap {
 
     void preAllocate(long wantedCapacity) {
         long addr = container.addrByIndex(index);
+        if (wantedCapacity <= 0) {
+            return;
+        }
         if (addr == OffHeapConstants.NULL_PTR) {
-            addr = POffHeapLongArray.allocate(OFFSET + (wantedCapacity * ELEM_SIZE));
+            addr = POffHeapLongArray.allocate(container.arena(), OFFSET + (wantedCapacity * ELEM_SIZE));
             container.setAddrByIndex(index, addr);
             POffHeapLongArray.set(addr, SIZE, 0);
             POffHeapLongArray.set(addr, CAPACITY, wantedCapacity);
-            long subHash = POffHeapLongArray.allocate(wantedCapacity * 3);
+            long subHash = POffHeapLongArray.allocate(container.arena(), wantedCapacity * 3);
             POffHeapLongArray.set(addr, SUBHASH, subHash);
         } else {
             long currentCapacity = POffHeapLongArray.get(addr, CAPACITY);
@@ -117,7 +121,7 @@ class OffHeapStringIntMap implements StringIntMap {
 
     @Override
     public final int getValue(final String requestStringKey) {
-        long result = Constants.NULL_LONG;
+        long result = -1;
         container.lock();
         try {
             final long keyHash = HashHelper.hash(requestStringKey);
@@ -146,7 +150,7 @@ class OffHeapStringIntMap implements StringIntMap {
 
     @Override
     public final String getByHash(final int keyHash) {
-        long result = Constants.NULL_LONG;
+        long result = OffHeapConstants.NULL_PTR;
         container.lock();
         try {
             final long addr = container.addrByIndex(index);
@@ -257,6 +261,7 @@ class OffHeapStringIntMap implements StringIntMap {
                         m = next(subHash, m);
                     }
                     if (found != -1) {
+                        POffHeapString.free(key(addr, found));
                         //first remove currentKey from hashChain
                         long toRemoveHash = keyHash % hashCapacity;
                         if (toRemoveHash < 0) {
@@ -287,7 +292,7 @@ class OffHeapStringIntMap implements StringIntMap {
                             setKeyHash(addr, found, lastKeyHash);
                             setValue(addr, found, value(addr, lastIndex));
                             setNext(subHash, found, next(subHash, lastIndex));
-                            long victimHash = lastKey % hashCapacity;
+                            long victimHash = lastKeyHash % hashCapacity;
                             if (victimHash < 0) {
                                 victimHash = victimHash * -1;
                             }
@@ -318,28 +323,29 @@ class OffHeapStringIntMap implements StringIntMap {
     }
 
     @Override
-    public final void put(final String insertKey, final int insertValue) {
+    public final StringIntMap put(final String insertKey, final int insertValue) {
         container.lock();
         try {
-            internal_put(insertKey, insertValue);
+            internal_put(insertKey, insertValue, true);
         } finally {
             container.unlock();
         }
+        return this;
     }
 
-    void internal_put(final String insertStringKey, final long insertValue) {
+    void internal_put(final String insertStringKey, final long insertValue, final boolean notify) {
         final long keyHash = HashHelper.hash(insertStringKey);
         long addr = container.addrByIndex(index);
         if (addr == OffHeapConstants.NULL_PTR) {
             //initial allocation
             final long capacity = Constants.MAP_INITIAL_CAPACITY;
-            addr = POffHeapLongArray.allocate(OFFSET + (capacity * ELEM_SIZE));
+            addr = POffHeapLongArray.allocate(container.arena(), OFFSET + (capacity * ELEM_SIZE));
             container.setAddrByIndex(index, addr);
-            final long subHash = POffHeapLongArray.allocate(capacity * 3);
+            final long subHash = POffHeapLongArray.allocate(container.arena(), capacity * 3);
             POffHeapLongArray.set(addr, SIZE, 1);
             POffHeapLongArray.set(addr, CAPACITY, capacity);
             POffHeapLongArray.set(addr, SUBHASH, subHash);
-            final long keyAddr = POffHeapString.fromObject(insertStringKey);
+            final long keyAddr = POffHeapString.fromObject(container.arena(), insertStringKey);
             setKey(addr, 0, keyAddr);
             setKeyHash(addr, 0, keyHash);
             setValue(addr, 0, insertValue);
@@ -349,6 +355,9 @@ class OffHeapStringIntMap implements StringIntMap {
             }
             setHash(subHash, capacity, hashIndex, 0);
             setNext(subHash, 0, -1);
+            if (notify) {
+                container.declareDirty();
+            }
         } else {
             long mapSize = POffHeapLongArray.get(addr, SIZE);
             long capacity = POffHeapLongArray.get(addr, CAPACITY);
@@ -392,7 +401,7 @@ class OffHeapStringIntMap implements StringIntMap {
                         setHash(subHash, capacity, new_key_hash, i);
                     }
                 }
-                setKey(addr, lastIndex, POffHeapString.fromObject(insertStringKey));
+                setKey(addr, lastIndex, POffHeapString.fromObject(container.arena(), insertStringKey));
                 setKeyHash(addr, lastIndex, keyHash);
                 setValue(addr, lastIndex, insertValue);
                 long hashedKey = keyHash % (capacity * 2);
@@ -402,25 +411,31 @@ class OffHeapStringIntMap implements StringIntMap {
                 setNext(subHash, lastIndex, hash(subHash, capacity, hashedKey));
                 setHash(subHash, capacity, hashedKey, lastIndex);
                 POffHeapLongArray.set(addr, SIZE, mapSize + 1);
-                container.declareDirty();
+                if (notify) {
+                    container.declareDirty();
+                }
             } else {
                 if (value(addr, found) != insertValue) {
                     setValue(addr, found, insertValue);
-                    container.declareDirty();
+                    if (notify) {
+                        container.declareDirty();
+                    }
                 }
             }
         }
     }
 
     static void save(final long addr, final Buffer buffer) {
-        if (addr != OffHeapConstants.NULL_PTR) {
+        if (addr == OffHeapConstants.NULL_PTR) {
+            Base64.encodeIntToBuffer(0, buffer);
+        } else {
             final long size = POffHeapLongArray.get(addr, SIZE);
-            Base64.encodeLongToBuffer(size, buffer);
+            Base64.encodeIntToBuffer((int) size, buffer);
             for (long i = 0; i < size; i++) {
                 buffer.write(Constants.CHUNK_VAL_SEP);
                 Base64.encodeStringToBuffer(POffHeapString.asObject(key(addr, i)), buffer);
                 buffer.write(Constants.CHUNK_VAL_SEP);
-                Base64.encodeLongToBuffer(value(addr, i), buffer);
+                Base64.encodeIntToBuffer((int) value(addr, i), buffer);
             }
         }
     }
@@ -436,34 +451,22 @@ class OffHeapStringIntMap implements StringIntMap {
             }
             final long previousHash = POffHeapLongArray.get(addr, SUBHASH);
             if (previousHash != OffHeapConstants.NULL_PTR) {
-                if (OffHeapConstants.DEBUG_MODE) {
-                    if (!OffHeapConstants.SEGMENTS.containsKey(previousHash)) {
-                        throw new RuntimeException("Bad ADDR!");
-                    }
-                    OffHeapConstants.SEGMENTS.remove(previousHash);
-                }
                 POffHeapLongArray.free(previousHash);
             }
-            if (OffHeapConstants.DEBUG_MODE) {
-                if (!OffHeapConstants.SEGMENTS.containsKey(addr)) {
-                    throw new RuntimeException("Bad ADDR!");
-                }
-                OffHeapConstants.SEGMENTS.remove(addr);
-            }
             POffHeapLongArray.free(addr);
         }
     }
 
-    static long clone(final long addr) {
+    static long clone(final POffHeapArena arena, final long addr) {
         if (addr == OffHeapConstants.NULL_PTR) {
             return OffHeapConstants.NULL_PTR;
         } else {
             final long capacity = POffHeapLongArray.get(addr, CAPACITY);
             //copy main array
-            final long new_addr = POffHeapLongArray.cloneArray(addr, OFFSET + (capacity * ELEM_SIZE));
+            final long new_addr = POffHeapLongArray.cloneArray(arena, addr, OFFSET + (capacity * ELEM_SIZE));
             final long previousHash = POffHeapLongArray.get(addr, SUBHASH);
             if (previousHash != OffHeapConstants.NULL_PTR) {
-                final long newHash = POffHeapLongArray.cloneArray(previousHash, (capacity * 3));
+                final long newHash = POffHeapLongArray.cloneArray(arena, previousHash, (capacity * 3));
                 POffHeapLongArray.set(new_addr, SUBHASH, newHash);
             }
             //increase cow counters of OffHeapStrings
@@ -485,7 +488,8 @@ class OffHeapStringIntMap implements StringIntMap {
         boolean isFirst = true;
         long previous = offset;
         String previousKey = null;
-        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.CHUNK_ENODE_SEP && current != Constants.CHUNK_ESEP) {
+        final boolean merge = container.addrByIndex(index) != OffHeapConstants.NULL_PTR;
+        while (cursor < max && current != Constants.CHUNK_SEP && current != Constants.BLOCK_CLOSE) {
             if (current == Constants.CHUNK_VAL_SEP) {
                 if (isFirst) {
                     preAllocate(Base64.decodeToLongWithBounds(buffer, previous, cursor));
@@ -494,7 +498,7 @@ class OffHeapStringIntMap implements StringIntMap {
                     if (previousKey == null) {
                         previousKey = Base64.decodeToStringWithBounds(buffer, previous, cursor);
                     } else {
-                        internal_put(previousKey, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                        internal_put(previousKey, Base64.decodeToIntWithBounds(buffer, previous, cursor), merge);
                         previousKey = null;
                     }
                 }
@@ -509,7 +513,7 @@ class OffHeapStringIntMap implements StringIntMap {
             preAllocate(Base64.decodeToLongWithBounds(buffer, previous, cursor));
         } else {
             if (previousKey != null) {
-                internal_put(previousKey, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                internal_put(previousKey, Base64.decodeToIntWithBounds(buffer, previous, cursor), merge);
             }
         }
         return cursor;
@@ -0,0 +1,511 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.Constants;
+import greycat.chunk.Chunk;
+import greycat.chunk.ChunkType;
+import greycat.chunk.SuperTimeTreeChunk;
+import greycat.chunk.SuperTreeWalker;
+import greycat.internal.CoreConstants;
+import greycat.memory.primary.POffHeapLongArray;
+import greycat.struct.Buffer;
+import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
+import greycat.utility.HashHelper;
+
+class OffHeapSuperTimeTreeChunk implements SuperTimeTreeChunk {
+
+    private static final int ELEM_SIZE = 6;
+
+    private static final int TIME_SENSITIVITY = OffHeapRedBlackTree.EXTRA;
+    private static final int TIME_SENSITIVITY_OFFSET = OffHeapRedBlackTree.EXTRA2;
+    private static final int END = OffHeapRedBlackTree.EXTRA3;
+
+    private final OffHeapChunkSpace space;
+    private final long index;
+
+    OffHeapSuperTimeTreeChunk(final OffHeapChunkSpace p_space, final long p_index) {
+        space = p_space;
+        index = p_index;
+        space.lockByIndex(index);
+        try {
+            if (space.addrByIndex(index) == OffHeapConstants.NULL_PTR) {
+                space.setAddrByIndex(index, OffHeapRedBlackTree.allocate(space.arena()));
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    static void free(final long addr) {
+        OffHeapRedBlackTree.free(addr);
+    }
+
+    private long getField(final int field) {
+        space.lockByIndex(index);
+        try {
+            return POffHeapLongArray.get(space.addrByIndex(index), field);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void setField(final int field, final long value) {
+        space.lockByIndex(index);
+        try {
+            POffHeapLongArray.set(space.addrByIndex(index), field, value);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long timeSensitivity() {
+        return getField(TIME_SENSITIVITY);
+    }
+
+    @Override
+    public final void setTimeSensitivity(final long v) {
+        setField(TIME_SENSITIVITY, v);
+    }
+
+    @Override
+    public final long timeSensitivityOffset() {
+        return getField(TIME_SENSITIVITY_OFFSET);
+    }
+
+    @Override
+    public final void setTimeSensitivityOffset(final long v) {
+        setField(TIME_SENSITIVITY_OFFSET, v);
+    }
+
+    @Override
+    public final long end() {
+        return getField(END);
+    }
+
+    @Override
+    public final void setEnd(final long v) {
+        space.lockByIndex(index);
+        try {
+            POffHeapLongArray.set(space.addrByIndex(index), END, v);
+            internal_set_dirty();
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long lastKey() {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long size = POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE);
+            if (size == 0) {
+                return Constants.NULL_LONG;
+            }
+            return OffHeapRedBlackTree.key(addr, ELEM_SIZE, size - 1);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long lastValue() {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long size = POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE);
+            if (size == 0) {
+                return Constants.NULL_LONG;
+            }
+            return OffHeapRedBlackTree.get(addr, ELEM_SIZE, size - 1, OffHeapRedBlackTree.VALUE);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void setLastValue(final long v) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long size = POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE);
+            if (size != 0) {
+                OffHeapRedBlackTree.set(addr, ELEM_SIZE, size - 1, OffHeapRedBlackTree.VALUE, v);
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long subTreeCapacity() {
+        final long size = size();
+        final long[] SCALES = CoreConstants.TREE_SCALES;
+        for (int i = 0; i < SCALES.length; i++) {
+            if (size < SCALES[i]) {
+                return SCALES[i];
+            }
+        }
+        return SCALES[SCALES.length - 1];
+    }
+
+    @Override
+    public final long world() {
+        return space.worldByIndex(index);
+    }
+
+    @Override
+    public final long time() {
+        return space.timeByIndex(index);
+    }
+
+    @Override
+    public final long id() {
+        return space.idByIndex(index);
+    }
+
+    @Override
+    public final long index() {
+        return index;
+    }
+
+    @Override
+    public final byte chunkType() {
+        return ChunkType.SUPER_TIME_TREE_CHUNK;
+    }
+
+    @Override
+    public final int size() {
+        return (int) getField(OffHeapRedBlackTree.SIZE);
+    }
+
+    @Override
+    public final long magic() {
+        return getField(OffHeapRedBlackTree.MAGIC);
+    }
+
+    @Override
+    public final long hash() {
+        return getField(OffHeapRedBlackTree.HASH);
+    }
+
+    @Override
+    public final int group() {
+        return (int) getField(OffHeapRedBlackTree.GROUP);
+    }
+
+    @Override
+    public final Chunk setGroup(final int g) {
+        setField(OffHeapRedBlackTree.GROUP, g);
+        return this;
+    }
+
+    @Override
+    public final boolean inSync() {
+        return getField(OffHeapRedBlackTree.IN_SYNC) == 1;
+    }
+
+    @Override
+    public final boolean sync(final long remoteHash) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.IN_SYNC) == 1 && remoteHash != POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH)) {
+                POffHeapLongArray.set(addr, OffHeapRedBlackTree.IN_SYNC, 0);
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void range(final long startKey, final long endKey, final long maxElements, final SuperTreeWalker walker) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            long nbElements = 0;
+            long indexEnd = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, endKey);
+            while (indexEnd != -1 && OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd) >= startKey && nbElements < maxElements) {
+                walker.elem(OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd), OffHeapRedBlackTree.get(addr, ELEM_SIZE, indexEnd, OffHeapRedBlackTree.VALUE));
+                nbElements++;
+                indexEnd = OffHeapRedBlackTree.previous(addr, ELEM_SIZE, indexEnd);
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long previous(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long result = OffHeapRedBlackTree.previousIndex(addr, ELEM_SIZE, key);
+            if (result != -1) {
+                return OffHeapRedBlackTree.key(addr, ELEM_SIZE, result);
+            }
+            return CoreConstants.NULL_LONG;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long next(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            long result = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, key);
+            if (result != -1) {
+                result = OffHeapRedBlackTree.next(addr, ELEM_SIZE, result);
+            }
+            if (result != -1) {
+                return OffHeapRedBlackTree.key(addr, ELEM_SIZE, result);
+            }
+            return CoreConstants.NULL_LONG;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long previousOrEqual(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long result = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, key);
+            if (result != -1) {
+                return OffHeapRedBlackTree.key(addr, ELEM_SIZE, result);
+            }
+            return CoreConstants.NULL_LONG;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void insert(final long key, final long value) {
+        space.lockByIndex(index);
+        try {
+            if (internal_insert(key, value)) {
+                internal_set_dirty();
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private boolean internal_insert(final long key, final long value) {
+        final long addr = OffHeapRedBlackTree.grow(space.addrByIndex(index), ELEM_SIZE);
+        space.setAddrByIndex(index, addr);
+        final long inserted = OffHeapRedBlackTree.insert(addr, ELEM_SIZE, key);
+        if (inserted >= 0) {
+            OffHeapRedBlackTree.set(addr, ELEM_SIZE, inserted, OffHeapRedBlackTree.VALUE, value);
+            return true;
+        }
+        final long found = -(inserted + 1);
+        if (OffHeapRedBlackTree.get(addr, ELEM_SIZE, found, OffHeapRedBlackTree.VALUE) != value) {
+            OffHeapRedBlackTree.set(addr, ELEM_SIZE, found, OffHeapRedBlackTree.VALUE, value);
+            return true;
+        }
+        return false;
+    }
+
+    private void internal_set_dirty() {
+        final long addr = space.addrByIndex(index);
+        POffHeapLongArray.set(addr, OffHeapRedBlackTree.MAGIC, POffHeapLongArray.get(addr, OffHeapRedBlackTree.MAGIC) + 1);
+        if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH) != Constants.EMPTY_HASH) {
+            POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, Constants.EMPTY_HASH);
+            space.notifyUpdate(index);
+        }
+    }
+
+    @Override
+    public final void save(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long beginIndex = buffer.writeIndex();
+            final int group = (int) POffHeapLongArray.get(addr, OffHeapRedBlackTree.GROUP);
+            final int size = (int) POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE);
+            final long timeSensitivity = POffHeapLongArray.get(addr, TIME_SENSITIVITY);
+            final long timeSensitivityOffset = POffHeapLongArray.get(addr, TIME_SENSITIVITY_OFFSET);
+            if (space.binaryFormat()) {
+                BinaryFormat.writeHeader(buffer);
+                BinaryFormat.writeVarInt(buffer, group);
+                BinaryFormat.writeVarInt(buffer, size);
+                BinaryFormat.writeVarLong(buffer, timeSensitivity);
+                BinaryFormat.writeVarLong(buffer, timeSensitivityOffset);
+                long cursor = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, Constants.END_OF_TIME);
+                boolean isFirst = true;
+                long previousKey = 0;
+                while (cursor != -1) {
+                    final long loopKey = OffHeapRedBlackTree.key(addr, ELEM_SIZE, cursor);
+                    if (isFirst) {
+                        isFirst = false;
+                        BinaryFormat.writeVarLong(buffer, loopKey);
+                    } else {
+                        BinaryFormat.writeUnsignedVarLong(buffer, previousKey - loopKey);
+                    }
+                    BinaryFormat.writeVarLong(buffer, OffHeapRedBlackTree.get(addr, ELEM_SIZE, cursor, OffHeapRedBlackTree.VALUE));
+                    previousKey = loopKey;
+                    cursor = OffHeapRedBlackTree.previous(addr, ELEM_SIZE, cursor);
+                }
+            } else {
+                if (group != 0) {
+                    Base64.encodeIntToBuffer(group, buffer);
+                    buffer.write(CoreConstants.CHUNK_META_SEP);
+                }
+                Base64.encodeIntToBuffer(size, buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                if (timeSensitivity != 0) {
+                    Base64.encodeLongToBuffer(timeSensitivity, buffer);
+                }
+                buffer.write(CoreConstants.CHUNK_SEP);
+                if (timeSensitivityOffset != 0) {
+                    Base64.encodeLongToBuffer(timeSensitivityOffset, buffer);
+                }
+                buffer.write(CoreConstants.CHUNK_SEP);
+                for (long i = 0; i < size; i++) {
+                    Base64.encodeLongToBuffer(OffHeapRedBlackTree.key(addr, ELEM_SIZE, i), buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                    Base64.encodeLongToBuffer(OffHeapRedBlackTree.get(addr, ELEM_SIZE, i, OffHeapRedBlackTree.VALUE), buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                }
+            }
+            POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void saveDiff(final Buffer buffer) {
+        throw new RuntimeException("Not implemented yet");
+    }
+
+    @Override
+    public final void load(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            internal_load(buffer);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void loadDiff(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            if (internal_load(buffer)) {
+                final long addr = space.addrByIndex(index);
+                if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH) != Constants.EMPTY_HASH) {
+                    POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, Constants.EMPTY_HASH);
+                    space.notifyUpdate(index);
+                }
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void reallocate(final int newCapacity) {
+        space.setAddrByIndex(index, OffHeapRedBlackTree.reallocate(space.addrByIndex(index), ELEM_SIZE, newCapacity));
+    }
+
+    private boolean internal_load(final Buffer buffer) {
+        if (buffer == null || buffer.length() == 0) {
+            return false;
+        }
+        boolean isDirty = false;
+        if (BinaryFormat.isBinary(buffer)) {
+            final BinaryReader reader = new BinaryReader(buffer);
+            POffHeapLongArray.set(space.addrByIndex(index), OffHeapRedBlackTree.GROUP, reader.readVarInt());
+            final int treeSize = reader.readVarInt();
+            reallocate((int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2))));
+            POffHeapLongArray.set(space.addrByIndex(index), TIME_SENSITIVITY, reader.readVarLong());
+            POffHeapLongArray.set(space.addrByIndex(index), TIME_SENSITIVITY_OFFSET, reader.readVarLong());
+            long loopKey = 0;
+            for (int i = 0; i < treeSize; i++) {
+                if (i == 0) {
+                    loopKey = reader.readVarLong();
+                } else {
+                    loopKey = loopKey - reader.readUnsignedVarLong();
+                }
+                isDirty = internal_insert(loopKey, reader.readVarLong()) || isDirty;
+            }
+            return isDirty;
+        }
+        long cursor = 0;
+        long previous = 0;
+        final long payloadSize = buffer.length();
+        int extraCursor = 0;
+        long key = -1;
+        boolean waitingValue = false;
+        while (cursor < payloadSize) {
+            final byte current = buffer.read(cursor);
+            switch (current) {
+                case Constants.CHUNK_META_SEP:
+                    if (previous != cursor) {
+                        POffHeapLongArray.set(space.addrByIndex(index), OffHeapRedBlackTree.GROUP, Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                    }
+                    previous = cursor + 1;
+                    break;
+                case Constants.CHUNK_SEP:
+                    switch (extraCursor) {
+                        case 0:
+                            final int treeSize = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                            reallocate((int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2))));
+                            break;
+                        case 1:
+                            if (previous != cursor) {
+                                POffHeapLongArray.set(space.addrByIndex(index), TIME_SENSITIVITY, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                            }
+                            break;
+                        case 2:
+                            if (previous != cursor) {
+                                POffHeapLongArray.set(space.addrByIndex(index), TIME_SENSITIVITY_OFFSET, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                            }
+                            break;
+                    }
+                    extraCursor++;
+                    previous = cursor + 1;
+                    break;
+                case Constants.CHUNK_VAL_SEP:
+                    if (!waitingValue) {
+                        key = Base64.decodeToLongWithBounds(buffer, previous, cursor);
+                        waitingValue = true;
+                    } else {
+                        isDirty = internal_insert(key, Base64.decodeToLongWithBounds(buffer, previous, cursor)) || isDirty;
+                        waitingValue = false;
+                    }
+                    previous = cursor + 1;
+                    break;
+            }
+            cursor++;
+        }
+        return isDirty;
+    }
+
+}
@@ -0,0 +1,611 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.Constants;
+import greycat.chunk.Chunk;
+import greycat.chunk.ChunkType;
+import greycat.chunk.StateChunk;
+import greycat.chunk.TimeTreeDValueChunk;
+import greycat.chunk.TreeDValueWalker;
+import greycat.chunk.TreeWalker;
+import greycat.internal.CoreConstants;
+import greycat.memory.primary.POffHeapLongArray;
+import greycat.struct.Buffer;
+import greycat.utility.Base64;
+import greycat.utility.BinaryFormat;
+import greycat.utility.BinaryReader;
+import greycat.utility.Gorilla;
+import greycat.utility.HashHelper;
+
+class OffHeapTimeTreeDValueChunk implements TimeTreeDValueChunk {
+
+    private static final int ELEM_SIZE = 7;
+
+    //bits of the double value are stored in the VALUE slot of each element
+    private static final int IS_NULL = OffHeapRedBlackTree.VALUE + 1;
+
+    //capacity of the tree, as opposed to the capacity of the segment
+    private static final int TREE_CAPACITY = OffHeapRedBlackTree.EXTRA;
+
+    private final OffHeapChunkSpace space;
+    private final long index;
+
+    OffHeapTimeTreeDValueChunk(final OffHeapChunkSpace p_space, final long p_index) {
+        space = p_space;
+        index = p_index;
+        space.lockByIndex(index);
+        try {
+            if (space.addrByIndex(index) == OffHeapConstants.NULL_PTR) {
+                space.setAddrByIndex(index, OffHeapRedBlackTree.allocate(space.arena()));
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    static void free(final long addr) {
+        OffHeapRedBlackTree.free(addr);
+    }
+
+    private long getField(final int field) {
+        space.lockByIndex(index);
+        try {
+            return POffHeapLongArray.get(space.addrByIndex(index), field);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void setField(final int field, final long value) {
+        space.lockByIndex(index);
+        try {
+            POffHeapLongArray.set(space.addrByIndex(index), field, value);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long capacity() {
+        return getField(TREE_CAPACITY);
+    }
+
+    @Override
+    public final void setCapacity(final long v) {
+        setField(TREE_CAPACITY, v);
+    }
+
+    @Override
+    public final long max() {
+        return getField(OffHeapRedBlackTree.MAX);
+    }
+
+    @Override
+    public final long world() {
+        return space.worldByIndex(index);
+    }
+
+    @Override
+    public final long time() {
+        return space.timeByIndex(index);
+    }
+
+    @Override
+    public final long id() {
+        return space.idByIndex(index);
+    }
+
+    @Override
+    public final long index() {
+        return index;
+    }
+
+    @Override
+    public final byte chunkType() {
+        return ChunkType.TIME_TREE_DVALUE_CHUNK;
+    }
+
+    @Override
+    public final int size() {
+        return (int) getField(OffHeapRedBlackTree.SIZE);
+    }
+
+    @Override
+    public final long magic() {
+        return getField(OffHeapRedBlackTree.MAGIC);
+    }
+
+    @Override
+    public final long hash() {
+        return getField(OffHeapRedBlackTree.HASH);
+    }
+
+    @Override
+    public final int group() {
+        return (int) getField(OffHeapRedBlackTree.GROUP);
+    }
+
+    @Override
+    public final Chunk setGroup(final int g) {
+        setField(OffHeapRedBlackTree.GROUP, g);
+        return this;
+    }
+
+    @Override
+    public final boolean inSync() {
+        return getField(OffHeapRedBlackTree.IN_SYNC) == 1;
+    }
+
+    @Override
+    public final boolean sync(final long remoteHash) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.IN_SYNC) == 1 && remoteHash != POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH)) {
+                POffHeapLongArray.set(addr, OffHeapRedBlackTree.IN_SYNC, 0);
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void range(final long startKey, final long endKey, final long maxElements, final TreeWalker walker) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            long nbElements = 0;
+            long indexEnd = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, endKey);
+            while (indexEnd != -1 && OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd) >= startKey && nbElements < maxElements) {
+                walker.elem(OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd));
+                nbElements++;
+                indexEnd = OffHeapRedBlackTree.previous(addr, ELEM_SIZE, indexEnd);
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long previous(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long result = OffHeapRedBlackTree.previousIndex(addr, ELEM_SIZE, key);
+            if (result != -1) {
+                return OffHeapRedBlackTree.key(addr, ELEM_SIZE, result);
+            }
+            return CoreConstants.NULL_LONG;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long next(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            long result = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, key);
+            if (result != -1) {
+                result = OffHeapRedBlackTree.next(addr, ELEM_SIZE, result);
+            }
+            if (result != -1) {
+                return OffHeapRedBlackTree.key(addr, ELEM_SIZE, result);
+            }
+            return CoreConstants.NULL_LONG;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long previousOrEqual(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long result = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, key);
+            if (result != -1) {
+                return OffHeapRedBlackTree.key(addr, ELEM_SIZE, result);
+            }
+            return CoreConstants.NULL_LONG;
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final int previousOrEqualOffset(final long key) {
+        space.lockByIndex(index);
+        try {
+            return (int) OffHeapRedBlackTree.previousOrEqualIndex(space.addrByIndex(index), ELEM_SIZE, key);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final long getKey(final int offset) {
+        space.lockByIndex(index);
+        try {
+            return OffHeapRedBlackTree.key(space.addrByIndex(index), ELEM_SIZE, offset);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final int insert(final long key) {
+        space.lockByIndex(index);
+        try {
+            final long inserted = internal_insert(key, 0d, false);
+            if (inserted >= 0) {
+                internal_set_dirty();
+                return (int) inserted;
+            }
+            return (int) -(inserted + 1);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void insertValue(final long key, final Double value) {
+        space.lockByIndex(index);
+        try {
+            final long inserted;
+            if (value == null) {
+                inserted = internal_insert(key, 0d, true);
+            } else {
+                inserted = internal_insert(key, value, false);
+            }
+            if (inserted >= 0) {
+                internal_set_dirty();
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    /**
+     * Appends sorted values after the keys of the tree.
+     * When the batch is large compared to the tree and the entries are stored in key order,
+     * values are written in bulk and the whole tree is linked again, balanced, in one pass.
+     * Offsets of the existing entries do not change.
+     */
+    @Override
+    public final void appendValues(final long[] keys, final double[] values, final int offset, final int length) {
+        if (length == 0) {
+            return;
+        }
+        space.lockByIndex(index);
+        try {
+            long addr = space.addrByIndex(index);
+            final long size = POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE);
+            if (size != 0 && keys[offset] <= POffHeapLongArray.get(addr, OffHeapRedBlackTree.MAX)) {
+                throw new RuntimeException("Bad API usage: appended keys have to be greater than the keys of the tree");
+            }
+            if (length * 4 < size || !OffHeapRedBlackTree.inKeyOrder(addr, ELEM_SIZE)) {
+                for (int i = offset; i < offset + length; i++) {
+                    internal_insert(keys[i], values[i], false);
+                }
+            } else {
+                final long newSize = size + length;
+                addr = OffHeapRedBlackTree.reallocate(addr, ELEM_SIZE, newSize);
+                space.setAddrByIndex(index, addr);
+                for (int i = 0; i < length; i++) {
+                    OffHeapRedBlackTree.set(addr, ELEM_SIZE, size + i, OffHeapRedBlackTree.KEY, keys[offset + i]);
+                    OffHeapRedBlackTree.set(addr, ELEM_SIZE, size + i, OffHeapRedBlackTree.VALUE, Double.doubleToRawLongBits(values[offset + i]));
+                    OffHeapRedBlackTree.set(addr, ELEM_SIZE, size + i, IS_NULL, 0);
+                }
+                POffHeapLongArray.set(addr, OffHeapRedBlackTree.SIZE, newSize);
+                POffHeapLongArray.set(addr, OffHeapRedBlackTree.MAX, keys[offset + length - 1]);
+                OffHeapRedBlackTree.relink(addr, ELEM_SIZE);
+            }
+            internal_set_dirty();
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private long internal_insert(final long key, final double value, final boolean isNull) {
+        final long addr = OffHeapRedBlackTree.grow(space.addrByIndex(index), ELEM_SIZE);
+        space.setAddrByIndex(index, addr);
+        final long inserted = OffHeapRedBlackTree.insert(addr, ELEM_SIZE, key);
+        final long encoded = Double.doubleToRawLongBits(value);
+        final long nullFlag = isNull ? 1 : 0;
+        if (inserted >= 0) {
+            OffHeapRedBlackTree.set(addr, ELEM_SIZE, inserted, OffHeapRedBlackTree.VALUE, encoded);
+            OffHeapRedBlackTree.set(addr, ELEM_SIZE, inserted, IS_NULL, nullFlag);
+            return inserted;
+        }
+        final long found = -(inserted + 1);
+        if (OffHeapRedBlackTree.get(addr, ELEM_SIZE, found, OffHeapRedBlackTree.VALUE) == encoded && OffHeapRedBlackTree.get(addr, ELEM_SIZE, found, IS_NULL) == nullFlag) {
+            return inserted;
+        }
+        OffHeapRedBlackTree.set(addr, ELEM_SIZE, found, OffHeapRedBlackTree.VALUE, encoded);
+        OffHeapRedBlackTree.set(addr, ELEM_SIZE, found, IS_NULL, nullFlag);
+        return found;
+    }
+
+    @Override
+    public final int previousOffset(final long key) {
+        space.lockByIndex(index);
+        try {
+            return (int) OffHeapRedBlackTree.previousIndex(space.addrByIndex(index), ELEM_SIZE, key);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final Double getValue(final int offset) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            if (OffHeapRedBlackTree.get(addr, ELEM_SIZE, offset, IS_NULL) == 1) {
+                return null;
+            }
+            return Double.longBitsToDouble(OffHeapRedBlackTree.get(addr, ELEM_SIZE, offset, OffHeapRedBlackTree.VALUE));
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    /**
+     * Sets the value of an entry without notifying the space, as done by the state returned by {@link #state(int)}.
+     */
+    final void setValue(final int offset, final Double value) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            if (value == null) {
+                OffHeapRedBlackTree.set(addr, ELEM_SIZE, offset, OffHeapRedBlackTree.VALUE, Double.doubleToRawLongBits(0d));
+                OffHeapRedBlackTree.set(addr, ELEM_SIZE, offset, IS_NULL, 1);
+            } else {
+                OffHeapRedBlackTree.set(addr, ELEM_SIZE, offset, OffHeapRedBlackTree.VALUE, Double.doubleToRawLongBits(value));
+                OffHeapRedBlackTree.set(addr, ELEM_SIZE, offset, IS_NULL, 0);
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final StateChunk state(final int offset) {
+        return new OffHeapDValueState(this, offset);
+    }
+
+    @Override
+    public final void rangeValue(final long startKey, final long endKey, final long maxElements, final TreeDValueWalker walker) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            long nbElements = 0;
+            long indexEnd = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, endKey);
+            while (indexEnd != -1 && OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd) >= startKey && nbElements < maxElements) {
+                if (OffHeapRedBlackTree.get(addr, ELEM_SIZE, indexEnd, IS_NULL) == 1) {
+                    walker.elem(OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd), null);
+                } else {
+                    walker.elem(OffHeapRedBlackTree.key(addr, ELEM_SIZE, indexEnd), Double.longBitsToDouble(OffHeapRedBlackTree.get(addr, ELEM_SIZE, indexEnd, OffHeapRedBlackTree.VALUE)));
+                }
+                nbElements++;
+                indexEnd = OffHeapRedBlackTree.previous(addr, ELEM_SIZE, indexEnd);
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void internal_set_dirty() {
+        final long addr = space.addrByIndex(index);
+        POffHeapLongArray.set(addr, OffHeapRedBlackTree.MAGIC, POffHeapLongArray.get(addr, OffHeapRedBlackTree.MAGIC) + 1);
+        if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH) != Constants.EMPTY_HASH) {
+            POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, Constants.EMPTY_HASH);
+            space.notifyUpdate(index);
+        }
+    }
+
+    @Override
+    public final void save(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            final long beginIndex = buffer.writeIndex();
+            final int group = (int) POffHeapLongArray.get(addr, OffHeapRedBlackTree.GROUP);
+            final int size = (int) POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE);
+            final long capacity = POffHeapLongArray.get(addr, TREE_CAPACITY);
+            if (space.binaryFormat()) {
+                BinaryFormat.writeHeader(buffer);
+                BinaryFormat.writeVarInt(buffer, group);
+                BinaryFormat.writeVarInt(buffer, size);
+                BinaryFormat.writeVarLong(buffer, capacity);
+                final long[] times = new long[size];
+                final double[] values = new double[size];
+                byte[] nulls = null;
+                long cursor = OffHeapRedBlackTree.previousOrEqualIndex(addr, ELEM_SIZE, Constants.END_OF_TIME);
+                int position = 0;
+                while (cursor != -1) {
+                    times[position] = OffHeapRedBlackTree.key(addr, ELEM_SIZE, cursor);
+                    values[position] = Double.longBitsToDouble(OffHeapRedBlackTree.get(addr, ELEM_SIZE, cursor, OffHeapRedBlackTree.VALUE));
+                    if (OffHeapRedBlackTree.get(addr, ELEM_SIZE, cursor, IS_NULL) == 1) {
+                        if (nulls == null) {
+                            nulls = new byte[(size + 7) / 8];
+                        }
+                        nulls[position / 8] = (byte) (nulls[position / 8] | (1 << (position % 8)));
+                    }
+                    position++;
+                    cursor = OffHeapRedBlackTree.previous(addr, ELEM_SIZE, cursor);
+                }
+                Gorilla.encode(buffer, times, values, position);
+                if (nulls != null) {
+                    BinaryFormat.writeBytes(buffer, nulls);
+                }
+            } else {
+                if (group != 0) {
+                    Base64.encodeIntToBuffer(group, buffer);
+                    buffer.write(CoreConstants.CHUNK_META_SEP);
+                }
+                Base64.encodeIntToBuffer(size, buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                Base64.encodeLongToBuffer(capacity, buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                for (long i = 0; i < size; i++) {
+                    Base64.encodeLongToBuffer(OffHeapRedBlackTree.key(addr, ELEM_SIZE, i), buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                    if (OffHeapRedBlackTree.get(addr, ELEM_SIZE, i, IS_NULL) != 1) {
+                        Base64.encodeDoubleToBuffer(Double.longBitsToDouble(OffHeapRedBlackTree.get(addr, ELEM_SIZE, i, OffHeapRedBlackTree.VALUE)), buffer);
+                    }
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                }
+            }
+            POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void saveDiff(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            final long addr = space.addrByIndex(index);
+            if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH) == Constants.EMPTY_HASH) {
+                final long beginIndex = buffer.writeIndex();
+                Base64.encodeLongToBuffer(POffHeapLongArray.get(addr, TREE_CAPACITY), buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                Base64.encodeIntToBuffer((int) POffHeapLongArray.get(addr, OffHeapRedBlackTree.SIZE), buffer);
+                POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void load(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            internal_load(buffer);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    @Override
+    public final void loadDiff(final Buffer buffer) {
+        space.lockByIndex(index);
+        try {
+            if (internal_load(buffer)) {
+                final long addr = space.addrByIndex(index);
+                if (POffHeapLongArray.get(addr, OffHeapRedBlackTree.HASH) != Constants.EMPTY_HASH) {
+                    POffHeapLongArray.set(addr, OffHeapRedBlackTree.HASH, Constants.EMPTY_HASH);
+                    space.notifyUpdate(index);
+                }
+            }
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void reallocate(final int newCapacity) {
+        space.setAddrByIndex(index, OffHeapRedBlackTree.reallocate(space.addrByIndex(index), ELEM_SIZE, newCapacity));
+    }
+
+    private boolean internal_load(final Buffer buffer) {
+        if (buffer == null || buffer.length() == 0) {
+            return false;
+        }
+        boolean isDirty = false;
+        if (BinaryFormat.isBinary(buffer)) {
+            final BinaryReader reader = new BinaryReader(buffer);
+            POffHeapLongArray.set(space.addrByIndex(index), OffHeapRedBlackTree.GROUP, reader.readVarInt());
+            final int treeSize = reader.readVarInt();
+            reallocate((int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2))));
+            POffHeapLongArray.set(space.addrByIndex(index), TREE_CAPACITY, reader.readVarLong());
+            final long[] times = new long[treeSize];
+            final double[] values = new double[treeSize];
+            Gorilla.decode(reader, times, values, treeSize);
+            byte[] nulls = null;
+            if (reader.hasNext()) {
+                nulls = reader.readBytes();
+            }
+            for (int i = 0; i < treeSize; i++) {
+                final long inserted;
+                if (nulls != null && (nulls[i / 8] & (1 << (i % 8))) != 0) {
+                    inserted = internal_insert(times[i], 0d, true);
+                } else {
+                    inserted = internal_insert(times[i], values[i], false);
+                }
+                isDirty = inserted >= 0 || isDirty;
+            }
+            return isDirty;
+        }
+        long cursor = 0;
+        long previous = 0;
+        final long payloadSize = buffer.length();
+        int extraCursor = 0;
+        boolean waitingValue = false;
+        long keyTime = -1;
+        while (cursor < payloadSize) {
+            final byte current = buffer.read(cursor);
+            switch (current) {
+                case Constants.CHUNK_META_SEP:
+                    if (previous != cursor) {
+                        POffHeapLongArray.set(space.addrByIndex(index), OffHeapRedBlackTree.GROUP, Base64.decodeToIntWithBounds(buffer, previous, cursor));
+                    }
+                    previous = cursor + 1;
+                    break;
+                case Constants.CHUNK_SEP:
+                    switch (extraCursor) {
+                        case 0:
+                            final int treeSize = Base64.decodeToIntWithBounds(buffer, previous, cursor);
+                            reallocate((int) Math.pow(2, Math.ceil(Math.log(treeSize) / Math.log(2))));
+                            extraCursor++;
+                            break;
+                        case 1:
+                            POffHeapLongArray.set(space.addrByIndex(index), TREE_CAPACITY, Base64.decodeToLongWithBounds(buffer, previous, cursor));
+                            break;
+                    }
+                    previous = cursor + 1;
+                    break;
+                case Constants.CHUNK_VAL_SEP:
+                    if (waitingValue) {
+                        final long inserted;
+                        if (previous == cursor) {
+                            inserted = internal_insert(keyTime, 0d, true);
+                        } else {
+                            inserted = internal_insert(keyTime, Base64.decodeToDoubleWithBounds(buffer, previous, cursor), false);
+                        }
+                        isDirty = inserted >= 0 || isDirty;
+                        waitingValue = false;
+                    } else {
+                        keyTime = Base64.decodeToLongWithBounds(buffer, previous, cursor);
+                        waitingValue = true;
+                    }
+                    previous = cursor + 1;
+                    break;
+            }
+            cursor++;
+        }
+        return isDirty;
+    }
+
+}
@@ -15,6 +15,9 @@
  */
 package greycat.memory;
 
+import greycat.memory.primary.POffHeapAllocator;
+import greycat.memory.primary.POffHeapArena;
+
 public class OffHeapVolatileContainer implements OffHeapContainer {
     private long indexedAddr;
 
@@ -46,4 +49,9 @@ public class OffHeapVolatileContainer implements OffHeapContainer {
     public void declareDirty() {
         // do nothing
     }
+
+    @Override
+    public POffHeapArena arena() {
+        return POffHeapAllocator.shared();
+    }
 }
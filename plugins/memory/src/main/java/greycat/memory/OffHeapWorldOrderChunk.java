@@ -16,75 +16,65 @@
 package greycat.memory;
 
 import greycat.Constants;
+import greycat.NodeListener;
+import greycat.chunk.Chunk;
 import greycat.chunk.ChunkType;
 import greycat.chunk.WorldOrderChunk;
 import greycat.internal.CoreConstants;
 import greycat.memory.primary.POffHeapLongArray;
 import greycat.struct.Buffer;
+import greycat.struct.LongLongMap;
 import greycat.struct.LongLongMapCallBack;
-import greycat.utility.Base64;
-import greycat.utility.HashHelper;
+import greycat.utility.*;
 
 final class OffHeapWorldOrderChunk implements WorldOrderChunk {
 
-    private static final int DIRTY = 0;
-    private static final int SIZE = 1;
-    private static final int CAPACITY = 2;
-    private static final int LOCK = 3;
-    private static final int LOCK_EXT = 4;
-    private static final int MAGIC = 5;
-    private static final int EXTRA = 6;
-    private static final int HASH_SUB = 7;
+    private static final int SIZE = 0;
+    private static final int CAPACITY = 1;
+    private static final int LOCK = 2;
+    private static final int LOCK_EXT = 3;
+    private static final int MAGIC = 4;
+    private static final int TYPE = 5;
+    private static final int HASH_SUB = 6;
+    private static final int HASH = 7;
+    private static final int GROUP = 8;
+    private static final int IN_SYNC = 9;
 
-    private static final int KV_OFFSET = 8;
+    private static final int KV_OFFSET = 10;
 
     private final OffHeapChunkSpace space;
-    private final long index;//direct pointer to space
+    private final long index;
 
     OffHeapWorldOrderChunk(final OffHeapChunkSpace p_space, final long p_index) {
         index = p_index;
         space = p_space;
         space.lockByIndex(index);
         try {
-            long temp_addr = space.addrByIndex(index);
-            if (temp_addr == OffHeapConstants.NULL_PTR) {
-                long initialCapacity = Constants.MAP_INITIAL_CAPACITY;
-                temp_addr = POffHeapLongArray.allocate(KV_OFFSET + (initialCapacity * 2));
-                space.setAddrByIndex(index, temp_addr);
-                //init the initial values
-                POffHeapLongArray.set(temp_addr, DIRTY, 0);
-                POffHeapLongArray.set(temp_addr, SIZE, 0);
-                POffHeapLongArray.set(temp_addr, CAPACITY, initialCapacity);
-                POffHeapLongArray.set(temp_addr, LOCK, 0);
-                POffHeapLongArray.set(temp_addr, LOCK_EXT, 0);
-                POffHeapLongArray.set(temp_addr, MAGIC, 0);
-                POffHeapLongArray.set(temp_addr, EXTRA, Constants.NULL_LONG);
-                POffHeapLongArray.set(temp_addr, HASH_SUB, OffHeapConstants.NULL_PTR);
+            if (space.addrByIndex(index) == OffHeapConstants.NULL_PTR) {
+                final long addr = POffHeapLongArray.allocate(space.arena(), KV_OFFSET);
+                POffHeapLongArray.set(addr, SIZE, 0);
+                POffHeapLongArray.set(addr, CAPACITY, 0);
+                POffHeapLongArray.set(addr, LOCK, 0);
+                POffHeapLongArray.set(addr, LOCK_EXT, 0);
+                POffHeapLongArray.set(addr, MAGIC, 0);
+                POffHeapLongArray.set(addr, TYPE, CoreConstants.NULL_LONG);
+                POffHeapLongArray.set(addr, HASH_SUB, OffHeapConstants.NULL_PTR);
+                POffHeapLongArray.set(addr, HASH, 0);
+                POffHeapLongArray.set(addr, GROUP, 0);
+                POffHeapLongArray.set(addr, IN_SYNC, 1);
+                space.setAddrByIndex(index, addr);
             }
         } finally {
             space.unlockByIndex(index);
         }
     }
 
-    private void setKV(final long addr, final long key, final long value, final long index) {
-        POffHeapLongArray.set(addr, KV_OFFSET + (index * 2), key);
-        POffHeapLongArray.set(addr, KV_OFFSET + (index * 2) + 1, value);
+    private static long key(final long addr, final long i) {
+        return POffHeapLongArray.get(addr, KV_OFFSET + (i * 2));
     }
 
-    private long key(final long addr, final long index) {
-        return POffHeapLongArray.get(addr, KV_OFFSET + (index * 2));
-    }
-
-    private long value(final long addr, final long index) {
-        return POffHeapLongArray.get(addr, KV_OFFSET + (index * 2) + 1);
-    }
-
-    private long hash(final long sub_hash_ptr, final long capacity, final long index) {
-        return POffHeapLongArray.get(sub_hash_ptr, capacity + index);
-    }
-
-    private long next(final long sub_hash_ptr, final long index) {
-        return POffHeapLongArray.get(sub_hash_ptr, index);
+    private static long value(final long addr, final long i) {
+        return POffHeapLongArray.get(addr, KV_OFFSET + (i * 2) + 1);
     }
 
     static void free(final long addr) {
@@ -113,8 +103,8 @@ final class OffHeapWorldOrderChunk implements WorldOrderChunk {
     }
 
     @Override
-    public final long extra() {
-        return POffHeapLongArray.get(space.addrByIndex(index), EXTRA);
+    public final long index() {
+        return index;
     }
 
     @Override
@@ -122,45 +112,75 @@ final class OffHeapWorldOrderChunk implements WorldOrderChunk {
         return ChunkType.WORLD_ORDER_CHUNK;
     }
 
+    private long getField(final int field) {
+        space.lockByIndex(index);
+        try {
+            return POffHeapLongArray.get(space.addrByIndex(index), field);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void setField(final int field, final long value) {
+        space.lockByIndex(index);
+        try {
+            POffHeapLongArray.set(space.addrByIndex(index), field, value);
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
     @Override
-    public final long magic() {
-        return POffHeapLongArray.get(space.addrByIndex(index), MAGIC);
+    public final long type() {
+        return getField(TYPE);
     }
 
     @Override
-    public final void setExtra(final long extraValue) {
-        POffHeapLongArray.set(space.addrByIndex(index), EXTRA, extraValue);
+    public final void setType(final long v) {
+        setField(TYPE, v);
     }
 
     @Override
-    public final long index() {
-        return index;
+    public final long magic() {
+        return getField(MAGIC);
     }
 
     @Override
     public final int size() {
-        //TODO CAS
-        return (int) POffHeapLongArray.get(space.addrByIndex(index), SIZE);
+        return (int) getField(SIZE);
     }
 
     @Override
-    public final void lock() {
-        space.lockByIndex(index);
-        try {
-            final long addr = space.addrByIndex(index);
-            while (!POffHeapLongArray.compareAndSwap(addr, LOCK, 0, 1)) ;
-        } finally {
-            space.unlockByIndex(index);
-        }
+    public final long hash() {
+        return getField(HASH);
     }
 
     @Override
-    public final void unlock() {
+    public final int group() {
+        return (int) getField(GROUP);
+    }
+
+    @Override
+    public final Chunk setGroup(final int g) {
+        setField(GROUP, g);
+        return this;
+    }
+
+    @Override
+    public final boolean inSync() {
+        return getField(IN_SYNC) == 1;
+    }
+
+    @Override
+    public final boolean sync(final long remoteHash) {
         space.lockByIndex(index);
         try {
             final long addr = space.addrByIndex(index);
-            if (!POffHeapLongArray.compareAndSwap(addr, LOCK, 1, 0)) {
-                throw new RuntimeException("CAS Error !!!");
+            if (POffHeapLongArray.get(addr, IN_SYNC) == 1 && remoteHash != POffHeapLongArray.get(addr, HASH)) {
+                POffHeapLongArray.set(addr, IN_SYNC, 0);
+                return true;
+            } else {
+                return false;
             }
         } finally {
             space.unlockByIndex(index);
@@ -168,22 +188,44 @@ final class OffHeapWorldOrderChunk implements WorldOrderChunk {
     }
 
     @Override
-    public void externalLock() {
-        space.lockByIndex(index);
-        try {
-            final long addr = space.addrByIndex(index);
-            while (!POffHeapLongArray.compareAndSwap(addr, LOCK_EXT, 0, 1)) ;
-        } finally {
-            space.unlockByIndex(index);
+    public final int listen(final NodeListener listener) {
+        return space.listenersByIndex(index, true).listen(listener);
+    }
+
+    @Override
+    public final void unlisten(final int registrationID) {
+        final Listeners listeners = space.listenersByIndex(index, false);
+        if (listeners != null) {
+            listeners.unlisten(registrationID);
         }
     }
 
     @Override
-    public void externalUnlock() {
+    public final Listeners listeners() {
+        return space.listenersByIndex(index, false);
+    }
+
+    /**
+     * Spins on a flag of the segment, the chunk itself is only locked during each attempt.
+     */
+    private void spinLock(final int field) {
+        while (true) {
+            space.lockByIndex(index);
+            try {
+                if (POffHeapLongArray.compareAndSwap(space.addrByIndex(index), field, 0, 1)) {
+                    return;
+                }
+            } finally {
+                space.unlockByIndex(index);
+            }
+            Thread.yield();
+        }
+    }
+
+    private void spinUnlock(final int field) {
         space.lockByIndex(index);
         try {
-            final long addr = space.addrByIndex(index);
-            if (!POffHeapLongArray.compareAndSwap(addr, LOCK_EXT, 1, 0)) {
+            if (!POffHeapLongArray.compareAndSwap(space.addrByIndex(index), field, 1, 0)) {
                 throw new RuntimeException("CAS Error !!!");
             }
         } finally {
@@ -191,6 +233,26 @@ final class OffHeapWorldOrderChunk implements WorldOrderChunk {
         }
     }
 
+    @Override
+    public final void lock() {
+        spinLock(LOCK);
+    }
+
+    @Override
+    public final void unlock() {
+        spinUnlock(LOCK);
+    }
+
+    @Override
+    public final void externalLock() {
+        spinLock(LOCK_EXT);
+    }
+
+    @Override
+    public final void externalUnlock() {
+        spinUnlock(LOCK_EXT);
+    }
+
     @Override
     public final void each(final LongLongMapCallBack callback) {
         space.lockByIndex(index);
@@ -207,181 +269,185 @@ final class OffHeapWorldOrderChunk implements WorldOrderChunk {
 
     @Override
     public final long get(final long requestKey) {
-        long result = Constants.NULL_LONG;
         space.lockByIndex(index);
         try {
             final long addr = space.addrByIndex(index);
-            final long size = POffHeapLongArray.get(addr, SIZE);
-            if (size > 0) {
-                final long hash_sub_ptr = POffHeapLongArray.get(addr, HASH_SUB);
-                if (hash_sub_ptr == OffHeapConstants.NULL_PTR) {
-                    /* NO HASH STRUCTURE, LET'S ITERATES */
-                    for (long i = 0; i < size; i++) {
-                        if (requestKey == key(addr, i)) {
-                            result = value(addr, i);
-                            break;
-                        }
-                    }
-                } else {
-                    /* HASH STRUCTURE IS PRESENT LET'S USE IT */
-                    final long capacity = POffHeapLongArray.get(addr, CAPACITY);
-                    final long hashed_requestKey = HashHelper.longHash(requestKey, capacity * 2);
-                    long m = hash(hash_sub_ptr, capacity, hashed_requestKey);
-                    while (m >= 0) {
-                        if (requestKey == key(addr, m)) {
-                            result = value(addr, m);
-                            break;
-                        } else {
-                            m = next(hash_sub_ptr, m);
-                        }
+            if (POffHeapLongArray.get(addr, SIZE) > 0) {
+                final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+                final long hash_sub = POffHeapLongArray.get(addr, HASH_SUB);
+                long m = POffHeapLongArray.get(hash_sub, capacity + HashHelper.longHash(requestKey, capacity * 2));
+                while (m >= 0) {
+                    if (requestKey == key(addr, m)) {
+                        return value(addr, m);
+                    } else {
+                        m = POffHeapLongArray.get(hash_sub, m);
                     }
                 }
             }
+            return CoreConstants.NULL_LONG;
         } finally {
             space.unlockByIndex(index);
         }
-        return result;
     }
 
     @Override
-    public final void put(final long insertKey, final long insertValue) {
+    public final LongLongMap put(final long insertKey, final long insertValue) {
         space.lockByIndex(index);
         try {
-            internal_put(space.addrByIndex(index), insertKey, insertValue, true);
+            internal_put(insertKey, insertValue, true);
         } finally {
             space.unlockByIndex(index);
         }
+        return this;
     }
 
-    private long resize(final long currentAddr, final long previousSize, final long previousCapacity, final long newCapacity) {
-        if (newCapacity > previousCapacity) {
-            final long newAddr = POffHeapLongArray.reallocate(currentAddr, KV_OFFSET + newCapacity * 2);
-            space.setAddrByIndex(index, newAddr);
-            long sub_hash = POffHeapLongArray.get(newAddr, HASH_SUB);
-            if (sub_hash == OffHeapConstants.NULL_PTR) {
-                if (newCapacity > Constants.MAP_INITIAL_CAPACITY) {
-                    sub_hash = POffHeapLongArray.allocate(newCapacity * 3);
-                }
-            } else {
-                sub_hash = POffHeapLongArray.reallocate(sub_hash, newCapacity * 3);
-                POffHeapLongArray.reset(sub_hash, newCapacity * 3);
-            }
-            if (sub_hash != OffHeapConstants.NULL_PTR) {
-                /* reHash everything */
-                final long double_newCapacity = newCapacity * 2;
-                for (long i = 0; i < previousSize; i++) {
-                    long hashed_loop_key = HashHelper.longHash(key(newAddr, i), double_newCapacity);
-                    POffHeapLongArray.set(sub_hash, i, hash(sub_hash, newCapacity, hashed_loop_key));
-                    POffHeapLongArray.set(sub_hash, newCapacity + hashed_loop_key, i);
-                }
-                POffHeapLongArray.set(newAddr, HASH_SUB, sub_hash);
-            }
-            POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
-            return newAddr;
-        } else {
-            return currentAddr;
-        }
+    @Override
+    public final void remove(final long key) {
+        throw new RuntimeException("Not implemented yet!!!");
     }
 
-    private long internal_put(final long initialAddr, final long insertKey, final long insertValue, final boolean notifyUpdate) {
+    private void resize(final long newCapacity) {
+        final long addr = space.addrByIndex(index);
+        final long capacity = POffHeapLongArray.get(addr, CAPACITY);
+        if (newCapacity <= capacity) {
+            return;
+        }
+        final long newAddr = POffHeapLongArray.reallocate(addr, KV_OFFSET + newCapacity * 2);
+        space.setAddrByIndex(index, newAddr);
+        final long previousSub = POffHeapLongArray.get(newAddr, HASH_SUB);
+        if (previousSub != OffHeapConstants.NULL_PTR) {
+            POffHeapLongArray.free(previousSub);
+        }
+        //next indexes first, then the hash table of twice the capacity
+        final long hash_sub = POffHeapLongArray.allocate(space.arena(), newCapacity * 3);
+        final long size = POffHeapLongArray.get(newAddr, SIZE);
+        for (long i = 0; i < size; i++) {
+            final long hashed = HashHelper.longHash(key(newAddr, i), newCapacity * 2);
+            POffHeapLongArray.set(hash_sub, i, POffHeapLongArray.get(hash_sub, newCapacity + hashed));
+            POffHeapLongArray.set(hash_sub, newCapacity + hashed, i);
+        }
+        POffHeapLongArray.set(newAddr, HASH_SUB, hash_sub);
+        POffHeapLongArray.set(newAddr, CAPACITY, newCapacity);
+    }
 
-        long addr = initialAddr;
-        long size = POffHeapLongArray.get(addr, SIZE);
+    private void internal_put(final long insertKey, final long insertValue, final boolean notifyUpdate) {
+        long addr = space.addrByIndex(index);
+        if (POffHeapLongArray.get(addr, CAPACITY) == 0) {
+            resize(Constants.MAP_INITIAL_CAPACITY);
+            addr = space.addrByIndex(index);
+        }
         long capacity = POffHeapLongArray.get(addr, CAPACITY);
-        //   long double_capacity = capacity * 2;
-
-        long hashed_requestKey = HashHelper.longHash(insertKey, capacity * 2);
-
-        long foundIndex = -1;
-        long hash_sub_ptr = POffHeapLongArray.get(addr, HASH_SUB);
-        if (hash_sub_ptr == OffHeapConstants.NULL_PTR) {
-            //NO HASH STRUCTURE, LET'S ITERATES
-            for (long i = 0; i < size; i++) {
-                if (insertKey == key(addr, i)) {
-                    foundIndex = i;
-                    break;
-                }
-            }
-        } else {
-            //HASH STRUCTURE IS PRESENT LET'S USE IT
-            long m = hash(hash_sub_ptr, capacity, hashed_requestKey);
-            while (m >= 0) {
-                if (insertKey == key(addr, m)) {
-                    foundIndex = m;
-                    break;
-                } else {
-                    m = next(hash_sub_ptr, m);
-                }
+        long hash_sub = POffHeapLongArray.get(addr, HASH_SUB);
+        long hashIndex = HashHelper.longHash(insertKey, capacity * 2);
+        long m = POffHeapLongArray.get(hash_sub, capacity + hashIndex);
+        long found = -1;
+        while (m >= 0) {
+            if (insertKey == key(addr, m)) {
+                found = m;
+                break;
             }
+            m = POffHeapLongArray.get(hash_sub, m);
         }
-        //ok not found
-        if (foundIndex == -1) {
-            if (capacity == size) {
-                long newCapacity = capacity * 2;
-                addr = resize(addr, size, capacity, newCapacity);
-                capacity = newCapacity;
-                hash_sub_ptr = POffHeapLongArray.get(addr, HASH_SUB);
-                hashed_requestKey = HashHelper.longHash(insertKey, capacity * 2);
-            }
-            setKV(addr, insertKey, insertValue, size);
-            //if present, update hashing structure
-            if (hash_sub_ptr != OffHeapConstants.NULL_PTR) {
-                POffHeapLongArray.set(hash_sub_ptr, size, hash(hash_sub_ptr, capacity, hashed_requestKey));
-                POffHeapLongArray.set(hash_sub_ptr, capacity + hashed_requestKey, size);
+        if (found == -1) {
+            final long size = POffHeapLongArray.get(addr, SIZE);
+            if (size == capacity) {
+                resize(capacity * 2);
+                addr = space.addrByIndex(index);
+                capacity = POffHeapLongArray.get(addr, CAPACITY);
+                hash_sub = POffHeapLongArray.get(addr, HASH_SUB);
+                hashIndex = HashHelper.longHash(insertKey, capacity * 2);
             }
+            POffHeapLongArray.set(addr, KV_OFFSET + size * 2, insertKey);
+            POffHeapLongArray.set(addr, KV_OFFSET + size * 2 + 1, insertValue);
+            POffHeapLongArray.set(hash_sub, size, POffHeapLongArray.get(hash_sub, capacity + hashIndex));
+            POffHeapLongArray.set(hash_sub, capacity + hashIndex, size);
             POffHeapLongArray.set(addr, SIZE, size + 1);
-            POffHeapLongArray.set(addr, MAGIC, POffHeapLongArray.get(addr, MAGIC) + 1);
-            if (notifyUpdate && POffHeapLongArray.get(addr, DIRTY) != 1) {
-                POffHeapLongArray.set(addr, DIRTY, 1);
-                space.notifyUpdate(index);
-            }
+        } else if (value(addr, found) != insertValue) {
+            POffHeapLongArray.set(addr, KV_OFFSET + found * 2 + 1, insertValue);
         } else {
-            if (value(addr, foundIndex) != insertValue) {
-                setKV(addr, insertKey, insertValue, foundIndex);
-                POffHeapLongArray.set(addr, MAGIC, POffHeapLongArray.get(addr, MAGIC) + 1);
-                if (notifyUpdate && POffHeapLongArray.get(addr, DIRTY) != 1) {
-                    POffHeapLongArray.set(addr, DIRTY, 1);
-                    space.notifyUpdate(index);
-                }
-            }
+            return;
+        }
+        POffHeapLongArray.set(addr, MAGIC, POffHeapLongArray.get(addr, MAGIC) + 1);
+        if (notifyUpdate) {
+            declareDirty(addr);
+        }
+    }
+
+    private void declareDirty(final long addr) {
+        if (POffHeapLongArray.get(addr, HASH) != Constants.EMPTY_HASH) {
+            POffHeapLongArray.set(addr, HASH, Constants.EMPTY_HASH);
+            space.notifyUpdate(index);
         }
-        return addr;
     }
 
     @Override
     public final void load(final Buffer buffer) {
-        if (buffer == null || buffer.length() == 0) {
-            return;
+        space.lockByIndex(index);
+        try {
+            internal_load(true, buffer);
+        } finally {
+            space.unlockByIndex(index);
         }
+    }
+
+    @Override
+    public final void loadDiff(final Buffer buffer) {
         space.lockByIndex(index);
         try {
-            long addr = space.addrByIndex(index);
-            final long initialSize = POffHeapLongArray.get(addr, SIZE);
-            final long initialCapacity = POffHeapLongArray.get(addr, CAPACITY);
-            final boolean isInitial = initialSize == 0;
+            internal_load(false, buffer);
+            declareDirty(space.addrByIndex(index));
+        } finally {
+            space.unlockByIndex(index);
+        }
+    }
+
+    private void internal_load(final boolean initial, final Buffer buffer) {
+        if (BinaryFormat.isBinary(buffer)) {
+            final BinaryReader reader = new BinaryReader(buffer);
+            POffHeapLongArray.set(space.addrByIndex(index), GROUP, reader.readVarInt());
+            final int mapSize = reader.readVarInt();
+            resize((long) Math.pow(2, Math.ceil(Math.log(mapSize) / Math.log(2))));
+            POffHeapLongArray.set(space.addrByIndex(index), TYPE, reader.readVarLong());
+            for (int i = 0; i < mapSize; i++) {
+                final long loopKey = reader.readVarLong();
+                internal_put(loopKey, reader.readVarLong(), !initial);
+            }
+        } else if (buffer != null && buffer.length() > 0) {
             long cursor = 0;
-            long bufferSize = buffer.length();
-            boolean initDone = false;
+            final long bufferSize = buffer.length();
             long previousStart = 0;
-            long loopKey = Constants.NULL_LONG;
+            long loopKey = CoreConstants.NULL_LONG;
+            int extraCursor = 0;
             while (cursor < bufferSize) {
                 final byte current = buffer.read(cursor);
                 switch (current) {
+                    case Constants.CHUNK_META_SEP:
+                        if (previousStart != cursor) {
+                            POffHeapLongArray.set(space.addrByIndex(index), GROUP, Base64.decodeToIntWithBounds(buffer, previousStart, cursor));
+                        }
+                        previousStart = cursor + 1;
+                        break;
                     case Constants.CHUNK_SEP:
-                        POffHeapLongArray.set(addr, EXTRA, Base64.decodeToLongWithBounds(buffer, previousStart, cursor));
+                        switch (extraCursor) {
+                            case 0:
+                                final int mapSize = Base64.decodeToIntWithBounds(buffer, previousStart, cursor);
+                                resize((long) Math.pow(2, Math.ceil(Math.log(mapSize) / Math.log(2))));
+                                break;
+                            case 1:
+                                if (previousStart != cursor) {
+                                    POffHeapLongArray.set(space.addrByIndex(index), TYPE, Base64.decodeToLongWithBounds(buffer, previousStart, cursor));
+                                }
+                                break;
+                        }
+                        extraCursor++;
                         previousStart = cursor + 1;
                         break;
                     case Constants.CHUNK_VAL_SEP:
-                        if (!initDone) {
-                            final long mapSize = Base64.decodeToLongWithBounds(buffer, previousStart, cursor);
-                            final long closePowerOfTwo = (long) Math.pow(2, Math.ceil(Math.log(mapSize) / Math.log(2)));
-                            addr = resize(addr, initialSize, initialCapacity, closePowerOfTwo);
-                            initDone = true;
-                        } else if (loopKey == CoreConstants.NULL_LONG) {
+                        if (loopKey == CoreConstants.NULL_LONG) {
                             loopKey = Base64.decodeToLongWithBounds(buffer, previousStart, cursor);
                         } else {
                             long loopValue = Base64.decodeToLongWithBounds(buffer, previousStart, cursor);
-                            internal_put(addr, loopKey, loopValue, !isInitial);
+                            internal_put(loopKey, loopValue, !initial);
                             //reset key for next round
                             loopKey = CoreConstants.NULL_LONG;
                         }
@@ -390,56 +456,54 @@ final class OffHeapWorldOrderChunk implements WorldOrderChunk {
                 }
                 cursor++;
             }
-            if (loopKey != CoreConstants.NULL_LONG) {
-                long loopValue = Base64.decodeToLongWithBounds(buffer, previousStart, cursor);
-                internal_put(addr, loopKey, loopValue, !isInitial);
-            }
-        } finally {
-            space.unlockByIndex(index);
         }
     }
 
-    @Override
-    public void loadDiff(Buffer buffer) {
-        load(buffer);
-    }
-
-    @Override
-    public final void remove(long key) {
-        throw new RuntimeException("Not implemented yet!!!");
-    }
-
     @Override
     public final void save(final Buffer buffer) {
         space.lockByIndex(index);
         try {
             final long addr = space.addrByIndex(index);
-            final long extra = POffHeapLongArray.get(addr, EXTRA);
-            if (extra != Constants.NULL_LONG) {
-                Base64.encodeLongToBuffer(extra, buffer);
-                buffer.write(Constants.CHUNK_SEP);
-            }
+            final long beginIndex = buffer.writeIndex();
+            final int group = (int) POffHeapLongArray.get(addr, GROUP);
             final int size = (int) POffHeapLongArray.get(addr, SIZE);
-            Base64.encodeIntToBuffer(size, buffer);
-            for (long i = 0; i < size; i++) {
-                //save KV
-                buffer.write(Constants.CHUNK_VAL_SEP);
-                Base64.encodeLongToBuffer(key(addr, i), buffer);
-                buffer.write(Constants.CHUNK_VAL_SEP);
-                Base64.encodeLongToBuffer(value(addr, i), buffer);
+            final long type = POffHeapLongArray.get(addr, TYPE);
+            if (space.binaryFormat()) {
+                BinaryFormat.writeHeader(buffer);
+                BinaryFormat.writeVarInt(buffer, group);
+                BinaryFormat.writeVarInt(buffer, size);
+                BinaryFormat.writeVarLong(buffer, type);
+                for (long i = 0; i < size; i++) {
+                    BinaryFormat.writeVarLong(buffer, key(addr, i));
+                    BinaryFormat.writeVarLong(buffer, value(addr, i));
+                }
+            } else {
+                if (group != 0) {
+                    Base64.encodeIntToBuffer(group, buffer);
+                    buffer.write(CoreConstants.CHUNK_META_SEP);
+                }
+                Base64.encodeIntToBuffer(size, buffer);
+                buffer.write(CoreConstants.CHUNK_SEP);
+                if (type != Constants.NULL_LONG) {
+                    Base64.encodeLongToBuffer(type, buffer);
+                }
+                buffer.write(CoreConstants.CHUNK_SEP);
+                for (long i = 0; i < size; i++) {
+                    Base64.encodeLongToBuffer(key(addr, i), buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                    Base64.encodeLongToBuffer(value(addr, i), buffer);
+                    buffer.write(CoreConstants.CHUNK_VAL_SEP);
+                }
             }
-            POffHeapLongArray.set(addr, DIRTY, 0);//set dirty to false
+            POffHeapLongArray.set(addr, HASH, HashHelper.hashBuffer(buffer, beginIndex, buffer.writeIndex()));
         } finally {
             space.unlockByIndex(index);
         }
     }
 
     @Override
-    public void saveDiff(Buffer buffer) {
-        save(buffer);
+    public final void saveDiff(final Buffer buffer) {
+        throw new RuntimeException("Not implemented yet!");
     }
 
 }
-
-
-
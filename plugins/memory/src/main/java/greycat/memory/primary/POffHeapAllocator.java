@@ -0,0 +1,108 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory.primary;
+
+/**
+ * Entry point of all the off-heap allocations, backed by {@link POffHeapArena}.
+ * Allocations name their arena explicitly: the one of the chunk space for the segments owned by its chunks, the shared one otherwise.
+ * Releases and resizes are routed to the arena owning the block.
+ */
+public final class POffHeapAllocator {
+
+    private static final int MAX_ARENAS = 1 << 16;
+
+    private static final POffHeapArena[] ARENAS = new POffHeapArena[MAX_ARENAS];
+
+    /**
+     * Arena of the segments owned by no chunk space, never released.
+     */
+    private static final POffHeapArena SHARED;
+
+    static {
+        SHARED = new POffHeapArena(0, POffHeapArena.SLAB_SIZE);
+        ARENAS[0] = SHARED;
+    }
+
+    private POffHeapAllocator() {
+    }
+
+    /**
+     * Creates and registers a new arena.
+     *
+     * @param slabSize size in bytes of the slabs of the arena
+     * @return the new arena
+     */
+    public static synchronized POffHeapArena newArena(final long slabSize) {
+        for (int i = 1; i < MAX_ARENAS; i++) {
+            if (ARENAS[i] == null) {
+                ARENAS[i] = new POffHeapArena(i, slabSize);
+                return ARENAS[i];
+            }
+        }
+        throw new RuntimeException("Bad API usage: more than " + (MAX_ARENAS - 1) + " off-heap arenas are alive");
+    }
+
+    /**
+     * Releases all the memory of an arena and unregisters it.
+     *
+     * @param arena arena to release, none of its blocks can be used afterwards
+     */
+    public static synchronized void release(final POffHeapArena arena) {
+        arena.freeAll();
+        ARENAS[arena.id()] = null;
+    }
+
+    /**
+     * @return the arena of the segments owned by no chunk space
+     */
+    public static POffHeapArena shared() {
+        return SHARED;
+    }
+
+    private static POffHeapArena owner(final long addr) {
+        final POffHeapArena arena = ARENAS[POffHeapArena.arenaOf(addr)];
+        if (arena == null) {
+            throw new RuntimeException("Bad API usage: segment " + addr + " belongs to a released arena");
+        }
+        return arena;
+    }
+
+    /**
+     * @param arena  arena owning the segment
+     * @param length number of bytes
+     * @return the address of a segment of at least {@code length} bytes, not initialized
+     */
+    public static long allocate(final POffHeapArena arena, final long length) {
+        if (arena == null) {
+            throw new RuntimeException("Bad API usage: allocation in the arena of a released chunk space");
+        }
+        return arena.allocate(length);
+    }
+
+    /**
+     * Resizes a segment in its arena, bytes beyond the previous length are not initialized.
+     *
+     * @return the new address of the segment
+     */
+    public static long reallocate(final long addr, final long length) {
+        return owner(addr).reallocate(addr, length);
+    }
+
+    public static void free(final long addr) {
+        owner(addr).free(addr);
+    }
+
+}
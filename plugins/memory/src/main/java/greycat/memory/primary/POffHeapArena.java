@@ -0,0 +1,388 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory.primary;
+
+import greycat.utility.Unsafe;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Size-class slab allocator for off-heap segments.
+ * Small blocks are carved out of large slabs obtained from the native allocator, and recycled through one free list per size class,
+ * so that millions of small chunks do not fragment the native heap.
+ * Blocks larger than the biggest class are allocated directly.
+ * <p>
+ * Every block starts with a header word identifying its arena and its size class, followed by the payload whose address is returned.
+ * Blocks can therefore be freed or reallocated without knowing the arena they come from, see {@link POffHeapAllocator}.
+ * <p>
+ * Statistics are updated under the lock of each size class, and read without synchronization: they are exact once allocations settle.
+ */
+public final class POffHeapArena {
+
+    private static final sun.misc.Unsafe unsafe = Unsafe.getUnsafe();
+
+    static final int HEADER = 8;
+
+    /**
+     * Class index marking blocks allocated directly, outside of the slabs.
+     */
+    static final int LARGE = 255;
+
+    private static final int ARENA_SHIFT = 48;
+    private static final int CLASS_SHIFT = 40;
+    private static final long LENGTH_MASK = (1L << CLASS_SHIFT) - 1;
+
+    /**
+     * Default size of the slabs, in bytes.
+     */
+    public static final long SLAB_SIZE = 1024 * 1024;
+
+    /**
+     * Minimum number of blocks carved out of a slab, slabs of big classes are enlarged accordingly.
+     */
+    private static final long MIN_BLOCKS_PER_SLAB = 8;
+
+    /**
+     * Block sizes, header included: two classes per power of two, from 16 bytes to 128KB, which bounds internal fragmentation to a third.
+     */
+    private static final long[] CLASSES;
+
+    static {
+        final long[] classes = new long[26];
+        long base = 16;
+        for (int i = 0; i < classes.length; i = i + 2) {
+            classes[i] = base;
+            classes[i + 1] = base + base / 2;
+            base = base * 2;
+        }
+        CLASSES = classes;
+    }
+
+    private final int _id;
+    private final long _slabSize;
+
+    private final Object[] _classLocks;
+    //head of the free list of each class, linked through the first word of the payload
+    private final long[] _freeLists;
+    //bump pointer in the current slab of each class
+    private final long[] _cursors;
+    private final long[] _limits;
+
+    //slabs and large blocks are tracked for the bulk release
+    private long[] _slabs = new long[16];
+    private int _nbSlabs = 0;
+    private final Map<Long, Long> _larges = new HashMap<Long, Long>();
+
+    private final long[] _classRequested;
+    private final long[] _classUsed;
+    private final long[] _classAllocations;
+    private final long[] _classFrees;
+    private volatile long _slabBytes = 0;
+    private volatile long _largeBytes = 0;
+    private volatile long _largeRequested = 0;
+    private volatile long _largeAllocations = 0;
+    private volatile long _largeFrees = 0;
+
+    POffHeapArena(final int id, final long slabSize) {
+        this._id = id;
+        this._slabSize = slabSize;
+        this._classLocks = new Object[CLASSES.length];
+        for (int i = 0; i < CLASSES.length; i++) {
+            _classLocks[i] = new Object();
+        }
+        this._freeLists = new long[CLASSES.length];
+        this._cursors = new long[CLASSES.length];
+        this._limits = new long[CLASSES.length];
+        this._classRequested = new long[CLASSES.length];
+        this._classUsed = new long[CLASSES.length];
+        this._classAllocations = new long[CLASSES.length];
+        this._classFrees = new long[CLASSES.length];
+        reset();
+    }
+
+    private void reset() {
+        for (int i = 0; i < CLASSES.length; i++) {
+            _freeLists[i] = -1;
+            _cursors[i] = 0;
+            _limits[i] = 0;
+            _classRequested[i] = 0;
+            _classUsed[i] = 0;
+        }
+        _slabBytes = 0;
+        _largeBytes = 0;
+        _largeRequested = 0;
+    }
+
+    /**
+     * @return the identifier of the arena, stored in the header of its blocks
+     */
+    public final int id() {
+        return _id;
+    }
+
+    static int classOf(final long blockSize) {
+        for (int i = 0; i < CLASSES.length; i++) {
+            if (blockSize <= CLASSES[i]) {
+                return i;
+            }
+        }
+        return LARGE;
+    }
+
+    static int arenaOf(final long addr) {
+        return (int) (unsafe.getLong(addr - HEADER) >>> ARENA_SHIFT);
+    }
+
+    static int classOfBlock(final long addr) {
+        return (int) ((unsafe.getLong(addr - HEADER) >>> CLASS_SHIFT) & 0xFF);
+    }
+
+    /**
+     * @return the number of bytes requested for the block
+     */
+    static long lengthOf(final long addr) {
+        return unsafe.getLong(addr - HEADER) & LENGTH_MASK;
+    }
+
+    private long header(final int classIndex, final long length) {
+        return (((long) _id) << ARENA_SHIFT) | (((long) classIndex) << CLASS_SHIFT) | length;
+    }
+
+    /**
+     * @param length number of bytes
+     * @return the address of a block of at least {@code length} bytes, not initialized
+     */
+    final long allocate(final long length) {
+        final int classIndex = classOf(length + HEADER);
+        if (classIndex == LARGE) {
+            final long block = unsafe.allocateMemory(length + HEADER);
+            unsafe.putLong(block, header(LARGE, length));
+            synchronized (_larges) {
+                _larges.put(block, length + HEADER);
+                _largeBytes = _largeBytes + length + HEADER;
+                _largeRequested = _largeRequested + length;
+                _largeAllocations++;
+            }
+            return block + HEADER;
+        }
+        final long blockSize = CLASSES[classIndex];
+        long block;
+        synchronized (_classLocks[classIndex]) {
+            block = _freeLists[classIndex];
+            if (block != -1) {
+                _freeLists[classIndex] = unsafe.getLong(block + HEADER);
+            } else {
+                if (_cursors[classIndex] + blockSize > _limits[classIndex]) {
+                    final long slabSize = Math.max(_slabSize, blockSize * MIN_BLOCKS_PER_SLAB);
+                    final long slab = newSlab(slabSize);
+                    _cursors[classIndex] = slab;
+                    _limits[classIndex] = slab + slabSize;
+                }
+                block = _cursors[classIndex];
+                _cursors[classIndex] = block + blockSize;
+            }
+            _classRequested[classIndex] = _classRequested[classIndex] + length;
+            _classUsed[classIndex] = _classUsed[classIndex] + blockSize;
+            _classAllocations[classIndex]++;
+        }
+        unsafe.putLong(block, header(classIndex, length));
+        return block + HEADER;
+    }
+
+    private long newSlab(final long size) {
+        final long slab = unsafe.allocateMemory(size);
+        synchronized (this) {
+            if (_nbSlabs == _slabs.length) {
+                final long[] slabs = new long[_slabs.length * 2];
+                System.arraycopy(_slabs, 0, slabs, 0, _nbSlabs);
+                _slabs = slabs;
+            }
+            _slabs[_nbSlabs] = slab;
+            _nbSlabs++;
+            _slabBytes = _slabBytes + size;
+        }
+        return slab;
+    }
+
+    /**
+     * Releases a block of this arena.
+     */
+    final void free(final long addr) {
+        final long block = addr - HEADER;
+        final int classIndex = classOfBlock(addr);
+        final long length = lengthOf(addr);
+        if (classIndex == LARGE) {
+            synchronized (_larges) {
+                _larges.remove(block);
+                _largeBytes = _largeBytes - length - HEADER;
+                _largeRequested = _largeRequested - length;
+                _largeFrees++;
+            }
+            unsafe.freeMemory(block);
+            return;
+        }
+        synchronized (_classLocks[classIndex]) {
+            unsafe.putLong(addr, _freeLists[classIndex]);
+            _freeLists[classIndex] = block;
+            _classRequested[classIndex] = _classRequested[classIndex] - length;
+            _classUsed[classIndex] = _classUsed[classIndex] - CLASSES[classIndex];
+            _classFrees[classIndex]++;
+        }
+    }
+
+    /**
+     * Resizes a block of this arena, the block is kept in place as long as its class fits.
+     * Bytes beyond the previous length are not initialized.
+     */
+    final long reallocate(final long addr, final long length) {
+        final int classIndex = classOfBlock(addr);
+        final long previousLength = lengthOf(addr);
+        if (classIndex != LARGE && length + HEADER <= CLASSES[classIndex]) {
+            synchronized (_classLocks[classIndex]) {
+                _classRequested[classIndex] = _classRequested[classIndex] + length - previousLength;
+            }
+            unsafe.putLong(addr - HEADER, header(classIndex, length));
+            return addr;
+        }
+        if (classIndex == LARGE && classOf(length + HEADER) == LARGE) {
+            final long previousBlock = addr - HEADER;
+            final long block = unsafe.reallocateMemory(previousBlock, length + HEADER);
+            unsafe.putLong(block, header(LARGE, length));
+            synchronized (_larges) {
+                _larges.remove(previousBlock);
+                _larges.put(block, length + HEADER);
+                _largeBytes = _largeBytes + length - previousLength;
+                _largeRequested = _largeRequested + length - previousLength;
+            }
+            return block + HEADER;
+        }
+        final long newAddr = allocate(length);
+        unsafe.copyMemory(addr, newAddr, Math.min(length, previousLength));
+        free(addr);
+        return newAddr;
+    }
+
+    /**
+     * Releases at once all the slabs and large blocks of the arena.
+     * Every block allocated from the arena becomes invalid.
+     */
+    public final synchronized void freeAll() {
+        for (int i = 0; i < CLASSES.length; i++) {
+            synchronized (_classLocks[i]) {
+                _freeLists[i] = -1;
+                _cursors[i] = 0;
+                _limits[i] = 0;
+            }
+        }
+        for (int i = 0; i < _nbSlabs; i++) {
+            unsafe.freeMemory(_slabs[i]);
+        }
+        _nbSlabs = 0;
+        synchronized (_larges) {
+            for (Long block : _larges.keySet()) {
+                unsafe.freeMemory(block);
+            }
+            _larges.clear();
+        }
+        reset();
+    }
+
+    /**
+     * @return the number of blocks allocated since the creation of the arena
+     */
+    public final long allocations() {
+        long result = _largeAllocations;
+        for (int i = 0; i < CLASSES.length; i++) {
+            result = result + _classAllocations[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of blocks released one by one since the creation of the arena
+     */
+    public final long frees() {
+        long result = _largeFrees;
+        for (int i = 0; i < CLASSES.length; i++) {
+            result = result + _classFrees[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of bytes obtained from the native allocator, slabs and large blocks
+     */
+    public final long reservedBytes() {
+        return _slabBytes + _largeBytes;
+    }
+
+    /**
+     * @return the number of bytes of the blocks in use, headers included
+     */
+    public final long usedBytes() {
+        long result = _largeBytes;
+        for (int i = 0; i < CLASSES.length; i++) {
+            result = result + _classUsed[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of bytes requested by the blocks in use
+     */
+    public final long requestedBytes() {
+        long result = _largeRequested;
+        for (int i = 0; i < CLASSES.length; i++) {
+            result = result + _classRequested[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of slabs currently reserved
+     */
+    public final int slabs() {
+        return _nbSlabs;
+    }
+
+    /**
+     * Ratio of the reserved memory not holding requested bytes: rounding to size classes, free blocks and unused tails of slabs.
+     *
+     * @return a value between 0 and 1
+     */
+    public final double fragmentation() {
+        final long reserved = reservedBytes();
+        if (reserved == 0) {
+            return 0;
+        }
+        return 1d - ((double) requestedBytes() / reserved);
+    }
+
+    @Override
+    public final String toString() {
+        return "{\"id\":" + _id
+                + ",\"allocations\":" + allocations()
+                + ",\"frees\":" + frees()
+                + ",\"slabs\":" + slabs()
+                + ",\"reserved\":" + reservedBytes()
+                + ",\"used\":" + usedBytes()
+                + ",\"requested\":" + requestedBytes()
+                + ",\"fragmentation\":" + fragmentation()
+                + "}";
+    }
+
+}
@@ -22,9 +22,9 @@ public class POffHeapByteArray {
 
     private static final sun.misc.Unsafe unsafe = Unsafe.getUnsafe();
 
-    public static long allocate(final long capacity) {
+    public static long allocate(final POffHeapArena arena, final long capacity) {
         //create the memory segment
-        long newMemorySegment = unsafe.allocateMemory(capacity);
+        long newMemorySegment = POffHeapAllocator.allocate(arena, capacity);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newMemorySegment, capacity);
         }
@@ -35,7 +35,7 @@ public class POffHeapByteArray {
     }
 
     public static long reallocate(final long addr, final long nextCapacity) {
-        long new_segment = unsafe.reallocateMemory(addr, nextCapacity);
+        long new_segment = POffHeapAllocator.reallocate(addr, nextCapacity);
         if (OffHeapConstants.DEBUG_MODE) {
             if(!OffHeapConstants.SEGMENTS.containsKey(addr)){
                 throw new RuntimeException("Bad ADDR!");
@@ -58,17 +58,35 @@ public class POffHeapByteArray {
         int scaleOffset = unsafe.arrayIndexScale(src.getClass());
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(destAddr);
-            if (allocated == null || destAddr < 0 || (nbElements * scaleOffset) > allocated) {
+            if (allocated == null || index < 0 || (index + nbElements * scaleOffset) > allocated) {
                 throw new RuntimeException("set: bad address in " + allocated);
             }
         }
         unsafe.copyMemory(src, baseOffset, null, destAddr + index, nbElements * scaleOffset);
     }
 
+    /**
+     * Transfer bytes from off-heap memory to a heap array
+     *
+     * @param srcAddr    start address of the source segment
+     * @param index      offset in the source segment
+     * @param dest       destination array
+     * @param nbElements number of bytes to copy
+     */
+    public static void copyToArray(final long srcAddr, final long index, final byte[] dest, final int nbElements) {
+        if (OffHeapConstants.DEBUG_MODE) {
+            Long allocated = OffHeapConstants.SEGMENTS.get(srcAddr);
+            if (allocated == null || index < 0 || (index + nbElements) > allocated) {
+                throw new RuntimeException("copy: bad address in " + allocated);
+            }
+        }
+        unsafe.copyMemory(null, srcAddr + index, dest, unsafe.arrayBaseOffset(byte[].class), nbElements);
+    }
+
     public static void set(final long addr, final long index, final byte valueToInsert) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index) > allocated) {
+            if (allocated == null || index < 0 || index >= allocated) {
                 throw new RuntimeException("set: bad address " + index + "(" + index + ")" + " in " + allocated);
             }
         }
@@ -78,7 +96,7 @@ public class POffHeapByteArray {
     public static byte get(final long addr, final long index) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index) > allocated) {
+            if (allocated == null || index < 0 || index >= allocated) {
                 throw new RuntimeException("get: bad address " + index + " in " + allocated);
             }
         }
@@ -92,7 +110,7 @@ public class POffHeapByteArray {
             }
             OffHeapConstants.SEGMENTS.remove(addr);
         }
-        unsafe.freeMemory(addr);
+        POffHeapAllocator.free(addr);
     }
 
 }
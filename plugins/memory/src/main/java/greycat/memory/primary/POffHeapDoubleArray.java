@@ -29,9 +29,9 @@ public class POffHeapDoubleArray {
 
     private static final sun.misc.Unsafe unsafe = Unsafe.getUnsafe();
 
-    public static long allocate(final long capacity) {
+    public static long allocate(final POffHeapArena arena, final long capacity) {
         //create the memory segment
-        long newMemorySegment = unsafe.allocateMemory(capacity * 8);
+        long newMemorySegment = POffHeapAllocator.allocate(arena, capacity * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newMemorySegment, capacity * 8);
         }
@@ -42,7 +42,7 @@ public class POffHeapDoubleArray {
     }
 
     public static long reallocate(final long addr, final long nextCapacity) {
-        long new_segment = unsafe.reallocateMemory(addr, nextCapacity * 8);
+        long new_segment = POffHeapAllocator.reallocate(addr, nextCapacity * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.remove(addr);
             OffHeapConstants.SEGMENTS.put(new_segment, nextCapacity * 8);
@@ -53,7 +53,7 @@ public class POffHeapDoubleArray {
     public static void set(final long addr, final long index, final double valueToInsert) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index * 8) > allocated) {
+            if (allocated == null || index < 0 || (index * 8 + 8) > allocated) {
                 throw new RuntimeException("set: bad address " + index + "(" + index * 8 + ")" + " in " + allocated);
             }
         }
@@ -76,7 +76,7 @@ public class POffHeapDoubleArray {
     public static double get(final long addr, final long index) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index * 8) > allocated) {
+            if (allocated == null || index < 0 || (index * 8 + 8) > allocated) {
                 throw new RuntimeException("get: bad address " + index + " in " + allocated);
             }
         }
@@ -87,7 +87,7 @@ public class POffHeapDoubleArray {
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.remove(addr);
         }
-        unsafe.freeMemory(addr);
+        POffHeapAllocator.free(addr);
     }
 
     public static boolean compareAndSwap(final long addr, final long index, final long expectedValue, final long updatedValue) {
@@ -98,11 +98,11 @@ public class POffHeapDoubleArray {
         unsafe.copyMemory(srcAddr, destAddr, numberOfElemsToCopy);
     }
 
-    public static long cloneArray(final long srcAddr, final long length) {
+    public static long cloneArray(final POffHeapArena arena, final long srcAddr, final long length) {
         if (srcAddr == OffHeapConstants.NULL_PTR) {
             return srcAddr;
         }
-        long newAddr = unsafe.allocateMemory(length * 8);
+        long newAddr = POffHeapAllocator.allocate(arena, length * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newAddr, (length * 8));
         }
@@ -134,8 +134,8 @@ public class POffHeapDoubleArray {
         return doubleArray;
     }
 
-    public static long fromObject(double[] origin) {
-        long doubleArrayToInsert_ptr = POffHeapDoubleArray.allocate(SHIFT_INDEX + origin.length);
+    public static long fromObject(final POffHeapArena arena, double[] origin) {
+        long doubleArrayToInsert_ptr = POffHeapDoubleArray.allocate(arena, SHIFT_INDEX + origin.length);
         POffHeapLongArray.set(doubleArrayToInsert_ptr, SIZE_INDEX, origin.length);
         POffHeapLongArray.set(doubleArrayToInsert_ptr, COW_INDEX, 1);
         for (int i = 0; i < origin.length; i++) {
@@ -162,7 +162,7 @@ public class POffHeapDoubleArray {
             cow_after = cow - 1;
         } while (!POffHeapLongArray.compareAndSwap(addr, COW_INDEX, cow, cow_after));
         if (cow == 1 && cow_after == 0) {
-            unsafe.freeMemory(addr);
+            POffHeapAllocator.free(addr);
             if (OffHeapConstants.DEBUG_MODE) {
                 OffHeapConstants.SEGMENTS.remove(addr);
             }
@@ -31,9 +31,9 @@ public class POffHeapIntArray {
 
     private static final sun.misc.Unsafe unsafe = Unsafe.getUnsafe();
 
-    public static long allocate(final long capacity) {
+    public static long allocate(final POffHeapArena arena, final long capacity) {
         //create the memory segment
-        long newMemorySegment = unsafe.allocateMemory(capacity * 4);
+        long newMemorySegment = POffHeapAllocator.allocate(arena, capacity * 4);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newMemorySegment, capacity * 4);
         }
@@ -44,7 +44,7 @@ public class POffHeapIntArray {
     }
 
     public static long reallocate(final long addr, final long nextCapacity) {
-        long new_segment = unsafe.reallocateMemory(addr, nextCapacity * 4);
+        long new_segment = POffHeapAllocator.reallocate(addr, nextCapacity * 4);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.remove(addr);
             OffHeapConstants.SEGMENTS.put(new_segment, nextCapacity * 4);
@@ -55,7 +55,7 @@ public class POffHeapIntArray {
     public static void set(final long addr, final long index, final int valueToInsert) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index * 4) > allocated) {
+            if (allocated == null || index < 0 || (index * 4 + 4) > allocated) {
                 throw new RuntimeException("set: bad address " + index + "(" + index * 4 + ")" + " in " + allocated);
             }
         }
@@ -65,7 +65,7 @@ public class POffHeapIntArray {
     public static int get(final long addr, final long index) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index * 4) > allocated) {
+            if (allocated == null || index < 0 || (index * 4 + 4) > allocated) {
                 throw new RuntimeException("get: bad address " + index + " in " + allocated);
             }
         }
@@ -76,7 +76,7 @@ public class POffHeapIntArray {
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.remove(addr);
         }
-        unsafe.freeMemory(addr);
+        POffHeapAllocator.free(addr);
     }
 
     static boolean compareAndSwap(final long addr, final long index, final int expectedValue, final int updatedValue) {
@@ -107,8 +107,8 @@ public class POffHeapIntArray {
         return longArray;
     }
 
-    public static long fromObject(int[] origin) {
-        long intArrayToInsert_ptr = POffHeapIntArray.allocate(SHIFT_INDEX + origin.length);
+    public static long fromObject(final POffHeapArena arena, int[] origin) {
+        long intArrayToInsert_ptr = POffHeapIntArray.allocate(arena, SHIFT_INDEX + origin.length);
         set(intArrayToInsert_ptr, SIZE_INDEX, origin.length);
         set(intArrayToInsert_ptr, COW_INDEX, 1);
         for (int i = 0; i < origin.length; i++) {
@@ -135,18 +135,18 @@ public class POffHeapIntArray {
             cow_after = cow - 1;
         } while (!compareAndSwap(addr, COW_INDEX, cow, cow_after));
         if (cow == 1 && cow_after == 0) {
-            unsafe.freeMemory(addr);
+            POffHeapAllocator.free(addr);
             if (OffHeapConstants.DEBUG_MODE) {
                 OffHeapConstants.SEGMENTS.remove(addr);
             }
         }
     }
 
-    public static long cloneArray(final long srcAddr, final long length) {
+    public static long cloneArray(final POffHeapArena arena, final long srcAddr, final long length) {
         if (srcAddr == OffHeapConstants.NULL_PTR) {
             return srcAddr;
         }
-        long newAddr = unsafe.allocateMemory(length * 4);
+        long newAddr = POffHeapAllocator.allocate(arena, length * 4);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newAddr, (length * 4));
         }
@@ -29,9 +29,9 @@ public class POffHeapLongArray {
 
     private static final sun.misc.Unsafe unsafe = Unsafe.getUnsafe();
 
-    public static long allocate(final long capacity) {
+    public static long allocate(final POffHeapArena arena, final long capacity) {
         //create the memory segment
-        long newMemorySegment = unsafe.allocateMemory(capacity * 8);
+        long newMemorySegment = POffHeapAllocator.allocate(arena, capacity * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newMemorySegment, capacity * 8);
         }
@@ -46,7 +46,7 @@ public class POffHeapLongArray {
     }
 
     public static long reallocate(final long addr, final long nextCapacity) {
-        long new_segment = unsafe.reallocateMemory(addr, nextCapacity * 8);
+        long new_segment = POffHeapAllocator.reallocate(addr, nextCapacity * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.remove(addr);
             OffHeapConstants.SEGMENTS.put(new_segment, nextCapacity * 8);
@@ -57,7 +57,7 @@ public class POffHeapLongArray {
     public static void set(final long addr, final long index, final long valueToInsert) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index * 8) > allocated) {
+            if (allocated == null || index < 0 || (index * 8 + 8) > allocated) {
                 throw new RuntimeException("set: bad address " + index + "(" + index * 8 + ")" + " in " + allocated);
             }
         }
@@ -88,7 +88,7 @@ public class POffHeapLongArray {
     public static long get(final long addr, final long index) {
         if (OffHeapConstants.DEBUG_MODE) {
             Long allocated = OffHeapConstants.SEGMENTS.get(addr);
-            if (allocated == null || index < 0 || (index * 8) > allocated) {
+            if (allocated == null || index < 0 || (index * 8 + 8) > allocated) {
                 throw new RuntimeException("get: bad address " + index + "*8 in " + allocated);
             }
         }
@@ -99,18 +99,18 @@ public class POffHeapLongArray {
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.remove(addr);
         }
-        unsafe.freeMemory(addr);
+        POffHeapAllocator.free(addr);
     }
 
     public static boolean compareAndSwap(final long addr, final long index, final long expectedValue, final long updatedValue) {
         return unsafe.compareAndSwapLong(null, addr + index * 8, expectedValue, updatedValue);
     }
 
-    public static long cloneArray(final long srcAddr, final long length) {
+    public static long cloneArray(final POffHeapArena arena, final long srcAddr, final long length) {
         if (srcAddr == OffHeapConstants.NULL_PTR) {
             return srcAddr;
         }
-        long newAddr = unsafe.allocateMemory(length * 8);
+        long newAddr = POffHeapAllocator.allocate(arena, length * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newAddr, (length * 8));
         }
@@ -142,8 +142,8 @@ public class POffHeapLongArray {
         return longArray;
     }
 
-    public static long fromObject(long[] origin) {
-        long longArrayToInsert_ptr = allocate(SHIFT_INDEX + origin.length);
+    public static long fromObject(final POffHeapArena arena, long[] origin) {
+        long longArrayToInsert_ptr = allocate(arena, SHIFT_INDEX + origin.length);
         set(longArrayToInsert_ptr, SIZE_INDEX, origin.length);
         set(longArrayToInsert_ptr, COW_INDEX, 1);
         for (int i = 0; i < origin.length; i++) {
@@ -176,7 +176,7 @@ public class POffHeapLongArray {
                 }
                 OffHeapConstants.SEGMENTS.remove(addr);
             }
-            unsafe.freeMemory(addr);
+            POffHeapAllocator.free(addr);
         }
     }
 
@@ -20,6 +20,8 @@ import greycat.struct.Buffer;
 import greycat.utility.Base64;
 import greycat.utility.Unsafe;
 
+import java.nio.charset.StandardCharsets;
+
 public class POffHeapString {
 
     private static int COW = 0;
@@ -35,18 +37,16 @@ public class POffHeapString {
         Base64.encodeStringToBuffer(asObject(addr), buffer);
     }
 
-    public static long fromObject(String origin) {
-        final byte[] valueAsByte = origin.getBytes();
+    public static long fromObject(final POffHeapArena arena, String origin) {
+        final byte[] valueAsByte = origin.getBytes(StandardCharsets.UTF_8);
         final long allocationSize = SHIFT + valueAsByte.length;
-        final long newStringPtr = unsafe.allocateMemory(allocationSize);
+        final long newStringPtr = POffHeapAllocator.allocate(arena, allocationSize);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newStringPtr, allocationSize);
         }
         unsafe.putLong(newStringPtr, 1);
         unsafe.putInt(newStringPtr + 8, valueAsByte.length);
-        for (int i = 0; i < valueAsByte.length; i++) {
-            unsafe.putByte(newStringPtr + SHIFT + i, valueAsByte[i]);
-        }
+        unsafe.copyMemory(valueAsByte, unsafe.arrayBaseOffset(byte[].class), null, newStringPtr + SHIFT, valueAsByte.length);
         return newStringPtr;
     }
 
@@ -56,10 +56,8 @@ public class POffHeapString {
         }
         int length = unsafe.getInt(addr + SIZE);
         byte[] bytes = new byte[length];
-        for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = unsafe.getByte(addr + SHIFT + i);
-        }
-        return new String(bytes);
+        unsafe.copyMemory(null, addr + SHIFT, bytes, unsafe.arrayBaseOffset(byte[].class), length);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     public static long clone(final long addr) {
@@ -86,7 +84,7 @@ public class POffHeapString {
                 }
                 OffHeapConstants.SEGMENTS.remove(addr);
             }
-            unsafe.freeMemory(addr);
+            POffHeapAllocator.free(addr);
         }
     }
 
@@ -19,22 +19,22 @@ import greycat.memory.OffHeapConstants;
 
 public class POffHeapStringArray {
 
-    public static long allocate(final long capacity) {
-        return POffHeapLongArray.allocate(capacity);
+    public static long allocate(final POffHeapArena arena, final long capacity) {
+        return POffHeapLongArray.allocate(arena, capacity);
     }
 
     public static long reallocate(final long addr, final long nextCapacity, final long currentCapacity) {
         long newAddr = POffHeapLongArray.reallocate(addr, nextCapacity);
-        POffHeapLongArray.reset(newAddr + (currentCapacity * 8), (nextCapacity - currentCapacity) * 8);
+        POffHeapLongArray.reset(newAddr + (currentCapacity * 8), nextCapacity - currentCapacity);
         return newAddr;
     }
 
-    public static void set(final long addr, final long index, final String valueToInsert) {
+    public static void set(final POffHeapArena arena, final long addr, final long index, final String valueToInsert) {
         long stringPtr = POffHeapLongArray.get(addr, index);
         if (stringPtr != OffHeapConstants.NULL_PTR) {
             POffHeapString.free(stringPtr);
         }
-        stringPtr = POffHeapString.fromObject(valueToInsert);
+        stringPtr = POffHeapString.fromObject(arena, valueToInsert);
         POffHeapLongArray.set(addr, index, stringPtr);
     }
 
@@ -51,21 +51,9 @@ public class POffHeapStringArray {
         for (long i = 0; i < capacity; i++) {
             long stringPtr = POffHeapLongArray.get(addr, i);
             if (stringPtr != OffHeapConstants.NULL_PTR) {
-                if (OffHeapConstants.DEBUG_MODE) {
-                    if (!OffHeapConstants.SEGMENTS.containsKey(stringPtr)) {
-                        throw new RuntimeException("Bad ADDR!");
-                    }
-                    OffHeapConstants.SEGMENTS.remove(stringPtr);
-                }
                 POffHeapString.free(stringPtr);
             }
         }
-        if (OffHeapConstants.DEBUG_MODE) {
-            if (!OffHeapConstants.SEGMENTS.containsKey(addr)) {
-                throw new RuntimeException("Bad ADDR!");
-            }
-            OffHeapConstants.SEGMENTS.remove(addr);
-        }
         POffHeapLongArray.free(addr);
     }
 
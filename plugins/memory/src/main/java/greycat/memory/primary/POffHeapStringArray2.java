@@ -22,26 +22,38 @@ public class POffHeapStringArray2 {
     private static int SIZE = 0;
     private static int SHIFT = 1;
 
-    public static long allocate(final long capacity) {
-        long addr = POffHeapLongArray.allocate(capacity + SHIFT);
+    public static long allocate(final POffHeapArena arena, final long capacity) {
+        long addr = POffHeapLongArray.allocate(arena, capacity + SHIFT);
         POffHeapLongArray.set(addr,SIZE,capacity);
         return addr;
     }
 
     public static long reallocate(final long addr, final long nextCapacity) {
         long currentCapacity = POffHeapLongArray.get(addr,SIZE);
+        for (long i = nextCapacity; i < currentCapacity; i++) {
+            long stringPtr = POffHeapLongArray.get(addr, i + SHIFT);
+            if (stringPtr != OffHeapConstants.NULL_PTR) {
+                POffHeapString.free(stringPtr);
+            }
+        }
         long newAddr = POffHeapLongArray.reallocate(addr, nextCapacity + 1);
         POffHeapLongArray.set(newAddr,SIZE,nextCapacity);
-        POffHeapLongArray.reset(newAddr + ((currentCapacity + SHIFT) * 8), (nextCapacity - currentCapacity + SHIFT) * 8);
+        if (nextCapacity > currentCapacity) {
+            POffHeapLongArray.reset(newAddr + ((currentCapacity + SHIFT) * 8), nextCapacity - currentCapacity);
+        }
         return newAddr;
     }
 
-    public static void set(final long addr, final long index, final String valueToInsert) {
-        long stringPtr = POffHeapLongArray.get(addr, index);
+    public static void set(final POffHeapArena arena, final long addr, final long index, final String valueToInsert) {
+        long stringPtr = POffHeapLongArray.get(addr, index + SHIFT);
         if (stringPtr != OffHeapConstants.NULL_PTR) {
             POffHeapString.free(stringPtr);
         }
-        stringPtr = POffHeapString.fromObject(valueToInsert);
+        if (valueToInsert == null) {
+            stringPtr = OffHeapConstants.NULL_PTR;
+        } else {
+            stringPtr = POffHeapString.fromObject(arena, valueToInsert);
+        }
         POffHeapLongArray.set(addr, index + SHIFT, stringPtr);
     }
 
@@ -79,7 +91,7 @@ public class POffHeapStringArray2 {
         if (srcAddr == OffHeapConstants.NULL_PTR) {
             return srcAddr;
         }
-        long newAddr = unsafe.allocateMemory(length * 8);
+        long newAddr = POffHeapAllocator.allocate(length * 8);
         if (OffHeapConstants.DEBUG_MODE) {
             OffHeapConstants.SEGMENTS.put(newAddr, (length * 8));
         }
@@ -93,21 +105,9 @@ public class POffHeapStringArray2 {
         for (long i = SHIFT; i < capacity+SHIFT; i++) {
             long stringPtr = POffHeapLongArray.get(addr, i);
             if (stringPtr != OffHeapConstants.NULL_PTR) {
-                if (OffHeapConstants.DEBUG_MODE) {
-                    if (!OffHeapConstants.SEGMENTS.containsKey(stringPtr)) {
-                        throw new RuntimeException("Bad ADDR!");
-                    }
-                    OffHeapConstants.SEGMENTS.remove(stringPtr);
-                }
                 POffHeapString.free(stringPtr);
             }
         }
-        if (OffHeapConstants.DEBUG_MODE) {
-            if (!OffHeapConstants.SEGMENTS.containsKey(addr)) {
-                throw new RuntimeException("Bad ADDR!");
-            }
-            OffHeapConstants.SEGMENTS.remove(addr);
-        }
         POffHeapLongArray.free(addr);
     }
 
@@ -17,13 +17,15 @@ package greycat.memory;
 
 import greycat.chunk.Chunk;
 import greycat.chunk.ChunkType;
+import greycat.chunk.EvictionPolicy;
+import greycat.memory.primary.POffHeapArena;
 
 public class BenchmarkChunk {
 
     public static void main(String[] args) {
         int nb = 3000000;
         long init = System.currentTimeMillis();
-        OffHeapChunkSpace space = new OffHeapChunkSpace(nb, null);
+        OffHeapChunkSpace space = new OffHeapChunkSpace(nb, -1, null, false, EvictionPolicy.LRU, POffHeapArena.SLAB_SIZE);
         for (int i = 0; i < nb; i++) {
             space.createAndMark(ChunkType.TIME_TREE_CHUNK, 0, 0, i);
 
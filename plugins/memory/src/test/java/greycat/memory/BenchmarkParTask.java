@@ -34,17 +34,17 @@ public class BenchmarkParTask {
         g.connect(result -> {
             final long previous = System.currentTimeMillis();
             final long previousCache = g.space().available();
-            newTask().loopPar("0", "9999",
+            newTask().declareIndex("nodes", "name").loopPar("0", "9999",
                     newTask()
                             .createNode()
                             .setAttribute("name", Type.STRING, "node_{{i}}")
                             .print("{{result}}")
-                            .addToGlobalIndex("nodes", "name")
+                            .updateIndex("nodes")
                             .loop("0", "999",
                                     newTask().travelInTime("{{i}}").setAttribute("val", Type.INT, "{{i}}").clearResult())
                             .ifThen(cond("i % 100 == 0"), newTask().save())
                             .clearResult()
-            ).save().readGlobalIndex("nodes").execute(g, new Callback<TaskResult>() {
+            ).save().readIndex("nodes").execute(g, new Callback<TaskResult>() {
                 @Override
                 public void on(TaskResult result) {
                     System.out.println("indexSize=" + result.size());
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.Type;
+import greycat.chunk.ChunkSpace;
+import greycat.chunk.ChunkType;
+import greycat.chunk.StateChunk;
+import greycat.memory.primary.POffHeapAllocator;
+import greycat.memory.primary.POffHeapArena;
+import greycat.memory.primary.POffHeapLongArray;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapArenaTest {
+
+    @After
+    public void tearDown() throws Exception {
+        if (OffHeapConstants.DEBUG_MODE) {
+            Assert.assertEquals(OffHeapConstants.SEGMENTS.size(), 0);
+        }
+    }
+
+    @Test
+    public void sizeClassTest() {
+        final POffHeapArena arena = POffHeapAllocator.newArena(POffHeapArena.SLAB_SIZE);
+        final long first = POffHeapLongArray.allocate(arena, 3);
+        Assert.assertEquals(1, arena.allocations());
+        Assert.assertEquals(1, arena.slabs());
+        Assert.assertEquals(POffHeapArena.SLAB_SIZE, arena.reservedBytes());
+        Assert.assertEquals(24, arena.requestedBytes());
+        //24 bytes and the header fit in the 32 bytes class
+        Assert.assertEquals(32, arena.usedBytes());
+        //blocks are recycled through the free list of their class
+        POffHeapLongArray.free(first);
+        Assert.assertEquals(0, arena.usedBytes());
+        final long second = POffHeapLongArray.allocate(arena, 3);
+        Assert.assertEquals(first, second);
+        //the block stays in place as long as its class fits
+        POffHeapLongArray.set(second, 0, 42);
+        POffHeapLongArray.set(second, 1, 43);
+        final long grown = POffHeapLongArray.reallocate(second, 2);
+        Assert.assertEquals(second, grown);
+        Assert.assertEquals(16, arena.requestedBytes());
+        final long moved = POffHeapLongArray.reallocate(grown, 100);
+        Assert.assertNotEquals(grown, moved);
+        Assert.assertEquals(42, POffHeapLongArray.get(moved, 0));
+        Assert.assertEquals(43, POffHeapLongArray.get(moved, 1));
+        Assert.assertEquals(800, arena.requestedBytes());
+        POffHeapLongArray.free(moved);
+        Assert.assertEquals(0, arena.requestedBytes());
+        Assert.assertEquals(3, arena.frees());
+        Assert.assertEquals(1d, arena.fragmentation(), 0);
+        POffHeapAllocator.release(arena);
+        Assert.assertEquals(0, arena.slabs());
+        Assert.assertEquals(0, arena.reservedBytes());
+    }
+
+    @Test
+    public void largeTest() {
+        final POffHeapArena arena = POffHeapAllocator.newArena(POffHeapArena.SLAB_SIZE);
+        final long large = POffHeapLongArray.allocate(arena, 100000);
+        //large blocks are not carved out of slabs
+        Assert.assertEquals(0, arena.slabs());
+        Assert.assertEquals(800000, arena.requestedBytes());
+        POffHeapLongArray.set(large, 99999, 42);
+        //resizes and releases are routed to the owning arena
+        final long larger = POffHeapLongArray.reallocate(large, 200000);
+        Assert.assertEquals(42, POffHeapLongArray.get(larger, 99999));
+        Assert.assertEquals(1600000, arena.requestedBytes());
+        POffHeapLongArray.free(larger);
+        Assert.assertEquals(0, arena.reservedBytes());
+        POffHeapAllocator.release(arena);
+    }
+
+    @Test
+    public void spaceTest() {
+        final ChunkSpace space = new OffHeapMemoryFactory().withSlabSize(64 * 1024).newSpace(100, -1, null, false);
+        final POffHeapArena arena = ((OffHeapChunkSpace) space).arena();
+        final long before = arena.allocations();
+        final StateChunk chunk = (StateChunk) space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 0);
+        chunk.setAt(0, Type.STRING, "hello");
+        chunk.getOrCreateAt(1, Type.LONG_ARRAY);
+        //segments of the chunk come from the arena of the space
+        Assert.assertTrue(arena.allocations() >= before + 3);
+        Assert.assertTrue(arena.requestedBytes() > 0);
+        Assert.assertTrue(arena.fragmentation() < 1);
+        space.free(chunk);
+        space.freeAll();
+        Assert.assertNull(((OffHeapChunkSpace) space).arena());
+        Assert.assertEquals(0, arena.reservedBytes());
+    }
+
+    @Test
+    public void bufferUnderLockTest() {
+        final ChunkSpace space = new OffHeapMemoryFactory().newSpace(100, -1, null, false);
+        final POffHeapArena arena = ((OffHeapChunkSpace) space).arena();
+        final OffHeapStateChunk chunk = (OffHeapStateChunk) space.createAndMark(ChunkType.STATE_CHUNK, 0, 0, 0);
+        final long before = arena.allocations();
+        final OffHeapBuffer buffer = new OffHeapBuffer();
+        //as during a save, the buffer is lazily allocated while the chunk is locked
+        chunk.lock();
+        try {
+            buffer.write((byte) 42);
+        } finally {
+            chunk.unlock();
+        }
+        Assert.assertEquals(before, arena.allocations());
+        space.free(chunk);
+        space.freeAll();
+        //the buffer does not belong to the space and outlives it
+        Assert.assertEquals(42, buffer.read(0));
+        buffer.free();
+    }
+
+}
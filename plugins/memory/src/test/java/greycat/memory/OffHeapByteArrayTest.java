@@ -19,6 +19,7 @@ package greycat.memory;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
+import greycat.memory.primary.POffHeapAllocator;
 import greycat.memory.primary.POffHeapByteArray;
 
 import java.nio.ByteBuffer;
@@ -65,7 +66,7 @@ public class OffHeapByteArrayTest {
     public void copyIntArrayTest() {
         int[] heapTable = new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, 3, 4, 5};
 
-        final long offHeapTableAddr = POffHeapByteArray.allocate(heapTable.length * 4); //int on 4 bytes
+        final long offHeapTableAddr = POffHeapByteArray.allocate(POffHeapAllocator.shared(), heapTable.length * 4); //int on 4 bytes
         POffHeapByteArray.copyArray(heapTable, offHeapTableAddr,0, heapTable.length);
 
         byte[] data = new byte[heapTable.length * 4];
@@ -85,7 +86,7 @@ public class OffHeapByteArrayTest {
     public void copyFloatArrayTest() {
         float[] heapTable = new float[]{Float.MAX_VALUE, Float.MIN_VALUE, 3.7f, 4.2f, 5.4f};
 
-        final long offHeapTableAddr = POffHeapByteArray.allocate(heapTable.length * 4); //float on 4 bytes
+        final long offHeapTableAddr = POffHeapByteArray.allocate(POffHeapAllocator.shared(), heapTable.length * 4); //float on 4 bytes
         POffHeapByteArray.copyArray(heapTable, offHeapTableAddr,0, heapTable.length);
 
         byte[] data = new byte[heapTable.length * 4];
@@ -107,7 +108,7 @@ public class OffHeapByteArrayTest {
     public void copyByteArrayTest() {
         byte[] byteTable = new byte[]{127, 127, 8, 9};
 
-        final long offHeapTableAddr = POffHeapByteArray.allocate(byteTable.length); //byte on 1 bytes
+        final long offHeapTableAddr = POffHeapByteArray.allocate(POffHeapAllocator.shared(), byteTable.length); //byte on 1 bytes
         POffHeapByteArray.copyArray(byteTable, offHeapTableAddr,0, byteTable.length);
 
         byte[] data = new byte[byteTable.length];
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.chunk.Stack;
+import greycatTest.internal.chunk.AbstractFixedStackTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapClockStackTest extends AbstractFixedStackTest {
+
+    @Test
+    public void offHeapClockStackTest() {
+        Stack stack = new OffHeapClockStack(CAPACITY, true);
+        test(stack);
+        stack.free();
+
+        if (OffHeapConstants.DEBUG_MODE) {
+            Assert.assertEquals(OffHeapConstants.SEGMENTS.size(), 0);
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycatTest.internal.chunk.AbstractEStructArrayTest;
+import org.junit.After;
+import org.junit.Assert;
+
+public class OffHeapEStructArrayTest extends AbstractEStructArrayTest {
+
+    public OffHeapEStructArrayTest() {
+        super(new OffHeapMemoryFactory());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (OffHeapConstants.DEBUG_MODE) {
+            Assert.assertEquals(OffHeapConstants.SEGMENTS.size(), 0);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.*;
+import greycat.internal.CoreNodeValue;
+import greycat.scheduler.NoopScheduler;
+import greycat.struct.Relation;
+import greycatTest.internal.MockStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs whole graphs, resolver included, on top of the off-heap chunk space.
+ */
+public class OffHeapGraphTest {
+
+    @After
+    public void tearDown() throws Exception {
+        if (OffHeapConstants.DEBUG_MODE) {
+            Assert.assertEquals(OffHeapConstants.SEGMENTS.size(), 0);
+        }
+    }
+
+    private static Graph newGraph(final MockStorage storage) {
+        return new GraphBuilder()
+                .withPlugin(new OffHeapMemoryPlugin())
+                .withMemorySize(10000)
+                .withStorage(storage)
+                .withScheduler(new NoopScheduler())
+                .build();
+    }
+
+    @Test
+    public void timeAndWorldTest() {
+        final Graph graph = newGraph(new MockStorage());
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = graph.newNode(0, 0);
+                final long id = node.id();
+                node.set("name", Type.STRING, "sensor");
+                final Node child = graph.newNode(0, 0);
+                node.addToRelation("children", child);
+                child.free();
+                node.free();
+                for (int i = 0; i < 1000; i++) {
+                    final int time = i;
+                    graph.lookup(0, time, id, new Callback<Node>() {
+                        @Override
+                        public void on(Node result) {
+                            result.set("value", Type.DOUBLE, time * 1.5d);
+                            result.free();
+                        }
+                    });
+                }
+                final long world = graph.fork(0);
+                graph.lookup(world, 500, id, new Callback<Node>() {
+                    @Override
+                    public void on(Node result) {
+                        result.set("value", Type.DOUBLE, -1d);
+                        result.free();
+                    }
+                });
+                for (int i = 0; i < 1000; i = i + 7) {
+                    final int time = i;
+                    graph.lookup(0, time, id, new Callback<Node>() {
+                        @Override
+                        public void on(Node result) {
+                            Assert.assertEquals(time * 1.5d, (double) result.get("value"), 0);
+                            Assert.assertEquals("sensor", result.get("name"));
+                            Assert.assertEquals(1, ((Relation) result.get("children")).size());
+                            result.free();
+                        }
+                    });
+                }
+                graph.lookup(world, 600, id, new Callback<Node>() {
+                    @Override
+                    public void on(Node result) {
+                        Assert.assertEquals(-1d, (double) result.get("value"), 0);
+                        result.free();
+                    }
+                });
+                graph.lookup(world, 400, id, new Callback<Node>() {
+                    @Override
+                    public void on(Node result) {
+                        Assert.assertEquals(400 * 1.5d, (double) result.get("value"), 0);
+                        result.free();
+                    }
+                });
+                graph.disconnect(null);
+            }
+        });
+    }
+
+    @Test
+    public void nodeValueTest() {
+        final Graph graph = newGraph(new MockStorage());
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final NodeValue value = (NodeValue) graph.newTypedNode(0, 0, CoreNodeValue.NAME);
+                final long id = value.id();
+                value.free();
+                for (int i = 0; i < 1000; i++) {
+                    final int time = i;
+                    graph.lookup(0, time, id, new Callback<NodeValue>() {
+                        @Override
+                        public void on(NodeValue result) {
+                            result.setValue(time * 2d);
+                            result.free();
+                        }
+                    });
+                }
+                graph.lookup(0, 500, id, new Callback<NodeValue>() {
+                    @Override
+                    public void on(NodeValue result) {
+                        Assert.assertEquals(1000d, result.getValue(), 0);
+                        result.free();
+                    }
+                });
+                graph.disconnect(null);
+            }
+        });
+    }
+
+    @Test
+    public void saveLoadTest() {
+        final MockStorage storage = new MockStorage();
+        final long[] id = new long[1];
+        final Graph graph = newGraph(storage);
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = graph.newNode(0, 0);
+                id[0] = node.id();
+                node.set("name", Type.STRING, "persisted");
+                node.getOrCreate("values", Type.LONG_ARRAY);
+                node.free();
+                for (int i = 0; i < 100; i++) {
+                    final int time = i;
+                    graph.lookup(0, time, id[0], new Callback<Node>() {
+                        @Override
+                        public void on(Node result) {
+                            result.set("value", Type.INT, time);
+                            result.free();
+                        }
+                    });
+                }
+                graph.save(null);
+                graph.disconnect(null);
+            }
+        });
+        final Graph reloaded = newGraph(storage);
+        reloaded.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                reloaded.lookup(0, 42, id[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node result) {
+                        Assert.assertEquals("persisted", result.get("name"));
+                        Assert.assertEquals(42, result.get("value"));
+                        result.free();
+                    }
+                });
+                reloaded.disconnect(null);
+            }
+        });
+    }
+
+}
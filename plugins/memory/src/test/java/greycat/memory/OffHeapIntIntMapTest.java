@@ -15,13 +15,13 @@
  */
 package greycat.memory;
 
-import greycatTest.internal.chunk.AbstractEGraphTest;
+import greycatTest.internal.chunk.AbstractIntIntMapTest;
 import org.junit.After;
 import org.junit.Assert;
 
-public class OffHeapEGraphTest extends AbstractEGraphTest {
+public class OffHeapIntIntMapTest extends AbstractIntIntMapTest {
 
-    public OffHeapEGraphTest() {
+    public OffHeapIntIntMapTest() {
         super(new OffHeapMemoryFactory());
     }
 
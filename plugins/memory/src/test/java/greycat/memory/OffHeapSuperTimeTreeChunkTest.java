@@ -0,0 +1,100 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.chunk.ChunkSpace;
+import greycat.chunk.ChunkType;
+import greycat.chunk.SuperTimeTreeChunk;
+import greycat.struct.Buffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapSuperTimeTreeChunkTest {
+
+    @After
+    public void tearDown() throws Exception {
+        if (OffHeapConstants.DEBUG_MODE) {
+            Assert.assertEquals(OffHeapConstants.SEGMENTS.size(), 0);
+        }
+    }
+
+    @Test
+    public void test() {
+        OffHeapMemoryFactory factory = new OffHeapMemoryFactory();
+        ChunkSpace space = factory.newSpace(100, 10, null, false);
+        SuperTimeTreeChunk tree = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 1);
+        for (int i = 0; i < 100; i = i + 10) {
+            tree.insert(i, i);
+        }
+        for (int i = 5; i < 100; i = i + 10) {
+            Assert.assertEquals(tree.previous(i), i - 5);
+        }
+        Assert.assertEquals(90, tree.lastKey());
+        Assert.assertEquals(90, tree.lastValue());
+        tree.setLastValue(42);
+        Assert.assertEquals(42, tree.lastValue());
+        space.free(tree);
+        space.freeAll();
+    }
+
+    @Test
+    public void loadSaveTest() {
+        OffHeapMemoryFactory factory = new OffHeapMemoryFactory();
+        ChunkSpace space = factory.newSpace(100, 10, null, false);
+        SuperTimeTreeChunk tree = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 1);
+        for (int i = 0; i < 100; i = i + 10) {
+            tree.insert(i, i);
+        }
+        tree.setTimeSensitivity(-1);
+        tree.setTimeSensitivityOffset(50);
+        Buffer buf = factory.newBuffer();
+        tree.save(buf);
+        SuperTimeTreeChunk tree2 = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 2);
+        tree2.load(buf);
+        buf.free();
+        for (int i = 5; i < 100; i = i + 10) {
+            Assert.assertEquals(i - 5, tree2.previous(i));
+        }
+        Assert.assertTrue(tree2.timeSensitivity() == -1);
+        Assert.assertTrue(tree2.timeSensitivityOffset() == 50);
+        space.free(tree);
+        space.free(tree2);
+        space.freeAll();
+    }
+
+    @Test
+    public void stressTest() {
+        OffHeapMemoryFactory factory = new OffHeapMemoryFactory();
+        ChunkSpace space = factory.newSpace(100, 10, null, false);
+        SuperTimeTreeChunk tree = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 1);
+        for (long i = 1000000; i > 0; i = i - 2) {
+            tree.insert(i, i);
+        }
+        Assert.assertEquals(95000, tree.previous(95001));
+        Assert.assertEquals(120002, tree.next(120001));
+        Buffer buffer = factory.newBuffer();
+        tree.save(buffer);
+        SuperTimeTreeChunk tree2 = (SuperTimeTreeChunk) space.createAndMark(ChunkType.SUPER_TIME_TREE_CHUNK, 0, 0, 2);
+        tree2.load(buffer);
+        buffer.free();
+        Assert.assertEquals(tree.size(), tree2.size());
+        space.free(tree);
+        space.free(tree2);
+        space.freeAll();
+    }
+
+}
@@ -39,7 +39,7 @@ public class OffHeapTimeTreeChunkTest extends AbstractTimeTreeTest {
 
     @Test
     public void nextTest() {
-        ChunkSpace space = factory.newSpace(100, null, false);
+        ChunkSpace space = factory.newSpace(100, -1, null, false);
         TimeTreeChunk tree = (TimeTreeChunk) space.createAndMark(ChunkType.TIME_TREE_CHUNK, 0, 0, 0);
         Buffer buffer = factory.newBuffer();
         buffer.writeAll("W:////////9:q76Juyg:q7/CVoA:q7/dx+Q:q8APAXQ:q8BNF/w:q8BNdbw:q8BSEWw:q8CrNbw:q8DTxIw:q8D3lng".getBytes());
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.memory;
+
+import greycat.chunk.ChunkSpace;
+import greycat.chunk.ChunkType;
+import greycat.chunk.TimeTreeDValueChunk;
+import greycat.struct.Buffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapTimeTreeDValueChunkTest {
+
+    @After
+    public void tearDown() throws Exception {
+        if (OffHeapConstants.DEBUG_MODE) {
+            Assert.assertEquals(OffHeapConstants.SEGMENTS.size(), 0);
+        }
+    }
+
+    @Test
+    public void test() {
+        ChunkSpace space = new OffHeapMemoryFactory().newSpace(100, 10, null, false);
+        TimeTreeDValueChunk ttvc = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        for (int i = 0; i < 100; i = i + 10) {
+            ttvc.insertValue(i, i * 1.5d);
+        }
+        for (int i = 5; i < 100; i = i + 10) {
+            Assert.assertEquals(i - 5, ttvc.previous(i));
+            int offset = ttvc.previousOffset(i);
+            Assert.assertEquals(i-5,ttvc.getKey(offset));
+            Assert.assertTrue((i-5)*1.5d == ttvc.getValue(offset));
+        }
+
+        Buffer buf = new OffHeapBuffer();
+        ttvc.save(buf);
+        TimeTreeDValueChunk ttvc2 = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 2);
+        ttvc2.load(buf);
+        buf.free();
+        for (int i = 5; i < 100; i = i + 10) {
+            Assert.assertEquals(i - 5, ttvc2.previous(i));
+            int offset = ttvc.previousOffset(i);
+            Assert.assertEquals(i-5,ttvc.getKey(offset));
+            Assert.assertTrue((i-5)*1.5d == ttvc.getValue(offset));
+        }
+        space.free(ttvc);
+        space.free(ttvc2);
+        space.freeAll();
+    }
+
+    @Test
+    public void appendTest() {
+        ChunkSpace space = new OffHeapMemoryFactory().newSpace(100, 10, null, false);
+        TimeTreeDValueChunk ttvc = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        ttvc.insertValue(0, 0d);
+        final long[] keys = new long[1000];
+        final double[] values = new double[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (i + 1) * 10;
+            values[i] = (i + 1) * 1.5d;
+        }
+        //bulk copy, then small appends inserted one by one
+        ttvc.appendValues(keys, values, 0, 500);
+        for (int i = 500; i < keys.length; i = i + 50) {
+            ttvc.appendValues(keys, values, i, 50);
+        }
+        Assert.assertEquals(1001, ttvc.size());
+        Assert.assertEquals(10000, ttvc.max());
+        for (int i = 0; i <= 10000; i = i + 10) {
+            Assert.assertEquals(i, ttvc.previousOrEqual(i + 5));
+            Assert.assertEquals(i, ttvc.getKey(ttvc.previousOffset(i + 5)));
+            Assert.assertTrue(i / 10 * 1.5d == ttvc.getValue(ttvc.previousOffset(i + 5)));
+            if (i < 10000) {
+                Assert.assertEquals(i + 10, ttvc.next(i));
+            }
+        }
+        //tree is still balanced for further insertions
+        ttvc.insertValue(5, 7d);
+        Assert.assertEquals(5, ttvc.previous(10));
+        Assert.assertEquals(10, ttvc.next(5));
+        boolean failed = false;
+        try {
+            ttvc.appendValues(new long[]{20}, new double[]{0}, 0, 1);
+        } catch (RuntimeException e) {
+            failed = true;
+        }
+        Assert.assertTrue(failed);
+        space.free(ttvc);
+        space.freeAll();
+    }
+
+    @Test
+    public void compressedTest() {
+        ChunkSpace space = new OffHeapMemoryFactory().withBinaryFormat().newSpace(100, 10, null, false);
+        TimeTreeDValueChunk ttvc = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        fill(ttvc);
+        Buffer buf = new OffHeapBuffer();
+        ttvc.save(buf);
+        //compared to the text encoding of the same points
+        ChunkSpace textSpace = new OffHeapMemoryFactory().newSpace(100, 10, null, false);
+        TimeTreeDValueChunk textTtvc = (TimeTreeDValueChunk) textSpace.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 1);
+        fill(textTtvc);
+        Buffer textBuf = new OffHeapBuffer();
+        textTtvc.save(textBuf);
+        Assert.assertTrue(buf.length() * 1.5 < textBuf.length());
+        textBuf.free();
+        textSpace.free(textTtvc);
+        textSpace.freeAll();
+
+        TimeTreeDValueChunk ttvc2 = (TimeTreeDValueChunk) space.createAndMark(ChunkType.TIME_TREE_DVALUE_CHUNK, 0, 0, 2);
+        ttvc2.load(buf);
+        buf.free();
+        Assert.assertEquals(ttvc.size(), ttvc2.size());
+        long time = 1500000000000L;
+        for (int i = 0; i < 1000; i++) {
+            time = time + 1000 + (i % 7 == 0 ? 3 : 0) + (i % 100 == 0 ? 100000 : 0);
+            //previousOffset is strict
+            int offset = ttvc2.previousOffset(time + 1);
+            Assert.assertEquals(time, ttvc2.getKey(offset));
+            Assert.assertEquals(ttvc.getValue(ttvc.previousOffset(time + 1)), ttvc2.getValue(offset));
+        }
+        space.free(ttvc);
+        space.free(ttvc2);
+        space.freeAll();
+    }
+
+    /**
+     * Mostly regular sampling, with jitter, gaps, repeated and null values.
+     */
+    private static void fill(TimeTreeDValueChunk ttvc) {
+        long time = 1500000000000L;
+        for (int i = 0; i < 1000; i++) {
+            time = time + 1000 + (i % 7 == 0 ? 3 : 0) + (i % 100 == 0 ? 100000 : 0);
+            if (i % 50 == 0) {
+                ttvc.insertValue(time, null);
+            } else if (i % 3 == 0) {
+                ttvc.insertValue(time, 21.5);
+            } else {
+                ttvc.insertValue(time, Math.sin(i) * 100);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.mmap;
+
+import greycat.Constants;
+import greycat.struct.Buffer;
+import greycat.struct.BufferIterator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read only buffer over values stored in the mapped segments of a {@link MMapStorage}.
+ * Values are not copied: reads go straight to the mapped pages, values are separated by {@link Constants#BUFFER_SEP}.
+ * Segments are append only, so that the buffer remains valid after further writes.
+ */
+final class MMapBuffer implements Buffer {
+
+    private static final String _readOnlyError = "Write operation forbidden on a mapped buffer";
+
+    //null for an unknown key
+    private final ByteBuffer[] _values;
+    private final long[] _starts;
+    private final long _length;
+
+    MMapBuffer(final ByteBuffer[] p_values) {
+        this._values = p_values;
+        this._starts = new long[p_values.length];
+        long position = 0;
+        for (int i = 0; i < p_values.length; i++) {
+            if (i != 0) {
+                position++;
+            }
+            _starts[i] = position;
+            position = position + valueLength(i);
+        }
+        this._length = position;
+    }
+
+    private int valueLength(final int index) {
+        final ByteBuffer value = _values[index];
+        if (value == null) {
+            return 0;
+        }
+        return value.limit();
+    }
+
+    private int valueAt(final long position) {
+        int low = 0;
+        int high = _starts.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (_starts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public final long writeIndex() {
+        throw new RuntimeException(_readOnlyError);
+    }
+
+    @Override
+    public final void write(byte b) {
+        throw new RuntimeException(_readOnlyError);
+    }
+
+    @Override
+    public final void writeAll(byte[] bytes) {
+        throw new RuntimeException(_readOnlyError);
+    }
+
+    @Override
+    public final void writeString(String input) {
+        throw new RuntimeException(_readOnlyError);
+    }
+
+    @Override
+    public final void writeChar(char input) {
+        throw new RuntimeException(_readOnlyError);
+    }
+
+    @Override
+    public final byte read(final long position) {
+        if (position < 0 || position >= _length) {
+            throw new ArrayIndexOutOfBoundsException("" + position);
+        }
+        final int index = valueAt(position);
+        final long relative = position - _starts[index];
+        if (relative < valueLength(index)) {
+            return _values[index].get((int) relative);
+        }
+        return Constants.BUFFER_SEP;
+    }
+
+    @Override
+    public final byte[] data() {
+        if (_length == 0) {
+            return new byte[0];
+        }
+        return slice(0, _length - 1);
+    }
+
+    @Override
+    public final long length() {
+        return _length;
+    }
+
+    @Override
+    public final void free() {
+        //nothing to release, the mapping is owned by the storage
+    }
+
+    @Override
+    public final BufferIterator iterator() {
+        final ByteBuffer[] values = _values;
+        return new BufferIterator() {
+            private int _cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                return _cursor < values.length;
+            }
+
+            @Override
+            public Buffer next() {
+                if (_cursor >= values.length) {
+                    return null;
+                }
+                final Buffer view = new MMapBuffer(new ByteBuffer[]{values[_cursor]});
+                _cursor++;
+                return view;
+            }
+        };
+    }
+
+    @Override
+    public final byte[] slice(final long initPos, final long endPos) {
+        final byte[] result = new byte[(int) (endPos - initPos + 1)];
+        final int index = valueAt(initPos);
+        if (endPos - _starts[index] < valueLength(index)) {
+            //within a single value, bulk copy from the mapped pages
+            final ByteBuffer value = _values[index].duplicate();
+            value.position((int) (initPos - _starts[index]));
+            value.get(result);
+        } else {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = read(initPos + i);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        return new String(data());
+    }
+
+}
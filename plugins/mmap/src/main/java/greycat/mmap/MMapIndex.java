@@ -0,0 +1,200 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.mmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Open addressing hash table mapped from the index file of a {@link MMapStorage}.
+ * A slot holds the hash of a key and the location of its last record, keys themselves are compared in the segments.
+ * The header also persists the state of the segments and the lock prefix.
+ */
+final class MMapIndex {
+
+    static final long MAGIC = 0x4743494E44455831L;
+
+    static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * Flag of the location of a removed key, the slot is kept to find the key again when it is stored back
+     */
+    static final long REMOVED = Long.MIN_VALUE;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int SEGMENTS_OFFSET = 24;
+    private static final int TAIL_OFFSET = 32;
+    private static final int PREFIX_OFFSET = 40;
+    private static final int HEADER = 64;
+    private static final int SLOT = 16;
+
+    private final MappedByteBuffer _map;
+    private final int _capacity;
+    private final int _mask;
+
+    private MMapIndex(final MappedByteBuffer p_map, final int p_capacity) {
+        this._map = p_map;
+        this._capacity = p_capacity;
+        this._mask = p_capacity - 1;
+    }
+
+    /**
+     * Maps an existing index file, or creates it.
+     *
+     * @param file     index file
+     * @param capacity number of slots of a new index, rounded to the next power of two
+     * @return the mapped index
+     * @throws IOException if the file cannot be mapped
+     */
+    static MMapIndex open(final File file, final int capacity) throws IOException {
+        final boolean exists = file.exists() && file.length() > HEADER;
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            int slots;
+            if (exists) {
+                final long magic = raf.readLong();
+                if (magic != MAGIC) {
+                    throw new IOException("Corrupted index file " + file.getAbsolutePath());
+                }
+                slots = (int) raf.readLong();
+            } else {
+                slots = 1;
+                while (slots < capacity && slots < MAX_CAPACITY) {
+                    slots = slots << 1;
+                }
+                raf.setLength(HEADER + ((long) slots) * SLOT);
+            }
+            final MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER + ((long) slots) * SLOT);
+            if (!exists) {
+                map.putLong(CAPACITY_OFFSET, slots);
+                map.putLong(MAGIC_OFFSET, MAGIC);
+            }
+            return new MMapIndex(map, slots);
+        } finally {
+            //the mapping remains valid once the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Copies the live slots and the header into a new index of twice the capacity.
+     *
+     * @param file file of the new index, must not exist
+     * @return the mapped new index
+     * @throws IOException if the file cannot be mapped
+     */
+    final MMapIndex grow(final File file) throws IOException {
+        if (_capacity >= MAX_CAPACITY) {
+            throw new IOException("Index is full, " + MAX_CAPACITY + " keys at most");
+        }
+        final MMapIndex grown = open(file, _capacity << 1);
+        long size = 0;
+        for (int i = 0; i < _capacity; i++) {
+            final long location = locationAt(i);
+            if (location > 0) {
+                final long hash = hashAt(i);
+                int slot = grown.start(hash);
+                while (grown.locationAt(slot) != 0) {
+                    slot = grown.next(slot);
+                }
+                grown.set(slot, hash, location);
+                size++;
+            }
+        }
+        grown._map.putLong(SIZE_OFFSET, size);
+        grown.setSegments(segments());
+        grown.setTail(tail());
+        grown.setPrefix(prefix());
+        return grown;
+    }
+
+    final int capacity() {
+        return _capacity;
+    }
+
+    /**
+     * @return number of used slots, removed keys included
+     */
+    final long size() {
+        return _map.getLong(SIZE_OFFSET);
+    }
+
+    final int start(final long hash) {
+        //spread the high bits, the mask only keeps the low ones
+        return (int) ((hash ^ (hash >>> 32) ^ (hash >>> 16)) & _mask);
+    }
+
+    final int next(final int slot) {
+        return (slot + 1) & _mask;
+    }
+
+    final long hashAt(final int slot) {
+        return _map.getLong(HEADER + slot * SLOT);
+    }
+
+    /**
+     * @return location of the record of the slot, 0 for an empty slot
+     */
+    final long locationAt(final int slot) {
+        return _map.getLong(HEADER + slot * SLOT + 8);
+    }
+
+    final void set(final int slot, final long hash, final long location) {
+        final int offset = HEADER + slot * SLOT;
+        if (_map.getLong(offset + 8) == 0) {
+            _map.putLong(SIZE_OFFSET, _map.getLong(SIZE_OFFSET) + 1);
+        }
+        _map.putLong(offset, hash);
+        _map.putLong(offset + 8, location);
+    }
+
+    final long segments() {
+        return _map.getLong(SEGMENTS_OFFSET);
+    }
+
+    final void setSegments(final long segments) {
+        _map.putLong(SEGMENTS_OFFSET, segments);
+    }
+
+    /**
+     * @return write offset in the last segment
+     */
+    final long tail() {
+        return _map.getLong(TAIL_OFFSET);
+    }
+
+    final void setTail(final long tail) {
+        _map.putLong(TAIL_OFFSET, tail);
+    }
+
+    final long prefix() {
+        return _map.getLong(PREFIX_OFFSET);
+    }
+
+    final void setPrefix(final long prefix) {
+        _map.putLong(PREFIX_OFFSET, prefix);
+    }
+
+    final void force() {
+        _map.force();
+    }
+
+}
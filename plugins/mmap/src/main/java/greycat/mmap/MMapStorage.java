@@ -0,0 +1,554 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.mmap;
+
+import greycat.Callback;
+import greycat.Constants;
+import greycat.Graph;
+import greycat.plugin.Storage;
+import greycat.struct.Buffer;
+import greycat.struct.BufferIterator;
+import greycat.utility.Base64;
+import greycat.utility.HashHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage keeping chunks in memory-mapped, append only segment files of a directory, without any external library.
+ * Records are located through an on-disk hash index keyed by the {@link greycat.utility.KeyHelper} keys.
+ * Reads do not copy values: they are handed to the chunks as views over the mapped segments.
+ * A restart only maps the files back, the page cache of the OS keeps the warm data.
+ * <p>
+ * Segments are append only: overwritten and removed records are not reclaimed while connected, and the files grow with every save.
+ * {@link #compact()} rewrites the live records into fresh segments, and has to be run while the storage is disconnected.
+ */
+public class MMapStorage implements Storage {
+
+    private static final String _connectedError = "PLEASE CONNECT YOUR DATABASE FIRST";
+    private static final String INDEX_FILE = "index";
+    private static final String SEGMENT_PREFIX = "segment_";
+    private static final String COMPACTED_SUFFIX = ".compacted";
+    private static final String REPLACED_SUFFIX = ".replaced";
+
+    private static final long SEGMENT_MAGIC = 0x4743534547303031L;
+    private static final int SEGMENT_HEADER = 8;
+    //key length and value length
+    private static final int RECORD_HEADER = 8;
+
+    private final String storagePath;
+
+    private final List<Callback<Buffer>> updates = new ArrayList<Callback<Buffer>>();
+
+    private int _segmentSize = 64 * 1024 * 1024;
+    private int _indexCapacity = 1 << 16;
+    private boolean _sync = false;
+
+    private Graph graph;
+    private boolean isConnected;
+    private File _directory;
+    private MMapIndex _index;
+    private final List<MappedByteBuffer> _segments = new ArrayList<MappedByteBuffer>();
+    private int _tail;
+
+    public MMapStorage(String storagePath) {
+        this.isConnected = false;
+        this.storagePath = storagePath;
+    }
+
+    /**
+     * Sets the size of the segment files, a record larger than this size gets a segment of its own.
+     *
+     * @param segmentSize size in bytes
+     * @return the {@link MMapStorage}, for a fluent API
+     */
+    public MMapStorage withSegmentSize(int segmentSize) {
+        this._segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Sets the initial number of slots of a new index, which doubles when three quarters are used.
+     *
+     * @param indexCapacity number of slots
+     * @return the {@link MMapStorage}, for a fluent API
+     */
+    public MMapStorage withIndexCapacity(int indexCapacity) {
+        this._indexCapacity = indexCapacity;
+        return this;
+    }
+
+    /**
+     * Forces the modified pages to the disk before acknowledging each put.
+     * Records are forced before the index references them, so that a crash never leaves the index pointing to a record which is not on disk.
+     * Otherwise pages are written back by the OS, in any order, and on disconnect.
+     *
+     * @return the {@link MMapStorage}, for a fluent API
+     */
+    public MMapStorage withSync() {
+        this._sync = true;
+        return this;
+    }
+
+    @Override
+    public void get(Buffer keys, Callback<Buffer> callback) {
+        if (!isConnected) {
+            throw new RuntimeException(_connectedError);
+        }
+        final List<ByteBuffer> values = new ArrayList<ByteBuffer>();
+        synchronized (this) {
+            final BufferIterator it = keys.iterator();
+            while (it.hasNext()) {
+                final Buffer view = it.next();
+                final long location = _index.locationAt(lookup(view));
+                if (location > 0) {
+                    values.add(valueAt(location));
+                } else {
+                    values.add(null);
+                }
+            }
+        }
+        if (callback != null) {
+            callback.on(new MMapBuffer(values.toArray(new ByteBuffer[values.size()])));
+        }
+    }
+
+    @Override
+    public void put(Buffer stream, Callback<Boolean> callback) {
+        if (!isConnected) {
+            throw new RuntimeException(_connectedError);
+        }
+        try {
+            Buffer result = null;
+            if (updates.size() != 0) {
+                result = graph.newBuffer();
+            }
+            write(stream, result);
+            for (int i = 0; i < updates.size(); i++) {
+                final Callback<Buffer> explicit = updates.get(i);
+                explicit.on(result);
+            }
+            if (callback != null) {
+                callback.on(true);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (callback != null) {
+                callback.on(false);
+            }
+        }
+    }
+
+    @Override
+    public void putSilent(Buffer stream, Callback<Buffer> callback) {
+        if (!isConnected) {
+            throw new RuntimeException(_connectedError);
+        }
+        try {
+            final Buffer result = graph.newBuffer();
+            write(stream, result);
+            for (int i = 0; i < updates.size(); i++) {
+                final Callback<Buffer> explicit = updates.get(i);
+                explicit.on(result);
+            }
+            if (callback != null) {
+                callback.on(result);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (callback != null) {
+                callback.on(null);
+            }
+        }
+    }
+
+    @Override
+    public void remove(Buffer keys, Callback<Boolean> callback) {
+        if (!isConnected) {
+            throw new RuntimeException(_connectedError);
+        }
+        synchronized (this) {
+            final BufferIterator it = keys.iterator();
+            while (it.hasNext()) {
+                final Buffer view = it.next();
+                final int slot = lookup(view);
+                final long location = _index.locationAt(slot);
+                if (location > 0) {
+                    _index.set(slot, _index.hashAt(slot), location | MMapIndex.REMOVED);
+                }
+            }
+            if (_sync) {
+                _index.force();
+            }
+        }
+        if (callback != null) {
+            callback.on(true);
+        }
+    }
+
+    @Override
+    public void connect(Graph graph, Callback<Boolean> callback) {
+        if (isConnected) {
+            if (callback != null) {
+                callback.on(null);
+            }
+            return;
+        }
+        this.graph = graph;
+        try {
+            synchronized (this) {
+                recoverCompaction();
+                _directory = new File(storagePath);
+                if (!_directory.exists()) {
+                    _directory.mkdirs();
+                }
+                _index = MMapIndex.open(new File(_directory, INDEX_FILE), _indexCapacity);
+                final long nbSegments = _index.segments();
+                for (int i = 0; i < nbSegments; i++) {
+                    final File segmentFile = new File(_directory, SEGMENT_PREFIX + i);
+                    final MappedByteBuffer segment = map(segmentFile, segmentFile.length());
+                    if (segment.getLong(0) != SEGMENT_MAGIC) {
+                        throw new IOException("Corrupted segment file " + segmentFile.getAbsolutePath());
+                    }
+                    _segments.add(segment);
+                }
+                _tail = (int) _index.tail();
+                isConnected = true;
+            }
+            if (callback != null) {
+                callback.on(true);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            _index = null;
+            _segments.clear();
+            if (callback != null) {
+                callback.on(null);
+            }
+        }
+    }
+
+    @Override
+    public void disconnect(Callback<Boolean> callback) {
+        synchronized (this) {
+            if (isConnected) {
+                for (int i = 0; i < _segments.size(); i++) {
+                    _segments.get(i).force();
+                }
+                _index.force();
+            }
+            //mappings are released once the last buffer reading them is collected
+            _segments.clear();
+            _index = null;
+            isConnected = false;
+        }
+        if (callback != null) {
+            callback.on(true);
+        }
+    }
+
+    @Override
+    public void listen(Callback<Buffer> synCallback) {
+        updates.add(synCallback);
+    }
+
+    @Override
+    public void lock(Callback<Buffer> callback) {
+        if (!isConnected) {
+            throw new RuntimeException(_connectedError);
+        }
+        final long currentPrefix;
+        synchronized (this) {
+            currentPrefix = _index.prefix();
+            _index.setPrefix(currentPrefix + 1);
+            if (_sync) {
+                _index.force();
+            }
+        }
+        if (callback != null) {
+            Buffer newBuf = graph.newBuffer();
+            Base64.encodeIntToBuffer((int) currentPrefix, newBuf);
+            callback.on(newBuf);
+        }
+    }
+
+    @Override
+    public void unlock(Buffer previousLock, Callback<Boolean> callback) {
+        if (!isConnected) {
+            throw new RuntimeException(_connectedError);
+        }
+        callback.on(true);
+    }
+
+    /**
+     * Appends the records of a stream of keys and values, then points the index to them.
+     * The index is only updated once all records are appended, and forced when in sync mode.
+     *
+     * @param stream keys and values, as given to {@link #put(Buffer, Callback)}
+     * @param result buffer receiving the keys and hashes of the values for the listeners, can be null
+     */
+    private synchronized void write(final Buffer stream, final Buffer result) throws IOException {
+        final BufferIterator it = stream.iterator();
+        final int firstSegment = Math.max(_segments.size() - 1, 0);
+        final List<Buffer> keys = new ArrayList<Buffer>();
+        long[] locations = new long[16];
+        boolean isFirst = true;
+        while (it.hasNext()) {
+            final Buffer keyView = it.next();
+            final Buffer valueView = it.next();
+            if (valueView != null) {
+                if (keys.size() == locations.length) {
+                    final long[] extended = new long[locations.length * 2];
+                    System.arraycopy(locations, 0, extended, 0, locations.length);
+                    locations = extended;
+                }
+                locations[keys.size()] = append(keyView.data(), valueView.data());
+                keys.add(keyView);
+            }
+            if (result != null && valueView != null) {
+                if (isFirst) {
+                    isFirst = false;
+                } else {
+                    result.write(Constants.KEY_SEP);
+                }
+                result.writeAll(keyView.data());
+                result.write(Constants.KEY_SEP);
+                Base64.encodeLongToBuffer(HashHelper.hashBuffer(valueView, 0, valueView.length()), result);
+            }
+        }
+        if (_sync) {
+            for (int i = firstSegment; i < _segments.size(); i++) {
+                _segments.get(i).force();
+            }
+        }
+        //the index only references records once they are written
+        for (int i = 0; i < keys.size(); i++) {
+            final Buffer keyView = keys.get(i);
+            final long hash = HashHelper.hashBuffer(keyView, 0, keyView.length());
+            if ((_index.size() + 1) * 4 > ((long) _index.capacity()) * 3) {
+                growIndex();
+            }
+            _index.set(lookup(keyView, hash), hash, locations[i]);
+        }
+        _index.setSegments(_segments.size());
+        _index.setTail(_tail);
+        if (_sync) {
+            _index.force();
+        }
+    }
+
+    private long append(final byte[] key, final byte[] value) throws IOException {
+        final int keyLength = key.length;
+        final int valueLength = value.length;
+        final long recordLength = RECORD_HEADER + ((long) keyLength) + valueLength;
+        if (_segments.size() == 0 || _tail + recordLength > _segments.get(_segments.size() - 1).capacity()) {
+            final long segmentSize = Math.max(_segmentSize, SEGMENT_HEADER + recordLength);
+            if (segmentSize > Integer.MAX_VALUE) {
+                throw new IOException("Record of " + recordLength + " bytes exceeds the maximum size of a segment");
+            }
+            final MappedByteBuffer segment = map(new File(_directory, SEGMENT_PREFIX + _segments.size()), segmentSize);
+            segment.putLong(0, SEGMENT_MAGIC);
+            _segments.add(segment);
+            _tail = SEGMENT_HEADER;
+        }
+        final int segmentIndex = _segments.size() - 1;
+        final int offset = _tail;
+        final ByteBuffer segment = _segments.get(segmentIndex).duplicate();
+        segment.putInt(offset, keyLength);
+        segment.putInt(offset + 4, valueLength);
+        segment.position(offset + RECORD_HEADER);
+        segment.put(key);
+        segment.put(value);
+        _tail = (int) (offset + recordLength);
+        return (((long) segmentIndex) << 32) | offset;
+    }
+
+    /**
+     * Rewrites the live records into fresh segments and a fresh index, dropping overwritten and removed records.
+     * The storage has to be disconnected: the compacted files are built next to the directory, which is then swapped with them.
+     * An interrupted swap is completed by the next {@link #connect(Graph, Callback)} or compaction.
+     *
+     * @throws IOException if the files cannot be read or written
+     */
+    public synchronized void compact() throws IOException {
+        if (isConnected) {
+            throw new RuntimeException("Bad API usage: compaction runs offline, disconnect the storage first");
+        }
+        recoverCompaction();
+        final File directory = new File(storagePath);
+        if (!new File(directory, INDEX_FILE).exists()) {
+            return;
+        }
+        final File compacted = new File(storagePath + COMPACTED_SUFFIX);
+        deleteAll(compacted);
+        connect(null, null);
+        if (!isConnected) {
+            throw new IOException("Cannot open " + directory.getAbsolutePath() + " for compaction");
+        }
+        try {
+            long live = 0;
+            for (int i = 0; i < _index.capacity(); i++) {
+                if (_index.locationAt(i) > 0) {
+                    live++;
+                }
+            }
+            //large enough to never grow while copying
+            final MMapStorage target = new MMapStorage(compacted.getPath())
+                    .withSegmentSize(_segmentSize)
+                    .withIndexCapacity((int) Math.max(_indexCapacity, (live * 4) / 3 + 1));
+            target.connect(null, null);
+            if (!target.isConnected) {
+                throw new IOException("Cannot create " + compacted.getAbsolutePath());
+            }
+            for (int i = 0; i < _index.capacity(); i++) {
+                final long location = _index.locationAt(i);
+                if (location > 0) {
+                    final ByteBuffer segment = _segments.get((int) (location >>> 32)).duplicate();
+                    final int offset = (int) location;
+                    final byte[] key = new byte[segment.getInt(offset)];
+                    final byte[] value = new byte[segment.getInt(offset + 4)];
+                    segment.position(offset + RECORD_HEADER);
+                    segment.get(key);
+                    segment.get(value);
+                    final long hash = _index.hashAt(i);
+                    int slot = target._index.start(hash);
+                    while (target._index.locationAt(slot) != 0) {
+                        slot = target._index.next(slot);
+                    }
+                    target._index.set(slot, hash, target.append(key, value));
+                }
+            }
+            target._index.setSegments(target._segments.size());
+            target._index.setTail(target._tail);
+            target._index.setPrefix(_index.prefix());
+            //forces all segments, then the index
+            target.disconnect(null);
+        } finally {
+            disconnect(null);
+        }
+        final File replaced = new File(storagePath + REPLACED_SUFFIX);
+        deleteAll(replaced);
+        Files.move(directory.toPath(), replaced.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compacted.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        deleteAll(replaced);
+    }
+
+    /**
+     * Completes a compaction interrupted while swapping the directories.
+     */
+    private void recoverCompaction() throws IOException {
+        final File directory = new File(storagePath);
+        final File compacted = new File(storagePath + COMPACTED_SUFFIX);
+        final File replaced = new File(storagePath + REPLACED_SUFFIX);
+        if (!directory.exists() && compacted.exists() && replaced.exists()) {
+            Files.move(compacted.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (directory.exists()) {
+            deleteAll(replaced);
+        }
+    }
+
+    private static void deleteAll(final File file) {
+        if (!file.exists()) {
+            return;
+        }
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                deleteAll(children[i]);
+            }
+        }
+        file.delete();
+    }
+
+    private void growIndex() throws IOException {
+        final File indexFile = new File(_directory, INDEX_FILE);
+        final File grownFile = new File(_directory, INDEX_FILE + ".grow");
+        if (grownFile.exists()) {
+            grownFile.delete();
+        }
+        final MMapIndex grown = _index.grow(grownFile);
+        grown.force();
+        Files.move(grownFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        _index = grown;
+    }
+
+    private int lookup(final Buffer key) {
+        return lookup(key, HashHelper.hashBuffer(key, 0, key.length()));
+    }
+
+    /**
+     * @return the slot of the key, or the empty slot ending its probe sequence
+     */
+    private int lookup(final Buffer key, final long hash) {
+        int slot = _index.start(hash);
+        while (true) {
+            final long location = _index.locationAt(slot);
+            if (location == 0) {
+                return slot;
+            }
+            if (_index.hashAt(slot) == hash && sameKey(location & ~MMapIndex.REMOVED, key)) {
+                return slot;
+            }
+            slot = _index.next(slot);
+        }
+    }
+
+    private boolean sameKey(final long location, final Buffer key) {
+        final MappedByteBuffer segment = _segments.get((int) (location >>> 32));
+        final int offset = (int) location;
+        final int keyLength = segment.getInt(offset);
+        if (keyLength != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (segment.get(offset + RECORD_HEADER + i) != key.read(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer valueAt(final long location) {
+        final ByteBuffer segment = _segments.get((int) (location >>> 32)).duplicate();
+        final int offset = (int) location;
+        final int start = offset + RECORD_HEADER + segment.getInt(offset);
+        segment.limit(start + segment.getInt(offset + 4));
+        segment.position(start);
+        return segment.slice();
+    }
+
+    private static MappedByteBuffer map(final File file, final long size) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright 2017 The GreyCat Authors.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greycat.mmap;
+
+import greycat.*;
+import greycat.chunk.ChunkType;
+import greycat.scheduler.NoopScheduler;
+import greycat.struct.Buffer;
+import greycat.utility.KeyHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class StorageTest {
+
+    @Test
+    public void putGetRemoveTest() throws IOException {
+        final Graph graph = new GraphBuilder().withStorage(new MMapStorage("mmap_data")).withScheduler(new NoopScheduler()).build();
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                Assert.assertTrue(result);
+                final byte[] types = new byte[]{ChunkType.WORLD_ORDER_CHUNK, ChunkType.SUPER_TIME_TREE_CHUNK, ChunkType.TIME_TREE_CHUNK, ChunkType.STATE_CHUNK, ChunkType.GEN_CHUNK};
+                final Buffer toPut = graph.newBuffer();
+                for (int i = 0; i < types.length; i++) {
+                    if (i != 0) {
+                        toPut.write(Constants.BUFFER_SEP);
+                    }
+                    KeyHelper.keyToBuffer(toPut, types[i], 0, 0, 1);
+                    toPut.write(Constants.BUFFER_SEP);
+                    toPut.writeAll(("value" + i).getBytes());
+                }
+                graph.storage().put(toPut, new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean putResult) {
+                        Assert.assertTrue(putResult);
+                        toPut.free();
+                    }
+                });
+                final Buffer keys = graph.newBuffer();
+                for (int i = 0; i < types.length; i++) {
+                    KeyHelper.keyToBuffer(keys, types[i], 0, 0, 1);
+                    keys.write(Constants.BUFFER_SEP);
+                }
+                //unknown key
+                KeyHelper.keyToBuffer(keys, ChunkType.STATE_CHUNK, 0, 0, 2);
+                graph.storage().get(keys, new Callback<Buffer>() {
+                    @Override
+                    public void on(Buffer values) {
+                        Assert.assertEquals("value0#value1#value2#value3#value4#", values.toString());
+                        Assert.assertEquals('3', values.read(26));
+                        int count = 0;
+                        final greycat.struct.BufferIterator it = values.iterator();
+                        while (it.hasNext()) {
+                            final Buffer view = it.next();
+                            if (count < types.length) {
+                                Assert.assertEquals("value" + count, new String(view.data()));
+                            } else {
+                                Assert.assertEquals(0, view.length());
+                            }
+                            count++;
+                        }
+                        Assert.assertEquals(types.length + 1, count);
+                        values.free();
+                    }
+                });
+                keys.free();
+                final Buffer toRemove = graph.newBuffer();
+                KeyHelper.keyToBuffer(toRemove, ChunkType.TIME_TREE_CHUNK, 0, 0, 1);
+                graph.storage().remove(toRemove, null);
+                graph.storage().get(toRemove, new Callback<Buffer>() {
+                    @Override
+                    public void on(Buffer values) {
+                        Assert.assertEquals(0, values.length());
+                    }
+                });
+                toRemove.free();
+                graph.storage().lock(new Callback<Buffer>() {
+                    @Override
+                    public void on(Buffer first) {
+                        graph.storage().lock(new Callback<Buffer>() {
+                            @Override
+                            public void on(Buffer second) {
+                                Assert.assertNotEquals(first.toString(), second.toString());
+                            }
+                        });
+                    }
+                });
+                graph.disconnect(null);
+            }
+        });
+        delete(new File("mmap_data"));
+    }
+
+    @Test
+    public void reopenTest() throws IOException {
+        final int size = 500;
+        //tiny segments and index to roll over segments and grow the index
+        MMapStorage storage = new MMapStorage("mmap_reopen").withSegmentSize(256).withIndexCapacity(4);
+        Graph graph = new GraphBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Buffer toPut = graph.newBuffer();
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                toPut.write(Constants.BUFFER_SEP);
+            }
+            KeyHelper.keyToBuffer(toPut, ChunkType.STATE_CHUNK, 0, 0, i);
+            toPut.write(Constants.BUFFER_SEP);
+            toPut.writeAll(("value" + i).getBytes());
+        }
+        storage.put(toPut, null);
+        toPut.free();
+        final Buffer toRemove = graph.newBuffer();
+        KeyHelper.keyToBuffer(toRemove, ChunkType.STATE_CHUNK, 0, 0, 1);
+        storage.remove(toRemove, null);
+        toRemove.free();
+        graph.disconnect(null);
+        Assert.assertTrue(new File("mmap_reopen", "segment_10").exists());
+
+        storage = new MMapStorage("mmap_reopen").withSegmentSize(256).withIndexCapacity(4);
+        graph = new GraphBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Buffer keys = graph.newBuffer();
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                keys.write(Constants.BUFFER_SEP);
+            }
+            KeyHelper.keyToBuffer(keys, ChunkType.STATE_CHUNK, 0, 0, i);
+        }
+        final int[] checked = new int[1];
+        storage.get(keys, new Callback<Buffer>() {
+            @Override
+            public void on(Buffer values) {
+                final greycat.struct.BufferIterator it = values.iterator();
+                int i = 0;
+                while (it.hasNext()) {
+                    final Buffer view = it.next();
+                    if (i == 1) {
+                        Assert.assertEquals(0, view.length());
+                    } else {
+                        Assert.assertEquals("value" + i, new String(view.data()));
+                        checked[0]++;
+                    }
+                    i++;
+                }
+            }
+        });
+        Assert.assertEquals(size - 1, checked[0]);
+        //the last record of a key wins, removed keys can be stored back
+        final Buffer toOverwrite = graph.newBuffer();
+        KeyHelper.keyToBuffer(toOverwrite, ChunkType.STATE_CHUNK, 0, 0, 0);
+        toOverwrite.write(Constants.BUFFER_SEP);
+        toOverwrite.writeAll("updated0".getBytes());
+        toOverwrite.write(Constants.BUFFER_SEP);
+        KeyHelper.keyToBuffer(toOverwrite, ChunkType.STATE_CHUNK, 0, 0, 1);
+        toOverwrite.write(Constants.BUFFER_SEP);
+        toOverwrite.writeAll("updated1".getBytes());
+        storage.put(toOverwrite, null);
+        toOverwrite.free();
+        final Buffer firstKeys = graph.newBuffer();
+        KeyHelper.keyToBuffer(firstKeys, ChunkType.STATE_CHUNK, 0, 0, 0);
+        firstKeys.write(Constants.BUFFER_SEP);
+        KeyHelper.keyToBuffer(firstKeys, ChunkType.STATE_CHUNK, 0, 0, 1);
+        storage.get(firstKeys, new Callback<Buffer>() {
+            @Override
+            public void on(Buffer values) {
+                Assert.assertEquals("updated0#updated1", values.toString());
+            }
+        });
+        firstKeys.free();
+        keys.free();
+        graph.disconnect(null);
+        delete(new File("mmap_reopen"));
+    }
+
+    @Test
+    public void compactTest() throws IOException {
+        MMapStorage storage = new MMapStorage("mmap_compact").withSegmentSize(256).withIndexCapacity(4);
+        Graph graph = new GraphBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        //each key is overwritten several times, the last key is removed
+        for (int round = 0; round < 10; round++) {
+            final Buffer toPut = graph.newBuffer();
+            for (int i = 0; i < 20; i++) {
+                if (i != 0) {
+                    toPut.write(Constants.BUFFER_SEP);
+                }
+                KeyHelper.keyToBuffer(toPut, ChunkType.STATE_CHUNK, 0, 0, i);
+                toPut.write(Constants.BUFFER_SEP);
+                toPut.writeAll(("value" + i + "_" + round).getBytes());
+            }
+            storage.put(toPut, null);
+            toPut.free();
+        }
+        final Buffer toRemove = graph.newBuffer();
+        KeyHelper.keyToBuffer(toRemove, ChunkType.STATE_CHUNK, 0, 0, 19);
+        storage.remove(toRemove, null);
+        toRemove.free();
+        final int[] prefix = new int[1];
+        storage.lock(new Callback<Buffer>() {
+            @Override
+            public void on(Buffer result) {
+                prefix[0] = greycat.utility.Base64.decodeToIntWithBounds(result, 0, result.length());
+            }
+        });
+        graph.disconnect(null);
+        final int segmentsBefore = new File("mmap_compact").list().length;
+        boolean refused = false;
+        storage.connect(null, null);
+        try {
+            storage.compact();
+        } catch (RuntimeException e) {
+            refused = true;
+        }
+        storage.disconnect(null);
+        Assert.assertTrue(refused);
+
+        storage.compact();
+        Assert.assertTrue(new File("mmap_compact").list().length < segmentsBefore);
+        Assert.assertFalse(new File("mmap_compact" + ".compacted").exists());
+        Assert.assertFalse(new File("mmap_compact" + ".replaced").exists());
+
+        storage = new MMapStorage("mmap_compact").withSegmentSize(256).withIndexCapacity(4);
+        graph = new GraphBuilder().withStorage(storage).withScheduler(new NoopScheduler()).build();
+        graph.connect(null);
+        final Buffer keys = graph.newBuffer();
+        for (int i = 0; i < 20; i++) {
+            if (i != 0) {
+                keys.write(Constants.BUFFER_SEP);
+            }
+            KeyHelper.keyToBuffer(keys, ChunkType.STATE_CHUNK, 0, 0, i);
+        }
+        final int[] checked = new int[1];
+        storage.get(keys, new Callback<Buffer>() {
+            @Override
+            public void on(Buffer values) {
+                final greycat.struct.BufferIterator it = values.iterator();
+                int i = 0;
+                while (it.hasNext()) {
+                    final Buffer view = it.next();
+                    if (i == 19) {
+                        Assert.assertEquals(0, view.length());
+                    } else {
+                        Assert.assertEquals("value" + i + "_9", new String(view.data()));
+                        checked[0]++;
+                    }
+                    i++;
+                }
+            }
+        });
+        Assert.assertEquals(19, checked[0]);
+        keys.free();
+        //the lock prefix survives the compaction, the graph took one more on connect
+        storage.lock(new Callback<Buffer>() {
+            @Override
+            public void on(Buffer result) {
+                Assert.assertEquals(prefix[0] + 2, greycat.utility.Base64.decodeToIntWithBounds(result, 0, result.length()));
+            }
+        });
+        graph.disconnect(null);
+        delete(new File("mmap_compact"));
+    }
+
+    @Test
+    public void graphTest() throws IOException {
+        final Graph graph = new GraphBuilder().withStorage(new MMapStorage("mmap_graph")).withScheduler(new NoopScheduler()).build();
+        final long[] id = new long[1];
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final Node node = graph.newNode(0, 0);
+                node.set("name", Type.STRING, "hello");
+                id[0] = node.id();
+                graph.lookup(0, 10, node.id(), new Callback<Node>() {
+                    @Override
+                    public void on(Node timed) {
+                        timed.set("value", Type.DOUBLE, 4.2);
+                        timed.free();
+                    }
+                });
+                node.free();
+                graph.save(null);
+                graph.disconnect(null);
+            }
+        });
+        final Graph reopened = new GraphBuilder().withStorage(new MMapStorage("mmap_graph")).withScheduler(new NoopScheduler()).build();
+        final int[] checked = new int[1];
+        reopened.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                reopened.lookup(0, 20, id[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node node) {
+                        Assert.assertEquals("hello", node.get("name"));
+                        Assert.assertEquals(4.2, (double) node.get("value"), 0);
+                        checked[0]++;
+                        node.free();
+                    }
+                });
+                reopened.lookup(0, 5, id[0], new Callback<Node>() {
+                    @Override
+                    public void on(Node node) {
+                        Assert.assertNull(node.get("value"));
+                        checked[0]++;
+                        node.free();
+                    }
+                });
+                reopened.disconnect(null);
+            }
+        });
+        Assert.assertEquals(2, checked[0]);
+        delete(new File("mmap_graph"));
+    }
+
+    private static void delete(File file) throws IOException {
+        if (file.isDirectory()) {
+            final String[] files = file.list();
+            for (String temp : files) {
+                delete(new File(file, temp));
+            }
+        }
+        file.delete();
+    }
+
+}
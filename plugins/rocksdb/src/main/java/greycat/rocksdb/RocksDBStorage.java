@@ -18,6 +18,7 @@ package greycat.rocksdb;
 import greycat.Callback;
 import greycat.Constants;
 import greycat.Graph;
+import greycat.chunk.ChunkType;
 import greycat.plugin.Storage;
 import greycat.struct.Buffer;
 import greycat.struct.BufferIterator;
@@ -27,12 +28,46 @@ import org.rocksdb.*;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 public class RocksDBStorage implements Storage {
 
-    private Options _options;
+    private static final byte[][] FAMILY_NAMES = new byte[][]{
+            "world_order".getBytes(),
+            "super_time_tree".getBytes(),
+            "time_tree".getBytes(),
+            "state".getBytes()
+    };
+    private static final byte[] FAMILY_TYPES = new byte[]{
+            ChunkType.WORLD_ORDER_CHUNK,
+            ChunkType.SUPER_TIME_TREE_CHUNK,
+            ChunkType.TIME_TREE_CHUNK,
+            ChunkType.STATE_CHUNK
+    };
+    //block cache in bytes of each family, state chunks are the largest and the most read
+    private static final long[] FAMILY_CACHES = new long[]{
+            16 * 1024 * 1024,
+            16 * 1024 * 1024,
+            32 * 1024 * 1024,
+            64 * 1024 * 1024
+    };
+    private static final int BLOOM_BITS_PER_KEY = 10;
+
+    private DBOptions _options;
+    private WriteOptions _writeOptions;
+    private ReadOptions _readOptions;
+    private WriteBatch _batch;
+    private final List<ColumnFamilyOptions> _familyOptions = new ArrayList<ColumnFamilyOptions>();
+    private final List<ColumnFamilyHandle> _handles = new ArrayList<ColumnFamilyHandle>();
+    private BloomFilter _filter;
+
+    /**
+     * Column family of each chunk type, keys which are not chunk keys, or chunk types without a dedicated family, go in the default one.
+     */
+    private ColumnFamilyHandle[] _families;
+    private ColumnFamilyHandle _default;
 
     private RocksDB _db;
 
@@ -76,14 +111,16 @@ public class RocksDBStorage implements Storage {
         }
         final Buffer result = _graph.newBuffer();
         final BufferIterator it = keys.iterator();
-        /*
-        List<byte[]> query = new ArrayList<byte[]>();
+        final List<byte[]> query = new ArrayList<byte[]>();
+        final List<ColumnFamilyHandle> families = new ArrayList<ColumnFamilyHandle>();
         while (it.hasNext()) {
             Buffer view = it.next();
             query.add(view.data());
+            families.add(family(view));
         }
         try {
-            Map<byte[], byte[]> dbResult = _db.multiGet(query);
+            //one native call for the whole batch, the result map is indexed by the identity of the query keys
+            Map<byte[], byte[]> dbResult = _db.multiGet(_readOptions, families, query);
             boolean isFirst = true;
             for (int i = 0; i < query.size(); i++) {
                 if (!isFirst) {
@@ -102,29 +139,6 @@ public class RocksDBStorage implements Storage {
         if (callback != null) {
             callback.on(result);
         }
-        */
-
-        boolean isFirst = true;
-        while (it.hasNext()) {
-            Buffer view = it.next();
-            try {
-                if (!isFirst) {
-                    result.write(Constants.BUFFER_SEP);
-                } else {
-                    isFirst = false;
-                }
-                byte[] res = _db.get(view.data());
-                if (res != null) {
-                    result.writeAll(res);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-        if (callback != null) {
-            callback.on(result);
-        }
-
     }
 
     @Override
@@ -136,42 +150,44 @@ public class RocksDBStorage implements Storage {
         if (updates.size() != 0) {
             result = _graph.newBuffer();
         }
-        WriteBatch batch = new WriteBatch();
-        BufferIterator it = stream.iterator();
-        boolean isFirst = true;
-        while (it.hasNext()) {
-            Buffer keyView = it.next();
-            Buffer valueView = it.next();
-            if (valueView != null) {
-                batch.put(keyView.data(), valueView.data());
-            }
-            if (result != null) {
-                if (isFirst) {
-                    isFirst = false;
-                } else {
+        boolean success = true;
+        synchronized (_batch) {
+            BufferIterator it = stream.iterator();
+            boolean isFirst = true;
+            while (it.hasNext()) {
+                Buffer keyView = it.next();
+                Buffer valueView = it.next();
+                if (valueView != null) {
+                    _batch.put(family(keyView), keyView.data(), valueView.data());
+                }
+                if (result != null) {
+                    if (isFirst) {
+                        isFirst = false;
+                    } else {
+                        result.write(Constants.KEY_SEP);
+                    }
+                    result.writeAll(keyView.data());
                     result.write(Constants.KEY_SEP);
+                    Base64.encodeLongToBuffer(HashHelper.hashBuffer(valueView, 0, valueView.length()), result);
                 }
-                result.writeAll(keyView.data());
-                result.write(Constants.KEY_SEP);
-                Base64.encodeLongToBuffer(HashHelper.hashBuffer(valueView, 0, valueView.length()), result);
+            }
+            try {
+                _db.write(_writeOptions, _batch);
+            } catch (RocksDBException e) {
+                e.printStackTrace();
+                success = false;
+            } finally {
+                _batch.clear();
             }
         }
-        WriteOptions options = new WriteOptions();
-        options.setSync(false);
-        try {
-            _db.write(options, batch);
+        if (success) {
             for (int i = 0; i < updates.size(); i++) {
                 final Callback<Buffer> explicit = updates.get(i);
                 explicit.on(result);
             }
-            if (p_callback != null) {
-                p_callback.on(true);
-            }
-        } catch (RocksDBException e) {
-            e.printStackTrace();
-            if (p_callback != null) {
-                p_callback.on(false);
-            }
+        }
+        if (p_callback != null) {
+            p_callback.on(success);
         }
     }
 
@@ -181,35 +197,41 @@ public class RocksDBStorage implements Storage {
             throw new RuntimeException(_connectedError);
         }
         Buffer result = _graph.newBuffer();
-        WriteBatch batch = new WriteBatch();
-        BufferIterator it = stream.iterator();
-        boolean isFirst = true;
-        while (it.hasNext()) {
-            Buffer keyView = it.next();
-            Buffer valueView = it.next();
-            if (valueView != null) {
-                batch.put(keyView.data(), valueView.data());
-            }
-            if (isFirst) {
-                isFirst = false;
-            } else {
+        boolean success = true;
+        synchronized (_batch) {
+            BufferIterator it = stream.iterator();
+            boolean isFirst = true;
+            while (it.hasNext()) {
+                Buffer keyView = it.next();
+                Buffer valueView = it.next();
+                if (valueView != null) {
+                    _batch.put(family(keyView), keyView.data(), valueView.data());
+                }
+                if (isFirst) {
+                    isFirst = false;
+                } else {
+                    result.write(Constants.KEY_SEP);
+                }
+                result.writeAll(keyView.data());
                 result.write(Constants.KEY_SEP);
+                Base64.encodeLongToBuffer(HashHelper.hashBuffer(valueView, 0, valueView.length()), result);
+            }
+            try {
+                _db.write(_writeOptions, _batch);
+            } catch (RocksDBException e) {
+                e.printStackTrace();
+                success = false;
+            } finally {
+                _batch.clear();
             }
-            result.writeAll(keyView.data());
-            result.write(Constants.KEY_SEP);
-            Base64.encodeLongToBuffer(HashHelper.hashBuffer(valueView, 0, valueView.length()), result);
         }
-        WriteOptions options = new WriteOptions();
-        options.setSync(false);
-        try {
-            _db.write(options, batch);
+        if (success) {
             for (int i = 0; i < updates.size(); i++) {
                 final Callback<Buffer> explicit = updates.get(i);
                 explicit.on(result);
             }
             callback.on(result);
-        } catch (RocksDBException e) {
-            e.printStackTrace();
+        } else {
             callback.on(null);
         }
     }
@@ -223,7 +245,7 @@ public class RocksDBStorage implements Storage {
             BufferIterator it = keys.iterator();
             while (it.hasNext()) {
                 Buffer view = it.next();
-                _db.delete(view.data());
+                _db.delete(family(view), view.data());
             }
             if (callback != null) {
                 callback.on(null);
@@ -241,11 +263,30 @@ public class RocksDBStorage implements Storage {
         //TODO write the prefix
         try {
             WriteOptions options = new WriteOptions();
-            options.sync();
+            options.setSync(true);
             _db.write(options, new WriteBatch());
+            options.close();
+            for (int i = 0; i < _handles.size(); i++) {
+                _handles.get(i).close();
+            }
+            _handles.clear();
             _db.close();
+            for (int i = 0; i < _familyOptions.size(); i++) {
+                _familyOptions.get(i).close();
+            }
+            _familyOptions.clear();
+            _filter.close();
+            _batch.close();
+            _writeOptions.close();
+            _readOptions.close();
             _options.close();
             _options = null;
+            _filter = null;
+            _batch = null;
+            _writeOptions = null;
+            _readOptions = null;
+            _families = null;
+            _default = null;
             _db = null;
             _isConnected = false;
             if (callback != null) {
@@ -270,16 +311,38 @@ public class RocksDBStorage implements Storage {
             return;
         }
         _graph = graph;
-        //by default activate snappy compression of bytes
-        _options = new Options()
+        _options = new DBOptions()
                 .setCreateIfMissing(true)
-                .setCompressionType(CompressionType.SNAPPY_COMPRESSION);
+                .setCreateMissingColumnFamilies(true);
+        _writeOptions = new WriteOptions().setSync(false);
+        _readOptions = new ReadOptions();
+        _batch = new WriteBatch();
+        _filter = new BloomFilter(BLOOM_BITS_PER_KEY, false);
         File location = new File(_storagePath);
+        //databases created before the split per chunk type keep all their chunks in the default family
+        boolean split = true;
         if (!location.exists()) {
             location.mkdirs();
+        } else {
+            split = !isLegacy(location);
+        }
+        final List<ColumnFamilyDescriptor> descriptors = new ArrayList<ColumnFamilyDescriptor>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, familyOptions(FAMILY_CACHES[FAMILY_CACHES.length - 1])));
+        if (split) {
+            for (int i = 0; i < FAMILY_NAMES.length; i++) {
+                descriptors.add(new ColumnFamilyDescriptor(FAMILY_NAMES[i], familyOptions(FAMILY_CACHES[i])));
+            }
         }
         try {
-            _db = RocksDB.open(_options, location.getAbsolutePath());
+            _db = RocksDB.open(_options, location.getAbsolutePath(), descriptors, _handles);
+            _default = _handles.get(0);
+            _families = new ColumnFamilyHandle[ChunkType.GEN_CHUNK + 1];
+            Arrays.fill(_families, _default);
+            if (split) {
+                for (int i = 0; i < FAMILY_TYPES.length; i++) {
+                    _families[FAMILY_TYPES[i]] = _handles.get(i + 1);
+                }
+            }
             _isConnected = true;
             if (callback != null) {
                 callback.on(true);
@@ -292,15 +355,72 @@ public class RocksDBStorage implements Storage {
         }
     }
 
+    private ColumnFamilyOptions familyOptions(long blockCacheSize) {
+        final BlockBasedTableConfig table = new BlockBasedTableConfig()
+                .setBlockCacheSize(blockCacheSize)
+                .setFilter(_filter)
+                .setCacheIndexAndFilterBlocks(true);
+        //by default activate snappy compression of bytes
+        final ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .setCompressionType(CompressionType.SNAPPY_COMPRESSION)
+                .setTableFormatConfig(table);
+        _familyOptions.add(options);
+        return options;
+    }
+
+    /**
+     * @return true if the database already exists with chunks stored in the default family only
+     */
+    private static boolean isLegacy(File location) {
+        final Options options = new Options();
+        try {
+            final List<byte[]> existing = RocksDB.listColumnFamilies(options, location.getAbsolutePath());
+            if (existing.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < existing.size(); i++) {
+                if (Arrays.equals(existing.get(i), FAMILY_NAMES[0])) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (RocksDBException e) {
+            //no database yet
+            return false;
+        } finally {
+            options.close();
+        }
+    }
+
+    /**
+     * Resolves the column family of a key, from the chunk type encoded as first segment by {@link greycat.utility.KeyHelper}.
+     */
+    private ColumnFamilyHandle family(Buffer key) {
+        final long length = key.length();
+        for (long i = 0; i < length; i++) {
+            if (key.read(i) == Constants.KEY_SEP) {
+                if (i == 0) {
+                    return _default;
+                }
+                final int type = Base64.decodeToIntWithBounds(key, 0, i);
+                if (type >= 0 && type < _families.length) {
+                    return _families[type];
+                }
+                return _default;
+            }
+        }
+        return _default;
+    }
+
     @Override
     public void lock(Callback<Buffer> callback) {
         try {
-            byte[] current = _db.get(prefixKey);
+            byte[] current = _db.get(_default, prefixKey);
             if (current == null) {
                 current = new String("0").getBytes();
             }
             Short currentPrefix = Short.parseShort(new String(current));
-            _db.put(prefixKey, ((currentPrefix + 1) + "").getBytes());
+            _db.put(_default, prefixKey, ((currentPrefix + 1) + "").getBytes());
             if (callback != null) {
                 Buffer newBuf = _graph.newBuffer();
                 Base64.encodeIntToBuffer(currentPrefix, newBuf);
@@ -16,7 +16,11 @@
 package greycat.rocksdb;
 
 import greycat.*;
+import greycat.chunk.ChunkType;
 import greycat.internal.BlackHoleStorage;
+import greycat.struct.Buffer;
+import greycat.utility.KeyHelper;
+import org.junit.Assert;
 import org.junit.Test;
 import greycat.scheduler.NoopScheduler;
 import greycat.plugin.Job;
@@ -107,6 +111,61 @@ public class StorageTest {
         }
     }
 
+    @Test
+    public void columnFamiliesTest() throws IOException {
+        if (System.getProperty("os.name").toLowerCase().contains("win")) {
+            return;
+        }
+        final Graph graph = new GraphBuilder().withStorage(new RocksDBStorage("data_families")).withScheduler(new NoopScheduler()).build();
+        graph.connect(new Callback<Boolean>() {
+            @Override
+            public void on(Boolean result) {
+                final byte[] types = new byte[]{ChunkType.WORLD_ORDER_CHUNK, ChunkType.SUPER_TIME_TREE_CHUNK, ChunkType.TIME_TREE_CHUNK, ChunkType.STATE_CHUNK, ChunkType.GEN_CHUNK};
+                //same world, time and id for every type, only the family differs
+                final Buffer toPut = graph.newBuffer();
+                for (int i = 0; i < types.length; i++) {
+                    if (i != 0) {
+                        toPut.write(Constants.BUFFER_SEP);
+                    }
+                    KeyHelper.keyToBuffer(toPut, types[i], 0, 0, 1);
+                    toPut.write(Constants.BUFFER_SEP);
+                    toPut.writeAll(("value" + i).getBytes());
+                }
+                graph.storage().put(toPut, new Callback<Boolean>() {
+                    @Override
+                    public void on(Boolean putResult) {
+                        Assert.assertTrue(putResult);
+                        toPut.free();
+                        final Buffer keys = graph.newBuffer();
+                        for (int i = 0; i < types.length; i++) {
+                            KeyHelper.keyToBuffer(keys, types[i], 0, 0, 1);
+                            keys.write(Constants.BUFFER_SEP);
+                        }
+                        //unknown key
+                        KeyHelper.keyToBuffer(keys, ChunkType.STATE_CHUNK, 0, 0, 2);
+                        graph.storage().get(keys, new Callback<Buffer>() {
+                            @Override
+                            public void on(Buffer values) {
+                                keys.free();
+                                StringBuilder builder = new StringBuilder();
+                                for (long i = 0; i < values.length(); i++) {
+                                    builder.append((char) values.read(i));
+                                }
+                                Assert.assertEquals("value0#value1#value2#value3#value4#", builder.toString());
+                                values.free();
+                                graph.disconnect(null);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        File data = new File("data_families");
+        if (data.exists()) {
+            delete(data);
+        }
+    }
+
     private static void delete(File file) throws IOException {
         if (file.isDirectory()) {
             //directory is empty, then delete it